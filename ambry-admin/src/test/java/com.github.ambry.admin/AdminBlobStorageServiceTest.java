@@ -41,6 +41,7 @@ import com.github.ambry.rest.SecurityServiceFactory;
 import com.github.ambry.router.AsyncWritableChannel;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.GetBlobResult;
 import com.github.ambry.router.InMemoryRouter;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
@@ -1334,6 +1335,7 @@ class AdminTestRouter implements Router {
     DeleteBlob,
     GetBlobInfo,
     GetBlob,
+    GetBlobWithInfo,
     PutBlob
   }
 
@@ -1362,6 +1364,17 @@ class AdminTestRouter implements Router {
     return completeOperation(new ByteBufferReadableStreamChannel(ByteBuffer.allocate(0)), callback, OpType.GetBlob);
   }
 
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId) {
+    return getBlobWithInfo(blobId, null);
+  }
+
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback) {
+    return completeOperation(new GetBlobResult(new BlobInfo(new BlobProperties(0, "AdminTestRouter"), new byte[0]),
+        new ByteBufferReadableStreamChannel(ByteBuffer.allocate(0))), callback, OpType.GetBlobWithInfo);
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -17,6 +17,7 @@ import com.codahale.metrics.MetricRegistry;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 
@@ -38,6 +39,14 @@ public interface ClusterMap {
    */
   public List<PartitionId> getWritablePartitionIds();
 
+  /**
+   * Picks one of the partitions that are available for writes at random. Implementations may favor some partitions
+   * over others to spread writes evenly across the cluster.
+   * @param partitionIdsToExclude the partitions that must not be picked.
+   * @return the picked partition, or {@code null} if there are no writable partitions other than the excluded ones.
+   */
+  public PartitionId getRandomWritablePartition(Collection<PartitionId> partitionIdsToExclude);
+
   /**
    * Checks if datacenter name corresponds to some datacenter in this cluster map's hardware layout.
    *
@@ -81,4 +90,10 @@ public interface ClusterMap {
    * Performs the required action for a replica related event.
    */
   public void onReplicaEvent(ReplicaId replicaId, ReplicaEventType event);
+
+  /**
+   * Registers a listener that is told about replicas that are added to the cluster map while it is in use.
+   * @param listener the {@link ClusterMapChangeListener} to register.
+   */
+  public void registerClusterMapListener(ClusterMapChangeListener listener);
 }
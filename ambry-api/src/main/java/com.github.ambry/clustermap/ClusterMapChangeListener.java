@@ -0,0 +1,31 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.clustermap;
+
+import java.util.List;
+
+
+/**
+ * A ClusterMapChangeListener is told about changes to a {@link ClusterMap} that happen while the cluster map is in use,
+ * for example when a new partition layout is loaded without restarting the process.
+ */
+public interface ClusterMapChangeListener {
+
+  /**
+   * Called after replicas are added to the cluster map. The replicas are already visible through the cluster map when
+   * this is called.
+   * @param addedReplicas the replicas that were added, including all the replicas of newly added partitions.
+   */
+  public void onReplicasAdded(List<ReplicaId> addedReplicas);
+}
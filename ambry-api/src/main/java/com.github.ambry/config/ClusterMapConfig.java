@@ -66,6 +66,15 @@ public class ClusterMapConfig {
   @Default("")
   public final String clusterMapSslEnabledDatacenters;
 
+  /**
+   * How often, in milliseconds, the partition layout file is checked for changes. A changed partition layout is loaded
+   * and swapped in without restarting the process, as long as it only adds partitions and replicas. A value of 0
+   * disables reloading.
+   */
+  @Config("clustermap.partition.layout.reload.interval.ms")
+  @Default("0")
+  public final int clusterMapPartitionLayoutReloadIntervalMs;
+
   public ClusterMapConfig(VerifiableProperties verifiableProperties) {
     clusterMapResourceStatePolicyFactory = verifiableProperties.getString("clustermap.resourcestatepolicy.factory",
         "com.github.ambry.clustermap.FixedBackoffResourceStatePolicyFactory");
@@ -78,5 +87,7 @@ public class ClusterMapConfig {
     clusterMapFixedTimeoutDiskRetryBackoffMs = verifiableProperties
         .getIntInRange("clustermap.fixedtimeout.disk.retry.backoff.ms", 10 * 60 * 1000, 1, 30 * 60 * 1000);
     clusterMapSslEnabledDatacenters = verifiableProperties.getString("clustermap.ssl.enabled.datacenters", "");
+    clusterMapPartitionLayoutReloadIntervalMs = verifiableProperties
+        .getIntInRange("clustermap.partition.layout.reload.interval.ms", 0, 0, Integer.MAX_VALUE);
   }
 }
@@ -57,6 +57,29 @@ public class FrontendConfig {
   @Default("8192")
   public final Integer frontendChunkedGetResponseThresholdInBytes;
 
+  /**
+   * The fraction of GET requests for blobs that are traced through the router and the servers, between 0 and 1.
+   * Traced requests are sent to the servers in a version of the get request that servers that do not know of tracing
+   * cannot read, so tracing is off by default and must only be turned on once every server has been upgraded.
+   */
+  @Config("frontend.trace.sample.rate")
+  @Default("0")
+  public final double frontendTraceSampleRate;
+
+  /**
+   * The number of finished traces that are kept. The slowest of them are returned by the slowest traces operation.
+   */
+  @Config("frontend.trace.buffer.size")
+  @Default("1000")
+  public final int frontendTraceBufferSize;
+
+  /**
+   * The number of traces that are returned by the slowest traces operation.
+   */
+  @Config("frontend.slowest.traces.count")
+  @Default("10")
+  public final int frontendSlowestTracesCount;
+
   public FrontendConfig(VerifiableProperties verifiableProperties) {
     frontendCacheValiditySeconds = verifiableProperties.getLong("frontend.cache.validity.seconds", 365 * 24 * 60 * 60);
     frontendIdConverterFactory = verifiableProperties
@@ -67,5 +90,10 @@ public class FrontendConfig {
         Arrays.asList(verifiableProperties.getString("frontend.path.prefixes.to.remove", "").split(","));
     frontendChunkedGetResponseThresholdInBytes =
         verifiableProperties.getInt("frontend.chunked.get.response.threshold.in.bytes", 8192);
+    frontendTraceSampleRate = verifiableProperties.getDoubleInRange("frontend.trace.sample.rate", 0.0, 0.0, 1.0);
+    frontendTraceBufferSize =
+        verifiableProperties.getIntInRange("frontend.trace.buffer.size", 1000, 1, Integer.MAX_VALUE);
+    frontendSlowestTracesCount =
+        verifiableProperties.getIntInRange("frontend.slowest.traces.count", 10, 0, Integer.MAX_VALUE);
   }
 }
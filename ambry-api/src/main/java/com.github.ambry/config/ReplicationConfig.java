@@ -91,6 +91,198 @@ public class ReplicationConfig {
   @Default("false")
   public final boolean replicationValidateMessageStream;
 
+  /**
+   * The max time for which a server holds a replica metadata request that has no new entries to return, waiting for
+   * new writes to the partitions of the request to arrive, before responding. When the server held a request, the intra
+   * dc replica thread that sent it does not wait between replicas since the remote server already waited, and new
+   * writes are replicated as soon as they arrive. This increases the chance of conflicts with direct puts. It should
+   * be less than the connection pool read timeout. 0 disables waiting on the server.
+   */
+  @Config("replication.metadata.request.max.wait.time.ms")
+  @Default("0")
+  public final int replicationMetadataRequestMaxWaitTimeMs;
+
+  /**
+   * The max number of replica metadata requests that a server can hold waiting for new writes at any time. Each of
+   * them occupies a request handler thread while waiting, so this has to be less than the number of request handler
+   * threads of the server. Requests over the limit are answered right away and their replica threads wait between
+   * replicas instead.
+   */
+  @Config("replication.metadata.request.max.concurrent.waits")
+  @Default("2")
+  public final int replicationMetadataRequestMaxConcurrentWaits;
+
+  /**
+   * Whether replica threads replicate from the remote nodes that they lag the most behind first instead of visiting
+   * all remote nodes in a random order. Remote nodes that the local node has caught up with are visited less often
+   * while there are lagging ones, and the wait between replicas is skipped.
+   */
+  @Config("replication.lag.prioritized.scheduling.enabled")
+  @Default("false")
+  public final boolean replicationLagPrioritizedSchedulingEnabled;
+
+  /**
+   * The max number of consecutive iterations in which a replica thread can skip a remote node that the local node
+   * has caught up with in favour of lagging ones. Applies only if lag prioritized scheduling is enabled.
+   */
+  @Config("replication.max.skipped.iterations.for.caught.up.node")
+  @Default("4")
+  public final int replicationMaxSkippedIterationsForCaughtUpNode;
+
+  /**
+   * The total fetch size of an exchange with a remote node when the local replicas lag behind the remote replicas on
+   * the node by more than {@link #replicationBootstrapMinLagInBytes} in total, for instance when a local replica is new
+   * or has been replaced. It is split between the replicas on the node, and replicas are never fetched from with less
+   * than {@link #replicationFetchSizeInBytes}. Larger fetches make the catch up sequential and reduce the number of
+   * round trips. Fetched blobs can be held in memory before they are written to the local stores, so the value is
+   * capped at 64 MB. A value of 0 disables the bootstrap mode.
+   */
+  @Config("replication.bootstrap.fetch.size.in.bytes")
+  @Default("0")
+  public final long replicationBootstrapFetchSizeInBytes;
+
+  /**
+   * The total lag of the local replicas behind the remote replicas on a node above which the node is replicated from
+   * in bootstrap mode.
+   */
+  @Config("replication.bootstrap.min.lag.in.bytes")
+  @Default("1073741824")
+  public final long replicationBootstrapMinLagInBytes;
+
+  /**
+   * The max number of fetched batches of messages that a replica thread can queue for writing to the local stores on a
+   * separate thread while it exchanges metadata with and fetches messages from the next remote node. Queued batches are
+   * held in memory, up to {@code replication.local.write.queue.max.bytes} per replica thread. A value of 0 writes the
+   * messages on the replica thread itself.
+   */
+  @Config("replication.local.write.queue.size")
+  @Default("0")
+  public final int replicationLocalWriteQueueSize;
+
+  /**
+   * The max number of bytes of fetched messages that a replica thread can queue for writing to the local stores. The
+   * messages are copied off the connection to be queued, so this bounds the memory held by the queue of each replica
+   * thread. A batch that is larger than this is queued only when the queue is empty.
+   */
+  @Config("replication.local.write.queue.max.bytes")
+  @Default("67108864")
+  public final long replicationLocalWriteQueueMaxBytes;
+
+  /**
+   * The max rate at which replication writes to a local disk. A value of 0 disables the limit.
+   */
+  @Config("replication.local.write.max.bytes.per.sec.per.disk")
+  @Default("0")
+  public final long replicationLocalWriteMaxBytesPerSecPerDisk;
+
+  /**
+   * The rate below which the rate at which replication writes to a local disk is never lowered, however slow the
+   * foreground requests on the disk are.
+   */
+  @Config("replication.local.write.min.bytes.per.sec.per.disk")
+  @Default("1048576")
+  public final long replicationLocalWriteMinBytesPerSecPerDisk;
+
+  /**
+   * The latency that foreground requests on a local disk should stay under. If more than 1% of them are slower, the
+   * rate at which replication writes to the disk is lowered. A value of 0 keeps the rate at its max.
+   */
+  @Config("replication.foreground.latency.target.ms")
+  @Default("0")
+  public final long replicationForegroundLatencyTargetMs;
+
+  /**
+   * The max rate at which replication fetches messages from a datacenter, across all the replica threads that
+   * replicate from it. A value of 0 disables the limit.
+   */
+  @Config("replication.fetch.max.bytes.per.sec.per.datacenter")
+  @Default("0")
+  public final long replicationFetchMaxBytesPerSecPerDatacenter;
+
+  /**
+   * Whether replica tokens are persisted by appending the tokens that changed to a log on every flush instead of
+   * rewriting the replica token file, which is then only rewritten when the log grows too large and on shutdown.
+   */
+  @Config("replication.token.log.enabled")
+  @Default("false")
+  public final boolean replicationTokenLogEnabled;
+
+  /**
+   * The size of the replica token log of a mount path above which the replica token file is rewritten and the log is
+   * emptied.
+   */
+  @Config("replication.token.log.compaction.threshold.in.bytes")
+  @Default("16777216")
+  public final long replicationTokenLogCompactionThresholdInBytes;
+
+  /**
+   * The number of threads shared by all the replica threads to validate replicated messages on when
+   * replication.validate.message.stream is enabled. Messages are validated in parallel while the rest of the message
+   * stream is being read. 0 validates messages on the replica threads.
+   */
+  @Config("replication.message.validation.thread.count")
+  @Default("0")
+  public final int replicationMessageValidationThreadCount;
+
+  /**
+   * The max number of messages waiting to be validated by the message validation threads. When it is reached, replica
+   * threads validate the messages they receive themselves.
+   */
+  @Config("replication.message.validation.queue.size")
+  @Default("1000")
+  public final int replicationMessageValidationQueueSize;
+
+  /**
+   * Whether replica threads that replicate from other datacenters ask for the messages they fetch to be compressed.
+   * This trades CPU on both ends for less cross datacenter bandwidth. Servers that do not support compression send the
+   * messages uncompressed.
+   */
+  @Config("replication.inter.colo.compression.enabled")
+  @Default("false")
+  public final boolean replicationInterColoCompressionEnabled;
+
+  /**
+   * The interval in seconds at which the remote nodes of a datacenter are rebalanced between its replica threads,
+   * based on the time the threads spent replicating from each node in the interval. 0 disables rebalancing and the
+   * replica thread utilization metrics.
+   */
+  @Config("replication.thread.rebalance.interval.seconds")
+  @Default("0")
+  public final int replicationThreadRebalanceIntervalSeconds;
+
+  /**
+   * The min difference between the time the busiest and the idlest replica threads of a datacenter spent replicating
+   * in a rebalance interval, as a percentage of the interval, for a remote node to be moved between them.
+   */
+  @Config("replication.thread.rebalance.min.imbalance.percent")
+  @Default("20")
+  public final int replicationThreadRebalanceMinImbalancePercent;
+
+  /**
+   * The min interval in seconds between two reconciliations of the keys of a local replica with a remote replica. A
+   * reconciliation compares the key summaries of the two replicas and fetches the keys the local replica is missing
+   * from the buckets whose summaries differ, which repairs keys that replication by token missed. 0 disables key
+   * reconciliation.
+   */
+  @Config("replication.key.reconciliation.interval.seconds")
+  @Default("0")
+  public final int replicationKeyReconciliationIntervalSeconds;
+
+  /**
+   * The number of buckets the keys of a replica are hashed into for key reconciliation. More buckets make the key
+   * summaries larger but narrow down the keys that are compared when replicas differ.
+   */
+  @Config("replication.key.reconciliation.bucket.count")
+  @Default("1024")
+  public final int replicationKeyReconciliationBucketCount;
+
+  /**
+   * The max number of mismatched buckets whose keys are compared in a single key reconciliation.
+   */
+  @Config("replication.key.reconciliation.max.buckets.per.pass")
+  @Default("16")
+  public final int replicationKeyReconciliationMaxBucketsPerPass;
+
   public ReplicationConfig(VerifiableProperties verifiableProperties) {
 
     replicationTokenFactory =
@@ -112,5 +304,52 @@ public class ReplicationConfig {
     replicationMaxLagForWaitTimeInBytes =
         verifiableProperties.getLongInRange("replication.max.lag.for.wait.time.in.bytes", 5242880, 0, 104857600);
     replicationValidateMessageStream = verifiableProperties.getBoolean("replication.validate.message.stream", false);
+    replicationMetadataRequestMaxWaitTimeMs =
+        verifiableProperties.getIntInRange("replication.metadata.request.max.wait.time.ms", 0, 0, 60000);
+    replicationMetadataRequestMaxConcurrentWaits =
+        verifiableProperties.getIntInRange("replication.metadata.request.max.concurrent.waits", 2, 1, 1000);
+    replicationLagPrioritizedSchedulingEnabled =
+        verifiableProperties.getBoolean("replication.lag.prioritized.scheduling.enabled", false);
+    replicationMaxSkippedIterationsForCaughtUpNode =
+        verifiableProperties.getIntInRange("replication.max.skipped.iterations.for.caught.up.node", 4, 0, 1000);
+    replicationBootstrapFetchSizeInBytes =
+        verifiableProperties.getLongInRange("replication.bootstrap.fetch.size.in.bytes", 0, 0, 67108864);
+    replicationBootstrapMinLagInBytes =
+        verifiableProperties.getLongInRange("replication.bootstrap.min.lag.in.bytes", 1073741824, 0, Long.MAX_VALUE);
+    replicationLocalWriteQueueSize =
+        verifiableProperties.getIntInRange("replication.local.write.queue.size", 0, 0, 100);
+    replicationLocalWriteQueueMaxBytes =
+        verifiableProperties.getLongInRange("replication.local.write.queue.max.bytes", 67108864, 1, Long.MAX_VALUE);
+    replicationLocalWriteMaxBytesPerSecPerDisk =
+        verifiableProperties.getLongInRange("replication.local.write.max.bytes.per.sec.per.disk", 0, 0,
+            Long.MAX_VALUE);
+    replicationLocalWriteMinBytesPerSecPerDisk =
+        verifiableProperties.getLongInRange("replication.local.write.min.bytes.per.sec.per.disk", 1048576, 1,
+            Long.MAX_VALUE);
+    replicationForegroundLatencyTargetMs =
+        verifiableProperties.getLongInRange("replication.foreground.latency.target.ms", 0, 0, Long.MAX_VALUE);
+    replicationFetchMaxBytesPerSecPerDatacenter =
+        verifiableProperties.getLongInRange("replication.fetch.max.bytes.per.sec.per.datacenter", 0, 0,
+            Long.MAX_VALUE);
+    replicationTokenLogEnabled = verifiableProperties.getBoolean("replication.token.log.enabled", false);
+    replicationTokenLogCompactionThresholdInBytes =
+        verifiableProperties.getLongInRange("replication.token.log.compaction.threshold.in.bytes", 16777216, 0,
+            Long.MAX_VALUE);
+    replicationMessageValidationThreadCount =
+        verifiableProperties.getIntInRange("replication.message.validation.thread.count", 0, 0, 128);
+    replicationMessageValidationQueueSize =
+        verifiableProperties.getIntInRange("replication.message.validation.queue.size", 1000, 1, 1000000);
+    replicationInterColoCompressionEnabled =
+        verifiableProperties.getBoolean("replication.inter.colo.compression.enabled", false);
+    replicationThreadRebalanceIntervalSeconds =
+        verifiableProperties.getIntInRange("replication.thread.rebalance.interval.seconds", 0, 0, 86400);
+    replicationThreadRebalanceMinImbalancePercent =
+        verifiableProperties.getIntInRange("replication.thread.rebalance.min.imbalance.percent", 20, 0, 100);
+    replicationKeyReconciliationIntervalSeconds =
+        verifiableProperties.getIntInRange("replication.key.reconciliation.interval.seconds", 0, 0, Integer.MAX_VALUE);
+    replicationKeyReconciliationBucketCount =
+        verifiableProperties.getIntInRange("replication.key.reconciliation.bucket.count", 1024, 1, 1048576);
+    replicationKeyReconciliationMaxBucketsPerPass =
+        verifiableProperties.getIntInRange("replication.key.reconciliation.max.buckets.per.pass", 16, 1, 1048576);
   }
 }
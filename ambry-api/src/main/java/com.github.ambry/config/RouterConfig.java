@@ -131,6 +131,64 @@ public class RouterConfig {
   @Default("true")
   public final boolean routerGetCrossDcEnabled;
 
+  /**
+   * Indicates whether put requests for small chunks that are headed to the same replica in the same poll cycle should
+   * be coalesced into a single batch put request. All the servers in the cluster must support batch put requests
+   * before this is enabled.
+   */
+  @Config("router.put.batching.enabled")
+  @Default("false")
+  public final boolean routerPutBatchingEnabled;
+
+  /**
+   * The maximum size of a chunk for its put request to be considered for batching.
+   */
+  @Config("router.put.batch.max.chunk.size.bytes")
+  @Default("64*1024")
+  public final int routerPutBatchMaxChunkSizeBytes;
+
+  /**
+   * The maximum number of put requests that can be coalesced into a single batch put request.
+   */
+  @Config("router.put.batch.max.request.count")
+  @Default("16")
+  public final int routerPutBatchMaxRequestCount;
+
+  /**
+   * The maximum number of data chunks of a single put operation that can be held in memory at any given time. This
+   * bounds the per-upload memory on the frontend to this many chunk buffers; lower values trade upload throughput for
+   * a smaller memory footprint.
+   */
+  @Config("router.put.max.in.mem.chunks")
+  @Default("4")
+  public final int routerPutMaxInMemChunks;
+
+  /**
+   * The maximum number of data chunks of a composite blob that a single get operation can have in flight or buffered
+   * ahead of the consumer. The prefetch window of an operation adapts between 1 and this value to the time it takes
+   * to retrieve a chunk and the time the consumer takes to consume one.
+   */
+  @Config("router.get.max.prefetch.chunks")
+  @Default("16")
+  public final int routerGetMaxPrefetchChunks;
+
+  /**
+   * The memory budget in bytes, shared by all get operations of the router, for data chunks prefetched beyond the
+   * first chunk of each operation's prefetch window. Every operation can always prefetch at least one chunk.
+   */
+  @Config("router.get.prefetch.memory.budget.bytes")
+  @Default("512*1024*1024")
+  public final long routerGetPrefetchMemoryBudgetBytes;
+
+  /**
+   * If true, operations on existing blobs are assigned to scaling units based on the partition of the blob, so that
+   * all the operations on a partition share the connections of a single scaling unit. If false, every operation is
+   * assigned to a random scaling unit. Puts are always assigned to a random scaling unit.
+   */
+  @Config("router.operation.controller.sharding.enabled")
+  @Default("false")
+  public final boolean routerOperationControllerShardingEnabled;
+
   /**
    * Create a RouterConfig instance.
    * @param verifiableProperties the properties map to refer to.
@@ -155,5 +213,17 @@ public class RouterConfig {
     routerGetRequestParallelism = verifiableProperties.getInt("router.get.request.parallelism", 2);
     routerGetSuccessTarget = verifiableProperties.getInt("router.get.success.target", 1);
     routerGetCrossDcEnabled = verifiableProperties.getBoolean("router.get.cross.dc.enabled", true);
+    routerPutBatchingEnabled = verifiableProperties.getBoolean("router.put.batching.enabled", false);
+    routerPutBatchMaxChunkSizeBytes =
+        verifiableProperties.getIntInRange("router.put.batch.max.chunk.size.bytes", 64 * 1024, 0, Integer.MAX_VALUE);
+    routerPutBatchMaxRequestCount =
+        verifiableProperties.getIntInRange("router.put.batch.max.request.count", 16, 2, Integer.MAX_VALUE);
+    routerPutMaxInMemChunks = verifiableProperties.getIntInRange("router.put.max.in.mem.chunks", 4, 1, 64);
+    routerGetMaxPrefetchChunks = verifiableProperties.getIntInRange("router.get.max.prefetch.chunks", 16, 1, 1024);
+    routerGetPrefetchMemoryBudgetBytes =
+        verifiableProperties.getLongInRange("router.get.prefetch.memory.budget.bytes", 512L * 1024 * 1024, 0,
+            Long.MAX_VALUE);
+    routerOperationControllerShardingEnabled =
+        verifiableProperties.getBoolean("router.operation.controller.sharding.enabled", false);
   }
 }
@@ -33,8 +33,25 @@ public class ServerConfig {
   @Default("10")
   public final int serverSchedulerNumOfthreads;
 
+  /**
+   * The number of finished traces of traced requests that the server keeps. The slowest of them are reported.
+   */
+  @Config("server.trace.buffer.size")
+  @Default("1000")
+  public final int serverTraceBufferSize;
+
+  /**
+   * The number of the slowest traces that the server reports.
+   */
+  @Config("server.slowest.traces.count")
+  @Default("10")
+  public final int serverSlowestTracesCount;
+
   public ServerConfig(VerifiableProperties verifiableProperties) {
     serverRequestHandlerNumOfThreads = verifiableProperties.getInt("server.request.handler.num.of.threads", 7);
     serverSchedulerNumOfthreads = verifiableProperties.getInt("server.scheduler.num.of.threads", 10);
+    serverTraceBufferSize = verifiableProperties.getIntInRange("server.trace.buffer.size", 1000, 1, Integer.MAX_VALUE);
+    serverSlowestTracesCount =
+        verifiableProperties.getIntInRange("server.slowest.traces.count", 10, 0, Integer.MAX_VALUE);
   }
 }
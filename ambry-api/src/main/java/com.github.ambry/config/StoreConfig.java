@@ -75,6 +75,23 @@ public class StoreConfig {
   @Default("0.01")
   public final double storeIndexBloomMaxFalsePositiveProbability;
 
+  /**
+   * Whether new index segments use a split block bloom filter, which costs a single cache miss per lookup, instead of
+   * a classic bloom filter. Bloom filters of either kind that are already on disk are always readable.
+   */
+  @Config("store.index.bloom.blocked.filter.enabled")
+  @Default("false")
+  public final boolean storeIndexBloomBlockedFilterEnabled;
+
+  /**
+   * Whether the index keeps a bit sliced bloom filter over all its mapped segments, which finds the segments that may
+   * hold a key in one pass instead of probing the bloom filter of every segment. The keys of all mapped segments are
+   * read into it on startup.
+   */
+  @Config("store.index.segment.filter.enabled")
+  @Default("false")
+  public final boolean storeIndexSegmentFilterEnabled;
+
   /**
    * How long (in days) a key must be in deleted state before it is hard deleted.
    */
@@ -105,6 +122,9 @@ public class StoreConfig {
     storeIndexMaxNumberOfInmemElements = verifiableProperties.getInt("store.index.max.number.of.inmem.elements", 10000);
     storeIndexBloomMaxFalsePositiveProbability =
         verifiableProperties.getDoubleInRange("store.index.bloom.max.false.positive.probability", 0.01, 0.0, 1.0);
+    storeIndexBloomBlockedFilterEnabled =
+        verifiableProperties.getBoolean("store.index.bloom.blocked.filter.enabled", false);
+    storeIndexSegmentFilterEnabled = verifiableProperties.getBoolean("store.index.segment.filter.enabled", false);
     storeJournalFactory =
         verifiableProperties.getString("store.journal.factory", "com.github.ambry.store.InMemoryJournalFactory");
     storeMaxNumberOfEntriesToReturnFromJournal =
@@ -14,6 +14,9 @@
 package com.github.ambry.network;
 
 import com.codahale.metrics.Histogram;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Trace;
+import com.github.ambry.utils.Tracer;
 
 
 /**
@@ -25,17 +28,40 @@ public class ServerNetworkResponseMetrics extends NetworkSendMetrics {
   private final Histogram responseTotalTime;
   private final Histogram responseSendTimeBySize;
   private final Histogram responseTotalTimeBySize;
+  private final Tracer tracer;
+  private final Trace trace;
   private long timeSpentTillNow;
 
   public ServerNetworkResponseMetrics(Histogram responseQueueTime, Histogram responseSendTime,
       Histogram responseTotalTime, Histogram responseSendTimeBySize, Histogram responseTotalTimeBySize,
       long timeSpentTillNow) {
+    this(responseQueueTime, responseSendTime, responseTotalTime, responseSendTimeBySize, responseTotalTimeBySize,
+        timeSpentTillNow, null, null);
+  }
+
+  /**
+   * Creates the metrics for a response to a request that may be traced. The time the response spends in the queue and
+   * being sent are added to the trace, which is finished once the response is sent.
+   * @param responseQueueTime the histogram for the time spent by the response in the queue.
+   * @param responseSendTime the histogram for the time spent sending the response.
+   * @param responseTotalTime the histogram for the total time spent on the request.
+   * @param responseSendTimeBySize the histogram for the send time by the size of the blob. Can be {@code null}.
+   * @param responseTotalTimeBySize the histogram for the total time by the size of the blob. Can be {@code null}.
+   * @param timeSpentTillNow the time spent on the request before the response is queued.
+   * @param tracer the {@link Tracer} that records the trace once it is finished.
+   * @param trace the {@link Trace} of the request, or {@code null} if the request is not traced.
+   */
+  public ServerNetworkResponseMetrics(Histogram responseQueueTime, Histogram responseSendTime,
+      Histogram responseTotalTime, Histogram responseSendTimeBySize, Histogram responseTotalTimeBySize,
+      long timeSpentTillNow, Tracer tracer, Trace trace) {
     super(responseSendTime);
     this.responseQueueTime = responseQueueTime;
     this.responseTotalTime = responseTotalTime;
     this.responseSendTimeBySize = responseSendTimeBySize;
     this.responseTotalTimeBySize = responseTotalTimeBySize;
     this.timeSpentTillNow = timeSpentTillNow;
+    this.tracer = tracer;
+    this.trace = trace;
   }
 
   /**
@@ -45,6 +71,10 @@ public class ServerNetworkResponseMetrics extends NetworkSendMetrics {
   public void updateQueueTime(long value) {
     responseQueueTime.update(value);
     timeSpentTillNow += value;
+    if (trace != null) {
+      long nowMs = SystemTime.getInstance().milliseconds();
+      trace.addSpan("ResponseQueue", null, nowMs - value, nowMs);
+    }
   }
 
   /**
@@ -62,5 +92,10 @@ public class ServerNetworkResponseMetrics extends NetworkSendMetrics {
     if (responseTotalTimeBySize != null) {
       responseTotalTimeBySize.update(timeSpentTillNow);
     }
+    if (trace != null) {
+      long nowMs = SystemTime.getInstance().milliseconds();
+      trace.addSpan("NetworkSend", null, nowMs - value, nowMs);
+      tracer.finishTrace(trace);
+    }
   }
 }
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.github.ambry.messageformat.BlobInfo;
+
+
+/**
+ * Represents the result of a getBlob operation that also fetched the {@link BlobInfo} of the blob.
+ */
+public class GetBlobResult {
+  private final BlobInfo blobInfo;
+  private final ReadableStreamChannel blobDataChannel;
+
+  /**
+   * Construct a GetBlobResult.
+   * @param blobInfo the {@link BlobInfo} of the blob.
+   * @param blobDataChannel the {@link ReadableStreamChannel} that represents the blob data.
+   */
+  public GetBlobResult(BlobInfo blobInfo, ReadableStreamChannel blobDataChannel) {
+    this.blobInfo = blobInfo;
+    this.blobDataChannel = blobDataChannel;
+  }
+
+  /**
+   * @return the {@link BlobInfo} of the blob.
+   */
+  public BlobInfo getBlobInfo() {
+    return blobInfo;
+  }
+
+  /**
+   * @return the {@link ReadableStreamChannel} that represents the blob data.
+   */
+  public ReadableStreamChannel getBlobDataChannel() {
+    return blobDataChannel;
+  }
+}
@@ -39,7 +39,8 @@ public interface ReadableStreamChannel extends Channel {
    * contain the bytes read (that should be equal to the size of the channel if there were no exceptions) on success
    * or failure. If the read failed, they will also contain the exception that caused the failure.
    * <p/>
-   * It is guaranteed that a read will be acknowledged as either a success or failure.
+   * It is guaranteed that a read will be acknowledged as either a success or failure. Implementations may fail a read
+   * from a channel that was closed before the read started.
    * @param asyncWritableChannel the {@link AsyncWritableChannel} to read the data into.
    * @param callback the {@link Callback} that will be invoked either when all the data in the channel has been emptied
    *                 into the {@code asyncWritableChannel} or if there is an exception in doing so. This can be null.
@@ -22,6 +22,12 @@ import java.util.concurrent.Future;
 
 /**
  * The router interface for Ambry that helps to interact with Ambry server.
+ * <p/>
+ * The {@link ReadableStreamChannel} returned by {@link #getBlob(String)} and as part of the {@link GetBlobResult}
+ * returned by {@link #getBlobWithInfo(String)} has to be either read from or closed. Closing it before reading from it
+ * tells the router that the blob data is not needed, so the router can stop fetching the blob and release what it
+ * fetched. A read from a channel that was closed fails. The non blocking router fails such a read, and the blob
+ * operation, with a {@link RouterException} with error code {@link RouterErrorCode#UnexpectedInternalError}.
  */
 public interface Router extends Closeable {
   /**
@@ -56,6 +62,23 @@ public interface Router extends Closeable {
    */
   public Future<ReadableStreamChannel> getBlob(String blobId, Callback<ReadableStreamChannel> callback);
 
+  /**
+   * Requests for the {@link BlobInfo} and the blob data asynchronously, in a single round trip to the server, and
+   * returns a future that will eventually contain a {@link GetBlobResult} on a successful response.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} and blob data are requested.
+   * @return A future that would contain a {@link GetBlobResult} eventually.
+   */
+  public Future<GetBlobResult> getBlobWithInfo(String blobId);
+
+  /**
+   * Requests for the {@link BlobInfo} and the blob data asynchronously, in a single round trip to the server, and
+   * invokes the {@link Callback} when the request completes.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} and blob data are requested.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link GetBlobResult} eventually.
+   */
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback);
+
   /**
    * Requests for a new blob to be put asynchronously and returns a future that will eventually contain the BlobId of
    * the new blob on a successful response.
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.github.ambry.utils.MurmurHash;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A compact summary of the keys in a store, used to find the keys that two replicas of a partition disagree on without
+ * exchanging their key lists.
+ * <p/>
+ * Every key is hashed into one of a fixed number of buckets. The summary of a bucket is the number of keys in it and
+ * the sum of the hashes of those keys. Since the sum does not depend on the order in which keys are added, two
+ * replicas with the same keys have the same summary no matter how the keys are laid out in their stores, and the
+ * summary of a store is the sum of the summaries of its parts. Only the buckets whose summaries differ need to be
+ * compared key by key.
+ */
+public class KeySummary {
+  private static final long Hash_Seed = 0x5eed;
+
+  private final long[] digests;
+  private final int[] keyCounts;
+
+  /**
+   * Creates an empty summary.
+   * @param bucketCount the number of buckets to hash keys into.
+   */
+  public KeySummary(int bucketCount) {
+    if (bucketCount <= 0) {
+      throw new IllegalArgumentException("Bucket count should be positive: " + bucketCount);
+    }
+    digests = new long[bucketCount];
+    keyCounts = new int[bucketCount];
+  }
+
+  /**
+   * Creates a summary from the summaries of its buckets.
+   * @param digests the sum of the key hashes of each bucket.
+   * @param keyCounts the number of keys in each bucket.
+   */
+  public KeySummary(long[] digests, int[] keyCounts) {
+    if (digests.length == 0 || digests.length != keyCounts.length) {
+      throw new IllegalArgumentException(
+          "Invalid bucket summaries: " + digests.length + " digests and " + keyCounts.length + " key counts");
+    }
+    this.digests = digests;
+    this.keyCounts = keyCounts;
+  }
+
+  /**
+   * @param key the key to hash.
+   * @param bucketCount the number of buckets of the summary.
+   * @return the bucket the key falls into.
+   */
+  public static int getBucket(StoreKey key, int bucketCount) {
+    return getBucketForHash(hash(key), bucketCount);
+  }
+
+  /**
+   * Adds a key to the summary.
+   * @param key the key to add.
+   */
+  public void add(StoreKey key) {
+    long hash = hash(key);
+    int bucket = getBucketForHash(hash, digests.length);
+    digests[bucket] += hash;
+    keyCounts[bucket]++;
+  }
+
+  /**
+   * Adds all the keys of another summary with the same number of buckets to this summary.
+   * @param keySummary the summary to add.
+   */
+  public void add(KeySummary keySummary) {
+    checkBucketCount(keySummary);
+    for (int i = 0; i < digests.length; i++) {
+      digests[i] += keySummary.digests[i];
+      keyCounts[i] += keySummary.keyCounts[i];
+    }
+  }
+
+  /**
+   * @return the number of buckets in the summary.
+   */
+  public int getBucketCount() {
+    return digests.length;
+  }
+
+  /**
+   * @param bucket the bucket.
+   * @return the sum of the hashes of the keys in the bucket.
+   */
+  public long getDigest(int bucket) {
+    return digests[bucket];
+  }
+
+  /**
+   * @param bucket the bucket.
+   * @return the number of keys in the bucket.
+   */
+  public int getKeyCount(int bucket) {
+    return keyCounts[bucket];
+  }
+
+  /**
+   * Finds the buckets in which another summary with the same number of buckets has keys that this summary may not
+   * have, i.e. the buckets whose summaries differ, leaving out the buckets that are empty in the other summary.
+   * @param keySummary the other summary.
+   * @return the buckets in which the other summary may have keys that this summary does not have.
+   */
+  public List<Integer> getMismatchedBuckets(KeySummary keySummary) {
+    checkBucketCount(keySummary);
+    List<Integer> mismatchedBuckets = new ArrayList<Integer>();
+    for (int i = 0; i < digests.length; i++) {
+      if (keySummary.keyCounts[i] > 0 && (digests[i] != keySummary.digests[i]
+          || keyCounts[i] != keySummary.keyCounts[i])) {
+        mismatchedBuckets.add(i);
+      }
+    }
+    return mismatchedBuckets;
+  }
+
+  private void checkBucketCount(KeySummary keySummary) {
+    if (keySummary.digests.length != digests.length) {
+      throw new IllegalArgumentException(
+          "Bucket counts do not match: " + keySummary.digests.length + " and " + digests.length);
+    }
+  }
+
+  private static long hash(StoreKey key) {
+    byte[] keyBytes = key.toBytes();
+    return MurmurHash.hash2_64(ByteBuffer.wrap(keyBytes), 0, keyBytes.length, Hash_Seed);
+  }
+
+  private static int getBucketForHash(long hash, int bucketCount) {
+    // the high bits pick the bucket, so that keys in a bucket still differ in their low bits
+    return (int) ((hash >>> 32) % bucketCount);
+  }
+}
@@ -76,6 +76,27 @@ public interface Store {
   Set<StoreKey> findMissingKeys(List<StoreKey> keys)
       throws StoreException;
 
+  /**
+   * Summarizes the keys in the store, counting every key that was put or deleted in the store once, so that the keys of
+   * two replicas can be compared without exchanging them.
+   * @param bucketCount the number of buckets of the summary.
+   * @return the {@link KeySummary} of the keys in the store.
+   * @throws StoreException
+   */
+  KeySummary getKeySummary(int bucketCount)
+      throws StoreException;
+
+  /**
+   * Returns the latest state of every key in the store that falls into one of the given buckets of a
+   * {@link KeySummary}.
+   * @param bucketCount the number of buckets of the summary.
+   * @param buckets the buckets whose keys are needed.
+   * @return a {@link MessageInfo} with the latest state of each key in the buckets.
+   * @throws StoreException
+   */
+  List<MessageInfo> getEntriesInBuckets(int bucketCount, Set<Integer> buckets)
+      throws StoreException;
+
   /**
    * Checks if the key is deleted. Returns true is the key is deleted. Returns false if the
    * key is present, not available, ttl expired.
@@ -170,6 +170,40 @@ public class InMemoryRouter implements Router {
     return futureResult;
   }
 
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId) {
+    return getBlobWithInfo(blobId, null);
+  }
+
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback) {
+    FutureResult<GetBlobResult> futureResult = new FutureResult<GetBlobResult>();
+    handlePrechecks(futureResult, callback);
+    GetBlobResult operationResult = null;
+    Exception exception = null;
+    if (blobId == null || blobId.length() != BLOB_ID_SIZE) {
+      completeOperation(futureResult, callback, null,
+          new RouterException("Cannot accept operation because blob ID is invalid", RouterErrorCode.InvalidBlobId));
+    } else {
+      try {
+        if (deletedBlobs.contains(blobId)) {
+          exception = new RouterException("Blob deleted", RouterErrorCode.BlobDeleted);
+        } else if (!blobs.containsKey(blobId)) {
+          exception = new RouterException("Blob not found", RouterErrorCode.BlobDoesNotExist);
+        } else {
+          InMemoryBlob blob = blobs.get(blobId);
+          operationResult = new GetBlobResult(new BlobInfo(blob.getBlobProperties(), blob.getUserMetadata()),
+              new ByteBufferRSC(blob.getBlob()));
+        }
+      } catch (Exception e) {
+        exception = new RouterException(e, RouterErrorCode.UnexpectedInternalError);
+      } finally {
+        completeOperation(futureResult, callback, operationResult, exception);
+      }
+    }
+    return futureResult;
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
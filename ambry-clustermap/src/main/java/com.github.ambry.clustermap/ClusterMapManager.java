@@ -15,6 +15,9 @@ package com.github.ambry.clustermap;
 
 import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.config.ClusterMapConfig;
+import com.github.ambry.utils.Scheduler;
+import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -31,6 +34,9 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.ambry.utils.Utils.readStringFromFile;
 import static com.github.ambry.utils.Utils.writeJsonToFile;
@@ -42,9 +48,12 @@ import static com.github.ambry.utils.Utils.writeJsonToFile;
  */
 public class ClusterMapManager implements ClusterMap {
   protected final HardwareLayout hardwareLayout;
-  protected final PartitionLayout partitionLayout;
+  // Replaced as a whole when a new partition layout is loaded, so readers see either the old or the new layout.
+  protected volatile PartitionLayout partitionLayout;
   private final MetricRegistry metricRegistry;
   private final ClusterMapMetrics clusterMapMetrics;
+  private final List<ClusterMapChangeListener> listeners = new CopyOnWriteArrayList<ClusterMapChangeListener>();
+  private Scheduler partitionLayoutReloadScheduler = null;
 
   private Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -72,6 +81,90 @@ public class ClusterMapManager implements ClusterMap {
     this.partitionLayout = new PartitionLayout(hardwareLayout, new JSONObject(readStringFromFile(partitionLayoutPath)));
     this.metricRegistry = new MetricRegistry();
     this.clusterMapMetrics = new ClusterMapMetrics(this.hardwareLayout, this.partitionLayout, this.metricRegistry);
+    if (clusterMapConfig.clusterMapPartitionLayoutReloadIntervalMs > 0) {
+      partitionLayoutReloadScheduler = new Scheduler(1, "partition-layout-reloader-", true);
+      partitionLayoutReloadScheduler.startup();
+      long reloadIntervalMs = clusterMapConfig.clusterMapPartitionLayoutReloadIntervalMs;
+      partitionLayoutReloadScheduler.schedule("partition layout reloader",
+          new PartitionLayoutReloader(partitionLayoutPath), reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops watching the partition layout file for changes, if it was being watched.
+   */
+  public void close() {
+    if (partitionLayoutReloadScheduler != null) {
+      partitionLayoutReloadScheduler.shutdown();
+      partitionLayoutReloadScheduler = null;
+    }
+  }
+
+  /**
+   * Replaces the partition layout with the one described by {@code jsonObject}, which must use the same hardware
+   * layout. The new layout may add partitions and replicas, and change the state of partitions, but may not remove any
+   * partition or replica since they could still be in use. Operations that are in flight keep using the partitions
+   * and replicas of the old layout, which remain equal to their counterparts in the new layout. The registered
+   * {@link ClusterMapChangeListener}s are told about the replicas that were added.
+   * @param jsonObject the JSON form of the new partition layout.
+   * @return the replicas that were added.
+   * @throws JSONException if {@code jsonObject} is not a valid partition layout.
+   * @throws IllegalStateException if the new layout is invalid or removes a partition or a replica.
+   */
+  public List<ReplicaId> updatePartitionLayout(JSONObject jsonObject)
+      throws JSONException {
+    List<ReplicaId> addedReplicas = new ArrayList<ReplicaId>();
+    synchronized (this) {
+      PartitionLayout newPartitionLayout = new PartitionLayout(hardwareLayout, jsonObject);
+      for (PartitionId partitionId : partitionLayout.getPartitions()) {
+        Partition newPartition = newPartitionLayout.getPartition(partitionId);
+        if (newPartition == null) {
+          throw new IllegalStateException("New partition layout removes " + partitionId);
+        }
+        Set<DiskId> newDisks = new HashSet<DiskId>();
+        for (Replica replica : newPartition.getReplicas()) {
+          newDisks.add(replica.getDiskId());
+        }
+        for (Replica replica : ((Partition) partitionId).getReplicas()) {
+          if (!newDisks.contains(replica.getDiskId())) {
+            throw new IllegalStateException("New partition layout removes " + replica);
+          }
+        }
+      }
+      for (PartitionId partitionId : newPartitionLayout.getPartitions()) {
+        Partition newPartition = (Partition) partitionId;
+        Partition oldPartition = partitionLayout.getPartition(partitionId);
+        Set<DiskId> oldDisks = new HashSet<DiskId>();
+        if (oldPartition != null) {
+          // a layout that changes the state of the partition overrides the state that replicas reported
+          if (oldPartition.isReportedReadOnly() && oldPartition.partitionState == newPartition.partitionState) {
+            newPartition.onPartitionReadOnly();
+          }
+          for (Replica replica : oldPartition.getReplicas()) {
+            oldDisks.add(replica.getDiskId());
+          }
+        }
+        for (Replica replica : ((Partition) partitionId).getReplicas()) {
+          if (!oldDisks.contains(replica.getDiskId())) {
+            addedReplicas.add(replica);
+          }
+        }
+      }
+      partitionLayout = newPartitionLayout;
+      clusterMapMetrics.onPartitionLayoutChange(newPartitionLayout);
+    }
+    logger.info("Loaded new partition layout with {} partitions and {} added replicas",
+        partitionLayout.getPartitionCount(), addedReplicas.size());
+    if (!addedReplicas.isEmpty()) {
+      for (ClusterMapChangeListener listener : listeners) {
+        try {
+          listener.onReplicasAdded(Collections.unmodifiableList(addedReplicas));
+        } catch (Exception e) {
+          logger.error("Cluster map listener " + listener + " failed to handle added replicas", e);
+        }
+      }
+    }
+    return addedReplicas;
   }
 
   public void persist(String hardwareLayoutPath, String partitionLayoutPath)
@@ -93,6 +186,11 @@ public class ClusterMapManager implements ClusterMap {
     return partitionLayout.getWritablePartitions();
   }
 
+  @Override
+  public PartitionId getRandomWritablePartition(Collection<PartitionId> partitionIdsToExclude) {
+    return partitionLayout.getRandomWritablePartition(ThreadLocalRandom.current(), partitionIdsToExclude);
+  }
+
   @Override
   public PartitionId getPartitionIdFromStream(DataInputStream stream)
       throws IOException {
@@ -115,29 +213,16 @@ public class ClusterMapManager implements ClusterMap {
 
   @Override
   public List<ReplicaId> getReplicaIds(DataNodeId dataNodeId) {
-    List<Replica> replicas = getReplicas(dataNodeId);
-    return new ArrayList<ReplicaId>(replicas);
+    return new ArrayList<ReplicaId>(partitionLayout.getReplicas(dataNodeId));
   }
 
   public List<Replica> getReplicas(DataNodeId dataNodeId) {
-    List<Replica> replicas = new ArrayList<Replica>();
-    for (PartitionId partition : partitionLayout.getPartitions()) {
-      for (Replica replica : ((Partition) partition).getReplicas()) {
-        if (replica.getDataNodeId().equals(dataNodeId)) {
-          replicas.add(replica);
-        }
-      }
-    }
-    return replicas;
+    return new ArrayList<Replica>(partitionLayout.getReplicas(dataNodeId));
   }
 
   @Override
   public List<DataNodeId> getDataNodeIds() {
-    List<DataNodeId> dataNodeIds = new ArrayList<DataNodeId>();
-    for (Datacenter datacenter : hardwareLayout.getDatacenters()) {
-      dataNodeIds.addAll(datacenter.getDataNodes());
-    }
-    return dataNodeIds;
+    return new ArrayList<DataNodeId>(hardwareLayout.getDataNodes());
   }
 
   @Override
@@ -161,42 +246,15 @@ public class ClusterMapManager implements ClusterMap {
   }
 
   public long getAllocatedRawCapacityInBytes(Datacenter datacenter) {
-    long allocatedRawCapacityInBytes = 0;
-    for (PartitionId partition : partitionLayout.getPartitions()) {
-      for (Replica replica : ((Partition) partition).getReplicas()) {
-        Disk disk = (Disk) replica.getDiskId();
-        if (disk.getDataNode().getDatacenter().equals(datacenter)) {
-          allocatedRawCapacityInBytes += replica.getCapacityInBytes();
-        }
-      }
-    }
-    return allocatedRawCapacityInBytes;
+    return partitionLayout.getAllocatedRawCapacityInBytes(datacenter);
   }
 
   public long getAllocatedRawCapacityInBytes(DataNodeId dataNode) {
-    long allocatedRawCapacityInBytes = 0;
-    for (PartitionId partition : partitionLayout.getPartitions()) {
-      for (Replica replica : ((Partition) partition).getReplicas()) {
-        Disk disk = (Disk) replica.getDiskId();
-        if (disk.getDataNode().equals(dataNode)) {
-          allocatedRawCapacityInBytes += replica.getCapacityInBytes();
-        }
-      }
-    }
-    return allocatedRawCapacityInBytes;
+    return partitionLayout.getAllocatedRawCapacityInBytes(dataNode);
   }
 
   public long getAllocatedRawCapacityInBytes(Disk disk) {
-    long allocatedRawCapacityInBytes = 0;
-    for (PartitionId partition : partitionLayout.getPartitions()) {
-      for (Replica replica : ((Partition) partition).getReplicas()) {
-        Disk currentDisk = (Disk) replica.getDiskId();
-        if (currentDisk.equals(disk)) {
-          allocatedRawCapacityInBytes += replica.getCapacityInBytes();
-        }
-      }
-    }
-    return allocatedRawCapacityInBytes;
+    return partitionLayout.getAllocatedRawCapacityInBytes(disk);
   }
 
   public long getUnallocatedRawCapacityInBytes() {
@@ -475,7 +533,13 @@ public class ClusterMapManager implements ClusterMap {
     return !(partitionLayout != null ? !partitionLayout.equals(that.partitionLayout) : that.partitionLayout != null);
   }
 
+  @Override
+  public void registerClusterMapListener(ClusterMapChangeListener listener) {
+    listeners.add(listener);
+  }
+
   public void onReplicaEvent(ReplicaId replicaId, ReplicaEventType event) {
+    boolean wasDown = replicaId.isDown();
     switch (event) {
       case Disk_Error:
         ((Disk) replicaId.getDiskId()).onDiskError();
@@ -490,8 +554,48 @@ public class ClusterMapManager implements ClusterMap {
         ((DataNode) replicaId.getDataNodeId()).onNodeResponse();
         break;
       case Partition_ReadOnly:
-        ((Partition) replicaId.getPartitionId()).onPartitionReadOnly();
+        // the replica may belong to a layout that was replaced since, so the partition of the current one is marked.
+        // Holding the lock keeps a layout that is being loaded from missing the mark.
+        synchronized (this) {
+          Partition partition = partitionLayout.getPartition(replicaId.getPartitionId());
+          if (partition != null) {
+            partition.onPartitionReadOnly();
+          }
+        }
         break;
     }
+    if (event == ReplicaEventType.Partition_ReadOnly || replicaId.isDown() != wasDown) {
+      partitionLayout.onWritablePartitionsChanged();
+    }
+  }
+
+  /**
+   * Loads the partition layout file whenever it is modified and swaps it in.
+   */
+  private class PartitionLayoutReloader implements Runnable {
+    private final File partitionLayoutFile;
+    private long lastModifiedTimeInMs;
+
+    PartitionLayoutReloader(String partitionLayoutPath) {
+      this.partitionLayoutFile = new File(partitionLayoutPath);
+      this.lastModifiedTimeInMs = partitionLayoutFile.lastModified();
+    }
+
+    @Override
+    public void run() {
+      long modifiedTimeInMs = partitionLayoutFile.lastModified();
+      if (modifiedTimeInMs == lastModifiedTimeInMs) {
+        return;
+      }
+      lastModifiedTimeInMs = modifiedTimeInMs;
+      try {
+        updatePartitionLayout(new JSONObject(readStringFromFile(partitionLayoutFile.getAbsolutePath())));
+        clusterMapMetrics.partitionLayoutReloadCount.inc();
+      } catch (Exception e) {
+        // the file may be partially written, in which case the next modification is picked up.
+        logger.error("Failed to reload partition layout from " + partitionLayoutFile, e);
+        clusterMapMetrics.partitionLayoutReloadErrorCount.inc();
+      }
+    }
   }
 }
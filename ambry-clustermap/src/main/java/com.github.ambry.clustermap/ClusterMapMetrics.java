@@ -13,6 +13,7 @@
  */
 package com.github.ambry.clustermap;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import java.util.ArrayList;
@@ -25,7 +26,7 @@ import java.util.List;
 class ClusterMapMetrics {
   private MetricRegistry registry;
   private final HardwareLayout hardwareLayout;
-  private final PartitionLayout partitionLayout;
+  private volatile PartitionLayout partitionLayout;
 
   public final Gauge<Long> hardwareLayoutVersion;
   public final Gauge<Long> partitionLayoutVersion;
@@ -54,6 +55,9 @@ class ClusterMapMetrics {
   public final Gauge<Long> allocatedRawCapacityInBytes;
   public final Gauge<Long> allocatedUsableCapacityInBytes;
 
+  public final Counter partitionLayoutReloadCount;
+  public final Counter partitionLayoutReloadErrorCount;
+
   public ClusterMapMetrics(HardwareLayout hardwareLayout, PartitionLayout partitionLayout, MetricRegistry registry) {
     this.registry = registry;
     this.hardwareLayout = hardwareLayout;
@@ -198,6 +202,11 @@ class ClusterMapMetrics {
     registry.register(MetricRegistry.name(ClusterMap.class, "allocatedUsableCapacityInBytes"),
         allocatedUsableCapacityInBytes);
 
+    this.partitionLayoutReloadCount =
+        registry.counter(MetricRegistry.name(ClusterMap.class, "PartitionLayoutReloadCount"));
+    this.partitionLayoutReloadErrorCount =
+        registry.counter(MetricRegistry.name(ClusterMap.class, "PartitionLayoutReloadErrorCount"));
+
     dataNodeStateList = new ArrayList<Gauge<Long>>();
     diskStateList = new ArrayList<Gauge<Long>>();
 
@@ -237,6 +246,14 @@ class ClusterMapMetrics {
     dataNodeStateList.add(diskState);
   }
 
+  /**
+   * Makes the metrics that are based on the partition layout report on a new partition layout.
+   * @param partitionLayout the partition layout that replaced the current one.
+   */
+  void onPartitionLayoutChange(PartitionLayout partitionLayout) {
+    this.partitionLayout = partitionLayout;
+  }
+
   private boolean isMajorityOfReplicasDown() {
     boolean isMajorityReplicasDown = false;
     for (PartitionId partition : partitionLayout.getPartitions()) {
@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -34,6 +35,7 @@ public class HardwareLayout {
   private final String clusterName;
   private final long version;
   private final ArrayList<Datacenter> datacenters;
+  private final List<DataNode> dataNodes;
   private final long rawCapacityInBytes;
   private final long dataNodeCount;
   private final long diskCount;
@@ -56,6 +58,11 @@ public class HardwareLayout {
           .add(i, new Datacenter(this, jsonObject.getJSONArray("datacenters").getJSONObject(i), clusterMapConfig));
     }
 
+    List<DataNode> dataNodes = new ArrayList<DataNode>();
+    for (Datacenter datacenter : datacenters) {
+      dataNodes.addAll(datacenter.getDataNodes());
+    }
+    this.dataNodes = Collections.unmodifiableList(dataNodes);
     this.rawCapacityInBytes = calculateRawCapacityInBytes();
     this.dataNodeCount = calculateDataNodeCount();
     this.diskCount = calculateDiskCount();
@@ -77,6 +84,13 @@ public class HardwareLayout {
     return datacenters;
   }
 
+  /**
+   * @return an unmodifiable list of the data nodes in all the datacenters.
+   */
+  public List<DataNode> getDataNodes() {
+    return dataNodes;
+  }
+
   public long getRawCapacityInBytes() {
     return rawCapacityInBytes;
   }
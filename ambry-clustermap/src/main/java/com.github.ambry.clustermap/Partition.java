@@ -45,6 +45,8 @@ public class Partition extends PartitionId {
   PartitionState partitionState;
   long replicaCapacityInBytes;
   List<Replica> replicas;
+  // set when a replica reports the partition as read-only, without changing the state in the layout
+  private volatile boolean reportedReadOnly = false;
 
   private Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -102,7 +104,7 @@ public class Partition extends PartitionId {
 
   @Override
   public PartitionState getPartitionState() {
-    return partitionState;
+    return reportedReadOnly ? PartitionState.READ_ONLY : partitionState;
   }
 
   @Override
@@ -208,7 +210,7 @@ public class Partition extends PartitionId {
 
     Partition partition = (Partition) o;
 
-    return id == partition.id;
+    return id.equals(partition.id);
   }
 
   @Override
@@ -226,8 +228,18 @@ public class Partition extends PartitionId {
     return id.compareTo(other.id);
   }
 
+  /**
+   * Marks the partition as read-only because a replica reported it to be. The state in the layout is left as is, so
+   * that it is not persisted. The mark lasts until a reloaded partition layout changes the state of the partition.
+   */
   public void onPartitionReadOnly() {
-    // @todo: Maintain state and handle partition errors. Also note that this method could be accessed concurrently,
-    // and needs to be thread-safe.
+    reportedReadOnly = true;
+  }
+
+  /**
+   * @return {@code true} if a replica reported the partition as read-only.
+   */
+  boolean isReportedReadOnly() {
+    return reportedReadOnly;
   }
 }
@@ -13,6 +13,12 @@
  */
 package com.github.ambry.clustermap;
 
+import com.github.ambry.utils.SystemTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -35,6 +41,9 @@ import java.util.Set;
  */
 public class PartitionLayout {
   private static final long MinPartitionId = 0;
+  // Resources that are down come back up once their backoff expires without any event being raised, so the writable
+  // partitions are also recomputed at this interval.
+  private static final long WritablePartitionsRefreshIntervalMs = 1000;
 
   private final HardwareLayout hardwareLayout;
   private final String clusterName;
@@ -44,6 +53,18 @@ public class PartitionLayout {
   private long maxPartitionId;
   private long allocatedRawCapacityInBytes;
   private long allocatedUsableCapacityInBytes;
+  private volatile WritablePartitionSet writablePartitionSet;
+  // set when a state change may have changed the writable partitions, cleared when the snapshot is rebuilt
+  private volatile boolean writablePartitionsChanged = true;
+  // held by the caller that rebuilds the snapshot of writable partitions
+  private final AtomicBoolean refreshingWritablePartitions = new AtomicBoolean(false);
+
+  // Secondary indexes that are kept up to date as partitions and replicas are added, so that per data node and per disk
+  // lookups do not have to go through every replica in the cluster. The lists in these maps are never modified; adding
+  // a replica replaces the list.
+  private final Map<DataNodeId, List<Replica>> replicasByDataNode = new ConcurrentHashMap<DataNodeId, List<Replica>>();
+  private final Map<DiskId, List<Replica>> replicasByDisk = new ConcurrentHashMap<DiskId, List<Replica>>();
+  private final Map<Object, Long> allocatedRawCapacityInBytesByResource = new ConcurrentHashMap<Object, Long>();
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -110,9 +131,65 @@ public class PartitionLayout {
     return new ArrayList<PartitionId>(partitionMap.values());
   }
 
+  /**
+   * Gets the partitions that are available for writes. These are the READ_WRITE partitions whose replicas are all up,
+   * or all the READ_WRITE partitions if there are no such partitions.
+   * @return a new list of the writable partitions that the caller is free to modify.
+   */
   public List<PartitionId> getWritablePartitions() {
-    List<PartitionId> writablePartitions = new ArrayList();
-    List<PartitionId> healthyWritablePartitions = new ArrayList();
+    return new ArrayList<PartitionId>(getWritablePartitionSet().getPartitions());
+  }
+
+  /**
+   * Picks one of the partitions returned by {@link #getWritablePartitions()} at random. Partitions are weighted by how
+   * much of the capacity of the disks they live on they account for, so that writes are spread evenly across disks.
+   * @param random the source of randomness to use.
+   * @param partitionIdsToExclude the partitions that must not be picked.
+   * @return the picked partition, or {@code null} if there are no writable partitions other than the excluded ones.
+   */
+  public PartitionId getRandomWritablePartition(Random random, Collection<PartitionId> partitionIdsToExclude) {
+    return getWritablePartitionSet().pick(random, partitionIdsToExclude);
+  }
+
+  /**
+   * Marks the current snapshot of writable partitions as stale. Must be called whenever the state of a partition or of
+   * a replica changes in a way that may change the set of writable partitions.
+   */
+  void onWritablePartitionsChanged() {
+    writablePartitionsChanged = true;
+  }
+
+  /**
+   * Returns the snapshot of writable partitions, rebuilding it if it is stale. Only one caller rebuilds the snapshot at
+   * a time, while the others keep using the stale one until it is replaced.
+   * @return the snapshot of writable partitions.
+   */
+  private WritablePartitionSet getWritablePartitionSet() {
+    WritablePartitionSet current = writablePartitionSet;
+    long nowMs = SystemTime.getInstance().milliseconds();
+    if (current == null || writablePartitionsChanged
+        || nowMs - current.getCreationTimeMs() >= WritablePartitionsRefreshIntervalMs) {
+      if (refreshingWritablePartitions.compareAndSet(false, true)) {
+        try {
+          // cleared before the rebuild, so that a change made while rebuilding is picked up by the next call
+          writablePartitionsChanged = false;
+          current = computeWritablePartitionSet();
+          writablePartitionSet = current;
+        } finally {
+          refreshingWritablePartitions.set(false);
+        }
+      } else if (current == null) {
+        // there is no snapshot to fall back on while the first one is being built
+        current = computeWritablePartitionSet();
+      }
+    }
+    return current;
+  }
+
+  private WritablePartitionSet computeWritablePartitionSet() {
+    long creationTimeMs = SystemTime.getInstance().milliseconds();
+    List<Partition> writablePartitions = new ArrayList<Partition>();
+    List<Partition> healthyWritablePartitions = new ArrayList<Partition>();
     for (Partition partition : partitionMap.values()) {
       if (partition.getPartitionState() == PartitionState.READ_WRITE) {
         writablePartitions.add(partition);
@@ -128,13 +205,107 @@ public class PartitionLayout {
         }
       }
     }
-    return healthyWritablePartitions.isEmpty() ? writablePartitions : healthyWritablePartitions;
+    List<Partition> partitions = healthyWritablePartitions.isEmpty() ? writablePartitions : healthyWritablePartitions;
+
+    // A partition receives writes in proportion to its weight, and so does every disk it has a replica on. Weighing
+    // each partition by its share of the writable capacity of its most loaded disk keeps the write rate of every disk
+    // proportional to the disk's own capacity.
+    Map<DiskId, Long> writableCapacityPerDisk = new HashMap<DiskId, Long>();
+    for (Partition partition : partitions) {
+      for (Replica replica : partition.getReplicas()) {
+        Long capacity = writableCapacityPerDisk.get(replica.getDiskId());
+        writableCapacityPerDisk.put(replica.getDiskId(),
+            (capacity == null ? 0 : capacity) + partition.getReplicaCapacityInBytes());
+      }
+    }
+    double[] weights = new double[partitions.size()];
+    for (int i = 0; i < partitions.size(); i++) {
+      Partition partition = partitions.get(i);
+      double minShare = partition.getReplicas().isEmpty() ? 1 : Double.MAX_VALUE;
+      for (Replica replica : partition.getReplicas()) {
+        DiskId diskId = replica.getDiskId();
+        minShare = Math.min(minShare, (double) diskId.getRawCapacityInBytes() / writableCapacityPerDisk.get(diskId));
+      }
+      weights[i] = partition.getReplicaCapacityInBytes() * minShare;
+    }
+    return new WritablePartitionSet(new ArrayList<PartitionId>(partitions), weights, creationTimeMs);
   }
 
   public long getAllocatedRawCapacityInBytes() {
     return allocatedRawCapacityInBytes;
   }
 
+  /**
+   * @param datacenter the {@link Datacenter} whose allocated capacity is required.
+   * @return the raw capacity allocated to replicas in {@code datacenter}.
+   */
+  public long getAllocatedRawCapacityInBytes(Datacenter datacenter) {
+    return getAllocatedRawCapacityInBytesOf(datacenter);
+  }
+
+  /**
+   * @param dataNodeId the {@link DataNodeId} whose allocated capacity is required.
+   * @return the raw capacity allocated to replicas on {@code dataNodeId}.
+   */
+  public long getAllocatedRawCapacityInBytes(DataNodeId dataNodeId) {
+    return getAllocatedRawCapacityInBytesOf(dataNodeId);
+  }
+
+  /**
+   * @param diskId the {@link DiskId} whose allocated capacity is required.
+   * @return the raw capacity allocated to replicas on {@code diskId}.
+   */
+  public long getAllocatedRawCapacityInBytes(DiskId diskId) {
+    return getAllocatedRawCapacityInBytesOf(diskId);
+  }
+
+  private long getAllocatedRawCapacityInBytesOf(Object resource) {
+    Long allocatedRawCapacityInBytes = allocatedRawCapacityInBytesByResource.get(resource);
+    return allocatedRawCapacityInBytes == null ? 0 : allocatedRawCapacityInBytes;
+  }
+
+  /**
+   * @param dataNodeId the {@link DataNodeId} whose replicas are required.
+   * @return an unmodifiable list of the replicas on {@code dataNodeId}.
+   */
+  public List<Replica> getReplicas(DataNodeId dataNodeId) {
+    List<Replica> replicas = replicasByDataNode.get(dataNodeId);
+    return replicas == null ? Collections.<Replica>emptyList() : replicas;
+  }
+
+  /**
+   * @param diskId the {@link DiskId} whose replicas are required.
+   * @return an unmodifiable list of the replicas on {@code diskId}.
+   */
+  public List<Replica> getReplicas(DiskId diskId) {
+    List<Replica> replicas = replicasByDisk.get(diskId);
+    return replicas == null ? Collections.<Replica>emptyList() : replicas;
+  }
+
+  /**
+   * Adds a replica to the secondary indexes.
+   * @param replica the {@link Replica} that was added to the layout.
+   */
+  private synchronized void indexReplica(Replica replica) {
+    Disk disk = (Disk) replica.getDiskId();
+    DataNode dataNode = disk.getDataNode();
+    replicasByDataNode.put(dataNode, appendReplica(replicasByDataNode.get(dataNode), replica));
+    replicasByDisk.put(disk, appendReplica(replicasByDisk.get(disk), replica));
+    for (Object resource : new Object[]{disk, dataNode, dataNode.getDatacenter()}) {
+      allocatedRawCapacityInBytesByResource.put(resource,
+          getAllocatedRawCapacityInBytesOf(resource) + replica.getCapacityInBytes());
+    }
+  }
+
+  private static List<Replica> appendReplica(List<Replica> replicas, Replica replica) {
+    List<Replica> newReplicas = new ArrayList<Replica>(replicas == null ? 1 : replicas.size() + 1);
+    if (replicas != null) {
+      newReplicas.addAll(replicas);
+    }
+    newReplicas.add(replica);
+    return Collections.unmodifiableList(newReplicas);
+  }
+
   private long calculateAllocatedRawCapacityInBytes() {
     long allocatedRawCapacityInBytes = 0;
     for (Partition partition : partitionMap.values()) {
@@ -165,6 +336,9 @@ public class PartitionLayout {
     if (partition.getId() >= maxPartitionId) {
       maxPartitionId = partition.getId() + 1;
     }
+    for (Replica replica : partition.getReplicas()) {
+      indexReplica(replica);
+    }
   }
 
   protected void validateClusterName() {
@@ -210,6 +384,7 @@ public class PartitionLayout {
     validateUniqueness();
     this.allocatedRawCapacityInBytes = calculateAllocatedRawCapacityInBytes();
     this.allocatedUsableCapacityInBytes = calculateAllocatedUsableCapacityInBytes();
+    onWritablePartitionsChanged();
     logger.trace("complete validate.");
   }
 
@@ -241,7 +416,9 @@ public class PartitionLayout {
       throw new IllegalArgumentException("Partition or disks is null or disks is of zero length");
     }
     for (Disk disk : disks) {
-      partition.addReplica(new Replica(partition, disk));
+      Replica replica = new Replica(partition, disk);
+      partition.addReplica(replica);
+      indexReplica(replica);
     }
     validate();
   }
@@ -258,6 +435,15 @@ public class PartitionLayout {
     return partitionMap.get(ByteBuffer.wrap(partitionBytes));
   }
 
+  /**
+   * Gets the Partition of this layout that is equal to the given partition, which may come from another layout.
+   * @param partitionId the partition to look up.
+   * @return the Partition of this layout, or {@code null} if this layout does not have the partition.
+   */
+  Partition getPartition(PartitionId partitionId) {
+    return partitionMap.get(ByteBuffer.wrap(partitionId.getBytes()));
+  }
+
   public JSONObject toJSONObject()
       throws JSONException {
     JSONObject jsonObject = new JSONObject().put("clusterName", hardwareLayout.getClusterName()).put("version", version)
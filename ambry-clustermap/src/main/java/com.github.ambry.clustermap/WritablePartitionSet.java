@@ -0,0 +1,129 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.clustermap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * An immutable snapshot of the partitions that are available for writes. A partition can be picked at random in
+ * constant time with a probability proportional to its weight, using the alias method. Instances are safe to share
+ * between threads without any locking.
+ */
+class WritablePartitionSet {
+  // Number of weighted picks tried before falling back to a scan when the picked partitions are excluded.
+  private static final int Max_Weighted_Pick_Attempts = 8;
+
+  private final List<PartitionId> partitions;
+  private final double[] probabilities;
+  private final int[] aliases;
+  private final long creationTimeMs;
+
+  /**
+   * Creates a snapshot of the given writable partitions.
+   * @param partitions the partitions that are available for writes.
+   * @param weights the relative weight of each partition in {@code partitions}. If the weights do not add up to a
+   *                positive value, all the partitions are picked with the same probability.
+   * @param creationTimeMs the time at which the state of the partitions was read.
+   */
+  WritablePartitionSet(List<PartitionId> partitions, double[] weights, long creationTimeMs) {
+    if (partitions.size() != weights.length) {
+      throw new IllegalArgumentException(
+          "Number of weights " + weights.length + " does not match number of partitions " + partitions.size());
+    }
+    int count = partitions.size();
+    this.partitions = Collections.unmodifiableList(new ArrayList<PartitionId>(partitions));
+    this.probabilities = new double[count];
+    this.aliases = new int[count];
+    this.creationTimeMs = creationTimeMs;
+
+    double totalWeight = 0;
+    for (double weight : weights) {
+      totalWeight += weight;
+    }
+    double[] scaledWeights = new double[count];
+    Deque<Integer> small = new ArrayDeque<Integer>();
+    Deque<Integer> large = new ArrayDeque<Integer>();
+    for (int i = 0; i < count; i++) {
+      scaledWeights[i] = totalWeight > 0 ? weights[i] * count / totalWeight : 1;
+      if (scaledWeights[i] < 1) {
+        small.push(i);
+      } else {
+        large.push(i);
+      }
+    }
+    while (!small.isEmpty() && !large.isEmpty()) {
+      int smallIndex = small.pop();
+      int largeIndex = large.pop();
+      probabilities[smallIndex] = scaledWeights[smallIndex];
+      aliases[smallIndex] = largeIndex;
+      scaledWeights[largeIndex] = scaledWeights[largeIndex] + scaledWeights[smallIndex] - 1;
+      if (scaledWeights[largeIndex] < 1) {
+        small.push(largeIndex);
+      } else {
+        large.push(largeIndex);
+      }
+    }
+    // whatever is left over is only off from 1 because of rounding errors
+    while (!large.isEmpty()) {
+      probabilities[large.pop()] = 1;
+    }
+    while (!small.isEmpty()) {
+      probabilities[small.pop()] = 1;
+    }
+  }
+
+  /**
+   * @return an unmodifiable list of the partitions in this snapshot.
+   */
+  List<PartitionId> getPartitions() {
+    return partitions;
+  }
+
+  /**
+   * @return the time at which the state of the partitions in this snapshot was read.
+   */
+  long getCreationTimeMs() {
+    return creationTimeMs;
+  }
+
+  /**
+   * Picks a partition at random, with a probability proportional to its weight.
+   * @param random the source of randomness to use.
+   * @param partitionIdsToExclude the partitions that must not be picked.
+   * @return the picked partition, or {@code null} if every partition in this snapshot is excluded.
+   */
+  PartitionId pick(Random random, Collection<PartitionId> partitionIdsToExclude) {
+    if (partitions.isEmpty()) {
+      return null;
+    }
+    for (int attempt = 0; attempt < Max_Weighted_Pick_Attempts; attempt++) {
+      int index = random.nextInt(partitions.size());
+      PartitionId partitionId = partitions.get(random.nextDouble() < probabilities[index] ? index : aliases[index]);
+      if (!partitionIdsToExclude.contains(partitionId)) {
+        return partitionId;
+      }
+    }
+    // most of the weight is excluded, so pick uniformly among whatever is left.
+    List<PartitionId> remaining = new ArrayList<PartitionId>(partitions);
+    remaining.removeAll(partitionIdsToExclude);
+    return remaining.isEmpty() ? null : remaining.get(random.nextInt(remaining.size()));
+  }
+}
@@ -16,13 +16,20 @@ package com.github.ambry.clustermap;
 import com.github.ambry.config.ClusterMapConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.utils.ByteBufferInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import junit.framework.Assert;
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -33,8 +40,10 @@ import java.nio.ByteBuffer;
 import java.util.List;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -298,6 +307,201 @@ public class ClusterMapManagerTest {
     }
   }
 
+  /**
+   * Tests that the per data node and per disk lookups agree with a scan of all the replicas, both for a loaded layout
+   * and after partitions and replicas are added.
+   */
+  @Test
+  public void replicaIndexes()
+      throws JSONException {
+    TestUtils.TestHardwareLayout testHardwareLayout = new TestUtils.TestHardwareLayout("Alpha");
+    TestUtils.TestPartitionLayout testPartitionLayout = new TestUtils.TestPartitionLayout(testHardwareLayout);
+    ClusterMapManager clusterMapManager = new ClusterMapManager(testPartitionLayout.getPartitionLayout());
+    verifyReplicaIndexes(clusterMapManager, testHardwareLayout.getHardwareLayout());
+
+    Partition partition = (Partition) clusterMapManager
+        .addNewPartition(testHardwareLayout.getIndependentDisks(3), 100 * 1024 * 1024 * 1024L);
+    verifyReplicaIndexes(clusterMapManager, testHardwareLayout.getHardwareLayout());
+
+    List<Disk> newDisks = new ArrayList<Disk>();
+    for (Disk disk : testHardwareLayout.getIndependentDisks(6)) {
+      boolean used = false;
+      for (Replica replica : partition.getReplicas()) {
+        used |= ((Disk) replica.getDiskId()).getDataNode().equals(disk.getDataNode());
+      }
+      if (!used) {
+        newDisks.add(disk);
+      }
+    }
+    if (!newDisks.isEmpty()) {
+      testPartitionLayout.getPartitionLayout().addNewReplicas(partition, newDisks);
+    }
+    verifyReplicaIndexes(clusterMapManager, testHardwareLayout.getHardwareLayout());
+  }
+
+  private static void verifyReplicaIndexes(ClusterMapManager clusterMapManager, HardwareLayout hardwareLayout) {
+    List<DataNodeId> dataNodeIds = clusterMapManager.getDataNodeIds();
+    assertEquals(hardwareLayout.getDataNodeCount(), dataNodeIds.size());
+    for (Datacenter datacenter : hardwareLayout.getDatacenters()) {
+      long datacenterAllocated = 0;
+      for (DataNode dataNode : datacenter.getDataNodes()) {
+        assertTrue(dataNodeIds.contains(dataNode));
+        Set<Replica> expectedReplicas = new HashSet<Replica>();
+        long dataNodeAllocated = 0;
+        for (Disk disk : dataNode.getDisks()) {
+          long diskAllocated = 0;
+          for (PartitionId partitionId : clusterMapManager.getAllPartitions()) {
+            for (Replica replica : ((Partition) partitionId).getReplicas()) {
+              if (replica.getDiskId().equals(disk)) {
+                expectedReplicas.add(replica);
+                diskAllocated += replica.getCapacityInBytes();
+              }
+            }
+          }
+          assertEquals(diskAllocated, clusterMapManager.getAllocatedRawCapacityInBytes(disk));
+          dataNodeAllocated += diskAllocated;
+        }
+        assertEquals(expectedReplicas, new HashSet<Replica>(clusterMapManager.getReplicas(dataNode)));
+        assertEquals(expectedReplicas.size(), clusterMapManager.getReplicaIds(dataNode).size());
+        assertEquals(dataNodeAllocated, clusterMapManager.getAllocatedRawCapacityInBytes(dataNode));
+        datacenterAllocated += dataNodeAllocated;
+      }
+      assertEquals(datacenterAllocated, clusterMapManager.getAllocatedRawCapacityInBytes(datacenter));
+    }
+  }
+
+  /**
+   * Tests that a new partition layout is swapped in, that listeners are told about the added replicas and that
+   * layouts that remove replicas are rejected.
+   */
+  @Test
+  public void updatePartitionLayout()
+      throws JSONException, IOException {
+    TestUtils.TestHardwareLayout testHardwareLayout = new TestUtils.TestHardwareLayout("Alpha");
+    TestUtils.TestPartitionLayout testPartitionLayout = new TestUtils.TestPartitionLayout(testHardwareLayout);
+    ClusterMapManager clusterMapManager = new ClusterMapManager(testPartitionLayout.getPartitionLayout());
+    final List<ReplicaId> notifiedReplicas = new ArrayList<ReplicaId>();
+    clusterMapManager.registerClusterMapListener(new ClusterMapChangeListener() {
+      @Override
+      public void onReplicasAdded(List<ReplicaId> addedReplicas) {
+        notifiedReplicas.addAll(addedReplicas);
+      }
+    });
+    List<PartitionId> oldPartitionIds = clusterMapManager.getAllPartitions();
+    JSONObject oldLayoutJson = testPartitionLayout.getPartitionLayout().toJSONObject();
+
+    PartitionLayout newPartitionLayout = new PartitionLayout(testHardwareLayout.getHardwareLayout(), oldLayoutJson);
+    Partition addedPartition =
+        newPartitionLayout.addNewPartition(testHardwareLayout.getIndependentDisks(3), 100 * 1024 * 1024 * 1024L);
+    List<ReplicaId> addedReplicas = clusterMapManager.updatePartitionLayout(newPartitionLayout.toJSONObject());
+
+    assertEquals(3, addedReplicas.size());
+    assertEquals(addedReplicas, notifiedReplicas);
+    for (ReplicaId replicaId : addedReplicas) {
+      assertEquals(addedPartition, replicaId.getPartitionId());
+    }
+    assertEquals(oldPartitionIds.size() + 1, clusterMapManager.getAllPartitions().size());
+    assertTrue(clusterMapManager.getWritablePartitionIds().contains(addedPartition));
+    // partitions of the old layout still resolve, to partitions that are equal to them
+    for (PartitionId partitionId : oldPartitionIds) {
+      DataInputStream partitionStream =
+          new DataInputStream(new ByteBufferInputStream(ByteBuffer.wrap(partitionId.getBytes())));
+      assertEquals(partitionId, clusterMapManager.getPartitionIdFromStream(partitionStream));
+    }
+
+    // going back to the old layout would remove the added partition
+    notifiedReplicas.clear();
+    try {
+      clusterMapManager.updatePartitionLayout(oldLayoutJson);
+      Assert.fail("Partition layout that removes a partition should have been rejected");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals(0, notifiedReplicas.size());
+    assertEquals(oldPartitionIds.size() + 1, clusterMapManager.getAllPartitions().size());
+  }
+
+  /**
+   * Tests that partitions reported as read-only stay read-only when a new partition layout that leaves their state as
+   * is gets swapped in, including when they are reported through replicas of the old layout, and that the reported
+   * state is not persisted.
+   */
+  @Test
+  public void partitionReadOnlyAcrossLayoutUpdates()
+      throws JSONException {
+    TestUtils.TestHardwareLayout testHardwareLayout = new TestUtils.TestHardwareLayout("Alpha");
+    TestUtils.TestPartitionLayout testPartitionLayout = new TestUtils.TestPartitionLayout(testHardwareLayout);
+    ClusterMapManager clusterMapManager = new ClusterMapManager(testPartitionLayout.getPartitionLayout());
+    List<PartitionId> oldPartitionIds = clusterMapManager.getAllPartitions();
+    assertTrue(oldPartitionIds.size() >= 2);
+    PartitionId reportedBeforeUpdate = oldPartitionIds.get(0);
+    PartitionId reportedAfterUpdate = oldPartitionIds.get(1);
+
+    clusterMapManager.onReplicaEvent(reportedBeforeUpdate.getReplicaIds().get(0), ReplicaEventType.Partition_ReadOnly);
+    assertEquals(PartitionState.READ_ONLY, reportedBeforeUpdate.getPartitionState());
+    assertFalse(clusterMapManager.getWritablePartitionIds().contains(reportedBeforeUpdate));
+
+    JSONObject layoutJson = testPartitionLayout.getPartitionLayout().toJSONObject();
+    PartitionLayout newPartitionLayout = new PartitionLayout(testHardwareLayout.getHardwareLayout(), layoutJson);
+    newPartitionLayout.addNewPartition(testHardwareLayout.getIndependentDisks(3), 100 * 1024 * 1024 * 1024L);
+    clusterMapManager.updatePartitionLayout(newPartitionLayout.toJSONObject());
+    assertEquals(PartitionState.READ_ONLY,
+        getCurrentPartition(clusterMapManager, reportedBeforeUpdate).getPartitionState());
+    assertFalse(clusterMapManager.getWritablePartitionIds().contains(reportedBeforeUpdate));
+
+    // a replica of the old layout reports the partition of the current layout
+    assertTrue(clusterMapManager.getWritablePartitionIds().contains(reportedAfterUpdate));
+    clusterMapManager.onReplicaEvent(reportedAfterUpdate.getReplicaIds().get(0), ReplicaEventType.Partition_ReadOnly);
+    assertEquals(PartitionState.READ_ONLY,
+        getCurrentPartition(clusterMapManager, reportedAfterUpdate).getPartitionState());
+    assertFalse(clusterMapManager.getWritablePartitionIds().contains(reportedAfterUpdate));
+
+    // the reported state is not part of the layout
+    JSONArray partitionsJson = clusterMapManager.partitionLayout.toJSONObject().getJSONArray("partitions");
+    for (int i = 0; i < partitionsJson.length(); i++) {
+      assertEquals(PartitionState.READ_WRITE.name(), partitionsJson.getJSONObject(i).getString("partitionState"));
+    }
+  }
+
+  /**
+   * Tests that a reloaded partition layout that changes the state of a partition that replicas reported as read-only
+   * takes effect.
+   */
+  @Test
+  public void partitionReadOnlyToReadWriteAcrossLayoutUpdate()
+      throws JSONException {
+    TestUtils.TestHardwareLayout testHardwareLayout = new TestUtils.TestHardwareLayout("Alpha");
+    TestUtils.TestPartitionLayout testPartitionLayout = new TestUtils.TestPartitionLayout(testHardwareLayout);
+    JSONObject layoutJson = testPartitionLayout.getPartitionLayout().toJSONObject();
+    layoutJson.getJSONArray("partitions").getJSONObject(0).put("partitionState", PartitionState.READ_ONLY.name());
+    ClusterMapManager clusterMapManager =
+        new ClusterMapManager(new PartitionLayout(testHardwareLayout.getHardwareLayout(), layoutJson));
+    PartitionId partitionId = clusterMapManager.getAllPartitions().get(0);
+    assertEquals(PartitionState.READ_ONLY, partitionId.getPartitionState());
+    clusterMapManager.onReplicaEvent(partitionId.getReplicaIds().get(0), ReplicaEventType.Partition_ReadOnly);
+
+    layoutJson.getJSONArray("partitions").getJSONObject(0).put("partitionState", PartitionState.READ_WRITE.name());
+    clusterMapManager.updatePartitionLayout(layoutJson);
+    assertEquals(PartitionState.READ_WRITE, getCurrentPartition(clusterMapManager, partitionId).getPartitionState());
+    assertTrue(clusterMapManager.getWritablePartitionIds().contains(partitionId));
+  }
+
+  /**
+   * @param clusterMapManager the {@link ClusterMapManager} to look up the partition in.
+   * @param partitionId the partition to look up.
+   * @return the {@link PartitionId} of the current partition layout of {@code clusterMapManager} that is equal to
+   *         {@code partitionId}.
+   */
+  private PartitionId getCurrentPartition(ClusterMapManager clusterMapManager, PartitionId partitionId) {
+    for (PartitionId currentPartitionId : clusterMapManager.getAllPartitions()) {
+      if (currentPartitionId.equals(partitionId)) {
+        assertNotSame(partitionId, currentPartitionId);
+        return currentPartitionId;
+      }
+    }
+    throw new IllegalStateException("Partition " + partitionId + " not found in the current layout");
+  }
+
   @Test
   public void persistAndReadBack()
       throws JSONException, IOException {
@@ -367,6 +571,108 @@ public class ClusterMapManagerTest {
     }
   }
 
+  /**
+   * Tests that the writable partitions follow replica events and that random selection honors exclusions and weights.
+   */
+  @Test
+  public void writablePartitionSelection()
+      throws JSONException {
+    TestUtils.TestHardwareLayout testHardwareLayout = new TestUtils.TestHardwareLayout("Alpha");
+    TestUtils.TestPartitionLayout testPartitionLayout = new TestUtils.TestPartitionLayout(testHardwareLayout);
+    ClusterMapManager clusterMapManager = new ClusterMapManager(testPartitionLayout.getPartitionLayout());
+
+    List<PartitionId> partitionIds = clusterMapManager.getWritablePartitionIds();
+    assertEquals(testPartitionLayout.getPartitionCount(), partitionIds.size());
+    ReplicaId failedReplica = partitionIds.get(0).getReplicaIds().get(0);
+
+    // a disk error takes the partitions on that disk out of the writable set right away.
+    clusterMapManager.onReplicaEvent(failedReplica, ReplicaEventType.Disk_Error);
+    assertTrue(failedReplica.isDown());
+    List<PartitionId> writablePartitionIds = clusterMapManager.getWritablePartitionIds();
+    assertFalse(writablePartitionIds.contains(failedReplica.getPartitionId()));
+    for (PartitionId partitionId : partitionIds) {
+      boolean up = true;
+      for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+        up &= !replicaId.isDown();
+      }
+      assertEquals(up, writablePartitionIds.contains(partitionId));
+    }
+    for (int i = 0; i < 100; i++) {
+      PartitionId partitionId = clusterMapManager.getRandomWritablePartition(new HashSet<PartitionId>());
+      assertTrue(writablePartitionIds.contains(partitionId));
+    }
+
+    // the partitions come back once the disk is fine again.
+    clusterMapManager.onReplicaEvent(failedReplica, ReplicaEventType.Disk_Ok);
+    assertEquals(new HashSet<PartitionId>(partitionIds),
+        new HashSet<PartitionId>(clusterMapManager.getWritablePartitionIds()));
+
+    // exclusions are honored and null is returned once every partition is excluded.
+    Set<PartitionId> excluded = new HashSet<PartitionId>(partitionIds.subList(1, partitionIds.size()));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(partitionIds.get(0), clusterMapManager.getRandomWritablePartition(excluded));
+    }
+    excluded.add(partitionIds.get(0));
+    assertNull(clusterMapManager.getRandomWritablePartition(excluded));
+
+    // partitions with no weight are never picked while others are available.
+    double[] weights = new double[partitionIds.size()];
+    weights[weights.length - 1] = 1;
+    WritablePartitionSet writablePartitionSet = new WritablePartitionSet(partitionIds, weights, 0);
+    Random random = new Random();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(partitionIds.get(weights.length - 1),
+          writablePartitionSet.pick(random, Collections.<PartitionId>emptySet()));
+    }
+    assertNotNull(writablePartitionSet.pick(random, Collections.singleton(partitionIds.get(weights.length - 1))));
+  }
+
+  /**
+   * Tests that writable partitions can be picked while replica events keep changing them, and that the last change is
+   * picked up once the events stop.
+   * @throws Exception
+   */
+  @Test
+  public void writablePartitionSelectionWithConcurrentEvents()
+      throws Exception {
+    TestUtils.TestHardwareLayout testHardwareLayout = new TestUtils.TestHardwareLayout("Alpha");
+    TestUtils.TestPartitionLayout testPartitionLayout = new TestUtils.TestPartitionLayout(testHardwareLayout);
+    final ClusterMapManager clusterMapManager = new ClusterMapManager(testPartitionLayout.getPartitionLayout());
+    List<PartitionId> partitionIds = clusterMapManager.getWritablePartitionIds();
+    final ReplicaId failedReplica = partitionIds.get(0).getReplicaIds().get(0);
+
+    final AtomicBoolean done = new AtomicBoolean(false);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> pickers = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      Thread picker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (!done.get()) {
+              assertNotNull(clusterMapManager.getRandomWritablePartition(Collections.<PartitionId>emptySet()));
+            }
+          } catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+      picker.start();
+      pickers.add(picker);
+    }
+    for (int i = 0; i < 1000; i++) {
+      clusterMapManager.onReplicaEvent(failedReplica, ReplicaEventType.Disk_Error);
+      clusterMapManager.onReplicaEvent(failedReplica, ReplicaEventType.Disk_Ok);
+    }
+    clusterMapManager.onReplicaEvent(failedReplica, ReplicaEventType.Disk_Error);
+    done.set(true);
+    for (Thread picker : pickers) {
+      picker.join();
+    }
+    assertNull(failure.get());
+    assertFalse(clusterMapManager.getWritablePartitionIds().contains(failedReplica.getPartitionId()));
+  }
+
   /**
    * Verify that the partitions in the list have {@code numReplicas} per datacenter
    *
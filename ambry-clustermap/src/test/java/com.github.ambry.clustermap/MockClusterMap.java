@@ -20,10 +20,12 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -167,6 +169,14 @@ public class MockClusterMap implements ClusterMap {
     return partitionIdList;
   }
 
+  @Override
+  public PartitionId getRandomWritablePartition(Collection<PartitionId> partitionIdsToExclude) {
+    List<PartitionId> partitionIdList = getWritablePartitionIds();
+    partitionIdList.removeAll(partitionIdsToExclude);
+    return partitionIdList.isEmpty() ? null
+        : partitionIdList.get(ThreadLocalRandom.current().nextInt(partitionIdList.size()));
+  }
+
   @Override
   public boolean hasDatacenter(String datacenterName) {
     return dataCentersInClusterMap.contains(datacenterName);
@@ -268,4 +278,9 @@ public class MockClusterMap implements ClusterMap {
         break;
     }
   }
+
+  @Override
+  public void registerClusterMapListener(ClusterMapChangeListener listener) {
+    // the mock cluster map never changes, so there is nothing to tell listeners about.
+  }
 }
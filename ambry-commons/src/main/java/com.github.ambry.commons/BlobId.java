@@ -17,33 +17,72 @@ import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.utils.ByteBufferInputStream;
-import com.github.ambry.utils.Utils;
 
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.UUID;
 import org.apache.commons.codec.binary.Base64;
 
 
 /**
  * BlobId uniquely identifies a stored blob as well as the Partition in which the blob is stored.
+ * <p/>
+ * A blob id is serialized as its version, the partition id and the uuid of the blob. Version 1 ids hold the uuid as
+ * a size prefixed string and version 2 ids hold it in binary form, as its most and least significant bits. The
+ * serialized form and the hash code are computed once, when the id is created, since keys are serialized, hashed and
+ * compared on every index lookup. Ids are compared by version, partition and then the bytes of the uuid, which orders
+ * the uuids of both versions the way their string forms are ordered.
  */
 public class BlobId extends StoreKey {
-  private Short version = 1;
-  private static short Version_Size_In_Bytes = 2;
-  private PartitionId partitionId;
-  private String uuid;
-  private static int UUID_Size_In_Bytes = 4;
+  public static final short Blob_Id_Version_V1 = 1;
+  public static final short Blob_Id_Version_V2 = 2;
+
+  private static final short Version_Size_In_Bytes = 2;
+  private static final int UUID_Size_In_Bytes = 4;
+  private static final int Binary_UUID_Size_In_Bytes = 16;
+  private static final Charset UUID_Charset = Charset.forName("UTF-8");
+
+  private final short version;
+  private final PartitionId partitionId;
+  // the serialized form of the id, which must not be modified
+  private final byte[] bytes;
+  // the position of the uuid in the serialized form, after its size if it has one
+  private final int uuidOffset;
+  private final int hashCode;
 
   /**
-   * Constructs a new unique BlobId for the specified partition.
+   * Constructs a new unique version 1 BlobId for the specified partition.
    *
    * @param partitionId of Partition in which blob is to be stored.
    */
   public BlobId(PartitionId partitionId) {
+    this(partitionId, Blob_Id_Version_V1);
+  }
+
+  /**
+   * Constructs a new unique BlobId of the given version for the specified partition. Servers that only know version 1
+   * cannot read version 2 ids, and since an index segment holds keys of a single size, version 2 ids are meant for
+   * stores that do not hold version 1 ids.
+   *
+   * @param partitionId of Partition in which blob is to be stored.
+   * @param version the version of the id, {@link #Blob_Id_Version_V1} or {@link #Blob_Id_Version_V2}.
+   */
+  public BlobId(PartitionId partitionId, short version) {
+    this.version = version;
     this.partitionId = partitionId;
-    this.uuid = UUID.randomUUID().toString();
+    UUID uuid = UUID.randomUUID();
+    if (version == Blob_Id_Version_V1) {
+      bytes = serialize(uuid.toString().getBytes(UUID_Charset));
+    } else if (version == Blob_Id_Version_V2) {
+      bytes = serialize(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    } else {
+      throw new IllegalArgumentException("version " + version + " not supported for blob id");
+    }
+    uuidOffset = bytes.length - getUUIDSize();
+    hashCode = Arrays.hashCode(bytes);
   }
 
   /**
@@ -68,35 +107,53 @@ public class BlobId extends StoreKey {
   public BlobId(DataInputStream stream, ClusterMap clusterMap)
       throws IOException {
     this.version = stream.readShort();
-    if (version == 1) {
+    if (version == Blob_Id_Version_V1) {
+      this.partitionId = clusterMap.getPartitionIdFromStream(stream);
+      int uuidSize = stream.readInt();
+      if (uuidSize <= 0) {
+        throw new IllegalArgumentException("uuid size " + uuidSize + " is invalid for blob id");
+      }
+      byte[] uuid = new byte[uuidSize];
+      stream.readFully(uuid);
+      bytes = serialize(uuid);
+    } else if (version == Blob_Id_Version_V2) {
       this.partitionId = clusterMap.getPartitionIdFromStream(stream);
-      uuid = Utils.readIntString(stream);
+      bytes = serialize(stream.readLong(), stream.readLong());
     } else {
       throw new IllegalArgumentException("version " + version + " not supported for blob id");
     }
+    uuidOffset = bytes.length - getUUIDSize();
+    hashCode = Arrays.hashCode(bytes);
   }
 
   public short sizeInBytes() {
-    return (short) (Version_Size_In_Bytes + partitionId.getBytes().length + UUID_Size_In_Bytes + uuid.length());
+    return (short) bytes.length;
   }
 
   public PartitionId getPartition() {
     return partitionId;
   }
 
+  /**
+   * @return the version of the id.
+   */
+  public short getVersion() {
+    return version;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The serialized form is cached, so the returned array must not be modified.
+   */
   @Override
   public byte[] toBytes() {
-    ByteBuffer idBuf = ByteBuffer.allocate(sizeInBytes());
-    idBuf.putShort(version);
-    idBuf.put(partitionId.getBytes());
-    idBuf.putInt(uuid.getBytes().length);
-    idBuf.put(uuid.getBytes());
-    return idBuf.array();
+    return bytes;
   }
 
   @Override
   public String getID() {
-    return Base64.encodeBase64URLSafeString(toBytes());
+    return Base64.encodeBase64URLSafeString(bytes);
   }
 
   @Override
@@ -105,7 +162,7 @@ public class BlobId extends StoreKey {
     sb.append("[").append(getID());
     sb.append(":").append(version);
     sb.append(":").append(partitionId);
-    sb.append(":").append(uuid).append("]");
+    sb.append(":").append(getUUID()).append("]");
     return sb.toString();
   }
 
@@ -118,11 +175,11 @@ public class BlobId extends StoreKey {
   public int compareTo(StoreKey o) {
     BlobId other = (BlobId) o;
 
-    int result = version.compareTo(other.version);
+    int result = version - other.version;
     if (result == 0) {
       result = partitionId.compareTo(other.partitionId);
       if (result == 0) {
-        result = uuid.compareTo(other.uuid);
+        result = compareUUIDs(other);
       }
     }
     return result;
@@ -138,22 +195,80 @@ public class BlobId extends StoreKey {
     }
 
     BlobId blobId = (BlobId) o;
+    return hashCode == blobId.hashCode && Arrays.equals(bytes, blobId.bytes);
+  }
 
-    if (!version.equals(blobId.version)) {
-      return false;
-    }
-    if (!partitionId.equals(blobId.partitionId)) {
-      return false;
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  /**
+   * Compares the uuids of two ids of the same version byte by byte, as unsigned values. For version 1 ids this is the
+   * order of the uuid strings, and for version 2 ids it is the order of the uuids in string form.
+   * @param other the id to compare the uuid of this id with.
+   * @return a negative number, zero or a positive number if the uuid of this id is less than, equal to or greater
+   *         than the uuid of the other id.
+   */
+  private int compareUUIDs(BlobId other) {
+    int length = bytes.length - uuidOffset;
+    int otherLength = other.bytes.length - other.uuidOffset;
+    int minLength = Math.min(length, otherLength);
+    for (int i = 0; i < minLength; i++) {
+      int result = (bytes[uuidOffset + i] & 0xff) - (other.bytes[other.uuidOffset + i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
     }
-    if (!uuid.equals(blobId.uuid)) {
-      return false;
+    return length - otherLength;
+  }
+
+  /**
+   * @return the uuid of the id in string form.
+   */
+  private String getUUID() {
+    if (version == Blob_Id_Version_V1) {
+      return new String(bytes, uuidOffset, bytes.length - uuidOffset, UUID_Charset);
     }
+    ByteBuffer uuid = ByteBuffer.wrap(bytes, uuidOffset, Binary_UUID_Size_In_Bytes);
+    return new UUID(uuid.getLong(), uuid.getLong()).toString();
+  }
+
+  /**
+   * @return the size of the uuid in the serialized form of the id, excluding its size prefix.
+   */
+  private int getUUIDSize() {
+    return version == Blob_Id_Version_V1 ? bytes.length - Version_Size_In_Bytes - partitionId.getBytes().length
+        - UUID_Size_In_Bytes : Binary_UUID_Size_In_Bytes;
+  }
 
-    return true;
+  /**
+   * @param uuid the uuid string of a version 1 id.
+   * @return the serialized form of a version 1 id.
+   */
+  private byte[] serialize(byte[] uuid) {
+    byte[] partitionBytes = partitionId.getBytes();
+    ByteBuffer idBuf =
+        ByteBuffer.allocate(Version_Size_In_Bytes + partitionBytes.length + UUID_Size_In_Bytes + uuid.length);
+    idBuf.putShort(version);
+    idBuf.put(partitionBytes);
+    idBuf.putInt(uuid.length);
+    idBuf.put(uuid);
+    return idBuf.array();
   }
 
-  @Override
-  public int hashCode() {
-    return Utils.hashcode(new Object[]{version, partitionId, uuid});
+  /**
+   * @param uuidMostSignificantBits the most significant bits of the uuid of a version 2 id.
+   * @param uuidLeastSignificantBits the least significant bits of the uuid of a version 2 id.
+   * @return the serialized form of a version 2 id.
+   */
+  private byte[] serialize(long uuidMostSignificantBits, long uuidLeastSignificantBits) {
+    byte[] partitionBytes = partitionId.getBytes();
+    ByteBuffer idBuf = ByteBuffer.allocate(Version_Size_In_Bytes + partitionBytes.length + Binary_UUID_Size_In_Bytes);
+    idBuf.putShort(version);
+    idBuf.put(partitionBytes);
+    idBuf.putLong(uuidMostSignificantBits);
+    idBuf.putLong(uuidLeastSignificantBits);
+    return idBuf.array();
   }
 }
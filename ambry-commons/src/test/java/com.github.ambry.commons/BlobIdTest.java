@@ -13,12 +13,25 @@
  */
 package com.github.ambry.commons;
 
+import com.github.ambry.clustermap.MockClusterMap;
 import com.github.ambry.clustermap.Partition;
 import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.PartitionState;
+import com.github.ambry.utils.ByteBufferInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class BlobIdTest {
@@ -33,4 +46,127 @@ public class BlobIdTest {
     System.out.println("Blob Id toString: " + blobId);
     System.out.println("Blob id sizeInBytes: " + blobId.toString().length());
   }
+
+  /**
+   * Tests that version 1 ids are serialized the way they always were and that ids of both versions survive a round
+   * trip through their serialized and string forms.
+   * @throws IOException
+   */
+  @Test
+  public void serializationTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    try {
+      PartitionId partitionId = clusterMap.getWritablePartitionIds().get(0);
+      String uuid = UUID.randomUUID().toString();
+      byte[] partitionBytes = partitionId.getBytes();
+      ByteBuffer v1Buf = ByteBuffer.allocate(2 + partitionBytes.length + 4 + uuid.length());
+      v1Buf.putShort(BlobId.Blob_Id_Version_V1);
+      v1Buf.put(partitionBytes);
+      v1Buf.putInt(uuid.length());
+      v1Buf.put(uuid.getBytes());
+      BlobId v1Id = deserialize(v1Buf.array(), clusterMap);
+      assertEquals(BlobId.Blob_Id_Version_V1, v1Id.getVersion());
+      assertEquals(partitionId, v1Id.getPartition());
+      assertArrayEquals("Version 1 ids should be serialized as before", v1Buf.array(), v1Id.toBytes());
+      assertEquals(v1Buf.array().length, v1Id.sizeInBytes());
+      assertTrue("Long form should contain the uuid", v1Id.getLongForm().contains(uuid));
+
+      BlobId v2Id = new BlobId(partitionId, BlobId.Blob_Id_Version_V2);
+      assertEquals(BlobId.Blob_Id_Version_V2, v2Id.getVersion());
+      assertEquals(2 + partitionBytes.length + 16, v2Id.sizeInBytes());
+      assertTrue("Version 2 ids should be smaller", v2Id.sizeInBytes() < v1Id.sizeInBytes());
+
+      for (BlobId id : new BlobId[]{v1Id, new BlobId(partitionId), v2Id}) {
+        BlobId fromBytes = deserialize(id.toBytes(), clusterMap);
+        BlobId fromString = new BlobId(id.getID(), clusterMap);
+        assertEquals(id, fromBytes);
+        assertEquals(id, fromString);
+        assertEquals(id.hashCode(), fromBytes.hashCode());
+        assertEquals(0, id.compareTo(fromString));
+        assertEquals(id.getLongForm(), fromString.getLongForm());
+      }
+      assertFalse("Ids of different versions should differ", v1Id.equals(v2Id));
+
+      ByteBuffer badVersionBuf = ByteBuffer.wrap(v2Id.toBytes().clone());
+      badVersionBuf.putShort(0, (short) 3);
+      try {
+        deserialize(badVersionBuf.array(), clusterMap);
+        fail("Unknown version should not be deserialized");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    } finally {
+      clusterMap.cleanup();
+    }
+  }
+
+  /**
+   * Tests that ids are ordered by version, partition and uuid, with uuids of both versions ordered the way their string
+   * forms are, which is the order that version 1 ids were always sorted in.
+   * @throws IOException
+   */
+  @Test
+  public void compareTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    try {
+      PartitionId partitionId = clusterMap.getWritablePartitionIds().get(0);
+      List<UUID> uuids = new ArrayList<UUID>();
+      for (int i = 0; i < 100; i++) {
+        uuids.add(UUID.randomUUID());
+      }
+      // uuids whose bits have the sign bit set need to be compared as unsigned
+      uuids.add(new UUID(-1L, -1L));
+      uuids.add(new UUID(0L, 0L));
+      uuids.add(new UUID(Long.MIN_VALUE, 1L));
+      for (UUID uuid1 : uuids) {
+        for (UUID uuid2 : uuids) {
+          int expected = Integer.signum(uuid1.toString().compareTo(uuid2.toString()));
+          assertEquals("Version 1 ids are out of order", expected, Integer.signum(
+              createV1Id(partitionId, uuid1, clusterMap).compareTo(createV1Id(partitionId, uuid2, clusterMap))));
+          assertEquals("Version 2 ids are out of order", expected, Integer.signum(
+              createV2Id(partitionId, uuid1, clusterMap).compareTo(createV2Id(partitionId, uuid2, clusterMap))));
+        }
+      }
+      BlobId v1Id = createV1Id(partitionId, new UUID(-1L, -1L), clusterMap);
+      BlobId v2Id = createV2Id(partitionId, new UUID(0L, 0L), clusterMap);
+      assertTrue("Version 1 ids should come before version 2 ids", v1Id.compareTo(v2Id) < 0);
+      List<BlobId> ids = new ArrayList<BlobId>();
+      ids.add(v2Id);
+      ids.add(v1Id);
+      Collections.sort(ids);
+      assertEquals(v1Id, ids.get(0));
+    } finally {
+      clusterMap.cleanup();
+    }
+  }
+
+  private BlobId createV1Id(PartitionId partitionId, UUID uuid, MockClusterMap clusterMap)
+      throws IOException {
+    byte[] partitionBytes = partitionId.getBytes();
+    byte[] uuidBytes = uuid.toString().getBytes();
+    ByteBuffer buf = ByteBuffer.allocate(2 + partitionBytes.length + 4 + uuidBytes.length);
+    buf.putShort(BlobId.Blob_Id_Version_V1);
+    buf.put(partitionBytes);
+    buf.putInt(uuidBytes.length);
+    buf.put(uuidBytes);
+    return deserialize(buf.array(), clusterMap);
+  }
+
+  private BlobId createV2Id(PartitionId partitionId, UUID uuid, MockClusterMap clusterMap)
+      throws IOException {
+    byte[] partitionBytes = partitionId.getBytes();
+    ByteBuffer buf = ByteBuffer.allocate(2 + partitionBytes.length + 16);
+    buf.putShort(BlobId.Blob_Id_Version_V2);
+    buf.put(partitionBytes);
+    buf.putLong(uuid.getMostSignificantBits());
+    buf.putLong(uuid.getLeastSignificantBits());
+    return deserialize(buf.array(), clusterMap);
+  }
+
+  private BlobId deserialize(byte[] bytes, MockClusterMap clusterMap)
+      throws IOException {
+    return new BlobId(new DataInputStream(new ByteBufferInputStream(ByteBuffer.wrap(bytes))), clusterMap);
+  }
 }
@@ -15,6 +15,7 @@ package com.github.ambry.commons;
 
 import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.ClusterMapChangeListener;
 import com.github.ambry.clustermap.DataNodeId;
 import com.github.ambry.clustermap.MockPartitionId;
 import com.github.ambry.clustermap.MockReplicaId;
@@ -25,6 +26,7 @@ import com.github.ambry.network.ConnectionPoolTimeoutException;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.SocketException;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -57,6 +59,11 @@ public class ResponseHandlerTest {
       return null;
     }
 
+    @Override
+    public PartitionId getRandomWritablePartition(Collection<PartitionId> partitionIdsToExclude) {
+      return null;
+    }
+
     @Override
     public boolean hasDatacenter(String datacenterName) {
       return false;
@@ -88,6 +95,10 @@ public class ResponseHandlerTest {
       lastReplicaEvents.add(event);
     }
 
+    @Override
+    public void registerClusterMapListener(ClusterMapChangeListener listener) {
+    }
+
     public void reset() {
       lastReplicaID = null;
       lastReplicaEvents.clear();
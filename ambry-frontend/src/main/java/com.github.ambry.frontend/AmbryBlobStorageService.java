@@ -33,9 +33,14 @@ import com.github.ambry.rest.RestUtils;
 import com.github.ambry.rest.SecurityService;
 import com.github.ambry.rest.SecurityServiceFactory;
 import com.github.ambry.router.Callback;
+import com.github.ambry.router.GetBlobResult;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
 import com.github.ambry.router.RouterException;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Trace;
+import com.github.ambry.utils.Tracer;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.GregorianCalendar;
@@ -59,7 +64,7 @@ class AmbryBlobStorageService implements BlobStorageService {
   private static final String OPERATION_TYPE_HEAD_RESPONSE_SECURITY = "HEAD Response Security";
   private static final String OPERATION_TYPE_POST_RESPONSE_SECURITY = "POST Response Security";
   private static final String OPERATION_TYPE_HEAD_BEFORE_GET = "HEAD Before GET";
-  private static final String OPERATION_TYPE_GET = "GET";
+  private static final String OPERATION_TYPE_GET_BLOB_WITH_INFO = "GET Blob With Info";
   private static final String OPERATION_TYPE_HEAD = "HEAD";
   private static final String OPERATION_TYPE_DELETE = "DELETE";
   private static final String OPERATION_TYPE_POST = "POST";
@@ -69,6 +74,9 @@ class AmbryBlobStorageService implements BlobStorageService {
   private final IdConverterFactory idConverterFactory;
   private final SecurityServiceFactory securityServiceFactory;
   private final FrontendConfig frontendConfig;
+  private final Time traceTime = SystemTime.getInstance();
+  private final Tracer tracer;
+  private final GetSlowestTracesHandler getSlowestTracesHandler;
   private final Logger logger = LoggerFactory.getLogger(AmbryBlobStorageService.class);
 
   private IdConverter idConverter = null;
@@ -95,6 +103,9 @@ class AmbryBlobStorageService implements BlobStorageService {
     this.router = router;
     this.idConverterFactory = idConverterFactory;
     this.securityServiceFactory = securityServiceFactory;
+    tracer = new Tracer(frontendConfig.frontendTraceSampleRate, frontendConfig.frontendTraceBufferSize, traceTime);
+    getSlowestTracesHandler =
+        new GetSlowestTracesHandler(frontendMetrics, tracer, frontendConfig.frontendSlowestTracesCount);
     logger.trace("Instantiated AmbryBlobStorageService");
   }
 
@@ -140,6 +151,7 @@ class AmbryBlobStorageService implements BlobStorageService {
       checkAvailable();
       RestUtils.SubResource subresource = RestUtils.getBlobSubResource(restRequest);
       RestRequestMetrics requestMetrics = frontendMetrics.getBlobMetrics;
+      boolean slowestTracesRequested = false;
       if (subresource != null) {
         logger.trace("Sub-resource requested: {}", subresource);
         switch (subresource) {
@@ -150,12 +162,25 @@ class AmbryBlobStorageService implements BlobStorageService {
             requestMetrics = frontendMetrics.getUserMetadataMetrics;
             break;
         }
+      } else if (GetSlowestTracesHandler.isSlowestTracesOperation(
+          RestUtils.getOperationOrBlobIdFromUri(restRequest, null, frontendConfig.frontendPathPrefixesToRemove))) {
+        requestMetrics = frontendMetrics.getSlowestTracesMetrics;
+        slowestTracesRequested = true;
       }
       restRequest.getMetricsTracker().injectMetrics(requestMetrics);
-      HeadForGetCallback routerCallback = new HeadForGetCallback(restRequest, restResponseChannel, subresource);
+      SecurityProcessRequestCallback securityCallback;
+      if (slowestTracesRequested) {
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel);
+      } else if (subresource == null) {
+        // the blob and its properties are fetched together in a single round trip. Only these requests are traced.
+        Trace trace = tracer.startTrace(OPERATION_TYPE_GET_BLOB_WITH_INFO);
+        GetBlobWithInfoCallback routerCallback = new GetBlobWithInfoCallback(restRequest, restResponseChannel, trace);
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
+      } else {
+        HeadForGetCallback routerCallback = new HeadForGetCallback(restRequest, restResponseChannel);
+        securityCallback = new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
+      }
       preProcessingTime = System.currentTimeMillis() - processingStartTime;
-      SecurityProcessRequestCallback securityCallback =
-          new SecurityProcessRequestCallback(restRequest, restResponseChannel, routerCallback);
       securityService.processRequest(restRequest, securityCallback);
     } catch (Exception e) {
       submitResponse(restRequest, restResponseChannel, null, e);
@@ -307,30 +332,38 @@ class AmbryBlobStorageService implements BlobStorageService {
     private final RestRequest restRequest;
     private final RestResponseChannel restResponseChannel;
     private final HeadForGetCallback headForGetCallback;
+    private final GetBlobWithInfoCallback getBlobWithInfoCallback;
     private final HeadCallback headCallback;
     private final DeleteCallback deleteCallback;
     private final CallbackTracker callbackTracker;
 
     InboundIdConverterCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         HeadForGetCallback callback) {
-      this(restRequest, restResponseChannel, callback, null, null);
+      this(restRequest, restResponseChannel, callback, null, null, null);
+    }
+
+    InboundIdConverterCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
+        GetBlobWithInfoCallback callback) {
+      this(restRequest, restResponseChannel, null, callback, null, null);
     }
 
     InboundIdConverterCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         HeadCallback callback) {
-      this(restRequest, restResponseChannel, null, callback, null);
+      this(restRequest, restResponseChannel, null, null, callback, null);
     }
 
     InboundIdConverterCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         DeleteCallback callback) {
-      this(restRequest, restResponseChannel, null, null, callback);
+      this(restRequest, restResponseChannel, null, null, null, callback);
     }
 
     private InboundIdConverterCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
-        HeadForGetCallback headForGetCallback, HeadCallback headCallback, DeleteCallback deleteCallback) {
+        HeadForGetCallback headForGetCallback, GetBlobWithInfoCallback getBlobWithInfoCallback,
+        HeadCallback headCallback, DeleteCallback deleteCallback) {
       this.restRequest = restRequest;
       this.restResponseChannel = restResponseChannel;
       this.headForGetCallback = headForGetCallback;
+      this.getBlobWithInfoCallback = getBlobWithInfoCallback;
       this.headCallback = headCallback;
       this.deleteCallback = deleteCallback;
       callbackTracker = new CallbackTracker(restRequest, OPERATION_TYPE_INBOUND_ID_CONVERSION,
@@ -355,9 +388,19 @@ class AmbryBlobStorageService implements BlobStorageService {
           logger.trace("Forwarding {} of {} to the router", restMethod, result);
           switch (restMethod) {
             case GET:
-              headForGetCallback.setBlobId(result);
-              headForGetCallback.markStartTime();
-              router.getBlobInfo(result, headForGetCallback);
+              if (getBlobWithInfoCallback != null) {
+                getBlobWithInfoCallback.markStartTime();
+                // the router picks up the trace of the request while the operation is submitted on this thread
+                Tracer.setCurrentTrace(getBlobWithInfoCallback.getTrace());
+                try {
+                  router.getBlobWithInfo(result, getBlobWithInfoCallback);
+                } finally {
+                  Tracer.clearCurrentTrace();
+                }
+              } else {
+                headForGetCallback.markStartTime();
+                router.getBlobInfo(result, headForGetCallback);
+              }
               break;
             case HEAD:
               headCallback.markStartTime();
@@ -396,6 +439,7 @@ class AmbryBlobStorageService implements BlobStorageService {
     private final CallbackTracker callbackTracker;
 
     private HeadForGetCallback headForGetCallback;
+    private GetBlobWithInfoCallback getBlobWithInfoCallback;
     private HeadCallback headCallback;
     private PostCallback postCallback;
     private DeleteCallback deleteCallback;
@@ -410,6 +454,18 @@ class AmbryBlobStorageService implements BlobStorageService {
       this.headForGetCallback = callback;
     }
 
+    SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
+        GetBlobWithInfoCallback callback) {
+      this(restRequest, restResponseChannel, PROCESS_GET, frontendMetrics.getSecurityRequestTimeInMs,
+          frontendMetrics.getSecurityRequestCallbackProcessingTimeInMs);
+      this.getBlobWithInfoCallback = callback;
+    }
+
+    SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel) {
+      this(restRequest, restResponseChannel, PROCESS_GET, frontendMetrics.getSecurityRequestTimeInMs,
+          frontendMetrics.getSecurityRequestCallbackProcessingTimeInMs);
+    }
+
     SecurityProcessRequestCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
         HeadCallback callback) {
       this(restRequest, restResponseChannel, PROCESS_HEAD, frontendMetrics.headSecurityRequestTimeInMs,
@@ -447,6 +503,7 @@ class AmbryBlobStorageService implements BlobStorageService {
      * In case of exception, response is immediately submitted to the {@link RestResponseHandler}.
      * In case of GET, HEAD and DELETE, ID conversion is triggered.
      * In case of POST, request is forwarded to the {@link Router}.
+     * In case of a GET of the slowest traces, the traces are submitted as the response.
      * @param result The result of the request. This would be non null when the request executed successfully
      * @param exception The exception that was reported on execution of the request
      */
@@ -459,11 +516,17 @@ class AmbryBlobStorageService implements BlobStorageService {
           logger.trace("Forwarding {} to the IdConverter/Router", restMethod);
           switch (restMethod) {
             case GET:
+              if (getBlobWithInfoCallback == null && headForGetCallback == null) {
+                ReadableStreamChannel response = getSlowestTracesHandler.getSlowestTraces(restResponseChannel);
+                submitResponse(restRequest, restResponseChannel, response, null);
+                break;
+              }
               String receivedId = RestUtils
                   .getOperationOrBlobIdFromUri(restRequest, RestUtils.getBlobSubResource(restRequest),
                       frontendConfig.frontendPathPrefixesToRemove);
-              InboundIdConverterCallback idConverterCallback =
-                  new InboundIdConverterCallback(restRequest, restResponseChannel, headForGetCallback);
+              InboundIdConverterCallback idConverterCallback = getBlobWithInfoCallback != null
+                  ? new InboundIdConverterCallback(restRequest, restResponseChannel, getBlobWithInfoCallback)
+                  : new InboundIdConverterCallback(restRequest, restResponseChannel, headForGetCallback);
               idConverter.convert(restRequest, receivedId, idConverterCallback);
               break;
             case HEAD:
@@ -556,40 +619,32 @@ class AmbryBlobStorageService implements BlobStorageService {
   }
 
   /**
-   * Callback for HEAD that precedes GET operations. Updates headers and invokes GET with a new callback.
+   * Callback for HEAD that precedes GET operations for a sub-resource of a blob. Updates headers and responds with the
+   * sub-resource.
    */
   private class HeadForGetCallback implements Callback<BlobInfo> {
     private final RestRequest restRequest;
     private final RestResponseChannel restResponseChannel;
-    private final RestUtils.SubResource subResource;
     private final CallbackTracker callbackTracker;
-    private final Logger logger = LoggerFactory.getLogger(getClass());
-
-    private String blobId;
 
     /**
      * Create a HEAD before GET callback.
      * @param restRequest the {@link RestRequest} for whose response this is a callback.
      * @param restResponseChannel the {@link RestResponseChannel} to set headers on.
-     * @param subResource the sub-resource requested.
      */
-    HeadForGetCallback(RestRequest restRequest, RestResponseChannel restResponseChannel,
-        RestUtils.SubResource subResource) {
+    HeadForGetCallback(RestRequest restRequest, RestResponseChannel restResponseChannel) {
       this.restRequest = restRequest;
       this.restResponseChannel = restResponseChannel;
-      this.subResource = subResource;
       callbackTracker =
           new CallbackTracker(restRequest, OPERATION_TYPE_HEAD_BEFORE_GET, frontendMetrics.headForGetTimeInMs,
               frontendMetrics.headForGetCallbackProcessingTimeInMs);
-      blobId =
-          RestUtils.getOperationOrBlobIdFromUri(restRequest, subResource, frontendConfig.frontendPathPrefixesToRemove);
     }
 
     /**
-     * If the request is not for a sub resource, makes a GET call to the router. If the request is for a sub resource,
-     * responds immediately. If there was no {@code routerResult} or if there was an exception, bails out.
-     * @param routerResult The result of the request i.e a {@link BlobInfo} object with the properties of the blob that
-     *                     is going to be scheduled for GET. This is non null if the request executed successfully.
+     * Responds with the sub resource that was requested. If there was no {@code routerResult} or if there was an
+     * exception, bails out.
+     * @param routerResult The result of the request i.e a {@link BlobInfo} object with the properties of the blob whose
+     *                     sub resource was requested. This is non null if the request executed successfully.
      * @param routerException The exception that was reported on execution of the request (if any).
      */
     @Override
@@ -610,33 +665,25 @@ class AmbryBlobStorageService implements BlobStorageService {
             public void onCompletion(Void securityResult, Exception securityException) {
               securityCallbackTracker.markOperationEnd();
               ReadableStreamChannel response = null;
-              boolean blobNotModified = restResponseChannel.getStatus() == ResponseStatus.NotModified;
               try {
                 if (securityException == null) {
-                  if (subResource != null) {
-                    Map<String, String> userMetadata = RestUtils.buildUserMetadata(routerResult.getUserMetadata());
-                    if (userMetadata == null) {
-                      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, "application/octet-stream");
-                      restResponseChannel
-                          .setHeader(RestUtils.Headers.CONTENT_LENGTH, routerResult.getUserMetadata().length);
-                      response = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(routerResult.getUserMetadata()));
-                    } else {
-                      setUserMetadataHeaders(userMetadata, restResponseChannel);
-                      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, 0);
-                      response = new ByteBufferReadableStreamChannel(AmbryBlobStorageService.EMPTY_BUFFER);
-                    }
-                  } else if (!blobNotModified) {
-                    logger.trace("Forwarding GET after HEAD for {} to the router", blobId);
-                    router.getBlob(blobId, new GetCallback(restRequest, restResponseChannel));
+                  Map<String, String> userMetadata = RestUtils.buildUserMetadata(routerResult.getUserMetadata());
+                  if (userMetadata == null) {
+                    restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, "application/octet-stream");
+                    restResponseChannel
+                        .setHeader(RestUtils.Headers.CONTENT_LENGTH, routerResult.getUserMetadata().length);
+                    response = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(routerResult.getUserMetadata()));
+                  } else {
+                    setUserMetadataHeaders(userMetadata, restResponseChannel);
+                    restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, 0);
+                    response = new ByteBufferReadableStreamChannel(AmbryBlobStorageService.EMPTY_BUFFER);
                   }
                 }
               } catch (Exception e) {
                 frontendMetrics.getSecurityResponseCallbackProcessingError.inc();
                 securityException = e;
               } finally {
-                if (response != null || securityException != null || blobNotModified) {
-                  submitResponse(restRequest, restResponseChannel, response, securityException);
-                }
+                submitResponse(restRequest, restResponseChannel, response, securityException);
                 securityCallbackTracker.markCallbackProcessingEnd();
               }
             }
@@ -653,14 +700,6 @@ class AmbryBlobStorageService implements BlobStorageService {
       }
     }
 
-    /**
-     * Sets the blob ID that should be used for {@link Router#getBlob(String, Callback)}.
-     * @param blobId the blob ID that should be used for {@link Router#getBlob(String, Callback)}.
-     */
-    void setBlobId(String blobId) {
-      this.blobId = blobId;
-    }
-
     /**
      * Marks the start time of the operation.
      */
@@ -683,43 +722,123 @@ class AmbryBlobStorageService implements BlobStorageService {
   }
 
   /**
-   * Callback for GET operations. Submits the response received to an instance of {@link RestResponseHandler}.
+   * Callback for GET operations that fetch the blob along with its {@link BlobInfo} in a single round trip. Runs the
+   * response through the {@link SecurityService} and submits the blob data to an instance of
+   * {@link RestResponseHandler}.
    */
-  private class GetCallback implements Callback<ReadableStreamChannel> {
+  private class GetBlobWithInfoCallback implements Callback<GetBlobResult> {
     private final RestRequest restRequest;
     private final RestResponseChannel restResponseChannel;
     private final CallbackTracker callbackTracker;
+    private final Trace trace;
+    private long routerStartTime;
+    private long securityStartTime;
 
     /**
-     * Create a GET callback.
+     * Create a GET blob with info callback.
      * @param restRequest the {@link RestRequest} for whose response this is a callback.
      * @param restResponseChannel the {@link RestResponseChannel} over which response to {@code restRequest} can be
      *                            sent.
+     * @param trace the {@link Trace} of the request, or {@code null} if the request is not traced.
      */
-    GetCallback(RestRequest restRequest, RestResponseChannel restResponseChannel) {
+    GetBlobWithInfoCallback(RestRequest restRequest, RestResponseChannel restResponseChannel, Trace trace) {
       this.restRequest = restRequest;
       this.restResponseChannel = restResponseChannel;
-      callbackTracker = new CallbackTracker(restRequest, OPERATION_TYPE_GET, frontendMetrics.getTimeInMs,
-          frontendMetrics.getCallbackProcessingTimeInMs);
-      callbackTracker.markOperationStart();
+      this.trace = trace;
+      callbackTracker =
+          new CallbackTracker(restRequest, OPERATION_TYPE_GET_BLOB_WITH_INFO, frontendMetrics.getBlobWithInfoTimeInMs,
+              frontendMetrics.getBlobWithInfoCallbackProcessingTimeInMs);
     }
 
     /**
-     * Submits the GET response to {@link RestResponseHandler} so that it can be sent (or the exception handled).
-     * @param routerResult The result of the request. This is the actual blob data as a {@link ReadableStreamChannel}.
-     *               This is non null if the request executed successfully.
+     * Processes the {@link BlobInfo} through the {@link SecurityService} and submits the blob data as the response. If
+     * the security check fails or the blob has not been modified, the blob data channel is closed without being read.
+     * @param routerResult The result of the request i.e a {@link GetBlobResult} containing the {@link BlobInfo} and the
+     *                     blob data. This is non null if the request executed successfully.
      * @param routerException The exception that was reported on execution of the request (if any).
      */
     @Override
-    public void onCompletion(ReadableStreamChannel routerResult, Exception routerException) {
+    public void onCompletion(final GetBlobResult routerResult, Exception routerException) {
       callbackTracker.markOperationEnd();
+      if (trace != null) {
+        trace.addSpan("FrontendRequestProcessing", null, trace.getStartTimeMs(), routerStartTime);
+        trace.addSpan("Router", routerException == null ? null : routerException.getMessage(), routerStartTime,
+            traceTime.milliseconds());
+      }
       if (routerResult == null && routerException == null) {
         throw new IllegalStateException("Both response and exception are null");
-      } else {
-        submitResponse(restRequest, restResponseChannel, routerResult, routerException);
+      }
+      try {
+        if (routerException == null) {
+          final CallbackTracker securityCallbackTracker =
+              new CallbackTracker(restRequest, OPERATION_TYPE_GET_RESPONSE_SECURITY,
+                  frontendMetrics.getSecurityResponseTimeInMs,
+                  frontendMetrics.getSecurityResponseCallbackProcessingTimeInMs);
+          securityCallbackTracker.markOperationStart();
+          securityStartTime = traceTime.milliseconds();
+          securityService
+              .processResponse(restRequest, restResponseChannel, routerResult.getBlobInfo(), new Callback<Void>() {
+                @Override
+                public void onCompletion(Void securityResult, Exception securityException) {
+                  securityCallbackTracker.markOperationEnd();
+                  ReadableStreamChannel response = null;
+                  try {
+                    if (securityException == null && restResponseChannel.getStatus() != ResponseStatus.NotModified) {
+                      response = routerResult.getBlobDataChannel();
+                    } else {
+                      routerResult.getBlobDataChannel().close();
+                    }
+                  } catch (Exception e) {
+                    frontendMetrics.getSecurityResponseCallbackProcessingError.inc();
+                    securityException = e;
+                  } finally {
+                    finishTrace(true);
+                    submitResponse(restRequest, restResponseChannel, response, securityException);
+                    securityCallbackTracker.markCallbackProcessingEnd();
+                  }
+                }
+              });
+        }
+      } catch (Exception e) {
+        frontendMetrics.getBlobWithInfoCallbackProcessingError.inc();
+        routerException = e;
+      } finally {
+        if (routerException != null) {
+          finishTrace(false);
+          submitResponse(restRequest, restResponseChannel, null, routerException);
+        }
         callbackTracker.markCallbackProcessingEnd();
       }
     }
+
+    /**
+     * Marks the start time of the operation.
+     */
+    void markStartTime() {
+      routerStartTime = traceTime.milliseconds();
+      callbackTracker.markOperationStart();
+    }
+
+    /**
+     * @return the {@link Trace} of the request, or {@code null} if the request is not traced.
+     */
+    Trace getTrace() {
+      return trace;
+    }
+
+    /**
+     * Records the span of the security processing of the response, if there was one, and finishes the trace of the
+     * request once the response is ready to be submitted.
+     * @param securityProcessed {@code true} if the response was processed by the {@link SecurityService}.
+     */
+    private void finishTrace(boolean securityProcessed) {
+      if (trace != null) {
+        if (securityProcessed) {
+          trace.addSpan("ResponseSecurity", null, securityStartTime, traceTime.milliseconds());
+        }
+        tracer.finishTrace(trace);
+      }
+    }
   }
 
   /**
@@ -36,6 +36,7 @@ class FrontendMetrics {
   public final RestRequestMetrics getBlobInfoMetrics;
   public final RestRequestMetrics getBlobMetrics;
   public final RestRequestMetrics getUserMetadataMetrics;
+  public final RestRequestMetrics getSlowestTracesMetrics;
   // POST
   public final RestRequestMetrics postBlobMetrics;
 
@@ -54,6 +55,7 @@ class FrontendMetrics {
   public final Histogram headPreProcessingTimeInMs;
   // GET
   public final Histogram getPreProcessingTimeInMs;
+  public final Histogram getSlowestTracesProcessingTimeInMs;
   // POST
   public final Histogram blobPropsBuildTimeInMs;
   public final Histogram postPreProcessingTimeInMs;
@@ -70,9 +72,9 @@ class FrontendMetrics {
   public final Histogram headForGetTimeInMs;
   public final Histogram getSecurityResponseCallbackProcessingTimeInMs;
   public final Histogram getSecurityResponseTimeInMs;
-  // GetCallback
-  public final Histogram getCallbackProcessingTimeInMs;
-  public final Histogram getTimeInMs;
+  // GetBlobWithInfoCallback
+  public final Histogram getBlobWithInfoCallbackProcessingTimeInMs;
+  public final Histogram getBlobWithInfoTimeInMs;
   // PostCallback
   public final Histogram outboundIdConversionCallbackProcessingTimeInMs;
   public final Histogram outboundIdConversionTimeInMs;
@@ -112,6 +114,10 @@ class FrontendMetrics {
   public final Counter getSecurityResponseCallbackProcessingError;
   // GetCallback
   public final Counter getCallbackProcessingError;
+  // GetBlobWithInfoCallback
+  public final Counter getBlobWithInfoCallbackProcessingError;
+  // GetSlowestTracesHandler
+  public final Counter slowestTracesResponseConstructionError;
   // PostCallback
   public final Counter postCallbackProcessingError;
   public final Counter outboundIdConversionCallbackProcessingError;
@@ -135,6 +141,7 @@ class FrontendMetrics {
     getBlobInfoMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetBlobInfo", metricRegistry);
     getBlobMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetBlob", metricRegistry);
     getUserMetadataMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetUserMetadata", metricRegistry);
+    getSlowestTracesMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "GetSlowestTraces", metricRegistry);
     // POST
     postBlobMetrics = new RestRequestMetrics(AmbryBlobStorageService.class, "PostBlob", metricRegistry);
 
@@ -158,6 +165,8 @@ class FrontendMetrics {
     // GET
     getPreProcessingTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetPreProcessingTimeInMs"));
+    getSlowestTracesProcessingTimeInMs =
+        metricRegistry.histogram(MetricRegistry.name(GetSlowestTracesHandler.class, "ProcessingTimeInMs"));
     // POST
     blobPropsBuildTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "BlobPropsBuildTimeInMs"));
@@ -186,11 +195,11 @@ class FrontendMetrics {
         .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetSecurityResponseCallbackProcessingTimeInMs"));
     getSecurityResponseTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetSecurityResponseTimeInMs"));
-    // GetCallback
-    getCallbackProcessingTimeInMs =
-        metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetCallbackProcessingTimeInMs"));
-    getTimeInMs =
-        metricRegistry.histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetCallbackResultTimeInMs"));
+    // GetBlobWithInfoCallback
+    getBlobWithInfoCallbackProcessingTimeInMs = metricRegistry
+        .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobWithInfoCallbackProcessingTimeInMs"));
+    getBlobWithInfoTimeInMs = metricRegistry
+        .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobWithInfoCallbackResultTimeInMs"));
     // PostCallback
     outboundIdConversionCallbackProcessingTimeInMs = metricRegistry
         .histogram(MetricRegistry.name(AmbryBlobStorageService.class, "OutboundIdCallbackProcessingTimeInMs"));
@@ -257,6 +266,12 @@ class FrontendMetrics {
     // GetCallback
     getCallbackProcessingError =
         metricRegistry.counter(MetricRegistry.name(AmbryBlobStorageService.class, "GetCallbackProcessingError"));
+    // GetBlobWithInfoCallback
+    getBlobWithInfoCallbackProcessingError = metricRegistry
+        .counter(MetricRegistry.name(AmbryBlobStorageService.class, "GetBlobWithInfoCallbackProcessingError"));
+    // GetSlowestTracesHandler
+    slowestTracesResponseConstructionError =
+        metricRegistry.counter(MetricRegistry.name(GetSlowestTracesHandler.class, "ResponseConstructionError"));
     // PostCallback
     postCallbackProcessingError =
         metricRegistry.counter(MetricRegistry.name(AmbryBlobStorageService.class, "PostCallbackProcessingError"));
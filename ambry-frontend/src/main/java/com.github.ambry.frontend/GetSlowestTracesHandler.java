@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.frontend;
+
+import com.github.ambry.commons.ByteBufferReadableStreamChannel;
+import com.github.ambry.rest.RestResponseChannel;
+import com.github.ambry.rest.RestServiceErrorCode;
+import com.github.ambry.rest.RestServiceException;
+import com.github.ambry.rest.RestUtils;
+import com.github.ambry.router.ReadableStreamChannel;
+import com.github.ambry.utils.Tracer;
+import java.nio.ByteBuffer;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Performs the operation that returns the slowest of the traces of sampled GET requests that the frontend recorded.
+ * Every trace has the spans recorded by the frontend and the router, including one per request sent to a replica.
+ * The servers record their spans under the same trace id.
+ */
+class GetSlowestTracesHandler {
+  static final String SLOWEST_TRACES_OPERATION = "slowestTraces";
+  static final String TRACES_KEY = "traces";
+
+  private final FrontendMetrics frontendMetrics;
+  private final Tracer tracer;
+  private final int count;
+  private final Logger logger = LoggerFactory.getLogger(GetSlowestTracesHandler.class);
+
+  /**
+   * Instantiate a handler to handle slowest traces operations.
+   * @param frontendMetrics the {@link FrontendMetrics} instance to use for metrics.
+   * @param tracer the {@link Tracer} that records the traces of the frontend.
+   * @param count the number of traces to return.
+   */
+  GetSlowestTracesHandler(FrontendMetrics frontendMetrics, Tracer tracer, int count) {
+    this.frontendMetrics = frontendMetrics;
+    this.tracer = tracer;
+    this.count = count;
+  }
+
+  /**
+   * @param operationOrBlobId the operation or blob ID in the URI of a request.
+   * @return whether the request is for the slowest traces.
+   */
+  static boolean isSlowestTracesOperation(String operationOrBlobId) {
+    return SLOWEST_TRACES_OPERATION.equals(operationOrBlobId) || ("/" + SLOWEST_TRACES_OPERATION).equals(
+        operationOrBlobId);
+  }
+
+  /**
+   * Handles slowest traces operations by returning the slowest traces as a serialized JSON object in the response.
+   * @param restResponseChannel the {@link RestResponseChannel} to set headers in.
+   * @return a {@link ReadableStreamChannel} that contains the slowest traces.
+   * @throws RestServiceException if there was any problem constructing the response.
+   */
+  public ReadableStreamChannel getSlowestTraces(RestResponseChannel restResponseChannel)
+      throws RestServiceException {
+    logger.trace("Getting the {} slowest traces", count);
+    long startTime = System.currentTimeMillis();
+    ReadableStreamChannel channel = null;
+    try {
+      byte[] traces = new JSONObject().put(TRACES_KEY, tracer.getSlowestTracesAsJSON(count)).toString().getBytes();
+      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_TYPE, "application/json");
+      restResponseChannel.setHeader(RestUtils.Headers.CONTENT_LENGTH, traces.length);
+      channel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(traces));
+    } catch (JSONException e) {
+      frontendMetrics.slowestTracesResponseConstructionError.inc();
+      throw new RestServiceException("Could not create response for GET of the slowest traces", e,
+          RestServiceErrorCode.InternalServerError);
+    } finally {
+      frontendMetrics.getSlowestTracesProcessingTimeInMs.update(System.currentTimeMillis() - startTime);
+    }
+    return channel;
+  }
+}
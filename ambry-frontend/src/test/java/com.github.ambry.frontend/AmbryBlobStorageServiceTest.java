@@ -39,6 +39,7 @@ import com.github.ambry.rest.SecurityServiceFactory;
 import com.github.ambry.router.AsyncWritableChannel;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.GetBlobResult;
 import com.github.ambry.router.InMemoryRouter;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
@@ -57,12 +58,14 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
@@ -355,6 +358,45 @@ public class AmbryBlobStorageServiceTest {
     verifyOperationsAfterDelete(blobId);
   }
 
+  /**
+   * Tests that sampled GET requests are traced and that the slowest traces can be fetched.
+   * @throws Exception
+   */
+  @Test
+  public void slowestTracesTest()
+      throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("frontend.trace.sample.rate", "1");
+    ambryBlobStorageService.shutdown();
+    ambryBlobStorageService =
+        new AmbryBlobStorageService(new FrontendConfig(new VerifiableProperties(properties)), frontendMetrics,
+            responseHandler, router, idConverterFactory, securityServiceFactory);
+    ambryBlobStorageService.start();
+
+    JSONObject traces = getSlowestTraces();
+    assertEquals("There should be no traces before any GET", 0, traces.getJSONArray("traces").length());
+
+    final int CONTENT_LENGTH = 1024;
+    ByteBuffer content = ByteBuffer.wrap(RestTestUtils.getRandomBytes(CONTENT_LENGTH));
+    JSONObject headers = new JSONObject();
+    setAmbryHeaders(headers, CONTENT_LENGTH, 7200, false, "slowestTracesServiceID", "application/octet-stream", null);
+    String blobId = postBlobAndVerify(headers, content);
+    getBlobAndVerify(blobId, headers, content);
+    getBlobInfoAndVerify(blobId, headers);
+
+    traces = getSlowestTraces();
+    assertEquals("Only the GET of the blob should have been traced", 1, traces.getJSONArray("traces").length());
+    JSONObject trace = traces.getJSONArray("traces").getJSONObject(0);
+    assertTrue("Trace should have finished", trace.getLong("durationMs") >= 0);
+    Set<String> spanNames = new HashSet<String>();
+    for (int i = 0; i < trace.getJSONArray("spans").length(); i++) {
+      spanNames.add(trace.getJSONArray("spans").getJSONObject(i).getString("name"));
+    }
+    assertTrue("Trace should have a span for the router: " + spanNames, spanNames.contains("Router"));
+    assertTrue("Trace should have a span for the response security: " + spanNames,
+        spanNames.contains("ResponseSecurity"));
+  }
+
   /**
    * Tests how metadata that has not been POSTed in the form of headers is returned.
    * @throws Exception
@@ -665,6 +707,26 @@ public class AmbryBlobStorageServiceTest {
     return blobId;
   }
 
+  /**
+   * Gets the slowest traces from the {@link AmbryBlobStorageService} and verifies the response headers.
+   * @return the slowest traces that were returned.
+   * @throws Exception
+   */
+  private JSONObject getSlowestTraces()
+      throws Exception {
+    RestRequest restRequest =
+        createRestRequest(RestMethod.GET, "/" + GetSlowestTracesHandler.SLOWEST_TRACES_OPERATION, null, null);
+    MockRestResponseChannel restResponseChannel = new MockRestResponseChannel();
+    doOperation(restRequest, restResponseChannel);
+    assertEquals("Unexpected response status", ResponseStatus.Ok, restResponseChannel.getStatus());
+    assertEquals("Unexpected Content-Type", "application/json",
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_TYPE));
+    byte[] response = restResponseChannel.getResponseBody();
+    assertEquals("Unexpected Content-Length", Integer.toString(response.length),
+        restResponseChannel.getHeader(RestUtils.Headers.CONTENT_LENGTH));
+    return new JSONObject(new String(response));
+  }
+
   /**
    * Gets the blob with blob ID {@code blobId} and verifies that the headers and content match with what is expected.
    * @param blobId the blob ID of the blob to GET.
@@ -987,8 +1049,9 @@ public class AmbryBlobStorageServiceTest {
           break;
         case GET:
           testRouter.exceptionOpType = FrontendTestRouter.OpType.GetBlobInfo;
-          checkRouterExceptionPipeline(exceptionMsg, createRestRequest(restMethod, "/", null, null));
-          testRouter.exceptionOpType = FrontendTestRouter.OpType.GetBlob;
+          checkRouterExceptionPipeline(exceptionMsg,
+              createRestRequest(restMethod, "/id/" + RestUtils.SubResource.BlobInfo, null, null));
+          testRouter.exceptionOpType = FrontendTestRouter.OpType.GetBlobWithInfo;
           checkRouterExceptionPipeline(exceptionMsg, createRestRequest(restMethod, "/", null, null));
           break;
         case POST:
@@ -1327,6 +1390,7 @@ class FrontendTestRouter implements Router {
     DeleteBlob,
     GetBlobInfo,
     GetBlob,
+    GetBlobWithInfo,
     PutBlob
   }
 
@@ -1355,6 +1419,17 @@ class FrontendTestRouter implements Router {
     return completeOperation(new ByteBufferReadableStreamChannel(ByteBuffer.allocate(0)), callback, OpType.GetBlob);
   }
 
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId) {
+    return getBlobWithInfo(blobId, null);
+  }
+
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback) {
+    return completeOperation(new GetBlobResult(new BlobInfo(new BlobProperties(0, "FrontendTestRouter"), new byte[0]),
+        new ByteBufferReadableStreamChannel(ByteBuffer.allocate(0))), callback, OpType.GetBlobWithInfo);
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.messageformat;
+
+import com.github.ambry.store.StoreKey;
+
+
+/**
+ * Contains everything that is part of a put message: the key, the {@link BlobInfo} and the {@link BlobData}.
+ */
+public class BlobAll {
+  private final StoreKey storeKey;
+  private final BlobInfo blobInfo;
+  private final BlobData blobData;
+
+  /**
+   * Construct a BlobAll
+   * @param storeKey the {@link StoreKey} of the message.
+   * @param blobInfo the {@link BlobInfo} (blob properties and user metadata) of the message.
+   * @param blobData the {@link BlobData} of the message.
+   */
+  public BlobAll(StoreKey storeKey, BlobInfo blobInfo, BlobData blobData) {
+    this.storeKey = storeKey;
+    this.blobInfo = blobInfo;
+    this.blobData = blobData;
+  }
+
+  /**
+   * @return the {@link StoreKey} of the message.
+   */
+  public StoreKey getStoreKey() {
+    return storeKey;
+  }
+
+  /**
+   * @return the {@link BlobInfo} of the message.
+   */
+  public BlobInfo getBlobInfo() {
+    return blobInfo;
+  }
+
+  /**
+   * @return the {@link BlobData} of the message.
+   */
+  public BlobData getBlobData() {
+    return blobData;
+  }
+}
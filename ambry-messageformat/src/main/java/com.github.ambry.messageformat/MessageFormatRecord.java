@@ -170,6 +170,42 @@ public class MessageFormatRecord {
     }
   }
 
+  /**
+   * Deserialize a complete put message (as sent by the server for {@link MessageFormatFlags#All}) into its key,
+   * {@link BlobInfo} and {@link BlobData}.
+   * @param stream the stream positioned at the start of the message header.
+   * @param storeKeyFactory the {@link StoreKeyFactory} to use to deserialize the key.
+   * @return the {@link BlobAll} representing the message.
+   * @throws IOException if there is an I/O error while reading from the stream.
+   * @throws MessageFormatException if the message is corrupt, is of an unknown version or is not a put message.
+   */
+  public static BlobAll deserializeBlobAll(InputStream stream, StoreKeyFactory storeKeyFactory)
+      throws IOException, MessageFormatException {
+    DataInputStream inputStream = new DataInputStream(stream);
+    short version = inputStream.readShort();
+    switch (version) {
+      case Message_Header_Version_V1:
+        ByteBuffer headerBuf = ByteBuffer.allocate(MessageHeader_Format_V1.getHeaderSize());
+        headerBuf.putShort(version);
+        inputStream.readFully(headerBuf.array(), Version_Field_Size_In_Bytes,
+            headerBuf.capacity() - Version_Field_Size_In_Bytes);
+        MessageHeader_Format_V1 header = new MessageHeader_Format_V1(headerBuf);
+        header.verifyHeader();
+        StoreKey storeKey = storeKeyFactory.getStoreKey(inputStream);
+        if (header.getBlobPropertiesRecordRelativeOffset() == Message_Header_Invalid_Relative_Offset) {
+          throw new MessageFormatException("Message for " + storeKey + " is not a put message",
+              MessageFormatErrorCodes.Header_Constraint_Error);
+        }
+        BlobProperties blobProperties = deserializeBlobProperties(inputStream);
+        ByteBuffer userMetadata = deserializeUserMetadata(inputStream);
+        BlobData blobData = deserializeBlob(inputStream);
+        return new BlobAll(storeKey, new BlobInfo(blobProperties, userMetadata.array()), blobData);
+      default:
+        throw new MessageFormatException("message header version not supported",
+            MessageFormatErrorCodes.Unknown_Format_Version);
+    }
+  }
+
   /**
    *  - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
    * |         |                 |                 |                 |                 |                 |            |
@@ -18,15 +18,21 @@ import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.store.MessageInfo;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Crc32;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Utils;
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +40,10 @@ import org.slf4j.LoggerFactory;
 /**
  * InputStream that skips invalid blobs based on some validation criteria.
  * For now, the check only supports detection of message corruption
+ * <p/>
+ * Messages are validated in place in the buffer that they are read into, without copying blob content. If an
+ * {@link ExecutorService} is provided, messages are validated on it while the following messages are being read from
+ * the stream.
  */
 public class MessageSievingInputStream extends InputStream {
   private int validSize;
@@ -57,6 +67,22 @@ public class MessageSievingInputStream extends InputStream {
   public MessageSievingInputStream(InputStream stream, List<MessageInfo> messageInfoList,
       StoreKeyFactory storeKeyFactory, MetricRegistry metricRegistry)
       throws IOException {
+    this(stream, messageInfoList, storeKeyFactory, metricRegistry, null);
+  }
+
+  /**
+   * @param stream The stream from which bytes need to be read. If the underlying stream is SocketInputStream, it needs
+   *               to be blocking
+   * @param messageInfoList List of MessageInfo which contains details about the messages in the stream
+   * @param storeKeyFactory factory which is used to read the key from the stream
+   * @param metricRegistry Metric register to register metrics
+   * @param validationExecutor the {@link ExecutorService} to validate messages on. If {@code null}, messages are
+   *                           validated on the calling thread.
+   * @throws java.io.IOException
+   */
+  public MessageSievingInputStream(InputStream stream, List<MessageInfo> messageInfoList,
+      final StoreKeyFactory storeKeyFactory, MetricRegistry metricRegistry, ExecutorService validationExecutor)
+      throws IOException {
     this.logger = LoggerFactory.getLogger(getClass());
     messageFormatValidationTime =
         metricRegistry.histogram(MetricRegistry.name(MessageSievingInputStream.class, "MessageFormatValidationTime"));
@@ -78,29 +104,57 @@ public class MessageSievingInputStream extends InputStream {
     }
 
     int bytesRead = 0;
-    byte[] data = new byte[totalMessageListSize];
+    final byte[] data = new byte[totalMessageListSize];
     long startTime = SystemTime.getInstance().milliseconds();
     logger.trace("Starting to validate message stream ");
-    int offset = 0;
-    for (MessageInfo msgInfo : messageInfoList) {
-      int msgSize = (int) msgInfo.getSize();
+    boolean[] validity = new boolean[messageInfoList.size()];
+    List<Future<Boolean>> validations = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < messageInfoList.size(); i++) {
+      final MessageInfo msgInfo = messageInfoList.get(i);
+      final int offset = bytesRead;
+      final int msgSize = (int) msgInfo.getSize();
       Utils.readBytesFromStream(stream, data, offset, msgSize);
       logger.trace("Read stream for message info " + msgInfo + "  into memory");
-      ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(data, offset, msgSize);
-      if (checkForMessageValidity(byteArrayInputStream, offset, msgSize, storeKeyFactory, msgInfo)) {
-        offset += msgSize;
-        validMessageInfoList.add(msgInfo);
+      if (validationExecutor == null) {
+        validity[i] = checkForMessageValidity(data, offset, msgSize, storeKeyFactory, msgInfo);
       } else {
-        logger.error("Error reading the message at " + bytesRead + " with messageInfo " + msgInfo
-            + " and hence skipping the message");
-        hasInvalidMessages = true;
+        validations.add(validationExecutor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call()
+              throws IOException {
+            return checkForMessageValidity(data, offset, msgSize, storeKeyFactory, msgInfo);
+          }
+        }));
       }
       bytesRead += msgSize;
     }
+    for (int i = 0; i < validations.size(); i++) {
+      validity[i] = getValidationResult(validations.get(i));
+    }
     if (bytesRead != totalMessageListSize) {
       logger.error(
           "Failed to read intended size from stream. Expected " + totalMessageListSize + ", actual " + bytesRead);
     }
+
+    // move the valid messages over the invalid ones. Nothing is copied if all the messages are valid.
+    int offset = 0;
+    int messageOffset = 0;
+    for (int i = 0; i < messageInfoList.size(); i++) {
+      MessageInfo msgInfo = messageInfoList.get(i);
+      int msgSize = (int) msgInfo.getSize();
+      if (validity[i]) {
+        if (offset != messageOffset) {
+          System.arraycopy(data, messageOffset, data, offset, msgSize);
+        }
+        offset += msgSize;
+        validMessageInfoList.add(msgInfo);
+      } else {
+        logger.error("Error reading the message at " + messageOffset + " with messageInfo " + msgInfo
+            + " and hence skipping the message");
+        hasInvalidMessages = true;
+      }
+      messageOffset += msgSize;
+    }
     if (validMessageInfoList.size() == 0) {
       logger.error("All messages are invalidated in this message stream ");
     }
@@ -158,67 +212,90 @@ public class MessageSievingInputStream extends InputStream {
   }
 
   /**
-   * Ensures blob validity in the given input stream. For now, blobs are checked for message corruption
-   * @param byteArrayInputStream stream against which validation has to be done
+   * Waits for the validation of a message to complete.
+   * @param validation the {@link Future} of the validation.
+   * @return true if the message is valid and false otherwise.
+   * @throws IOException if the validation failed with an {@link IOException} or the wait was interrupted.
+   */
+  private boolean getValidationResult(Future<Boolean> validation)
+      throws IOException {
+    try {
+      return validation.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for message validation");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException("Message validation failed", cause);
+    }
+  }
+
+  /**
+   * Ensures blob validity of a message in the given byte array. For now, blobs are checked for message corruption. The
+   * blob content is checked in place, without being copied.
+   * @param data the byte array that has the message
+   * @param currentOffset the offset in the byte array at which the message starts
    * @param size total size of the message expected
-   * @param currentOffset Current offset at which the data has to be read from the given byte array
    * @param storeKeyFactory StoreKeyFactory used to get store key
+   * @param msgInfo the {@link MessageInfo} of the message
    * @return true if message is valid and false otherwise
    * @throws IOException
    */
-  private boolean checkForMessageValidity(ByteArrayInputStream byteArrayInputStream, int currentOffset, long size,
-      StoreKeyFactory storeKeyFactory, MessageInfo msgInfo)
+  private boolean checkForMessageValidity(byte[] data, int currentOffset, int size, StoreKeyFactory storeKeyFactory,
+      MessageInfo msgInfo)
       throws IOException {
     boolean isValid = false;
     BlobProperties props = null;
     ByteBuffer metadata = null;
-    BlobData blobData = null;
+    ByteBuffer message = ByteBuffer.wrap(data, currentOffset, size).slice();
     long startTime = SystemTime.getInstance().milliseconds();
     try {
-      int availableBeforeParsing = byteArrayInputStream.available();
-      byte[] headerVersionInBytes = new byte[MessageFormatRecord.Version_Field_Size_In_Bytes];
-      byteArrayInputStream.read(headerVersionInBytes, 0, MessageFormatRecord.Version_Field_Size_In_Bytes);
-      ByteBuffer headerVersion = ByteBuffer.wrap(headerVersionInBytes);
-      short version = headerVersion.getShort();
+      if (size < MessageFormatRecord.Version_Field_Size_In_Bytes) {
+        throw new MessageFormatException("Message is truncated", MessageFormatErrorCodes.Data_Corrupt);
+      }
+      short version = message.getShort(0);
       if (version == 1) {
-        ByteBuffer headerBuffer = ByteBuffer.allocate(MessageFormatRecord.MessageHeader_Format_V1.getHeaderSize());
-        headerBuffer.putShort(version);
-        byteArrayInputStream.read(headerBuffer.array(), 2, headerBuffer.capacity() - 2);
-        headerBuffer.position(headerBuffer.capacity());
-        headerBuffer.flip();
+        int headerSize = MessageFormatRecord.MessageHeader_Format_V1.getHeaderSize();
+        if (size < headerSize) {
+          throw new MessageFormatException("Message header is truncated", MessageFormatErrorCodes.Data_Corrupt);
+        }
         MessageFormatRecord.MessageHeader_Format_V1 header =
-            new MessageFormatRecord.MessageHeader_Format_V1(headerBuffer);
-        StoreKey storeKey = storeKeyFactory.getStoreKey(new DataInputStream(byteArrayInputStream));
+            new MessageFormatRecord.MessageHeader_Format_V1(message.duplicate());
+        message.position(headerSize);
+        ByteBufferInputStream messageStream = new ByteBufferInputStream(message);
+        StoreKey storeKey = storeKeyFactory.getStoreKey(new DataInputStream(messageStream));
 
         if (header.getBlobPropertiesRecordRelativeOffset()
             != MessageFormatRecord.Message_Header_Invalid_Relative_Offset) {
-          props = MessageFormatRecord.deserializeBlobProperties(byteArrayInputStream);
-          metadata = MessageFormatRecord.deserializeUserMetadata(byteArrayInputStream);
-          blobData = MessageFormatRecord.deserializeBlob(byteArrayInputStream);
+          props = MessageFormatRecord.deserializeBlobProperties(messageStream);
+          metadata = MessageFormatRecord.deserializeUserMetadata(messageStream);
         } else {
           throw new IllegalStateException("Message cannot be a deleted record ");
         }
-        if (byteArrayInputStream.available() != 0) {
-          logger.error("Parsed message size " + (availableBeforeParsing + byteArrayInputStream.available())
-              + " is not equivalent to the size in message info " + availableBeforeParsing);
+        long blobSize = checkBlobRecord(data, currentOffset + message.position(), size - message.position());
+        if (logger.isTraceEnabled()) {
+          logger.trace("Message Successfully read");
+          logger.trace(
+              "Header - version {} Message Size {} Starting offset of the blob {} BlobPropertiesRelativeOffset {}"
+                  + " UserMetadataRelativeOffset {} DataRelativeOffset {} DeleteRecordRelativeOffset {} Crc {}",
+              header.getVersion(), header.getMessageSize(), currentOffset,
+              header.getBlobPropertiesRecordRelativeOffset(), header.getUserMetadataRecordRelativeOffset(),
+              header.getBlobRecordRelativeOffset(), header.getDeleteRecordRelativeOffset(), header.getCrc());
+          logger.trace("Id {} Blob Properties - blobSize {} Metadata - size {} Blob - size {} ", storeKey.getID(),
+              props.getBlobSize(), metadata.capacity(), blobSize);
+        }
+        if (msgInfo.getStoreKey().equals(storeKey)) {
+          isValid = true;
         } else {
-          if (logger.isTraceEnabled()) {
-            logger.trace("Message Successfully read");
-            logger.trace(
-                "Header - version {} Message Size {} Starting offset of the blob {} BlobPropertiesRelativeOffset {}"
-                    + " UserMetadataRelativeOffset {} DataRelativeOffset {} DeleteRecordRelativeOffset {} Crc {}",
-                header.getVersion(), header.getMessageSize(), currentOffset,
-                header.getBlobPropertiesRecordRelativeOffset(), header.getUserMetadataRecordRelativeOffset(),
-                header.getBlobRecordRelativeOffset(), header.getDeleteRecordRelativeOffset(), header.getCrc());
-            logger.trace("Id {} Blob Properties - blobSize {} Metadata - size {} Blob - size {} ", storeKey.getID(),
-                props.getBlobSize(), metadata.capacity(), blobData.getSize());
-          }
-          if (msgInfo.getStoreKey().equals(storeKey)) {
-            isValid = true;
-          } else {
-            logger.error(
-                "StoreKey in log " + storeKey + " failed to match store key from Index " + msgInfo.getStoreKey());
-          }
+          logger.error(
+              "StoreKey in log " + storeKey + " failed to match store key from Index " + msgInfo.getStoreKey());
         }
       } else {
         throw new MessageFormatException("Header version not supported " + version,
@@ -233,5 +310,58 @@ public class MessageSievingInputStream extends InputStream {
     }
     return isValid;
   }
-}
 
+  /**
+   * Checks the blob record at the end of a message in place. The record must end exactly where the message ends.
+   * @param data the byte array that has the blob record
+   * @param recordOffset the offset in the byte array at which the blob record starts
+   * @param recordSize the number of bytes left in the message from the start of the blob record
+   * @return the size of the blob content
+   * @throws MessageFormatException if the blob record is corrupt or of an unknown version
+   */
+  private long checkBlobRecord(byte[] data, int recordOffset, int recordSize)
+      throws MessageFormatException {
+    ByteBuffer record = ByteBuffer.wrap(data, recordOffset, recordSize).slice();
+    if (recordSize < MessageFormatRecord.Version_Field_Size_In_Bytes) {
+      throw new MessageFormatException("Blob record is truncated", MessageFormatErrorCodes.Data_Corrupt);
+    }
+    short version = record.getShort(0);
+    int sizeFieldOffset;
+    switch (version) {
+      case MessageFormatRecord.Blob_Version_V1:
+        sizeFieldOffset = MessageFormatRecord.Version_Field_Size_In_Bytes;
+        break;
+      case MessageFormatRecord.Blob_Version_V2:
+        sizeFieldOffset = MessageFormatRecord.Version_Field_Size_In_Bytes
+            + MessageFormatRecord.Blob_Format_V2.Blob_Type_Field_In_Bytes;
+        if (recordSize < sizeFieldOffset
+            || record.getShort(MessageFormatRecord.Version_Field_Size_In_Bytes) >= BlobType.values().length) {
+          throw new MessageFormatException("corrupt data while parsing blob content",
+              MessageFormatErrorCodes.Data_Corrupt);
+        }
+        break;
+      default:
+        throw new MessageFormatException("data version not supported", MessageFormatErrorCodes.Unknown_Format_Version);
+    }
+    int contentOffset = sizeFieldOffset + MessageFormatRecord.Blob_Format_V1.Blob_Size_Field_In_Bytes;
+    if (recordSize < contentOffset + MessageFormatRecord.Crc_Size) {
+      throw new MessageFormatException("Blob record is truncated", MessageFormatErrorCodes.Data_Corrupt);
+    }
+    long blobSize = record.getLong(sizeFieldOffset);
+    if (blobSize != recordSize - contentOffset - MessageFormatRecord.Crc_Size) {
+      throw new MessageFormatException(
+          "Blob size " + blobSize + " does not match the " + (recordSize - contentOffset - MessageFormatRecord.Crc_Size)
+              + " bytes left in the message", MessageFormatErrorCodes.Data_Corrupt);
+    }
+    int crcOffset = recordSize - MessageFormatRecord.Crc_Size;
+    Crc32 crc = new Crc32();
+    crc.update(data, recordOffset, crcOffset);
+    long streamCrc = record.getLong(crcOffset);
+    if (crc.getValue() != streamCrc) {
+      logger.error("corrupt data while parsing blob content expectedcrc {} actualcrc {}", crc.getValue(), streamCrc);
+      throw new MessageFormatException("corrupt data while parsing blob content",
+          MessageFormatErrorCodes.Data_Corrupt);
+    }
+    return blobSize;
+  }
+}
@@ -315,4 +315,42 @@ public class MessageFormatRecordTest {
       Assert.assertEquals("Error code mismatch", MessageFormatErrorCodes.Data_Corrupt, e.getErrorCode());
     }
   }
+
+  @Test
+  public void testBlobAllDeserialization()
+      throws IOException, MessageFormatException {
+    StoreKey key = new MockId("id1");
+    BlobProperties properties = new BlobProperties(2000, "serviceId");
+    byte[] userMetadata = new byte[100];
+    new Random().nextBytes(userMetadata);
+    byte[] data = new byte[2000];
+    new Random().nextBytes(data);
+    MessageFormatInputStream messageFormatStream =
+        new PutMessageFormatInputStream(key, properties, ByteBuffer.wrap(userMetadata),
+            new ByteBufferInputStream(ByteBuffer.wrap(data)), data.length, BlobType.DataBlob);
+    byte[] message = new byte[(int) messageFormatStream.getSize()];
+    messageFormatStream.read(message);
+
+    BlobAll blobAll = MessageFormatRecord
+        .deserializeBlobAll(new ByteBufferInputStream(ByteBuffer.wrap(message)), new MockIdFactory());
+    Assert.assertEquals("Key mismatch", key, blobAll.getStoreKey());
+    Assert.assertEquals("Blob size mismatch", properties.getBlobSize(),
+        blobAll.getBlobInfo().getBlobProperties().getBlobSize());
+    Assert.assertEquals("Service id mismatch", properties.getServiceId(),
+        blobAll.getBlobInfo().getBlobProperties().getServiceId());
+    Assert.assertArrayEquals("User metadata mismatch", userMetadata, blobAll.getBlobInfo().getUserMetadata());
+    Assert.assertEquals("Blob type mismatch", BlobType.DataBlob, blobAll.getBlobData().getBlobType());
+    byte[] blobContent = new byte[data.length];
+    blobAll.getBlobData().getStream().read(blobContent);
+    Assert.assertArrayEquals("Blob content mismatch", data, blobContent);
+
+    // corrupt the header
+    message[5] = (byte) (message[5] + 1);
+    try {
+      MessageFormatRecord.deserializeBlobAll(new ByteBufferInputStream(ByteBuffer.wrap(message)), new MockIdFactory());
+      Assert.fail("Failed to detect corruption of the message header");
+    } catch (MessageFormatException e) {
+      Assert.assertEquals("Error code mismatch", MessageFormatErrorCodes.Data_Corrupt, e.getErrorCode());
+    }
+  }
 }
@@ -26,6 +26,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -35,12 +37,12 @@ public class MessageSievingInputStreamTest {
   @Test
   public void testValidBlobsAgainstCorruption()
       throws IOException, MessageFormatException {
-    testValidBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob);
-    testValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob);
-    testValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob);
+    testValidBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob, null);
+    testValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob, null);
+    testValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob, null);
   }
 
-  public void testValidBlobs(short blobVersion, BlobType blobType)
+  public void testValidBlobs(short blobVersion, BlobType blobType, ExecutorService validationExecutor)
       throws IOException, MessageFormatException {
 
     // MessageSievingInputStream contains put records for 3 valid blobs
@@ -141,7 +143,8 @@ public class MessageSievingInputStreamTest {
     msgInfoList.add(msgInfo3);
 
     MessageSievingInputStream validMessageDetectionInputStream =
-        new MessageSievingInputStream(inputStream, msgInfoList, new MockIdFactory(), new MetricRegistry());
+        new MessageSievingInputStream(inputStream, msgInfoList, new MockIdFactory(), new MetricRegistry(),
+            validationExecutor);
 
     int headerSize = MessageFormatRecord.MessageHeader_Format_V1.getHeaderSize();
     int blobPropertiesRecordSize = MessageFormatRecord.BlobProperties_Format_V1.getBlobPropertiesRecordSize(prop1);
@@ -176,12 +179,12 @@ public class MessageSievingInputStreamTest {
   @Test
   public void testInValidBlobsAgainstCorruption()
       throws IOException, MessageFormatException {
-    testInValidBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob);
-    testInValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob);
-    testInValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob);
+    testInValidBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob, null);
+    testInValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob, null);
+    testInValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob, null);
   }
 
-  private void testInValidBlobs(short blobVersion, BlobType blobType)
+  private void testInValidBlobs(short blobVersion, BlobType blobType, ExecutorService validationExecutor)
       throws IOException, MessageFormatException {
 
     // MessageSievingInputStream contains put records for 2 valid blobs and 1 corrupt blob
@@ -289,7 +292,8 @@ public class MessageSievingInputStreamTest {
     msgInfoList.add(msgInfo3);
 
     MessageSievingInputStream validMessageDetectionInputStream =
-        new MessageSievingInputStream(inputStream, msgInfoList, new MockIdFactory(), new MetricRegistry());
+        new MessageSievingInputStream(inputStream, msgInfoList, new MockIdFactory(), new MetricRegistry(),
+            validationExecutor);
 
     int headerSize = MessageFormatRecord.MessageHeader_Format_V1.getHeaderSize();
     int blobPropertiesRecordSize = MessageFormatRecord.BlobProperties_Format_V1.getBlobPropertiesRecordSize(prop1);
@@ -320,12 +324,12 @@ public class MessageSievingInputStreamTest {
   @Test
   public void testDeletedBlobsAgainstCorruption()
       throws IOException, MessageFormatException {
-    testDeletedBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob);
-    testDeletedBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob);
-    testDeletedBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob);
+    testDeletedBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob, null);
+    testDeletedBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob, null);
+    testDeletedBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob, null);
   }
 
-  private void testDeletedBlobs(short blobVersion, BlobType blobType)
+  private void testDeletedBlobs(short blobVersion, BlobType blobType, ExecutorService validationExecutor)
       throws IOException, MessageFormatException {
 
     // MessageSievingInputStream contains put records for 2 valid blobs and 1 deleted blob
@@ -402,13 +406,34 @@ public class MessageSievingInputStreamTest {
       msgInfoList.add(msgInfo3);
 
       MessageSievingInputStream validMessageDetectionInputStream =
-          new MessageSievingInputStream(inputStream, msgInfoList, new MockIdFactory(), new MetricRegistry());
+          new MessageSievingInputStream(inputStream, msgInfoList, new MockIdFactory(), new MetricRegistry(),
+              validationExecutor);
       Assert.fail("IllegalStateException should have been thrown due to delete record ");
     } catch (IllegalStateException e) {
       Assert.assertTrue("IllegalStateException thrown as expected ", true);
     }
   }
 
+  /**
+   * Tests that messages validated on a pool of threads are sieved the same way as messages validated inline.
+   * @throws IOException
+   * @throws MessageFormatException
+   */
+  @Test
+  public void testParallelValidation()
+      throws IOException, MessageFormatException {
+    ExecutorService validationExecutor = Executors.newFixedThreadPool(2);
+    try {
+      testValidBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob, validationExecutor);
+      testValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.MetadataBlob, validationExecutor);
+      testInValidBlobs(MessageFormatRecord.Blob_Version_V1, BlobType.DataBlob, validationExecutor);
+      testInValidBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob, validationExecutor);
+      testDeletedBlobs(MessageFormatRecord.Blob_Version_V2, BlobType.DataBlob, validationExecutor);
+    } finally {
+      validationExecutor.shutdown();
+    }
+  }
+
   private boolean verifyBlob(MessageSievingInputStream validMessageDetectionInputStream, int headerSize,
       int blobPropertiesRecordSize, int userMetadataSize, int blobSize, StoreKey key, int blobPropertiesSize,
       String serviceId, byte[] usermetadata, byte[] data, short blobVersion, BlobType blobType)
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.ambry.utils.SystemTime;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Creates {@link Histogram}s and {@link Timer}s for latencies on hot paths. They are backed by a
+ * {@link LogLinearReservoir} instead of the exponentially decaying reservoir of {@link MetricRegistry#histogram} and
+ * {@link MetricRegistry#timer}, which takes a lock and allocates on every update. They are registered with the
+ * registry like any other metric, so reporters and JMX see them the same way.
+ */
+public class LatencyMetrics {
+  /**
+   * The length of a window of a {@link LogLinearReservoir}. Snapshots cover the last one to two windows.
+   */
+  public static final long Window_Ms = TimeUnit.MINUTES.toMillis(1);
+  private static final long Highest_Trackable_Latency_Ms = TimeUnit.HOURS.toMillis(1);
+  private static final long Highest_Trackable_Latency_Ns = TimeUnit.HOURS.toNanos(1);
+
+  private LatencyMetrics() {
+  }
+
+  /**
+   * Gets the histogram with the given name from the registry, registering a new one if there is none. The histogram
+   * is meant for latencies in ms and counts latencies above an hour as an hour.
+   * @param registry the registry to register the histogram with.
+   * @param name the name of the histogram.
+   * @return the histogram with the given name.
+   */
+  public static Histogram histogram(MetricRegistry registry, String name) {
+    return getOrRegister(registry, name, Histogram.class, new Histogram(
+        new LogLinearReservoir(Highest_Trackable_Latency_Ms, Window_Ms, SystemTime.getInstance())));
+  }
+
+  /**
+   * Gets the timer with the given name from the registry, registering a new one if there is none. The timer counts
+   * latencies above an hour as an hour.
+   * @param registry the registry to register the timer with.
+   * @param name the name of the timer.
+   * @return the timer with the given name.
+   */
+  public static Timer timer(MetricRegistry registry, String name) {
+    return getOrRegister(registry, name, Timer.class,
+        new Timer(new LogLinearReservoir(Highest_Trackable_Latency_Ns, Window_Ms, SystemTime.getInstance())));
+  }
+
+  private static <T extends Metric> T getOrRegister(MetricRegistry registry, String name, Class<T> type, T metric) {
+    Metric existing = registry.getMetrics().get(name);
+    if (existing == null) {
+      try {
+        return registry.register(name, metric);
+      } catch (IllegalArgumentException e) {
+        // registered by someone else in the meantime
+        existing = registry.getMetrics().get(name);
+      }
+    }
+    if (!type.isInstance(existing)) {
+      throw new IllegalArgumentException(name + " is already used for a different type of metric");
+    }
+    return type.cast(existing);
+  }
+}
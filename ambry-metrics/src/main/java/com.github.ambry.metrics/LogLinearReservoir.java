@@ -0,0 +1,291 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.github.ambry.utils.Time;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A {@link Reservoir} that counts values in fixed log linear buckets, in the manner of HdrHistogram, instead of
+ * sampling them. Every power of two range is split into 64 buckets, so the percentiles it reports are within 1/64 of
+ * the recorded values, and the min and max are exact. An update is a lock free increment of one counter and never
+ * allocates, and the memory of the reservoir is fixed by the highest value it tracks. Values above that are counted
+ * as the highest value.
+ * <p/>
+ * The counts are kept for two consecutive windows of time and a snapshot covers the current and the previous window,
+ * so it reflects the values recorded in the last one to two windows. Values recorded while a window is being reset
+ * may be lost.
+ */
+public class LogLinearReservoir implements Reservoir {
+  // values below 2^Sub_Bucket_Bits have a bucket each, higher power of two ranges have half that many buckets
+  private static final int Sub_Bucket_Bits = 7;
+  private static final int Sub_Bucket_Count = 1 << Sub_Bucket_Bits;
+  private static final int Half_Sub_Bucket_Count = Sub_Bucket_Count / 2;
+  private static final int Window_Count = 2;
+
+  private final Time time;
+  private final long windowMs;
+  private final long highestTrackableValue;
+  private final int bucketCount;
+  private final AtomicLongArray[] counts = new AtomicLongArray[Window_Count];
+  private final AtomicLongArray windows = new AtomicLongArray(Window_Count);
+  private final AtomicLongArray mins = new AtomicLongArray(Window_Count);
+  private final AtomicLongArray maxs = new AtomicLongArray(Window_Count);
+
+  /**
+   * Creates an empty reservoir.
+   * @param highestTrackableValue the highest value that is counted precisely.
+   * @param windowMs the length in ms of a window of values.
+   * @param time the source of time for the windows.
+   */
+  public LogLinearReservoir(long highestTrackableValue, long windowMs, Time time) {
+    if (highestTrackableValue < 1) {
+      throw new IllegalArgumentException("Invalid highest trackable value: " + highestTrackableValue);
+    }
+    if (windowMs < 1) {
+      throw new IllegalArgumentException("Invalid window length: " + windowMs);
+    }
+    this.highestTrackableValue = highestTrackableValue;
+    this.windowMs = windowMs;
+    this.time = time;
+    bucketCount = getBucketIndex(highestTrackableValue) + 1;
+    for (int i = 0; i < Window_Count; i++) {
+      counts[i] = new AtomicLongArray(bucketCount);
+      // no window is old enough to be in a snapshot before the slot is first used
+      windows.set(i, Long.MIN_VALUE);
+      mins.set(i, Long.MAX_VALUE);
+      maxs.set(i, Long.MIN_VALUE);
+    }
+  }
+
+  @Override
+  public int size() {
+    return getSnapshot().size();
+  }
+
+  @Override
+  public void update(long value) {
+    long clampedValue = Math.max(0, value);
+    int slot = getCurrentSlot();
+    counts[slot].incrementAndGet(getBucketIndex(Math.min(clampedValue, highestTrackableValue)));
+    long min = mins.get(slot);
+    while (clampedValue < min && !mins.compareAndSet(slot, min, clampedValue)) {
+      min = mins.get(slot);
+    }
+    long max = maxs.get(slot);
+    while (clampedValue > max && !maxs.compareAndSet(slot, max, clampedValue)) {
+      max = maxs.get(slot);
+    }
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    long currentWindow = time.milliseconds() / windowMs;
+    long[] bucketCounts = new long[bucketCount];
+    long count = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int slot = 0; slot < Window_Count; slot++) {
+      long window = windows.get(slot);
+      if (window <= currentWindow && window > currentWindow - Window_Count) {
+        for (int i = 0; i < bucketCount; i++) {
+          long bucketValue = counts[slot].get(i);
+          bucketCounts[i] += bucketValue;
+          count += bucketValue;
+        }
+        min = Math.min(min, mins.get(slot));
+        max = Math.max(max, maxs.get(slot));
+      }
+    }
+    return new LogLinearSnapshot(bucketCounts, count, min, max);
+  }
+
+  /**
+   * Gets the slot of the current window, resetting the slot if it still holds an older window.
+   */
+  private int getCurrentSlot() {
+    long currentWindow = time.milliseconds() / windowMs;
+    int slot = (int) (currentWindow % Window_Count);
+    long window = windows.get(slot);
+    if (window != currentWindow && windows.compareAndSet(slot, window, currentWindow)) {
+      mins.set(slot, Long.MAX_VALUE);
+      maxs.set(slot, Long.MIN_VALUE);
+      AtomicLongArray slotCounts = counts[slot];
+      for (int i = 0; i < bucketCount; i++) {
+        slotCounts.set(i, 0);
+      }
+    }
+    return slot;
+  }
+
+  /**
+   * @param value a non negative value.
+   * @return the index of the bucket that counts the value.
+   */
+  static int getBucketIndex(long value) {
+    if (value < Sub_Bucket_Count) {
+      return (int) value;
+    }
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - Sub_Bucket_Bits;
+    int subBucket = (int) (value >>> shift);
+    return Sub_Bucket_Count + (shift - 1) * Half_Sub_Bucket_Count + subBucket - Half_Sub_Bucket_Count;
+  }
+
+  /**
+   * @param index the index of a bucket.
+   * @return the lowest value that is counted by the bucket.
+   */
+  static long getBucketLowestValue(int index) {
+    if (index < Sub_Bucket_Count) {
+      return index;
+    }
+    int offset = index - Sub_Bucket_Count;
+    int shift = offset / Half_Sub_Bucket_Count + 1;
+    long subBucket = offset % Half_Sub_Bucket_Count + Half_Sub_Bucket_Count;
+    return subBucket << shift;
+  }
+
+  /**
+   * @param index the index of a bucket.
+   * @return the value in the middle of the values that are counted by the bucket.
+   */
+  static long getBucketMedianValue(int index) {
+    if (index < Sub_Bucket_Count) {
+      return index;
+    }
+    int shift = (index - Sub_Bucket_Count) / Half_Sub_Bucket_Count + 1;
+    return getBucketLowestValue(index) + ((1L << shift) >>> 1);
+  }
+
+  /**
+   * A snapshot of the bucket counts of a {@link LogLinearReservoir}. Percentiles are the middle value of the bucket
+   * they fall in, bounded by the exact min and max. {@link #getValues()} returns one value per non empty bucket.
+   */
+  static class LogLinearSnapshot extends Snapshot {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final long[] bucketCounts;
+    private final long count;
+    private final long min;
+    private final long max;
+
+    LogLinearSnapshot(long[] bucketCounts, long count, long min, long max) {
+      super(new long[0]);
+      this.bucketCounts = bucketCounts;
+      this.count = count;
+      this.min = count > 0 ? min : 0;
+      this.max = count > 0 ? max : 0;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+        throw new IllegalArgumentException(quantile + " is not in [0..1]");
+      }
+      if (count == 0) {
+        return 0.0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * count));
+      long seen = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        seen += bucketCounts[i];
+        if (seen >= rank) {
+          return Math.min(max, Math.max(min, getBucketMedianValue(i)));
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public long[] getValues() {
+      int nonEmptyBuckets = 0;
+      for (long bucketCount : bucketCounts) {
+        if (bucketCount > 0) {
+          nonEmptyBuckets++;
+        }
+      }
+      long[] values = new long[nonEmptyBuckets];
+      int next = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        if (bucketCounts[i] > 0) {
+          values[next++] = Math.min(max, Math.max(min, getBucketMedianValue(i)));
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    @Override
+    public long getMax() {
+      return max;
+    }
+
+    @Override
+    public long getMin() {
+      return min;
+    }
+
+    @Override
+    public double getMean() {
+      if (count == 0) {
+        return 0.0;
+      }
+      double sum = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        if (bucketCounts[i] > 0) {
+          sum += (double) bucketCounts[i] * Math.min(max, Math.max(min, getBucketMedianValue(i)));
+        }
+      }
+      return sum / count;
+    }
+
+    @Override
+    public double getStdDev() {
+      if (count <= 1) {
+        return 0.0;
+      }
+      double mean = getMean();
+      double sumOfSquares = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        if (bucketCounts[i] > 0) {
+          double diff = Math.min(max, Math.max(min, getBucketMedianValue(i))) - mean;
+          sumOfSquares += bucketCounts[i] * diff * diff;
+        }
+      }
+      return Math.sqrt(sumOfSquares / (count - 1));
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8));
+      try {
+        for (long value : getValues()) {
+          out.printf("%d%n", value);
+        }
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.github.ambry.utils.MockTime;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class LogLinearReservoirTest {
+
+  @Test
+  public void testBuckets() {
+    long previousLowestValue = -1;
+    for (int i = 0; i <= LogLinearReservoir.getBucketIndex(Long.MAX_VALUE); i++) {
+      long lowestValue = LogLinearReservoir.getBucketLowestValue(i);
+      Assert.assertTrue("Buckets should be in increasing order", lowestValue > previousLowestValue);
+      Assert.assertEquals("Lowest value of bucket " + i, i, LogLinearReservoir.getBucketIndex(lowestValue));
+      if (previousLowestValue >= 0) {
+        Assert.assertEquals("Highest value of bucket " + (i - 1), i - 1,
+            LogLinearReservoir.getBucketIndex(lowestValue - 1));
+      }
+      long medianValue = LogLinearReservoir.getBucketMedianValue(i);
+      Assert.assertEquals("Median value of bucket " + i, i, LogLinearReservoir.getBucketIndex(medianValue));
+      previousLowestValue = lowestValue;
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LogLinearReservoir reservoir = new LogLinearReservoir(1000000, 60000, new MockTime());
+    Random random = new Random();
+    long[] values = new long[100000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(1000000);
+      reservoir.update(values[i]);
+    }
+    Arrays.sort(values);
+    Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(values.length, snapshot.size());
+    Assert.assertEquals(values[0], snapshot.getMin());
+    Assert.assertEquals(values[values.length - 1], snapshot.getMax());
+    for (double quantile : new double[]{0.5, 0.75, 0.95, 0.99, 0.999}) {
+      long expected = values[(int) Math.ceil(quantile * values.length) - 1];
+      double actual = snapshot.getValue(quantile);
+      Assert.assertTrue("Quantile " + quantile + " is " + actual + ", expected " + expected,
+          Math.abs(actual - expected) <= expected / 64.0 + 1);
+    }
+    double mean = 0;
+    for (long value : values) {
+      mean += value;
+    }
+    mean /= values.length;
+    Assert.assertEquals(mean, snapshot.getMean(), mean / 64.0);
+  }
+
+  @Test
+  public void testValuesAboveHighestTrackableValue() {
+    LogLinearReservoir reservoir = new LogLinearReservoir(1000, 60000, new MockTime());
+    reservoir.update(10);
+    reservoir.update(5000);
+    reservoir.update(-5);
+    Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(3, snapshot.size());
+    Assert.assertEquals(0, snapshot.getMin());
+    Assert.assertEquals(5000, snapshot.getMax());
+    Assert.assertEquals(10, snapshot.getMedian(), 0.0);
+    Assert.assertTrue(snapshot.getValue(1.0) >= 1000 - 1000 / 64);
+  }
+
+  @Test
+  public void testWindows() {
+    MockTime time = new MockTime();
+    LogLinearReservoir reservoir = new LogLinearReservoir(1000, 1000, time);
+    Assert.assertEquals(0, reservoir.getSnapshot().size());
+    Assert.assertEquals(0.0, reservoir.getSnapshot().getMedian(), 0.0);
+    reservoir.update(100);
+    time.currentMilliseconds += 1000;
+    reservoir.update(200);
+    Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals("Snapshot should cover the current and the previous window", 2, snapshot.size());
+    Assert.assertEquals(100, snapshot.getMin());
+    Assert.assertEquals(200, snapshot.getMax());
+    time.currentMilliseconds += 1000;
+    snapshot = reservoir.getSnapshot();
+    Assert.assertEquals("Values of older windows should not be in the snapshot", 1, snapshot.size());
+    Assert.assertEquals(200, snapshot.getMin());
+    reservoir.update(300);
+    snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(2, snapshot.size());
+    Assert.assertEquals(200, snapshot.getMin());
+    Assert.assertEquals(300, snapshot.getMax());
+    time.currentMilliseconds += 5000;
+    Assert.assertEquals(0, reservoir.getSnapshot().size());
+  }
+
+  @Test
+  public void testLatencyMetricsRegistration() {
+    MetricRegistry registry = new MetricRegistry();
+    Histogram histogram = LatencyMetrics.histogram(registry, "histogram");
+    Assert.assertSame(histogram, LatencyMetrics.histogram(registry, "histogram"));
+    Assert.assertSame(histogram, registry.getHistograms().get("histogram"));
+    Timer timer = LatencyMetrics.timer(registry, "timer");
+    Assert.assertSame(timer, LatencyMetrics.timer(registry, "timer"));
+    try {
+      LatencyMetrics.timer(registry, "histogram");
+      Assert.fail("Registering a timer with the name of a histogram should fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    histogram.update(10);
+    Assert.assertEquals(1, histogram.getCount());
+    Assert.assertEquals(10, histogram.getSnapshot().getMax());
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Utils;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A request that carries several {@link PutRequest}s for blobs in the same partition, so that small blobs headed to
+ * the same replica can be sent and persisted together. Each contained {@link PutRequest} is serialized as is, and
+ * keeps its own correlation id so that responses can be matched to the individual puts.
+ */
+public class BatchPutRequest extends RequestOrResponse {
+  private final List<PutRequest> putRequests;
+  private final long sizeInBytes;
+  private int currentIndex = 0;
+  private long sentBytes = 0;
+
+  private static final int Put_Request_Count_Size_InBytes = 4;
+  private static final short Batch_Put_Request_Version_V1 = 1;
+
+  /**
+   * Create a BatchPutRequest.
+   * @param correlationId the correlation id of the batch.
+   * @param clientId the id of the client sending the batch.
+   * @param putRequests the {@link PutRequest}s that form the batch. All of them should be for the same partition.
+   */
+  public BatchPutRequest(int correlationId, String clientId, List<PutRequest> putRequests) {
+    super(RequestOrResponseType.BatchPutRequest, Batch_Put_Request_Version_V1, correlationId, clientId);
+    if (putRequests == null || putRequests.isEmpty()) {
+      throw new IllegalArgumentException("A BatchPutRequest must contain at least one PutRequest");
+    }
+    this.putRequests = putRequests;
+    long size = super.sizeInBytes() + Put_Request_Count_Size_InBytes;
+    for (PutRequest putRequest : putRequests) {
+      size += putRequest.sizeInBytes();
+    }
+    sizeInBytes = size;
+  }
+
+  /**
+   * Deserialize a BatchPutRequest from the stream. The blobs of the contained {@link PutRequest}s are read into memory
+   * so that each of them can be consumed independently of the others.
+   * @param stream the stream to read from. The type of the request is expected to have been read already.
+   * @param map the {@link ClusterMap} to use to deserialize the blob ids.
+   * @return the deserialized BatchPutRequest.
+   * @throws IOException if there was an error reading from the stream.
+   */
+  public static BatchPutRequest readFrom(DataInputStream stream, ClusterMap map)
+      throws IOException {
+    short versionId = stream.readShort();
+    if (versionId != Batch_Put_Request_Version_V1) {
+      throw new IllegalStateException("Unknown Request response version" + versionId);
+    }
+    int correlationId = stream.readInt();
+    String clientId = Utils.readIntString(stream);
+    int count = stream.readInt();
+    List<PutRequest> putRequests = new ArrayList<PutRequest>(count);
+    for (int i = 0; i < count; i++) {
+      // size and type of the contained request.
+      stream.readLong();
+      RequestOrResponseType type = RequestOrResponseType.values()[stream.readShort()];
+      if (type != RequestOrResponseType.PutRequest) {
+        throw new IllegalArgumentException("The type of request in a BatchPutRequest is not compatible: " + type);
+      }
+      PutRequest putRequest = PutRequest.readFrom(stream, map);
+      ByteBuffer blob = ByteBuffer.allocate((int) putRequest.getBlobSize());
+      stream.readFully(blob.array());
+      putRequests.add(new PutRequest(putRequest.getCorrelationId(), putRequest.getClientId(), putRequest.getBlobId(),
+          putRequest.getBlobProperties(), putRequest.getUsermetadata(), new ByteBufferInputStream(blob),
+          putRequest.getBlobSize(), putRequest.getBlobType()));
+    }
+    return new BatchPutRequest(correlationId, clientId, putRequests);
+  }
+
+  /**
+   * @return the {@link PutRequest}s that form this batch.
+   */
+  public List<PutRequest> getPutRequests() {
+    return Collections.unmodifiableList(putRequests);
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    long totalWritten = 0;
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) (super.sizeInBytes() + Put_Request_Count_Size_InBytes));
+      writeHeader();
+      bufferToSend.putInt(putRequests.size());
+      bufferToSend.flip();
+    }
+    if (bufferToSend.remaining() > 0) {
+      int written = channel.write(bufferToSend);
+      totalWritten += written;
+      sentBytes += written;
+      if (bufferToSend.remaining() > 0) {
+        return totalWritten;
+      }
+    }
+    while (currentIndex < putRequests.size()) {
+      PutRequest putRequest = putRequests.get(currentIndex);
+      long written = putRequest.writeTo(channel);
+      totalWritten += written;
+      sentBytes += written;
+      if (!putRequest.isSendComplete()) {
+        break;
+      }
+      currentIndex++;
+    }
+    return totalWritten;
+  }
+
+  @Override
+  public boolean isSendComplete() {
+    return sentBytes == sizeInBytes;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    // header + count + put requests
+    return sizeInBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("BatchPutRequest[");
+    sb.append("PutRequestCount=").append(putRequests.size());
+    for (PutRequest putRequest : putRequests) {
+      sb.append(", ").append(putRequest);
+    }
+    sb.append("]");
+    return sb.toString();
+  }
+}
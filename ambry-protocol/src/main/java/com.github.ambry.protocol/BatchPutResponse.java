@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.utils.Utils;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A Response to the {@link BatchPutRequest}. Contains a {@link PutResponse} for every {@link PutRequest} in the batch,
+ * each carrying the correlation id of the {@link PutRequest} it is the response for.
+ */
+public class BatchPutResponse extends Response {
+  private final List<PutResponse> putResponses;
+
+  private static final int Put_Response_Count_Size_InBytes = 4;
+  private static final int Correlation_Id_Size_InBytes = 4;
+  private static final int Error_Size_InBytes = 2;
+  private static final short Batch_Put_Response_Version_V1 = 1;
+
+  /**
+   * Create a BatchPutResponse.
+   * @param correlationId the correlation id of the {@link BatchPutRequest} this is the response for.
+   * @param clientId the id of the client that sent the {@link BatchPutRequest}.
+   * @param error the error that applies to the batch as a whole.
+   * @param putResponses the {@link PutResponse}s for the individual {@link PutRequest}s in the batch.
+   */
+  public BatchPutResponse(int correlationId, String clientId, ServerErrorCode error, List<PutResponse> putResponses) {
+    super(RequestOrResponseType.BatchPutResponse, Batch_Put_Response_Version_V1, correlationId, clientId, error);
+    this.putResponses = putResponses;
+  }
+
+  public static BatchPutResponse readFrom(DataInputStream stream)
+      throws IOException {
+    RequestOrResponseType type = RequestOrResponseType.values()[stream.readShort()];
+    if (type != RequestOrResponseType.BatchPutResponse) {
+      throw new IllegalArgumentException("The type of request response is not compatible: " + type);
+    }
+    Short versionId = stream.readShort();
+    int correlationId = stream.readInt();
+    String clientId = Utils.readIntString(stream);
+    ServerErrorCode error = ServerErrorCode.values()[stream.readShort()];
+    int count = stream.readInt();
+    List<PutResponse> putResponses = new ArrayList<PutResponse>(count);
+    for (int i = 0; i < count; i++) {
+      int putCorrelationId = stream.readInt();
+      ServerErrorCode putError = ServerErrorCode.values()[stream.readShort()];
+      putResponses.add(new PutResponse(putCorrelationId, clientId, putError));
+    }
+    // ignore version for now
+    return new BatchPutResponse(correlationId, clientId, error, putResponses);
+  }
+
+  /**
+   * @return the {@link PutResponse}s for the individual {@link PutRequest}s in the batch.
+   */
+  public List<PutResponse> getPutResponses() {
+    return Collections.unmodifiableList(putResponses);
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) sizeInBytes());
+      writeHeader();
+      bufferToSend.putInt(putResponses.size());
+      for (PutResponse putResponse : putResponses) {
+        bufferToSend.putInt(putResponse.getCorrelationId());
+        bufferToSend.putShort((short) putResponse.getError().ordinal());
+      }
+      bufferToSend.flip();
+    }
+    return bufferToSend.remaining() > 0 ? channel.write(bufferToSend) : 0;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    // header + error + count + (correlation id + error) for every put response
+    return super.sizeInBytes() + Put_Response_Count_Size_InBytes
+        + putResponses.size() * (Correlation_Id_Size_InBytes + Error_Size_InBytes);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("BatchPutResponse[");
+    sb.append("ServerErrorCode=").append(getError());
+    sb.append(", PutResponseCount=").append(putResponses.size());
+    sb.append("]");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.network.Send;
+import com.github.ambry.utils.Utils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * A {@link Send} that sends the content of another {@link Send} compressed. The content is compressed when the
+ * CompressedSend is created, since the size of the compressed content needs to be known before anything is sent.
+ * <p/>
+ * The compressed content is sent as the size of the uncompressed content and the size of the compressed content
+ * followed by the content compressed with the deflate algorithm at its fastest level.
+ */
+public class CompressedSend implements Send {
+  private static final int Size_Field_In_Bytes = 8;
+  private static final int Stream_Buffer_Size_In_Bytes = 64 * 1024;
+
+  private final ByteBuffer buffer;
+  private final long uncompressedSizeInBytes;
+
+  /**
+   * Compresses the content of the given {@link Send}.
+   * @param send the {@link Send} whose content needs to be compressed.
+   * @throws IOException if the content could not be read from the {@link Send}.
+   */
+  public CompressedSend(Send send)
+      throws IOException {
+    uncompressedSizeInBytes = send.sizeInBytes();
+    ExposedByteArrayOutputStream outputStream =
+        new ExposedByteArrayOutputStream((int) Math.min(uncompressedSizeInBytes / 2 + 64, Integer.MAX_VALUE));
+    DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+    dataOutputStream.writeLong(uncompressedSizeInBytes);
+    // the compressed size is filled in once the content is compressed
+    dataOutputStream.writeLong(0);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      DeflaterOutputStream deflaterStream =
+          new DeflaterOutputStream(outputStream, deflater, Stream_Buffer_Size_In_Bytes);
+      WritableByteChannel channel = Channels.newChannel(deflaterStream);
+      while (!send.isSendComplete()) {
+        send.writeTo(channel);
+      }
+      deflaterStream.finish();
+    } finally {
+      deflater.end();
+    }
+    buffer = ByteBuffer.wrap(outputStream.getBuffer(), 0, outputStream.size());
+    buffer.putLong(Size_Field_In_Bytes, outputStream.size() - 2 * Size_Field_In_Bytes);
+  }
+
+  /**
+   * Reads content that was sent by a CompressedSend off the given stream and returns a stream that decompresses it.
+   * All of the compressed content is read, so that nothing is left behind in the given stream. The native memory of
+   * the decompressor is released once the returned stream is read to its end or closed.
+   * @param stream the stream positioned at the start of the compressed content.
+   * @return the stream of the uncompressed content.
+   * @throws IOException if the compressed content could not be read.
+   */
+  public static InputStream getDecompressedStream(InputStream stream)
+      throws IOException {
+    DataInputStream dataInputStream = new DataInputStream(stream);
+    dataInputStream.readLong();
+    long compressedSizeInBytes = dataInputStream.readLong();
+    if (compressedSizeInBytes < 0 || compressedSizeInBytes > Integer.MAX_VALUE) {
+      throw new IOException("Invalid compressed content size " + compressedSizeInBytes);
+    }
+    byte[] compressedContent = Utils.readBytesFromStream(stream, (int) compressedSizeInBytes);
+    return new DecompressedStream(new ByteArrayInputStream(compressedContent));
+  }
+
+  /**
+   * @return the size of the content before compression.
+   */
+  public long getUncompressedSizeInBytes() {
+    return uncompressedSizeInBytes;
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    return channel.write(buffer);
+  }
+
+  @Override
+  public boolean isSendComplete() {
+    return !buffer.hasRemaining();
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return buffer.limit();
+  }
+
+  /**
+   * An {@link InflaterInputStream} that ends its {@link Inflater} as soon as the content is fully read or the stream is
+   * closed. Readers of a {@link GetResponse} do not close its stream, and an {@link Inflater} that is passed to an
+   * {@link InflaterInputStream} is not ended when the stream is closed.
+   */
+  private static class DecompressedStream extends InflaterInputStream {
+    private boolean ended = false;
+
+    DecompressedStream(InputStream compressedStream) {
+      super(compressedStream, new Inflater(), Stream_Buffer_Size_In_Bytes);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+        throws IOException {
+      if (ended) {
+        return -1;
+      }
+      int bytesRead = super.read(b, off, len);
+      if (bytesRead == -1) {
+        end();
+      }
+      return bytesRead;
+    }
+
+    @Override
+    public int available()
+        throws IOException {
+      return ended ? 0 : super.available();
+    }
+
+    @Override
+    public long skip(long n)
+        throws IOException {
+      return ended ? 0 : super.skip(n);
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      try {
+        super.close();
+      } finally {
+        end();
+      }
+    }
+
+    private void end() {
+      if (!ended) {
+        ended = true;
+        inf.end();
+      }
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} whose buffer can be wrapped without being copied.
+   */
+  private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    ExposedByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+}
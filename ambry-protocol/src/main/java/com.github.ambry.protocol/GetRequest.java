@@ -32,6 +32,7 @@ public class GetRequest extends RequestOrResponse {
 
   private MessageFormatFlags flags;
   private GetOptions getOptions;
+  private boolean compressResponse;
   private List<PartitionRequestInfo> partitionRequestInfoList;
   private int sizeSent;
   private int totalPartitionRequestInfoListSize;
@@ -39,14 +40,54 @@ public class GetRequest extends RequestOrResponse {
   private static final int MessageFormat_Size_In_Bytes = 2;
   private static final int GetOptions_Size_In_Bytes = 2;
   private static final int Partition_Request_Info_List_Size = 4;
+  private static final int Compress_Response_Size_In_Bytes = 1;
   private static final short Get_Request_Version_V2 = 2;
+  private static final short Get_Request_Version_V3 = 3;
+  private static final short Get_Request_Version_V4 = 4;
 
   public GetRequest(int correlationId, String clientId, MessageFormatFlags flags,
       List<PartitionRequestInfo> partitionRequestInfoList, GetOptions getOptions) {
-    super(RequestOrResponseType.GetRequest, Get_Request_Version_V2, correlationId, clientId);
+    this(correlationId, clientId, flags, partitionRequestInfoList, getOptions, false);
+  }
+
+  /**
+   * Creates a GetRequest. Requests that do not ask for a compressed response are sent in the previous version of the
+   * request, so that they can be served by servers that do not know of compression. Such servers only read the
+   * {@link GetOptions} of the previous version: they serve a request that asks for a compressed response uncompressed
+   * and as if its options were {@link GetOptions#None}. Requests with other options must therefore only ask for a
+   * compressed response once every server is upgraded.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param flags the {@link MessageFormatFlags} that specify what needs to be fetched.
+   * @param partitionRequestInfoList the blobs to fetch grouped by partition.
+   * @param getOptions the {@link GetOptions} of the request.
+   * @param compressResponse whether the messages in the response should be compressed.
+   */
+  public GetRequest(int correlationId, String clientId, MessageFormatFlags flags,
+      List<PartitionRequestInfo> partitionRequestInfoList, GetOptions getOptions, boolean compressResponse) {
+    this(correlationId, 0, clientId, flags, partitionRequestInfoList, getOptions, compressResponse);
+  }
+
+  /**
+   * Creates a GetRequest that belongs to a traced request. Requests that are traced are sent in the version of the
+   * request that carries the trace id, others in the lowest version that has what they ask for. Servers that do not
+   * know of the version with the trace id misread it, so requests must only be traced once every server is upgraded.
+   * @param correlationId the correlation id of the request.
+   * @param traceId the id of the trace of the request, or 0 if the request is not traced.
+   * @param clientId the id of the client sending the request.
+   * @param flags the {@link MessageFormatFlags} that specify what needs to be fetched.
+   * @param partitionRequestInfoList the blobs to fetch grouped by partition.
+   * @param getOptions the {@link GetOptions} of the request.
+   * @param compressResponse whether the messages in the response should be compressed.
+   */
+  public GetRequest(int correlationId, long traceId, String clientId, MessageFormatFlags flags,
+      List<PartitionRequestInfo> partitionRequestInfoList, GetOptions getOptions, boolean compressResponse) {
+    super(RequestOrResponseType.GetRequest, traceId != 0 ? Get_Request_Version_V4
+        : (compressResponse ? Get_Request_Version_V3 : Get_Request_Version_V2), correlationId, traceId, clientId);
 
     this.flags = flags;
     this.getOptions = getOptions;
+    this.compressResponse = compressResponse;
     if (partitionRequestInfoList == null) {
       throw new IllegalArgumentException("No partition info specified in GetRequest");
     }
@@ -69,11 +110,19 @@ public class GetRequest extends RequestOrResponse {
     return getOptions;
   }
 
+  /**
+   * @return whether the messages in the response should be compressed.
+   */
+  public boolean shouldCompressResponse() {
+    return compressResponse;
+  }
+
   public static GetRequest readFrom(DataInputStream stream, ClusterMap clusterMap)
       throws IOException {
     RequestOrResponseType type = RequestOrResponseType.GetRequest;
     Short versionId = stream.readShort();
     int correlationId = stream.readInt();
+    long traceId = versionId == Get_Request_Version_V4 ? stream.readLong() : 0;
     String clientId = Utils.readIntString(stream);
     MessageFormatFlags messageType = MessageFormatFlags.values()[stream.readShort()];
     int totalNumberOfPartitionInfo = stream.readInt();
@@ -84,11 +133,16 @@ public class GetRequest extends RequestOrResponse {
       partitionRequestInfoList.add(partitionRequestInfo);
     }
     GetOptions getOption = GetOptions.None;
-    if (versionId == Get_Request_Version_V2) {
+    boolean compressResponse = false;
+    if (versionId == Get_Request_Version_V2 || versionId == Get_Request_Version_V3
+        || versionId == Get_Request_Version_V4) {
       getOption = GetOptions.values()[stream.readShort()];
     }
-    // ignore version for now
-    return new GetRequest(correlationId, clientId, messageType, partitionRequestInfoList, getOption);
+    if (versionId == Get_Request_Version_V3 || versionId == Get_Request_Version_V4) {
+      compressResponse = stream.readByte() == 1;
+    }
+    return new GetRequest(correlationId, traceId, clientId, messageType, partitionRequestInfoList, getOption,
+        compressResponse);
   }
 
   @Override
@@ -104,6 +158,9 @@ public class GetRequest extends RequestOrResponse {
         partitionRequestInfo.writeTo(bufferToSend);
       }
       bufferToSend.putShort((short) getOptions.ordinal());
+      if (hasCompressResponse()) {
+        bufferToSend.put(compressResponse ? (byte) 1 : (byte) 0);
+      }
       bufferToSend.flip();
     }
     if (bufferToSend.remaining() > 0) {
@@ -122,7 +179,17 @@ public class GetRequest extends RequestOrResponse {
   public long sizeInBytes() {
     // header + message format size + partition request info size + total partition request info list size
     return super.sizeInBytes() + MessageFormat_Size_In_Bytes +
-        Partition_Request_Info_List_Size + totalPartitionRequestInfoListSize + GetOptions_Size_In_Bytes;
+        Partition_Request_Info_List_Size + totalPartitionRequestInfoListSize + GetOptions_Size_In_Bytes +
+        (hasCompressResponse() ? Compress_Response_Size_In_Bytes : 0);
+  }
+
+  @Override
+  protected boolean carriesTraceId() {
+    return versionId == Get_Request_Version_V4;
+  }
+
+  private boolean hasCompressResponse() {
+    return versionId == Get_Request_Version_V3 || versionId == Get_Request_Version_V4;
   }
 
   @Override
@@ -134,6 +201,12 @@ public class GetRequest extends RequestOrResponse {
     }
     sb.append(", ").append("MessageFormatFlags=").append(flags);
     sb.append(", ").append("GetOptions=").append(getOptions);
+    if (compressResponse) {
+      sb.append(", ").append("CompressResponse=").append(compressResponse);
+    }
+    if (traceId != 0) {
+      sb.append(", ").append("TraceId=").append(Long.toHexString(traceId));
+    }
     sb.append("]");
     return sb.toString();
   }
@@ -39,10 +39,30 @@ public class GetResponse extends Response {
 
   private static int Partition_Response_Info_List_Size = 4;
   private static final short Get_Response_Version_V1 = 1;
+  private static final short Get_Response_Version_V2 = 2;
 
   public GetResponse(int correlationId, String clientId, List<PartitionResponseInfo> partitionResponseInfoList,
       Send send, ServerErrorCode error) {
-    super(RequestOrResponseType.GetResponse, Get_Response_Version_V1, correlationId, clientId, error);
+    this(correlationId, clientId, partitionResponseInfoList, send, error, Get_Response_Version_V1);
+  }
+
+  /**
+   * Creates a GetResponse whose messages are compressed. Such responses are sent in a version of the response that
+   * only clients that asked for compression know of.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client that sent the request.
+   * @param partitionResponseInfoList the {@link PartitionResponseInfo} of every partition in the request.
+   * @param send the {@link CompressedSend} of the messages.
+   * @param error the {@link ServerErrorCode} of the response.
+   */
+  public GetResponse(int correlationId, String clientId, List<PartitionResponseInfo> partitionResponseInfoList,
+      CompressedSend send, ServerErrorCode error) {
+    this(correlationId, clientId, partitionResponseInfoList, send, error, Get_Response_Version_V2);
+  }
+
+  private GetResponse(int correlationId, String clientId, List<PartitionResponseInfo> partitionResponseInfoList,
+      Send send, ServerErrorCode error, short versionId) {
+    super(RequestOrResponseType.GetResponse, versionId, correlationId, clientId, error);
     this.partitionResponseInfoList = partitionResponseInfoList;
     this.partitionResponseInfoSize = 0;
     for (PartitionResponseInfo partitionResponseInfo : partitionResponseInfoList) {
@@ -53,7 +73,12 @@ public class GetResponse extends Response {
 
   public GetResponse(int correlationId, String clientId, List<PartitionResponseInfo> partitionResponseInfoList,
       InputStream stream, ServerErrorCode error) {
-    super(RequestOrResponseType.GetResponse, Get_Response_Version_V1, correlationId, clientId, error);
+    this(correlationId, clientId, partitionResponseInfoList, stream, error, Get_Response_Version_V1);
+  }
+
+  private GetResponse(int correlationId, String clientId, List<PartitionResponseInfo> partitionResponseInfoList,
+      InputStream stream, ServerErrorCode error, short versionId) {
+    super(RequestOrResponseType.GetResponse, versionId, correlationId, clientId, error);
     this.partitionResponseInfoList = partitionResponseInfoList;
     this.partitionResponseInfoSize = 0;
     for (PartitionResponseInfo partitionResponseInfo : partitionResponseInfoList) {
@@ -76,6 +101,13 @@ public class GetResponse extends Response {
     return partitionResponseInfoList;
   }
 
+  /**
+   * @return whether the messages in the response are compressed.
+   */
+  public boolean isCompressed() {
+    return versionId == Get_Response_Version_V2;
+  }
+
   public static GetResponse readFrom(DataInputStream stream, ClusterMap map)
       throws IOException {
     short typeval = stream.readShort();
@@ -84,7 +116,6 @@ public class GetResponse extends Response {
       throw new IllegalArgumentException("The type of request response is not compatible");
     }
     Short versionId = stream.readShort();
-    // ignore version for now
     int correlationId = stream.readInt();
     String clientId = Utils.readIntString(stream);
     ServerErrorCode error = ServerErrorCode.values()[stream.readShort()];
@@ -99,7 +130,9 @@ public class GetResponse extends Response {
         PartitionResponseInfo partitionResponseInfo = PartitionResponseInfo.readFrom(stream, map);
         partitionResponseInfoList.add(partitionResponseInfo);
       }
-      return new GetResponse(correlationId, clientId, partitionResponseInfoList, stream, error);
+      InputStream messageStream =
+          versionId == Get_Response_Version_V2 ? CompressedSend.getDecompressedStream(stream) : stream;
+      return new GetResponse(correlationId, clientId, partitionResponseInfoList, messageStream, error, versionId);
     }
   }
 
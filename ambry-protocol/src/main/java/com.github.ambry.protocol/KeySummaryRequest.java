@@ -0,0 +1,198 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.utils.FilterFactory;
+import com.github.ambry.utils.IFilter;
+import com.github.ambry.utils.Utils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A request used by replicas of a partition to find the keys they disagree on. The request either asks for the
+ * {@link com.github.ambry.store.KeySummary} of the keys of the partition, or, when buckets are given, for the keys of
+ * the partition in those buckets of the summary that are not in a bloom filter of the keys the requester has in them.
+ */
+public class KeySummaryRequest extends RequestOrResponse {
+  private final PartitionId partitionId;
+  private final int bucketCount;
+  private final List<Integer> buckets;
+  private final byte[] keyFilter;
+
+  private static final int Bucket_Count_Size_In_Bytes = 4;
+  private static final int Bucket_Size_In_Bytes = 4;
+  private static final int Key_Filter_Size_In_Bytes = 4;
+  private static final short Key_Summary_Request_Version_V1 = 1;
+
+  /**
+   * Creates a request for the key summary of a partition.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param partitionId the partition whose keys need to be summarized.
+   * @param bucketCount the number of buckets of the summary.
+   */
+  public KeySummaryRequest(int correlationId, String clientId, PartitionId partitionId, int bucketCount) {
+    this(correlationId, clientId, partitionId, bucketCount, Collections.<Integer>emptyList(), new byte[0]);
+  }
+
+  /**
+   * Creates a request for the keys of a partition in some buckets of its key summary that the requester does not have.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client sending the request.
+   * @param partitionId the partition whose keys are requested.
+   * @param bucketCount the number of buckets of the summary.
+   * @param buckets the buckets whose keys are requested. Cannot be empty.
+   * @param keyFilter a bloom filter of the keys the requester has in the buckets.
+   * @throws IOException if the filter could not be serialized.
+   */
+  public KeySummaryRequest(int correlationId, String clientId, PartitionId partitionId, int bucketCount,
+      List<Integer> buckets, IFilter keyFilter)
+      throws IOException {
+    this(correlationId, clientId, partitionId, bucketCount, buckets, serializeFilter(keyFilter));
+    if (buckets.isEmpty()) {
+      throw new IllegalArgumentException("The buckets whose keys are requested cannot be empty");
+    }
+  }
+
+  private KeySummaryRequest(int correlationId, String clientId, PartitionId partitionId, int bucketCount,
+      List<Integer> buckets, byte[] keyFilter) {
+    super(RequestOrResponseType.KeySummaryRequest, Key_Summary_Request_Version_V1, correlationId, clientId);
+    if (partitionId == null || buckets == null || keyFilter == null) {
+      throw new IllegalArgumentException(
+          "A parameter in the key summary request is null: [Partition: " + partitionId + ", buckets: " + buckets
+              + ", keyFilter: " + keyFilter + "]");
+    }
+    if (bucketCount <= 0) {
+      throw new IllegalArgumentException("Bucket count should be positive: " + bucketCount);
+    }
+    this.partitionId = partitionId;
+    this.bucketCount = bucketCount;
+    this.buckets = buckets;
+    this.keyFilter = keyFilter;
+  }
+
+  public static KeySummaryRequest readFrom(DataInputStream stream, ClusterMap clusterMap)
+      throws IOException {
+    Short versionId = stream.readShort();
+    int correlationId = stream.readInt();
+    String clientId = Utils.readIntString(stream);
+    PartitionId partitionId = clusterMap.getPartitionIdFromStream(stream);
+    int bucketCount = stream.readInt();
+    int bucketListCount = stream.readInt();
+    List<Integer> buckets = new ArrayList<Integer>(bucketListCount);
+    for (int i = 0; i < bucketListCount; i++) {
+      buckets.add(stream.readInt());
+    }
+    byte[] keyFilter = Utils.readBytesFromStream(stream, stream.readInt());
+    // ignore version for now
+    return new KeySummaryRequest(correlationId, clientId, partitionId, bucketCount, buckets, keyFilter);
+  }
+
+  public PartitionId getPartitionId() {
+    return partitionId;
+  }
+
+  public int getBucketCount() {
+    return bucketCount;
+  }
+
+  /**
+   * @return the buckets whose keys are requested, empty if the key summary is requested.
+   */
+  public List<Integer> getBuckets() {
+    return buckets;
+  }
+
+  /**
+   * @return {@code true} if the request is for the key summary of the partition, {@code false} if it is for keys.
+   */
+  public boolean isKeySummaryRequested() {
+    return buckets.isEmpty();
+  }
+
+  /**
+   * @return the bloom filter of the keys the requester has in the requested buckets, {@code null} if the key summary
+   *         is requested.
+   * @throws IOException if the filter could not be deserialized.
+   */
+  public IFilter getKeyFilter()
+      throws IOException {
+    if (keyFilter.length == 0) {
+      return null;
+    }
+    return FilterFactory.deserialize(new DataInputStream(new ByteArrayInputStream(keyFilter)));
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) sizeInBytes());
+      writeHeader();
+      bufferToSend.put(partitionId.getBytes());
+      bufferToSend.putInt(bucketCount);
+      bufferToSend.putInt(buckets.size());
+      for (Integer bucket : buckets) {
+        bufferToSend.putInt(bucket);
+      }
+      bufferToSend.putInt(keyFilter.length);
+      bufferToSend.put(keyFilter);
+      bufferToSend.flip();
+    }
+    return bufferToSend.remaining() > 0 ? channel.write(bufferToSend) : 0;
+  }
+
+  @Override
+  public boolean isSendComplete() {
+    return bufferToSend != null && bufferToSend.remaining() == 0;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return super.sizeInBytes() + partitionId.getBytes().length + Bucket_Count_Size_In_Bytes + Bucket_Count_Size_In_Bytes
+        + buckets.size() * Bucket_Size_In_Bytes + Key_Filter_Size_In_Bytes + keyFilter.length;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("KeySummaryRequest[");
+    sb.append("PartitionId=").append(partitionId);
+    sb.append(", ").append("BucketCount=").append(bucketCount);
+    sb.append(", ").append("Buckets=").append(buckets);
+    sb.append(", ").append("KeyFilterSizeInBytes=").append(keyFilter.length);
+    sb.append("]");
+    return sb.toString();
+  }
+
+  private static byte[] serializeFilter(IFilter keyFilter)
+      throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+    FilterFactory.serialize(keyFilter, dataOutputStream);
+    dataOutputStream.flush();
+    return outputStream.toByteArray();
+  }
+}
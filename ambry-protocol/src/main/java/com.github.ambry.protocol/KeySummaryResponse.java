@@ -0,0 +1,168 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.protocol;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.store.KeySummary;
+import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.Utils;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The response for a {@link KeySummaryRequest}. It holds either the key summary of the partition or the keys that
+ * were requested.
+ */
+public class KeySummaryResponse extends Response {
+  private final KeySummary keySummary;
+  private final List<? extends StoreKey> keys;
+  private final long keysSizeInBytes;
+
+  private static final int Bucket_Count_Size_In_Bytes = 4;
+  private static final int Bucket_Summary_Size_In_Bytes = 12;
+  private static final int Key_List_Size_In_Bytes = 4;
+  private static final short Key_Summary_Response_Version_V1 = 1;
+
+  /**
+   * Creates a response with the key summary of a partition.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client that sent the request.
+   * @param keySummary the key summary of the partition.
+   */
+  public KeySummaryResponse(int correlationId, String clientId, KeySummary keySummary) {
+    this(correlationId, clientId, ServerErrorCode.No_Error, keySummary, Collections.<StoreKey>emptyList());
+  }
+
+  /**
+   * Creates a response with the keys that were requested.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client that sent the request.
+   * @param keys the keys that were requested.
+   */
+  public KeySummaryResponse(int correlationId, String clientId, List<? extends StoreKey> keys) {
+    this(correlationId, clientId, ServerErrorCode.No_Error, null, keys);
+  }
+
+  public KeySummaryResponse(int correlationId, String clientId, ServerErrorCode error) {
+    this(correlationId, clientId, error, null, Collections.<StoreKey>emptyList());
+  }
+
+  private KeySummaryResponse(int correlationId, String clientId, ServerErrorCode error, KeySummary keySummary,
+      List<? extends StoreKey> keys) {
+    super(RequestOrResponseType.KeySummaryResponse, Key_Summary_Response_Version_V1, correlationId, clientId, error);
+    this.keySummary = keySummary;
+    this.keys = keys;
+    long keysSizeInBytes = 0;
+    for (StoreKey key : keys) {
+      keysSizeInBytes += key.sizeInBytes();
+    }
+    this.keysSizeInBytes = keysSizeInBytes;
+  }
+
+  /**
+   * @return the key summary of the partition, {@code null} if keys were requested or the request failed.
+   */
+  public KeySummary getKeySummary() {
+    return keySummary;
+  }
+
+  /**
+   * @return the keys that were requested, empty if the key summary was requested or the request failed.
+   */
+  public List<? extends StoreKey> getKeys() {
+    return keys;
+  }
+
+  public static KeySummaryResponse readFrom(DataInputStream stream, ClusterMap clusterMap)
+      throws IOException {
+    RequestOrResponseType type = RequestOrResponseType.values()[stream.readShort()];
+    if (type != RequestOrResponseType.KeySummaryResponse) {
+      throw new IllegalArgumentException("The type of request response is not compatible");
+    }
+    Short versionId = stream.readShort();
+    int correlationId = stream.readInt();
+    String clientId = Utils.readIntString(stream);
+    ServerErrorCode error = ServerErrorCode.values()[stream.readShort()];
+    int bucketCount = stream.readInt();
+    KeySummary keySummary = null;
+    if (bucketCount > 0) {
+      long[] digests = new long[bucketCount];
+      int[] keyCounts = new int[bucketCount];
+      for (int i = 0; i < bucketCount; i++) {
+        digests[i] = stream.readLong();
+        keyCounts[i] = stream.readInt();
+      }
+      keySummary = new KeySummary(digests, keyCounts);
+    }
+    int keyCount = stream.readInt();
+    List<BlobId> keys = new ArrayList<BlobId>(keyCount);
+    for (int i = 0; i < keyCount; i++) {
+      keys.add(new BlobId(stream, clusterMap));
+    }
+    // ignore version for now
+    return new KeySummaryResponse(correlationId, clientId, error, keySummary, keys);
+  }
+
+  @Override
+  public long writeTo(WritableByteChannel channel)
+      throws IOException {
+    if (bufferToSend == null) {
+      bufferToSend = ByteBuffer.allocate((int) sizeInBytes());
+      writeHeader();
+      if (keySummary != null) {
+        bufferToSend.putInt(keySummary.getBucketCount());
+        for (int i = 0; i < keySummary.getBucketCount(); i++) {
+          bufferToSend.putLong(keySummary.getDigest(i));
+          bufferToSend.putInt(keySummary.getKeyCount(i));
+        }
+      } else {
+        bufferToSend.putInt(0);
+      }
+      bufferToSend.putInt(keys.size());
+      for (StoreKey key : keys) {
+        bufferToSend.put(key.toBytes());
+      }
+      bufferToSend.flip();
+    }
+    return bufferToSend.remaining() > 0 ? channel.write(bufferToSend) : 0;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    long keySummarySizeInBytes = keySummary == null ? 0 : keySummary.getBucketCount() * Bucket_Summary_Size_In_Bytes;
+    return super.sizeInBytes() + Bucket_Count_Size_In_Bytes + keySummarySizeInBytes + Key_List_Size_In_Bytes
+        + keysSizeInBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("KeySummaryResponse[");
+    sb.append("ServerErrorCode=").append(getError());
+    if (keySummary != null) {
+      sb.append(", ").append("BucketCount=").append(keySummary.getBucketCount());
+    }
+    sb.append(", ").append("KeyCount=").append(keys.size());
+    sb.append("]");
+    return sb.toString();
+  }
+}
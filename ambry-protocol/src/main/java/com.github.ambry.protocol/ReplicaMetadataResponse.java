@@ -28,36 +28,84 @@ import java.util.List;
 
 /**
  * The response for a ReplicaMetadataRequest. This returns the new entries found
- * and the new token that could be used for future searches
+ * and the new token that could be used for future searches. From version 2 on, the response also tells whether the
+ * server held the request waiting for new writes, and for how long. These are written after the entries so that
+ * clients that only know version 1 can still read the response.
  */
 public class ReplicaMetadataResponse extends Response {
 
   private List<ReplicaMetadataResponseInfo> replicaMetadataResponseInfoList;
   private int replicaMetadataResponseInfoListSizeInBytes;
+  private final boolean heldForWrites;
+  private final long waitTimeInMs;
 
   private static int Replica_Metadata_Response_Info_List_Size_In_Bytes = 4;
+  private static final int Held_For_Writes_Size_In_Bytes = 1;
+  private static final int Wait_Time_Size_In_Bytes = 8;
   private static final short Replica_Metadata_Response_Version_V1 = 1;
+  private static final short Replica_Metadata_Response_Version_V2 = 2;
 
   public ReplicaMetadataResponse(int correlationId, String clientId, ServerErrorCode error,
       List<ReplicaMetadataResponseInfo> replicaMetadataResponseInfoList) {
-    super(RequestOrResponseType.ReplicaMetadataResponse, Replica_Metadata_Response_Version_V1, correlationId, clientId, error);
+    this(correlationId, clientId, error, replicaMetadataResponseInfoList, false, 0,
+        Replica_Metadata_Response_Version_V1);
+  }
+
+  /**
+   * Creates a ReplicaMetadataResponse that tells whether the server held the request waiting for new writes.
+   * @param correlationId the correlation id of the request.
+   * @param clientId the id of the client that sent the request.
+   * @param error the {@link ServerErrorCode} of the response.
+   * @param replicaMetadataResponseInfoList the {@link ReplicaMetadataResponseInfo} of every partition in the request.
+   * @param heldForWrites {@code true} if the server held the request waiting for new writes.
+   * @param waitTimeInMs the time for which the server held the request.
+   */
+  public ReplicaMetadataResponse(int correlationId, String clientId, ServerErrorCode error,
+      List<ReplicaMetadataResponseInfo> replicaMetadataResponseInfoList, boolean heldForWrites, long waitTimeInMs) {
+    this(correlationId, clientId, error, replicaMetadataResponseInfoList, heldForWrites, waitTimeInMs,
+        Replica_Metadata_Response_Version_V2);
+  }
+
+  private ReplicaMetadataResponse(int correlationId, String clientId, ServerErrorCode error,
+      List<ReplicaMetadataResponseInfo> replicaMetadataResponseInfoList, boolean heldForWrites, long waitTimeInMs,
+      short versionId) {
+    super(RequestOrResponseType.ReplicaMetadataResponse, versionId, correlationId, clientId, error);
     this.replicaMetadataResponseInfoList = replicaMetadataResponseInfoList;
     this.replicaMetadataResponseInfoListSizeInBytes = 0;
     for (ReplicaMetadataResponseInfo replicaMetadataResponseInfo : replicaMetadataResponseInfoList) {
       this.replicaMetadataResponseInfoListSizeInBytes += replicaMetadataResponseInfo.sizeInBytes();
     }
+    this.heldForWrites = heldForWrites;
+    this.waitTimeInMs = waitTimeInMs;
   }
 
   public ReplicaMetadataResponse(int correlationId, String clientId, ServerErrorCode error) {
     super(RequestOrResponseType.ReplicaMetadataResponse, Replica_Metadata_Response_Version_V1, correlationId, clientId, error);
     replicaMetadataResponseInfoList = null;
     replicaMetadataResponseInfoListSizeInBytes = 0;
+    heldForWrites = false;
+    waitTimeInMs = 0;
   }
 
   public List<ReplicaMetadataResponseInfo> getReplicaMetadataResponseInfoList() {
     return replicaMetadataResponseInfoList;
   }
 
+  /**
+   * @return {@code true} if the server held the request waiting for new writes. Always {@code false} for responses of
+   *         servers that do not know version 2 of the response.
+   */
+  public boolean isHeldForWrites() {
+    return heldForWrites;
+  }
+
+  /**
+   * @return the time for which the server held the request waiting for new writes.
+   */
+  public long getWaitTimeInMs() {
+    return waitTimeInMs;
+  }
+
   public static ReplicaMetadataResponse readFrom(DataInputStream stream, FindTokenFactory factory,
       ClusterMap clusterMap)
       throws IOException {
@@ -79,8 +127,12 @@ public class ReplicaMetadataResponse extends Response {
     }
     if (error != ServerErrorCode.No_Error) {
       return new ReplicaMetadataResponse(correlationId, clientId, error);
+    } else if (versionId == Replica_Metadata_Response_Version_V2) {
+      boolean heldForWrites = stream.readByte() == 1;
+      long waitTimeInMs = stream.readLong();
+      return new ReplicaMetadataResponse(correlationId, clientId, error, replicaMetadataResponseInfoList, heldForWrites,
+          waitTimeInMs);
     } else {
-      // ignore version for now
       return new ReplicaMetadataResponse(correlationId, clientId, error, replicaMetadataResponseInfoList);
     }
   }
@@ -99,6 +151,10 @@ public class ReplicaMetadataResponse extends Response {
       } else {
         bufferToSend.putInt(0);
       }
+      if (versionId == Replica_Metadata_Response_Version_V2) {
+        bufferToSend.put(heldForWrites ? (byte) 1 : (byte) 0);
+        bufferToSend.putLong(waitTimeInMs);
+      }
       bufferToSend.flip();
     }
     return bufferToSend.remaining() > 0 ? channel.write(bufferToSend) : 0;
@@ -111,8 +167,12 @@ public class ReplicaMetadataResponse extends Response {
 
   @Override
   public long sizeInBytes() {
-    return super.sizeInBytes() + Replica_Metadata_Response_Info_List_Size_In_Bytes
+    long sizeInBytes = super.sizeInBytes() + Replica_Metadata_Response_Info_List_Size_In_Bytes
         + replicaMetadataResponseInfoListSizeInBytes;
+    if (versionId == Replica_Metadata_Response_Version_V2) {
+      sizeInBytes += Held_For_Writes_Size_In_Bytes + Wait_Time_Size_In_Bytes;
+    }
+    return sizeInBytes;
   }
 
   @Override
@@ -120,6 +180,8 @@ public class ReplicaMetadataResponse extends Response {
     StringBuilder sb = new StringBuilder();
     sb.append("ReplicaMetadataResponse[");
     sb.append("ServerErrorCode=").append(getError());
+    sb.append(" HeldForWrites=").append(heldForWrites);
+    sb.append(" WaitTimeInMs=").append(waitTimeInMs);
     if (replicaMetadataResponseInfoList != null) {
       sb.append(" ReplicaMetadataResponseInfo ");
       for (ReplicaMetadataResponseInfo replicaMetadataResponseInfo : replicaMetadataResponseInfoList) {
@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 public abstract class RequestOrResponse implements Send {
   protected final RequestOrResponseType type;
   protected final int correlationId;
+  protected final long traceId;
   protected short versionId;
   protected String clientId;
   protected ByteBuffer bufferToSend;
@@ -35,12 +36,28 @@ public abstract class RequestOrResponse implements Send {
   private static final int Request_Response_Type_Size_In_Bytes = 2;
   private static final int Request_Response_Version_Size_In_Bytes = 2;
   private static final int Correlation_Id_Size_In_Bytes = 4;
+  private static final int Trace_Id_Size_In_Bytes = 8;
   private static final int ClientId_Field_Size_In_Bytes = 4;
 
   public RequestOrResponse(RequestOrResponseType type, short versionId, int correlationId, String clientId) {
+    this(type, versionId, correlationId, 0, clientId);
+  }
+
+  /**
+   * Creates a request or response that belongs to a traced request.
+   * @param type the type of the request or response.
+   * @param versionId the version of the request or response.
+   * @param correlationId the correlation id of the request or response.
+   * @param traceId the id of the trace of the request, or 0 if the request is not traced. It is only sent if
+   *                {@link #carriesTraceId()} is true for the version.
+   * @param clientId the id of the client.
+   */
+  protected RequestOrResponse(RequestOrResponseType type, short versionId, int correlationId, long traceId,
+      String clientId) {
     this.type = type;
     this.versionId = versionId;
     this.correlationId = correlationId;
+    this.traceId = traceId;
     this.clientId = clientId;
     this.bufferToSend = null;
   }
@@ -53,6 +70,13 @@ public abstract class RequestOrResponse implements Send {
     return correlationId;
   }
 
+  /**
+   * @return the id of the trace of the request, or 0 if the request is not traced.
+   */
+  public long getTraceId() {
+    return traceId;
+  }
+
   public short getVersionId() {
     return versionId;
   }
@@ -69,15 +93,26 @@ public abstract class RequestOrResponse implements Send {
     bufferToSend.putShort((short) type.ordinal());
     bufferToSend.putShort(versionId);
     bufferToSend.putInt(correlationId);
+    if (carriesTraceId()) {
+      bufferToSend.putLong(traceId);
+    }
     bufferToSend.putInt(clientId.length());
     bufferToSend.put(clientId.getBytes());
   }
 
+  /**
+   * @return whether the version of this request or response has the trace id in its header, right after the
+   * correlation id. Versions that do not carry it are read by hosts that do not know of tracing.
+   */
+  protected boolean carriesTraceId() {
+    return false;
+  }
+
   public long sizeInBytes() {
-    // size + type + versionId + correlationId + clientId
+    // size + type + versionId + correlationId + traceId + clientId
     return Request_Response_Size_In_Bytes + Request_Response_Type_Size_In_Bytes +
         Request_Response_Version_Size_In_Bytes + Correlation_Id_Size_In_Bytes +
-        ClientId_Field_Size_In_Bytes + clientId.length();
+        (carriesTraceId() ? Trace_Id_Size_In_Bytes : 0) + ClientId_Field_Size_In_Bytes + clientId.length();
   }
 }
 
@@ -27,5 +27,9 @@ public enum RequestOrResponseType {
   TTLRequest, // Unsupported
   TTLResponse, // Unsupported
   ReplicaMetadataRequest,
-  ReplicaMetadataResponse
+  ReplicaMetadataResponse,
+  BatchPutRequest,
+  BatchPutResponse,
+  KeySummaryRequest,
+  KeySummaryResponse
 }
\ No newline at end of file
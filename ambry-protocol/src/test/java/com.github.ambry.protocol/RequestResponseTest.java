@@ -21,11 +21,15 @@ import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.messageformat.BlobPropertiesSerDe;
 import com.github.ambry.messageformat.BlobType;
 import com.github.ambry.messageformat.MessageFormatFlags;
+import com.github.ambry.network.Send;
 import com.github.ambry.store.FindToken;
 import com.github.ambry.store.FindTokenFactory;
+import com.github.ambry.store.KeySummary;
 import com.github.ambry.store.MessageInfo;
 import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.ByteBufferOutputStream;
+import com.github.ambry.utils.FilterFactory;
+import com.github.ambry.utils.IFilter;
 import com.github.ambry.utils.Utils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -36,6 +40,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import org.junit.Assert;
@@ -268,6 +273,78 @@ public class RequestResponseTest {
     Assert.assertEquals(deserializedPutResponse.getError(), ServerErrorCode.No_Error);
   }
 
+  @Test
+  public void batchPutRequestResponseTest()
+      throws IOException {
+    Random rnd = new Random();
+    MockClusterMap clusterMap = new MockClusterMap();
+    String clientId = "client";
+    int blobCount = 5;
+    List<PutRequest> putRequests = new ArrayList<PutRequest>();
+    List<byte[]> blobs = new ArrayList<byte[]>();
+    List<byte[]> userMetadatas = new ArrayList<byte[]>();
+    for (int i = 0; i < blobCount; i++) {
+      BlobId blobId = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+      byte[] userMetadata = new byte[rnd.nextInt(50) + 1];
+      rnd.nextBytes(userMetadata);
+      byte[] blob = new byte[rnd.nextInt(100) + 1];
+      rnd.nextBytes(blob);
+      BlobProperties blobProperties =
+          new BlobProperties(blob.length, "serviceID", "memberId", "contentType", false, Utils.Infinite_Time);
+      putRequests.add(new PutRequest(i, clientId, blobId, blobProperties, ByteBuffer.wrap(userMetadata),
+          new ByteBufferInputStream(ByteBuffer.wrap(blob)), blob.length, BlobType.DataBlob));
+      blobs.add(blob);
+      userMetadatas.add(userMetadata);
+    }
+    BatchPutRequest request = new BatchPutRequest(1234, clientId, putRequests);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+    while (!request.isSendComplete()) {
+      request.writeTo(writableByteChannel);
+    }
+    Assert.assertEquals("Size of serialized request is not as expected", request.sizeInBytes(), outputStream.size());
+    DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    requestStream.readLong();
+    Assert.assertEquals(RequestOrResponseType.values()[requestStream.readShort()],
+        RequestOrResponseType.BatchPutRequest);
+    BatchPutRequest deserializedRequest = BatchPutRequest.readFrom(requestStream, clusterMap);
+    Assert.assertEquals(deserializedRequest.getCorrelationId(), 1234);
+    Assert.assertEquals(deserializedRequest.getPutRequests().size(), blobCount);
+    for (int i = 0; i < blobCount; i++) {
+      PutRequest deserializedPutRequest = deserializedRequest.getPutRequests().get(i);
+      Assert.assertEquals(deserializedPutRequest.getCorrelationId(), i);
+      Assert.assertEquals(deserializedPutRequest.getBlobId(), putRequests.get(i).getBlobId());
+      Assert.assertArrayEquals(userMetadatas.get(i), deserializedPutRequest.getUsermetadata().array());
+      Assert.assertEquals(deserializedPutRequest.getBlobSize(), blobs.get(i).length);
+      byte[] blobRead = new byte[blobs.get(i).length];
+      deserializedPutRequest.getBlobStream().read(blobRead);
+      Assert.assertArrayEquals(blobs.get(i), blobRead);
+    }
+
+    // Response test
+    List<PutResponse> putResponses = new ArrayList<PutResponse>();
+    for (int i = 0; i < blobCount; i++) {
+      putResponses.add(new PutResponse(i, clientId, i % 2 == 0 ? ServerErrorCode.No_Error : ServerErrorCode.IO_Error));
+    }
+    BatchPutResponse response = new BatchPutResponse(1234, clientId, ServerErrorCode.No_Error, putResponses);
+    outputStream = new ByteArrayOutputStream();
+    writableByteChannel = Channels.newChannel(outputStream);
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    DataInputStream responseStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    responseStream.readLong();
+    BatchPutResponse deserializedResponse = BatchPutResponse.readFrom(responseStream);
+    Assert.assertEquals(deserializedResponse.getCorrelationId(), 1234);
+    Assert.assertEquals(deserializedResponse.getError(), ServerErrorCode.No_Error);
+    Assert.assertEquals(deserializedResponse.getPutResponses().size(), blobCount);
+    for (int i = 0; i < blobCount; i++) {
+      Assert.assertEquals(deserializedResponse.getPutResponses().get(i).getCorrelationId(), i);
+      Assert.assertEquals(deserializedResponse.getPutResponses().get(i).getError(),
+          putResponses.get(i).getError());
+    }
+  }
+
   @Test
   public void getRequestResponseTest()
       throws IOException {
@@ -325,6 +402,146 @@ public class RequestResponseTest {
         .getExpirationTimeInMs(), 1000);
   }
 
+  /**
+   * Tests that a get request can ask for a compressed response and that the messages in a compressed response are
+   * read back uncompressed.
+   * @throws IOException
+   */
+  @Test
+  public void compressedGetRequestResponseTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    BlobId id1 = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+    ArrayList<BlobId> blobIdList = new ArrayList<BlobId>();
+    blobIdList.add(id1);
+    ArrayList<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
+    partitionRequestInfoList.add(new PartitionRequestInfo(new MockPartitionId(), blobIdList));
+    GetRequest getRequest =
+        new GetRequest(1234, "clientId", MessageFormatFlags.All, partitionRequestInfoList, GetOptions.Include_All,
+            true);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+    do {
+      getRequest.writeTo(writableByteChannel);
+    } while (!getRequest.isSendComplete());
+    Assert.assertEquals("Unexpected request size", getRequest.sizeInBytes(), outputStream.size());
+    DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    requestStream.readLong(); // read length
+    requestStream.readShort(); // read short
+    GetRequest deserializedGetRequest = GetRequest.readFrom(requestStream, clusterMap);
+    Assert.assertEquals(GetOptions.Include_All, deserializedGetRequest.getGetOptions());
+    Assert.assertTrue("Compression should have been asked for", deserializedGetRequest.shouldCompressResponse());
+
+    MessageInfo messageInfo = new MessageInfo(id1, 10000, 1000);
+    ArrayList<MessageInfo> messageInfoList = new ArrayList<MessageInfo>();
+    messageInfoList.add(messageInfo);
+    List<PartitionResponseInfo> partitionResponseInfoList = new ArrayList<PartitionResponseInfo>();
+    partitionResponseInfoList.add(
+        new PartitionResponseInfo(clusterMap.getWritablePartitionIds().get(0), messageInfoList));
+    // compressible content
+    final byte[] content = new byte[10000];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i % 10);
+    }
+    final ByteBuffer contentBuffer = ByteBuffer.wrap(content);
+    CompressedSend compressedSend = new CompressedSend(new Send() {
+      @Override
+      public long writeTo(WritableByteChannel channel)
+          throws IOException {
+        return channel.write(contentBuffer);
+      }
+
+      @Override
+      public boolean isSendComplete() {
+        return !contentBuffer.hasRemaining();
+      }
+
+      @Override
+      public long sizeInBytes() {
+        return content.length;
+      }
+    });
+    Assert.assertEquals(content.length, compressedSend.getUncompressedSizeInBytes());
+    Assert.assertTrue("Content should have been compressed", compressedSend.sizeInBytes() < content.length);
+    GetResponse response =
+        new GetResponse(1234, "clientId", partitionResponseInfoList, compressedSend, ServerErrorCode.No_Error);
+    outputStream.reset();
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    // bytes that follow the response must not be consumed
+    outputStream.write(7);
+    InputStream responseStream = new ByteArrayInputStream(outputStream.toByteArray());
+    DataInputStream responseDataStream = new DataInputStream(responseStream);
+    Assert.assertEquals("Unexpected response size", response.sizeInBytes(), responseDataStream.readLong());
+    GetResponse deserializedGetResponse = GetResponse.readFrom(responseDataStream, clusterMap);
+    Assert.assertTrue("Response should be compressed", deserializedGetResponse.isCompressed());
+    Assert.assertEquals(1, deserializedGetResponse.getPartitionResponseInfoList().size());
+    InputStream contentStream = deserializedGetResponse.getInputStream();
+    byte[] readContent = Utils.readBytesFromStream(contentStream, content.length);
+    Assert.assertArrayEquals("Unexpected content", content, readContent);
+    // the decompressor is released at the end of the content, after which the stream stays at its end
+    Assert.assertEquals("There should be nothing after the content", -1, contentStream.read());
+    Assert.assertEquals("There should be nothing after the content", -1, contentStream.read(new byte[10], 0, 10));
+    contentStream.close();
+    Assert.assertEquals("Bytes after the response should not have been read", 7, responseStream.read());
+  }
+
+  /**
+   * Tests that the trace id of a traced get request is sent after the correlation id and read back along with the
+   * rest of the request, and that untraced requests do not carry it.
+   * @throws IOException
+   */
+  @Test
+  public void tracedGetRequestTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    BlobId id1 = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+    ArrayList<BlobId> blobIdList = new ArrayList<BlobId>();
+    blobIdList.add(id1);
+    ArrayList<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
+    partitionRequestInfoList.add(new PartitionRequestInfo(new MockPartitionId(), blobIdList));
+    long traceId = 0x1234567890abcdefL;
+    for (boolean compressResponse : new boolean[]{false, true}) {
+      GetRequest getRequest =
+          new GetRequest(1234, traceId, "clientId", MessageFormatFlags.All, partitionRequestInfoList,
+              GetOptions.Include_Deleted_Blobs, compressResponse);
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+      do {
+        getRequest.writeTo(writableByteChannel);
+      } while (!getRequest.isSendComplete());
+      Assert.assertEquals("Unexpected request size", getRequest.sizeInBytes(), outputStream.size());
+      DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+      requestStream.readLong(); // read length
+      requestStream.readShort(); // read short
+      GetRequest deserializedGetRequest = GetRequest.readFrom(requestStream, clusterMap);
+      Assert.assertEquals(traceId, deserializedGetRequest.getTraceId());
+      Assert.assertEquals(1234, deserializedGetRequest.getCorrelationId());
+      Assert.assertEquals("clientId", deserializedGetRequest.getClientId());
+      Assert.assertEquals(GetOptions.Include_Deleted_Blobs, deserializedGetRequest.getGetOptions());
+      Assert.assertEquals(compressResponse, deserializedGetRequest.shouldCompressResponse());
+      Assert.assertEquals(id1, deserializedGetRequest.getPartitionInfoList().get(0).getBlobIds().get(0));
+    }
+
+    GetRequest untracedGetRequest =
+        new GetRequest(1234, 0, "clientId", MessageFormatFlags.All, partitionRequestInfoList, GetOptions.None, false);
+    GetRequest tracedGetRequest =
+        new GetRequest(1234, traceId, "clientId", MessageFormatFlags.All, partitionRequestInfoList, GetOptions.None,
+            false);
+    // the traced request has the trace id and the compression flag of the newer versions
+    Assert.assertEquals(untracedGetRequest.sizeInBytes() + 8 + 1, tracedGetRequest.sizeInBytes());
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+    do {
+      untracedGetRequest.writeTo(writableByteChannel);
+    } while (!untracedGetRequest.isSendComplete());
+    DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    requestStream.readLong(); // read length
+    requestStream.readShort(); // read short
+    Assert.assertEquals(0, GetRequest.readFrom(requestStream, clusterMap).getTraceId());
+  }
+
   @Test
   public void deleteRequestResponseTest()
       throws IOException {
@@ -417,5 +634,102 @@ public class RequestResponseTest {
         ReplicaMetadataResponse.readFrom(requestStream, new MockFindTokenFactory(), clusterMap);
     Assert.assertEquals(deserializedDeleteResponse.getCorrelationId(), 1234);
     Assert.assertEquals(deserializedDeleteResponse.getError(), ServerErrorCode.No_Error);
+    Assert.assertFalse(deserializedDeleteResponse.isHeldForWrites());
+
+    // a response that tells that the server held the request
+    response = new ReplicaMetadataResponse(1235, "clientId", ServerErrorCode.No_Error, replicaMetadataResponseInfoList,
+        true, 567);
+    outputStream.reset();
+    do {
+      response.writeTo(writableByteChannel);
+    } while (!response.isSendComplete());
+    Assert.assertEquals(response.sizeInBytes(), outputStream.size());
+    requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    requestStream.readLong(); // read size
+    deserializedDeleteResponse =
+        ReplicaMetadataResponse.readFrom(requestStream, new MockFindTokenFactory(), clusterMap);
+    Assert.assertEquals(deserializedDeleteResponse.getCorrelationId(), 1235);
+    Assert.assertEquals(deserializedDeleteResponse.getReplicaMetadataResponseInfoList().size(), 1);
+    Assert.assertTrue(deserializedDeleteResponse.isHeldForWrites());
+    Assert.assertEquals(deserializedDeleteResponse.getWaitTimeInMs(), 567);
+  }
+
+  @Test
+  public void keySummaryRequestResponseTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    BlobId id1 = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+    BlobId id2 = new BlobId(clusterMap.getWritablePartitionIds().get(0));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    WritableByteChannel writableByteChannel = Channels.newChannel(outputStream);
+
+    // summary request and response
+    KeySummaryRequest summaryRequest =
+        new KeySummaryRequest(1234, "client", clusterMap.getWritablePartitionIds().get(0), 16);
+    do {
+      summaryRequest.writeTo(writableByteChannel);
+    } while (!summaryRequest.isSendComplete());
+    DataInputStream requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assert.assertEquals("Unexpected request size", summaryRequest.sizeInBytes(), requestStream.readLong());
+    Assert.assertEquals(RequestOrResponseType.KeySummaryRequest.ordinal(), requestStream.readShort());
+    KeySummaryRequest deserializedSummaryRequest = KeySummaryRequest.readFrom(requestStream, clusterMap);
+    Assert.assertEquals(clusterMap.getWritablePartitionIds().get(0), deserializedSummaryRequest.getPartitionId());
+    Assert.assertEquals(16, deserializedSummaryRequest.getBucketCount());
+    Assert.assertTrue("Summary should be requested", deserializedSummaryRequest.isKeySummaryRequested());
+    Assert.assertNull("There should be no key filter", deserializedSummaryRequest.getKeyFilter());
+
+    KeySummary keySummary = new KeySummary(16);
+    keySummary.add(id1);
+    keySummary.add(id2);
+    KeySummaryResponse summaryResponse = new KeySummaryResponse(1234, "client", keySummary);
+    outputStream.reset();
+    do {
+      summaryResponse.writeTo(writableByteChannel);
+    } while (!summaryResponse.isSendComplete());
+    DataInputStream responseStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assert.assertEquals("Unexpected response size", summaryResponse.sizeInBytes(), responseStream.readLong());
+    KeySummaryResponse deserializedSummaryResponse = KeySummaryResponse.readFrom(responseStream, clusterMap);
+    Assert.assertEquals(ServerErrorCode.No_Error, deserializedSummaryResponse.getError());
+    Assert.assertEquals("Summaries should match", 0,
+        keySummary.getMismatchedBuckets(deserializedSummaryResponse.getKeySummary()).size());
+    Assert.assertEquals(0, deserializedSummaryResponse.getKeys().size());
+
+    // keys request and response
+    IFilter keyFilter = FilterFactory.getFilter(1, 0.001);
+    keyFilter.add(ByteBuffer.wrap(id1.toBytes()));
+    List<Integer> buckets = Arrays.asList(KeySummary.getBucket(id1, 16), KeySummary.getBucket(id2, 16));
+    KeySummaryRequest keysRequest =
+        new KeySummaryRequest(1235, "client", clusterMap.getWritablePartitionIds().get(0), 16, buckets, keyFilter);
+    outputStream.reset();
+    do {
+      keysRequest.writeTo(writableByteChannel);
+    } while (!keysRequest.isSendComplete());
+    requestStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assert.assertEquals("Unexpected request size", keysRequest.sizeInBytes(), requestStream.readLong());
+    requestStream.readShort();
+    KeySummaryRequest deserializedKeysRequest = KeySummaryRequest.readFrom(requestStream, clusterMap);
+    Assert.assertFalse("Keys should be requested", deserializedKeysRequest.isKeySummaryRequested());
+    Assert.assertEquals(buckets, deserializedKeysRequest.getBuckets());
+    IFilter deserializedKeyFilter = deserializedKeysRequest.getKeyFilter();
+    Assert.assertTrue("Key should be in the filter", deserializedKeyFilter.isPresent(ByteBuffer.wrap(id1.toBytes())));
+
+    KeySummaryResponse keysResponse = new KeySummaryResponse(1235, "client", Arrays.asList(id2));
+    outputStream.reset();
+    do {
+      keysResponse.writeTo(writableByteChannel);
+    } while (!keysResponse.isSendComplete());
+    responseStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assert.assertEquals("Unexpected response size", keysResponse.sizeInBytes(), responseStream.readLong());
+    KeySummaryResponse deserializedKeysResponse = KeySummaryResponse.readFrom(responseStream, clusterMap);
+    Assert.assertNull("There should be no summary", deserializedKeysResponse.getKeySummary());
+    Assert.assertEquals(Arrays.asList(id2), deserializedKeysResponse.getKeys());
+
+    try {
+      new KeySummaryRequest(1236, "client", clusterMap.getWritablePartitionIds().get(0), 16,
+          new ArrayList<Integer>(), keyFilter);
+      Assert.fail("Request for keys without buckets should fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
   }
 }
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.utils.Time;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Tracks writes to the local stores so that callers can wait for new writes to the partitions they are interested in.
+ * Every write to a partition increments the sequence number of the partition. A caller that has seen the sequence
+ * number of a set of partitions can wait until a write to any of them moves it, and is only woken up by writes to
+ * those partitions. Writers only look for callers to wake up when there are callers waiting, so writes are not slowed
+ * down when nobody is waiting.
+ */
+class LocalWriteNotifier {
+  private final ConcurrentHashMap<PartitionId, PartitionWrites> partitionWrites =
+      new ConcurrentHashMap<PartitionId, PartitionWrites>();
+  private final AtomicInteger numWaiters = new AtomicInteger(0);
+  private final int maxWaiters;
+  private final Time time;
+
+  /**
+   * Create a LocalWriteNotifier.
+   * @param maxWaiters the max number of callers that can wait at any time.
+   * @param time the {@link Time} instance to use.
+   */
+  LocalWriteNotifier(int maxWaiters, Time time) {
+    this.maxWaiters = maxWaiters;
+    this.time = time;
+  }
+
+  /**
+   * Record a write to the local store of a partition and wake up the callers waiting for a write to it.
+   * @param partitionId the partition that was written to.
+   */
+  void onWrite(PartitionId partitionId) {
+    PartitionWrites writes = getPartitionWrites(partitionId);
+    writes.sequence.incrementAndGet();
+    if (numWaiters.get() > 0) {
+      for (CountDownLatch waiter : writes.waiters) {
+        waiter.countDown();
+      }
+    }
+  }
+
+  /**
+   * @param partitionIds the partitions of interest.
+   * @return the write sequence number of the given partitions. It only moves when one of the partitions is written to.
+   */
+  long getWriteSequence(List<? extends PartitionId> partitionIds) {
+    long sequence = 0;
+    for (PartitionId partitionId : partitionIds) {
+      sequence += getPartitionWrites(partitionId).sequence.get();
+    }
+    return sequence;
+  }
+
+  /**
+   * @return the number of callers that are waiting for writes.
+   */
+  int getNumWaiters() {
+    return numWaiters.get();
+  }
+
+  /**
+   * Wait until one of the given partitions is written to after the write sequence number of the partitions was the
+   * given one, or until the wait time elapses. Callers check whether there was a write with
+   * {@link #getWriteSequence(List)}.
+   * @param partitionIds the partitions of interest.
+   * @param sequence the write sequence number of the partitions after which a write is awaited.
+   * @param maxWaitTimeMs the max time to wait for.
+   * @return the time waited in ms, or -1 if the caller did not wait because the max number of callers were already
+   *         waiting.
+   * @throws InterruptedException if the wait is interrupted.
+   */
+  long awaitWriteAfter(List<? extends PartitionId> partitionIds, long sequence, long maxWaitTimeMs)
+      throws InterruptedException {
+    if (numWaiters.incrementAndGet() > maxWaiters) {
+      numWaiters.decrementAndGet();
+      return -1;
+    }
+    long startTimeMs = time.milliseconds();
+    CountDownLatch waiter = new CountDownLatch(1);
+    try {
+      for (PartitionId partitionId : partitionIds) {
+        getPartitionWrites(partitionId).waiters.add(waiter);
+      }
+      // a write that happened before the waiter was added would not have woken it up
+      if (getWriteSequence(partitionIds) == sequence) {
+        waiter.await(maxWaitTimeMs, TimeUnit.MILLISECONDS);
+      }
+      return time.milliseconds() - startTimeMs;
+    } finally {
+      for (PartitionId partitionId : partitionIds) {
+        getPartitionWrites(partitionId).waiters.remove(waiter);
+      }
+      numWaiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * @param partitionId the partition whose writes are needed.
+   * @return the {@link PartitionWrites} of the given partition.
+   */
+  private PartitionWrites getPartitionWrites(PartitionId partitionId) {
+    PartitionWrites writes = partitionWrites.get(partitionId);
+    if (writes == null) {
+      writes = new PartitionWrites();
+      PartitionWrites existingWrites = partitionWrites.putIfAbsent(partitionId, writes);
+      if (existingWrites != null) {
+        writes = existingWrites;
+      }
+    }
+    return writes;
+  }
+
+  /**
+   * The write sequence number of a partition and the callers waiting for a write to it.
+   */
+  private static class PartitionWrites {
+    final AtomicLong sequence = new AtomicLong(0);
+    final Set<CountDownLatch> waiters = Collections.newSetFromMap(new ConcurrentHashMap<CountDownLatch, Boolean>());
+  }
+}
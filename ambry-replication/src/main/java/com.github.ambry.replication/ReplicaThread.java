@@ -17,6 +17,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.config.ReplicationConfig;
 import com.github.ambry.messageformat.DeleteMessageFormatInputStream;
@@ -35,6 +36,8 @@ import com.github.ambry.network.ConnectionPool;
 import com.github.ambry.protocol.GetOptions;
 import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
+import com.github.ambry.protocol.KeySummaryRequest;
+import com.github.ambry.protocol.KeySummaryResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.protocol.PartitionResponseInfo;
 import com.github.ambry.protocol.ReplicaMetadataRequest;
@@ -43,33 +46,58 @@ import com.github.ambry.protocol.ReplicaMetadataResponse;
 import com.github.ambry.protocol.ReplicaMetadataResponseInfo;
 import com.github.ambry.store.FindToken;
 import com.github.ambry.store.FindTokenFactory;
+import com.github.ambry.store.KeySummary;
 import com.github.ambry.store.MessageInfo;
+import com.github.ambry.store.Store;
 import com.github.ambry.store.StoreErrorCodes;
 import com.github.ambry.store.StoreException;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.FilterFactory;
+import com.github.ambry.utils.IFilter;
 import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * A replica thread is responsible for handling replication for a set of partitions assigned to it
  */
 class ReplicaThread implements Runnable {
+  private static final long LOCAL_WRITE_POLL_TIMEOUT_MS = 100;
+  private static final long IDLE_WAIT_TIMEOUT_MS = 1000;
+  private static final double Key_Filter_False_Positive_Probability = 0.001;
 
+  // the remote nodes assigned to the thread, which can be moved between replica threads while they run
   private final Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicateGroupedByNode;
+  // the remote nodes that are to be handed off to other replica threads along with the thread each one moves to
+  private final Map<DataNodeId, ReplicaThread> pendingNodeMoves = new ConcurrentHashMap<DataNodeId, ReplicaThread>();
+  // the time spent replicating from each remote node since the times were last drained
+  private final ConcurrentHashMap<DataNodeId, AtomicLong> replicationTimesInMs =
+      new ConcurrentHashMap<DataNodeId, AtomicLong>();
+  private final Object remoteNodesLock = new Object();
   private final CountDownLatch shutdownLatch = new CountDownLatch(1);
   private volatile boolean running;
   private boolean waitEnabled;
@@ -90,15 +118,36 @@ class ReplicaThread implements Runnable {
   private final boolean replicatingFromRemoteColo;
   private final boolean replicatingOverSsl;
   private final String datacenterName;
+  private final ReplicationThrottler replicationThrottler;
+  // validates replicated messages if message validation is parallelized, null otherwise
+  private final ExecutorService messageValidationExecutor;
+  // the number of consecutive iterations in which a remote node that is caught up with has been skipped
+  private final Map<DataNodeId, Integer> skippedIterationsForCaughtUpNodes = new HashMap<DataNodeId, Integer>();
+  // whether the current iteration replicates from remote nodes that the local node lags behind
+  private boolean laggingNodesScheduled = false;
+  // the time that the remote node held the metadata requests of the current exchange waiting for new writes
+  private long remoteWaitTimeInMs = 0;
+  // the remote nodes that are being replicated from in bootstrap mode
+  private final Set<DataNodeId> nodesInBootstrap =
+      Collections.newSetFromMap(new ConcurrentHashMap<DataNodeId, Boolean>());
+  // writes fetched messages to the local stores if local writes are pipelined, null otherwise
+  private final LocalWriter localWriter;
+  // the remote nodes whose fetched messages are yet to be written to the local stores
+  private final Set<DataNodeId> nodesWithPendingLocalWrites = new HashSet<DataNodeId>();
+  // the failures to write the messages fetched from remote nodes, which are yet to be handled by the replica thread.
+  // Guarded by nodesWithPendingLocalWrites.
+  private final Map<DataNodeId, Exception> localWriteFailures = new HashMap<DataNodeId, Exception>();
 
   public ReplicaThread(String threadName, Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicateGroupedByNode,
       FindTokenFactory findTokenFactory, ClusterMap clusterMap, AtomicInteger correlationIdGenerator,
       DataNodeId dataNodeId, ConnectionPool connectionPool, ReplicationConfig replicationConfig,
       ReplicationMetrics replicationMetrics, NotificationSystem notification, StoreKeyFactory storeKeyFactory,
       boolean validateMessageStream, MetricRegistry metricRegistry, boolean replicatingOverSsl, String datacenterName,
-      ResponseHandler responseHandler) {
+      ResponseHandler responseHandler, ReplicationThrottler replicationThrottler,
+      ExecutorService messageValidationExecutor) {
     this.threadName = threadName;
-    this.replicasToReplicateGroupedByNode = replicasToReplicateGroupedByNode;
+    this.replicasToReplicateGroupedByNode =
+        new ConcurrentHashMap<DataNodeId, List<RemoteReplicaInfo>>(replicasToReplicateGroupedByNode);
     this.running = true;
     this.findTokenFactory = findTokenFactory;
     this.clusterMap = clusterMap;
@@ -116,6 +165,10 @@ class ReplicaThread implements Runnable {
     this.waitEnabled = !replicatingFromRemoteColo;
     this.replicatingOverSsl = replicatingOverSsl;
     this.datacenterName = datacenterName;
+    this.replicationThrottler = replicationThrottler;
+    this.messageValidationExecutor = messageValidationExecutor;
+    this.localWriter = replicationConfig.replicationLocalWriteQueueSize > 0 ? new LocalWriter(
+        replicationConfig.replicationLocalWriteQueueSize, replicationConfig.replicationLocalWriteQueueMaxBytes) : null;
   }
 
   public String getName() {
@@ -126,24 +179,37 @@ class ReplicaThread implements Runnable {
   public void run() {
     try {
       logger.trace("Starting replica thread on Local node: " + dataNodeId + " Thread name: " + threadName);
-      List<List<RemoteReplicaInfo>> replicasToReplicate =
-          new ArrayList<List<RemoteReplicaInfo>>(replicasToReplicateGroupedByNode.size());
       for (Map.Entry<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicateEntry : replicasToReplicateGroupedByNode
           .entrySet()) {
         logger.info("Remote node: " + replicasToReplicateEntry.getKey() +
             " Thread name: " + threadName +
             " ReplicasToReplicate: " + replicasToReplicateEntry.getValue());
-        replicasToReplicate.add(replicasToReplicateEntry.getValue());
+      }
+      if (localWriter != null) {
+        Utils.newThread(threadName + "-LocalWriter", localWriter, false).start();
       }
       logger.info("Begin iteration for thread " + threadName);
       while (running) {
-        // shuffle the nodes
-        Collections.shuffle(replicasToReplicate);
-        for (List<RemoteReplicaInfo> replicasToReplicatePerNode : replicasToReplicate) {
+        handOffPendingNodes();
+        List<List<RemoteReplicaInfo>> replicasToReplicate =
+            new ArrayList<List<RemoteReplicaInfo>>(replicasToReplicateGroupedByNode.values());
+        if (replicasToReplicate.isEmpty()) {
+          awaitRemoteNodes();
+          continue;
+        }
+        for (List<RemoteReplicaInfo> scheduledReplicasPerNode : scheduleIteration(replicasToReplicate)) {
           if (!running) {
             break;
           }
+          // replicas that are added to the cluster map are appended to the list of their node, so work on a copy that
+          // stays the same for the whole exchange with the node
+          List<RemoteReplicaInfo> replicasToReplicatePerNode =
+              new ArrayList<RemoteReplicaInfo>(scheduledReplicasPerNode);
           DataNodeId remoteNode = replicasToReplicatePerNode.get(0).getReplicaId().getDataNodeId();
+          if (pendingNodeMoves.containsKey(remoteNode)) {
+            // the node is handed off at the start of the next iteration
+            continue;
+          }
           logger.trace("Remote node: {} Thread name: {} Remote replicas: {}", remoteNode, threadName,
               replicasToReplicatePerNode);
           Timer.Context context = null;
@@ -171,6 +237,7 @@ class ReplicaThread implements Runnable {
           long fixMissingStoreKeysTimeInMs = -1;
           long replicationStartTimeInMs = SystemTime.getInstance().milliseconds();
           long startTimeInMs = replicationStartTimeInMs;
+          remoteWaitTimeInMs = 0;
 
           List<RemoteReplicaInfo> activeReplicasPerNode = new ArrayList<RemoteReplicaInfo>();
           for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
@@ -180,11 +247,14 @@ class ReplicaThread implements Runnable {
           }
           if (activeReplicasPerNode.size() > 0) {
             try {
+              awaitPendingLocalWrites(remoteNode);
+              startTimeInMs = SystemTime.getInstance().milliseconds();
               connectedChannel = connectionPool
                   .checkOutConnection(remoteNode.getHostname(), replicasToReplicatePerNode.get(0).getPort(),
                       replicationConfig.replicationConnectionPoolCheckoutTimeoutMs);
               checkoutConnectionTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
               startTimeInMs = SystemTime.getInstance().milliseconds();
+              throwIfLocalWriteFailed(remoteNode, activeReplicasPerNode.get(0));
               List<ExchangeMetadataResponse> exchangeMetadataResponseList =
                   exchangeMetadata(connectedChannel, replicasToReplicatePerNode);
               exchangeMetadataTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
@@ -192,6 +262,8 @@ class ReplicaThread implements Runnable {
               startTimeInMs = SystemTime.getInstance().milliseconds();
               fixMissingStoreKeys(connectedChannel, replicasToReplicatePerNode, exchangeMetadataResponseList);
               fixMissingStoreKeysTimeInMs = SystemTime.getInstance().milliseconds() - startTimeInMs;
+
+              reconcileKeysIfDue(connectedChannel, activeReplicasPerNode, remoteNode);
             } catch (Exception e) {
               if (checkoutConnectionTimeInMs == -1) {
                 // exception happened in checkout connection phase
@@ -241,6 +313,8 @@ class ReplicaThread implements Runnable {
               replicationMetrics
                   .updateTotalReplicationTime(totalReplicationTime, replicatingFromRemoteColo, replicatingOverSsl,
                       datacenterName);
+              // the thread is idle while the remote node holds the request, so that time is not counted as busy time
+              recordReplicationTime(remoteNode, Math.max(totalReplicationTime - remoteWaitTimeInMs, 0));
               if (connectedChannel != null) {
                 connectionPool.checkInConnection(connectedChannel);
               }
@@ -251,11 +325,258 @@ class ReplicaThread implements Runnable {
         }
       }
     } finally {
-      running = false;
+      synchronized (remoteNodesLock) {
+        running = false;
+      }
+      if (localWriter != null) {
+        try {
+          localWriter.shutdown();
+        } catch (InterruptedException e) {
+          logger.error("Thread name: " + threadName + " Interrupted while waiting for local writes to finish", e);
+        }
+      }
       shutdownLatch.countDown();
     }
   }
 
+  /**
+   * Assigns a remote node to the thread. The node is replicated from starting with the next iteration.
+   * @param remoteNode the remote node.
+   * @param replicasToReplicatePerNode the remote replicas on the remote node.
+   * @return {@code true} if the node was assigned, {@code false} if the thread is not running.
+   */
+  boolean addRemoteNode(DataNodeId remoteNode, List<RemoteReplicaInfo> replicasToReplicatePerNode) {
+    synchronized (remoteNodesLock) {
+      if (!running) {
+        return false;
+      }
+      replicasToReplicateGroupedByNode.put(remoteNode, replicasToReplicatePerNode);
+      remoteNodesLock.notifyAll();
+      return true;
+    }
+  }
+
+  /**
+   * Moves a remote node of the thread to another replica thread. The thread stops replicating from the node right away
+   * and hands it off at the start of its next iteration, once the messages fetched from the node are written to the
+   * local stores, so that the two threads never replicate from the node at the same time. If the thread is not
+   * running, the node is handed off by the next call to {@link #handOffPendingNodes()}.
+   * @param remoteNode the remote node to move.
+   * @param replicaThread the replica thread to move the node to.
+   */
+  void moveRemoteNode(DataNodeId remoteNode, ReplicaThread replicaThread) {
+    if (replicasToReplicateGroupedByNode.containsKey(remoteNode)) {
+      pendingNodeMoves.put(remoteNode, replicaThread);
+    }
+  }
+
+  /**
+   * Hands the remote nodes that are being moved off to the replica threads they are moved to. A node stays with the
+   * thread if the thread it is moved to is not running.
+   */
+  void handOffPendingNodes() {
+    for (Map.Entry<DataNodeId, ReplicaThread> pendingNodeMove : pendingNodeMoves.entrySet()) {
+      DataNodeId remoteNode = pendingNodeMove.getKey();
+      try {
+        awaitPendingLocalWrites(remoteNode);
+      } catch (InterruptedException e) {
+        logger.error("Thread name: " + threadName + " Interrupted while handing off remote node " + remoteNode, e);
+        continue;
+      }
+      pendingNodeMoves.remove(remoteNode);
+      List<RemoteReplicaInfo> replicasToReplicatePerNode = replicasToReplicateGroupedByNode.get(remoteNode);
+      ReplicaThread replicaThread = pendingNodeMove.getValue();
+      if (replicasToReplicatePerNode == null) {
+        continue;
+      } else if (!replicaThread.addRemoteNode(remoteNode, replicasToReplicatePerNode)) {
+        logger.warn("Remote node: {} Thread name: {} Not moved since thread {} is not running", remoteNode,
+            threadName, replicaThread.getName());
+        continue;
+      }
+      replicasToReplicateGroupedByNode.remove(remoteNode);
+      // the tokens are not advanced past messages that failed to be written, so the thread the node moves to fetches
+      // them again
+      synchronized (nodesWithPendingLocalWrites) {
+        localWriteFailures.remove(remoteNode);
+      }
+      skippedIterationsForCaughtUpNodes.remove(remoteNode);
+      replicationTimesInMs.remove(remoteNode);
+      if (nodesInBootstrap.remove(remoteNode)) {
+        replicationMetrics.replicationBootstrapNodeCount.dec();
+      }
+      logger.info("Remote node: {} moved from thread {} to thread {}", remoteNode, threadName,
+          replicaThread.getName());
+    }
+  }
+
+  /**
+   * @return the remote nodes assigned to the thread, including the ones that are being moved to other threads.
+   */
+  Set<DataNodeId> getRemoteNodes() {
+    return new HashSet<DataNodeId>(replicasToReplicateGroupedByNode.keySet());
+  }
+
+  /**
+   * @param remoteNode a remote node assigned to the thread.
+   * @return the total number of bytes that the local replicas lag behind the remote replicas on the node, 0 if the
+   *         node is not assigned to the thread.
+   */
+  long getLocalLagFromRemoteInBytes(DataNodeId remoteNode) {
+    List<RemoteReplicaInfo> replicasToReplicatePerNode = replicasToReplicateGroupedByNode.get(remoteNode);
+    return replicasToReplicatePerNode == null ? 0 : getLocalLagFromRemoteInBytes(replicasToReplicatePerNode);
+  }
+
+  /**
+   * Returns the time spent replicating from each remote node of the thread since the last call and resets the times.
+   * @return the time in ms spent replicating from each remote node that was replicated from since the last call.
+   */
+  Map<DataNodeId, Long> drainReplicationTimesInMs() {
+    Map<DataNodeId, Long> drainedTimesInMs = new HashMap<DataNodeId, Long>();
+    for (Map.Entry<DataNodeId, AtomicLong> replicationTimeInMs : replicationTimesInMs.entrySet()) {
+      drainedTimesInMs.put(replicationTimeInMs.getKey(), replicationTimeInMs.getValue().getAndSet(0));
+    }
+    return drainedTimesInMs;
+  }
+
+  /**
+   * Adds to the time spent replicating from a remote node.
+   * @param remoteNode the remote node.
+   * @param replicationTimeInMs the time spent replicating from the node.
+   */
+  void recordReplicationTime(DataNodeId remoteNode, long replicationTimeInMs) {
+    AtomicLong totalTimeInMs = replicationTimesInMs.get(remoteNode);
+    if (totalTimeInMs == null) {
+      AtomicLong newTotalTimeInMs = new AtomicLong(0);
+      totalTimeInMs = replicationTimesInMs.putIfAbsent(remoteNode, newTotalTimeInMs);
+      if (totalTimeInMs == null) {
+        totalTimeInMs = newTotalTimeInMs;
+      }
+    }
+    totalTimeInMs.addAndGet(replicationTimeInMs);
+  }
+
+  /**
+   * Waits for a remote node to be assigned to the thread, for up to {@link #IDLE_WAIT_TIMEOUT_MS}.
+   */
+  private void awaitRemoteNodes() {
+    synchronized (remoteNodesLock) {
+      if (running && replicasToReplicateGroupedByNode.isEmpty()) {
+        try {
+          remoteNodesLock.wait(IDLE_WAIT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+          logger.error("Thread name: " + threadName + " Interrupted while waiting for remote nodes", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether a remote node should be replicated from in bootstrap mode, i.e. with
+   * {@link ReplicationConfig#replicationBootstrapFetchSizeInBytes}, and records the transitions into and out of the
+   * bootstrap mode.
+   * @param replicasToReplicatePerNode the remote replicas on the remote node.
+   * @param remoteNode the remote node.
+   * @return {@code true} if the remote node should be replicated from in bootstrap mode.
+   */
+  boolean updateBootstrapState(List<RemoteReplicaInfo> replicasToReplicatePerNode, DataNodeId remoteNode) {
+    long localLagFromRemoteInBytes = getLocalLagFromRemoteInBytes(replicasToReplicatePerNode);
+    boolean bootstrap = replicationConfig.replicationBootstrapFetchSizeInBytes > 0
+        && localLagFromRemoteInBytes >= replicationConfig.replicationBootstrapMinLagInBytes;
+    if (bootstrap && nodesInBootstrap.add(remoteNode)) {
+      logger.info("Remote node: {} Thread name: {} Starting bootstrap. Lag in bytes: {}", remoteNode, threadName,
+          localLagFromRemoteInBytes);
+      replicationMetrics.replicationBootstrapNodeCount.inc();
+    } else if (!bootstrap && nodesInBootstrap.remove(remoteNode)) {
+      logger.info("Remote node: {} Thread name: {} Finished bootstrap. Lag in bytes: {}", remoteNode, threadName,
+          localLagFromRemoteInBytes);
+      replicationMetrics.replicationBootstrapNodeCount.dec();
+    }
+    return bootstrap;
+  }
+
+  /**
+   * Returns the fetch size to request from each of the remote replicas on a remote node. In bootstrap mode,
+   * {@link ReplicationConfig#replicationBootstrapFetchSizeInBytes} is split between the replicas, since the remote node
+   * returns up to the fetch size for every replica and the blobs may be read into memory before they are written to
+   * the local stores.
+   * @param replicasToReplicatePerNode the remote replicas on the remote node.
+   * @param remoteNode the remote node.
+   * @return the fetch size to request from each of the remote replicas.
+   */
+  long getFetchSizeInBytes(List<RemoteReplicaInfo> replicasToReplicatePerNode, DataNodeId remoteNode) {
+    long fetchSizeInBytes = replicationConfig.replicationFetchSizeInBytes;
+    if (updateBootstrapState(replicasToReplicatePerNode, remoteNode)) {
+      fetchSizeInBytes = Math.max(fetchSizeInBytes,
+          replicationConfig.replicationBootstrapFetchSizeInBytes / replicasToReplicatePerNode.size());
+    }
+    return fetchSizeInBytes;
+  }
+
+  /**
+   * Picks the remote nodes to replicate from in the next iteration and the order in which to replicate from them. The
+   * nodes are shuffled and, if lag prioritized scheduling is enabled, the nodes that the local node lags behind are
+   * ordered by descending lag and the nodes that it has caught up with are skipped for up to
+   * {@link ReplicationConfig#replicationMaxSkippedIterationsForCaughtUpNode} iterations while there are lagging ones.
+   * @param replicasToReplicate the remote replicas to replicate from grouped by remote node.
+   * @return the remote replicas to replicate from in the next iteration grouped by remote node.
+   */
+  List<List<RemoteReplicaInfo>> scheduleIteration(List<List<RemoteReplicaInfo>> replicasToReplicate) {
+    // shuffle the nodes
+    Collections.shuffle(replicasToReplicate);
+    if (!replicationConfig.replicationLagPrioritizedSchedulingEnabled) {
+      return replicasToReplicate;
+    }
+    List<List<RemoteReplicaInfo>> laggingReplicas = new ArrayList<List<RemoteReplicaInfo>>();
+    List<List<RemoteReplicaInfo>> caughtUpReplicas = new ArrayList<List<RemoteReplicaInfo>>();
+    for (List<RemoteReplicaInfo> replicasToReplicatePerNode : replicasToReplicate) {
+      if (getLocalLagFromRemoteInBytes(replicasToReplicatePerNode)
+          >= replicationConfig.replicationMaxLagForWaitTimeInBytes) {
+        laggingReplicas.add(replicasToReplicatePerNode);
+      } else {
+        caughtUpReplicas.add(replicasToReplicatePerNode);
+      }
+    }
+    // the sort is stable, so nodes with equal lag stay shuffled
+    Collections.sort(laggingReplicas, new Comparator<List<RemoteReplicaInfo>>() {
+      @Override
+      public int compare(List<RemoteReplicaInfo> o1, List<RemoteReplicaInfo> o2) {
+        long lag1 = getLocalLagFromRemoteInBytes(o1);
+        long lag2 = getLocalLagFromRemoteInBytes(o2);
+        return lag1 > lag2 ? -1 : (lag1 == lag2 ? 0 : 1);
+      }
+    });
+    laggingNodesScheduled = laggingReplicas.size() > 0;
+    List<List<RemoteReplicaInfo>> scheduledReplicas = new ArrayList<List<RemoteReplicaInfo>>(laggingReplicas);
+    for (List<RemoteReplicaInfo> replicasToReplicatePerNode : caughtUpReplicas) {
+      DataNodeId remoteNode = replicasToReplicatePerNode.get(0).getReplicaId().getDataNodeId();
+      Integer skippedIterations = skippedIterationsForCaughtUpNodes.get(remoteNode);
+      if (skippedIterations == null) {
+        skippedIterations = 0;
+      }
+      if (!laggingNodesScheduled
+          || skippedIterations >= replicationConfig.replicationMaxSkippedIterationsForCaughtUpNode) {
+        scheduledReplicas.add(replicasToReplicatePerNode);
+        skippedIterationsForCaughtUpNodes.put(remoteNode, 0);
+      } else {
+        skippedIterationsForCaughtUpNodes.put(remoteNode, skippedIterations + 1);
+        replicationMetrics.replicationCaughtUpNodeSkipCount.inc();
+      }
+    }
+    return scheduledReplicas;
+  }
+
+  /**
+   * @param replicasToReplicatePerNode the remote replicas on a remote node.
+   * @return the total number of bytes that the local replicas lag behind the given remote replicas.
+   */
+  private long getLocalLagFromRemoteInBytes(List<RemoteReplicaInfo> replicasToReplicatePerNode) {
+    long localLagFromRemoteInBytes = 0;
+    for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+      localLagFromRemoteInBytes += remoteReplicaInfo.getLocalLagFromRemoteInBytes();
+    }
+    return localLagFromRemoteInBytes;
+  }
+
   /**
    * Gets all the metadata about messages from the remote replicas since last token. Checks the messages with the local
    * store and finds all the messages that are missing. For the messages that are not missing, updates the delete
@@ -281,6 +602,9 @@ class ReplicaThread implements Runnable {
         DataNodeId remoteNode = replicasToReplicatePerNode.get(0).getReplicaId().getDataNodeId();
         ReplicaMetadataResponse response =
             getReplicaMetadataResponse(replicasToReplicatePerNode, connectedChannel, remoteNode);
+        if (response.isHeldForWrites()) {
+          remoteWaitTimeInMs += response.getWaitTimeInMs();
+        }
         long startTimeInMs = SystemTime.getInstance().milliseconds();
         waitEnabled = !replicatingFromRemoteColo;
         for (int i = 0; i < response.getReplicaMetadataResponseInfoList().size(); i++) {
@@ -294,7 +618,13 @@ class ReplicaThread implements Runnable {
               logger.trace("Remote node: {} Thread name: {} Remote replica: {} Token from remote: {} Replica lag: {} ",
                   remoteNode, threadName, remoteReplicaInfo.getReplicaId(), replicaMetadataResponseInfo.getFindToken(),
                   replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
-              if (waitEnabled) {
+              remoteReplicaInfo.setLocalLagFromRemoteInBytes(replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
+              replicationMetrics.updateLocalLagFromRemote(remoteReplicaInfo.getReplicaId().getPartitionId(),
+                  replicaMetadataResponseInfo.getRemoteReplicaLagInBytes());
+              // if the remote server held the request waiting for new writes before responding, there is no need to
+              // wait here. Waiting is also skipped when there are lagging nodes in this iteration so that catching up
+              // is not delayed.
+              if (waitEnabled && !response.isHeldForWrites() && !laggingNodesScheduled) {
                 waitIfRequired(replicaMetadataResponseInfo, remoteNode, remoteReplicaInfo);
               }
               Set<StoreKey> missingStoreKeys =
@@ -345,10 +675,11 @@ class ReplicaThread implements Runnable {
    * @throws StoreException
    * @throws MessageFormatException
    * @throws ReplicationException
+   * @throws InterruptedException
    */
   protected void fixMissingStoreKeys(ConnectedChannel connectedChannel,
       List<RemoteReplicaInfo> replicasToReplicatePerNode, List<ExchangeMetadataResponse> exchangeMetadataResponseList)
-      throws IOException, StoreException, MessageFormatException, ReplicationException {
+      throws IOException, StoreException, MessageFormatException, ReplicationException, InterruptedException {
     long fixMissingStoreKeysStartTimeInMs = SystemTime.getInstance().milliseconds();
     try {
       if (exchangeMetadataResponseList.size() != replicasToReplicatePerNode.size()
@@ -361,7 +692,12 @@ class ReplicaThread implements Runnable {
       GetResponse getResponse =
           getMessagesForMissingKeys(connectedChannel, exchangeMetadataResponseList, replicasToReplicatePerNode,
               remoteNode);
-      writeMessagesToLocalStore(exchangeMetadataResponseList, getResponse, replicasToReplicatePerNode, remoteNode);
+      if (localWriter != null) {
+        localWriter.submit(new LocalWriteTask(exchangeMetadataResponseList, getResponse, replicasToReplicatePerNode,
+            remoteNode, getMessagesSizeInBytes(getResponse)));
+      } else {
+        writeMessagesToLocalStore(exchangeMetadataResponseList, getResponse, replicasToReplicatePerNode, remoteNode);
+      }
     } finally {
       long fixMissingStoreKeysTime = SystemTime.getInstance().milliseconds() - fixMissingStoreKeysStartTimeInMs;
       replicationMetrics
@@ -370,6 +706,20 @@ class ReplicaThread implements Runnable {
     }
   }
 
+  /**
+   * @param getResponse the response with the messages fetched from a remote node.
+   * @return the total size of the messages in the response.
+   */
+  private long getMessagesSizeInBytes(GetResponse getResponse) {
+    long sizeInBytes = 0;
+    for (PartitionResponseInfo partitionResponseInfo : getResponse.getPartitionResponseInfoList()) {
+      for (MessageInfo messageInfo : partitionResponseInfo.getMessageInfoList()) {
+        sizeInBytes += messageInfo.getSize();
+      }
+    }
+    return sizeInBytes;
+  }
+
   /**
    * Gets the replica metadata response for a list of remote replicas on a given remote data node
    * @param replicasToReplicatePerNode The list of remote replicas for a node
@@ -396,9 +746,9 @@ class ReplicaThread implements Runnable {
     }
 
     try {
+      long fetchSizeInBytes = getFetchSizeInBytes(replicasToReplicatePerNode, remoteNode);
       ReplicaMetadataRequest request = new ReplicaMetadataRequest(correlationIdGenerator.incrementAndGet(),
-          "replication-metadata-" + dataNodeId.getHostname(), replicaMetadataRequestInfoList,
-          replicationConfig.replicationFetchSizeInBytes);
+          "replication-metadata-" + dataNodeId.getHostname(), replicaMetadataRequestInfoList, fetchSizeInBytes);
       connectedChannel.send(request);
       ChannelOutput channelOutput = connectedChannel.receive();
       ByteBufferInputStream byteBufferInputStream =
@@ -573,11 +923,12 @@ class ReplicaThread implements Runnable {
    * @return The response that contains the missing messages
    * @throws ReplicationException
    * @throws IOException
+   * @throws InterruptedException
    */
   private GetResponse getMessagesForMissingKeys(ConnectedChannel connectedChannel,
       List<ExchangeMetadataResponse> exchangeMetadataResponseList, List<RemoteReplicaInfo> replicasToReplicatePerNode,
       DataNodeId remoteNode)
-      throws ReplicationException, IOException {
+      throws ReplicationException, IOException, InterruptedException {
     List<PartitionRequestInfo> partitionRequestInfoList = new ArrayList<PartitionRequestInfo>();
     for (int i = 0; i < exchangeMetadataResponseList.size(); i++) {
       ExchangeMetadataResponse exchangeMetadataResponse = exchangeMetadataResponseList.get(i);
@@ -595,14 +946,20 @@ class ReplicaThread implements Runnable {
         }
       }
     }
-    GetRequest getRequest =
-        new GetRequest(correlationIdGenerator.incrementAndGet(), "replication-fetch-" + dataNodeId.getHostname(),
-            MessageFormatFlags.All, partitionRequestInfoList, GetOptions.None);
+    GetRequest getRequest = new GetRequest(correlationIdGenerator.incrementAndGet(),
+        ReplicationManager.REPLICATION_FETCH_CLIENT_ID_PREFIX + dataNodeId.getHostname(), MessageFormatFlags.All,
+        partitionRequestInfoList, GetOptions.None,
+        replicatingFromRemoteColo && replicationConfig.replicationInterColoCompressionEnabled);
     long startTime = SystemTime.getInstance().milliseconds();
     try {
       connectedChannel.send(getRequest);
       ChannelOutput channelOutput = connectedChannel.receive();
-      GetResponse getResponse = GetResponse.readFrom(new DataInputStream(channelOutput.getInputStream()), clusterMap);
+      InputStream inputStream = channelOutput.getInputStream();
+      if (localWriter != null) {
+        // the messages are written after the connection is returned, so they need to be read off the connection now.
+        inputStream = new ByteBufferInputStream(inputStream, (int) channelOutput.getStreamSize());
+      }
+      GetResponse getResponse = GetResponse.readFrom(new DataInputStream(inputStream), clusterMap);
       long getRequestTime = SystemTime.getInstance().milliseconds() - startTime;
       replicationMetrics
           .updateGetRequestTime(getRequestTime, replicatingFromRemoteColo, replicatingOverSsl, datacenterName);
@@ -614,6 +971,7 @@ class ReplicaThread implements Runnable {
         throw new ReplicationException(
             " Get Request returned error when trying to get missing keys " + getResponse.getError());
       }
+      replicationThrottler.throttleFetch(remoteNode.getDatacenterName(), channelOutput.getStreamSize());
       return getResponse;
     } catch (IOException e) {
       responseHandler.onRequestResponseException(replicasToReplicatePerNode.get(0).getReplicaId(), e);
@@ -630,7 +988,7 @@ class ReplicaThread implements Runnable {
    */
   private void writeMessagesToLocalStore(List<ExchangeMetadataResponse> exchangeMetadataResponseList,
       GetResponse getResponse, List<RemoteReplicaInfo> replicasToReplicatePerNode, DataNodeId remoteNode)
-      throws IOException {
+      throws IOException, InterruptedException {
     int partitionResponseInfoIndex = 0;
     long totalBytesFixed = 0;
     long totalBlobsFixed = 0;
@@ -662,7 +1020,7 @@ class ReplicaThread implements Runnable {
               if (validateMessageStream) {
                 MessageSievingInputStream validMessageDetectionInputStream =
                     new MessageSievingInputStream(getResponse.getInputStream(), messageInfoList, storeKeyFactory,
-                        metricRegistry);
+                        metricRegistry, messageValidationExecutor);
                 if (validMessageDetectionInputStream.hasInvalidMessages()) {
                   replicationMetrics.incrementInvalidMessageError(partitionResponseInfo.getPartition());
                   logger.error("Out of " + (messageInfoList.size()) + " messages, " +
@@ -681,8 +1039,9 @@ class ReplicaThread implements Runnable {
                 remoteReplicaInfo.getLocalStore().put(writeset);
               }
 
+              long partitionBytesFixed = 0;
               for (MessageInfo messageInfo : messageInfoList) {
-                totalBytesFixed += messageInfo.getSize();
+                partitionBytesFixed += messageInfo.getSize();
                 logger.trace("Remote node: {} Thread name: {} Remote replica: {} Message replicated: {} Partition: {} "
                     + "Local mount path: {} Message size: {}", remoteNode, threadName, remoteReplicaInfo.getReplicaId(),
                     messageInfo.getStoreKey(), remoteReplicaInfo.getReplicaId().getPartitionId(),
@@ -692,8 +1051,14 @@ class ReplicaThread implements Runnable {
                       messageInfo.getStoreKey().getID(), BlobReplicaSourceType.REPAIRED);
                 }
               }
+              totalBytesFixed += partitionBytesFixed;
               totalBlobsFixed += messageInfoList.size();
-              remoteReplicaInfo.setToken(exchangeMetadataResponse.remoteToken);
+              replicationThrottler.throttleLocalWrite(remoteReplicaInfo.getLocalReplicaId().getMountPath(),
+                  partitionBytesFixed);
+              // keys repaired by key reconciliation do not come with a token
+              if (exchangeMetadataResponse.remoteToken != null) {
+                remoteReplicaInfo.setToken(exchangeMetadataResponse.remoteToken);
+              }
               logger.trace("Remote node: {} Thread name: {} Remote replica: {} Token after speaking to remote node: {}",
                   remoteNode, threadName, remoteReplicaInfo.getReplicaId(), exchangeMetadataResponse.remoteToken);
             } catch (StoreException e) {
@@ -717,11 +1082,351 @@ class ReplicaThread implements Runnable {
       }
     }
     long batchStoreWriteTime = SystemTime.getInstance().milliseconds() - startTime;
+    if (nodesInBootstrap.contains(remoteNode)) {
+      replicationMetrics.replicationBootstrapBytesRate.mark(totalBytesFixed);
+    }
     replicationMetrics
         .updateBatchStoreWriteTime(batchStoreWriteTime, totalBytesFixed, totalBlobsFixed, replicatingFromRemoteColo,
             replicatingOverSsl, datacenterName);
   }
 
+  /**
+   * Reconciles the keys of one of the local replicas with its remote replica on the given remote node if key
+   * reconciliation is enabled. Of the replicas that the local node has caught up with and whose last reconciliation is
+   * older than the reconciliation interval, the one whose reconciliation is most overdue is reconciled, so that a
+   * single reconciliation is added to the replication of a node per iteration.
+   * @param connectedChannel the connection to the remote node.
+   * @param replicasToReplicatePerNode the active remote replicas on the remote node.
+   * @param remoteNode the remote node.
+   * @throws IOException
+   * @throws StoreException
+   * @throws MessageFormatException
+   * @throws ReplicationException
+   * @throws InterruptedException
+   */
+  private void reconcileKeysIfDue(ConnectedChannel connectedChannel, List<RemoteReplicaInfo> replicasToReplicatePerNode,
+      DataNodeId remoteNode)
+      throws IOException, StoreException, MessageFormatException, ReplicationException, InterruptedException {
+    if (replicationConfig.replicationKeyReconciliationIntervalSeconds == 0) {
+      return;
+    }
+    long nowInMs = SystemTime.getInstance().milliseconds();
+    long intervalInMs = replicationConfig.replicationKeyReconciliationIntervalSeconds * 1000L;
+    RemoteReplicaInfo replicaToReconcile = null;
+    for (RemoteReplicaInfo remoteReplicaInfo : replicasToReplicatePerNode) {
+      long lastReconciliationTimeInMs = remoteReplicaInfo.getLastKeyReconciliationTimeInMs();
+      if (remoteReplicaInfo.getLocalLagFromRemoteInBytes() == 0
+          && nowInMs - lastReconciliationTimeInMs >= intervalInMs && (replicaToReconcile == null
+          || lastReconciliationTimeInMs < replicaToReconcile.getLastKeyReconciliationTimeInMs())) {
+        replicaToReconcile = remoteReplicaInfo;
+      }
+    }
+    if (replicaToReconcile == null) {
+      return;
+    }
+    // a failed reconciliation is retried after the interval rather than in the next iteration
+    replicaToReconcile.setLastKeyReconciliationTimeInMs(nowInMs);
+    try {
+      reconcileKeys(connectedChannel, replicaToReconcile, remoteNode);
+    } catch (IOException | StoreException | MessageFormatException | ReplicationException e) {
+      replicationMetrics.keyReconciliationErrorCount.inc();
+      throw e;
+    } finally {
+      replicationMetrics.keyReconciliationTime.update(SystemTime.getInstance().milliseconds() - nowInMs);
+    }
+  }
+
+  /**
+   * Fetches the keys that the local replica is missing from the remote replica and were missed by replication, e.g.
+   * because a token was persisted before the message it covered was, or a message was lost locally.
+   * <p/>
+   * The {@link KeySummary} of the remote replica is compared with the summary of the local replica to find the buckets
+   * in which the remote replica may have keys that the local replica does not. The remote replica is then sent a bloom
+   * filter of the local keys in some of those buckets and returns its keys in the buckets that are not in the filter.
+   * The keys that are missing locally are fetched like the keys found missing by exchanging metadata. Keys that are
+   * false positives of the filter are repaired by a later reconciliation, since the mismatched buckets to compare are
+   * picked at random.
+   * @param connectedChannel the connection to the remote node.
+   * @param remoteReplicaInfo the remote replica to reconcile the local replica with.
+   * @param remoteNode the remote node.
+   * @throws IOException
+   * @throws StoreException
+   * @throws MessageFormatException
+   * @throws ReplicationException
+   * @throws InterruptedException
+   */
+  void reconcileKeys(ConnectedChannel connectedChannel, RemoteReplicaInfo remoteReplicaInfo, DataNodeId remoteNode)
+      throws IOException, StoreException, MessageFormatException, ReplicationException, InterruptedException {
+    // the local replica needs to have written the messages fetched so far for its keys to be compared
+    awaitPendingLocalWrites(remoteNode);
+    int bucketCount = replicationConfig.replicationKeyReconciliationBucketCount;
+    PartitionId partitionId = remoteReplicaInfo.getReplicaId().getPartitionId();
+    Store localStore = remoteReplicaInfo.getLocalStore();
+    KeySummaryResponse keySummaryResponse = getKeySummaryResponse(connectedChannel,
+        new KeySummaryRequest(correlationIdGenerator.incrementAndGet(),
+            "replication-key-summary-" + dataNodeId.getHostname(), partitionId, bucketCount), remoteReplicaInfo);
+    List<Integer> mismatchedBuckets =
+        localStore.getKeySummary(bucketCount).getMismatchedBuckets(keySummaryResponse.getKeySummary());
+    replicationMetrics.keyReconciliationCount.inc();
+    replicationMetrics.keyReconciliationMismatchedBucketCount.inc(mismatchedBuckets.size());
+    logger.trace("Remote node: {} Thread name: {} Remote replica: {} Mismatched key summary buckets: {}", remoteNode,
+        threadName, remoteReplicaInfo.getReplicaId(), mismatchedBuckets);
+    if (mismatchedBuckets.isEmpty()) {
+      return;
+    }
+    if (mismatchedBuckets.size() > replicationConfig.replicationKeyReconciliationMaxBucketsPerPass) {
+      // buckets that cannot be repaired, e.g. ones with keys deleted remotely, must not keep the others from being
+      // compared
+      Collections.shuffle(mismatchedBuckets);
+      mismatchedBuckets = mismatchedBuckets.subList(0, replicationConfig.replicationKeyReconciliationMaxBucketsPerPass);
+    }
+    List<MessageInfo> localEntries =
+        localStore.getEntriesInBuckets(bucketCount, new HashSet<Integer>(mismatchedBuckets));
+    IFilter keyFilter =
+        FilterFactory.getFilter(Math.max(localEntries.size(), 1), Key_Filter_False_Positive_Probability);
+    KeySummaryResponse keysResponse;
+    try {
+      for (MessageInfo messageInfo : localEntries) {
+        keyFilter.add(ByteBuffer.wrap(messageInfo.getStoreKey().toBytes()));
+      }
+      keysResponse = getKeySummaryResponse(connectedChannel,
+          new KeySummaryRequest(correlationIdGenerator.incrementAndGet(),
+              "replication-key-summary-" + dataNodeId.getHostname(), partitionId, bucketCount, mismatchedBuckets,
+              keyFilter), remoteReplicaInfo);
+    } finally {
+      keyFilter.close();
+    }
+    Set<StoreKey> missingStoreKeys = localStore.findMissingKeys(new ArrayList<StoreKey>(keysResponse.getKeys()));
+    if (missingStoreKeys.isEmpty()) {
+      return;
+    }
+    logger.info("Remote node: {} Thread name: {} Remote replica: {} Repairing {} keys missed by replication",
+        remoteNode, threadName, remoteReplicaInfo.getReplicaId(), missingStoreKeys.size());
+    replicationMetrics.keyReconciliationRepairedKeyCount.inc(missingStoreKeys.size());
+    fixMissingStoreKeys(connectedChannel, Collections.singletonList(remoteReplicaInfo),
+        Collections.singletonList(new ExchangeMetadataResponse(missingStoreKeys, null)));
+  }
+
+  /**
+   * Sends a {@link KeySummaryRequest} to the remote node and reads its response.
+   * @param connectedChannel the connection to the remote node.
+   * @param request the request to send.
+   * @param remoteReplicaInfo the remote replica the request is for.
+   * @return the response of the remote node.
+   * @throws IOException
+   * @throws ReplicationException if the remote node returned an error.
+   */
+  private KeySummaryResponse getKeySummaryResponse(ConnectedChannel connectedChannel, KeySummaryRequest request,
+      RemoteReplicaInfo remoteReplicaInfo)
+      throws IOException, ReplicationException {
+    KeySummaryResponse response;
+    try {
+      connectedChannel.send(request);
+      ChannelOutput channelOutput = connectedChannel.receive();
+      response = KeySummaryResponse.readFrom(new DataInputStream(channelOutput.getInputStream()), clusterMap);
+    } catch (IOException e) {
+      responseHandler.onRequestResponseException(remoteReplicaInfo.getReplicaId(), e);
+      throw e;
+    }
+    responseHandler.onRequestResponseError(remoteReplicaInfo.getReplicaId(), response.getError());
+    if (response.getError() != ServerErrorCode.No_Error || (request.isKeySummaryRequested()
+        && response.getKeySummary() == null)) {
+      throw new ReplicationException("Key summary request " + request + " returned error " + response.getError());
+    }
+    return response;
+  }
+
+  /**
+   * Waits until the messages fetched from the given remote node have been written to the local stores, so that the
+   * missing keys computed for the remote node account for them. Returns immediately if local writes are not pipelined.
+   * @param remoteNode the remote node.
+   * @throws InterruptedException if the wait is interrupted.
+   */
+  private void awaitPendingLocalWrites(DataNodeId remoteNode)
+      throws InterruptedException {
+    if (localWriter != null) {
+      long startTimeInMs = SystemTime.getInstance().milliseconds();
+      synchronized (nodesWithPendingLocalWrites) {
+        while (nodesWithPendingLocalWrites.contains(remoteNode)) {
+          nodesWithPendingLocalWrites.wait();
+        }
+      }
+      replicationMetrics.pendingLocalWriteWaitTime.update(SystemTime.getInstance().milliseconds() - startTimeInMs);
+    }
+  }
+
+  /**
+   * Throws the failure to write the messages last fetched from the given remote node to the local stores, if writing
+   * them failed, so that it is handled like a failure to write them on the replica thread itself. The failure is
+   * reported to the response handler against the given replica of the node.
+   * @param remoteNode the remote node.
+   * @param remoteReplicaInfo an active replica on the remote node.
+   * @throws ReplicationException if writing the messages failed.
+   */
+  private void throwIfLocalWriteFailed(DataNodeId remoteNode, RemoteReplicaInfo remoteReplicaInfo)
+      throws ReplicationException {
+    Exception failure;
+    synchronized (nodesWithPendingLocalWrites) {
+      failure = localWriteFailures.remove(remoteNode);
+    }
+    if (failure != null) {
+      responseHandler.onRequestResponseException(remoteReplicaInfo.getReplicaId(), failure);
+      throw new ReplicationException("Writing the messages fetched from " + remoteNode + " to the local stores failed",
+          failure);
+    }
+  }
+
+  /**
+   * A batch of messages fetched from a remote node that is to be written to the local stores.
+   */
+  private class LocalWriteTask implements Runnable {
+    private final List<ExchangeMetadataResponse> exchangeMetadataResponseList;
+    private final GetResponse getResponse;
+    private final List<RemoteReplicaInfo> replicasToReplicatePerNode;
+    private final DataNodeId remoteNode;
+    private final long sizeInBytes;
+    private long submitTimeInMs;
+
+    LocalWriteTask(List<ExchangeMetadataResponse> exchangeMetadataResponseList, GetResponse getResponse,
+        List<RemoteReplicaInfo> replicasToReplicatePerNode, DataNodeId remoteNode, long sizeInBytes) {
+      this.exchangeMetadataResponseList = exchangeMetadataResponseList;
+      this.getResponse = getResponse;
+      this.replicasToReplicatePerNode = replicasToReplicatePerNode;
+      this.remoteNode = remoteNode;
+      this.sizeInBytes = sizeInBytes;
+    }
+
+    /**
+     * Writes the messages to the local stores. A failure is logged and left for the replica thread to handle the next
+     * time it replicates from the remote node.
+     */
+    @Override
+    public void run() {
+      replicationMetrics.localWriteQueueTime.update(SystemTime.getInstance().milliseconds() - submitTimeInMs);
+      Exception failure = null;
+      try {
+        writeMessagesToLocalStore(exchangeMetadataResponseList, getResponse, replicasToReplicatePerNode, remoteNode);
+      } catch (Exception e) {
+        logger.error("Remote node: " + remoteNode + " Thread name: " + threadName +
+            " Remote replicas: " + replicasToReplicatePerNode + " Error while writing to the local stores ", e);
+        failure = e;
+      } finally {
+        synchronized (nodesWithPendingLocalWrites) {
+          if (failure != null) {
+            localWriteFailures.put(remoteNode, failure);
+          }
+          nodesWithPendingLocalWrites.remove(remoteNode);
+          nodesWithPendingLocalWrites.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the messages fetched by the replica thread to the local stores on a separate thread, so that writing to
+   * the local stores overlaps with exchanging metadata with and fetching messages from the next remote node.
+   */
+  private class LocalWriter implements Runnable {
+    // the queued tasks and their total size, guarded by the queue
+    private final Queue<LocalWriteTask> queue = new ArrayDeque<LocalWriteTask>();
+    private long queuedBytes = 0;
+    private final int maxQueuedTasks;
+    private final long maxQueuedBytes;
+    private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    LocalWriter(int maxQueuedTasks, long maxQueuedBytes) {
+      this.maxQueuedTasks = maxQueuedTasks;
+      this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Queues a batch of messages to be written to the local stores. Blocks while the queue holds the max number of
+     * tasks or has no room for the bytes of the task. A task that is larger than the queue is queued once the queue is
+     * empty.
+     * @param task the {@link LocalWriteTask} to queue.
+     * @throws InterruptedException if the wait for space in the queue is interrupted.
+     */
+    void submit(LocalWriteTask task)
+        throws InterruptedException {
+      synchronized (nodesWithPendingLocalWrites) {
+        nodesWithPendingLocalWrites.add(task.remoteNode);
+      }
+      long startTimeInMs = SystemTime.getInstance().milliseconds();
+      task.submitTimeInMs = startTimeInMs;
+      try {
+        synchronized (queue) {
+          while (queue.size() >= maxQueuedTasks || (!queue.isEmpty()
+              && queuedBytes + task.sizeInBytes > maxQueuedBytes)) {
+            queue.wait();
+          }
+          queue.add(task);
+          queuedBytes += task.sizeInBytes;
+          queue.notifyAll();
+        }
+      } catch (InterruptedException e) {
+        synchronized (nodesWithPendingLocalWrites) {
+          nodesWithPendingLocalWrites.remove(task.remoteNode);
+          nodesWithPendingLocalWrites.notifyAll();
+        }
+        throw e;
+      }
+      replicationMetrics.localWriteSubmitWaitTime.update(SystemTime.getInstance().milliseconds() - startTimeInMs);
+    }
+
+    @Override
+    public void run() {
+      try {
+        LocalWriteTask task;
+        while ((task = take()) != null) {
+          // the bytes of the task are released once it is written so that the queue bounds the messages in memory
+          try {
+            task.run();
+          } finally {
+            synchronized (queue) {
+              queuedBytes -= task.sizeInBytes;
+              queue.notifyAll();
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        logger.error("Thread name: " + threadName + " Local writer interrupted", e);
+      } finally {
+        shutdownLatch.countDown();
+      }
+    }
+
+    /**
+     * Takes the next task off the queue, waiting for one while the local writer is running.
+     * @return the next task, or null if the local writer is shut down and the queue is empty.
+     * @throws InterruptedException if the wait for a task is interrupted.
+     */
+    private LocalWriteTask take()
+        throws InterruptedException {
+      synchronized (queue) {
+        while (queue.isEmpty()) {
+          if (!running) {
+            return null;
+          }
+          queue.wait(LOCAL_WRITE_POLL_TIMEOUT_MS);
+        }
+        LocalWriteTask task = queue.poll();
+        queue.notifyAll();
+        return task;
+      }
+    }
+
+    /**
+     * Writes the queued messages and stops the local writer.
+     * @throws InterruptedException if the wait for the local writer to stop is interrupted.
+     */
+    void shutdown()
+        throws InterruptedException {
+      running = false;
+      shutdownLatch.await();
+    }
+  }
+
   class ExchangeMetadataResponse {
     public final Set<StoreKey> missingStoreKeys;
     public final FindToken remoteToken;
@@ -746,7 +1451,10 @@ class ReplicaThread implements Runnable {
 
   public void shutdown()
       throws InterruptedException {
-    running = false;
+    synchronized (remoteNodesLock) {
+      running = false;
+      remoteNodesLock.notifyAll();
+    }
     shutdownLatch.await();
   }
 }
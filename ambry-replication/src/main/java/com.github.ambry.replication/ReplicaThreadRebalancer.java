@@ -0,0 +1,198 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.codahale.metrics.Gauge;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.utils.Time;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Periodically rebalances the remote nodes of each datacenter between the replica threads that replicate from it.
+ * <p/>
+ * Every run measures the time each replica thread spent replicating from each of its remote nodes since the previous
+ * run. If the busiest thread of a datacenter spent more than
+ * {@link ReplicationConfig#replicationThreadRebalanceMinImbalancePercent} of the interval longer replicating than the
+ * idlest one, the node of the busiest thread whose replication time is closest to half the difference is moved to the
+ * idlest thread, which brings the two threads closest to each other. Nodes that the local node lags behind take longer
+ * to replicate from and so count as more load; among nodes with the same replication time, the most lagging one is
+ * moved. At most one node per datacenter is moved per run, so that threads converge without oscillating.
+ * <p/>
+ * The fraction of each interval that each replica thread spent replicating is reported as its utilization.
+ */
+class ReplicaThreadRebalancer implements Runnable {
+  private final Map<String, ? extends List<ReplicaThread>> replicaThreadPools;
+  private final ReplicationConfig replicationConfig;
+  private final ReplicationMetrics replicationMetrics;
+  private final Time time;
+  private final Map<ReplicaThread, Double> utilizations = new ConcurrentHashMap<ReplicaThread, Double>();
+  private final Logger logger = LoggerFactory.getLogger(getClass());
+  private long lastRunTimeInMs;
+
+  /**
+   * Create a ReplicaThreadRebalancer.
+   * @param replicaThreadPools the replica threads of each datacenter. Runs synchronize on the map, so changes to the
+   *                           replica threads need to be made while holding its lock.
+   * @param replicationConfig the {@link ReplicationConfig} to use.
+   * @param replicationMetrics the {@link ReplicationMetrics} to report moves and utilizations in.
+   * @param time the {@link Time} instance to use.
+   */
+  ReplicaThreadRebalancer(Map<String, ? extends List<ReplicaThread>> replicaThreadPools,
+      ReplicationConfig replicationConfig, ReplicationMetrics replicationMetrics, Time time) {
+    this.replicaThreadPools = replicaThreadPools;
+    this.replicationConfig = replicationConfig;
+    this.replicationMetrics = replicationMetrics;
+    this.time = time;
+    this.lastRunTimeInMs = time.milliseconds();
+  }
+
+  /**
+   * Starts reporting the utilization of a replica thread.
+   * @param replicaThread the replica thread.
+   */
+  void addReplicaThread(final ReplicaThread replicaThread) {
+    utilizations.put(replicaThread, 0.0);
+    replicationMetrics.addReplicaThreadUtilizationGauge(replicaThread.getName(), new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        Double utilization = utilizations.get(replicaThread);
+        return utilization == null ? 0.0 : utilization;
+      }
+    });
+  }
+
+  /**
+   * Stops reporting the utilization of a replica thread that was shut down.
+   * @param replicaThread the replica thread.
+   */
+  void removeReplicaThread(ReplicaThread replicaThread) {
+    utilizations.remove(replicaThread);
+    replicationMetrics.removeReplicaThreadUtilizationGauge(replicaThread.getName());
+  }
+
+  /**
+   * @param replicaThread a replica thread.
+   * @return the fraction of the last rebalance interval that the replica thread spent replicating.
+   */
+  double getUtilization(ReplicaThread replicaThread) {
+    Double utilization = utilizations.get(replicaThread);
+    return utilization == null ? 0.0 : utilization;
+  }
+
+  @Override
+  public void run() {
+    try {
+      long nowInMs = time.milliseconds();
+      long intervalInMs = Math.max(nowInMs - lastRunTimeInMs, 1);
+      lastRunTimeInMs = nowInMs;
+      synchronized (replicaThreadPools) {
+        for (List<ReplicaThread> replicaThreads : replicaThreadPools.values()) {
+          rebalance(replicaThreads, intervalInMs);
+        }
+      }
+    } catch (Exception e) {
+      logger.error("Error while rebalancing replica threads", e);
+    }
+  }
+
+  /**
+   * Measures the replica threads of a datacenter and moves a remote node from the busiest to the idlest thread if they
+   * are imbalanced.
+   * @param replicaThreads the replica threads of the datacenter.
+   * @param intervalInMs the time since the threads were last measured.
+   */
+  void rebalance(List<ReplicaThread> replicaThreads, long intervalInMs) {
+    ReplicaThread busiestThread = null;
+    ReplicaThread idlestThread = null;
+    Map<DataNodeId, Long> busiestThreadTimesInMs = null;
+    long busiestThreadTimeInMs = -1;
+    long idlestThreadTimeInMs = Long.MAX_VALUE;
+    for (ReplicaThread replicaThread : replicaThreads) {
+      Map<DataNodeId, Long> replicationTimesInMs = replicaThread.drainReplicationTimesInMs();
+      long threadTimeInMs = 0;
+      for (Long replicationTimeInMs : replicationTimesInMs.values()) {
+        threadTimeInMs += replicationTimeInMs;
+      }
+      utilizations.put(replicaThread, Math.min(1.0, (double) threadTimeInMs / intervalInMs));
+      if (!replicaThread.isThreadUp()) {
+        continue;
+      }
+      if (threadTimeInMs > busiestThreadTimeInMs) {
+        busiestThread = replicaThread;
+        busiestThreadTimesInMs = replicationTimesInMs;
+        busiestThreadTimeInMs = threadTimeInMs;
+      }
+      if (threadTimeInMs < idlestThreadTimeInMs) {
+        idlestThread = replicaThread;
+        idlestThreadTimeInMs = threadTimeInMs;
+      }
+    }
+    if (busiestThread == null || busiestThread == idlestThread) {
+      return;
+    }
+    long imbalanceInMs = busiestThreadTimeInMs - idlestThreadTimeInMs;
+    if (imbalanceInMs * 100 <= intervalInMs * replicationConfig.replicationThreadRebalanceMinImbalancePercent) {
+      return;
+    }
+    DataNodeId remoteNode = pickNodeToMove(busiestThread, busiestThreadTimesInMs, imbalanceInMs);
+    if (remoteNode != null) {
+      logger.info("Moving remote node {} from replica thread {} to replica thread {}. Replication times in ms: {}, {}",
+          remoteNode, busiestThread.getName(), idlestThread.getName(), busiestThreadTimeInMs, idlestThreadTimeInMs);
+      busiestThread.moveRemoteNode(remoteNode, idlestThread);
+      replicationMetrics.replicaThreadRebalanceCount.inc();
+    }
+  }
+
+  /**
+   * Picks the remote node of a replica thread to move to a thread that spent less time replicating.
+   * @param replicaThread the replica thread to move a node from.
+   * @param replicationTimesInMs the time the thread spent replicating from each of its nodes.
+   * @param imbalanceInMs the difference between the time the two threads spent replicating.
+   * @return the remote node to move, or {@code null} if no move would reduce the imbalance.
+   */
+  static DataNodeId pickNodeToMove(ReplicaThread replicaThread, Map<DataNodeId, Long> replicationTimesInMs,
+      long imbalanceInMs) {
+    Set<DataNodeId> remoteNodes = replicaThread.getRemoteNodes();
+    if (remoteNodes.size() < 2) {
+      return null;
+    }
+    DataNodeId nodeToMove = null;
+    long nodeToMoveDistanceInMs = Long.MAX_VALUE;
+    long nodeToMoveLagInBytes = -1;
+    for (Map.Entry<DataNodeId, Long> replicationTimeInMs : replicationTimesInMs.entrySet()) {
+      DataNodeId remoteNode = replicationTimeInMs.getKey();
+      long timeInMs = replicationTimeInMs.getValue();
+      // moving a node that took as long as the imbalance or longer would leave the threads at least as imbalanced
+      if (timeInMs <= 0 || timeInMs >= imbalanceInMs || !remoteNodes.contains(remoteNode)) {
+        continue;
+      }
+      long distanceInMs = Math.abs(2 * timeInMs - imbalanceInMs);
+      long lagInBytes = replicaThread.getLocalLagFromRemoteInBytes(remoteNode);
+      if (distanceInMs < nodeToMoveDistanceInMs || (distanceInMs == nodeToMoveDistanceInMs
+          && lagInBytes > nodeToMoveLagInBytes)) {
+        nodeToMove = remoteNode;
+        nodeToMoveDistanceInMs = distanceInMs;
+        nodeToMoveLagInBytes = lagInBytes;
+      }
+    }
+    return nodeToMove;
+  }
+}
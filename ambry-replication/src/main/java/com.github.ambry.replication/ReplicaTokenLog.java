@@ -0,0 +1,320 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.store.FindToken;
+import com.github.ambry.store.FindTokenFactory;
+import com.github.ambry.utils.CrcInputStream;
+import com.github.ambry.utils.CrcOutputStream;
+import com.github.ambry.utils.Utils;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An append only log of the replica tokens of the partitions on a mount path. It complements the replica token file,
+ * which holds the tokens of all the remote replicas: only the tokens that changed since they were last persisted are
+ * appended, so tokens can be persisted often at a small cost. The log is emptied whenever the replica token file is
+ * rewritten.
+ * <p/>
+ * Every remote replica is identified in the log by an id that is assigned the first time one of its tokens is
+ * appended, with a definition record that maps the id to the partition, host, path and port of the replica. Token
+ * records only refer to the id. Every record is followed by its own CRC, so a torn write at the tail of the log after
+ * a crash only loses the records in that write. What an append that failed leaves at the tail of the log is cut off
+ * before the next append, since the records appended after it could not be read back otherwise.
+ * <p/>
+ * This class is not thread safe.
+ */
+class ReplicaTokenLog {
+  static final String FILE_NAME_SUFFIX = ".log";
+  private static final byte DEFINITION_RECORD = 0;
+  private static final byte TOKEN_RECORD = 1;
+  private static final Logger logger = LoggerFactory.getLogger(ReplicaTokenLog.class);
+
+  private final File file;
+  private final Map<RemoteReplicaInfo, Integer> remoteReplicaIds = new HashMap<RemoteReplicaInfo, Integer>();
+  private final Map<RemoteReplicaInfo, FindToken> persistedTokens = new HashMap<RemoteReplicaInfo, FindToken>();
+  private FileOutputStream fileStream = null;
+  // the size of the log up to the end of the last append that was synced to disk
+  private long syncedSizeInBytes;
+
+  /**
+   * Create a ReplicaTokenLog.
+   * @param file the file of the log.
+   */
+  ReplicaTokenLog(File file) {
+    this.file = file;
+    syncedSizeInBytes = file.length();
+  }
+
+  /**
+   * Appends the tokens to persist of the given remote replicas that changed since they were last persisted and syncs
+   * the log to disk.
+   * @param partitionInfos the partitions whose remote replica tokens need to be persisted.
+   * @return the number of tokens appended.
+   * @throws IOException if the tokens could not be appended.
+   */
+  int append(List<PartitionInfo> partitionInfos)
+      throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    List<RemoteReplicaInfo> appendedReplicas = new ArrayList<RemoteReplicaInfo>();
+    List<FindToken> appendedTokens = new ArrayList<FindToken>();
+    Map<RemoteReplicaInfo, Integer> newRemoteReplicaIds = new HashMap<RemoteReplicaInfo, Integer>();
+    for (PartitionInfo info : partitionInfos) {
+      for (RemoteReplicaInfo remoteReplica : info.getRemoteReplicaInfos()) {
+        FindToken tokenToPersist = remoteReplica.getTokenToPersist();
+        if (tokenToPersist != null && tokenToPersist != persistedTokens.get(remoteReplica)) {
+          Integer remoteReplicaId = remoteReplicaIds.get(remoteReplica);
+          if (remoteReplicaId == null) {
+            remoteReplicaId = remoteReplicaIds.size() + newRemoteReplicaIds.size();
+            newRemoteReplicaIds.put(remoteReplica, remoteReplicaId);
+            writeRecord(records, DEFINITION_RECORD, remoteReplicaId, info.getPartitionId(), remoteReplica, null);
+          }
+          writeRecord(records, TOKEN_RECORD, remoteReplicaId, info.getPartitionId(), remoteReplica, tokenToPersist);
+          appendedReplicas.add(remoteReplica);
+          appendedTokens.add(tokenToPersist);
+        }
+      }
+    }
+    if (records.size() > 0) {
+      if (fileStream == null) {
+        truncate(syncedSizeInBytes);
+        fileStream = new FileOutputStream(file, true);
+      }
+      try {
+        fileStream.write(records.toByteArray());
+        fileStream.getChannel().force(true);
+      } catch (IOException e) {
+        // the part of the records that made it to the file is cut off when the log is reopened on the next append.
+        try {
+          close();
+        } catch (IOException closeException) {
+          logger.error("Could not close replica token log " + file.getAbsolutePath(), closeException);
+          fileStream = null;
+        }
+        throw e;
+      }
+      syncedSizeInBytes += records.size();
+      // ids and tokens are only recorded once they are on disk.
+      remoteReplicaIds.putAll(newRemoteReplicaIds);
+      for (int i = 0; i < appendedReplicas.size(); i++) {
+        persistedTokens.put(appendedReplicas.get(i), appendedTokens.get(i));
+      }
+    }
+    for (PartitionInfo info : partitionInfos) {
+      for (RemoteReplicaInfo remoteReplica : info.getRemoteReplicaInfos()) {
+        remoteReplica.onTokenPersisted();
+      }
+    }
+    return appendedReplicas.size();
+  }
+
+  /**
+   * Records that a token of a remote replica was persisted elsewhere, i.e. in the replica token file, so that it is
+   * not appended again.
+   * @param remoteReplica the remote replica.
+   * @param token the token that was persisted.
+   */
+  void onTokenPersisted(RemoteReplicaInfo remoteReplica, FindToken token) {
+    persistedTokens.put(remoteReplica, token);
+  }
+
+  /**
+   * @return the size of the log in bytes.
+   */
+  long sizeInBytes() {
+    return file.length();
+  }
+
+  /**
+   * Empties the log. To be called after all the tokens in it have been persisted in the replica token file.
+   * @throws IOException if the log could not be deleted.
+   */
+  void clear()
+      throws IOException {
+    close();
+    remoteReplicaIds.clear();
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not delete replica token log " + file.getAbsolutePath());
+    }
+    syncedSizeInBytes = 0;
+  }
+
+  /**
+   * Closes the log file.
+   * @throws IOException if the file could not be closed.
+   */
+  void close()
+      throws IOException {
+    if (fileStream != null) {
+      fileStream.close();
+      fileStream = null;
+    }
+  }
+
+  /**
+   * Truncates the log file to the given size if it is larger.
+   * @param sizeInBytes the size to truncate the file to.
+   * @throws IOException if the file could not be truncated.
+   */
+  private void truncate(long sizeInBytes)
+      throws IOException {
+    if (file.length() > sizeInBytes) {
+      logger.warn("Truncating replica token log {} from {} to {} bytes", file, file.length(), sizeInBytes);
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        randomAccessFile.setLength(sizeInBytes);
+      } finally {
+        randomAccessFile.close();
+      }
+    }
+  }
+
+  /**
+   * Writes a record to the given stream.
+   * @param records the stream to write to.
+   * @param recordType the type of the record.
+   * @param remoteReplicaId the id of the remote replica in the log.
+   * @param partitionId the partition of the remote replica.
+   * @param remoteReplica the remote replica.
+   * @param token the token to write in a token record.
+   * @throws IOException
+   */
+  private void writeRecord(ByteArrayOutputStream records, byte recordType, int remoteReplicaId,
+      PartitionId partitionId, RemoteReplicaInfo remoteReplica, FindToken token)
+      throws IOException {
+    CrcOutputStream crc = new CrcOutputStream(records);
+    DataOutputStream writer = new DataOutputStream(crc);
+    writer.writeByte(recordType);
+    writer.writeInt(remoteReplicaId);
+    if (recordType == DEFINITION_RECORD) {
+      byte[] hostname = remoteReplica.getReplicaId().getDataNodeId().getHostname().getBytes();
+      byte[] replicaPath = remoteReplica.getReplicaId().getReplicaPath().getBytes();
+      writer.write(partitionId.getBytes());
+      writer.writeInt(hostname.length);
+      writer.write(hostname);
+      writer.writeInt(replicaPath.length);
+      writer.write(replicaPath);
+      writer.writeInt(remoteReplica.getReplicaId().getDataNodeId().getPort());
+    } else {
+      writer.writeLong(remoteReplica.getTotalBytesReadFromLocalStore());
+      writer.write(token.toBytes());
+    }
+    new DataOutputStream(records).writeLong(crc.getValue());
+  }
+
+  /**
+   * Reads the tokens in a replica token log, in the order they were appended. Reading stops at the first record that
+   * is incomplete or fails its CRC check.
+   * @param file the file of the log.
+   * @param clusterMap the {@link ClusterMap} to read partitions with.
+   * @param factory the {@link FindTokenFactory} to read tokens with.
+   * @return the tokens in the log.
+   * @throws IOException if the log could not be read.
+   */
+  static List<Entry> read(File file, ClusterMap clusterMap, FindTokenFactory factory)
+      throws IOException {
+    List<Entry> entries = new ArrayList<Entry>();
+    Map<Integer, Entry> definitions = new HashMap<Integer, Entry>();
+    BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+    try {
+      while (true) {
+        CrcInputStream crc = new CrcInputStream(inputStream);
+        DataInputStream reader = new DataInputStream(crc);
+        Entry entry;
+        try {
+          byte recordType = reader.readByte();
+          int remoteReplicaId = reader.readInt();
+          if (recordType == DEFINITION_RECORD) {
+            PartitionId partitionId = clusterMap.getPartitionIdFromStream(reader);
+            String hostname = Utils.readIntString(reader);
+            String replicaPath = Utils.readIntString(reader);
+            int port = reader.readInt();
+            entry = new Entry(partitionId, hostname, replicaPath, port, 0, null);
+          } else if (recordType == TOKEN_RECORD) {
+            Entry definition = definitions.get(remoteReplicaId);
+            if (definition == null) {
+              logger.error("Token for undefined remote replica {} in replica token log {}", remoteReplicaId, file);
+              break;
+            }
+            long totalBytesReadFromLocalStore = reader.readLong();
+            FindToken token = factory.getFindToken(reader);
+            entry = new Entry(definition.partitionId, definition.hostname, definition.replicaPath, definition.port,
+                totalBytesReadFromLocalStore, token);
+          } else {
+            logger.error("Unknown record type {} in replica token log {}", recordType, file);
+            break;
+          }
+          long computedCrc = crc.getValue();
+          if (computedCrc != new DataInputStream(inputStream).readLong()) {
+            logger.warn("Crc mismatch in replica token log {}, ignoring the rest of the log", file);
+            break;
+          }
+          if (recordType == DEFINITION_RECORD) {
+            definitions.put(remoteReplicaId, entry);
+          } else {
+            entries.add(entry);
+          }
+        } catch (EOFException e) {
+          // the end of the log, or a record that was being appended when the node went down.
+          break;
+        } catch (IOException e) {
+          logger.warn("Unreadable record in replica token log " + file + ", ignoring the rest of the log", e);
+          break;
+        }
+      }
+    } finally {
+      inputStream.close();
+    }
+    return entries;
+  }
+
+  /**
+   * A token read from a replica token log along with the remote replica that it belongs to.
+   */
+  static class Entry {
+    final PartitionId partitionId;
+    final String hostname;
+    final String replicaPath;
+    final int port;
+    final long totalBytesReadFromLocalStore;
+    final FindToken token;
+
+    Entry(PartitionId partitionId, String hostname, String replicaPath, int port, long totalBytesReadFromLocalStore,
+        FindToken token) {
+      this.partitionId = partitionId;
+      this.hostname = hostname;
+      this.replicaPath = replicaPath;
+      this.port = port;
+      this.totalBytesReadFromLocalStore = totalBytesReadFromLocalStore;
+      this.token = token;
+    }
+  }
+}
@@ -13,8 +13,10 @@
  */
 package com.github.ambry.replication;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.ClusterMapChangeListener;
 import com.github.ambry.clustermap.DataNodeId;
 import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.ReplicaId;
@@ -46,10 +48,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -73,6 +81,10 @@ final class RemoteReplicaInfo {
   private FindToken tokenSafeToPersist = null;
   private final Store localStore;
   private long totalBytesReadFromLocalStore;
+  // The number of bytes that the local replica lags behind the remote replica as last reported by the remote node
+  private volatile long localLagFromRemoteInBytes = 0;
+  // The time at which the keys of the local replica were last reconciled with the remote replica
+  private volatile long lastKeyReconciliationTimeInMs;
   private Time time;
   private final Port port;
 
@@ -85,6 +97,7 @@ final class RemoteReplicaInfo {
     this.time = time;
     this.port = port;
     this.tokenPersistIntervalInMs = tokenPersistIntervalInMs;
+    this.lastKeyReconciliationTimeInMs = time.milliseconds();
     initializeTokens(token);
   }
 
@@ -126,6 +139,22 @@ final class RemoteReplicaInfo {
     return this.totalBytesReadFromLocalStore;
   }
 
+  public void setLocalLagFromRemoteInBytes(long localLagFromRemoteInBytes) {
+    this.localLagFromRemoteInBytes = localLagFromRemoteInBytes;
+  }
+
+  public long getLocalLagFromRemoteInBytes() {
+    return localLagFromRemoteInBytes;
+  }
+
+  public void setLastKeyReconciliationTimeInMs(long lastKeyReconciliationTimeInMs) {
+    this.lastKeyReconciliationTimeInMs = lastKeyReconciliationTimeInMs;
+  }
+
+  public long getLastKeyReconciliationTimeInMs() {
+    return lastKeyReconciliationTimeInMs;
+  }
+
   public void setToken(FindToken token) {
     // reference assignment is atomic in java but we want to be completely safe. performance is
     // not important here
@@ -204,7 +233,8 @@ final class PartitionInfo {
 
   public PartitionInfo(List<RemoteReplicaInfo> remoteReplicas, PartitionId partitionId, Store store,
       ReplicaId localReplicaId) {
-    this.remoteReplicas = remoteReplicas;
+    // replicas that are added to the cluster map while replicating are appended to the list
+    this.remoteReplicas = new CopyOnWriteArrayList<RemoteReplicaInfo>(remoteReplicas);
     this.partitionId = partitionId;
     this.store = store;
     this.localReplicaId = localReplicaId;
@@ -218,6 +248,10 @@ final class PartitionInfo {
     return remoteReplicas;
   }
 
+  public void addRemoteReplicaInfo(RemoteReplicaInfo remoteReplicaInfo) {
+    remoteReplicas.add(remoteReplicaInfo);
+  }
+
   public Store getStore() {
     return store;
   }
@@ -259,6 +293,17 @@ public final class ReplicationManager {
   private final ArrayList<String> sslEnabledDatacenters;
   private final Map<String, ArrayList<ReplicaThread>> replicaThreadPools;
   private final Map<String, Integer> numberOfReplicaThreads;
+  private final LocalWriteNotifier localWriteNotifier;
+  private final ReplicationThrottler replicationThrottler;
+  private final Map<String, ReplicaTokenLog> replicaTokenLogs;
+  private final ExecutorService messageValidationExecutor;
+  private final ReplicaThreadRebalancer replicaThreadRebalancer;
+  private final long tokenPersistIntervalInMs;
+
+  /**
+   * The prefix of the client id of the requests that replica threads fetch messages with.
+   */
+  public static final String REPLICATION_FETCH_CLIENT_ID_PREFIX = "replication-fetch-";
 
   private static final String replicaTokenFileName = "replicaTokens";
   private static final short Crc_Size = 8;
@@ -290,6 +335,19 @@ public final class ReplicationManager {
       this.dataNodeRemoteReplicaInfosPerDC = new HashMap<String, DataNodeRemoteReplicaInfos>();
       this.sslEnabledDatacenters = Utils.splitString(sslConfig.sslEnabledDatacenters, ",");
       this.numberOfReplicaThreads = new HashMap<String, Integer>();
+      this.localWriteNotifier = new LocalWriteNotifier(replicationConfig.replicationMetadataRequestMaxConcurrentWaits,
+          SystemTime.getInstance());
+      replicationMetrics.addReplicaMetadataRequestWaitersGauge(new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return localWriteNotifier.getNumWaiters();
+        }
+      });
+      // We need to ensure that a replica token gets persisted only after the corresponding data in the
+      // store gets flushed to disk. We use the store flush interval multiplied by a constant factor
+      // to determine the token flush interval
+      this.tokenPersistIntervalInMs =
+          storeConfig.storeDataFlushIntervalSeconds * SystemTime.MsPerSec * Replication_Delay_Multiplier;
 
       // initialize all partitions
       for (ReplicaId replicaId : replicaIds) {
@@ -297,13 +355,9 @@ public final class ReplicationManager {
         if (peerReplicas != null) {
           List<RemoteReplicaInfo> remoteReplicas = new ArrayList<RemoteReplicaInfo>(peerReplicas.size());
           for (ReplicaId remoteReplica : peerReplicas) {
-            // We need to ensure that a replica token gets persisted only after the corresponding data in the
-            // store gets flushed to disk. We use the store flush interval multiplied by a constant factor
-            // to determine the token flush interval
             RemoteReplicaInfo remoteReplicaInfo =
                 new RemoteReplicaInfo(remoteReplica, replicaId, storeManager.getStore(replicaId.getPartitionId()),
-                    factory.getNewFindToken(), storeConfig.storeDataFlushIntervalSeconds *
-                    SystemTime.MsPerSec * Replication_Delay_Multiplier, SystemTime.getInstance(),
+                    factory.getNewFindToken(), tokenPersistIntervalInMs, SystemTime.getInstance(),
                     getPortForReplica(remoteReplica, sslEnabledDatacenters));
             replicationMetrics.addRemoteReplicaToLagMetrics(remoteReplicaInfo);
             replicationMetrics.createRemoteReplicaErrorMetrics(remoteReplicaInfo);
@@ -322,6 +376,20 @@ public final class ReplicationManager {
         }
       }
       replicationMetrics.populatePerColoMetrics(numberOfReplicaThreads.keySet());
+      this.replicaTokenLogs = new HashMap<String, ReplicaTokenLog>();
+      if (replicationConfig.replicationTokenLogEnabled) {
+        for (String mountPath : partitionGroupedByMountPath.keySet()) {
+          replicaTokenLogs.put(mountPath,
+              new ReplicaTokenLog(new File(mountPath, replicaTokenFileName + ReplicaTokenLog.FILE_NAME_SUFFIX)));
+        }
+      }
+      this.replicationThrottler =
+          new ReplicationThrottler(replicationConfig, replicationMetrics, partitionGroupedByMountPath.keySet(),
+              dataNodeRemoteReplicaInfosPerDC.keySet(), SystemTime.getInstance());
+      this.messageValidationExecutor = createMessageValidationExecutor();
+      this.replicaThreadRebalancer = replicationConfig.replicationThreadRebalanceIntervalSeconds > 0 ?
+          new ReplicaThreadRebalancer(replicaThreadPools, replicationConfig, replicationMetrics,
+              SystemTime.getInstance()) : null;
     } catch (Exception e) {
       logger.error("Error on starting replication manager", e);
       throw new ReplicationException("Error on starting replication manager");
@@ -350,11 +418,15 @@ public final class ReplicationManager {
       // start all replica threads
       for (List<ReplicaThread> replicaThreads : replicaThreadPools.values()) {
         for (ReplicaThread thread : replicaThreads) {
-          Thread replicaThread = Utils.newThread(thread.getName(), thread, false);
-          logger.info("Starting replica thread " + thread.getName());
-          replicaThread.start();
+          startReplicaThread(thread);
         }
       }
+      clusterMap.registerClusterMapListener(new AddedReplicasListener());
+      if (replicaThreadRebalancer != null) {
+        this.scheduler.schedule("replica thread rebalancer", replicaThreadRebalancer,
+            replicationConfig.replicationThreadRebalanceIntervalSeconds,
+            replicationConfig.replicationThreadRebalanceIntervalSeconds, TimeUnit.SECONDS);
+      }
 
       // start background persistent thread
       // start scheduler thread to persist index in the background
@@ -411,6 +483,65 @@ public final class ReplicationManager {
     return 0;
   }
 
+  /**
+   * Notifies the replication manager that a blob was written to or deleted from a local store, so that replica
+   * metadata requests waiting for new writes to the partition of the store can respond.
+   * @param partitionId the partition of the store that was written to.
+   */
+  public void onLocalWrite(PartitionId partitionId) {
+    localWriteNotifier.onWrite(partitionId);
+  }
+
+  /**
+   * @param partitionIds the partitions of interest.
+   * @return the sequence number of the latest write to the local stores of the given partitions, to be passed to
+   *         {@link #awaitLocalWriteAfter(List, long)}.
+   */
+  public long getLocalWriteSequence(List<? extends PartitionId> partitionIds) {
+    return localWriteNotifier.getWriteSequence(partitionIds);
+  }
+
+  /**
+   * Waits for a write to the local stores of the given partitions after the write with the given sequence number, for
+   * at most {@link ReplicationConfig#replicationMetadataRequestMaxWaitTimeMs}. Does not wait if waiting is disabled or
+   * if {@link ReplicationConfig#replicationMetadataRequestMaxConcurrentWaits} callers are already waiting, since every
+   * wait holds a request handler thread.
+   * @param partitionIds the partitions of interest.
+   * @param writeSequence the sequence number of the last write to the partitions that the caller has seen.
+   * @return the time waited in ms, or -1 if the caller did not wait.
+   * @throws InterruptedException if the wait is interrupted.
+   */
+  public long awaitLocalWriteAfter(List<? extends PartitionId> partitionIds, long writeSequence)
+      throws InterruptedException {
+    if (replicationConfig.replicationMetadataRequestMaxWaitTimeMs == 0) {
+      return -1;
+    }
+    long waitTimeMs = localWriteNotifier.awaitWriteAfter(partitionIds, writeSequence,
+        replicationConfig.replicationMetadataRequestMaxWaitTimeMs);
+    if (waitTimeMs < 0) {
+      replicationMetrics.replicaMetadataRequestWaitRejectedCount.inc();
+    } else {
+      replicationMetrics.replicaMetadataRequestWaitTime.update(waitTimeMs);
+      if (localWriteNotifier.getWriteSequence(partitionIds) != writeSequence) {
+        replicationMetrics.replicaMetadataRequestWaitWokenUpCount.inc();
+      }
+    }
+    return waitTimeMs;
+  }
+
+  /**
+   * Records the latency of a foreground request on the local replica of a partition, which is used to adjust the rate
+   * at which replication writes to the disk of the replica.
+   * @param partitionId the partition that the request was for.
+   * @param latencyMs the latency of the request.
+   */
+  public void onForegroundRequest(PartitionId partitionId, long latencyMs) {
+    PartitionInfo partitionInfo = partitionsToReplicate.get(partitionId);
+    if (partitionInfo != null) {
+      replicationThrottler.onForegroundRequest(partitionInfo.getLocalReplicaId().getMountPath(), latencyMs);
+    }
+  }
+
   /**
    * Gets the replica info for the remote peer replica identified by PartitionId, ReplicaPath and Hostname
    * @param partitionId PartitionId to which the replica belongs to
@@ -437,6 +568,17 @@ public final class ReplicationManager {
     return foundRemoteReplicaInfo;
   }
 
+  /**
+   * @param datacenter the datacenter to replicate from.
+   * @return the replica threads that replicate from {@code datacenter}, empty if there are none.
+   */
+  List<ReplicaThread> getReplicaThreads(String datacenter) {
+    synchronized (replicaThreadPools) {
+      List<ReplicaThread> replicaThreads = replicaThreadPools.get(datacenter);
+      return replicaThreads == null ? new ArrayList<ReplicaThread>() : new ArrayList<ReplicaThread>(replicaThreads);
+    }
+  }
+
   /**
    * Shutsdown the replication manager. Shutsdown the individual replica threads and
    * then persists all the replica tokens
@@ -445,22 +587,29 @@ public final class ReplicationManager {
   public void shutdown()
       throws ReplicationException {
     try {
+      // wake up replica threads that are being throttled so that they can stop
+      replicationThrottler.close();
       // stop all replica threads
-      for (Map.Entry<String, ArrayList<ReplicaThread>> replicaThreads : replicaThreadPools.entrySet()) {
-        if (replicaThreads.getKey().equals(dataNodeId.getDatacenterName())) {
-          for (ReplicaThread replicaThread : replicaThreads.getValue()) {
-            replicaThread.shutdown();
+      synchronized (replicaThreadPools) {
+        for (Map.Entry<String, ArrayList<ReplicaThread>> replicaThreads : replicaThreadPools.entrySet()) {
+          if (replicaThreads.getKey().equals(dataNodeId.getDatacenterName())) {
+            for (ReplicaThread replicaThread : replicaThreads.getValue()) {
+              replicaThread.shutdown();
+            }
           }
         }
-      }
 
-      for (Map.Entry<String, ArrayList<ReplicaThread>> replicaThreads : replicaThreadPools.entrySet()) {
-        if (!replicaThreads.getKey().equals(dataNodeId.getDatacenterName())) {
-          for (ReplicaThread replicaThread : replicaThreads.getValue()) {
-            replicaThread.shutdown();
+        for (Map.Entry<String, ArrayList<ReplicaThread>> replicaThreads : replicaThreadPools.entrySet()) {
+          if (!replicaThreads.getKey().equals(dataNodeId.getDatacenterName())) {
+            for (ReplicaThread replicaThread : replicaThreads.getValue()) {
+              replicaThread.shutdown();
+            }
           }
         }
       }
+      if (messageValidationExecutor != null) {
+        messageValidationExecutor.shutdown();
+      }
       // persist replica tokens
       persistor.write(true);
     } catch (Exception e) {
@@ -529,7 +678,8 @@ public final class ReplicationManager {
       int numberOfNodesPerThread = dataNodesCount / replicaThreadCount;
       int remainingNodes = dataNodesCount % replicaThreadCount;
 
-      Iterator<DataNodeId> dataNodeIdIterator = dataNodesToReplicate.iterator();
+      // iterate over a copy, so that the nodes stay indexed for replicas that are added later on
+      Iterator<DataNodeId> dataNodeIdIterator = new HashSet<DataNodeId>(dataNodesToReplicate).iterator();
 
       for (int i = 0; i < replicaThreadCount; i++) {
         // create the list of nodes for the replica thread
@@ -549,15 +699,7 @@ public final class ReplicationManager {
           dataNodeIdIterator.remove();
           remainingNodes--;
         }
-        boolean replicatingOverSsl = sslEnabledDatacenters.contains(datacenter);
-        String threadIdentity =
-            "Replica Thread-" + (dataNodeId.getDatacenterName().equals(datacenter) ? "Intra-" : "Inter") + i
-                + datacenter;
-        ReplicaThread replicaThread =
-            new ReplicaThread(threadIdentity, replicasForThread, factory, clusterMap, correlationIdGenerator,
-                dataNodeId, connectionPool, replicationConfig, replicationMetrics, notification, storeKeyFactory,
-                replicationConfig.replicationValidateMessageStream, metricRegistry, replicatingOverSsl, datacenter,
-                responseHandler);
+        ReplicaThread replicaThread = createReplicaThread(datacenter, i, replicasForThread, responseHandler);
         if (replicaThreadPools.containsKey(datacenter)) {
           replicaThreadPools.get(datacenter).add(replicaThread);
         } else {
@@ -567,6 +709,142 @@ public final class ReplicationManager {
     }
   }
 
+  /**
+   * Changes the number of replica threads that replicate from a datacenter while replication is running. Threads that
+   * are added take over remote nodes from the threads with the most nodes, and the remote nodes of threads that are
+   * removed are spread over the remaining threads with the fewest nodes.
+   * @param datacenter the datacenter whose replica threads need to change.
+   * @param replicaThreadCount the new number of replica threads. It is capped by the number of remote nodes in the
+   *                           datacenter.
+   * @throws InterruptedException if the wait for a removed thread to stop is interrupted.
+   */
+  public void updateReplicaThreadCount(String datacenter, int replicaThreadCount)
+      throws InterruptedException {
+    if (replicaThreadCount <= 0) {
+      throw new IllegalArgumentException("Number of replica threads should be positive: " + replicaThreadCount);
+    }
+    synchronized (replicaThreadPools) {
+      ArrayList<ReplicaThread> replicaThreads = replicaThreadPools.get(datacenter);
+      if (replicaThreads == null) {
+        throw new IllegalArgumentException("No replica threads replicate from datacenter " + datacenter);
+      }
+      // the remote nodes each thread will have once all the moves are done
+      Map<ReplicaThread, Set<DataNodeId>> remoteNodesPerThread = new HashMap<ReplicaThread, Set<DataNodeId>>();
+      int dataNodesCount = 0;
+      for (ReplicaThread replicaThread : replicaThreads) {
+        Set<DataNodeId> remoteNodes = replicaThread.getRemoteNodes();
+        remoteNodesPerThread.put(replicaThread, remoteNodes);
+        dataNodesCount += remoteNodes.size();
+      }
+      replicaThreadCount = Math.min(replicaThreadCount, dataNodesCount);
+      logger.info("Changing the number of replica threads to replicate from {} from {} to {}", datacenter,
+          replicaThreads.size(), replicaThreadCount);
+      ArrayList<ReplicaThread> updatedReplicaThreads = new ArrayList<ReplicaThread>(replicaThreads);
+      ResponseHandler responseHandler = new ResponseHandler(clusterMap);
+      while (updatedReplicaThreads.size() < replicaThreadCount) {
+        ReplicaThread addedThread = createReplicaThread(datacenter, updatedReplicaThreads.size(),
+            new HashMap<DataNodeId, List<RemoteReplicaInfo>>(), responseHandler);
+        Set<DataNodeId> addedThreadNodes = new HashSet<DataNodeId>();
+        while (addedThreadNodes.size() < dataNodesCount / replicaThreadCount) {
+          ReplicaThread sourceThread = null;
+          for (ReplicaThread replicaThread : updatedReplicaThreads) {
+            if (sourceThread == null
+                || remoteNodesPerThread.get(replicaThread).size() > remoteNodesPerThread.get(sourceThread).size()) {
+              sourceThread = replicaThread;
+            }
+          }
+          Iterator<DataNodeId> sourceThreadNodes = remoteNodesPerThread.get(sourceThread).iterator();
+          DataNodeId remoteNode = sourceThreadNodes.next();
+          sourceThreadNodes.remove();
+          addedThreadNodes.add(remoteNode);
+          sourceThread.moveRemoteNode(remoteNode, addedThread);
+        }
+        remoteNodesPerThread.put(addedThread, addedThreadNodes);
+        updatedReplicaThreads.add(addedThread);
+        startReplicaThread(addedThread);
+      }
+      while (updatedReplicaThreads.size() > replicaThreadCount) {
+        ReplicaThread removedThread = updatedReplicaThreads.remove(updatedReplicaThreads.size() - 1);
+        logger.info("Stopping replica thread " + removedThread.getName());
+        removedThread.shutdown();
+        for (DataNodeId remoteNode : removedThread.getRemoteNodes()) {
+          ReplicaThread targetThread = null;
+          for (ReplicaThread replicaThread : updatedReplicaThreads) {
+            if (targetThread == null
+                || remoteNodesPerThread.get(replicaThread).size() < remoteNodesPerThread.get(targetThread).size()) {
+              targetThread = replicaThread;
+            }
+          }
+          remoteNodesPerThread.get(targetThread).add(remoteNode);
+          removedThread.moveRemoteNode(remoteNode, targetThread);
+        }
+        // the thread is stopped, so its nodes are handed off right away
+        removedThread.handOffPendingNodes();
+        if (replicaThreadRebalancer != null) {
+          replicaThreadRebalancer.removeReplicaThread(removedThread);
+        }
+      }
+      replicaThreadPools.put(datacenter, updatedReplicaThreads);
+      numberOfReplicaThreads.put(datacenter, replicaThreadCount);
+    }
+  }
+
+  /**
+   * Creates a replica thread that replicates from the given remote nodes of a datacenter.
+   * @param datacenter the datacenter to replicate from.
+   * @param index the index of the thread among the replica threads of the datacenter.
+   * @param replicasForThread the remote replicas to replicate from grouped by remote node.
+   * @param responseHandler the {@link ResponseHandler} of the replica threads of the datacenter.
+   * @return the replica thread.
+   */
+  private ReplicaThread createReplicaThread(String datacenter, int index,
+      Map<DataNodeId, List<RemoteReplicaInfo>> replicasForThread, ResponseHandler responseHandler) {
+    boolean replicatingOverSsl = sslEnabledDatacenters.contains(datacenter);
+    String threadIdentity =
+        "Replica Thread-" + (dataNodeId.getDatacenterName().equals(datacenter) ? "Intra-" : "Inter") + index
+            + datacenter;
+    return new ReplicaThread(threadIdentity, replicasForThread, factory, clusterMap, correlationIdGenerator,
+        dataNodeId, connectionPool, replicationConfig, replicationMetrics, notification, storeKeyFactory,
+        replicationConfig.replicationValidateMessageStream, metricRegistry, replicatingOverSsl, datacenter,
+        responseHandler, replicationThrottler, messageValidationExecutor);
+  }
+
+  /**
+   * Starts a replica thread and, if replica threads are rebalanced, reporting its utilization.
+   * @param replicaThread the replica thread to start.
+   */
+  private void startReplicaThread(ReplicaThread replicaThread) {
+    logger.info("Starting replica thread " + replicaThread.getName());
+    Utils.newThread(replicaThread.getName(), replicaThread, false).start();
+    if (replicaThreadRebalancer != null) {
+      replicaThreadRebalancer.addReplicaThread(replicaThread);
+    }
+  }
+
+  /**
+   * Creates the bounded pool of threads that replicated messages are validated on. When the queue of the pool is full,
+   * messages are validated on the replica thread that received them.
+   * @return the {@link ExecutorService} to validate messages on, or {@code null} if messages are to be validated on the
+   *         replica threads.
+   */
+  private ExecutorService createMessageValidationExecutor() {
+    if (!replicationConfig.replicationValidateMessageStream
+        || replicationConfig.replicationMessageValidationThreadCount == 0) {
+      return null;
+    }
+    final AtomicInteger threadId = new AtomicInteger(0);
+    return new ThreadPoolExecutor(replicationConfig.replicationMessageValidationThreadCount,
+        replicationConfig.replicationMessageValidationThreadCount, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(replicationConfig.replicationMessageValidationQueueSize),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            return Utils.newThread("Replication Message Validation Thread-" + threadId.getAndIncrement(), runnable,
+                true);
+          }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
   /**
    * Reads the replica tokens from the file and populates the Remote replica info
    * and persists the token file if necessary.
@@ -601,34 +879,8 @@ public final class ReplicationManager {
               // read replica token
               FindToken token = factory.getFindToken(stream);
               // update token
-              PartitionInfo partitionInfo = partitionsToReplicate.get(partitionId);
-              boolean updatedToken = false;
-              for (RemoteReplicaInfo remoteReplicaInfo : partitionInfo.getRemoteReplicaInfos()) {
-                if (remoteReplicaInfo.getReplicaId().getDataNodeId().getHostname().equalsIgnoreCase(hostname) &&
-                    remoteReplicaInfo.getReplicaId().getDataNodeId().getPort() == port &&
-                    remoteReplicaInfo.getReplicaId().getReplicaPath().equals(replicaPath)) {
-                  logger.info("Read token for partition {} remote host {} port {} token {}", partitionId, hostname,
-                      port, token);
-                  if (partitionInfo.getStore().getSizeInBytes() > 0) {
-                    remoteReplicaInfo.initializeTokens(token);
-                    remoteReplicaInfo.setTotalBytesReadFromLocalStore(totalBytesReadFromLocalStore);
-                  } else {
-                    // if the local replica is empty, it could have been newly created. In this case, the offset in
-                    // every peer replica which the local replica lags from should be set to 0, so that the local
-                    // replica starts fetching from the beginning of the peer. The totalBytes the peer read from the
-                    // local replica should also be set to 0. During initialization these values are already set to 0,
-                    // so we let them be.
-                    tokenWasReset = true;
-                    replicationMetrics.replicationTokenResetCount.inc();
-                    logger.info("Resetting token for partition {} remote host {} port {}, persisted token {}",
-                        partitionId, hostname, port, token);
-                  }
-                  updatedToken = true;
-                  break;
-                }
-              }
-              if (!updatedToken) {
-                logger.warn("Persisted remote replica host {} and port {} not present in new cluster ", hostname, port);
+              if (restoreToken(partitionId, hostname, replicaPath, port, totalBytesReadFromLocalStore, token)) {
+                tokenWasReset = true;
               }
             }
             long crc = crcStream.getValue();
@@ -649,20 +901,81 @@ public final class ReplicationManager {
       }
     }
 
-    if (tokenWasReset) {
+    // tokens in the replica token log are newer than the ones in the replica token file.
+    File replicaTokenLogFile = new File(mountPath, replicaTokenFileName + ReplicaTokenLog.FILE_NAME_SUFFIX);
+    boolean tokenLogReplayed = false;
+    if (replicaTokenLogFile.exists()) {
+      readStartTimeMs = SystemTime.getInstance().milliseconds();
+      for (ReplicaTokenLog.Entry entry : ReplicaTokenLog.read(replicaTokenLogFile, clusterMap, factory)) {
+        if (restoreToken(entry.partitionId, entry.hostname, entry.replicaPath, entry.port,
+            entry.totalBytesReadFromLocalStore, entry.token)) {
+          tokenWasReset = true;
+        }
+      }
+      tokenLogReplayed = true;
+      replicationMetrics.remoteReplicaTokensRestoreTime.update(
+          SystemTime.getInstance().milliseconds() - readStartTimeMs);
+    }
+
+    if (tokenWasReset || tokenLogReplayed) {
       // We must ensure that the the token file is persisted if any of the tokens in the file got reset. We need to do
       // this before an associated store takes any writes, to avoid the case where a store takes writes and persists it,
-      // before the replica token file is persisted after the reset.
+      // before the replica token file is persisted after the reset. A replayed replica token log is folded into the
+      // replica token file so that the log starts afresh.
       persistor.write(mountPath, false);
     }
   }
 
+  /**
+   * Restores a persisted token of a remote replica. If the local replica is empty, the token is reset instead.
+   * @param partitionId the partition of the remote replica.
+   * @param hostname the host of the remote replica.
+   * @param replicaPath the path of the remote replica.
+   * @param port the port of the remote replica.
+   * @param totalBytesReadFromLocalStore the persisted number of bytes that the remote replica read from the local store.
+   * @param token the persisted token.
+   * @return {@code true} if the token was reset.
+   */
+  private boolean restoreToken(PartitionId partitionId, String hostname, String replicaPath, int port,
+      long totalBytesReadFromLocalStore, FindToken token) {
+    PartitionInfo partitionInfo = partitionsToReplicate.get(partitionId);
+    boolean tokenWasReset = false;
+    boolean updatedToken = false;
+    for (RemoteReplicaInfo remoteReplicaInfo : partitionInfo.getRemoteReplicaInfos()) {
+      if (remoteReplicaInfo.getReplicaId().getDataNodeId().getHostname().equalsIgnoreCase(hostname) &&
+          remoteReplicaInfo.getReplicaId().getDataNodeId().getPort() == port &&
+          remoteReplicaInfo.getReplicaId().getReplicaPath().equals(replicaPath)) {
+        logger.info("Read token for partition {} remote host {} port {} token {}", partitionId, hostname, port, token);
+        if (partitionInfo.getStore().getSizeInBytes() > 0) {
+          remoteReplicaInfo.initializeTokens(token);
+          remoteReplicaInfo.setTotalBytesReadFromLocalStore(totalBytesReadFromLocalStore);
+        } else {
+          // if the local replica is empty, it could have been newly created. In this case, the offset in
+          // every peer replica which the local replica lags from should be set to 0, so that the local
+          // replica starts fetching from the beginning of the peer. The totalBytes the peer read from the
+          // local replica should also be set to 0. During initialization these values are already set to 0,
+          // so we let them be.
+          tokenWasReset = true;
+          replicationMetrics.replicationTokenResetCount.inc();
+          logger.info("Resetting token for partition {} remote host {} port {}, persisted token {}", partitionId,
+              hostname, port, token);
+        }
+        updatedToken = true;
+        break;
+      }
+    }
+    if (!updatedToken) {
+      logger.warn("Persisted remote replica host {} and port {} not present in new cluster ", hostname, port);
+    }
+    return tokenWasReset;
+  }
+
   class ReplicaTokenPersistor implements Runnable {
 
     private Logger logger = LoggerFactory.getLogger(getClass());
     private final short version = 0;
 
-    private void write(String mountPath, boolean shuttingDown)
+    private synchronized void write(String mountPath, boolean shuttingDown)
         throws IOException, ReplicationException {
       long writeStartTimeMs = SystemTime.getInstance().milliseconds();
       File temp = new File(mountPath, replicaTokenFileName + ".tmp");
@@ -670,6 +983,7 @@ public final class ReplicationManager {
       FileOutputStream fileStream = new FileOutputStream(temp);
       CrcOutputStream crc = new CrcOutputStream(fileStream);
       DataOutputStream writer = new DataOutputStream(crc);
+      ReplicaTokenLog replicaTokenLog = replicaTokenLogs.get(mountPath);
       try {
         // write the current version
         writer.writeShort(version);
@@ -687,6 +1001,9 @@ public final class ReplicationManager {
               writer.writeLong(remoteReplica.getTotalBytesReadFromLocalStore());
               writer.write(tokenToPersist.toBytes());
               remoteReplica.onTokenPersisted();
+              if (replicaTokenLog != null) {
+                replicaTokenLog.onTokenPersisted(remoteReplica, tokenToPersist);
+              }
               if (shuttingDown) {
                 logger.info("Persisting token {}", tokenToPersist);
               }
@@ -700,6 +1017,16 @@ public final class ReplicationManager {
         fileStream.getChannel().force(true);
         // swap temp file with the original file
         temp.renameTo(actual);
+        // all the tokens in the replica token log are now in the replica token file. If the node goes down before the
+        // log is emptied, the older tokens in the log are restored, which is safe.
+        if (replicaTokenLog != null) {
+          replicaTokenLog.clear();
+        } else {
+          File replicaTokenLogFile = new File(mountPath, replicaTokenFileName + ReplicaTokenLog.FILE_NAME_SUFFIX);
+          if (replicaTokenLogFile.exists() && !replicaTokenLogFile.delete()) {
+            throw new IOException("Could not delete replica token log " + replicaTokenLogFile.getAbsolutePath());
+          }
+        }
       } catch (IOException e) {
         logger.error("IO error while persisting tokens to disk {}", temp.getAbsoluteFile());
         throw new ReplicationException("IO error while persisting replica tokens to disk ");
@@ -711,6 +1038,36 @@ public final class ReplicationManager {
       logger.debug("Completed writing replica tokens to file {}", actual.getAbsolutePath());
     }
 
+    /**
+     * Appends the replica tokens of the partitions on the mount path that changed since they were last persisted to
+     * the replica token log of the mount path. If the log has grown larger than
+     * {@link ReplicationConfig#replicationTokenLogCompactionThresholdInBytes}, all the tokens are written to the replica
+     * token file instead and the log is emptied.
+     * @param mountPath the mount path.
+     * @param replicaTokenLog the {@link ReplicaTokenLog} of the mount path.
+     * @throws IOException
+     * @throws ReplicationException
+     */
+    private synchronized void append(String mountPath, ReplicaTokenLog replicaTokenLog)
+        throws IOException, ReplicationException {
+      if (replicaTokenLog.sizeInBytes() > replicationConfig.replicationTokenLogCompactionThresholdInBytes) {
+        write(mountPath, false);
+        replicationMetrics.replicaTokenLogCompactionCount.inc();
+        return;
+      }
+      long appendStartTimeMs = SystemTime.getInstance().milliseconds();
+      try {
+        int tokensAppended = replicaTokenLog.append(partitionGroupedByMountPath.get(mountPath));
+        replicationMetrics.remoteReplicaTokensAppendedCount.inc(tokensAppended);
+      } catch (IOException e) {
+        logger.error("IO error while appending tokens to the replica token log of {}", mountPath);
+        throw new ReplicationException("IO error while appending replica tokens to disk ");
+      } finally {
+        replicationMetrics.remoteReplicaTokensAppendTime.update(
+            SystemTime.getInstance().milliseconds() - appendStartTimeMs);
+      }
+    }
+
     /**
      * Iterates through each mount path and persists all the replica tokens for the partitions on the mount
      * path to a file. The file is saved on the corresponding mount path
@@ -726,13 +1083,73 @@ public final class ReplicationManager {
 
     public void run() {
       try {
-        write(false);
+        if (replicaTokenLogs.isEmpty()) {
+          write(false);
+        } else {
+          for (Map.Entry<String, ReplicaTokenLog> entry : replicaTokenLogs.entrySet()) {
+            append(entry.getKey(), entry.getValue());
+          }
+        }
       } catch (Exception e) {
         logger.error("Error while persisting the replica tokens {}", e);
       }
     }
   }
 
+  /**
+   * Starts replicating from replicas that are added to the cluster map as peers of the replicas on this node. Replicas
+   * that are added to this node itself need a restart, since their stores are created at startup.
+   */
+  private class AddedReplicasListener implements ClusterMapChangeListener {
+
+    @Override
+    public void onReplicasAdded(List<ReplicaId> addedReplicas) {
+      synchronized (replicaThreadPools) {
+        for (ReplicaId addedReplica : addedReplicas) {
+          DataNodeId remoteNode = addedReplica.getDataNodeId();
+          if (remoteNode.equals(dataNodeId)) {
+            logger.warn("Replica {} was added to this node and is only replicated after a restart", addedReplica);
+            continue;
+          }
+          PartitionInfo partitionInfo = partitionsToReplicate.get(addedReplica.getPartitionId());
+          if (partitionInfo == null) {
+            continue;
+          }
+          String datacenter = remoteNode.getDatacenterName();
+          List<ReplicaThread> replicaThreads = replicaThreadPools.get(datacenter);
+          if (replicaThreads == null || replicaThreads.isEmpty()) {
+            logger.warn("Not replicating from added replica {} since no replica threads replicate from {}",
+                addedReplica, datacenter);
+            continue;
+          }
+          RemoteReplicaInfo remoteReplicaInfo =
+              new RemoteReplicaInfo(addedReplica, partitionInfo.getLocalReplicaId(), partitionInfo.getStore(),
+                  factory.getNewFindToken(), tokenPersistIntervalInMs, SystemTime.getInstance(),
+                  getPortForReplica(addedReplica, sslEnabledDatacenters));
+          replicationMetrics.addRemoteReplicaToLagMetrics(remoteReplicaInfo);
+          replicationMetrics.createRemoteReplicaErrorMetrics(remoteReplicaInfo);
+          partitionInfo.addRemoteReplicaInfo(remoteReplicaInfo);
+          DataNodeRemoteReplicaInfos dataNodeRemoteReplicaInfos = dataNodeRemoteReplicaInfosPerDC.get(datacenter);
+          boolean newRemoteNode = dataNodeRemoteReplicaInfos.getRemoteReplicaListForDataNode(remoteNode) == null;
+          // the list of a remote node is shared with the replica thread that replicates from the node
+          dataNodeRemoteReplicaInfos.addRemoteReplica(remoteReplicaInfo);
+          if (newRemoteNode) {
+            ReplicaThread targetThread = null;
+            for (ReplicaThread replicaThread : replicaThreads) {
+              if (targetThread == null
+                  || replicaThread.getRemoteNodes().size() < targetThread.getRemoteNodes().size()) {
+                targetThread = replicaThread;
+              }
+            }
+            targetThread.addRemoteNode(remoteNode,
+                dataNodeRemoteReplicaInfos.getRemoteReplicaListForDataNode(remoteNode));
+          }
+          logger.info("Replicating from added replica {}", addedReplica);
+        }
+      }
+    }
+  }
+
   /**
    * Holds a list of {@link DataNodeId} for a Datacenter
    * Also contains the mapping of {@link RemoteReplicaInfo} list for every {@link DataNodeId}
@@ -745,14 +1162,15 @@ public final class ReplicationManager {
       this.datacenter = datacenter;
       this.dataNodeToReplicaLists = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
       this.dataNodeToReplicaLists.put(remoteReplicaInfo.getReplicaId().getDataNodeId(),
-          new ArrayList<RemoteReplicaInfo>(Arrays.asList(remoteReplicaInfo)));
+          new CopyOnWriteArrayList<RemoteReplicaInfo>(Arrays.asList(remoteReplicaInfo)));
     }
 
     public void addRemoteReplica(RemoteReplicaInfo remoteReplicaInfo) {
       DataNodeId dataNodeIdToReplicate = remoteReplicaInfo.getReplicaId().getDataNodeId();
       List<RemoteReplicaInfo> replicaInfos = dataNodeToReplicaLists.get(dataNodeIdToReplicate);
       if (replicaInfos == null) {
-        replicaInfos = new ArrayList<RemoteReplicaInfo>();
+        // replica threads share these lists, and replicas can be added while they replicate from the node
+        replicaInfos = new CopyOnWriteArrayList<RemoteReplicaInfo>();
       }
       replicaInfos.add(remoteReplicaInfo);
       dataNodeToReplicaLists.put(dataNodeIdToReplicate, replicaInfos);
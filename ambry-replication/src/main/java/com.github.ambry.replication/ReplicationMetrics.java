@@ -66,6 +66,15 @@ public class ReplicationMetrics {
   public final Timer sslIntraColoReplicationLatency;
   public final Histogram remoteReplicaTokensPersistTime;
   public final Histogram remoteReplicaTokensRestoreTime;
+  public final Histogram remoteReplicaTokensAppendTime;
+  public final Counter remoteReplicaTokensAppendedCount;
+  public final Counter replicaTokenLogCompactionCount;
+  public final Counter replicaThreadRebalanceCount;
+  public final Counter keyReconciliationCount;
+  public final Counter keyReconciliationMismatchedBucketCount;
+  public final Counter keyReconciliationRepairedKeyCount;
+  public final Counter keyReconciliationErrorCount;
+  public final Histogram keyReconciliationTime;
   public final Map<String, Histogram> interColoExchangeMetadataTime = new HashMap<String, Histogram>();
   public final Histogram intraColoExchangeMetadataTime;
   public final Map<String, Histogram> plainTextInterColoExchangeMetadataTime = new HashMap<String, Histogram>();
@@ -86,6 +95,17 @@ public class ReplicationMetrics {
   public final Map<String, Histogram> sslInterColoReplicationMetadataRequestTime = new HashMap<String, Histogram>();
   public final Histogram sslIntraColoReplicationMetadataRequestTime;
   public final Histogram intraColoReplicationWaitTime;
+  public final Histogram replicaMetadataRequestWaitTime;
+  public final Counter replicaMetadataRequestWaitWokenUpCount;
+  public final Counter replicaMetadataRequestWaitRejectedCount;
+  public final Counter replicationCaughtUpNodeSkipCount;
+  public final Counter replicationBootstrapNodeCount;
+  public final Meter replicationBootstrapBytesRate;
+  public final Histogram localWriteQueueTime;
+  public final Histogram localWriteSubmitWaitTime;
+  public final Histogram pendingLocalWriteWaitTime;
+  public final Histogram localWriteThrottledTime;
+  public final Histogram fetchThrottledTime;
   public final Map<String, Histogram> interColoCheckMissingKeysTime = new HashMap<String, Histogram>();
   public final Histogram intraColoCheckMissingKeysTime;
   public final Map<String, Histogram> interColoProcessMetadataResponseTime = new HashMap<String, Histogram>();
@@ -115,12 +135,14 @@ public class ReplicationMetrics {
   private Map<String, Counter> getRequestErrorMap;
   private Map<String, Counter> localStoreErrorMap;
   private Map<PartitionId, Counter> partitionIdToInvalidMessageStreamErrorCounter;
+  private Map<PartitionId, Histogram> partitionIdToLocalLagFromRemoteInBytes;
 
   public ReplicationMetrics(MetricRegistry registry, List<ReplicaId> replicaIds) {
     metadataRequestErrorMap = new HashMap<String, Counter>();
     getRequestErrorMap = new HashMap<String, Counter>();
     localStoreErrorMap = new HashMap<String, Counter>();
     partitionIdToInvalidMessageStreamErrorCounter = new HashMap<PartitionId, Counter>();
+    partitionIdToLocalLagFromRemoteInBytes = new HashMap<PartitionId, Histogram>();
     intraColoReplicationBytesRate =
         registry.meter(MetricRegistry.name(ReplicaThread.class, "IntraColoReplicationBytesRate"));
     plainTextIntraColoReplicationBytesRate =
@@ -157,6 +179,22 @@ public class ReplicationMetrics {
         registry.timer(MetricRegistry.name(ReplicaThread.class, "SslIntraColoReplicationLatency"));
     remoteReplicaTokensPersistTime =
         registry.histogram(MetricRegistry.name(ReplicaThread.class, "RemoteReplicaTokensPersistTime"));
+    remoteReplicaTokensAppendTime =
+        registry.histogram(MetricRegistry.name(ReplicaThread.class, "RemoteReplicaTokensAppendTime"));
+    remoteReplicaTokensAppendedCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "RemoteReplicaTokensAppendedCount"));
+    replicaTokenLogCompactionCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaTokenLogCompactionCount"));
+    replicaThreadRebalanceCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicaThreadRebalanceCount"));
+    keyReconciliationCount = registry.counter(MetricRegistry.name(ReplicaThread.class, "KeyReconciliationCount"));
+    keyReconciliationMismatchedBucketCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "KeyReconciliationMismatchedBucketCount"));
+    keyReconciliationRepairedKeyCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "KeyReconciliationRepairedKeyCount"));
+    keyReconciliationErrorCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "KeyReconciliationErrorCount"));
+    keyReconciliationTime = registry.histogram(MetricRegistry.name(ReplicaThread.class, "KeyReconciliationTime"));
     remoteReplicaTokensRestoreTime =
         registry.histogram(MetricRegistry.name(ReplicaThread.class, "RemoteReplicaTokensRestoreTime"));
     intraColoExchangeMetadataTime =
@@ -173,6 +211,26 @@ public class ReplicationMetrics {
         registry.histogram(MetricRegistry.name(ReplicaThread.class, "SslIntraColoFixMissingKeysTime"));
     intraColoReplicationWaitTime =
         registry.histogram(MetricRegistry.name(ReplicaThread.class, "IntraColoReplicationWaitTime"));
+    replicaMetadataRequestWaitTime =
+        registry.histogram(MetricRegistry.name(ReplicationManager.class, "ReplicaMetadataRequestWaitTime"));
+    replicaMetadataRequestWaitWokenUpCount =
+        registry.counter(MetricRegistry.name(ReplicationManager.class, "ReplicaMetadataRequestWaitWokenUpCount"));
+    replicaMetadataRequestWaitRejectedCount =
+        registry.counter(MetricRegistry.name(ReplicationManager.class, "ReplicaMetadataRequestWaitRejectedCount"));
+    replicationCaughtUpNodeSkipCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationCaughtUpNodeSkipCount"));
+    replicationBootstrapNodeCount =
+        registry.counter(MetricRegistry.name(ReplicaThread.class, "ReplicationBootstrapNodeCount"));
+    replicationBootstrapBytesRate =
+        registry.meter(MetricRegistry.name(ReplicaThread.class, "ReplicationBootstrapBytesRate"));
+    localWriteQueueTime = registry.histogram(MetricRegistry.name(ReplicaThread.class, "LocalWriteQueueTime"));
+    localWriteSubmitWaitTime =
+        registry.histogram(MetricRegistry.name(ReplicaThread.class, "LocalWriteSubmitWaitTime"));
+    pendingLocalWriteWaitTime =
+        registry.histogram(MetricRegistry.name(ReplicaThread.class, "PendingLocalWriteWaitTime"));
+    localWriteThrottledTime =
+        registry.histogram(MetricRegistry.name(ReplicaThread.class, "LocalWriteThrottledTime"));
+    fetchThrottledTime = registry.histogram(MetricRegistry.name(ReplicaThread.class, "FetchThrottledTime"));
     intraColoReplicationMetadataRequestTime =
         registry.histogram(MetricRegistry.name(ReplicaThread.class, "IntraColoReplicationMetadataRequestTime"));
     plainTextIntraColoReplicationMetadataRequestTime = registry.histogram(
@@ -203,6 +261,7 @@ public class ReplicationMetrics {
     this.registry = registry;
     this.replicaLagInBytes = new ArrayList<Gauge<Long>>();
     populateInvalidMessageMetricForReplicas(replicaIds);
+    populateLocalLagMetricForReplicas(replicaIds);
   }
 
   /**
@@ -361,6 +420,68 @@ public class ReplicationMetrics {
     replicaLagInBytes.add(replicaLag);
   }
 
+  /**
+   * Registers a histogram per partition that tracks how far the local replica lags behind the remote replicas.
+   * @param replicaIds the local replicas.
+   */
+  private void populateLocalLagMetricForReplicas(List<ReplicaId> replicaIds) {
+    for (ReplicaId replicaId : replicaIds) {
+      PartitionId partitionId = replicaId.getPartitionId();
+      if (!partitionIdToLocalLagFromRemoteInBytes.containsKey(partitionId)) {
+        Histogram partitionBasedLocalLag =
+            registry.histogram(MetricRegistry.name(ReplicaThread.class, partitionId + "-LocalLagFromRemoteInBytes"));
+        partitionIdToLocalLagFromRemoteInBytes.put(partitionId, partitionBasedLocalLag);
+      }
+    }
+  }
+
+  /**
+   * Records the lag of the local replica of a partition behind one of its remote replicas.
+   * @param partitionId the partition of the replicas.
+   * @param localLagFromRemoteInBytes the number of bytes that the local replica lags behind the remote replica.
+   */
+  public void updateLocalLagFromRemote(PartitionId partitionId, long localLagFromRemoteInBytes) {
+    Histogram partitionBasedLocalLag = partitionIdToLocalLagFromRemoteInBytes.get(partitionId);
+    if (partitionBasedLocalLag != null) {
+      partitionBasedLocalLag.update(localLagFromRemoteInBytes);
+    }
+  }
+
+  /**
+   * Registers a gauge for the current limit of the rate at which replication writes to a local disk.
+   * @param mountPath the mount path of the local disk.
+   * @param rateLimit the {@link Gauge} that returns the limit in bytes/sec.
+   */
+  public void addLocalWriteRateLimitGauge(String mountPath, Gauge<Long> rateLimit) {
+    registry.register(MetricRegistry.name(ReplicaThread.class, mountPath + "-LocalWriteRateLimit"), rateLimit);
+  }
+
+  /**
+   * Registers a gauge for the number of replica metadata requests that are holding a request handler thread while
+   * waiting for new writes.
+   * @param numWaiters the {@link Gauge} that returns the number of waiting requests.
+   */
+  public void addReplicaMetadataRequestWaitersGauge(Gauge<Integer> numWaiters) {
+    registry.register(MetricRegistry.name(ReplicationManager.class, "ReplicaMetadataRequestWaiters"), numWaiters);
+  }
+
+  /**
+   * Tracks the fraction of time a replica thread spent replicating in the last rebalance interval.
+   * @param threadName the name of the replica thread.
+   * @param utilization the {@link Gauge} that returns the fraction.
+   */
+  public void addReplicaThreadUtilizationGauge(String threadName, Gauge<Double> utilization) {
+    registry.register(MetricRegistry.name(ReplicaThread.class, threadName + "-Utilization"), utilization);
+  }
+
+  /**
+   * Stops tracking the utilization of a replica thread that was shut down.
+   * @param threadName the name of the replica thread.
+   */
+  public void removeReplicaThreadUtilizationGauge(String threadName) {
+    registry.remove(MetricRegistry.name(ReplicaThread.class, threadName + "-Utilization"));
+  }
+
   public void populateInvalidMessageMetricForReplicas(List<ReplicaId> replicaIds) {
     for (ReplicaId replicaId : replicaIds) {
       PartitionId partitionId = replicaId.getPartitionId();
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.codahale.metrics.Gauge;
+import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.utils.Throttler;
+import com.github.ambry.utils.Time;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Limits the rate at which replication fetches messages from each datacenter and writes messages to each local disk,
+ * so that catching up does not starve foreground requests.
+ * <p/>
+ * The write rate of a disk adapts to the latency of the foreground requests on it. At the end of every adjustment
+ * interval, the rate is halved if more than 1% of the foreground requests in the interval took longer than
+ * {@link ReplicationConfig#replicationForegroundLatencyTargetMs}, and raised by a tenth of the max rate otherwise. The
+ * rate stays between {@link ReplicationConfig#replicationLocalWriteMinBytesPerSecPerDisk} and
+ * {@link ReplicationConfig#replicationLocalWriteMaxBytesPerSecPerDisk}.
+ */
+class ReplicationThrottler {
+  static final long THROTTLER_CHECK_INTERVAL_MS = 100;
+  static final long ADJUSTMENT_INTERVAL_MS = 1000;
+  static final double MAX_SLOW_REQUEST_FRACTION = 0.01;
+
+  private final ReplicationConfig replicationConfig;
+  private final ReplicationMetrics replicationMetrics;
+  private final Time time;
+  private final Map<String, DiskThrottler> diskThrottlers = new HashMap<String, DiskThrottler>();
+  private final Map<String, Throttler> datacenterThrottlers = new HashMap<String, Throttler>();
+
+  /**
+   * Create a ReplicationThrottler.
+   * @param replicationConfig the {@link ReplicationConfig} with the rate limits.
+   * @param replicationMetrics the {@link ReplicationMetrics} to record throttled time in.
+   * @param mountPaths the mount paths of the local disks.
+   * @param datacenters the datacenters that are replicated from.
+   * @param time the {@link Time} instance to use.
+   */
+  ReplicationThrottler(ReplicationConfig replicationConfig, ReplicationMetrics replicationMetrics,
+      Collection<String> mountPaths, Collection<String> datacenters, Time time) {
+    this.replicationConfig = replicationConfig;
+    this.replicationMetrics = replicationMetrics;
+    this.time = time;
+    if (replicationConfig.replicationLocalWriteMaxBytesPerSecPerDisk > 0) {
+      for (String mountPath : mountPaths) {
+        final DiskThrottler diskThrottler = new DiskThrottler();
+        diskThrottlers.put(mountPath, diskThrottler);
+        replicationMetrics.addLocalWriteRateLimitGauge(mountPath, new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return (long) diskThrottler.throttler.getDesiredRatePerSec();
+          }
+        });
+      }
+    }
+    if (replicationConfig.replicationFetchMaxBytesPerSecPerDatacenter > 0) {
+      for (String datacenter : datacenters) {
+        datacenterThrottlers.put(datacenter,
+            new Throttler(replicationConfig.replicationFetchMaxBytesPerSecPerDatacenter, THROTTLER_CHECK_INTERVAL_MS,
+                true, time));
+      }
+    }
+  }
+
+  /**
+   * Sleeps if required to keep the rate of replicated writes to a local disk under its current limit.
+   * @param mountPath the mount path of the local disk.
+   * @param bytesWritten the number of bytes that were just written to the disk.
+   * @throws InterruptedException if the sleep is interrupted.
+   */
+  void throttleLocalWrite(String mountPath, long bytesWritten)
+      throws InterruptedException {
+    DiskThrottler diskThrottler = diskThrottlers.get(mountPath);
+    if (diskThrottler != null) {
+      diskThrottler.maybeAdjustRate();
+      long startTimeMs = time.milliseconds();
+      diskThrottler.throttler.maybeThrottle(bytesWritten);
+      replicationMetrics.localWriteThrottledTime.update(time.milliseconds() - startTimeMs);
+    }
+  }
+
+  /**
+   * Sleeps if required to keep the rate of replicated fetches from a datacenter under its limit.
+   * @param datacenter the datacenter the bytes were fetched from.
+   * @param bytesFetched the number of bytes that were just fetched.
+   * @throws InterruptedException if the sleep is interrupted.
+   */
+  void throttleFetch(String datacenter, long bytesFetched)
+      throws InterruptedException {
+    Throttler throttler = datacenterThrottlers.get(datacenter);
+    if (throttler != null) {
+      long startTimeMs = time.milliseconds();
+      throttler.maybeThrottle(bytesFetched);
+      replicationMetrics.fetchThrottledTime.update(time.milliseconds() - startTimeMs);
+    }
+  }
+
+  /**
+   * Records the latency of a foreground request on a local disk, which is used to adjust the replicated write rate of
+   * the disk.
+   * @param mountPath the mount path of the local disk.
+   * @param latencyMs the latency of the request.
+   */
+  void onForegroundRequest(String mountPath, long latencyMs) {
+    DiskThrottler diskThrottler = diskThrottlers.get(mountPath);
+    if (diskThrottler != null && replicationConfig.replicationForegroundLatencyTargetMs > 0) {
+      diskThrottler.onForegroundRequest(latencyMs);
+    }
+  }
+
+  /**
+   * @param mountPath the mount path of the local disk.
+   * @return the current limit of the replicated write rate of the disk in bytes/sec, or -1 if it is not limited.
+   */
+  long getLocalWriteRateLimit(String mountPath) {
+    DiskThrottler diskThrottler = diskThrottlers.get(mountPath);
+    return diskThrottler == null ? -1 : (long) diskThrottler.throttler.getDesiredRatePerSec();
+  }
+
+  /**
+   * Stops all throttling. Threads that are sleeping in a throttler are woken up.
+   */
+  void close() {
+    for (DiskThrottler diskThrottler : diskThrottlers.values()) {
+      diskThrottler.throttler.close();
+    }
+    for (Throttler throttler : datacenterThrottlers.values()) {
+      throttler.close();
+    }
+  }
+
+  /**
+   * The throttler of the replicated writes to a disk along with the foreground request latencies observed on the disk
+   * in the current adjustment interval.
+   */
+  private class DiskThrottler {
+    private final Throttler throttler;
+    private long intervalStartTimeMs;
+    private long requestCount = 0;
+    private long slowRequestCount = 0;
+
+    DiskThrottler() {
+      throttler =
+          new Throttler(replicationConfig.replicationLocalWriteMaxBytesPerSecPerDisk, THROTTLER_CHECK_INTERVAL_MS, true,
+              time);
+      intervalStartTimeMs = time.milliseconds();
+    }
+
+    synchronized void onForegroundRequest(long latencyMs) {
+      requestCount++;
+      if (latencyMs > replicationConfig.replicationForegroundLatencyTargetMs) {
+        slowRequestCount++;
+      }
+      maybeAdjustRate();
+    }
+
+    /**
+     * Adjusts the write rate if the current adjustment interval is over.
+     */
+    synchronized void maybeAdjustRate() {
+      long nowMs = time.milliseconds();
+      if (nowMs - intervalStartTimeMs < ADJUSTMENT_INTERVAL_MS) {
+        return;
+      }
+      double maxRate = replicationConfig.replicationLocalWriteMaxBytesPerSecPerDisk;
+      double minRate = Math.min(replicationConfig.replicationLocalWriteMinBytesPerSecPerDisk, maxRate);
+      double rate = throttler.getDesiredRatePerSec();
+      if (requestCount > 0 && slowRequestCount > requestCount * MAX_SLOW_REQUEST_FRACTION) {
+        rate = Math.max(minRate, rate / 2);
+      } else {
+        rate = Math.min(maxRate, rate + maxRate / 10);
+      }
+      throttler.setDesiredRatePerSec(rate);
+      intervalStartTimeMs = nowMs;
+      requestCount = 0;
+      slowRequestCount = 0;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.github.ambry.clustermap.MockDataNodeId;
+import com.github.ambry.clustermap.MockPartitionId;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.utils.SystemTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link LocalWriteNotifier}.
+ */
+public class LocalWriteNotifierTest {
+  private final List<PartitionId> partitionIds =
+      Collections.<PartitionId>singletonList(new MockPartitionId(1, Collections.<MockDataNodeId>emptyList(), 0));
+  private final List<PartitionId> otherPartitionIds =
+      Collections.<PartitionId>singletonList(new MockPartitionId(2, Collections.<MockDataNodeId>emptyList(), 0));
+
+  /**
+   * Tests that a wait times out when there are no writes and returns immediately when a write has already happened.
+   * @throws InterruptedException
+   */
+  @Test
+  public void testAwaitWithoutConcurrentWrites()
+      throws InterruptedException {
+    LocalWriteNotifier notifier = new LocalWriteNotifier(1, SystemTime.getInstance());
+    long sequence = notifier.getWriteSequence(partitionIds);
+    Assert.assertTrue("Wait should have timed out", notifier.awaitWriteAfter(partitionIds, sequence, 10) >= 10);
+    Assert.assertEquals("Write sequence should not have moved", sequence, notifier.getWriteSequence(partitionIds));
+    notifier.onWrite(otherPartitionIds.get(0));
+    Assert.assertEquals("Write to another partition should not move the write sequence", sequence,
+        notifier.getWriteSequence(partitionIds));
+    notifier.onWrite(partitionIds.get(0));
+    Assert.assertEquals("Write sequence should have moved", sequence + 1, notifier.getWriteSequence(partitionIds));
+    long startTimeMs = SystemTime.getInstance().milliseconds();
+    Assert.assertTrue("Caller should have waited", notifier.awaitWriteAfter(partitionIds, sequence, 60000) >= 0);
+    Assert.assertTrue("Write already happened, so the caller should not have waited long",
+        SystemTime.getInstance().milliseconds() - startTimeMs < 60000);
+    Assert.assertEquals("No caller should be waiting", 0, notifier.getNumWaiters());
+  }
+
+  /**
+   * Tests that a waiting caller is woken up by a write to its partitions but not by writes to other partitions, and
+   * that callers over the limit do not wait.
+   * @throws InterruptedException
+   */
+  @Test
+  public void testAwaitWokenUpByWrite()
+      throws InterruptedException {
+    final LocalWriteNotifier notifier = new LocalWriteNotifier(1, SystemTime.getInstance());
+    final long sequence = notifier.getWriteSequence(partitionIds);
+    final AtomicLong waitTimeMs = new AtomicLong(-2);
+    final CountDownLatch doneLatch = new CountDownLatch(1);
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          waitTimeMs.set(notifier.awaitWriteAfter(partitionIds, sequence, 60000));
+        } catch (InterruptedException e) {
+          waitTimeMs.set(-2);
+        } finally {
+          doneLatch.countDown();
+        }
+      }
+    });
+    waiter.start();
+    long deadlineMs = SystemTime.getInstance().milliseconds() + 10000;
+    while (notifier.getNumWaiters() == 0) {
+      Assert.assertTrue("Waiter did not start waiting", SystemTime.getInstance().milliseconds() < deadlineMs);
+      Thread.sleep(1);
+    }
+    Assert.assertEquals("Caller over the limit should not wait", -1,
+        notifier.awaitWriteAfter(otherPartitionIds, notifier.getWriteSequence(otherPartitionIds), 60000));
+    notifier.onWrite(otherPartitionIds.get(0));
+    Assert.assertFalse("Waiter should not have been woken up by a write to another partition",
+        doneLatch.await(100, TimeUnit.MILLISECONDS));
+    notifier.onWrite(partitionIds.get(0));
+    Assert.assertTrue("Waiter did not finish", doneLatch.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue("Waiter should have been woken up by the write",
+        waitTimeMs.get() >= 0 && waitTimeMs.get() < 60000);
+    Assert.assertEquals("No caller should be waiting", 0, notifier.getNumWaiters());
+  }
+}
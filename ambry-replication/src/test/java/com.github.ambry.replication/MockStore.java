@@ -0,0 +1,317 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.github.ambry.store.FindInfo;
+import com.github.ambry.store.FindToken;
+import com.github.ambry.store.KeySummary;
+import com.github.ambry.store.MessageInfo;
+import com.github.ambry.store.MessageReadSet;
+import com.github.ambry.store.MessageWriteSet;
+import com.github.ambry.store.Store;
+import com.github.ambry.store.StoreErrorCodes;
+import com.github.ambry.store.StoreException;
+import com.github.ambry.store.StoreGetOptions;
+import com.github.ambry.store.StoreInfo;
+import com.github.ambry.store.StoreKey;
+import com.github.ambry.store.Write;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * An in memory {@link Store} that keeps every message in a buffer of its own. The message infos and the buffers are
+ * kept in the lists that the store is created with, so that tests can seed the store and check what was written to it.
+ * Entries are found in the order in which they were written, with {@link MockFindToken}s that hold the index of the
+ * next entry to find.
+ */
+public class MockStore implements Store {
+  private final List<MessageInfo> messageInfos;
+  private final List<ByteBuffer> messages;
+  private long sizeInBytes = 0;
+
+  /**
+   * Create an empty MockStore.
+   */
+  public MockStore() {
+    this(new ArrayList<MessageInfo>(), new ArrayList<ByteBuffer>());
+  }
+
+  /**
+   * Create a MockStore that holds the given messages.
+   * @param messageInfos the {@link MessageInfo}s of the messages. Messages that are written are added to this list.
+   * @param messages the messages, in the same order as their {@link MessageInfo}s. Messages that are written are added
+   *                 to this list.
+   */
+  public MockStore(List<MessageInfo> messageInfos, List<ByteBuffer> messages) {
+    if (messageInfos.size() != messages.size()) {
+      throw new IllegalArgumentException("message info size and buffer size does not match");
+    }
+    this.messageInfos = messageInfos;
+    this.messages = messages;
+  }
+
+  @Override
+  public void start()
+      throws StoreException {
+  }
+
+  @Override
+  public StoreInfo get(List<? extends StoreKey> ids, EnumSet<StoreGetOptions> storeGetOptions)
+      throws StoreException {
+    List<MessageInfo> messageInfosToRead = new ArrayList<MessageInfo>(ids.size());
+    List<ByteBuffer> messagesToRead = new ArrayList<ByteBuffer>(ids.size());
+    for (StoreKey id : ids) {
+      int index = getIndex(id);
+      if (index < 0) {
+        throw new StoreException("Key not found " + id, StoreErrorCodes.ID_Not_Found);
+      }
+      MessageInfo messageInfo = messageInfos.get(index);
+      if (messageInfo.isDeleted() && !storeGetOptions.contains(StoreGetOptions.Store_Include_Deleted)) {
+        throw new StoreException("Key deleted " + id, StoreErrorCodes.ID_Deleted);
+      }
+      messageInfosToRead.add(messageInfo);
+      messagesToRead.add(messages.get(index));
+    }
+    return new StoreInfo(new MockMessageReadSet(messagesToRead, messageInfosToRead), messageInfosToRead);
+  }
+
+  @Override
+  public void put(MessageWriteSet messageSetToWrite)
+      throws StoreException {
+    List<MessageInfo> messageInfosToWrite = messageSetToWrite.getMessageSetInfo();
+    List<ByteBuffer> messagesToWrite = new ArrayList<ByteBuffer>(messageInfosToWrite.size());
+    for (MessageInfo messageInfo : messageInfosToWrite) {
+      if (getIndex(messageInfo.getStoreKey()) >= 0) {
+        throw new StoreException("Key already exists " + messageInfo.getStoreKey(), StoreErrorCodes.Already_Exist);
+      }
+      messagesToWrite.add(ByteBuffer.allocate((int) messageInfo.getSize()));
+    }
+    try {
+      messageSetToWrite.writeTo(new ByteBufferWrite(messagesToWrite));
+    } catch (IOException e) {
+      throw new StoreException(e, StoreErrorCodes.IOError);
+    }
+    for (int i = 0; i < messageInfosToWrite.size(); i++) {
+      ByteBuffer message = messagesToWrite.get(i);
+      message.flip();
+      messageInfos.add(messageInfosToWrite.get(i));
+      messages.add(message);
+      sizeInBytes += message.limit();
+    }
+  }
+
+  @Override
+  public void delete(MessageWriteSet messageSetToDelete)
+      throws StoreException {
+    for (MessageInfo messageInfoToDelete : messageSetToDelete.getMessageSetInfo()) {
+      int index = getIndex(messageInfoToDelete.getStoreKey());
+      if (index < 0) {
+        throw new StoreException("Key not found " + messageInfoToDelete.getStoreKey(), StoreErrorCodes.ID_Not_Found);
+      }
+      MessageInfo messageInfo = messageInfos.get(index);
+      if (messageInfo.isDeleted()) {
+        throw new StoreException("Key already deleted " + messageInfo.getStoreKey(), StoreErrorCodes.ID_Deleted);
+      }
+      messageInfos.set(index, new MessageInfo(messageInfo.getStoreKey(), messageInfo.getSize(), true,
+          messageInfo.getExpirationTimeInMs()));
+      sizeInBytes += messageInfoToDelete.getSize();
+    }
+  }
+
+  @Override
+  public FindInfo findEntriesSince(FindToken token, long maxTotalSizeOfEntries)
+      throws StoreException {
+    MockFindToken mockFindToken = (MockFindToken) token;
+    List<MessageInfo> entries = new ArrayList<MessageInfo>();
+    int index = mockFindToken.getIndex();
+    long totalSizeOfEntries = 0;
+    while (index < messageInfos.size() && totalSizeOfEntries < maxTotalSizeOfEntries) {
+      entries.add(messageInfos.get(index));
+      totalSizeOfEntries += messageInfos.get(index).getSize();
+      index++;
+    }
+    return new FindInfo(entries, new MockFindToken(index, mockFindToken.getBytesRead() + totalSizeOfEntries));
+  }
+
+  @Override
+  public Set<StoreKey> findMissingKeys(List<StoreKey> keys)
+      throws StoreException {
+    Set<StoreKey> missingKeys = new HashSet<StoreKey>();
+    for (StoreKey key : keys) {
+      if (getIndex(key) < 0) {
+        missingKeys.add(key);
+      }
+    }
+    return missingKeys;
+  }
+
+  @Override
+  public KeySummary getKeySummary(int bucketCount)
+      throws StoreException {
+    KeySummary keySummary = new KeySummary(bucketCount);
+    for (MessageInfo messageInfo : messageInfos) {
+      keySummary.add(messageInfo.getStoreKey());
+    }
+    return keySummary;
+  }
+
+  @Override
+  public List<MessageInfo> getEntriesInBuckets(int bucketCount, Set<Integer> buckets)
+      throws StoreException {
+    List<MessageInfo> entries = new ArrayList<MessageInfo>();
+    for (MessageInfo messageInfo : messageInfos) {
+      if (buckets.contains(KeySummary.getBucket(messageInfo.getStoreKey(), bucketCount))) {
+        entries.add(messageInfo);
+      }
+    }
+    return entries;
+  }
+
+  @Override
+  public boolean isKeyDeleted(StoreKey key)
+      throws StoreException {
+    int index = getIndex(key);
+    return index >= 0 && messageInfos.get(index).isDeleted();
+  }
+
+  /**
+   * @return the bytes written to this store since it was created.
+   */
+  @Override
+  public long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  @Override
+  public void shutdown()
+      throws StoreException {
+  }
+
+  /**
+   * @param key the key to look for.
+   * @return the index of the message with the given key, or -1 if there is none.
+   */
+  private int getIndex(StoreKey key) {
+    // indexed rather than iterated, so that tests can count the allocations of the code that uses the store
+    for (int i = 0; i < messageInfos.size(); i++) {
+      if (messageInfos.get(i).getStoreKey().equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * A {@link Write} that fills the given buffers one after the other.
+   */
+  private static class ByteBufferWrite implements Write {
+    private final List<ByteBuffer> buffers;
+    private int index = 0;
+
+    ByteBufferWrite(List<ByteBuffer> buffers) {
+      this.buffers = buffers;
+    }
+
+    @Override
+    public int appendFrom(ByteBuffer buffer) {
+      int bytesWritten = buffer.remaining();
+      while (buffer.hasRemaining()) {
+        ByteBuffer bufferToFill = buffers.get(index);
+        int bytesToWrite = Math.min(buffer.remaining(), bufferToFill.remaining());
+        ByteBuffer slice = buffer.slice();
+        slice.limit(bytesToWrite);
+        bufferToFill.put(slice);
+        buffer.position(buffer.position() + bytesToWrite);
+        if (!bufferToFill.hasRemaining()) {
+          index++;
+        }
+      }
+      return bytesWritten;
+    }
+
+    @Override
+    public void appendFrom(ReadableByteChannel channel, long size)
+        throws IOException {
+      long bytesRead = 0;
+      while (bytesRead < size) {
+        ByteBuffer bufferToFill = buffers.get(index);
+        int read = channel.read(bufferToFill);
+        if (read < 0) {
+          throw new IOException("Channel ended after " + bytesRead + " of " + size + " bytes");
+        }
+        bytesRead += read;
+        if (!bufferToFill.hasRemaining()) {
+          index++;
+        }
+      }
+    }
+
+    @Override
+    public void writeFrom(ReadableByteChannel channel, long offset, long size) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * A {@link MessageReadSet} over the buffers of a {@link MockStore}.
+   */
+  private static class MockMessageReadSet implements MessageReadSet {
+    private final List<ByteBuffer> messages;
+    private final List<MessageInfo> messageInfos;
+
+    MockMessageReadSet(List<ByteBuffer> messages, List<MessageInfo> messageInfos) {
+      this.messages = messages;
+      this.messageInfos = messageInfos;
+    }
+
+    @Override
+    public long writeTo(int index, WritableByteChannel channel, long relativeOffset, long maxSize)
+        throws IOException {
+      // the buffer is shared with the store, so its position and limit are restored after the write
+      ByteBuffer message = messages.get(index);
+      int limit = message.limit();
+      message.position((int) relativeOffset);
+      message.limit((int) Math.min(limit, relativeOffset + maxSize));
+      try {
+        return channel.write(message);
+      } finally {
+        message.clear();
+        message.limit(limit);
+      }
+    }
+
+    @Override
+    public int count() {
+      return messages.size();
+    }
+
+    @Override
+    public long sizeInBytes(int index) {
+      return messages.get(index).limit();
+    }
+
+    @Override
+    public StoreKey getKeyAt(int index) {
+      return messageInfos.get(index).getStoreKey();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.config.StoreConfig;
+import com.github.ambry.store.Store;
+import com.github.ambry.store.StoreException;
+import com.github.ambry.store.StoreKeyFactory;
+import com.github.ambry.store.StoreManager;
+import com.github.ambry.utils.Scheduler;
+import com.github.ambry.utils.SystemTime;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A {@link StoreManager} that hands out the given stores, such as {@link MockStore}s, instead of starting stores on
+ * disk.
+ */
+public class MockStoreManager extends StoreManager {
+  private final Map<PartitionId, ? extends Store> stores;
+
+  public MockStoreManager(StoreConfig config, Scheduler scheduler, MetricRegistry registry, List<ReplicaId> replicas,
+      StoreKeyFactory factory, Map<PartitionId, ? extends Store> stores)
+      throws StoreException {
+    super(config, scheduler, registry, replicas, factory, null, null, SystemTime.getInstance());
+    this.stores = stores;
+  }
+
+  @Override
+  public Store getStore(PartitionId id) {
+    return stores.get(id);
+  }
+}
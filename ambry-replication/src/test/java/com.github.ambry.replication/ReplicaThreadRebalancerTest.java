@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.ResponseHandler;
+import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.network.Port;
+import com.github.ambry.network.PortType;
+import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.SystemTime;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link ReplicaThreadRebalancer}.
+ */
+public class ReplicaThreadRebalancerTest {
+  private static final long INTERVAL_MS = 1000;
+
+  /**
+   * Tests that the remote node that best evens out the replication times of the busiest and the idlest replica threads
+   * is moved between them, and that nothing is moved while the threads are balanced.
+   * @throws IOException
+   */
+  @Test
+  public void testRebalance()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    try {
+      DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+      List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+      Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate =
+          new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+      for (ReplicaId replicaId : replicaIds) {
+        for (ReplicaId peerReplicaId : replicaId.getPeerReplicaIds()) {
+          List<RemoteReplicaInfo> remoteReplicaInfoList = replicasToReplicate.get(peerReplicaId.getDataNodeId());
+          if (remoteReplicaInfoList == null) {
+            remoteReplicaInfoList = new ArrayList<RemoteReplicaInfo>();
+            replicasToReplicate.put(peerReplicaId.getDataNodeId(), remoteReplicaInfoList);
+          }
+          remoteReplicaInfoList.add(
+              new RemoteReplicaInfo(peerReplicaId, replicaId, null, new MockFindToken(0, 0), 1000000,
+                  SystemTime.getInstance(), new Port(peerReplicaId.getDataNodeId().getPort(), PortType.PLAINTEXT)));
+        }
+      }
+      Assert.assertTrue("Test needs at least 3 remote nodes", replicasToReplicate.size() >= 3);
+      List<DataNodeId> remoteNodes = new ArrayList<DataNodeId>(replicasToReplicate.keySet());
+
+      Properties properties = new Properties();
+      properties.setProperty("replication.thread.rebalance.interval.seconds", "1");
+      properties.setProperty("replication.thread.rebalance.min.imbalance.percent", "20");
+      ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+      ReplicationMetrics replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+      ReplicaThread busyThread = createReplicaThread("busy", replicasToReplicate, clusterMap, localNode, config,
+          replicationMetrics);
+      ReplicaThread idleThread =
+          createReplicaThread("idle", new HashMap<DataNodeId, List<RemoteReplicaInfo>>(), clusterMap, localNode,
+              config, replicationMetrics);
+      List<ReplicaThread> replicaThreads = Arrays.asList(busyThread, idleThread);
+      Map<String, List<ReplicaThread>> replicaThreadPools = new HashMap<String, List<ReplicaThread>>();
+      replicaThreadPools.put(localNode.getDatacenterName(), replicaThreads);
+      ReplicaThreadRebalancer rebalancer =
+          new ReplicaThreadRebalancer(replicaThreadPools, config, replicationMetrics, new MockTime());
+      rebalancer.addReplicaThread(busyThread);
+      rebalancer.addReplicaThread(idleThread);
+
+      // moving the node that took 600 ms leaves the threads 200 ms apart, which is the best possible move
+      busyThread.recordReplicationTime(remoteNodes.get(0), 600);
+      busyThread.recordReplicationTime(remoteNodes.get(1), 300);
+      busyThread.recordReplicationTime(remoteNodes.get(2), 100);
+      rebalancer.rebalance(replicaThreads, INTERVAL_MS);
+      Assert.assertEquals("Busy thread utilization should be reported", 1.0, rebalancer.getUtilization(busyThread),
+          0.0);
+      Assert.assertEquals("Idle thread utilization should be reported", 0.0, rebalancer.getUtilization(idleThread),
+          0.0);
+      Assert.assertEquals("One node should have been moved", 1,
+          replicationMetrics.replicaThreadRebalanceCount.getCount());
+      Assert.assertTrue("Node should not move before it is handed off",
+          busyThread.getRemoteNodes().contains(remoteNodes.get(0)));
+      busyThread.handOffPendingNodes();
+      Assert.assertFalse("Node should have left the busy thread",
+          busyThread.getRemoteNodes().contains(remoteNodes.get(0)));
+      Assert.assertEquals("Node should have moved to the idle thread", remoteNodes.get(0),
+          idleThread.getRemoteNodes().iterator().next());
+
+      // threads that are within the min imbalance are left alone
+      busyThread.recordReplicationTime(remoteNodes.get(1), 300);
+      idleThread.recordReplicationTime(remoteNodes.get(0), 200);
+      rebalancer.rebalance(replicaThreads, INTERVAL_MS);
+      Assert.assertEquals("No node should have been moved", 1,
+          replicationMetrics.replicaThreadRebalanceCount.getCount());
+      Assert.assertEquals("Utilization should be the fraction of the interval spent replicating", 0.3,
+          rebalancer.getUtilization(busyThread), 0.001);
+
+      // a node that took longer than the imbalance is not moved
+      busyThread.recordReplicationTime(remoteNodes.get(1), 900);
+      rebalancer.rebalance(replicaThreads, INTERVAL_MS);
+      Assert.assertEquals("No node should have been moved", 1,
+          replicationMetrics.replicaThreadRebalanceCount.getCount());
+    } finally {
+      clusterMap.cleanup();
+    }
+  }
+
+  /**
+   * @return a {@link ReplicaThread} that is not started, replicating from the given remote replicas.
+   */
+  private ReplicaThread createReplicaThread(String threadName,
+      Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate, MockClusterMap clusterMap, DataNodeId localNode,
+      ReplicationConfig config, ReplicationMetrics replicationMetrics) {
+    return new ReplicaThread(threadName, replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+        new AtomicInteger(0), localNode, null, config, replicationMetrics, null, null, false,
+        clusterMap.getMetricRegistry(), false, localNode.getDatacenterName(), new ResponseHandler(clusterMap),
+        new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+            SystemTime.getInstance()), null);
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.network.Port;
+import com.github.ambry.network.PortType;
+import com.github.ambry.utils.MockTime;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link ReplicaTokenLog}.
+ */
+public class ReplicaTokenLogTest {
+
+  /**
+   * Tests that only changed tokens are appended, that appended tokens are read back in order and that a torn record at
+   * the tail of the log is ignored.
+   * @throws IOException
+   */
+  @Test
+  public void testAppendAndRead()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    File file = File.createTempFile("replicaTokens", ReplicaTokenLog.FILE_NAME_SUFFIX);
+    file.deleteOnExit();
+    try {
+      DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+      ReplicaId replicaId = clusterMap.getReplicaIds(localNode).get(0);
+      ReplicaId peerReplicaId = replicaId.getPeerReplicaIds().get(0);
+      MockTime time = new MockTime();
+      MockFindToken firstToken = new MockFindToken(0, 0);
+      RemoteReplicaInfo remoteReplicaInfo =
+          new RemoteReplicaInfo(peerReplicaId, replicaId, null, firstToken, 0, time,
+              new Port(peerReplicaId.getDataNodeId().getPort(), PortType.PLAINTEXT));
+      remoteReplicaInfo.setTotalBytesReadFromLocalStore(100);
+      List<PartitionInfo> partitionInfos = Collections.singletonList(
+          new PartitionInfo(Collections.singletonList(remoteReplicaInfo), replicaId.getPartitionId(), null, replicaId));
+
+      ReplicaTokenLog tokenLog = new ReplicaTokenLog(file);
+      Assert.assertEquals("First token should have been appended", 1, tokenLog.append(partitionInfos));
+      Assert.assertEquals("Unchanged token should not have been appended", 0, tokenLog.append(partitionInfos));
+      MockFindToken secondToken = new MockFindToken(5, 500);
+      remoteReplicaInfo.setToken(secondToken);
+      // the new token becomes the candidate to persist and is safe to persist once time moves.
+      Assert.assertEquals("Token that is not safe to persist should not have been appended", 0,
+          tokenLog.append(partitionInfos));
+      time.currentMilliseconds += 1;
+      Assert.assertEquals("Second token should have been appended", 1, tokenLog.append(partitionInfos));
+      tokenLog.close();
+
+      // a torn record at the tail of the log
+      FileOutputStream stream = new FileOutputStream(file, true);
+      stream.write(new byte[]{1, 0, 0});
+      stream.close();
+
+      List<ReplicaTokenLog.Entry> entries = ReplicaTokenLog.read(file, clusterMap, new MockFindTokenFactory());
+      Assert.assertEquals("Unexpected number of entries", 2, entries.size());
+      int[] expectedIndexes = {firstToken.getIndex(), secondToken.getIndex()};
+      for (int i = 0; i < entries.size(); i++) {
+        ReplicaTokenLog.Entry entry = entries.get(i);
+        Assert.assertEquals("Unexpected partition", replicaId.getPartitionId(), entry.partitionId);
+        Assert.assertEquals("Unexpected host", peerReplicaId.getDataNodeId().getHostname(), entry.hostname);
+        Assert.assertEquals("Unexpected path", peerReplicaId.getReplicaPath(), entry.replicaPath);
+        Assert.assertEquals("Unexpected port", peerReplicaId.getDataNodeId().getPort(), entry.port);
+        Assert.assertEquals("Unexpected bytes read", 100, entry.totalBytesReadFromLocalStore);
+        Assert.assertEquals("Unexpected token", expectedIndexes[i], ((MockFindToken) entry.token).getIndex());
+      }
+
+      tokenLog.clear();
+      Assert.assertFalse("Log should have been deleted", file.exists());
+      Assert.assertEquals("Nothing should have been appended since the token was persisted", 0,
+          tokenLog.append(partitionInfos));
+    } finally {
+      file.delete();
+      clusterMap.cleanup();
+    }
+  }
+
+  /**
+   * Tests that what an append that failed partway left at the tail of the log is cut off by the next append, so that
+   * the tokens appended after it are read back.
+   * @throws IOException
+   */
+  @Test
+  public void testAppendAfterTornAppend()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    File file = File.createTempFile("replicaTokens", ReplicaTokenLog.FILE_NAME_SUFFIX);
+    file.deleteOnExit();
+    try {
+      DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+      ReplicaId replicaId = clusterMap.getReplicaIds(localNode).get(0);
+      ReplicaId peerReplicaId = replicaId.getPeerReplicaIds().get(0);
+      MockTime time = new MockTime();
+      MockFindToken firstToken = new MockFindToken(0, 0);
+      RemoteReplicaInfo remoteReplicaInfo =
+          new RemoteReplicaInfo(peerReplicaId, replicaId, null, firstToken, 0, time,
+              new Port(peerReplicaId.getDataNodeId().getPort(), PortType.PLAINTEXT));
+      List<PartitionInfo> partitionInfos = Collections.singletonList(
+          new PartitionInfo(Collections.singletonList(remoteReplicaInfo), replicaId.getPartitionId(), null, replicaId));
+
+      ReplicaTokenLog tokenLog = new ReplicaTokenLog(file);
+      Assert.assertEquals("First token should have been appended", 1, tokenLog.append(partitionInfos));
+      long sizeAfterFirstAppend = tokenLog.sizeInBytes();
+      // an append that fails partway leaves a torn record at the tail of the log and closes the log file.
+      FileOutputStream stream = new FileOutputStream(file, true);
+      stream.write(new byte[]{1, 0, 0});
+      stream.close();
+      tokenLog.close();
+
+      MockFindToken secondToken = new MockFindToken(5, 500);
+      remoteReplicaInfo.setToken(secondToken);
+      // the new token becomes the candidate to persist and is safe to persist once time moves.
+      Assert.assertEquals("Token that is not safe to persist should not have been appended", 0,
+          tokenLog.append(partitionInfos));
+      time.currentMilliseconds += 1;
+      Assert.assertEquals("Second token should have been appended", 1, tokenLog.append(partitionInfos));
+      Assert.assertTrue("Log should have grown from where the first append ended",
+          tokenLog.sizeInBytes() > sizeAfterFirstAppend);
+      tokenLog.close();
+
+      List<ReplicaTokenLog.Entry> entries = ReplicaTokenLog.read(file, clusterMap, new MockFindTokenFactory());
+      Assert.assertEquals("Unexpected number of entries", 2, entries.size());
+      Assert.assertEquals("Unexpected token", firstToken.getIndex(), ((MockFindToken) entries.get(0).token).getIndex());
+      Assert.assertEquals("Unexpected token", secondToken.getIndex(),
+          ((MockFindToken) entries.get(1).token).getIndex());
+    } finally {
+      file.delete();
+      clusterMap.cleanup();
+    }
+  }
+}
@@ -14,15 +14,20 @@
 package com.github.ambry.replication;
 
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.ClusterMapChangeListener;
 import com.github.ambry.clustermap.DataNodeId;
 import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.MockDataNodeId;
+import com.github.ambry.clustermap.MockPartitionId;
 import com.github.ambry.clustermap.MockReplicaId;
 import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.ReplicaId;
 import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.BlobIdFactory;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.config.SSLConfig;
 import com.github.ambry.config.StoreConfig;
 import com.github.ambry.config.VerifiableProperties;
 import com.github.ambry.messageformat.BlobProperties;
@@ -38,6 +43,8 @@ import com.github.ambry.network.PortType;
 import com.github.ambry.network.Send;
 import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
+import com.github.ambry.protocol.KeySummaryRequest;
+import com.github.ambry.protocol.KeySummaryResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.protocol.PartitionResponseInfo;
 import com.github.ambry.protocol.ReplicaMetadataRequest;
@@ -45,23 +52,14 @@ import com.github.ambry.protocol.ReplicaMetadataRequestInfo;
 import com.github.ambry.protocol.ReplicaMetadataResponse;
 import com.github.ambry.protocol.ReplicaMetadataResponseInfo;
 import com.github.ambry.protocol.Response;
-import com.github.ambry.store.FindInfo;
-import com.github.ambry.store.FindToken;
 import com.github.ambry.store.MessageInfo;
-import com.github.ambry.store.MessageReadSet;
-import com.github.ambry.store.MessageStoreHardDelete;
-import com.github.ambry.store.MessageStoreRecovery;
 import com.github.ambry.store.MessageWriteSet;
-import com.github.ambry.store.Store;
 import com.github.ambry.store.StoreException;
-import com.github.ambry.store.StoreGetOptions;
-import com.github.ambry.store.StoreInfo;
 import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
-import com.github.ambry.store.StoreManager;
-import com.github.ambry.store.Write;
 import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.ByteBufferOutputStream;
+import com.github.ambry.utils.IFilter;
 import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.Scheduler;
 import com.github.ambry.utils.SystemTime;
@@ -70,11 +68,9 @@ import com.github.ambry.utils.Utils;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -82,6 +78,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -89,256 +87,6 @@ import org.junit.Test;
 
 public class ReplicationTest {
 
-  class MockMessageReadSet implements MessageReadSet {
-
-    List<ByteBuffer> bytebuffers;
-    List<StoreKey> storeKeys;
-
-    public MockMessageReadSet(List<ByteBuffer> bytebuffers, List<StoreKey> storeKeys) {
-      this.bytebuffers = bytebuffers;
-      this.storeKeys = storeKeys;
-    }
-
-    @Override
-    public long writeTo(int index, WritableByteChannel channel, long relativeOffset, long maxSize)
-        throws IOException {
-      ByteBuffer bufferToWrite = bytebuffers.get(0);
-      bufferToWrite.position((int) relativeOffset);
-      bufferToWrite.limit((int) Math.min(maxSize, bufferToWrite.capacity()));
-      channel.write(bufferToWrite);
-      bufferToWrite.position(0);
-      bufferToWrite.limit(bufferToWrite.capacity());
-      return Math.min(maxSize, bufferToWrite.capacity()) - relativeOffset;
-    }
-
-    @Override
-    public int count() {
-      return bytebuffers.size();
-    }
-
-    @Override
-    public long sizeInBytes(int index) {
-      return bytebuffers.get(0).limit();
-    }
-
-    @Override
-    public StoreKey getKeyAt(int index) {
-      return storeKeys.get(index);
-    }
-  }
-
-  class MockStore implements Store {
-
-    class ByteBufferWrite implements Write {
-
-      private List<ByteBuffer> buflist;
-      private int index = 0;
-
-      public ByteBufferWrite(List<ByteBuffer> buf) {
-        this.buflist = buf;
-      }
-
-      @Override
-      public int appendFrom(ByteBuffer buffer)
-          throws IOException {
-        buflist.get(index).put(buffer);
-        index++;
-        return buffer.capacity();
-      }
-
-      @Override
-      public void appendFrom(ReadableByteChannel channel, long size)
-          throws IOException {
-        int sizeRead = 0;
-        while (sizeRead < size) {
-          sizeRead += channel.read(buflist.get(index++));
-        }
-        // @TODO: Is this doing the right thing?
-      }
-
-      @Override
-      public void writeFrom(ReadableByteChannel channel, long offset, long size)
-          throws IOException {
-        throw new IllegalArgumentException("Not implemented");
-      }
-    }
-
-    DummyLog log;
-    List<MessageInfo> messageInfoList;
-
-    class DummyLog {
-      private List<ByteBuffer> logInfo;
-      private long endOffSet;
-
-      public DummyLog(List<ByteBuffer> bufferList) {
-        this.logInfo = bufferList;
-      }
-
-      public void appendData(ByteBuffer buffer) {
-        logInfo.add(buffer);
-        endOffSet += buffer.capacity();
-      }
-
-      public ByteBuffer getData(int index) {
-        return logInfo.get(index);
-      }
-
-      public long getEndOffSet() {
-        return endOffSet;
-      }
-    }
-
-    public MockStore(List<MessageInfo> messageInfo, List<ByteBuffer> buffers) {
-      if (messageInfo.size() != buffers.size()) {
-        throw new IllegalArgumentException("message info size and buffer size does not match");
-      }
-      messageInfoList = messageInfo;
-      log = new DummyLog(buffers);
-    }
-
-    @Override
-    public void start()
-        throws StoreException {
-
-    }
-
-    @Override
-    public StoreInfo get(List<? extends StoreKey> ids, EnumSet<StoreGetOptions> getOptions)
-        throws StoreException {
-      List<MessageInfo> infoOutput = new ArrayList<MessageInfo>();
-      List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
-      List<StoreKey> keys = new ArrayList<StoreKey>();
-      int index = 0;
-      for (MessageInfo info : messageInfoList) {
-        for (StoreKey id : ids) {
-          if (info.getStoreKey().equals(id)) {
-            infoOutput.add(info);
-            buffers.add(log.getData(index));
-            keys.add(info.getStoreKey());
-          }
-        }
-        index++;
-      }
-      return new StoreInfo(new MockMessageReadSet(buffers, keys), messageInfoList);
-    }
-
-    @Override
-    public void put(MessageWriteSet messageSetToWrite)
-        throws StoreException {
-      List<MessageInfo> messageInfoListTemp = messageSetToWrite.getMessageSetInfo();
-      List<ByteBuffer> buffersToWrite = new ArrayList<ByteBuffer>();
-      for (MessageInfo messageInfo : messageInfoListTemp) {
-        ByteBuffer buf = ByteBuffer.allocate((int) messageInfo.getSize());
-        buffersToWrite.add(buf);
-      }
-      try {
-        messageSetToWrite.writeTo(new ByteBufferWrite(buffersToWrite));
-      } catch (IOException e) {
-
-      }
-      for (ByteBuffer buf : buffersToWrite) {
-        buf.flip();
-        log.appendData(buf);
-      }
-      messageInfoList.addAll(messageInfoListTemp);
-    }
-
-    @Override
-    public void delete(MessageWriteSet messageSetToDelete)
-        throws StoreException {
-      int index = 0;
-      MessageInfo messageInfoFound = null;
-      for (MessageInfo messageInfo : messageInfoList) {
-        if (messageInfo.getStoreKey().equals(messageSetToDelete.getMessageSetInfo().get(0).getStoreKey())) {
-          messageInfoFound = messageInfo;
-          break;
-        }
-        index++;
-      }
-      messageInfoList.set(index, new MessageInfo(messageInfoFound.getStoreKey(), messageInfoFound.getSize(), true,
-          messageInfoFound.getExpirationTimeInMs()));
-    }
-
-    @Override
-    public FindInfo findEntriesSince(FindToken token, long maxSizeOfEntries)
-        throws StoreException {
-      MockFindToken tokenmock = (MockFindToken) token;
-      List<MessageInfo> entriesToReturn = new ArrayList<MessageInfo>();
-      long currentSizeOfEntriesInBytes = 0;
-      int index = 0;
-      while (currentSizeOfEntriesInBytes < maxSizeOfEntries && index < messageInfoList.size()) {
-        entriesToReturn.add(messageInfoList.get(tokenmock.getIndex() + index));
-        currentSizeOfEntriesInBytes += messageInfoList.get(tokenmock.getIndex() + index).getSize();
-        index++;
-      }
-
-      int startIndex = tokenmock.getIndex();
-      int totalSizeRead = 0;
-      for (int i = 0; i < startIndex; i++) {
-        totalSizeRead += messageInfoList.get(i).getSize();
-      }
-      totalSizeRead += currentSizeOfEntriesInBytes;
-      return new FindInfo(entriesToReturn,
-          new MockFindToken(tokenmock.getIndex() + entriesToReturn.size(), totalSizeRead));
-    }
-
-    @Override
-    public Set<StoreKey> findMissingKeys(List<StoreKey> keys)
-        throws StoreException {
-      Set<StoreKey> keysMissing = new HashSet<StoreKey>();
-      for (StoreKey key : keys) {
-        boolean found = false;
-        for (MessageInfo messageInfo : messageInfoList) {
-          if (messageInfo.getStoreKey().equals(key)) {
-            found = true;
-            break;
-          }
-        }
-        if (!found) {
-          keysMissing.add(key);
-        }
-      }
-      return keysMissing;
-    }
-
-    @Override
-    public boolean isKeyDeleted(StoreKey key)
-        throws StoreException {
-      for (MessageInfo messageInfo : messageInfoList) {
-        if (messageInfo.getStoreKey().equals(key) && messageInfo.isDeleted()) {
-          return true;
-        }
-      }
-      return false;
-    }
-
-    @Override
-    public long getSizeInBytes() {
-      return log.getEndOffSet();
-    }
-
-    @Override
-    public void shutdown()
-        throws StoreException {
-    }
-  }
-
-  class MockStoreManager extends StoreManager {
-    Map<PartitionId, MockStore> stores;
-
-    public MockStoreManager(StoreConfig config, Scheduler scheduler, MetricRegistry registry, List<ReplicaId> replicas,
-        StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete,
-        Map<PartitionId, MockStore> stores)
-        throws StoreException {
-      super(config, scheduler, registry, replicas, factory, recovery, hardDelete, SystemTime.getInstance());
-      this.stores = stores;
-    }
-
-    public Store getStore(PartitionId id) {
-      return stores.get(id);
-    }
-  }
-
   class MockConnection implements ConnectedChannel {
 
     class MockSend implements Send {
@@ -460,12 +208,23 @@ public class ReplicationTest {
             ServerErrorCode.No_Error);
         getRequest = null;
       }
+      return toChannelOutput(response);
+    }
+
+    /**
+     * @param response the response to return.
+     * @return the {@link ChannelOutput} that the response is read from, after its size.
+     * @throws IOException
+     */
+    ChannelOutput toChannelOutput(Response response)
+        throws IOException {
       ByteBuffer buffer = ByteBuffer.allocate((int) response.sizeInBytes());
       ByteBufferOutputStream stream = new ByteBufferOutputStream(buffer);
       WritableByteChannel channel = Channels.newChannel(stream);
-      while (!response.isSendComplete()) {
+      // a response with nothing to send after its header counts as sent before its header is written
+      do {
         response.writeTo(channel);
-      }
+      } while (!response.isSendComplete());
       buffer.flip();
       buffer.getLong();
       return new ChannelOutput(new ByteBufferInputStream(buffer), buffer.remaining());
@@ -628,7 +387,9 @@ public class ReplicationTest {
               new AtomicInteger(0), clusterMap.getDataNodeId("localhost", dataNode1.getPort()),
               new MockConnectionPool(replicaStores, replicaBuffers, 3), config, replicationMetrics, null,
               storeKeyFactory, true, clusterMap.getMetricRegistry(), false, "localhost",
-              new ResponseHandler(clusterMap));
+              new ResponseHandler(clusterMap),
+              new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                  SystemTime.getInstance()), null);
       List<ReplicaThread.ExchangeMetadataResponse> response = replicaThread.exchangeMetadata(
           new MockConnection("localhost", dataNode2.getPort(), replicaStores.get("localhost" + dataNode2.getPort()),
               replicaBuffers.get("localhost" + dataNode2.getPort()), 5), replicasToReplicate.get(dataNodeId));
@@ -722,6 +483,131 @@ public class ReplicationTest {
     }
   }
 
+  /**
+   * Tests that lag prioritized scheduling replicates from the most lagging remote nodes first and skips caught up
+   * nodes for a bounded number of iterations.
+   */
+  @Test
+  public void replicaThreadLagPrioritizedSchedulingTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+    Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+    for (ReplicaId replicaId : replicaIds) {
+      for (ReplicaId peerReplicaId : replicaId.getPeerReplicaIds()) {
+        RemoteReplicaInfo remoteReplicaInfo = new RemoteReplicaInfo(peerReplicaId, replicaId,
+            new MockStore(new ArrayList<MessageInfo>(), new ArrayList<ByteBuffer>()), new MockFindToken(0, 0), 1000000,
+            SystemTime.getInstance(), new Port(peerReplicaId.getDataNodeId().getPort(), PortType.PLAINTEXT));
+        List<RemoteReplicaInfo> remoteReplicaInfoList = replicasToReplicate.get(peerReplicaId.getDataNodeId());
+        if (remoteReplicaInfoList == null) {
+          remoteReplicaInfoList = new ArrayList<RemoteReplicaInfo>();
+          replicasToReplicate.put(peerReplicaId.getDataNodeId(), remoteReplicaInfoList);
+        }
+        remoteReplicaInfoList.add(remoteReplicaInfo);
+      }
+    }
+    Assert.assertTrue("Test needs at least 3 remote nodes", replicasToReplicate.size() >= 3);
+    List<List<RemoteReplicaInfo>> replicasToReplicatePerNode =
+        new ArrayList<List<RemoteReplicaInfo>>(replicasToReplicate.values());
+    List<RemoteReplicaInfo> mostLaggingReplicas = replicasToReplicatePerNode.get(0);
+    List<RemoteReplicaInfo> laggingReplicas = replicasToReplicatePerNode.get(1);
+    mostLaggingReplicas.get(0).setLocalLagFromRemoteInBytes(100 * 1024 * 1024);
+    laggingReplicas.get(0).setLocalLagFromRemoteInBytes(10 * 1024 * 1024);
+
+    Properties properties = new Properties();
+    properties.setProperty("replication.lag.prioritized.scheduling.enabled", "true");
+    properties.setProperty("replication.max.skipped.iterations.for.caught.up.node", "2");
+    ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+    ReplicationMetrics replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+    ReplicaThread replicaThread =
+        new ReplicaThread("threadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+            new AtomicInteger(0), localNode, null, config, replicationMetrics, null, null, false,
+            clusterMap.getMetricRegistry(), false, localNode.getDatacenterName(), new ResponseHandler(clusterMap),
+            new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                SystemTime.getInstance()), null);
+
+    int numCaughtUpNodes = replicasToReplicatePerNode.size() - 2;
+    // caught up nodes are skipped for 2 iterations and visited in the third
+    for (int i = 0; i < 3; i++) {
+      List<List<RemoteReplicaInfo>> scheduled = replicaThread.scheduleIteration(replicasToReplicatePerNode);
+      Assert.assertEquals("Most lagging node should be first", mostLaggingReplicas, scheduled.get(0));
+      Assert.assertEquals("Lagging node should be second", laggingReplicas, scheduled.get(1));
+      Assert.assertEquals("Unexpected number of nodes scheduled", i < 2 ? 2 : 2 + numCaughtUpNodes, scheduled.size());
+    }
+    Assert.assertEquals("Unexpected skip count", 2 * numCaughtUpNodes,
+        replicationMetrics.replicationCaughtUpNodeSkipCount.getCount());
+
+    // once all nodes are caught up, all of them are visited in every iteration
+    mostLaggingReplicas.get(0).setLocalLagFromRemoteInBytes(0);
+    laggingReplicas.get(0).setLocalLagFromRemoteInBytes(0);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("All nodes should be scheduled", replicasToReplicatePerNode.size(),
+          replicaThread.scheduleIteration(replicasToReplicatePerNode).size());
+    }
+  }
+
+  /**
+   * Tests that a remote node is replicated from in bootstrap mode, with the bootstrap fetch size split between its
+   * replicas, only while the local replicas lag behind it by more than the configured threshold.
+   */
+  @Test
+  public void replicaThreadBootstrapStateTest()
+      throws IOException {
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+    ReplicaId peerReplicaId = replicaIds.get(0).getPeerReplicaIds().get(0);
+    DataNodeId remoteNode = peerReplicaId.getDataNodeId();
+    RemoteReplicaInfo remoteReplicaInfo = new RemoteReplicaInfo(peerReplicaId, replicaIds.get(0),
+        new MockStore(new ArrayList<MessageInfo>(), new ArrayList<ByteBuffer>()), new MockFindToken(0, 0), 1000000,
+        SystemTime.getInstance(), new Port(remoteNode.getPort(), PortType.PLAINTEXT));
+    List<RemoteReplicaInfo> remoteReplicaInfoList = new ArrayList<RemoteReplicaInfo>();
+    remoteReplicaInfoList.add(remoteReplicaInfo);
+    Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+    replicasToReplicate.put(remoteNode, remoteReplicaInfoList);
+
+    Properties properties = new Properties();
+    properties.setProperty("replication.bootstrap.fetch.size.in.bytes", "67108864");
+    properties.setProperty("replication.bootstrap.min.lag.in.bytes", "1000");
+    ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+    ReplicationMetrics replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+    ReplicaThread replicaThread =
+        new ReplicaThread("threadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+            new AtomicInteger(0), localNode, null, config, replicationMetrics, null, null, false,
+            clusterMap.getMetricRegistry(), false, localNode.getDatacenterName(), new ResponseHandler(clusterMap),
+            new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                SystemTime.getInstance()), null);
+
+    Assert.assertFalse("Should not bootstrap without lag",
+        replicaThread.updateBootstrapState(remoteReplicaInfoList, remoteNode));
+    Assert.assertEquals(0, replicationMetrics.replicationBootstrapNodeCount.getCount());
+    remoteReplicaInfo.setLocalLagFromRemoteInBytes(1000);
+    Assert.assertTrue("Should bootstrap when lagging", replicaThread.updateBootstrapState(remoteReplicaInfoList,
+        remoteNode));
+    Assert.assertTrue("Should still bootstrap", replicaThread.updateBootstrapState(remoteReplicaInfoList, remoteNode));
+    Assert.assertEquals(1, replicationMetrics.replicationBootstrapNodeCount.getCount());
+    Assert.assertEquals(67108864, replicaThread.getFetchSizeInBytes(remoteReplicaInfoList, remoteNode));
+    // the bootstrap fetch size is split between the replicas on the node
+    ReplicaId otherPeerReplicaId = null;
+    for (ReplicaId replicaId : replicaIds.get(1).getPeerReplicaIds()) {
+      if (replicaId.getDataNodeId().equals(remoteNode)) {
+        otherPeerReplicaId = replicaId;
+      }
+    }
+    List<RemoteReplicaInfo> twoRemoteReplicaInfos = new ArrayList<RemoteReplicaInfo>(remoteReplicaInfoList);
+    twoRemoteReplicaInfos.add(new RemoteReplicaInfo(otherPeerReplicaId, replicaIds.get(1),
+        new MockStore(new ArrayList<MessageInfo>(), new ArrayList<ByteBuffer>()), new MockFindToken(0, 0), 1000000,
+        SystemTime.getInstance(), new Port(remoteNode.getPort(), PortType.PLAINTEXT)));
+    Assert.assertEquals(33554432, replicaThread.getFetchSizeInBytes(twoRemoteReplicaInfos, remoteNode));
+    remoteReplicaInfo.setLocalLagFromRemoteInBytes(999);
+    Assert.assertFalse("Should stop bootstrapping once caught up",
+        replicaThread.updateBootstrapState(remoteReplicaInfoList, remoteNode));
+    Assert.assertEquals(0, replicationMetrics.replicationBootstrapNodeCount.getCount());
+    Assert.assertEquals(config.replicationFetchSizeInBytes,
+        replicaThread.getFetchSizeInBytes(remoteReplicaInfoList, remoteNode));
+  }
+
   @Test
   public void replicaTokenTest()
       throws InterruptedException {
@@ -883,7 +769,9 @@ public class ReplicationTest {
               new AtomicInteger(0), clusterMap.getDataNodeId("localhost", dataNode1.getPort()),
               new MockConnectionPool(replicaStores, replicaBuffers, 3), config, replicationMetrics, null,
               storeKeyFactory, true, clusterMap.getMetricRegistry(), false, "localhost",
-              new ResponseHandler(clusterMap));
+              new ResponseHandler(clusterMap),
+              new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                  SystemTime.getInstance()), null);
       List<ReplicaThread.ExchangeMetadataResponse> response = replicaThread.exchangeMetadata(
           new MockConnection("localhost", dataNode2.getPort(), replicaStores.get("localhost" + dataNode2.getPort()),
               replicaBuffers.get("localhost" + dataNode2.getPort()), 5), replicasToReplicate.get(dataNodeId));
@@ -1113,7 +1001,9 @@ public class ReplicationTest {
               new AtomicInteger(0), clusterMap.getDataNodeId("localhost", dataNode1.getPort()),
               new MockConnectionPool(replicaStores, replicaBuffers, 3), config, replicationMetrics, null,
               storeKeyFactory, true, clusterMap.getMetricRegistry(), false, "localhost",
-              new ResponseHandler(clusterMap));
+              new ResponseHandler(clusterMap),
+              new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                  SystemTime.getInstance()), null);
       List<ReplicaThread.ExchangeMetadataResponse> response = replicaThread.exchangeMetadata(
           new MockConnection("localhost", dataNode2.getPort(), replicaStores.get("localhost" + dataNode2.getPort()),
               replicaBuffers.get("localhost" + dataNode2.getPort()), 5), replicasToReplicate.get(dataNodeId));
@@ -1229,6 +1119,572 @@ public class ReplicationTest {
     }
   }
 
+  /**
+   * Tests that the messages written to the local store by the local writer are written in the order they were
+   * fetched, that the token of a replica is only advanced once the messages before it are written and that a failed
+   * write is handled by the replica thread like a failure to write on the replica thread itself, after which the
+   * messages are fetched and written again.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadLocalWriterTest()
+      throws Exception {
+    LocalWriterTestSetup setup = new LocalWriterTestSetup(10);
+    setup.localStore.failuresToInject.set(1);
+    Thread thread = Utils.newThread(setup.replicaThread, false);
+    thread.start();
+    setup.awaitWrites(setup.remoteMessageInfos.size() - 1);
+    setup.replicaThread.shutdown();
+
+    Assert.assertEquals("Unexpected number of messages in the local store", setup.remoteMessageInfos.size(),
+        setup.localMessageInfos.size());
+    for (int i = 0; i < setup.remoteMessageInfos.size(); i++) {
+      Assert.assertEquals("Messages should be written in the order they were fetched",
+          setup.remoteMessageInfos.get(i).getStoreKey(), setup.localMessageInfos.get(i).getStoreKey());
+    }
+    Assert.assertFalse("Token should not be ahead of the messages written", setup.localStore.tokenAheadOfWrites);
+    Assert.assertEquals("Token should have advanced to the last message", setup.remoteMessageInfos.size() - 1,
+        ((MockFindToken) setup.remoteReplicaInfo.getToken()).getIndex());
+    Assert.assertEquals("The failed write should be counted as a replication error", 1,
+        setup.replicationMetrics.replicationErrors.getCount());
+    Assert.assertEquals("The connection should be destroyed after the failed write", 1,
+        setup.connectionPool.destroyedConnectionCount.get());
+  }
+
+  /**
+   * Tests that the messages queued for the local writer are written when the replica thread shuts down.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadLocalWriterShutdownTest()
+      throws Exception {
+    LocalWriterTestSetup setup = new LocalWriterTestSetup(10);
+    setup.localStore.gate = new CountDownLatch(1);
+    Thread thread = Utils.newThread(setup.replicaThread, false);
+    thread.start();
+    // hold the first write back until the replica thread is told to shut down
+    while (setup.localStore.putCount.get() == 0) {
+      Thread.sleep(10);
+    }
+    final LocalWriterTestSetup shutdownSetup = setup;
+    final CountDownLatch shutdownLatch = new CountDownLatch(1);
+    Utils.newThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          shutdownSetup.replicaThread.shutdown();
+        } catch (InterruptedException e) {
+          Assert.fail("Shutdown was interrupted");
+        }
+        shutdownLatch.countDown();
+      }
+    }, false).start();
+    Assert.assertFalse("Shutdown should wait for the queued messages to be written",
+        shutdownLatch.await(100, TimeUnit.MILLISECONDS));
+    setup.localStore.gate.countDown();
+    Assert.assertTrue("Shutdown did not complete", shutdownLatch.await(10, TimeUnit.SECONDS));
+
+    Assert.assertEquals("Every batch of fetched messages should be written",
+        setup.connectionPool.getRequestCount.get(), setup.localStore.putCount.get());
+    Assert.assertEquals("Every write should succeed", setup.localStore.putCount.get(),
+        setup.localStore.writtenCount.get());
+    Assert.assertFalse("Token should not be ahead of the messages written", setup.localStore.tokenAheadOfWrites);
+  }
+
+  /**
+   * Tests that the time a remote node holds metadata requests waiting for new writes is not counted as time the replica
+   * thread spent replicating from it.
+   * @throws Exception
+   */
+  @Test
+  public void replicaThreadReplicationTimeExcludesRemoteWaitTest()
+      throws Exception {
+    final long remoteWaitTimeInMs = 200;
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+    ReplicaId localReplicaId = replicaIds.get(0);
+    ReplicaId peerReplicaId = localReplicaId.getPeerReplicaIds().get(0);
+    final DataNodeId remoteNode = peerReplicaId.getDataNodeId();
+    RemoteReplicaInfo remoteReplicaInfo = new RemoteReplicaInfo(peerReplicaId, localReplicaId, new MockStore(),
+        new MockFindToken(0, 0), 1000000, SystemTime.getInstance(),
+        new Port(remoteNode.getPort(), PortType.PLAINTEXT));
+    Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+    replicasToReplicate.put(remoteNode, new ArrayList<RemoteReplicaInfo>(Arrays.asList(remoteReplicaInfo)));
+    final Map<PartitionId, List<MessageInfo>> messageInfos = new HashMap<PartitionId, List<MessageInfo>>();
+    messageInfos.put(localReplicaId.getPartitionId(), new ArrayList<MessageInfo>());
+    final Map<PartitionId, List<ByteBuffer>> messages = new HashMap<PartitionId, List<ByteBuffer>>();
+    messages.put(localReplicaId.getPartitionId(), new ArrayList<ByteBuffer>());
+    final AtomicInteger heldRequestCount = new AtomicInteger(0);
+    // the remote node holds every metadata request and responds that it did
+    ConnectionPool connectionPool = new MockConnectionPool(null, null, 0) {
+      @Override
+      public ConnectedChannel checkOutConnection(String host, Port port, long timeout) {
+        return new MockConnection(host, port.getPort(), messageInfos, messages, 2) {
+          @Override
+          public ChannelOutput receive()
+              throws IOException {
+            if (metadataRequest == null) {
+              return super.receive();
+            }
+            List<ReplicaMetadataResponseInfo> responseInfos = new ArrayList<ReplicaMetadataResponseInfo>();
+            for (ReplicaMetadataRequestInfo requestInfo : metadataRequest.getReplicaMetadataRequestInfoList()) {
+              responseInfos.add(new ReplicaMetadataResponseInfo(requestInfo.getPartitionId(), new MockFindToken(0, 0),
+                  new ArrayList<MessageInfo>(), 0));
+            }
+            metadataRequest = null;
+            try {
+              Thread.sleep(remoteWaitTimeInMs);
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            heldRequestCount.incrementAndGet();
+            return toChannelOutput(
+                new ReplicaMetadataResponse(1, "replicametadata", ServerErrorCode.No_Error, responseInfos, true,
+                    remoteWaitTimeInMs));
+          }
+        };
+      }
+    };
+    ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(new Properties()));
+    ReplicationMetrics replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+    ReplicaThread replicaThread =
+        new ReplicaThread("threadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+            new AtomicInteger(0), localNode, connectionPool, config, replicationMetrics, null, null, false,
+            clusterMap.getMetricRegistry(), false, localNode.getDatacenterName(), new ResponseHandler(clusterMap),
+            new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                SystemTime.getInstance()), null);
+    Utils.newThread(replicaThread, false).start();
+    while (heldRequestCount.get() < 2) {
+      Thread.sleep(10);
+    }
+    replicaThread.shutdown();
+
+    Long replicationTimeInMs = replicaThread.drainReplicationTimesInMs().get(remoteNode);
+    Assert.assertNotNull("Replication time should have been recorded", replicationTimeInMs);
+    Assert.assertTrue("Replication time " + replicationTimeInMs + " should not include the remote wait time",
+        replicationTimeInMs < heldRequestCount.get() * remoteWaitTimeInMs / 2);
+  }
+
+  /**
+   * Tests that keys that the local replica missed are found by comparing its key summary with that of the remote
+   * replica and are fetched, and that nothing more is requested once the summaries match.
+   * @throws Exception
+   */
+  @Test
+  public void reconcileKeysTest()
+      throws Exception {
+    MockClusterMap clusterMap = new MockClusterMap();
+    DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+    ReplicaId localReplicaId = replicaIds.get(0);
+    ReplicaId peerReplicaId = localReplicaId.getPeerReplicaIds().get(0);
+    DataNodeId remoteNode = peerReplicaId.getDataNodeId();
+    PartitionId partitionId = localReplicaId.getPartitionId();
+
+    Random random = new Random();
+    List<MessageInfo> remoteMessageInfos = new ArrayList<MessageInfo>();
+    List<ByteBuffer> remoteMessages = new ArrayList<ByteBuffer>();
+    List<MessageInfo> localMessageInfos = new ArrayList<MessageInfo>();
+    List<ByteBuffer> localMessages = new ArrayList<ByteBuffer>();
+    int messageCount = 6;
+    for (int i = 0; i < messageCount; i++) {
+      BlobId id = new BlobId(partitionId);
+      ByteBuffer message = constructTestBlobInMessageFormat(id, 100, random);
+      remoteMessageInfos.add(new MessageInfo(id, message.limit()));
+      remoteMessages.add(message);
+      // the local replica missed every other message
+      if (i % 2 == 0) {
+        localMessageInfos.add(remoteMessageInfos.get(i));
+        localMessages.add(message.duplicate());
+      }
+    }
+    MockStore localStore = new MockStore(localMessageInfos, localMessages);
+    RemoteReplicaInfo remoteReplicaInfo =
+        new RemoteReplicaInfo(peerReplicaId, localReplicaId, localStore, new MockFindToken(0, 0), 1000000,
+            SystemTime.getInstance(), new Port(remoteNode.getPort(), PortType.PLAINTEXT));
+    Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate = new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+    replicasToReplicate.put(remoteNode, Arrays.asList(remoteReplicaInfo));
+    Map<PartitionId, List<MessageInfo>> remoteMessageInfosByPartition = new HashMap<PartitionId, List<MessageInfo>>();
+    remoteMessageInfosByPartition.put(partitionId, remoteMessageInfos);
+    Map<PartitionId, List<ByteBuffer>> remoteMessagesByPartition = new HashMap<PartitionId, List<ByteBuffer>>();
+    remoteMessagesByPartition.put(partitionId, remoteMessages);
+    KeySummaryConnection connection = new KeySummaryConnection(remoteNode, remoteMessageInfosByPartition,
+        remoteMessagesByPartition, new MockStore(remoteMessageInfos, new ArrayList<ByteBuffer>(remoteMessages)));
+
+    Properties properties = new Properties();
+    properties.setProperty("replication.key.reconciliation.bucket.count", "4");
+    ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+    ReplicationMetrics replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+    ReplicaThread replicaThread =
+        new ReplicaThread("threadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+            new AtomicInteger(0), localNode, null, config, replicationMetrics, null, null, false,
+            clusterMap.getMetricRegistry(), false, localNode.getDatacenterName(), new ResponseHandler(clusterMap),
+            new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+                SystemTime.getInstance()), null);
+
+    replicaThread.reconcileKeys(connection, remoteReplicaInfo, remoteNode);
+    List<StoreKey> remoteKeys = new ArrayList<StoreKey>();
+    for (MessageInfo messageInfo : remoteMessageInfos) {
+      remoteKeys.add(messageInfo.getStoreKey());
+    }
+    Assert.assertEquals("The missed keys should have been fetched", 0, localStore.findMissingKeys(remoteKeys).size());
+    Assert.assertEquals("Unexpected number of messages in the local store", messageCount, localMessageInfos.size());
+    Assert.assertEquals("The missed keys should have been counted", messageCount / 2,
+        replicationMetrics.keyReconciliationRepairedKeyCount.getCount());
+    Assert.assertEquals("The summary and the keys should have been requested", 2, connection.keySummaryRequestCount);
+
+    replicaThread.reconcileKeys(connection, remoteReplicaInfo, remoteNode);
+    Assert.assertEquals("Only the summary should have been requested", 3, connection.keySummaryRequestCount);
+    Assert.assertEquals("No key should have been fetched", messageCount, localMessageInfos.size());
+    Assert.assertEquals("No key should have been repaired", messageCount / 2,
+        replicationMetrics.keyReconciliationRepairedKeyCount.getCount());
+  }
+
+  /**
+   * Tests that the replication manager starts replicating from replicas that are added to the cluster map as peers of
+   * the local replicas, and ignores added replicas of partitions that are not on this node or that are on this node.
+   * @throws Exception
+   */
+  @Test
+  public void addedReplicasListenerTest()
+      throws Exception {
+    final List<ClusterMapChangeListener> listeners = new ArrayList<ClusterMapChangeListener>();
+    MockClusterMap clusterMap = new MockClusterMap() {
+      @Override
+      public void registerClusterMapListener(ClusterMapChangeListener listener) {
+        listeners.add(listener);
+      }
+    };
+    MockDataNodeId localNode = (MockDataNodeId) clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+    Map<PartitionId, MockStore> stores = new HashMap<PartitionId, MockStore>();
+    for (ReplicaId replicaId : replicaIds) {
+      stores.put(replicaId.getPartitionId(), new MockStore());
+    }
+    String remoteDatacenter = null;
+    for (DataNodeId dataNodeId : clusterMap.getDataNodeIds()) {
+      if (!dataNodeId.getDatacenterName().equals(localNode.getDatacenterName())) {
+        remoteDatacenter = dataNodeId.getDatacenterName();
+        break;
+      }
+    }
+    Assert.assertNotNull("Test needs a remote datacenter", remoteDatacenter);
+
+    VerifiableProperties properties = new VerifiableProperties(new Properties());
+    StoreConfig storeConfig = new StoreConfig(properties);
+    Scheduler scheduler = new Scheduler(1, false);
+    scheduler.startup();
+    StoreKeyFactory storeKeyFactory = new BlobIdFactory(clusterMap);
+    MetricRegistry registry = new MetricRegistry();
+    MockStoreManager storeManager =
+        new MockStoreManager(storeConfig, scheduler, registry, replicaIds, storeKeyFactory, stores);
+    // no connection can be checked out, so that the replica threads stay idle
+    ConnectionPool connectionPool = new MockConnectionPool(null, null, 0) {
+      @Override
+      public ConnectedChannel checkOutConnection(String host, Port port, long timeout)
+          throws IOException, InterruptedException, ConnectionPoolTimeoutException {
+        Thread.sleep(10);
+        throw new ConnectionPoolTimeoutException("No connections in test");
+      }
+    };
+    ReplicationManager replicationManager =
+        new ReplicationManager(new ReplicationConfig(properties), new SSLConfig(properties), storeConfig,
+            storeManager, storeKeyFactory, clusterMap, scheduler, localNode, connectionPool, registry, null);
+    try {
+      replicationManager.start();
+      Assert.assertEquals("Replication manager should have registered a listener", 1, listeners.size());
+      List<ReplicaThread> replicaThreads = replicationManager.getReplicaThreads(remoteDatacenter);
+      Assert.assertFalse("There should be replica threads for " + remoteDatacenter, replicaThreads.isEmpty());
+
+      MockDataNodeId addedNode = new MockDataNodeId(getPorts(64000), localNode.getMountPaths(), remoteDatacenter);
+      PartitionId localPartition = replicaIds.get(0).getPartitionId();
+      ReplicaId addedPeerReplica = new MockReplicaId(addedNode.getPort(), localPartition, addedNode, 0);
+      // a partition that is not on this node
+      MockDataNodeId otherNode = new MockDataNodeId(getPorts(64001), localNode.getMountPaths(), remoteDatacenter);
+      MockPartitionId otherPartition = new MockPartitionId(1000, Arrays.asList(otherNode), 0);
+      ReplicaId addedLocalReplica = new MockReplicaId(localNode.getPort(), otherPartition, localNode, 0);
+      listeners.get(0)
+          .onReplicasAdded(Arrays.asList(addedLocalReplica, otherPartition.getReplicaIds().get(0), addedPeerReplica));
+
+      int assignedCount = 0;
+      for (String datacenter : Arrays.asList(localNode.getDatacenterName(), remoteDatacenter)) {
+        for (ReplicaThread replicaThread : replicationManager.getReplicaThreads(datacenter)) {
+          Set<DataNodeId> remoteNodes = replicaThread.getRemoteNodes();
+          if (remoteNodes.contains(addedNode)) {
+            assignedCount++;
+          }
+          Assert.assertFalse("Replica of a partition that is not local should be ignored",
+              remoteNodes.contains(otherNode));
+          Assert.assertFalse("Replica added to this node should be ignored", remoteNodes.contains(localNode));
+        }
+      }
+      Assert.assertEquals("Added node should be assigned to one replica thread", 1, assignedCount);
+      // the added peer replica is known to the replication manager, the replica added to this node is not
+      replicationManager.updateTotalBytesReadByRemoteReplica(localPartition, addedNode.getHostname(),
+          addedPeerReplica.getReplicaPath(), 100);
+      Assert.assertEquals(0, getUnknownRemoteReplicaRequestCount(registry));
+      replicationManager.updateTotalBytesReadByRemoteReplica(localPartition, localNode.getHostname(),
+          addedLocalReplica.getReplicaPath(), 100);
+      Assert.assertEquals(1, getUnknownRemoteReplicaRequestCount(registry));
+    } finally {
+      replicationManager.shutdown();
+      scheduler.shutdown();
+      clusterMap.cleanup();
+    }
+  }
+
+  /**
+   * @param port the plain text port.
+   * @return the list of ports of a data node with the given plain text port.
+   */
+  private ArrayList<Port> getPorts(int port) {
+    ArrayList<Port> ports = new ArrayList<Port>();
+    ports.add(new Port(port, PortType.PLAINTEXT));
+    return ports;
+  }
+
+  /**
+   * @param registry the {@link MetricRegistry} of the replication manager.
+   * @return the number of requests from remote replicas that the replication manager did not know.
+   */
+  private long getUnknownRemoteReplicaRequestCount(MetricRegistry registry) {
+    return registry.getCounters()
+        .get(MetricRegistry.name(ReplicaThread.class, "UnknownRemoteReplicaRequestCount"))
+        .getCount();
+  }
+
+  /**
+   * A connection to a remote node that answers {@link KeySummaryRequest}s from the store of the remote replica, as
+   * well as the requests answered by {@link MockConnection}.
+   */
+  private class KeySummaryConnection extends MockConnection {
+    final MockStore remoteStore;
+    KeySummaryResponse keySummaryResponse;
+    int keySummaryRequestCount = 0;
+
+    KeySummaryConnection(DataNodeId remoteNode, Map<PartitionId, List<MessageInfo>> messageInfos,
+        Map<PartitionId, List<ByteBuffer>> messages, MockStore remoteStore) {
+      super(remoteNode.getHostname(), remoteNode.getPort(), messageInfos, messages, 2);
+      this.remoteStore = remoteStore;
+    }
+
+    @Override
+    public void send(Send request)
+        throws IOException {
+      if (!(request instanceof KeySummaryRequest)) {
+        super.send(request);
+        return;
+      }
+      keySummaryRequestCount++;
+      KeySummaryRequest keySummaryRequest = (KeySummaryRequest) request;
+      try {
+        if (keySummaryRequest.isKeySummaryRequested()) {
+          keySummaryResponse = new KeySummaryResponse(keySummaryRequest.getCorrelationId(),
+              keySummaryRequest.getClientId(), remoteStore.getKeySummary(keySummaryRequest.getBucketCount()));
+        } else {
+          List<StoreKey> keys = new ArrayList<StoreKey>();
+          IFilter keyFilter = keySummaryRequest.getKeyFilter();
+          for (MessageInfo messageInfo : remoteStore.getEntriesInBuckets(keySummaryRequest.getBucketCount(),
+              new HashSet<Integer>(keySummaryRequest.getBuckets()))) {
+            if (!keyFilter.isPresent(ByteBuffer.wrap(messageInfo.getStoreKey().toBytes()))) {
+              keys.add(messageInfo.getStoreKey());
+            }
+          }
+          keyFilter.close();
+          keySummaryResponse =
+              new KeySummaryResponse(keySummaryRequest.getCorrelationId(), keySummaryRequest.getClientId(), keys);
+        }
+      } catch (StoreException e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public ChannelOutput receive()
+        throws IOException {
+      if (keySummaryResponse == null) {
+        return super.receive();
+      }
+      ChannelOutput channelOutput = toChannelOutput(keySummaryResponse);
+      keySummaryResponse = null;
+      return channelOutput;
+    }
+  }
+
+  /**
+   * A replica thread that writes to the local store on its local writer and replicates one local replica from one
+   * remote replica that has messages the local replica does not. The remote replica returns two entries per metadata
+   * request, the first of which was returned by the previous request, so that each batch fetches a single message.
+   */
+  private class LocalWriterTestSetup {
+    final List<MessageInfo> remoteMessageInfos = new ArrayList<MessageInfo>();
+    final List<MessageInfo> localMessageInfos = new ArrayList<MessageInfo>();
+    final GatedStore localStore;
+    final RemoteReplicaInfo remoteReplicaInfo;
+    final LocalWriteConnectionPool connectionPool;
+    final ReplicationMetrics replicationMetrics;
+    final ReplicaThread replicaThread;
+
+    /**
+     * @param messageCount the number of messages on the remote replica. The local replica has the first of them.
+     * @throws Exception
+     */
+    LocalWriterTestSetup(int messageCount)
+        throws Exception {
+      MockClusterMap clusterMap = new MockClusterMap();
+      DataNodeId localNode = clusterMap.getDataNodeIds().get(0);
+      List<ReplicaId> replicaIds = clusterMap.getReplicaIds(localNode);
+      ReplicaId localReplicaId = replicaIds.get(0);
+      ReplicaId peerReplicaId = localReplicaId.getPeerReplicaIds().get(0);
+      DataNodeId remoteNode = peerReplicaId.getDataNodeId();
+      PartitionId partitionId = localReplicaId.getPartitionId();
+
+      Random random = new Random();
+      List<ByteBuffer> remoteMessages = new ArrayList<ByteBuffer>();
+      for (int i = 0; i < messageCount; i++) {
+        BlobId id = new BlobId(partitionId);
+        ByteBuffer message = constructTestBlobInMessageFormat(id, 100, random);
+        remoteMessageInfos.add(new MessageInfo(id, message.limit()));
+        remoteMessages.add(message);
+      }
+      List<ByteBuffer> localMessages = new ArrayList<ByteBuffer>();
+      localMessageInfos.add(remoteMessageInfos.get(0));
+      localMessages.add(remoteMessages.get(0));
+      localStore = new GatedStore(localMessageInfos, localMessages, remoteMessageInfos);
+      remoteReplicaInfo =
+          new RemoteReplicaInfo(peerReplicaId, localReplicaId, localStore, new MockFindToken(0, 0), 1000000,
+              SystemTime.getInstance(), new Port(remoteNode.getPort(), PortType.PLAINTEXT));
+      localStore.remoteReplicaInfo = remoteReplicaInfo;
+      List<RemoteReplicaInfo> remoteReplicaInfoList = new ArrayList<RemoteReplicaInfo>();
+      remoteReplicaInfoList.add(remoteReplicaInfo);
+      Map<DataNodeId, List<RemoteReplicaInfo>> replicasToReplicate =
+          new HashMap<DataNodeId, List<RemoteReplicaInfo>>();
+      replicasToReplicate.put(remoteNode, remoteReplicaInfoList);
+
+      Map<PartitionId, List<MessageInfo>> remoteMessageInfosByPartition = new HashMap<PartitionId, List<MessageInfo>>();
+      remoteMessageInfosByPartition.put(partitionId, remoteMessageInfos);
+      Map<PartitionId, List<ByteBuffer>> remoteMessagesByPartition = new HashMap<PartitionId, List<ByteBuffer>>();
+      remoteMessagesByPartition.put(partitionId, remoteMessages);
+      connectionPool = new LocalWriteConnectionPool(remoteMessageInfosByPartition, remoteMessagesByPartition);
+
+      Properties properties = new Properties();
+      properties.setProperty("replication.local.write.queue.size", "2");
+      properties.setProperty("replication.wait.time.between.replicas.ms", "0");
+      ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+      replicationMetrics = new ReplicationMetrics(new MetricRegistry(), replicaIds);
+      replicaThread = new ReplicaThread("threadtest", replicasToReplicate, new MockFindTokenFactory(), clusterMap,
+          new AtomicInteger(0), localNode, connectionPool, config, replicationMetrics, null, null, false,
+          clusterMap.getMetricRegistry(), false, localNode.getDatacenterName(), new ResponseHandler(clusterMap),
+          new ReplicationThrottler(config, replicationMetrics, new ArrayList<String>(), new ArrayList<String>(),
+              SystemTime.getInstance()), null);
+    }
+
+    /**
+     * Waits until the given number of writes to the local store have succeeded.
+     * @param writeCount the number of writes to wait for.
+     * @throws InterruptedException
+     */
+    void awaitWrites(int writeCount)
+        throws InterruptedException {
+      long deadlineInMs = SystemTime.getInstance().milliseconds() + 10000;
+      while (localStore.writtenCount.get() < writeCount) {
+        Assert.assertTrue("Writes did not complete", SystemTime.getInstance().milliseconds() < deadlineInMs);
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  /**
+   * A {@link MockStore} whose writes can be held back and made to fail, and that checks that the token of the replica
+   * it is replicated into is never ahead of the messages written to it.
+   */
+  private class GatedStore extends MockStore {
+    final List<MessageInfo> remoteMessageInfos;
+    final AtomicInteger failuresToInject = new AtomicInteger(0);
+    final AtomicInteger putCount = new AtomicInteger(0);
+    final AtomicInteger writtenCount = new AtomicInteger(0);
+    volatile CountDownLatch gate = new CountDownLatch(0);
+    volatile RemoteReplicaInfo remoteReplicaInfo;
+    volatile boolean tokenAheadOfWrites = false;
+
+    GatedStore(List<MessageInfo> messageInfos, List<ByteBuffer> messages, List<MessageInfo> remoteMessageInfos) {
+      super(messageInfos, messages);
+      this.remoteMessageInfos = remoteMessageInfos;
+    }
+
+    @Override
+    public void put(MessageWriteSet messageSetToWrite)
+        throws StoreException {
+      putCount.incrementAndGet();
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      // the messages before the token were returned by the remote replica, so they must have been written
+      int tokenIndex = ((MockFindToken) remoteReplicaInfo.getToken()).getIndex();
+      List<StoreKey> keysBeforeToken = new ArrayList<StoreKey>();
+      for (int i = 0; i < tokenIndex; i++) {
+        keysBeforeToken.add(remoteMessageInfos.get(i).getStoreKey());
+      }
+      if (!findMissingKeys(keysBeforeToken).isEmpty()) {
+        tokenAheadOfWrites = true;
+      }
+      if (failuresToInject.getAndDecrement() > 0) {
+        throw new IllegalStateException("Injected failure");
+      }
+      super.put(messageSetToWrite);
+      writtenCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * A connection pool for a single remote node that counts the requests that fetch messages from it and the connections
+   * to it that are destroyed.
+   */
+  private class LocalWriteConnectionPool extends MockConnectionPool {
+    final Map<PartitionId, List<MessageInfo>> messageInfos;
+    final Map<PartitionId, List<ByteBuffer>> messages;
+    final AtomicInteger getRequestCount = new AtomicInteger(0);
+    final AtomicInteger destroyedConnectionCount = new AtomicInteger(0);
+
+    LocalWriteConnectionPool(Map<PartitionId, List<MessageInfo>> messageInfos,
+        Map<PartitionId, List<ByteBuffer>> messages) {
+      super(null, null, 2);
+      this.messageInfos = messageInfos;
+      this.messages = messages;
+    }
+
+    @Override
+    public ConnectedChannel checkOutConnection(String host, Port port, long timeout) {
+      // sending a message consumes its buffer, so each connection sends duplicates of the messages
+      Map<PartitionId, List<ByteBuffer>> messagesToSend = new HashMap<PartitionId, List<ByteBuffer>>();
+      for (Map.Entry<PartitionId, List<ByteBuffer>> entry : messages.entrySet()) {
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        for (ByteBuffer buffer : entry.getValue()) {
+          buffers.add(buffer.duplicate());
+        }
+        messagesToSend.put(entry.getKey(), buffers);
+      }
+      return new MockConnection(host, port.getPort(), messageInfos, messagesToSend, maxEntriesToReturn) {
+        @Override
+        public void send(Send request)
+            throws IOException {
+          if (request instanceof GetRequest && !((GetRequest) request).getPartitionInfoList().isEmpty()) {
+            getRequestCount.incrementAndGet();
+          }
+          super.send(request);
+        }
+      };
+    }
+
+    @Override
+    public void destroyConnection(ConnectedChannel connectedChannel) {
+      destroyedConnectionCount.incrementAndGet();
+    }
+  }
+
   private ByteBuffer constructTestBlobInMessageFormat(BlobId id, long blobSize, Random random)
       throws MessageFormatException, IOException {
     return constructEntireMessageForTestBlob(id, blobSize, random, "test");
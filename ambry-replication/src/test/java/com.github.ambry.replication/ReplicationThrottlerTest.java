@@ -0,0 +1,109 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.replication;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.utils.MockTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link ReplicationThrottler}.
+ */
+public class ReplicationThrottlerTest {
+  private static final String MOUNT_PATH = "/mnt0";
+  private static final long MAX_RATE = 10000;
+  private static final long MIN_RATE = 1000;
+
+  /**
+   * Tests that the write rate of a disk is lowered when foreground requests are slow and raised when they are not.
+   */
+  @Test
+  public void testLocalWriteRateAdaptation() {
+    Properties properties = new Properties();
+    properties.setProperty("replication.local.write.max.bytes.per.sec.per.disk", Long.toString(MAX_RATE));
+    properties.setProperty("replication.local.write.min.bytes.per.sec.per.disk", Long.toString(MIN_RATE));
+    properties.setProperty("replication.foreground.latency.target.ms", "10");
+    MockTime time = new MockTime();
+    ReplicationThrottler throttler = createThrottler(properties, time);
+    Assert.assertEquals("Rate should start at the max", MAX_RATE, throttler.getLocalWriteRateLimit(MOUNT_PATH));
+    Assert.assertEquals("Unknown disks should not be throttled", -1, throttler.getLocalWriteRateLimit("/unknown"));
+
+    // slow requests halve the rate down to the min
+    long expectedRate = MAX_RATE;
+    for (int i = 0; i < 5; i++) {
+      time.currentMilliseconds += ReplicationThrottler.ADJUSTMENT_INTERVAL_MS;
+      throttler.onForegroundRequest(MOUNT_PATH, 11);
+      expectedRate = Math.max(MIN_RATE, expectedRate / 2);
+      Assert.assertEquals("Unexpected rate", expectedRate, throttler.getLocalWriteRateLimit(MOUNT_PATH));
+    }
+    // no slow requests within an interval does not change the rate until the interval ends
+    throttler.onForegroundRequest(MOUNT_PATH, 5);
+    Assert.assertEquals("Rate should not change within an interval", MIN_RATE,
+        throttler.getLocalWriteRateLimit(MOUNT_PATH));
+    // fast requests raise the rate back to the max
+    for (int i = 0; i < 12; i++) {
+      time.currentMilliseconds += ReplicationThrottler.ADJUSTMENT_INTERVAL_MS;
+      throttler.onForegroundRequest(MOUNT_PATH, 5);
+      expectedRate = Math.min(MAX_RATE, expectedRate + MAX_RATE / 10);
+      Assert.assertEquals("Unexpected rate", expectedRate, throttler.getLocalWriteRateLimit(MOUNT_PATH));
+    }
+    throttler.close();
+  }
+
+  /**
+   * Tests that replicated writes and fetches are slowed down to the configured rates.
+   * @throws InterruptedException
+   */
+  @Test
+  public void testThrottling()
+      throws InterruptedException {
+    Properties properties = new Properties();
+    properties.setProperty("replication.local.write.max.bytes.per.sec.per.disk", Long.toString(MAX_RATE));
+    properties.setProperty("replication.fetch.max.bytes.per.sec.per.datacenter", Long.toString(MAX_RATE));
+    MockTime time = new MockTime();
+    ReplicationThrottler throttler = createThrottler(properties, time);
+    time.currentMilliseconds += ReplicationThrottler.THROTTLER_CHECK_INTERVAL_MS + 1;
+    time.currentNanoSeconds = time.currentMilliseconds * MockTime.NsPerMs;
+    long startTimeMs = time.currentMilliseconds;
+    throttler.throttleLocalWrite(MOUNT_PATH, MAX_RATE);
+    Assert.assertTrue("Write should have been throttled", time.currentMilliseconds - startTimeMs > 0);
+    startTimeMs = time.currentMilliseconds;
+    throttler.throttleFetch("DC1", MAX_RATE);
+    Assert.assertTrue("Fetch should have been throttled", time.currentMilliseconds - startTimeMs > 0);
+    startTimeMs = time.currentMilliseconds;
+    throttler.throttleFetch("DC2", MAX_RATE);
+    Assert.assertEquals("Unknown datacenters should not be throttled", startTimeMs, time.currentMilliseconds);
+    throttler.close();
+  }
+
+  /**
+   * @param properties the properties to create the {@link ReplicationConfig} from.
+   * @param time the {@link MockTime} to use.
+   * @return a {@link ReplicationThrottler} for {@link #MOUNT_PATH} and datacenter DC1.
+   */
+  private ReplicationThrottler createThrottler(Properties properties, MockTime time) {
+    ReplicationConfig config = new ReplicationConfig(new VerifiableProperties(properties));
+    ReplicationMetrics metrics = new ReplicationMetrics(new MetricRegistry(), new ArrayList<ReplicaId>());
+    return new ReplicationThrottler(config, metrics, Collections.singletonList(MOUNT_PATH),
+        Collections.singletonList("DC1"), time);
+  }
+}
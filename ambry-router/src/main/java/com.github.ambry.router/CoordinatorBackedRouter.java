@@ -114,6 +114,27 @@ public class CoordinatorBackedRouter implements Router {
     }
   }
 
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId) {
+    return getBlobWithInfo(blobId, null);
+  }
+
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback) {
+    long preProcessingStartTime = System.currentTimeMillis();
+    try {
+      metrics.getBlobWithInfoRate.mark();
+      logger.trace("Beginning getBlobWithInfo for {}", blobId);
+      FutureResult<GetBlobResult> futureResult = new FutureResult<GetBlobResult>();
+      CoordinatorOperation operation =
+          new CoordinatorOperation(this, futureResult, blobId, callback, CoordinatorOperationType.GetBlobWithInfo);
+      submitOperation(operation, futureResult, callback);
+      return futureResult;
+    } finally {
+      metrics.operationPreProcessingTimeInMs.update(System.currentTimeMillis() - preProcessingStartTime);
+    }
+  }
+
   @Override
   public Future<String> putBlob(BlobProperties blobProperties, byte[] usermetadata, ReadableStreamChannel channel) {
     return putBlob(blobProperties, usermetadata, channel, null);
@@ -220,10 +241,16 @@ public class CoordinatorBackedRouter implements Router {
     } catch (Exception e) {
       metrics.futureCallbackError.inc();
       logger.error("Exception caught during future and callback completion", e);
+      ReadableStreamChannel channel = null;
       if (operationResult instanceof ReadableStreamChannel) {
+        channel = (ReadableStreamChannel) operationResult;
+      } else if (operationResult instanceof GetBlobResult) {
+        channel = ((GetBlobResult) operationResult).getBlobDataChannel();
+      }
+      if (channel != null) {
         try {
           logger.trace("Closing ReadableStreamChannel due to exception");
-          ((ReadableStreamChannel) operationResult).close();
+          channel.close();
         } catch (IOException channelCloseException) {
           logger.error("Ignoring IOException during ReadableStreamChannel close");
         }
@@ -241,6 +268,7 @@ public class CoordinatorBackedRouter implements Router {
 enum CoordinatorOperationType {
   GetBlob,
   GetBlobInfo,
+  GetBlobWithInfo,
   PutBlob,
   DeleteBlob
 }
@@ -268,14 +296,15 @@ class CoordinatorOperation implements Runnable {
 
   /**
    * Constructor used to invoke {@link Coordinator} equivalent operations for {@link Router#getBlob(String)},
-   * {@link Router#getBlobInfo(String)} and {@link Router#deleteBlob(String)} (and their variants).
+   * {@link Router#getBlobInfo(String)}, {@link Router#getBlobWithInfo(String)} and {@link Router#deleteBlob(String)}
+   * (and their variants).
    * @param router the {@link CoordinatorBackedRouter} instance to use to submit operations.
    * @param futureResult the {@link FutureResult} where the final result has to be loaded.
    * @param blobId the blob id that the operation needs to be performed on.
    * @param callback the {@link Callback} to invoke once operation is complete (can be null if no callback required).
    * @param opType the {@link CoordinatorOperationType} required. Can only be one of
-   *                {@link CoordinatorOperationType#GetBlob}, {@link CoordinatorOperationType#GetBlobInfo} or
-   *                {@link CoordinatorOperationType#DeleteBlob}.
+   *                {@link CoordinatorOperationType#GetBlob}, {@link CoordinatorOperationType#GetBlobInfo},
+   *                {@link CoordinatorOperationType#GetBlobWithInfo} or {@link CoordinatorOperationType#DeleteBlob}.
    * @throws IllegalArgumentException if {@code opType} is {@link CoordinatorOperationType#PutBlob}.
    */
   public CoordinatorOperation(CoordinatorBackedRouter router, FutureResult futureResult, String blobId,
@@ -325,44 +354,18 @@ class CoordinatorOperation implements Runnable {
     try {
       switch (opType) {
         case GetBlob:
-          logger.trace("Beginning coordinator getBlob");
-          BlobOutput blobOutput = router.coordinator.getBlob(blobId);
-          long getBlobEndTime = System.currentTimeMillis();
-          router.metrics.getBlobTimeInMs.update(getBlobEndTime - operationStartTime);
-          // (int) blobOutput.getSize() will not work for blobs >2GB in size but that is not a concern right now.
-          // CoordinatorBackedRouter will be long gone before (if) we support blobs with that size.
-          logger.trace("Finished coordinator getBlob");
-
-          byte[] buf = Utils.readBytesFromStream(blobOutput.getStream(), (int) blobOutput.getSize());
-          logger.trace("Blob data has completely arrived");
-          operationResult = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(buf));
-          router.metrics.getBlobResultConstructionTimeInMs.update(System.currentTimeMillis() - getBlobEndTime);
+          operationResult = getBlobData(operationStartTime);
           operationTotalTimeTracker = router.metrics.getBlobTotalTimeInMs;
           break;
         case GetBlobInfo:
-          logger.trace("Beginning coordinator getBlobProperties");
-          blobProperties = router.coordinator.getBlobProperties(blobId);
-          long getBlobPropsEndTime = System.currentTimeMillis();
-          router.metrics.getBlobPropertiesTimeInMs.update(getBlobPropsEndTime - operationStartTime);
-          logger.trace("Finished coordinator getBlobProperties. Beginning coordinator getBlobUserMetadata");
-
-          ByteBuffer usermetadataBuffer = router.coordinator.getBlobUserMetadata(blobId);
-          long getBlobUserMetadataEndTime = System.currentTimeMillis();
-          router.metrics.getUserMetadataTimeInMs.update(getBlobUserMetadataEndTime - getBlobPropsEndTime);
-          logger.trace("Finished coordinator getBlobUserMetadata.");
-
-          if (usermetadataBuffer.hasArray()) {
-            usermetadata = usermetadataBuffer.array();
-          } else {
-            logger.trace("Usermetadata buffer was not backed by an array. Copying the data");
-            usermetadata = new byte[usermetadataBuffer.capacity()];
-            usermetadataBuffer.get(usermetadata);
-          }
-          operationResult = new BlobInfo(blobProperties, usermetadata);
-          router.metrics.getBlobInfoResultConstructionTimeInMs
-              .update(System.currentTimeMillis() - getBlobUserMetadataEndTime);
+          operationResult = getBlobInfo(operationStartTime);
           operationTotalTimeTracker = router.metrics.getBlobInfoTotalTimeInMs;
           break;
+        case GetBlobWithInfo:
+          BlobInfo blobInfo = getBlobInfo(operationStartTime);
+          operationResult = new GetBlobResult(blobInfo, getBlobData(System.currentTimeMillis()));
+          operationTotalTimeTracker = router.metrics.getBlobWithInfoTotalTimeInMs;
+          break;
         case PutBlob:
           logger.trace("Beginning coordinator putBlob");
           operationResult = router.coordinator
@@ -394,6 +397,62 @@ class CoordinatorOperation implements Runnable {
     }
   }
 
+  /**
+   * Gets the blob data from the {@link Coordinator} and constructs a {@link ReadableStreamChannel} from it.
+   * @param startTime the time at which the fetch began.
+   * @return a {@link ReadableStreamChannel} that contains the blob data.
+   * @throws CoordinatorException if the {@link Coordinator} could not fetch the blob data.
+   * @throws IOException if the blob data could not be read.
+   */
+  private ReadableStreamChannel getBlobData(long startTime)
+      throws CoordinatorException, IOException {
+    logger.trace("Beginning coordinator getBlob");
+    BlobOutput blobOutput = router.coordinator.getBlob(blobId);
+    long getBlobEndTime = System.currentTimeMillis();
+    router.metrics.getBlobTimeInMs.update(getBlobEndTime - startTime);
+    // (int) blobOutput.getSize() will not work for blobs >2GB in size but that is not a concern right now.
+    // CoordinatorBackedRouter will be long gone before (if) we support blobs with that size.
+    logger.trace("Finished coordinator getBlob");
+
+    byte[] buf = Utils.readBytesFromStream(blobOutput.getStream(), (int) blobOutput.getSize());
+    logger.trace("Blob data has completely arrived");
+    ReadableStreamChannel blobDataChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(buf));
+    router.metrics.getBlobResultConstructionTimeInMs.update(System.currentTimeMillis() - getBlobEndTime);
+    return blobDataChannel;
+  }
+
+  /**
+   * Gets the blob properties and user metadata from the {@link Coordinator} and constructs a {@link BlobInfo}.
+   * @param startTime the time at which the fetch began.
+   * @return the {@link BlobInfo} of the blob.
+   * @throws CoordinatorException if the {@link Coordinator} could not fetch the blob properties or user metadata.
+   */
+  private BlobInfo getBlobInfo(long startTime)
+      throws CoordinatorException {
+    logger.trace("Beginning coordinator getBlobProperties");
+    blobProperties = router.coordinator.getBlobProperties(blobId);
+    long getBlobPropsEndTime = System.currentTimeMillis();
+    router.metrics.getBlobPropertiesTimeInMs.update(getBlobPropsEndTime - startTime);
+    logger.trace("Finished coordinator getBlobProperties. Beginning coordinator getBlobUserMetadata");
+
+    ByteBuffer usermetadataBuffer = router.coordinator.getBlobUserMetadata(blobId);
+    long getBlobUserMetadataEndTime = System.currentTimeMillis();
+    router.metrics.getUserMetadataTimeInMs.update(getBlobUserMetadataEndTime - getBlobPropsEndTime);
+    logger.trace("Finished coordinator getBlobUserMetadata.");
+
+    if (usermetadataBuffer.hasArray()) {
+      usermetadata = usermetadataBuffer.array();
+    } else {
+      logger.trace("Usermetadata buffer was not backed by an array. Copying the data");
+      usermetadata = new byte[usermetadataBuffer.capacity()];
+      usermetadataBuffer.get(usermetadata);
+    }
+    BlobInfo blobInfo = new BlobInfo(blobProperties, usermetadata);
+    router.metrics.getBlobInfoResultConstructionTimeInMs
+        .update(System.currentTimeMillis() - getBlobUserMetadataEndTime);
+    return blobInfo;
+  }
+
   /**
    * Tracks metrics on queuing of operation.
    */
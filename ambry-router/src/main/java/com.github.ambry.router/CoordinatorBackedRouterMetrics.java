@@ -33,6 +33,7 @@ public class CoordinatorBackedRouterMetrics {
   public final Meter deleteBlobRate;
   public final Meter getBlobInfoRate;
   public final Meter getBlobRate;
+  public final Meter getBlobWithInfoRate;
   public final Meter putBlobRate;
   // CoordinatorOperation
   public final Meter operationQueuingRate;
@@ -56,6 +57,8 @@ public class CoordinatorBackedRouterMetrics {
   public final Histogram getBlobInfoTotalTimeInMs;
   public final Histogram getBlobPropertiesTimeInMs;
   public final Histogram getUserMetadataTimeInMs;
+  // GetBlobWithInfo
+  public final Histogram getBlobWithInfoTotalTimeInMs;
   // PutBlob
   public final Histogram putBlobTotalTimeInMs;
 
@@ -81,6 +84,8 @@ public class CoordinatorBackedRouterMetrics {
     deleteBlobRate = metricRegistry.meter(MetricRegistry.name(CoordinatorBackedRouter.class, "DeleteBlobRate"));
     getBlobInfoRate = metricRegistry.meter(MetricRegistry.name(CoordinatorBackedRouter.class, "GetBlobInfoRate"));
     getBlobRate = metricRegistry.meter(MetricRegistry.name(CoordinatorBackedRouter.class, "GetBlobRate"));
+    getBlobWithInfoRate =
+        metricRegistry.meter(MetricRegistry.name(CoordinatorBackedRouter.class, "GetBlobWithInfoRate"));
     putBlobRate = metricRegistry.meter(MetricRegistry.name(CoordinatorBackedRouter.class, "PutBlobRate"));
     // CoordinatorOperation
     operationQueuingRate =
@@ -116,6 +121,9 @@ public class CoordinatorBackedRouterMetrics {
         metricRegistry.histogram(MetricRegistry.name(CoordinatorOperation.class, "GetBlobPropertiesTimeInMs"));
     getUserMetadataTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(CoordinatorOperation.class, "GetUserMetadataTimeInMs"));
+    // GetBlobWithInfo
+    getBlobWithInfoTotalTimeInMs =
+        metricRegistry.histogram(MetricRegistry.name(CoordinatorOperation.class, "GetBlobWithInfoTotalTimeInMs"));
     // PutBlob
     putBlobTotalTimeInMs =
         metricRegistry.histogram(MetricRegistry.name(CoordinatorOperation.class, "PutBlobTotalTimeInMs"));
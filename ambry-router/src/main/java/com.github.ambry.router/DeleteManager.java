@@ -98,22 +98,14 @@ class DeleteManager {
 
   /**
    * Submits a {@link DeleteOperation} to this {@code DeleteManager}.
-   * @param blobIdString The blobId string to be deleted.
+   * @param blobId The {@link BlobId} to be deleted.
    * @param futureResult The {@link FutureResult} that will contain the result eventually and exception if any.
    * @param callback The {@link Callback} that will be called on completion of the request.
    */
-  void submitDeleteBlobOperation(String blobIdString, FutureResult<Void> futureResult, Callback<Void> callback) {
-    try {
-      BlobId blobId = RouterUtils.getBlobIdFromString(blobIdString, clusterMap);
-      DeleteOperation deleteOperation =
-          new DeleteOperation(routerConfig, routerMetrics, responseHandler, blobId, futureResult, callback, time);
-      deleteOperations.add(deleteOperation);
-    } catch (RouterException e) {
-      routerMetrics.operationDequeuingRate.mark();
-      routerMetrics.deleteBlobErrorCount.inc();
-      routerMetrics.countError(e);
-      operationCompleteCallback.completeOperation(futureResult, callback, null, e);
-    }
+  void submitDeleteBlobOperation(BlobId blobId, FutureResult<Void> futureResult, Callback<Void> callback) {
+    DeleteOperation deleteOperation =
+        new DeleteOperation(routerConfig, routerMetrics, responseHandler, blobId, futureResult, callback, time);
+    deleteOperations.add(deleteOperation);
   }
 
   /**
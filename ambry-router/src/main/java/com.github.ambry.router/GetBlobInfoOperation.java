@@ -15,6 +15,7 @@ package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
@@ -57,18 +58,16 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
    * @param routerMetrics The {@link NonBlockingRouterMetrics} to be used for reporting metrics.
    * @param clusterMap the {@link ClusterMap} of the cluster
    * @param responseHandler the {@link ResponseHandler} responsible for failure detection.
-   * @param blobIdStr the blob id associated with the operation in string form.
+   * @param blobId the {@link BlobId} associated with the operation.
    * @param futureResult the future that will contain the result of the operation.
    * @param callback the callback that is to be called when the operation completes.
    * @param operationCompleteCallback the {@link OperationCompleteCallback} to use to complete operations.
    * @param time the Time instance to use.
-   * @throws RouterException if there is an error with any of the parameters, such as an invalid blob id.
    */
   GetBlobInfoOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
-      ResponseHandler responseHandler, String blobIdStr, FutureResult<BlobInfo> futureResult,
-      Callback<BlobInfo> callback, OperationCompleteCallback operationCompleteCallback, Time time)
-      throws RouterException {
-    super(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdStr, futureResult, callback, time);
+      ResponseHandler responseHandler, BlobId blobId, FutureResult<BlobInfo> futureResult,
+      Callback<BlobInfo> callback, OperationCompleteCallback operationCompleteCallback, Time time) {
+    super(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult, callback, time);
     this.operationCompleteCallback = operationCompleteCallback;
     operationTracker = new SimpleOperationTracker(routerConfig.routerDatacenterName, blobId.getPartition(),
         routerConfig.routerGetCrossDcEnabled, routerConfig.routerGetSuccessTarget,
@@ -114,6 +113,7 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
     while (inFlightRequestsIterator.hasNext()) {
       Map.Entry<Integer, GetRequestInfo> entry = inFlightRequestsIterator.next();
       if (time.milliseconds() - entry.getValue().startTimeMs > routerConfig.routerRequestTimeoutMs) {
+        traceRequest(entry.getValue(), "TimedOut");
         onErrorResponse(entry.getValue().replicaId);
         responseHandler.onRequestResponseException(entry.getValue().replicaId,
             new IOException("Timed out waiting for a response"));
@@ -170,6 +170,7 @@ class GetBlobInfoOperation extends GetOperation<BlobInfo> {
       return;
     }
     long requestLatencyMs = time.milliseconds() - getRequestInfo.startTimeMs;
+    traceRequest(getRequestInfo, responseInfo, getResponse);
     routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
     routerMetrics.getDataNodeBasedMetrics(getRequestInfo.replicaId.getDataNodeId()).getBlobInfoRequestLatencyMs
         .update(requestLatencyMs);
@@ -20,7 +20,9 @@ import com.github.ambry.commons.BlobIdFactory;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
+import com.github.ambry.messageformat.BlobAll;
 import com.github.ambry.messageformat.BlobData;
+import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobType;
 import com.github.ambry.messageformat.MessageFormatException;
 import com.github.ambry.messageformat.MessageFormatFlags;
@@ -46,6 +48,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +67,18 @@ import org.slf4j.LoggerFactory;
  * as done) so that the caller can start reading in data. The rest of the chunks are asynchronously fetched and
  * buffered up to the maximum that can be buffered. When fetched chunks are consumed by the caller, subsequent chunks
  * become eligible to be fetched.
+ *
+ * The number of data chunks that can be in flight or buffered ahead of the caller at any time (the prefetch window)
+ * adapts to the caller and to the servers. The operation keeps moving averages of the time it takes to retrieve a data
+ * chunk and of the time the caller takes to consume one, and sizes the window so that enough chunks are in flight to
+ * cover the retrieval of a chunk at the rate the caller consumes them (see {@link #getTargetPrefetchWindow}). Until
+ * both averages are known, the window grows every time the caller is found waiting for chunks and shrinks every time
+ * retrieved chunks are found waiting for the caller. Every slot in the window beyond the first has to be reserved from
+ * a memory budget that is shared by all the get operations of the router.
+ *
+ * If the operation is asked to also fetch the {@link BlobInfo}, the first chunk is requested with
+ * {@link MessageFormatFlags#All} so that the blob properties, user metadata and the content of the first chunk are all
+ * returned by the server in a single response.
  */
 class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
   // the callback to use to complete the operation.
@@ -79,6 +94,10 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
   private GetChunk[] dataChunks;
   // the factory to use to deserialize keys in a metadata chunk.
   private final BlobIdFactory blobIdFactory;
+  // whether the BlobInfo of the blob has to be fetched along with the first chunk.
+  private final boolean includeBlobInfo;
+  // the BlobInfo of the blob, if it was requested. This is set when the first chunk is successfully deserialized.
+  private volatile BlobInfo blobInfo;
   // the total number of data chunks associated with this blob.
   private int numChunksTotal;
   // the total number of data chunks retrieved so far (and may or may not have been written out yet).
@@ -91,8 +110,34 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
   private final Map<Integer, GetChunk> correlationIdToGetChunk = new HashMap<>();
   // The result of this operation. This is instantiated if/when the first bytes of the result arrive and just before
   // the operation callback is invoked.
-  private GetBlobResult getBlobResult;
+  private BlobDataReadableStreamChannel blobDataChannel;
   private final ReadyForPollCallback readyForPollCallback;
+  // the prefetch memory (in bytes) reserved by all the get operations of the router.
+  private final AtomicLong prefetchBytesInUse;
+  // the number of data chunks that can be in flight or buffered ahead of the caller. Every slot beyond the first is
+  // backed by a reservation in prefetchBytesInUse.
+  private int prefetchWindow = 1;
+  // whether the prefetch reservations of this operation have been released.
+  private boolean prefetchReleased = false;
+  // the time at which the caller started waiting for chunks to be retrieved, -1 if it is not waiting.
+  private long waitForChunksStartMs = -1;
+  // the total time the caller spent waiting for chunks to be retrieved.
+  private long waitTimeForChunksMs = 0;
+  // the time at which retrieved chunks started waiting for the caller, -1 if they are not waiting.
+  private long waitForConsumerStartMs = -1;
+  // the total time retrieved chunks spent waiting for the caller.
+  private long waitTimeForConsumerMs = 0;
+  // the moving average of the time taken to retrieve a data chunk, -1 until a data chunk is retrieved.
+  private double chunkFetchTimeMs = -1;
+  // the moving average of the time the caller takes to consume a data chunk, -1 until a data chunk is consumed. This is
+  // updated by the thread of the caller.
+  private volatile double chunkDrainTimeMs = -1;
+  // the times at which data chunks were handed to the caller, by chunk index modulo the length of the array. There
+  // can be no more chunks handed to the caller and not yet consumed than there are data chunk slots.
+  private long[] chunkWriteStartMs;
+
+  // the weight of a new sample in the moving averages of the chunk fetch and drain times.
+  private static final double CHUNK_TIME_SAMPLE_WEIGHT = 0.25;
 
   private static final Logger logger = LoggerFactory.getLogger(GetBlobOperation.class);
 
@@ -102,28 +147,41 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
    * @param routerMetrics The {@link NonBlockingRouterMetrics} to be used for reporting metrics.
    * @param clusterMap the {@link ClusterMap} of the cluster
    * @param responseHandler the {@link ResponseHandler} responsible for failure detection.
-   * @param blobIdStr the blob id associated with the operation in string form.
+   * @param blobId the {@link BlobId} associated with the operation.
    * @param futureResult the future that will contain the result of the operation.
    * @param callback the callback that is to be called when the operation completes.
    * @param operationCompleteCallback the {@link OperationCompleteCallback} to use to complete operations.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
    * @param blobIdFactory the factory to use to deserialize keys in a metadata chunk.
+   * @param prefetchBytesInUse the prefetch memory (in bytes) reserved by all the get operations of the router.
+   * @param includeBlobInfo {@code true} if the {@link BlobInfo} of the blob has to be fetched along with the first
+   *                        chunk.
    * @param time the Time instance to use.
-   * @throws RouterException if there is an error with any of the parameters, such as an invalid blob id.
    */
   GetBlobOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
-      ResponseHandler responseHandler, String blobIdStr, FutureResult<ReadableStreamChannel> futureResult,
+      ResponseHandler responseHandler, BlobId blobId, FutureResult<ReadableStreamChannel> futureResult,
       Callback<ReadableStreamChannel> callback, OperationCompleteCallback operationCompleteCallback,
-      ReadyForPollCallback readyForPollCallback, BlobIdFactory blobIdFactory, Time time)
-      throws RouterException {
-    super(routerConfig, routerMetrics, clusterMap, responseHandler, blobIdStr, futureResult, callback, time);
+      ReadyForPollCallback readyForPollCallback, BlobIdFactory blobIdFactory, AtomicLong prefetchBytesInUse,
+      boolean includeBlobInfo, Time time) {
+    super(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult, callback, time);
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
     this.blobIdFactory = blobIdFactory;
+    this.prefetchBytesInUse = prefetchBytesInUse;
+    this.includeBlobInfo = includeBlobInfo;
     firstChunk = new FirstGetChunk(blobId);
   }
 
+  /**
+   * Return the {@link BlobInfo} of the blob. This is available only if the operation was constructed to fetch the
+   * {@link BlobInfo} and only once the first chunk has been successfully retrieved.
+   * @return the {@link BlobInfo} of the blob if available, null otherwise.
+   */
+  BlobInfo getBlobInfo() {
+    return blobInfo;
+  }
+
   /**
    * {@inheritDoc}
    * <br>
@@ -133,12 +191,13 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
    */
   @Override
   void abort(Exception abortCause) {
+    releasePrefetchWindow();
     if (operationCallbackInvoked.compareAndSet(false, true)) {
       operationCompleteCallback.completeOperation(operationFuture, operationCallback, null, abortCause);
     } else {
       operationException.set(abortCause);
-      if (getBlobResult != null && getBlobResult.isReadCalled()) {
-        getBlobResult.completeRead();
+      if (blobDataChannel != null && blobDataChannel.isReadCalled()) {
+        blobDataChannel.completeRead();
       }
     }
     operationCompleted = true;
@@ -173,17 +232,17 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         // notified during the channel read.
         routerMetrics.getBlobOperationLatencyMs.update(time.milliseconds() - submissionTimeMs);
         Exception e = getOperationException();
-        getBlobResult = e == null ? new GetBlobResult() : null;
+        blobDataChannel = e == null ? new BlobDataReadableStreamChannel() : null;
         if (e != null) {
           routerMetrics.getBlobErrorCount.inc();
           routerMetrics.countError(e);
         }
-        operationCompleteCallback.completeOperation(operationFuture, operationCallback, getBlobResult, e);
+        operationCompleteCallback.completeOperation(operationFuture, operationCallback, blobDataChannel, e);
       }
     }
     chunk.postCompletionCleanup();
-    if (getBlobResult != null) {
-      getBlobResult.maybeWriteToChannel();
+    if (blobDataChannel != null) {
+      blobDataChannel.maybeWriteToChannel();
     }
   }
 
@@ -214,6 +273,9 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     if (operationCompleted) {
       return;
     }
+    if (blobDataChannel != null && !blobDataChannel.isOpen() && !blobDataChannel.isReadCalled()) {
+      operationException.compareAndSet(null, getChannelClosedException());
+    }
     if (operationException.get() == null) {
       if (firstChunk.isReady() || firstChunk.isInProgress()) {
         firstChunk.poll(requestRegistrationCallback);
@@ -222,26 +284,43 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         // Although an attempt is made to write to the channel as soon as a chunk is successfully retrieved,
         // the caller might not have called readInto() and passed in a channel at the time. So an attempt is always
         // made from within poll.
-        if (getBlobResult != null) {
-          getBlobResult.maybeWriteToChannel();
+        if (blobDataChannel != null) {
+          blobDataChannel.maybeWriteToChannel();
         }
         // If this is a composite blob, poll for requests for subsequent chunks.
         if (dataChunks != null) {
+          updatePrefetchWindow();
+          int numChunksOutstanding = numChunksRetrieved - blobDataChannel.getNumChunksWrittenOut();
+          for (GetChunk dataChunk : dataChunks) {
+            if (dataChunk.isInProgress()) {
+              numChunksOutstanding++;
+            }
+          }
           for (GetChunk dataChunk : dataChunks) {
             if (dataChunk.isFree() && chunkIdIterator.hasNext()) {
               dataChunk.initialize(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
             }
-            if (dataChunk.isInProgress() || (dataChunk.isReady()
-                && numChunksRetrieved - getBlobResult.getNumChunksWrittenOut() < NonBlockingRouter.MAX_IN_MEM_CHUNKS)) {
+            if (dataChunk.isInProgress()) {
               dataChunk.poll(requestRegistrationCallback);
-              if (dataChunk.isComplete()) {
-                onChunkOperationComplete(dataChunk);
-                if (operationCompleted) {
-                  break;
-                }
+            }
+            if (dataChunk.isComplete()) {
+              onChunkOperationComplete(dataChunk);
+              if (operationCompleted) {
+                break;
               }
             }
           }
+          // chunks are retrieved in the order in which they are written out. Otherwise, chunks that come later in the
+          // blob could fill up the window while the chunk that is to be written out next waits for a slot in it.
+          GetChunk dataChunk;
+          while (!operationCompleted && numChunksOutstanding < prefetchWindow
+              && (dataChunk = getFirstReadyDataChunk()) != null) {
+            numChunksOutstanding++;
+            dataChunk.poll(requestRegistrationCallback);
+            if (dataChunk.isComplete()) {
+              onChunkOperationComplete(dataChunk);
+            }
+          }
         }
       }
     }
@@ -250,15 +329,157 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     }
   }
 
+  /**
+   * @return the data chunk that is ready to be retrieved and comes first in the blob, or null if there is none.
+   */
+  private GetChunk getFirstReadyDataChunk() {
+    GetChunk firstReadyChunk = null;
+    for (GetChunk dataChunk : dataChunks) {
+      if (dataChunk.isReady() && (firstReadyChunk == null || dataChunk.chunkIndex < firstReadyChunk.chunkIndex)) {
+        firstReadyChunk = dataChunk;
+      }
+    }
+    return firstReadyChunk;
+  }
+
+  /**
+   * @return the exception that the operation fails with when the caller closes the blob data channel before reading
+   *         from it.
+   */
+  private RouterException getChannelClosedException() {
+    return new RouterException("Channel closed before the blob data was read", RouterErrorCode.UnexpectedInternalError);
+  }
+
+  /**
+   * Track whether the caller is waiting for chunks to be retrieved or retrieved chunks are waiting for the caller and
+   * adapt the prefetch window. Once the times taken to retrieve and to consume a chunk are known, the window is moved
+   * to the size they call for. Until then, the window grows when the caller starts waiting for chunks and shrinks when
+   * chunks start waiting for the caller.
+   */
+  private void updatePrefetchWindow() {
+    long now = time.milliseconds();
+    int numChunksBuffered = numChunksRetrieved - blobDataChannel.getNumChunksWrittenOut();
+    boolean waitingForChunks =
+        blobDataChannel.isReadCalled() && numChunksBuffered == 0 && numChunksRetrieved < numChunksTotal;
+    boolean waitingForConsumer = numChunksBuffered >= prefetchWindow;
+    double drainTimeMs = chunkDrainTimeMs;
+    boolean adaptToRates = chunkFetchTimeMs >= 0 && drainTimeMs >= 0;
+    if (waitingForChunks) {
+      if (waitForChunksStartMs == -1) {
+        waitForChunksStartMs = now;
+        if (!adaptToRates) {
+          maybeGrowPrefetchWindow();
+        }
+      }
+    } else if (waitForChunksStartMs != -1) {
+      waitTimeForChunksMs += now - waitForChunksStartMs;
+      waitForChunksStartMs = -1;
+    }
+    if (waitingForConsumer) {
+      if (waitForConsumerStartMs == -1) {
+        waitForConsumerStartMs = now;
+        if (!adaptToRates) {
+          maybeShrinkPrefetchWindow();
+        }
+      }
+    } else if (waitForConsumerStartMs != -1) {
+      waitTimeForConsumerMs += now - waitForConsumerStartMs;
+      waitForConsumerStartMs = -1;
+    }
+    if (adaptToRates) {
+      int targetWindow = getTargetPrefetchWindow(chunkFetchTimeMs, drainTimeMs, dataChunks.length);
+      while (prefetchWindow < targetWindow && maybeGrowPrefetchWindow()) {
+        // grow one chunk at a time, for as long as the shared memory budget allows for it.
+      }
+      while (prefetchWindow > targetWindow && maybeShrinkPrefetchWindow()) {
+        // shrink one chunk at a time.
+      }
+    }
+  }
+
+  /**
+   * Compute the prefetch window that keeps the caller from waiting for chunks: while the caller consumes a chunk,
+   * enough chunks have to be in flight to cover the time it takes to retrieve one, that is, the number of chunks the
+   * caller consumes in that time, plus the chunk being consumed.
+   * @param chunkFetchTimeMs the time taken to retrieve a data chunk.
+   * @param chunkDrainTimeMs the time the caller takes to consume a data chunk.
+   * @param maxWindow the largest window allowed.
+   * @return the number of chunks the prefetch window should have, between 1 and {@code maxWindow}.
+   */
+  static int getTargetPrefetchWindow(double chunkFetchTimeMs, double chunkDrainTimeMs, int maxWindow) {
+    double targetWindow = Math.ceil(chunkFetchTimeMs / Math.max(chunkDrainTimeMs, 1)) + 1;
+    return (int) Math.max(1, Math.min(targetWindow, maxWindow));
+  }
+
+  /**
+   * @param average the moving average, -1 if there were no samples yet.
+   * @param sample the new sample.
+   * @return the moving average updated with the sample.
+   */
+  private static double updateMovingAverage(double average, long sample) {
+    return average < 0 ? sample : average + (sample - average) * CHUNK_TIME_SAMPLE_WEIGHT;
+  }
+
+  /**
+   * Grow the prefetch window by one chunk if the window is smaller than the number of data chunk slots and the shared
+   * prefetch memory budget allows for it.
+   * @return {@code true} if the window was grown, {@code false} otherwise.
+   */
+  private synchronized boolean maybeGrowPrefetchWindow() {
+    if (prefetchReleased || prefetchWindow >= dataChunks.length) {
+      return false;
+    }
+    long chunkSize = routerConfig.routerMaxPutChunkSizeBytes;
+    long bytesInUse;
+    do {
+      bytesInUse = prefetchBytesInUse.get();
+      if (bytesInUse + chunkSize > routerConfig.routerGetPrefetchMemoryBudgetBytes) {
+        return false;
+      }
+    } while (!prefetchBytesInUse.compareAndSet(bytesInUse, bytesInUse + chunkSize));
+    prefetchWindow++;
+    return true;
+  }
+
+  /**
+   * Shrink the prefetch window by one chunk (down to a minimum of one) and return the reservation to the shared
+   * prefetch memory budget.
+   * @return {@code true} if the window was shrunk, {@code false} otherwise.
+   */
+  private synchronized boolean maybeShrinkPrefetchWindow() {
+    if (prefetchReleased || prefetchWindow <= 1) {
+      return false;
+    }
+    prefetchWindow--;
+    prefetchBytesInUse.addAndGet(-routerConfig.routerMaxPutChunkSizeBytes);
+    return true;
+  }
+
+  /**
+   * Return all the reservations of this operation to the shared prefetch memory budget and update the prefetch
+   * metrics, if this was a composite blob. This is done only once and the window cannot grow afterwards.
+   */
+  private synchronized void releasePrefetchWindow() {
+    if (!prefetchReleased) {
+      prefetchReleased = true;
+      prefetchBytesInUse.addAndGet(-(long) (prefetchWindow - 1) * routerConfig.routerMaxPutChunkSizeBytes);
+      if (dataChunks != null) {
+        routerMetrics.getBlobWaitTimeForChunksMs.update(waitTimeForChunksMs);
+        routerMetrics.getBlobWaitTimeForConsumerMs.update(waitTimeForConsumerMs);
+        routerMetrics.getBlobPrefetchWindowSize.update(prefetchWindow);
+      }
+    }
+  }
+
   // ReadableStreamChannel implementation:
 
   /**
    * A class that implements the result of this GetBlobOperation. This is instantiated if/when the first data chunk of
    * the blob arrives, when the operation callback is invoked.
    */
-  private class GetBlobResult implements ReadableStreamChannel {
+  private class BlobDataReadableStreamChannel implements ReadableStreamChannel {
     // whether this ReadableStreamChannel is open.
-    private boolean isOpen = true;
+    private volatile boolean isOpen = true;
     // whether readInto() has been called yet by the caller on this ReadableStreamChannel.
     private volatile boolean readCalled = false;
     // The channel to write chunks of the blob into. This will be initialized when the caller calls the readInto().
@@ -271,6 +492,8 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     private Long bytesWritten = 0L;
     // the number of chunks that have been written out to the asyncWritableChannel.
     private volatile int numChunksWrittenOut = 0;
+    // the time at which the last chunk was written out to the asyncWritableChannel.
+    private long lastChunkWrittenOutAtMs = 0;
     // the index of the next chunk that is to be written out to the asyncWritableChannel.
     private int indexOfNextChunkToWriteOut = 0;
     // whether this object has called the readIntoCallback yet.
@@ -283,6 +506,15 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         if (exception != null) {
           operationException.set(exception);
         }
+        if (chunkWriteStartMs != null) {
+          // chunks are consumed in order, so this one started being consumed once it was handed over and the
+          // previous one was consumed.
+          long now = time.milliseconds();
+          long startMs = Math.max(chunkWriteStartMs[numChunksWrittenOut % chunkWriteStartMs.length],
+              lastChunkWrittenOutAtMs);
+          chunkDrainTimeMs = updateMovingAverage(chunkDrainTimeMs, now - startMs);
+          lastChunkWrittenOutAtMs = now;
+        }
         numChunksWrittenOut++;
         readyForPollCallback.onPollReady();
       }
@@ -306,6 +538,9 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       readIntoCallback = callback;
       readIntoFuture = new FutureResult<>();
       readCalled = true;
+      if (!isOpen) {
+        operationException.compareAndSet(null, getChannelClosedException());
+      }
       if (operationException.get() != null) {
         completeRead();
       }
@@ -318,10 +553,23 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       return isOpen;
     }
 
+    /**
+     * {@inheritDoc}
+     * <br>
+     * If the channel is closed before {@link #readInto(AsyncWritableChannel, Callback)} is called, the operation is
+     * aborted so that the chunks fetched or being fetched are released. A later call to
+     * {@link #readInto(AsyncWritableChannel, Callback)} fails with a {@link RouterException} with error code
+     * {@link RouterErrorCode#UnexpectedInternalError}.
+     */
     @Override
     public void close()
         throws IOException {
-      isOpen = false;
+      if (isOpen) {
+        isOpen = false;
+        if (!readCalled) {
+          readyForPollCallback.onPollReady();
+        }
+      }
     }
 
     @Override
@@ -357,6 +605,9 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       if (firstChunk.isComplete() && readCalled) {
         while (operationException.get() == null && chunkIndexToBuffer.containsKey(indexOfNextChunkToWriteOut)) {
           ByteBuffer chunkBuf = chunkIndexToBuffer.remove(indexOfNextChunkToWriteOut);
+          if (chunkWriteStartMs != null) {
+            chunkWriteStartMs[indexOfNextChunkToWriteOut % chunkWriteStartMs.length] = time.milliseconds();
+          }
           asyncWritableChannel.write(chunkBuf, chunkAsyncWriteCallback);
           indexOfNextChunkToWriteOut++;
         }
@@ -370,6 +621,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
      * Complete the read from this {@link ReadableStreamChannel} by invoking the callback and marking the future.
      */
     void completeRead() {
+      releasePrefetchWindow();
       if (readIntoCallbackCalled.compareAndSet(false, true)) {
         readIntoFuture.done(bytesWritten, operationException.get());
         if (readIntoCallback != null) {
@@ -404,6 +656,8 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     protected final Map<Integer, GetRequestInfo> correlationIdToGetRequestInfo = new TreeMap<>();
     // the state of the chunk.
     protected volatile ChunkState state;
+    // the time at which the first request for the current chunk was sent.
+    private long fetchStartMs;
 
     /**
      * Construct a GetChunk
@@ -423,6 +677,14 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       reset();
     }
 
+    /**
+     * @return the {@link MessageFormatFlags} to associate with the {@link GetRequest}s that will be issued by this
+     * GetChunk.
+     */
+    MessageFormatFlags getMessageFormatFlag() {
+      return getOperationFlag();
+    }
+
     /**
      * @return the {@link GetOptions} to associate with the {@link GetRequest}s that will be issued by this GetChunk.
      */
@@ -498,6 +760,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       while (inFlightRequestsIterator.hasNext()) {
         Map.Entry<Integer, GetRequestInfo> entry = inFlightRequestsIterator.next();
         if (time.milliseconds() - entry.getValue().startTimeMs > routerConfig.routerRequestTimeoutMs) {
+          traceRequest(entry.getValue(), "TimedOut");
           onErrorResponse(entry.getValue().replicaId);
           responseHandler.onRequestResponseException(entry.getValue().replicaId,
               new IOException("Timed out waiting for a response"));
@@ -520,9 +783,12 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         replicaIterator.remove();
         String hostname = replicaId.getDataNodeId().getHostname();
         Port port = replicaId.getDataNodeId().getPortToConnectTo();
-        GetRequest getRequest = createGetRequest(chunkBlobId, getOperationFlag(), getGetOptions());
+        GetRequest getRequest = createGetRequest(chunkBlobId, getMessageFormatFlag(), getGetOptions());
         RouterRequestInfo request = new RouterRequestInfo(hostname, port, getRequest, replicaId);
         int correlationId = getRequest.getCorrelationId();
+        if (state != ChunkState.InProgress) {
+          fetchStartMs = time.milliseconds();
+        }
         correlationIdToGetRequestInfo.put(correlationId, new GetRequestInfo(replicaId, time.milliseconds()));
         correlationIdToGetChunk.put(correlationId, this);
         requestRegistrationCallback.registerRequestToSend(GetBlobOperation.this, request);
@@ -564,6 +830,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         BlobData blobData = MessageFormatRecord.deserializeBlob(payload);
         chunkIndexToBuffer.put(chunkIndex, blobData.getStream().getByteBuffer());
         numChunksRetrieved++;
+        chunkFetchTimeMs = updateMovingAverage(chunkFetchTimeMs, time.milliseconds() - fetchStartMs);
         successfullyDeserialized = true;
       } else {
         // If successTarget > 1, then content reconciliation may have to be done. For now, ignore subsequent responses.
@@ -588,6 +855,7 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
         return;
       }
       long requestLatencyMs = time.milliseconds() - getRequestInfo.startTimeMs;
+      traceRequest(getRequestInfo, responseInfo, getResponse);
       routerMetrics.routerRequestLatencyMs.update(requestLatencyMs);
       routerMetrics.getDataNodeBasedMetrics(getRequestInfo.replicaId.getDataNodeId()).getRequestLatencyMs
           .update(requestLatencyMs);
@@ -760,6 +1028,17 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
       correlationIdToGetRequestInfo.clear();
     }
 
+    /**
+     * {@inheritDoc}
+     * <br>
+     * If the {@link BlobInfo} has to be fetched, the first chunk is requested with {@link MessageFormatFlags#All} so
+     * that it comes back in the same response as the blob content.
+     */
+    @Override
+    MessageFormatFlags getMessageFormatFlag() {
+      return includeBlobInfo ? MessageFormatFlags.All : getOperationFlag();
+    }
+
     @Override
     GetOptions getGetOptions() {
       return GetOptions.None;
@@ -775,7 +1054,14 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
     void handleBody(InputStream payload)
         throws IOException, MessageFormatException {
       if (!successfullyDeserialized) {
-        BlobData blobData = MessageFormatRecord.deserializeBlob(payload);
+        BlobData blobData;
+        if (includeBlobInfo) {
+          BlobAll blobAll = MessageFormatRecord.deserializeBlobAll(payload, blobIdFactory);
+          blobInfo = blobAll.getBlobInfo();
+          blobData = blobAll.getBlobData();
+        } else {
+          blobData = MessageFormatRecord.deserializeBlob(payload);
+        }
         BlobType blobType = blobData.getBlobType();
         chunkIndexToBuffer = new TreeMap<>();
         if (blobType == BlobType.MetadataBlob) {
@@ -784,10 +1070,17 @@ class GetBlobOperation extends GetOperation<ReadableStreamChannel> {
               MetadataContentSerDe.deserializeMetadataContentRecord(serializedMetadataContent, blobIdFactory);
           chunkIdIterator = keys.listIterator();
           numChunksTotal = keys.size();
-          dataChunks = new GetChunk[Math.min(keys.size(), NonBlockingRouter.MAX_IN_MEM_CHUNKS)];
+          dataChunks = new GetChunk[Math.min(keys.size(), routerConfig.routerGetMaxPrefetchChunks)];
           for (int i = 0; i < dataChunks.length; i++) {
             dataChunks[i] = new GetChunk(chunkIdIterator.nextIndex(), (BlobId) chunkIdIterator.next());
           }
+          chunkWriteStartMs = new long[dataChunks.length];
+          // start with the same window as a non-adaptive operation would have, if the budget allows for it.
+          while (prefetchWindow < NonBlockingRouter.MAX_IN_MEM_CHUNKS) {
+            if (!maybeGrowPrefetchWindow()) {
+              break;
+            }
+          }
         } else {
           chunkIdIterator = null;
           numChunksTotal = 1;
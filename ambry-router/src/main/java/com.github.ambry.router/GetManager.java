@@ -15,6 +15,7 @@ package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.BlobIdFactory;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.commons.ServerErrorCode;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +65,7 @@ class GetManager {
   private final NonBlockingRouterMetrics routerMetrics;
   private final OperationCompleteCallback operationCompleteCallback;
   private final ReadyForPollCallback readyForPollCallback;
+  private final AtomicLong prefetchBytesInUse;
 
   private class GetRequestRegistrationCallbackImpl implements RequestRegistrationCallback<GetOperation> {
     private List<RequestInfo> requestListToFill;
@@ -88,11 +91,12 @@ class GetManager {
    * @param operationCompleteCallback The {@link OperationCompleteCallback} to use to complete operations.
    * @param readyForPollCallback The callback to be used to notify the router of any state changes within the
    *                             operations.
+   * @param prefetchBytesInUse the prefetch memory (in bytes) reserved by all the get operations of the router.
    * @param time The {@link Time} instance to use.
    */
   GetManager(ClusterMap clusterMap, ResponseHandler responseHandler, RouterConfig routerConfig,
       NonBlockingRouterMetrics routerMetrics, OperationCompleteCallback operationCompleteCallback,
-      ReadyForPollCallback readyForPollCallback, Time time) {
+      ReadyForPollCallback readyForPollCallback, AtomicLong prefetchBytesInUse, Time time) {
     this.clusterMap = clusterMap;
     blobIdFactory = new BlobIdFactory(clusterMap);
     this.responseHandler = responseHandler;
@@ -100,49 +104,54 @@ class GetManager {
     this.routerMetrics = routerMetrics;
     this.operationCompleteCallback = operationCompleteCallback;
     this.readyForPollCallback = readyForPollCallback;
+    this.prefetchBytesInUse = prefetchBytesInUse;
     this.time = time;
     getOperations = Collections.newSetFromMap(new ConcurrentHashMap<GetOperation, Boolean>());
   }
 
   /**
    * Submit an operation to get the BlobInfo associated with a blob asynchronously.
-   * @param blobId the blobId for which the BlobInfo is being requested, in string form.
+   * @param blobId the {@link BlobId} for which the BlobInfo is being requested.
    * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
    * @param callback the {@link Callback} object to be called on completion of the operation.
    */
-  void submitGetBlobInfoOperation(String blobId, FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
-    try {
-      GetBlobInfoOperation getBlobInfoOperation =
-          new GetBlobInfoOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult,
-              callback, operationCompleteCallback, time);
-      getOperations.add(getBlobInfoOperation);
-    } catch (RouterException e) {
-      routerMetrics.getBlobInfoErrorCount.inc();
-      routerMetrics.countError(e);
-      routerMetrics.operationDequeuingRate.mark();
-      operationCompleteCallback.completeOperation(futureResult, callback, null, e);
-    }
+  void submitGetBlobInfoOperation(BlobId blobId, FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
+    GetBlobInfoOperation getBlobInfoOperation =
+        new GetBlobInfoOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult,
+            callback, operationCompleteCallback, time);
+    getOperations.add(getBlobInfoOperation);
   }
 
   /**
    * Submit an operation to get a blob asynchronously.
-   * @param blobId the blobId for which the BlobInfo is being requested, in string form.
+   * @param blobId the {@link BlobId} of the blob that is being requested.
    * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
    * @param callback the {@link Callback} object to be called on completion of the operation.
    */
-  void submitGetBlobOperation(String blobId, FutureResult<ReadableStreamChannel> futureResult,
+  void submitGetBlobOperation(BlobId blobId, FutureResult<ReadableStreamChannel> futureResult,
       Callback<ReadableStreamChannel> callback) {
-    try {
-      GetBlobOperation getBlobOperation =
-          new GetBlobOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult, callback,
-              operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
-      getOperations.add(getBlobOperation);
-    } catch (RouterException e) {
-      routerMetrics.getBlobErrorCount.inc();
-      routerMetrics.countError(e);
-      routerMetrics.operationDequeuingRate.mark();
-      operationCompleteCallback.completeOperation(futureResult, callback, null, e);
-    }
+    GetBlobOperation getBlobOperation =
+        new GetBlobOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId, futureResult, callback,
+            operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false, time);
+    getOperations.add(getBlobOperation);
+  }
+
+  /**
+   * Submit an operation to get a blob along with its BlobInfo asynchronously. The BlobInfo and the first chunk of the
+   * blob are fetched with a single request to each replica.
+   * @param blobId the {@link BlobId} for which the blob and its BlobInfo are being requested.
+   * @param futureResult the {@link FutureResult} that contains the pending result of the operation.
+   * @param callback the {@link Callback} object to be called on completion of the operation.
+   */
+  void submitGetBlobWithInfoOperation(BlobId blobId, FutureResult<GetBlobResult> futureResult,
+      Callback<GetBlobResult> callback) {
+    GetBlobWithInfoCallback getBlobWithInfoCallback = new GetBlobWithInfoCallback(futureResult, callback);
+    GetBlobOperation getBlobOperation =
+        new GetBlobOperation(routerConfig, routerMetrics, clusterMap, responseHandler, blobId,
+            new FutureResult<ReadableStreamChannel>(), getBlobWithInfoCallback, operationCompleteCallback,
+            readyForPollCallback, blobIdFactory, prefetchBytesInUse, true, time);
+    getBlobWithInfoCallback.getBlobOperation = getBlobOperation;
+    getOperations.add(getBlobOperation);
   }
 
   /**
@@ -251,6 +260,37 @@ class GetManager {
     }
   }
 
+  /**
+   * The callback for the {@link GetBlobOperation} submitted on behalf of a getBlobWithInfo request. Combines the
+   * {@link ReadableStreamChannel} returned by the operation with the {@link com.github.ambry.messageformat.BlobInfo}
+   * it fetched and completes the caller's future and callback with a {@link GetBlobResult}.
+   */
+  private static class GetBlobWithInfoCallback implements Callback<ReadableStreamChannel> {
+    private final FutureResult<GetBlobResult> futureResult;
+    private final Callback<GetBlobResult> callback;
+    private GetBlobOperation getBlobOperation;
+
+    /**
+     * Construct a GetBlobWithInfoCallback
+     * @param futureResult the {@link FutureResult} of the getBlobWithInfo request.
+     * @param callback the {@link Callback} of the getBlobWithInfo request. Can be null.
+     */
+    GetBlobWithInfoCallback(FutureResult<GetBlobResult> futureResult, Callback<GetBlobResult> callback) {
+      this.futureResult = futureResult;
+      this.callback = callback;
+    }
+
+    @Override
+    public void onCompletion(ReadableStreamChannel result, Exception exception) {
+      GetBlobResult getBlobResult =
+          exception == null ? new GetBlobResult(getBlobOperation.getBlobInfo(), result) : null;
+      futureResult.done(getBlobResult, exception);
+      if (callback != null) {
+        callback.onCompletion(getBlobResult, exception);
+      }
+    }
+  }
+
   /**
    * Remove an operation from the set and abort.
    * @param op the operation to abort
@@ -14,6 +14,7 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.DataNodeId;
 import com.github.ambry.clustermap.ReplicaId;
 import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ResponseHandler;
@@ -26,6 +27,8 @@ import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Trace;
+import com.github.ambry.utils.Tracer;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
@@ -50,25 +53,26 @@ abstract class GetOperation<T> {
   protected final AtomicReference<Exception> operationException = new AtomicReference<>();
   protected T operationResult;
   protected final long submissionTimeMs;
+  // the trace of the request this operation is part of, if it is traced.
+  protected final Trace trace;
 
   private static final Logger logger = LoggerFactory.getLogger(GetOperation.class);
 
   /**
-   * Construct a GetOperation
+   * Construct a GetOperation. The operation is part of the trace that is current on the thread that constructs it,
+   * if there is one.
    * @param routerConfig the {@link RouterConfig} containing the configs for put operations.
    * @param routerMetrics The {@link NonBlockingRouterMetrics} to be used for reporting metrics.
    * @param clusterMap the {@link ClusterMap} of the cluster
    * @param responseHandler the {@link ResponseHandler} responsible for failure detection.
-   * @param blobIdStr the blobId of the associated blob in string form.
+   * @param blobId the {@link BlobId} of the associated blob.
    * @param futureResult the future that will contain the result of the operation.
    * @param operationCallback the callback that is to be called when the operation completes.
    * @param time the {@link Time} instance to use.
-   * @throws RouterException if there is an error with any of the parameters, such as an invalid blob id.
    */
   GetOperation(RouterConfig routerConfig, NonBlockingRouterMetrics routerMetrics, ClusterMap clusterMap,
-      ResponseHandler responseHandler, String blobIdStr, FutureResult<T> futureResult, Callback<T> operationCallback,
-      Time time)
-      throws RouterException {
+      ResponseHandler responseHandler, BlobId blobId, FutureResult<T> futureResult, Callback<T> operationCallback,
+      Time time) {
     this.routerConfig = routerConfig;
     this.routerMetrics = routerMetrics;
     this.clusterMap = clusterMap;
@@ -77,7 +81,8 @@ abstract class GetOperation<T> {
     this.operationCallback = operationCallback;
     this.time = time;
     submissionTimeMs = time.milliseconds();
-    blobId = RouterUtils.getBlobIdFromString(blobIdStr, clusterMap);
+    trace = Tracer.getCurrentTrace();
+    this.blobId = blobId;
   }
 
   /**
@@ -178,8 +183,42 @@ abstract class GetOperation<T> {
     List<BlobId> blobIds = Collections.singletonList(blobId);
     List<PartitionRequestInfo> partitionRequestInfoList =
         Collections.singletonList(new PartitionRequestInfo(blobId.getPartition(), blobIds));
-    return new GetRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), routerConfig.routerHostname, flag,
-        partitionRequestInfoList, getOptions);
+    return new GetRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), trace == null ? 0 : trace.getId(),
+        routerConfig.routerHostname, flag, partitionRequestInfoList, getOptions, false);
+  }
+
+  /**
+   * Records a span for a request that was sent to a replica in the trace of this operation, if it is traced.
+   * @param getRequestInfo the {@link GetRequestInfo} of the request.
+   * @param result the outcome of the request.
+   */
+  protected void traceRequest(GetRequestInfo getRequestInfo, String result) {
+    if (trace != null) {
+      DataNodeId dataNodeId = getRequestInfo.replicaId.getDataNodeId();
+      trace.addSpan("RouterRequest", dataNodeId.getHostname() + ":" + dataNodeId.getPort() + " " + result,
+          getRequestInfo.startTimeMs, time.milliseconds());
+    }
+  }
+
+  /**
+   * Records a span for a request that was sent to a replica and got a response in the trace of this operation, if
+   * it is traced.
+   * @param getRequestInfo the {@link GetRequestInfo} of the request.
+   * @param responseInfo the {@link ResponseInfo} that was received for the request.
+   * @param getResponse the {@link GetResponse} associated with the response, if it could be read.
+   */
+  protected void traceRequest(GetRequestInfo getRequestInfo, ResponseInfo responseInfo, GetResponse getResponse) {
+    if (trace != null) {
+      String result;
+      if (responseInfo.getError() != null) {
+        result = responseInfo.getError().toString();
+      } else if (getResponse == null) {
+        result = "UnreadableResponse";
+      } else {
+        result = getResponse.getError().toString();
+      }
+      traceRequest(getRequestInfo, result);
+    }
   }
 }
 
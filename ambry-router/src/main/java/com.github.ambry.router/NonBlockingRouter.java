@@ -14,6 +14,7 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ResponseHandler;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.BlobInfo;
@@ -29,6 +30,7 @@ import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
@@ -36,6 +38,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,12 +57,14 @@ class NonBlockingRouter implements Router {
   private final NonBlockingRouterMetrics routerMetrics;
   private final ResponseHandler responseHandler;
   private final Time time;
-  private final List<String> idsToDelete = new ArrayList<String>();
+  private final List<BlobId> idsToDelete = new ArrayList<BlobId>();
 
   private static final Logger logger = LoggerFactory.getLogger(NonBlockingRouter.class);
   private final AtomicInteger currentOperationsCount = new AtomicInteger(0);
   private final OperationCompleteCallback operationCompleteCallback =
       new OperationCompleteCallback(currentOperationsCount);
+  // the prefetch memory (in bytes) reserved by the get operations of all the OperationControllers.
+  private final AtomicLong getPrefetchBytesInUse = new AtomicLong(0);
 
   static final int MAX_IN_MEM_CHUNKS = 4;
   static final int SHUTDOWN_WAIT_MS = 10 * Time.MsPerSec;
@@ -102,6 +107,22 @@ class NonBlockingRouter implements Router {
     return ocList.get(ThreadLocalRandom.current().nextInt(ocList.size()));
   }
 
+  /**
+   * Returns the {@link OperationController} to use for an operation on the given blob. If sharding is enabled, all
+   * operations on blobs in the same partition are assigned to the same {@link OperationController} so that they
+   * reuse its connections to the replicas of that partition.
+   * @param blobId the {@link BlobId} of the blob that the operation is on.
+   * @return the {@link OperationController} the partition of the blob maps to if sharding is enabled; a randomly
+   *         picked {@link OperationController} otherwise.
+   */
+  OperationController getOperationController(BlobId blobId) {
+    if (routerConfig.routerOperationControllerShardingEnabled && ocList.size() > 1) {
+      byte[] partitionBytes = blobId.getPartition().getBytes();
+      return ocList.get((Arrays.hashCode(partitionBytes) & Integer.MAX_VALUE) % ocList.size());
+    }
+    return getOperationController();
+  }
+
   /**
    * Requests for the {@link BlobInfo} asynchronously and returns a future that will eventually contain the
    * {@link BlobInfo} on a successful response.
@@ -125,11 +146,21 @@ class NonBlockingRouter implements Router {
     routerMetrics.getBlobInfoOperationRate.mark();
     routerMetrics.operationQueuingRate.mark();
     FutureResult<BlobInfo> futureResult = new FutureResult<BlobInfo>();
+    BlobId id = null;
+    RouterException routerException = null;
     if (isOpen.get()) {
-      getOperationController().getBlobInfo(blobId, futureResult, callback);
+      try {
+        id = RouterUtils.getBlobIdFromString(blobId, clusterMap);
+      } catch (RouterException e) {
+        routerException = e;
+      }
     } else {
-      RouterException routerException =
+      routerException =
           new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
+    }
+    if (routerException == null) {
+      getOperationController(id).getBlobInfo(id, futureResult, callback);
+    } else {
       routerMetrics.operationDequeuingRate.mark();
       routerMetrics.getBlobInfoErrorCount.inc();
       routerMetrics.countError(routerException);
@@ -161,11 +192,69 @@ class NonBlockingRouter implements Router {
     routerMetrics.getBlobOperationRate.mark();
     routerMetrics.operationQueuingRate.mark();
     FutureResult<ReadableStreamChannel> futureResult = new FutureResult<ReadableStreamChannel>();
+    BlobId id = null;
+    RouterException routerException = null;
     if (isOpen.get()) {
-      getOperationController().getBlob(blobId, futureResult, callback);
+      try {
+        id = RouterUtils.getBlobIdFromString(blobId, clusterMap);
+      } catch (RouterException e) {
+        routerException = e;
+      }
     } else {
-      RouterException routerException =
+      routerException =
           new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
+    }
+    if (routerException == null) {
+      getOperationController(id).getBlob(id, futureResult, callback);
+    } else {
+      routerMetrics.operationDequeuingRate.mark();
+      routerMetrics.getBlobErrorCount.inc();
+      routerMetrics.countError(routerException);
+      operationCompleteCallback.completeOperation(futureResult, callback, null, routerException);
+    }
+    return futureResult;
+  }
+
+  /**
+   * Requests for the {@link BlobInfo} and the blob data asynchronously, in a single round trip to the server, and
+   * returns a future that will eventually contain a {@link GetBlobResult} on a successful response.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} and blob data are requested.
+   * @return A future that would contain a {@link GetBlobResult} eventually.
+   */
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId) {
+    return getBlobWithInfo(blobId, null);
+  }
+
+  /**
+   * Requests for the {@link BlobInfo} and the blob data asynchronously, in a single round trip to the server, and
+   * invokes the {@link Callback} when the request completes.
+   * @param blobId The ID of the blob for which the {@link BlobInfo} and blob data are requested.
+   * @param callback The callback which will be invoked on the completion of the request.
+   * @return A future that would contain a {@link GetBlobResult} eventually.
+   */
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback) {
+    currentOperationsCount.incrementAndGet();
+    routerMetrics.getBlobOperationRate.mark();
+    routerMetrics.getBlobWithInfoOperationRate.mark();
+    routerMetrics.operationQueuingRate.mark();
+    FutureResult<GetBlobResult> futureResult = new FutureResult<GetBlobResult>();
+    BlobId id = null;
+    RouterException routerException = null;
+    if (isOpen.get()) {
+      try {
+        id = RouterUtils.getBlobIdFromString(blobId, clusterMap);
+      } catch (RouterException e) {
+        routerException = e;
+      }
+    } else {
+      routerException =
+          new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
+    }
+    if (routerException == null) {
+      getOperationController(id).getBlobWithInfo(id, futureResult, callback);
+    } else {
       routerMetrics.operationDequeuingRate.mark();
       routerMetrics.getBlobErrorCount.inc();
       routerMetrics.countError(routerException);
@@ -238,11 +327,21 @@ class NonBlockingRouter implements Router {
     routerMetrics.deleteBlobOperationRate.mark();
     routerMetrics.operationQueuingRate.mark();
     FutureResult<Void> futureResult = new FutureResult<Void>();
+    BlobId id = null;
+    RouterException routerException = null;
     if (isOpen.get()) {
-      getOperationController().deleteBlob(blobId, futureResult, callback);
+      try {
+        id = RouterUtils.getBlobIdFromString(blobId, clusterMap);
+      } catch (RouterException e) {
+        routerException = e;
+      }
     } else {
-      RouterException routerException =
+      routerException =
           new RouterException("Cannot accept operation because Router is closed", RouterErrorCode.RouterClosed);
+    }
+    if (routerException == null) {
+      getOperationController(id).deleteBlob(id, futureResult, callback);
+    } else {
       routerMetrics.operationDequeuingRate.mark();
       routerMetrics.deleteBlobErrorCount.inc();
       routerMetrics.countError(routerException);
@@ -338,7 +437,7 @@ class NonBlockingRouter implements Router {
       putManager = new PutManager(clusterMap, responseHandler, notificationSystem, routerConfig, routerMetrics,
           operationCompleteCallback, readyForPollCallback, index, time);
       getManager = new GetManager(clusterMap, responseHandler, routerConfig, routerMetrics, operationCompleteCallback,
-          readyForPollCallback, time);
+          readyForPollCallback, getPrefetchBytesInUse, time);
       deleteManager = new DeleteManager(clusterMap, responseHandler, notificationSystem, routerConfig, routerMetrics,
           operationCompleteCallback, time);
       requestResponseHandlerThread = Utils.newThread("RequestResponseHandlerThread-" + index, this, true);
@@ -348,28 +447,41 @@ class NonBlockingRouter implements Router {
 
     /**
      * Requests for the {@link BlobInfo} asynchronously and invokes the {@link Callback} when the request completes.
-     * @param blobId The ID of the blob for which the {@link BlobInfo} is requested.
+     * @param blobId The {@link BlobId} of the blob for which the {@link BlobInfo} is requested.
      * @param futureResult The future that would contain the {@link BlobInfo} eventually.
      * @param callback The {@link Callback} which will be invoked on the completion of the request.
      */
-    private void getBlobInfo(String blobId, FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
+    private void getBlobInfo(BlobId blobId, FutureResult<BlobInfo> futureResult, Callback<BlobInfo> callback) {
       getManager.submitGetBlobInfoOperation(blobId, futureResult, callback);
       readyForPollCallback.onPollReady();
     }
 
     /**
      * Requests for the blob data asynchronously and invokes the {@link Callback} when the request completes.
-     * @param blobId The ID of the blob for which blob data is requested.
+     * @param blobId The {@link BlobId} of the blob for which blob data is requested.
      * @param futureResult A future that would contain a {@link ReadableStreamChannel} that represents the blob data
      *                     eventually.
      * @param callback The callback which will be invoked on the completion of the request.
      */
-    private void getBlob(String blobId, FutureResult<ReadableStreamChannel> futureResult,
+    private void getBlob(BlobId blobId, FutureResult<ReadableStreamChannel> futureResult,
         Callback<ReadableStreamChannel> callback) {
       getManager.submitGetBlobOperation(blobId, futureResult, callback);
       readyForPollCallback.onPollReady();
     }
 
+    /**
+     * Requests for the {@link BlobInfo} and the blob data asynchronously and invokes the {@link Callback} when the
+     * request completes.
+     * @param blobId The {@link BlobId} of the blob for which the {@link BlobInfo} and blob data are requested.
+     * @param futureResult A future that would contain a {@link GetBlobResult} eventually.
+     * @param callback The callback which will be invoked on the completion of the request.
+     */
+    private void getBlobWithInfo(BlobId blobId, FutureResult<GetBlobResult> futureResult,
+        Callback<GetBlobResult> callback) {
+      getManager.submitGetBlobWithInfoOperation(blobId, futureResult, callback);
+      readyForPollCallback.onPollReady();
+    }
+
     /**
      * Requests for a new blob to be put asynchronously and invokes the {@link Callback} when the request completes.
      * @param blobProperties The properties of the blob.
@@ -397,12 +509,12 @@ class NonBlockingRouter implements Router {
 
     /**
      * Requests for a blob to be deleted asynchronously and invokes the {@link Callback} when the request completes.
-     * @param blobId The ID of the blob that needs to be deleted.
+     * @param blobId The {@link BlobId} of the blob that needs to be deleted.
      * @param futureResult A future that would contain information about whether the deletion succeeded or not,
      *                     eventually.
      * @param callback The {@link Callback} which will be invoked on the completion of a request.
      */
-    private void deleteBlob(String blobId, FutureResult<Void> futureResult, Callback<Void> callback) {
+    private void deleteBlob(BlobId blobId, FutureResult<Void> futureResult, Callback<Void> callback) {
       deleteManager.submitDeleteBlobOperation(blobId, futureResult, callback);
       readyForPollCallback.onPollReady();
     }
@@ -435,7 +547,7 @@ class NonBlockingRouter implements Router {
       putManager.getIdsToDelete(idsToDelete);
       // this is a best effort to delete ids for cleanup purposes (these may fail and we will
       // not do anything about it at this time).
-      for (String blobId : idsToDelete) {
+      for (BlobId blobId : idsToDelete) {
         // possibly add a batch api going forward.
         deleteManager.submitDeleteBlobOperation(blobId, new FutureResult<Void>(), null);
       }
@@ -456,6 +568,7 @@ class NonBlockingRouter implements Router {
         RequestOrResponseType type = ((RequestOrResponse) routerRequestInfo.getRequest()).getRequestType();
         switch (type) {
           case PutRequest:
+          case BatchPutRequest:
             putManager.handleResponse(responseInfo);
             break;
           case GetRequest:
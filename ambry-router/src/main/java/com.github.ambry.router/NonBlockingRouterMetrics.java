@@ -18,6 +18,7 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.metrics.LatencyMetrics;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.DataNodeId;
 import java.util.HashMap;
@@ -37,6 +38,7 @@ public class NonBlockingRouterMetrics {
   public final Meter putBlobOperationRate;
   public final Meter getBlobInfoOperationRate;
   public final Meter getBlobOperationRate;
+  public final Meter getBlobWithInfoOperationRate;
   public final Meter deleteBlobOperationRate;
   public final Meter operationQueuingRate;
   public final Meter operationDequeuingRate;
@@ -88,12 +90,20 @@ public class NonBlockingRouterMetrics {
   public final Histogram waitTimeForFreeChunkAvailabilityMs;
   // time spent by a chunk waiting for data to become available in the channel.
   public final Histogram waitTimeForChannelDataAvailabilityMs;
+  // time a get operation spent with the consumer waiting for data chunks to be retrieved.
+  public final Histogram getBlobWaitTimeForChunksMs;
+  // time a get operation spent with retrieved data chunks waiting for the consumer to read them.
+  public final Histogram getBlobWaitTimeForConsumerMs;
+  // the prefetch window of a get operation at the time of its completion.
+  public final Histogram getBlobPrefetchWindowSize;
 
   // Misc metrics.
   public final Meter operationErrorRate;
   public final Counter slippedPutAttemptCount;
   public final Counter slippedPutSuccessCount;
   public final Counter ignoredResponseCount;
+  public final Counter batchPutRequestCount;
+  public final Histogram batchPutRequestSize;
   public final Counter crossColoRequestCount;
   public final Counter crossColoSuccessCount;
   public Gauge<Long> chunkFillerThreadRunning;
@@ -111,6 +121,8 @@ public class NonBlockingRouterMetrics {
     getBlobInfoOperationRate =
         metricRegistry.meter(MetricRegistry.name(GetBlobInfoOperation.class, "GetBlobInfoOperationRate"));
     getBlobOperationRate = metricRegistry.meter(MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationRate"));
+    getBlobWithInfoOperationRate =
+        metricRegistry.meter(MetricRegistry.name(GetBlobOperation.class, "GetBlobWithInfoOperationRate"));
     deleteBlobOperationRate =
         metricRegistry.meter(MetricRegistry.name(DeleteOperation.class, "DeleteBlobOperationRate"));
     operationQueuingRate = metricRegistry.meter(MetricRegistry.name(NonBlockingRouter.class, "OperationQueuingRate"));
@@ -119,19 +131,19 @@ public class NonBlockingRouterMetrics {
 
     // Latency.
     putBlobOperationLatencyMs =
-        metricRegistry.histogram(MetricRegistry.name(PutOperation.class, "PutBlobOperationLatencyMs"));
+        LatencyMetrics.histogram(metricRegistry, MetricRegistry.name(PutOperation.class, "PutBlobOperationLatencyMs"));
     putChunkOperationLatencyMs =
-        metricRegistry.histogram(MetricRegistry.name(PutOperation.class, "PutChunkOperationLatencyMs"));
-    getBlobInfoOperationLatencyMs =
-        metricRegistry.histogram(MetricRegistry.name(GetBlobInfoOperation.class, "GetBlobInfoOperationLatencyMs"));
-    getBlobOperationLatencyMs =
-        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationLatencyMs"));
-    getBlobOperationTotalTimeMs =
-        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationTotalTimeMs"));
-    deleteBlobOperationLatencyMs =
-        metricRegistry.histogram(MetricRegistry.name(DeleteOperation.class, "DeleteBlobOperationLatencyMs"));
-    routerRequestLatencyMs =
-        metricRegistry.histogram(MetricRegistry.name(NonBlockingRouter.class, "RouterRequestLatencyMs"));
+        LatencyMetrics.histogram(metricRegistry, MetricRegistry.name(PutOperation.class, "PutChunkOperationLatencyMs"));
+    getBlobInfoOperationLatencyMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(GetBlobInfoOperation.class, "GetBlobInfoOperationLatencyMs"));
+    getBlobOperationLatencyMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationLatencyMs"));
+    getBlobOperationTotalTimeMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(GetBlobOperation.class, "GetBlobOperationTotalTimeMs"));
+    deleteBlobOperationLatencyMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(DeleteOperation.class, "DeleteBlobOperationLatencyMs"));
+    routerRequestLatencyMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(NonBlockingRouter.class, "RouterRequestLatencyMs"));
 
     // Operation error count.
     putBlobErrorCount = metricRegistry.counter(MetricRegistry.name(PutOperation.class, "PutBlobErrorCount"));
@@ -176,27 +188,38 @@ public class NonBlockingRouterMetrics {
         metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "ResponseDeserializationErrorCount"));
 
     // Performance metrics for operation managers.
-    putManagerPollTimeMs = metricRegistry.histogram(MetricRegistry.name(PutManager.class, "PutManagerPollTimeMs"));
-    getManagerPollTimeMs = metricRegistry.histogram(MetricRegistry.name(GetManager.class, "GetManagerPollTimeMs"));
+    putManagerPollTimeMs =
+        LatencyMetrics.histogram(metricRegistry, MetricRegistry.name(PutManager.class, "PutManagerPollTimeMs"));
+    getManagerPollTimeMs =
+        LatencyMetrics.histogram(metricRegistry, MetricRegistry.name(GetManager.class, "GetManagerPollTimeMs"));
     deleteManagerPollTimeMs =
-        metricRegistry.histogram(MetricRegistry.name(DeleteManager.class, "DeleteManagerPollTimeMs"));
-    putManagerHandleResponseTimeMs =
-        metricRegistry.histogram(MetricRegistry.name(PutManager.class, "PutManagerHandleResponseTimeMs"));
-    getManagerHandleResponseTimeMs =
-        metricRegistry.histogram(MetricRegistry.name(GetManager.class, "GetManagerHandleResponseTimeMs"));
-    deleteManagerHandleResponseTimeMs =
-        metricRegistry.histogram(MetricRegistry.name(DeleteManager.class, "DeleteManagerHandleResponseTimeMs"));
-    chunkFillTimeMs = metricRegistry.histogram(MetricRegistry.name(PutManager.class, "ChunkFillTimeMs"));
-    waitTimeForFreeChunkAvailabilityMs =
-        metricRegistry.histogram(MetricRegistry.name(PutManager.class, "WaitTimeForFreeChunkAvailabilityMs"));
-    waitTimeForChannelDataAvailabilityMs =
-        metricRegistry.histogram(MetricRegistry.name(PutManager.class, "WaitTimeForChannelDataAvailabilityMs"));
+        LatencyMetrics.histogram(metricRegistry, MetricRegistry.name(DeleteManager.class, "DeleteManagerPollTimeMs"));
+    putManagerHandleResponseTimeMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(PutManager.class, "PutManagerHandleResponseTimeMs"));
+    getManagerHandleResponseTimeMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(GetManager.class, "GetManagerHandleResponseTimeMs"));
+    deleteManagerHandleResponseTimeMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(DeleteManager.class, "DeleteManagerHandleResponseTimeMs"));
+    chunkFillTimeMs =
+        LatencyMetrics.histogram(metricRegistry, MetricRegistry.name(PutManager.class, "ChunkFillTimeMs"));
+    waitTimeForFreeChunkAvailabilityMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(PutManager.class, "WaitTimeForFreeChunkAvailabilityMs"));
+    waitTimeForChannelDataAvailabilityMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(PutManager.class, "WaitTimeForChannelDataAvailabilityMs"));
+    getBlobWaitTimeForChunksMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(GetBlobOperation.class, "GetBlobWaitTimeForChunksMs"));
+    getBlobWaitTimeForConsumerMs = LatencyMetrics.histogram(metricRegistry,
+        MetricRegistry.name(GetBlobOperation.class, "GetBlobWaitTimeForConsumerMs"));
+    getBlobPrefetchWindowSize =
+        metricRegistry.histogram(MetricRegistry.name(GetBlobOperation.class, "GetBlobPrefetchWindowSize"));
 
     // Misc metrics.
     operationErrorRate = metricRegistry.meter(MetricRegistry.name(NonBlockingRouter.class, "OperationErrorRate"));
     ignoredResponseCount = metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "IgnoredRequestCount"));
     slippedPutAttemptCount = metricRegistry.counter(MetricRegistry.name(PutOperation.class, "SlippedPutAttemptCount"));
     slippedPutSuccessCount = metricRegistry.counter(MetricRegistry.name(PutOperation.class, "SlippedPutSuccessCount"));
+    batchPutRequestCount = metricRegistry.counter(MetricRegistry.name(PutManager.class, "BatchPutRequestCount"));
+    batchPutRequestSize = metricRegistry.histogram(MetricRegistry.name(PutManager.class, "BatchPutRequestSize"));
     crossColoRequestCount =
         metricRegistry.counter(MetricRegistry.name(NonBlockingRouter.class, "CrossColoRequestCount"));
     crossColoSuccessCount =
@@ -366,14 +389,14 @@ public class NonBlockingRouterMetrics {
       deleteRequestRate = registry.meter(MetricRegistry.name(DeleteOperation.class, dataNodeName, "DeleteRequestRate"));
 
       // Request latency.
-      putRequestLatencyMs =
-          registry.histogram(MetricRegistry.name(PutOperation.class, dataNodeName, "PutRequestLatencyMs"));
-      getBlobInfoRequestLatencyMs = registry
-          .histogram(MetricRegistry.name(GetBlobInfoOperation.class, dataNodeName, "GetBlobInfoRequestLatencyMs"));
-      getRequestLatencyMs =
-          registry.histogram(MetricRegistry.name(GetBlobOperation.class, dataNodeName, "GetRequestLatencyMs"));
-      deleteRequestLatencyMs =
-          registry.histogram(MetricRegistry.name(DeleteOperation.class, dataNodeName, "DeleteRequestLatencyMs"));
+      putRequestLatencyMs = LatencyMetrics.histogram(registry,
+          MetricRegistry.name(PutOperation.class, dataNodeName, "PutRequestLatencyMs"));
+      getBlobInfoRequestLatencyMs = LatencyMetrics.histogram(registry,
+          MetricRegistry.name(GetBlobInfoOperation.class, dataNodeName, "GetBlobInfoRequestLatencyMs"));
+      getRequestLatencyMs = LatencyMetrics.histogram(registry,
+          MetricRegistry.name(GetBlobOperation.class, dataNodeName, "GetRequestLatencyMs"));
+      deleteRequestLatencyMs = LatencyMetrics.histogram(registry,
+          MetricRegistry.name(DeleteOperation.class, dataNodeName, "DeleteRequestLatencyMs"));
 
       // Request error count.
       putRequestErrorCount =
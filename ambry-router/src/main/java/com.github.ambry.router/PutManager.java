@@ -15,14 +15,18 @@ package com.github.ambry.router;
 
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
 import com.github.ambry.commons.ByteBufferAsyncWritableChannel;
 import com.github.ambry.commons.ResponseHandler;
+import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.config.RouterConfig;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.network.NetworkClientErrorCode;
 import com.github.ambry.network.RequestInfo;
 import com.github.ambry.network.ResponseInfo;
 import com.github.ambry.notification.NotificationSystem;
+import com.github.ambry.protocol.BatchPutRequest;
+import com.github.ambry.protocol.BatchPutResponse;
 import com.github.ambry.protocol.PutRequest;
 import com.github.ambry.protocol.PutResponse;
 import com.github.ambry.protocol.RequestOrResponse;
@@ -31,6 +35,7 @@ import com.github.ambry.utils.Time;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -61,6 +66,9 @@ class PutManager {
   // Because there is a guaranteed response from the NetworkClient for every request sent out, entries
   // get cleaned up periodically.
   private final Map<Integer, PutOperation> correlationIdToPutOperation;
+  // Maps the correlation id of a BatchPutRequest to the requests that were coalesced into it, so that the response
+  // to the batch can be handed over to the individual PutOperations.
+  private final Map<Integer, List<RequestInfo>> batchCorrelationIdToRequestInfos;
   private final AtomicBoolean isOpen = new AtomicBoolean(true);
   private final OperationCompleteCallback operationCompleteCallback;
   private final ReadyForPollCallback readyForPollCallback;
@@ -127,6 +135,7 @@ class PutManager {
     this.time = time;
     putOperations = Collections.newSetFromMap(new ConcurrentHashMap<PutOperation, Boolean>());
     correlationIdToPutOperation = new HashMap<Integer, PutOperation>();
+    batchCorrelationIdToRequestInfos = new HashMap<Integer, List<RequestInfo>>();
     chunkFillerThread = Utils.newThread("ChunkFillerThread-" + index, new ChunkFiller(), true);
     chunkFillerThread.start();
     routerMetrics.initializePutManagerMetrics(chunkFillerThread);
@@ -161,12 +170,15 @@ class PutManager {
    * complete put operations. Since this is the only method guaranteed to be called periodically by the
    * RequestResponseHandler thread in the {@link NonBlockingRouter} ({@link #handleResponse} gets called only if a
    * response is received for a put operation), any error handling or operation completion and cleanup also usually
-   * gets done in the context of this method.
+   * gets done in the context of this method. If put batching is enabled, requests for small chunks that are headed to
+   * the same replica are coalesced into {@link BatchPutRequest}s.
    * @param requestListToFill list to be filled with the requests created
    */
   void poll(List<RequestInfo> requestListToFill) {
     long startTime = time.milliseconds();
-    requestRegistrationCallback.requestListToFill = requestListToFill;
+    List<RequestInfo> putRequestList =
+        routerConfig.routerPutBatchingEnabled ? new ArrayList<RequestInfo>() : requestListToFill;
+    requestRegistrationCallback.requestListToFill = putRequestList;
     for (PutOperation op : putOperations) {
       try {
         op.poll(requestRegistrationCallback);
@@ -180,16 +192,120 @@ class PutManager {
         onComplete(op);
       }
     }
+    if (routerConfig.routerPutBatchingEnabled) {
+      coalescePutRequests(putRequestList, requestListToFill);
+    }
     routerMetrics.putManagerPollTimeMs.update(time.milliseconds() - startTime);
   }
 
+  /**
+   * Coalesces the requests for small chunks that are headed to the same replica into {@link BatchPutRequest}s. A
+   * replica belongs to a single partition, so all the blobs in a batch are for the same partition. Requests that
+   * are not eligible for batching are passed on as is.
+   * @param putRequestList the list of requests created by the {@link PutOperation}s in this poll cycle.
+   * @param requestListToFill the list to be filled with the requests to send out.
+   */
+  private void coalescePutRequests(List<RequestInfo> putRequestList, List<RequestInfo> requestListToFill) {
+    Map<ReplicaId, List<RequestInfo>> replicaToBatchableRequests = new HashMap<ReplicaId, List<RequestInfo>>();
+    for (RequestInfo requestInfo : putRequestList) {
+      PutRequest putRequest = (PutRequest) requestInfo.getRequest();
+      if (putRequest.getBlobSize() <= routerConfig.routerPutBatchMaxChunkSizeBytes) {
+        ReplicaId replicaId = ((RouterRequestInfo) requestInfo).getReplicaId();
+        List<RequestInfo> batchableRequests = replicaToBatchableRequests.get(replicaId);
+        if (batchableRequests == null) {
+          batchableRequests = new ArrayList<RequestInfo>();
+          replicaToBatchableRequests.put(replicaId, batchableRequests);
+        }
+        batchableRequests.add(requestInfo);
+      } else {
+        requestListToFill.add(requestInfo);
+      }
+    }
+    for (Map.Entry<ReplicaId, List<RequestInfo>> entry : replicaToBatchableRequests.entrySet()) {
+      List<RequestInfo> batchableRequests = entry.getValue();
+      int maxBatchSize = routerConfig.routerPutBatchMaxRequestCount;
+      for (int start = 0; start < batchableRequests.size(); start += maxBatchSize) {
+        int end = Math.min(batchableRequests.size(), start + maxBatchSize);
+        List<RequestInfo> batch = new ArrayList<RequestInfo>(batchableRequests.subList(start, end));
+        if (batch.size() == 1) {
+          requestListToFill.add(batch.get(0));
+          continue;
+        }
+        List<PutRequest> putRequests = new ArrayList<PutRequest>(batch.size());
+        for (RequestInfo requestInfo : batch) {
+          putRequests.add((PutRequest) requestInfo.getRequest());
+        }
+        BatchPutRequest batchPutRequest =
+            new BatchPutRequest(NonBlockingRouter.correlationIdGenerator.incrementAndGet(), routerConfig.routerHostname,
+                putRequests);
+        RequestInfo firstRequestInfo = batch.get(0);
+        requestListToFill.add(
+            new RouterRequestInfo(firstRequestInfo.getHost(), firstRequestInfo.getPort(), batchPutRequest,
+                entry.getKey()));
+        batchCorrelationIdToRequestInfos.put(batchPutRequest.getCorrelationId(), batch);
+        routerMetrics.batchPutRequestCount.inc();
+        routerMetrics.batchPutRequestSize.update(batch.size());
+      }
+    }
+  }
+
   /**
    * Hands over the response to the associated PutOperation that issued the request.
    * @param responseInfo the {@link ResponseInfo} containing the response.
    */
   void handleResponse(ResponseInfo responseInfo) {
     long startTime = time.milliseconds();
-    PutResponse putResponse = extractPutResponseAndNotifyResponseHandler(responseInfo);
+    if (responseInfo.getRequestInfo().getRequest() instanceof BatchPutRequest) {
+      handleBatchPutResponse(responseInfo);
+    } else {
+      handlePutResponse(responseInfo, extractPutResponseAndNotifyResponseHandler(responseInfo));
+    }
+    routerMetrics.putManagerHandleResponseTimeMs.update(time.milliseconds() - startTime);
+  }
+
+  /**
+   * Splits the response to a {@link BatchPutRequest} into responses for the individual {@link PutRequest}s that were
+   * coalesced into it and hands each of them over to the associated PutOperation.
+   * @param responseInfo the {@link ResponseInfo} containing the response to the {@link BatchPutRequest}.
+   */
+  private void handleBatchPutResponse(ResponseInfo responseInfo) {
+    BatchPutRequest batchPutRequest = (BatchPutRequest) responseInfo.getRequestInfo().getRequest();
+    List<RequestInfo> requestInfos = batchCorrelationIdToRequestInfos.remove(batchPutRequest.getCorrelationId());
+    BatchPutResponse batchPutResponse = extractBatchPutResponseAndNotifyResponseHandler(responseInfo);
+    Map<Integer, PutResponse> correlationIdToPutResponse = new HashMap<Integer, PutResponse>();
+    if (batchPutResponse != null) {
+      if (batchPutResponse.getCorrelationId() != batchPutRequest.getCorrelationId()) {
+        routerMetrics.unknownReplicaResponseError.inc();
+        logger.error("The correlation id in the BatchPutResponse " + batchPutResponse.getCorrelationId()
+            + " is not the same as the correlation id in the associated BatchPutRequest: "
+            + batchPutRequest.getCorrelationId());
+      } else {
+        ReplicaId replicaId = ((RouterRequestInfo) responseInfo.getRequestInfo()).getReplicaId();
+        for (PutResponse putResponse : batchPutResponse.getPutResponses()) {
+          correlationIdToPutResponse.put(putResponse.getCorrelationId(), putResponse);
+          // errors encountered while writing to the store are only reported in the responses of the individual puts.
+          // If the batch failed as a whole, every put carries the error of the batch that was already notified.
+          if (batchPutResponse.getError() == ServerErrorCode.No_Error
+              && putResponse.getError() != ServerErrorCode.No_Error) {
+            responseHandler.onRequestResponseError(replicaId, putResponse.getError());
+          }
+        }
+      }
+    }
+    for (RequestInfo requestInfo : requestInfos) {
+      int correlationId = ((PutRequest) requestInfo.getRequest()).getCorrelationId();
+      // a missing PutResponse is treated by the PutOperation as a response that could not be deserialized.
+      handlePutResponse(new ResponseInfo(requestInfo, responseInfo.getError(), null),
+          correlationIdToPutResponse.get(correlationId));
+    }
+  }
+
+  /**
+   * Hands over the response for a {@link PutRequest} to the associated PutOperation that issued the request.
+   * @param responseInfo the {@link ResponseInfo} associated with the {@link PutRequest}.
+   * @param putResponse the {@link PutResponse} for the request, if one could be extracted; null otherwise.
+   */
+  private void handlePutResponse(ResponseInfo responseInfo, PutResponse putResponse) {
     RouterRequestInfo routerRequestInfo = (RouterRequestInfo) responseInfo.getRequestInfo();
     int correlationId = ((PutRequest) routerRequestInfo.getRequest()).getCorrelationId();
     // Get the PutOperation that generated the request.
@@ -206,7 +322,6 @@ class PutManager {
       if (putOperation.isOperationComplete() && putOperations.remove(putOperation)) {
         onComplete(putOperation);
       }
-      routerMetrics.putManagerHandleResponseTimeMs.update(time.milliseconds() - startTime);
     } else {
       routerMetrics.ignoredResponseCount.inc();
     }
@@ -237,10 +352,36 @@ class PutManager {
     return putResponse;
   }
 
+  /**
+   * Extract the {@link BatchPutResponse} from the given {@link ResponseInfo}
+   * @param responseInfo the {@link ResponseInfo} from which the {@link BatchPutResponse} is to be extracted.
+   * @return the extracted {@link BatchPutResponse} if there is one; null otherwise.
+   */
+  private BatchPutResponse extractBatchPutResponseAndNotifyResponseHandler(ResponseInfo responseInfo) {
+    BatchPutResponse batchPutResponse = null;
+    ReplicaId replicaId = ((RouterRequestInfo) responseInfo.getRequestInfo()).getReplicaId();
+    NetworkClientErrorCode networkClientErrorCode = responseInfo.getError();
+    if (networkClientErrorCode != null) {
+      logger.trace("Network client returned an error, notifying response handler");
+      responseHandler.onRequestResponseException(replicaId, new IOException("NetworkClient error"));
+    } else {
+      try {
+        batchPutResponse =
+            BatchPutResponse.readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())));
+        responseHandler.onRequestResponseError(replicaId, batchPutResponse.getError());
+      } catch (Exception e) {
+        // Ignore. There is no value in notifying the response handler.
+        logger.error("Response deserialization received unexpected error", e);
+        routerMetrics.responseDeserializationErrorCount.inc();
+      }
+    }
+    return batchPutResponse;
+  }
+
   /**
    * Returns a list of ids of successfully put chunks that were part of unsuccessful put operations.
    */
-  void getIdsToDelete(List<String> idsToDelete) {
+  void getIdsToDelete(List<BlobId> idsToDelete) {
     // @todo save and return ids of failed puts.
   }
 
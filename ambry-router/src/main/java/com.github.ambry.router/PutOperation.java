@@ -42,7 +42,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -184,7 +183,7 @@ class PutOperation {
     chunkCounter = -1;
 
     // Initialize chunks
-    putChunks = new PutChunk[Math.min(numDataChunks, NonBlockingRouter.MAX_IN_MEM_CHUNKS)];
+    putChunks = new PutChunk[Math.min(numDataChunks, routerConfig.routerPutMaxInMemChunks)];
     for (int i = 0; i < putChunks.length; i++) {
       putChunks[i] = new PutChunk();
     }
@@ -585,6 +584,11 @@ class PutOperation {
       partitionId = null;
       attemptedPartitionIds.clear();
       maybeUpdateDefunctBufferInfos();
+      if (chunkFillingCompleted) {
+        // no more data will be filled into this PutChunk, so release its buffer rather than holding on to it until
+        // the whole operation completes.
+        buf = null;
+      }
       correlationIdToChunkPutRequestInfo.clear();
       // this assignment should be the last statement as this immediately makes this chunk available to the
       // ChunkFiller thread for filling.
@@ -867,13 +871,11 @@ class PutOperation {
      */
     protected PartitionId getPartitionForPut(List<PartitionId> partitionIdsToExclude)
         throws RouterException {
-      // getWritablePartitions creates and returns a new list, so it is safe to manipulate it.
-      List<PartitionId> partitions = clusterMap.getWritablePartitionIds();
-      partitions.removeAll(partitionIdsToExclude);
-      if (partitions.isEmpty()) {
+      PartitionId partitionId = clusterMap.getRandomWritablePartition(partitionIdsToExclude);
+      if (partitionId == null) {
         throw new RouterException("No writable partitions available.", RouterErrorCode.AmbryUnavailable);
       }
-      return partitions.get(ThreadLocalRandom.current().nextInt(partitions.size()));
+      return partitionId;
     }
 
     /**
@@ -308,6 +308,38 @@ public class CoordinatorBackedRouterTest {
     assertArrayEquals("GetBlob data does not match what was put", content, channel.getData());
   }
 
+  private void getBlobWithInfoAndCompare(Router router, String blobId, BlobProperties blobProperties,
+      byte[] usermetadata, byte[] content, RouterOperationCallback<GetBlobResult> getBlobWithInfoCallback)
+      throws Exception {
+    Future<GetBlobResult> getBlobWithInfoFuture;
+    if (getBlobWithInfoCallback == null) {
+      getBlobWithInfoFuture = router.getBlobWithInfo(blobId);
+    } else {
+      getBlobWithInfoFuture = router.getBlobWithInfo(blobId, getBlobWithInfoCallback);
+      if (getBlobWithInfoCallback.awaitCallback(1, TimeUnit.SECONDS)) {
+        assertTrue("GetBlobWithInfo: Future is not done but callback has been received",
+            getBlobWithInfoFuture.isDone());
+        if (getBlobWithInfoCallback.getException() == null) {
+          assertEquals("GetBlobWithInfo: Future result and callback result do not match", getBlobWithInfoFuture.get(),
+              getBlobWithInfoCallback.getResult());
+        } else {
+          verifyFutureCallbackExceptionMatch(getBlobWithInfoCallback, getBlobWithInfoFuture);
+          throw getBlobWithInfoCallback.getException();
+        }
+      } else {
+        throw new IllegalStateException("getBlobWithInfo() timed out");
+      }
+    }
+    GetBlobResult getBlobResult = getBlobWithInfoFuture.get();
+    BlobInfo blobInfo = getBlobResult.getBlobInfo();
+    verifyBlobPropertiesMatch(blobProperties, blobInfo.getBlobProperties());
+    assertArrayEquals("User metadata does not match what was put", usermetadata, blobInfo.getUserMetadata());
+    ReadableStreamChannel blobData = getBlobResult.getBlobDataChannel();
+    CopyingAsyncWritableChannel channel = new CopyingAsyncWritableChannel((int) blobData.getSize());
+    blobData.readInto(channel, null).get();
+    assertArrayEquals("GetBlobWithInfo data does not match what was put", content, channel.getData());
+  }
+
   private void deleteBlob(Router router, String blobId, RouterOperationCallback<Void> deleteBlobCallback)
       throws Exception {
     Future<Void> deleteBlobFuture;
@@ -356,17 +388,20 @@ public class CoordinatorBackedRouterTest {
     RouterOperationCallback<String> putBlobCallback = null;
     RouterOperationCallback<BlobInfo> getBlobInfoCallback = null;
     RouterOperationCallback<ReadableStreamChannel> getBlobCallback = null;
+    RouterOperationCallback<GetBlobResult> getBlobWithInfoCallback = null;
     RouterOperationCallback<Void> deleteBlobCallback = null;
     if (RouterUsage.WithCallback.equals(routerUsage)) {
       putBlobCallback = new RouterOperationCallback<String>();
       getBlobInfoCallback = new RouterOperationCallback<BlobInfo>();
       getBlobCallback = new RouterOperationCallback<ReadableStreamChannel>();
+      getBlobWithInfoCallback = new RouterOperationCallback<GetBlobResult>();
       deleteBlobCallback = new RouterOperationCallback<Void>();
     }
 
     String blobId = putBlob(router, putBlobProperties, putUserMetadata, putContent, putBlobCallback);
     getBlobInfoAndCompare(router, blobId, putBlobProperties, putUserMetadata, getBlobInfoCallback);
     getBlobAndCompare(router, blobId, putContent, getBlobCallback);
+    getBlobWithInfoAndCompare(router, blobId, putBlobProperties, putUserMetadata, putContent, getBlobWithInfoCallback);
     deleteBlob(router, blobId, deleteBlobCallback);
 
     try {
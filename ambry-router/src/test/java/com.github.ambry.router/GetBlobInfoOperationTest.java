@@ -74,7 +74,7 @@ public class GetBlobInfoOperationTest {
   private final Map<Integer, GetOperation> correlationIdToGetOperation = new HashMap<>();
   private final NonBlockingRouter router;
   private final Random random = new Random();
-  private final String blobIdStr;
+  private final BlobId blobId;
   private final BlobProperties blobProperties;
   private final byte[] userMetadata;
   private final byte[] putContent;
@@ -114,7 +114,7 @@ public class GetBlobInfoOperationTest {
     putContent = new byte[BLOB_SIZE];
     random.nextBytes(putContent);
     ReadableStreamChannel putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
-    blobIdStr = router.putBlob(blobProperties, userMetadata, putChannel).get();
+    blobId = new BlobId(router.putBlob(blobProperties, userMetadata, putChannel).get(), mockClusterMap);
     router.close();
     networkClient = networkClientFactory.getNetworkClient();
   }
@@ -134,7 +134,7 @@ public class GetBlobInfoOperationTest {
   @Test
   public void testInstantiation()
       throws Exception {
-    String blobIdStr = (new BlobId(mockClusterMap.getWritablePartitionIds().get(0))).getID();
+    BlobId blobId = new BlobId(mockClusterMap.getWritablePartitionIds().get(0));
     Callback<BlobInfo> operationCallback = new Callback<BlobInfo>() {
       @Override
       public void onCompletion(BlobInfo result, Exception exception) {
@@ -142,25 +142,13 @@ public class GetBlobInfoOperationTest {
       }
     };
 
-    // test a bad case
-    try {
-      new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, "invalid_id",
-          operationFuture, operationCallback, operationCompleteCallback, time);
-      Assert.fail("Instantiation of GetBlobInfo operation with an invalid blob id must fail");
-    } catch (RouterException e) {
-      Assert
-          .assertEquals("Unexpected exception received on creating GetBlobInfoOperation", RouterErrorCode.InvalidBlobId,
-              e.getErrorCode());
-    }
-
-    // test a good case
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, operationCallback, operationCompleteCallback, time);
 
     Assert.assertEquals("Callback must match", operationCallback, op.getCallback());
     Assert.assertEquals("Futures must match", operationFuture, op.getFuture());
-    Assert.assertEquals("Blob ids must match", blobIdStr, op.getBlobIdStr());
+    Assert.assertEquals("Blob ids must match", blobId.getID(), op.getBlobIdStr());
   }
 
   /**
@@ -172,7 +160,7 @@ public class GetBlobInfoOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, null, operationCompleteCallback, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
@@ -202,7 +190,7 @@ public class GetBlobInfoOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, null, operationCompleteCallback, time);
     requestRegistrationCallback.requestListToFill = new ArrayList<>();
     op.poll(requestRegistrationCallback);
@@ -228,7 +216,7 @@ public class GetBlobInfoOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, null, operationCompleteCallback, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
@@ -264,7 +252,7 @@ public class GetBlobInfoOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, null, operationCompleteCallback, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
@@ -328,7 +316,7 @@ public class GetBlobInfoOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, null, operationCompleteCallback, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
@@ -388,7 +376,7 @@ public class GetBlobInfoOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobInfoOperation op =
-        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr,
+        new GetBlobInfoOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId,
             operationFuture, null, operationCompleteCallback, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
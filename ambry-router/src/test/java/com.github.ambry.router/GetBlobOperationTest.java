@@ -45,6 +45,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -91,7 +92,7 @@ public class GetBlobOperationTest {
   private int blobSize;
 
   // Parameters for puts which are also used to verify the gets.
-  private String blobIdStr;
+  private BlobId blobId;
   private byte[] putContent;
 
   private final GetTestRequestRegistrationCallbackImpl requestRegistrationCallback =
@@ -109,6 +110,7 @@ public class GetBlobOperationTest {
 
   private final AtomicInteger operationsCount = new AtomicInteger(0);
   private final OperationCompleteCallback operationCompleteCallback = new OperationCompleteCallback(operationsCount);
+  private final AtomicLong prefetchBytesInUse = new AtomicLong(0);
 
   @After
   public void after() {
@@ -160,7 +162,7 @@ public class GetBlobOperationTest {
     putContent = new byte[blobSize];
     random.nextBytes(putContent);
     ReadableStreamChannel putChannel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(putContent));
-    blobIdStr = router.putBlob(blobProperties, userMetadata, putChannel).get();
+    blobId = new BlobId(router.putBlob(blobProperties, userMetadata, putChannel).get(), mockClusterMap);
   }
 
   /**
@@ -177,26 +179,16 @@ public class GetBlobOperationTest {
       }
     };
 
-    // test a bad case
-    try {
-      new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, "invalid_id", operationFuture,
-          operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
-      Assert.fail("Instantiation of GetBlobOperation with an invalid blob id must fail");
-    } catch (RouterException e) {
-      Assert.assertEquals("Unexpected exception received on creating GetBlobOperation", RouterErrorCode.InvalidBlobId,
-          e.getErrorCode());
-    }
-
-    blobIdStr = new BlobId(mockClusterMap.getWritablePartitionIds().get(0)).getID();
-    // test a good case
+    blobId = new BlobId(mockClusterMap.getWritablePartitionIds().get(0));
     // operationCount is not incremented here as this operation is not taken to completion.
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            operationCallback, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse,
+            false, time);
 
     Assert.assertEquals("Callbacks must match", operationCallback, op.getCallback());
     Assert.assertEquals("Futures must match", operationFuture, op.getFuture());
-    Assert.assertEquals("Blob ids must match", blobIdStr, op.getBlobIdStr());
+    Assert.assertEquals("Blob ids must match", blobId.getID(), op.getBlobIdStr());
   }
 
   /**
@@ -251,6 +243,103 @@ public class GetBlobOperationTest {
     }
   }
 
+  /**
+   * Put composite blobs and perform gets with prefetch windows that are constrained by the config and by the shared
+   * memory budget; ensure success and that all the prefetch reservations are released once the operations complete.
+   */
+  @Test
+  public void testCompositeBlobGetWithConstrainedPrefetch()
+      throws Exception {
+    blobSize = maxChunkSize * 6 + random.nextInt(maxChunkSize - 1) + 1;
+    doPut();
+    Properties props = getDefaultNonBlockingRouterProperties();
+    props.setProperty("router.get.max.prefetch.chunks", "2");
+    routerConfig = new RouterConfig(new VerifiableProperties(props));
+    getAndAssertSuccess();
+
+    props = getDefaultNonBlockingRouterProperties();
+    props.setProperty("router.get.prefetch.memory.budget.bytes", "0");
+    routerConfig = new RouterConfig(new VerifiableProperties(props));
+    getAndAssertSuccess();
+  }
+
+  /**
+   * Test that the prefetch window is sized to cover the retrieval of a chunk at the rate the caller consumes chunks,
+   * within its bounds.
+   */
+  @Test
+  public void testTargetPrefetchWindow() {
+    Assert.assertEquals("A caller that consumes chunks as fast as they arrive needs one chunk ahead", 2,
+        GetBlobOperation.getTargetPrefetchWindow(10, 10, 16));
+    Assert.assertEquals("A caller that consumes chunks faster than they arrive needs more chunks ahead", 5,
+        GetBlobOperation.getTargetPrefetchWindow(40, 10, 16));
+    Assert.assertEquals("Partial chunks should be rounded up", 6, GetBlobOperation.getTargetPrefetchWindow(41, 10, 16));
+    Assert.assertEquals("A slow caller needs a single chunk in flight while it consumes another", 2,
+        GetBlobOperation.getTargetPrefetchWindow(10, 100, 16));
+    Assert.assertEquals("Chunks that are retrieved at once need no prefetching", 1,
+        GetBlobOperation.getTargetPrefetchWindow(0, 100, 16));
+    Assert.assertEquals("A caller that consumes chunks at once should get the largest window", 16,
+        GetBlobOperation.getTargetPrefetchWindow(50, 0, 16));
+    Assert.assertEquals("The window should not exceed its bound", 4,
+        GetBlobOperation.getTargetPrefetchWindow(40, 1, 4));
+  }
+
+  /**
+   * Put a composite blob and close the channel returned by the get before reading from it. Ensure that the operation
+   * completes with {@link RouterErrorCode#UnexpectedInternalError}, that the prefetch reservations are released and
+   * that a read from the closed channel fails with the same error.
+   * @throws Exception
+   */
+  @Test
+  public void testCloseBeforeRead()
+      throws Exception {
+    blobSize = maxChunkSize * 4 + random.nextInt(maxChunkSize - 1) + 1;
+    doPut();
+    final AtomicReference<ReadableStreamChannel> operationResult = new AtomicReference<>();
+    Callback<ReadableStreamChannel> callback = new Callback<ReadableStreamChannel>() {
+      @Override
+      public void onCompletion(ReadableStreamChannel result, Exception exception) {
+        operationResult.set(result);
+      }
+    };
+    operationsCount.incrementAndGet();
+    GetBlobOperation op =
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false,
+            time);
+    ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
+    requestRegistrationCallback.requestListToFill = requestListToFill;
+    while (operationResult.get() == null) {
+      op.poll(requestRegistrationCallback);
+      for (ResponseInfo responseInfo : sendAndWaitForResponses(requestListToFill)) {
+        GetResponse getResponse = GetResponse.readFrom(
+            new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse())), mockClusterMap);
+        op.handleResponse(responseInfo, getResponse);
+      }
+    }
+    Assert.assertFalse("Operation should not be complete before the channel is closed", op.isOperationComplete());
+
+    ReadableStreamChannel blobDataChannel = operationResult.get();
+    mockNetworkClient.getAndClearWokenUpStatus();
+    blobDataChannel.close();
+    Assert.assertTrue("ReadyForPollCallback should have been invoked as the channel was closed",
+        mockNetworkClient.getAndClearWokenUpStatus());
+    op.poll(requestRegistrationCallback);
+    Assert.assertTrue("Operation should be complete once the closed channel is noticed", op.isOperationComplete());
+    Assert.assertEquals("All prefetch reservations should have been released", 0, prefetchBytesInUse.get());
+    Assert.assertEquals(RouterErrorCode.UnexpectedInternalError,
+        ((RouterException) op.getOperationException()).getErrorCode());
+
+    Future<Long> readIntoFuture = blobDataChannel.readInto(new ByteBufferAsyncWritableChannel(), null);
+    try {
+      readIntoFuture.get();
+      Assert.fail("Read from a closed channel should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertEquals(RouterErrorCode.UnexpectedInternalError,
+          ((RouterException) e.getCause()).getErrorCode());
+    }
+  }
+
   /**
    * Test the case where all requests time out within the GetOperation.
    * @throws Exception
@@ -261,8 +350,8 @@ public class GetBlobOperationTest {
     doPut();
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false, time);
     requestRegistrationCallback.requestListToFill = new ArrayList<>();
     op.poll(requestRegistrationCallback);
     while (!op.isOperationComplete()) {
@@ -287,8 +376,8 @@ public class GetBlobOperationTest {
     doPut();
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -324,8 +413,8 @@ public class GetBlobOperationTest {
     doPut();
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -390,8 +479,8 @@ public class GetBlobOperationTest {
       throws Exception {
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            null, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
 
@@ -514,8 +603,8 @@ public class GetBlobOperationTest {
 
     operationsCount.incrementAndGet();
     GetBlobOperation op =
-        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobIdStr, operationFuture,
-            callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, time);
+        new GetBlobOperation(routerConfig, routerMetrics, mockClusterMap, responseHandler, blobId, operationFuture,
+            callback, operationCompleteCallback, readyForPollCallback, blobIdFactory, prefetchBytesInUse, false, time);
     ArrayList<RequestInfo> requestListToFill = new ArrayList<>();
     requestRegistrationCallback.requestListToFill = requestListToFill;
     while (!op.isOperationComplete()) {
@@ -531,6 +620,7 @@ public class GetBlobOperationTest {
 
     readCompleteLatch.await();
     Assert.assertTrue("Operation should be complete at this time", op.isOperationComplete());
+    Assert.assertEquals("All prefetch reservations should have been released", 0, prefetchBytesInUse.get());
     if (operationException.get() != null) {
       throw operationException.get();
     }
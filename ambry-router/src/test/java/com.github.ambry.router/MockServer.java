@@ -16,10 +16,15 @@ package com.github.ambry.router;
 import com.github.ambry.clustermap.ClusterMap;
 import com.github.ambry.commons.ServerErrorCode;
 import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.MessageFormatException;
+import com.github.ambry.messageformat.MessageFormatInputStream;
 import com.github.ambry.messageformat.MessageFormatRecord;
+import com.github.ambry.messageformat.PutMessageFormatInputStream;
 import com.github.ambry.network.BoundedByteBufferReceive;
 import com.github.ambry.network.ByteBufferSend;
 import com.github.ambry.network.Send;
+import com.github.ambry.protocol.BatchPutRequest;
+import com.github.ambry.protocol.BatchPutResponse;
 import com.github.ambry.protocol.DeleteRequest;
 import com.github.ambry.protocol.DeleteResponse;
 import com.github.ambry.protocol.GetRequest;
@@ -85,6 +90,9 @@ class MockServer {
       case PutRequest:
         response = makePutResponse((PutRequest) send, serverError);
         break;
+      case BatchPutRequest:
+        response = makeBatchPutResponse((BatchPutRequest) send, serverError);
+        break;
       case GetRequest:
         response = makeGetResponse((GetRequest) send, serverError);
         break;
@@ -119,9 +127,30 @@ class MockServer {
     return new PutResponse(putRequest.getCorrelationId(), putRequest.getClientId(), putError);
   }
 
+  /**
+   * Make a {@link BatchPutResponse} for the given {@link BatchPutRequest} for which the given {@link ServerErrorCode}
+   * was encountered. As with the server, either all the blobs in the batch are put or none of them are, and errors
+   * encountered while writing to the store are only reported in the responses of the individual puts.
+   * @param batchPutRequest the {@link BatchPutRequest} for which the response is being constructed.
+   * @param putError the {@link ServerErrorCode} that was encountered.
+   * @return the created {@link BatchPutResponse}
+   * @throws IOException if there was an error constructing the response.
+   */
+  BatchPutResponse makeBatchPutResponse(BatchPutRequest batchPutRequest, ServerErrorCode putError)
+      throws IOException {
+    List<PutResponse> putResponses = new ArrayList<PutResponse>();
+    for (PutRequest putRequest : batchPutRequest.getPutRequests()) {
+      putResponses.add(makePutResponse(putRequest, putError));
+    }
+    boolean isWriteError = putError == ServerErrorCode.IO_Error || putError == ServerErrorCode.Blob_Already_Exists;
+    ServerErrorCode batchError = isWriteError ? ServerErrorCode.No_Error : putError;
+    return new BatchPutResponse(batchPutRequest.getCorrelationId(), batchPutRequest.getClientId(), batchError,
+        putResponses);
+  }
+
   /**
    * Make a {@link GetResponse} for the given {@link GetRequest} for which the given {@link ServerErrorCode} was
-   * encountered. The request could be for BlobInfo or for Blob (the only two options that the router would request
+   * encountered. The request could be for BlobInfo, Blob or All (the only options that the router would request
    * for).
    * @param getRequest the {@link GetRequest} for which the response is being constructed.
    * @param getError the {@link ServerErrorCode} that was encountered.
@@ -187,6 +216,19 @@ class MockServer {
             crc.update(byteBuffer.array(), 0, byteBuffer.position());
             byteBuffer.putLong(crc.getValue());
             break;
+          case All:
+            try {
+              MessageFormatInputStream messageStream =
+                  new PutMessageFormatInputStream(key, originalBlobPutReq.getBlobProperties(),
+                      originalBlobPutReq.getUsermetadata(), originalBlobPutReq.getBlobStream(),
+                      originalBlobPutReq.getBlobSize(), originalBlobPutReq.getBlobType());
+              byteBufferSize = (int) messageStream.getSize();
+              byteBuffer = ByteBuffer.wrap(Utils.readBytesFromStream(messageStream, byteBufferSize));
+              byteBuffer.position(byteBufferSize);
+            } catch (MessageFormatException e) {
+              throw new IOException("Could not serialize message for " + key, e);
+            }
+            break;
           default:
             throw new IOException("GetRequest flag is not supported: " + getRequest.getMessageFormatFlag());
         }
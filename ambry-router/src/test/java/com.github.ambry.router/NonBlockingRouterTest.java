@@ -14,7 +14,10 @@
 package com.github.ambry.router;
 
 import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
 import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.ByteBufferAsyncWritableChannel;
 import com.github.ambry.commons.ByteBufferReadableStreamChannel;
 import com.github.ambry.commons.LoggingNotificationSystem;
 import com.github.ambry.commons.ResponseHandler;
@@ -26,13 +29,16 @@ import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.network.NetworkClient;
 import com.github.ambry.network.RequestInfo;
 import com.github.ambry.network.ResponseInfo;
+import com.github.ambry.protocol.BatchPutRequest;
 import com.github.ambry.utils.MockTime;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.TestUtils;
 import com.github.ambry.utils.Utils;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
@@ -40,6 +46,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Assert;
 import org.junit.Test;
@@ -149,6 +156,7 @@ public class NonBlockingRouterTest {
     router.getBlob(blobId);
     router.getBlobInfo(blobId);
     router.deleteBlob(blobId);
+    assertInvalidBlobIdFailures();
     router.close();
     assertExpectedThreadCounts(0);
 
@@ -156,6 +164,45 @@ public class NonBlockingRouterTest {
     assertClosed();
   }
 
+  /**
+   * Test that {@link NonBlockingRouter#getBlobWithInfo(String)} returns both the {@link BlobInfo} and the content of a
+   * blob that was put.
+   */
+  @Test
+  public void testGetBlobWithInfo()
+      throws Exception {
+    Properties props = getNonBlockingRouterProperties("DC1");
+    VerifiableProperties verifiableProperties = new VerifiableProperties((props));
+    MockClusterMap mockClusterMap = new MockClusterMap();
+    MockTime mockTime = new MockTime();
+    router = new NonBlockingRouter(new RouterConfig(verifiableProperties), new NonBlockingRouterMetrics(mockClusterMap),
+        new MockNetworkClientFactory(verifiableProperties, null, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, new MockServerLayout(mockClusterMap), mockTime), new LoggingNotificationSystem(),
+        mockClusterMap, mockTime);
+    setOperationParams();
+    String blobId = router.putBlob(putBlobProperties, putUserMetadata, putChannel).get();
+    GetBlobResult getBlobResult = router.getBlobWithInfo(blobId).get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    BlobInfo blobInfo = getBlobResult.getBlobInfo();
+    Assert.assertEquals("Blob size does not match", putBlobProperties.getBlobSize(),
+        blobInfo.getBlobProperties().getBlobSize());
+    Assert.assertEquals("Service id does not match", putBlobProperties.getServiceId(),
+        blobInfo.getBlobProperties().getServiceId());
+    Assert.assertArrayEquals("User metadata does not match", putUserMetadata, blobInfo.getUserMetadata());
+    ByteBufferAsyncWritableChannel asyncWritableChannel = new ByteBufferAsyncWritableChannel();
+    Future<Long> readIntoFuture = getBlobResult.getBlobDataChannel().readInto(asyncWritableChannel, null);
+    ByteBuffer content = ByteBuffer.allocate(putContent.length);
+    while (content.hasRemaining()) {
+      ByteBuffer chunk = asyncWritableChannel.getNextChunk();
+      content.put(chunk);
+      asyncWritableChannel.resolveOldestChunk(null);
+    }
+    Assert.assertEquals("Size read does not match", putContent.length,
+        readIntoFuture.get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS).longValue());
+    Assert.assertArrayEquals("Blob content does not match", putContent, content.array());
+    router.close();
+    assertClosed();
+  }
+
   /**
    * Test that multiple scaling units can be instantiated, exercised and closed.
    */
@@ -188,6 +235,57 @@ public class NonBlockingRouterTest {
     assertClosed();
   }
 
+  /**
+   * Test that with operation controller sharding enabled, all operations on blobs in the same partition are assigned to
+   * the same scaling unit and complete successfully.
+   */
+  @Test
+  public void testMultipleScalingUnitWithSharding()
+      throws Exception {
+    final int SCALING_UNITS = 3;
+    Properties props = getNonBlockingRouterProperties("DC1");
+    props.setProperty("router.scaling.unit.count", Integer.toString(SCALING_UNITS));
+    props.setProperty("router.operation.controller.sharding.enabled", "true");
+    VerifiableProperties verifiableProperties = new VerifiableProperties((props));
+    MockClusterMap mockClusterMap = new MockClusterMap();
+    MockTime mockTime = new MockTime();
+    MockServerLayout mockServerLayout = new MockServerLayout(mockClusterMap);
+    router = new NonBlockingRouter(new RouterConfig(verifiableProperties), new NonBlockingRouterMetrics(mockClusterMap),
+        new MockNetworkClientFactory(verifiableProperties, null, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, mockServerLayout, mockTime), new LoggingNotificationSystem(), mockClusterMap,
+        mockTime);
+
+    List<String> blobIds = new ArrayList<>();
+    for (int i = 0; i < SCALING_UNITS * 10; i++) {
+      setOperationParams();
+      blobIds.add(router.putBlob(putBlobProperties, putUserMetadata, putChannel).get());
+    }
+    Map<PartitionId, Object> partitionToOperationController = new HashMap<>();
+    for (String blobId : blobIds) {
+      BlobId id = new BlobId(blobId, mockClusterMap);
+      Object operationController = router.getOperationController(id);
+      Object expectedOperationController = partitionToOperationController.get(id.getPartition());
+      if (expectedOperationController == null) {
+        partitionToOperationController.put(id.getPartition(), operationController);
+      } else {
+        Assert.assertSame("Operations on a partition should be assigned to the same scaling unit",
+            expectedOperationController, operationController);
+      }
+      Assert.assertSame("Every operation on a blob should be assigned to the same scaling unit", operationController,
+          router.getOperationController(new BlobId(blobId, mockClusterMap)));
+      for (MockServer mockServer : mockServerLayout.getMockServers()) {
+        mockServer.setBlobIdToServerErrorCode(blobId, ServerErrorCode.No_Error);
+      }
+      router.getBlobInfo(blobId).get();
+      router.getBlob(blobId).get().close();
+      router.deleteBlob(blobId).get();
+    }
+    // an invalid blob id should still fail with the right error when sharding is enabled.
+    assertInvalidBlobIdFailures();
+    router.close();
+    assertExpectedThreadCounts(0);
+  }
+
   /**
    * Response handling related tests for all operation managers.
    */
@@ -228,10 +326,10 @@ public class NonBlockingRouterTest {
 
     // More extensive test for puts present elsewhere - these statements are here just to exercise the flow within the
     // NonBlockingRouter class, and to ensure that operations submitted to a router eventually completes.
-    String blobId = router.putBlob(putBlobProperties, putUserMetadata, putChannel).get();
+    BlobId blobId = new BlobId(router.putBlob(putBlobProperties, putUserMetadata, putChannel).get(), mockClusterMap);
     router.close();
     for (MockServer mockServer : mockServerLayout.getMockServers()) {
-      mockServer.setBlobIdToServerErrorCode(blobId, ServerErrorCode.No_Error);
+      mockServer.setBlobIdToServerErrorCode(blobId.getID(), ServerErrorCode.No_Error);
     }
 
     NetworkClient networkClient =
@@ -255,7 +353,7 @@ public class NonBlockingRouterTest {
     opHelper = new OperationHelper(OperationType.GET);
     getManager = new GetManager(mockClusterMap, mockResponseHandler, new RouterConfig(verifiableProperties),
         new NonBlockingRouterMetrics(mockClusterMap), new OperationCompleteCallback(new AtomicInteger(0)),
-        new ReadyForPollCallback(networkClient), mockTime);
+        new ReadyForPollCallback(networkClient), new AtomicLong(0), mockTime);
     testFailureDetectorNotification(opHelper, networkClient, failedReplicaIds, blobId, successfulResponseCount,
         invalidResponse, -1);
     // Test that if a failed response comes before the operation is completed, failure detector is notified.
@@ -284,6 +382,87 @@ public class NonBlockingRouterTest {
     deleteManager.close();
   }
 
+  /**
+   * Test that the failure detector is notified of the errors that the puts coalesced into a batch put request
+   * encounter, even when the batch itself does not fail.
+   */
+  @Test
+  public void testBatchedPutResponseHandling()
+      throws Exception {
+    Properties props = getNonBlockingRouterProperties("DC1");
+    props.setProperty("router.max.put.chunk.size.bytes", "10");
+    props.setProperty("router.put.batching.enabled", "true");
+    VerifiableProperties verifiableProperties = new VerifiableProperties(props);
+    // a single partition, so that the requests for all the data chunks of a blob are headed to the same replicas.
+    MockClusterMap mockClusterMap = new MockClusterMap(false, 9, 1, 1);
+    MockTime mockTime = new MockTime();
+    setOperationParams();
+    final List<ReplicaId> ioErrorReplicaIds = new ArrayList<>();
+    ResponseHandler mockResponseHandler = new ResponseHandler(mockClusterMap) {
+      @Override
+      public void onRequestResponseError(ReplicaId replicaId, ServerErrorCode serverErrorCode) {
+        if (serverErrorCode == ServerErrorCode.IO_Error) {
+          ioErrorReplicaIds.add(replicaId);
+        }
+      }
+    };
+    MockServerLayout mockServerLayout = new MockServerLayout(mockClusterMap);
+    for (MockServer mockServer : mockServerLayout.getMockServers()) {
+      // like a store failure on the server, this fails every put in a batch while the batch itself has no error.
+      mockServer.setServerErrorForAllRequests(ServerErrorCode.IO_Error);
+    }
+    mockSelectorState.set(MockSelectorState.Good);
+    NetworkClient networkClient =
+        new MockNetworkClientFactory(verifiableProperties, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
+            CHECKOUT_TIMEOUT_MS, mockServerLayout, mockTime).getNetworkClient();
+    putManager = new PutManager(mockClusterMap, mockResponseHandler, new LoggingNotificationSystem(),
+        new RouterConfig(verifiableProperties), new NonBlockingRouterMetrics(mockClusterMap),
+        new OperationCompleteCallback(new AtomicInteger(0)), new ReadyForPollCallback(networkClient), 0, mockTime);
+    putManager.submitPutBlobOperation(putBlobProperties, putUserMetadata, putChannel, new FutureResult<String>(),
+        null);
+    List<RequestInfo> batchRequests = new ArrayList<>();
+    List<RequestInfo> allRequests = new ArrayList<>();
+    long loopStartTimeMs = SystemTime.getInstance().milliseconds();
+    while (batchRequests.isEmpty()) {
+      if (loopStartTimeMs + AWAIT_TIMEOUT_MS < SystemTime.getInstance().milliseconds()) {
+        Assert.fail("Waited too long for batch put requests.");
+      }
+      putManager.poll(allRequests);
+      for (RequestInfo requestInfo : allRequests) {
+        if (requestInfo.getRequest() instanceof BatchPutRequest) {
+          batchRequests.add(requestInfo);
+        }
+      }
+      allRequests.clear();
+    }
+    int batchedPutCount = 0;
+    List<ReplicaId> batchReplicaIds = new ArrayList<>();
+    for (RequestInfo requestInfo : batchRequests) {
+      batchedPutCount += ((BatchPutRequest) requestInfo.getRequest()).getPutRequests().size();
+      batchReplicaIds.add(((RouterRequestInfo) requestInfo).getReplicaId());
+    }
+    int batchCount = batchRequests.size();
+    List<ResponseInfo> responseInfoList = new ArrayList<>();
+    loopStartTimeMs = SystemTime.getInstance().milliseconds();
+    do {
+      if (loopStartTimeMs + AWAIT_TIMEOUT_MS < SystemTime.getInstance().milliseconds()) {
+        Assert.fail("Waited too long for the responses.");
+      }
+      responseInfoList.addAll(networkClient.sendAndPoll(batchRequests, 10));
+      batchRequests.clear();
+    } while (responseInfoList.size() < batchCount);
+    for (ResponseInfo responseInfo : responseInfoList) {
+      putManager.handleResponse(responseInfo);
+    }
+    Assert.assertEquals("Failure detector should have been notified of the error of every batched put",
+        batchedPutCount, ioErrorReplicaIds.size());
+    for (ReplicaId replicaId : ioErrorReplicaIds) {
+      Assert.assertTrue("Error should have been notified for the replica the batch was sent to",
+          batchReplicaIds.contains(replicaId));
+    }
+    putManager.close();
+  }
+
   /**
    * Test that failure detector is correctly notified for all responses regardless of the order in which successful
    * and failed responses arrive.
@@ -299,7 +478,7 @@ public class NonBlockingRouterTest {
    *                    failed.
    */
   private void testFailureDetectorNotification(OperationHelper opHelper, NetworkClient networkClient,
-      List<ReplicaId> failedReplicaIds, String blobId, AtomicInteger successfulResponseCount,
+      List<ReplicaId> failedReplicaIds, BlobId blobId, AtomicInteger successfulResponseCount,
       AtomicBoolean invalidResponse, int indexToFail)
       throws Exception {
     failedReplicaIds.clear();
@@ -360,7 +539,7 @@ public class NonBlockingRouterTest {
    * @param blobId the id of the blob to get/delete. For puts, this will be null.
    * @throws Exception
    */
-  private void testResponseDeserializationError(OperationHelper opHelper, NetworkClient networkClient, String blobId)
+  private void testResponseDeserializationError(OperationHelper opHelper, NetworkClient networkClient, BlobId blobId)
       throws Exception {
     mockSelectorState.set(MockSelectorState.Good);
     FutureResult futureResult = opHelper.submitOperation(blobId);
@@ -421,6 +600,32 @@ public class NonBlockingRouterTest {
     Assert.assertTrue(future.isDone());
     RouterException e = (RouterException) ((FutureResult<String>) future).error();
     Assert.assertEquals(e.getErrorCode(), RouterErrorCode.RouterClosed);
+    Future<GetBlobResult> getBlobWithInfoFuture = router.getBlobWithInfo("blobId");
+    Assert.assertTrue(getBlobWithInfoFuture.isDone());
+    e = (RouterException) ((FutureResult<GetBlobResult>) getBlobWithInfoFuture).error();
+    Assert.assertEquals(e.getErrorCode(), RouterErrorCode.RouterClosed);
+  }
+
+  /**
+   * Asserts that operations on an invalid blob id fail with {@link RouterErrorCode#InvalidBlobId}.
+   * @throws Exception
+   */
+  private void assertInvalidBlobIdFailures()
+      throws Exception {
+    List<Future<?>> futures = new ArrayList<>();
+    futures.add(router.getBlobInfo("invalid_id"));
+    futures.add(router.getBlob("invalid_id"));
+    futures.add(router.getBlobWithInfo("invalid_id"));
+    futures.add(router.deleteBlob("invalid_id"));
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+        Assert.fail("Operation with an invalid blob id should have failed");
+      } catch (ExecutionException e) {
+        Assert.assertEquals("Unexpected error code", RouterErrorCode.InvalidBlobId,
+            ((RouterException) e.getCause()).getErrorCode());
+      }
+    }
   }
 
   /**
@@ -463,7 +668,7 @@ public class NonBlockingRouterTest {
      * @param blobId the blobId to get or delete. For puts, this is ignored.
      * @return the {@link FutureResult} associated with the submitted operation.
      */
-    FutureResult submitOperation(String blobId) {
+    FutureResult submitOperation(BlobId blobId) {
       FutureResult futureResult = null;
       switch (opType) {
         case PUT:
@@ -67,6 +67,7 @@ public class PutManagerTest {
   private int requestParallelism;
   private int successTarget;
   private boolean instantiateNewRouterForPuts;
+  private boolean putBatchingEnabled = false;
   private final Random random = new Random();
 
   private static final int MAX_PORTS_PLAIN_TEXT = 3;
@@ -264,6 +265,23 @@ public class PutManagerTest {
     submitPutsAndAssertSuccess(true);
   }
 
+  /**
+   * Tests multiple concurrent puts with put batching enabled, so that requests for chunks headed to the same replica
+   * may get coalesced into batch put requests.
+   */
+  @Test
+  public void testConcurrentBatchedPutsSuccess()
+      throws Exception {
+    putBatchingEnabled = true;
+    requestAndResultsList.clear();
+    for (int i = 0; i < 20; i++) {
+      requestAndResultsList.add(new RequestAndResult(random.nextInt(chunkSize) + 1));
+    }
+    // a composite blob, whose data chunks are eligible for batching.
+    requestAndResultsList.add(new RequestAndResult(chunkSize * 5));
+    submitPutsAndAssertSuccess(true);
+  }
+
   /**
    * Test ensures failure when all server nodes encounter an error.
    */
@@ -611,6 +629,8 @@ public class PutManagerTest {
     properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(chunkSize));
     properties.setProperty("router.put.request.parallelism", Integer.toString(requestParallelism));
     properties.setProperty("router.put.success.target", Integer.toString(successTarget));
+    properties.setProperty("router.put.batching.enabled", Boolean.toString(putBatchingEnabled));
+    properties.setProperty("router.put.batch.max.chunk.size.bytes", Integer.toString(chunkSize));
     VerifiableProperties vProps = new VerifiableProperties(properties);
     router = new NonBlockingRouter(new RouterConfig(vProps), new NonBlockingRouterMetrics(mockClusterMap),
         new MockNetworkClientFactory(vProps, mockSelectorState, MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL,
@@ -91,7 +91,7 @@ public class PutOperationTest {
   @Test
   public void testSendIncomplete()
       throws Exception {
-    int numChunks = NonBlockingRouter.MAX_IN_MEM_CHUNKS + 1;
+    int numChunks = routerConfig.routerPutMaxInMemChunks + 1;
     BlobProperties blobProperties =
         new BlobProperties(chunkSize * numChunks, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
     byte[] userMetadata = new byte[10];
@@ -112,9 +112,9 @@ public class PutOperationTest {
         mockNetworkClient.getAndClearWokenUpStatus());
     // A poll should therefore return requestParallelism number of requests from each chunk
     op.poll(requestRegistrationCallback);
-    Assert.assertEquals(NonBlockingRouter.MAX_IN_MEM_CHUNKS * requestParallelism, requestInfos.size());
+    Assert.assertEquals(routerConfig.routerPutMaxInMemChunks * requestParallelism, requestInfos.size());
 
-    // There are MAX_IN_MEM_CHUNKS + 1 data chunks for this blob (and a metadata chunk).
+    // There are routerPutMaxInMemChunks + 1 data chunks for this blob (and a metadata chunk).
     // Once the first chunk is completely sent out, the first PutChunk will be reused. What the test verifies is that
     // the buffer of the first PutChunk does not get reused. It does this as follows:
     // For the first chunk,
@@ -189,6 +189,137 @@ public class PutOperationTest {
     Assert.assertTrue("Operation should be complete at this time", op.isOperationComplete());
   }
 
+  /**
+   * Ensure that the number of chunks of an operation held in memory at any time is bounded by
+   * {@link RouterConfig#routerPutMaxInMemChunks}: the next chunk is filled only once the previous one is put, into the
+   * same buffer, and the buffer is released once the last chunk is put.
+   */
+  @Test
+  public void testMaxInMemChunks()
+      throws Exception {
+    int numChunks = 3;
+    PutOperation op = createPutOperation(getRouterConfig(1), numChunks);
+    Assert.assertEquals("Only one PutChunk should have been created", 1, op.putChunks.length);
+    PutOperation.PutChunk putChunk = op.putChunks[0];
+    List<RequestInfo> requestInfos = new ArrayList<>();
+    requestRegistrationCallback.requestListToFill = requestInfos;
+    ByteBuffer chunkBuf = null;
+    for (int i = 0; i < numChunks; i++) {
+      op.fillChunks();
+      Assert.assertEquals("Chunk filling should complete only with the last chunk", i == numChunks - 1,
+          op.isChunkFillComplete());
+      requestInfos.clear();
+      op.poll(requestRegistrationCallback);
+      Assert.assertEquals("Only the requests of one chunk should have been sent", requestParallelism,
+          requestInfos.size());
+      Assert.assertEquals("Unexpected chunk in the PutChunk", i, putChunk.getChunkIndex());
+      if (chunkBuf != null) {
+        Assert.assertSame("The buffer of the PutChunk should have been reused", chunkBuf, putChunk.buf);
+      }
+      chunkBuf = putChunk.buf;
+      completeRequests(op, requestInfos);
+    }
+    Assert.assertNull("The buffer should have been released once the last chunk was put", putChunk.buf);
+    requestInfos.clear();
+    // this should return requests for the metadata chunk
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals(requestParallelism, requestInfos.size());
+    completeRequests(op, requestInfos);
+    Assert.assertTrue("Operation should be complete at this time", op.isOperationComplete());
+  }
+
+  /**
+   * Ensure that {@link PutOperation.PutChunk#clear()} frees the PutChunk, keeps its buffer for the next chunk of the
+   * blob if it is not referred to by requests that are still being sent, and releases it once there are no more chunks
+   * to fill.
+   */
+  @Test
+  public void testPutChunkClear()
+      throws Exception {
+    PutOperation op = createPutOperation(getRouterConfig(1), 2);
+    PutOperation.PutChunk putChunk = op.putChunks[0];
+    op.fillChunks();
+    Assert.assertTrue("PutChunk should be ready", putChunk.isReady());
+    ByteBuffer chunkBuf = putChunk.buf;
+    putChunk.clear();
+    Assert.assertTrue("PutChunk should be free", putChunk.isFree());
+    Assert.assertEquals("Chunk index should have been reset", -1, putChunk.getChunkIndex());
+    Assert.assertNull("Blob id should have been reset", putChunk.getChunkBlobId());
+    Assert.assertSame("The buffer should be kept for the next chunk", chunkBuf, putChunk.buf);
+
+    // a buffer that requests which are still being sent refer to must not be reused.
+    op.fillChunks();
+    List<RequestInfo> requestInfos = new ArrayList<>();
+    requestRegistrationCallback.requestListToFill = requestInfos;
+    op.poll(requestRegistrationCallback);
+    Assert.assertEquals(requestParallelism, requestInfos.size());
+    putChunk.clear();
+    Assert.assertNull("The buffer of requests still being sent should not be reused", putChunk.buf);
+
+    // once all the data of the blob is filled, the buffer is not needed anymore.
+    op = createPutOperation(getRouterConfig(1), 1);
+    putChunk = op.putChunks[0];
+    op.fillChunks();
+    Assert.assertTrue("Chunk filling should be complete", op.isChunkFillComplete());
+    Assert.assertNotNull("PutChunk should have been filled", putChunk.buf);
+    putChunk.clear();
+    Assert.assertTrue("PutChunk should be free", putChunk.isFree());
+    Assert.assertNull("The buffer should have been released", putChunk.buf);
+  }
+
+  /**
+   * @param maxInMemChunks the value for {@link RouterConfig#routerPutMaxInMemChunks}.
+   * @return a {@link RouterConfig} like the one of the test, with the given number of chunks held in memory.
+   */
+  private RouterConfig getRouterConfig(int maxInMemChunks) {
+    Properties properties = new Properties();
+    properties.setProperty("router.hostname", "localhost");
+    properties.setProperty("router.datacenter.name", "DC1");
+    properties.setProperty("router.max.put.chunk.size.bytes", Integer.toString(chunkSize));
+    properties.setProperty("router.put.request.parallelism", Integer.toString(requestParallelism));
+    properties.setProperty("router.put.success.target", Integer.toString(successTarget));
+    properties.setProperty("router.put.max.in.mem.chunks", Integer.toString(maxInMemChunks));
+    return new RouterConfig(new VerifiableProperties(properties));
+  }
+
+  /**
+   * Create a {@link PutOperation} for a blob of random content that has started reading from its channel.
+   * @param config the {@link RouterConfig} to use.
+   * @param numChunks the number of data chunks of the blob.
+   * @return the {@link PutOperation}.
+   */
+  private PutOperation createPutOperation(RouterConfig config, int numChunks)
+      throws Exception {
+    BlobProperties blobProperties =
+        new BlobProperties(chunkSize * numChunks, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
+    byte[] content = new byte[chunkSize * numChunks];
+    random.nextBytes(content);
+    ReadableStreamChannel channel = new ByteBufferReadableStreamChannel(ByteBuffer.wrap(content));
+    PutOperation op = new PutOperation(config, routerMetrics, mockClusterMap, responseHandler, blobProperties,
+        new byte[10], channel, new FutureResult<String>(), null, new ReadyForPollCallback(new MockNetworkClient()),
+        null, time);
+    op.startReadingFromChannel();
+    return op;
+  }
+
+  /**
+   * Read out the given requests, as the network client would, and succeed the first of them, which completes the
+   * chunk they are for (the successTarget is set to 1).
+   * @param op the {@link PutOperation} that issued the requests.
+   * @param requestInfos the requests for a chunk.
+   * @throws IOException
+   */
+  private void completeRequests(PutOperation op, List<RequestInfo> requestInfos)
+      throws IOException {
+    for (RequestInfo requestInfo : requestInfos) {
+      PutRequest putRequest = (PutRequest) requestInfo.getRequest();
+      putRequest.writeTo(new ByteBufferChannel(ByteBuffer.allocate((int) putRequest.sizeInBytes())));
+    }
+    ResponseInfo responseInfo = getResponseInfo(requestInfos.get(0));
+    op.handleResponse(responseInfo,
+        PutResponse.readFrom(new DataInputStream(new ByteBufferInputStream(responseInfo.getResponse()))));
+  }
+
   /**
    *  Reset the correlation id field of a {@link PutRequest} to 0.
    */
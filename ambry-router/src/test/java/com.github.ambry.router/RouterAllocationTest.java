@@ -0,0 +1,322 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.router;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.commons.ByteBufferAsyncWritableChannel;
+import com.github.ambry.commons.ByteBufferReadableStreamChannel;
+import com.github.ambry.commons.LoggingNotificationSystem;
+import com.github.ambry.config.NetworkConfig;
+import com.github.ambry.config.RouterConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.network.NetworkClient;
+import com.github.ambry.network.NetworkClientFactory;
+import com.github.ambry.network.NetworkMetrics;
+import com.github.ambry.network.NetworkSend;
+import com.github.ambry.network.PortType;
+import com.github.ambry.utils.AllocationCounter;
+import com.github.ambry.utils.MockTime;
+import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Utils;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Holds the bytes allocated by the {@link NonBlockingRouter} for puts and gets of a single chunk blob to a budget.
+ * The allocations of the thread of the test, which submits the operations and reads the blobs, and of the threads that
+ * the router starts are counted. Those made while the {@link MockSelector} polls are not, since that is where the
+ * {@link MockServer}s serve the requests and copy the blobs they store and return. The other threads of the JVM are not
+ * counted either.
+ * <p/>
+ * The {@link MockSelector} returns from a poll right away, so the router would allocate in a busy loop while an
+ * operation waits on the caller. The router is given a selector that waits for the poll timeout or a wakeup instead,
+ * like a real one, so that only the work done for operations is counted. The budgets are set 15 to 20 percent over
+ * the most bytes per operation that were measured, on JDK 17 with logging disabled, and are below what another copy
+ * of the blob would take. See {@link AllocationCounter} to scale them.
+ */
+public class RouterAllocationTest {
+  private static final int BLOB_SIZE = 16 * 1024;
+  private static final int USER_METADATA_SIZE = 100;
+  private static final int WARM_UP_ITERATIONS = 500;
+  private static final int ITERATIONS = 500;
+  private static final int AWAIT_TIMEOUT_MS = 2000;
+
+  // the put budget includes the chunk the router fills with the blob. Measured: 27,262.
+  private static final long PUT_BUDGET_BYTES = BLOB_SIZE + 16 * 1024;
+  // the get budget includes the buffer the router deserializes the blob from the response into. Measured: 35,443.
+  private static final long GET_BUDGET_BYTES = BLOB_SIZE + 24 * 1024;
+
+  private final Random random = new Random();
+  private final byte[] userMetadata = new byte[USER_METADATA_SIZE];
+  private final byte[] content = new byte[BLOB_SIZE];
+  private MockClusterMap clusterMap;
+  private IdleWaitingNetworkClientFactory networkClientFactory;
+  private NonBlockingRouter router;
+  private Set<Thread> routerThreads;
+
+  @Before
+  public void initRouter()
+      throws IOException {
+    random.nextBytes(userMetadata);
+    random.nextBytes(content);
+    Properties properties = new Properties();
+    properties.setProperty("router.hostname", "localhost");
+    properties.setProperty("router.datacenter.name", "DC1");
+    VerifiableProperties verifiableProperties = new VerifiableProperties(properties);
+    clusterMap = new MockClusterMap();
+    MockTime time = new MockTime();
+    networkClientFactory =
+        new IdleWaitingNetworkClientFactory(verifiableProperties, new MockServerLayout(clusterMap), time);
+    Set<Thread> threadsBeforeRouter = Thread.getAllStackTraces().keySet();
+    router = new NonBlockingRouter(new RouterConfig(verifiableProperties), new NonBlockingRouterMetrics(clusterMap),
+        networkClientFactory, new LoggingNotificationSystem(), clusterMap, time);
+    routerThreads = new HashSet<Thread>(Thread.getAllStackTraces().keySet());
+    routerThreads.removeAll(threadsBeforeRouter);
+  }
+
+  @After
+  public void closeRouter()
+      throws IOException {
+    router.close();
+    clusterMap.cleanup();
+  }
+
+  /**
+   * Tests that a put of a single chunk blob allocates within its budget.
+   * @throws Exception
+   */
+  @Test
+  public void putAllocationTest()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    final List<String> blobIds = new ArrayList<String>(WARM_UP_ITERATIONS + ITERATIONS);
+    double bytesPerPut = measureBytesPerOperation(new AllocationCounter.Operation() {
+      @Override
+      public void run(int iteration)
+          throws Exception {
+        blobIds.add(putBlob());
+      }
+    });
+    Assert.assertEquals("Every put should have returned a blob id", WARM_UP_ITERATIONS + ITERATIONS, blobIds.size());
+    AllocationCounter.assertWithinBudget("RouterPut", bytesPerPut, PUT_BUDGET_BYTES);
+  }
+
+  /**
+   * Tests that a get of a single chunk blob, including reading its content, allocates within its budget.
+   * @throws Exception
+   */
+  @Test
+  public void getAllocationTest()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    final List<String> blobIds = new ArrayList<String>(WARM_UP_ITERATIONS + ITERATIONS);
+    for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+      blobIds.add(putBlob());
+    }
+    final ByteBuffer readContent = ByteBuffer.allocate(BLOB_SIZE);
+    double bytesPerGet = measureBytesPerOperation(new AllocationCounter.Operation() {
+      @Override
+      public void run(int iteration)
+          throws Exception {
+        ReadableStreamChannel blobDataChannel =
+            router.getBlob(blobIds.get(iteration)).get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        ByteBufferAsyncWritableChannel asyncWritableChannel = new ByteBufferAsyncWritableChannel();
+        Future<Long> readIntoFuture = blobDataChannel.readInto(asyncWritableChannel, null);
+        readContent.clear();
+        while (readContent.hasRemaining()) {
+          ByteBuffer chunk = asyncWritableChannel.getNextChunk();
+          readContent.put(chunk);
+          asyncWritableChannel.resolveOldestChunk(null);
+        }
+        readIntoFuture.get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+      }
+    });
+    Assert.assertArrayEquals("Blob content does not match", content, readContent.array());
+    AllocationCounter.assertWithinBudget("RouterGet", bytesPerGet, GET_BUDGET_BYTES);
+  }
+
+  /**
+   * Warms up with {@link #WARM_UP_ITERATIONS} operations and measures {@link #ITERATIONS} more on the thread of the
+   * test and on the threads of the router, leaving out the bytes allocated while the selectors polled.
+   * @param operation the operation to measure.
+   * @return the bytes allocated per operation.
+   * @throws Exception
+   */
+  private double measureBytesPerOperation(final AllocationCounter.Operation operation)
+      throws Exception {
+    final AtomicLong routerBytesAtStart = new AtomicLong();
+    final AtomicLong pollBytesAtStart = new AtomicLong();
+    double callerBytesPerOperation = AllocationCounter.measureBytesPerOperation(new AllocationCounter.Operation() {
+      @Override
+      public void run(int iteration)
+          throws Exception {
+        if (iteration == WARM_UP_ITERATIONS) {
+          routerBytesAtStart.set(getRouterThreadsAllocatedBytes());
+          pollBytesAtStart.set(networkClientFactory.getPollAllocatedBytes());
+        }
+        operation.run(iteration);
+      }
+    }, WARM_UP_ITERATIONS, ITERATIONS);
+    long routerBytes = getRouterThreadsAllocatedBytes() - routerBytesAtStart.get();
+    long pollBytes = networkClientFactory.getPollAllocatedBytes() - pollBytesAtStart.get();
+    return callerBytesPerOperation + (double) (routerBytes - pollBytes) / ITERATIONS;
+  }
+
+  /**
+   * @return the bytes allocated so far by the threads of the router.
+   */
+  private long getRouterThreadsAllocatedBytes() {
+    long allocatedBytes = 0;
+    for (Thread thread : routerThreads) {
+      allocatedBytes += AllocationCounter.getThreadAllocatedBytes(thread.getId());
+    }
+    return allocatedBytes;
+  }
+
+  /**
+   * Puts a blob with the content and user metadata of the test.
+   * @return the id of the blob.
+   * @throws Exception
+   */
+  private String putBlob()
+      throws Exception {
+    BlobProperties blobProperties =
+        new BlobProperties(BLOB_SIZE, "serviceId", "memberId", "contentType", false, Utils.Infinite_Time);
+    return router.putBlob(blobProperties, userMetadata,
+        new ByteBufferReadableStreamChannel(ByteBuffer.wrap(content)))
+        .get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * A {@link NetworkClientFactory} that returns {@link NetworkClient}s with an {@link IdleWaitingSelector}.
+   */
+  private static class IdleWaitingNetworkClientFactory extends NetworkClientFactory {
+    private static final int MAX_PORTS_PLAIN_TEXT = 3;
+    private static final int MAX_PORTS_SSL = 3;
+    private static final int CHECKOUT_TIMEOUT_MS = 1000;
+    private final MockServerLayout serverLayout;
+    private final Time time;
+    private final List<IdleWaitingSelector> selectors = new CopyOnWriteArrayList<IdleWaitingSelector>();
+
+    IdleWaitingNetworkClientFactory(VerifiableProperties verifiableProperties, MockServerLayout serverLayout,
+        Time time) {
+      super(new NetworkMetrics(new MetricRegistry()), new NetworkConfig(verifiableProperties), null,
+          MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL, CHECKOUT_TIMEOUT_MS, time);
+      this.serverLayout = serverLayout;
+      this.time = time;
+    }
+
+    @Override
+    public NetworkClient getNetworkClient()
+        throws IOException {
+      IdleWaitingSelector selector = new IdleWaitingSelector(serverLayout, time);
+      selectors.add(selector);
+      return new NetworkClient(selector, networkConfig, new NetworkMetrics(new MetricRegistry()),
+          MAX_PORTS_PLAIN_TEXT, MAX_PORTS_SSL, CHECKOUT_TIMEOUT_MS, time);
+    }
+
+    /**
+     * @return the bytes allocated so far while the selectors of the {@link NetworkClient}s polled.
+     */
+    long getPollAllocatedBytes() {
+      long pollAllocatedBytes = 0;
+      for (IdleWaitingSelector selector : selectors) {
+        pollAllocatedBytes += selector.getPollAllocatedBytes();
+      }
+      return pollAllocatedBytes;
+    }
+  }
+
+  /**
+   * A {@link MockSelector} whose poll waits for up to the poll timeout when there is nothing to send and nothing
+   * happened since the last poll, until it is woken up. It counts the bytes allocated while it polls.
+   */
+  private static class IdleWaitingSelector extends MockSelector {
+    private final Object lock = new Object();
+    private final AtomicLong pollAllocatedBytes = new AtomicLong();
+    private boolean eventPending = false;
+
+    IdleWaitingSelector(MockServerLayout serverLayout, Time time)
+        throws IOException {
+      super(serverLayout, null, time);
+    }
+
+    @Override
+    public String connect(InetSocketAddress address, int sendBufferSize, int receiveBufferSize, PortType portType)
+        throws IOException {
+      String connId = super.connect(address, sendBufferSize, receiveBufferSize, portType);
+      // the connection is reported as connected by the next poll
+      wakeup();
+      return connId;
+    }
+
+    @Override
+    public void poll(long timeoutMs, List<NetworkSend> sends)
+        throws IOException {
+      synchronized (lock) {
+        if ((sends == null || sends.isEmpty()) && !eventPending) {
+          try {
+            lock.wait(timeoutMs);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        eventPending = false;
+      }
+      long allocatedBytesAtStart = AllocationCounter.getCurrentThreadAllocatedBytes();
+      super.poll(timeoutMs, sends);
+      pollAllocatedBytes.addAndGet(AllocationCounter.getCurrentThreadAllocatedBytes() - allocatedBytesAtStart);
+    }
+
+    @Override
+    public void close(String conn) {
+      super.close(conn);
+      wakeup();
+    }
+
+    @Override
+    public void wakeup() {
+      synchronized (lock) {
+        eventPending = true;
+        lock.notifyAll();
+      }
+    }
+
+    /**
+     * @return the bytes allocated so far while this selector polled.
+     */
+    long getPollAllocatedBytes() {
+      return pollAllocatedBytes.get();
+    }
+  }
+}
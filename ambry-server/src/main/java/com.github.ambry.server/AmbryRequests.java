@@ -38,11 +38,16 @@ import com.github.ambry.network.Send;
 import com.github.ambry.network.ServerNetworkResponseMetrics;
 import com.github.ambry.notification.BlobReplicaSourceType;
 import com.github.ambry.notification.NotificationSystem;
+import com.github.ambry.protocol.BatchPutRequest;
+import com.github.ambry.protocol.BatchPutResponse;
+import com.github.ambry.protocol.CompressedSend;
 import com.github.ambry.protocol.DeleteRequest;
 import com.github.ambry.protocol.DeleteResponse;
 import com.github.ambry.protocol.GetOptions;
 import com.github.ambry.protocol.GetRequest;
 import com.github.ambry.protocol.GetResponse;
+import com.github.ambry.protocol.KeySummaryRequest;
+import com.github.ambry.protocol.KeySummaryResponse;
 import com.github.ambry.protocol.PartitionRequestInfo;
 import com.github.ambry.protocol.PartitionResponseInfo;
 import com.github.ambry.protocol.PutRequest;
@@ -62,15 +67,29 @@ import com.github.ambry.store.StoreErrorCodes;
 import com.github.ambry.store.StoreException;
 import com.github.ambry.store.StoreGetOptions;
 import com.github.ambry.store.StoreInfo;
+import com.github.ambry.store.StoreKey;
 import com.github.ambry.store.StoreKeyFactory;
 import com.github.ambry.store.StoreManager;
+import com.github.ambry.utils.IFilter;
 import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Trace;
+import com.github.ambry.utils.Tracer;
 import com.github.ambry.utils.Utils;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,11 +113,13 @@ public class AmbryRequests implements RequestAPI {
   private final NotificationSystem notification;
   private final ReplicationManager replicationManager;
   private final StoreKeyFactory storeKeyFactory;
+  private final Tracer tracer;
+  private final ExecutorService keySummaryExecutor;
 
   public AmbryRequests(StoreManager storeManager, RequestResponseChannel requestResponseChannel, ClusterMap clusterMap,
       DataNodeId nodeId, MetricRegistry registry, FindTokenFactory findTokenFactory,
       NotificationSystem operationNotification, ReplicationManager replicationManager,
-      StoreKeyFactory storeKeyFactory) {
+      StoreKeyFactory storeKeyFactory, Tracer tracer) {
     this.storeManager = storeManager;
     this.requestResponseChannel = requestResponseChannel;
     this.clusterMap = clusterMap;
@@ -109,6 +130,20 @@ public class AmbryRequests implements RequestAPI {
     this.notification = operationNotification;
     this.replicationManager = replicationManager;
     this.storeKeyFactory = storeKeyFactory;
+    this.tracer = tracer;
+    this.keySummaryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        return Utils.newThread("KeySummaryThread", runnable, true);
+      }
+    });
+  }
+
+  /**
+   * Stops handling key summary requests. The key summary requests that were handed off are dropped.
+   */
+  public void shutdown() {
+    keySummaryExecutor.shutdownNow();
   }
 
   public void handleRequests(Request request)
@@ -120,6 +155,9 @@ public class AmbryRequests implements RequestAPI {
         case PutRequest:
           handlePutRequest(request);
           break;
+        case BatchPutRequest:
+          handleBatchPutRequest(request);
+          break;
         case GetRequest:
           handleGetRequest(request);
           break;
@@ -129,6 +167,9 @@ public class AmbryRequests implements RequestAPI {
         case ReplicaMetadataRequest:
           handleReplicaMetadataRequest(request);
           break;
+        case KeySummaryRequest:
+          handleKeySummaryRequest(request);
+          break;
         default:
           throw new UnsupportedOperationException("Request type not supported");
       }
@@ -165,6 +206,7 @@ public class AmbryRequests implements RequestAPI {
         MessageFormatWriteSet writeset = new MessageFormatWriteSet(stream, infoList, false);
         Store storeToPut = storeManager.getStore(putRequest.getBlobId().getPartition());
         storeToPut.put(writeset);
+        replicationManager.onLocalWrite(putRequest.getBlobId().getPartition());
         response = new PutResponse(putRequest.getCorrelationId(), putRequest.getClientId(), ServerErrorCode.No_Error);
         metrics.blobSizeInBytes.update(putRequest.getBlobSize());
         metrics.blobUserMetadataSizeInBytes.update(putRequest.getUsermetadata().limit());
@@ -194,11 +236,136 @@ public class AmbryRequests implements RequestAPI {
       totalTimeSpent += processingTime;
       publicAccessLogger.info("{} {} processingTime {}", putRequest, response, processingTime);
       metrics.putBlobProcessingTimeInMs.update(processingTime);
+      replicationManager.onForegroundRequest(putRequest.getBlobId().getPartition(), processingTime);
     }
     sendPutResponse(requestResponseChannel, response, request, metrics.putBlobResponseQueueTimeInMs,
         metrics.putBlobSendTimeInMs, metrics.putBlobTotalTimeInMs, totalTimeSpent, putRequest.getBlobSize(), metrics);
   }
 
+  /**
+   * Handles a {@link BatchPutRequest}. Every blob in the batch gets a {@link PutResponse} of its own. Blobs that
+   * already exist in the store, or that appear earlier in the same batch, fail with
+   * {@link ServerErrorCode#Blob_Already_Exists} and the rest are written to the store with a single
+   * {@link MessageFormatWriteSet}, so that either all of them are persisted or none of them are. A batch whose blobs
+   * do not all belong to the same partition, or whose partition cannot be written to, fails as a whole with the error
+   * of the {@link BatchPutResponse} and nothing is written.
+   * @param request the {@link Request} containing the {@link BatchPutRequest}.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public void handleBatchPutRequest(Request request)
+      throws IOException, InterruptedException {
+    BatchPutRequest batchPutRequest =
+        BatchPutRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+    long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
+    long totalTimeSpent = requestQueueTime;
+    metrics.batchPutRequestQueueTimeInMs.update(requestQueueTime);
+    metrics.batchPutRequestRate.mark();
+    List<PutRequest> putRequests = batchPutRequest.getPutRequests();
+    metrics.batchPutBlobCount.update(putRequests.size());
+    long startTime = SystemTime.getInstance().milliseconds();
+    ServerErrorCode error = ServerErrorCode.No_Error;
+    // the error of the blobs that were written, or were to be written, to the store
+    ServerErrorCode writeError = ServerErrorCode.No_Error;
+    boolean[] alreadyExists = new boolean[putRequests.size()];
+    PartitionId partitionId = putRequests.get(0).getBlobId().getPartition();
+    for (PutRequest putRequest : putRequests) {
+      if (!putRequest.getBlobId().getPartition().equals(partitionId)) {
+        logger.error("All the blobs in a batch put must belong to the same partition, failing request {}",
+            batchPutRequest);
+        error = ServerErrorCode.Unknown_Error;
+        break;
+      }
+    }
+    if (error == ServerErrorCode.No_Error) {
+      error = validateRequest(partitionId, true);
+      if (error != ServerErrorCode.No_Error) {
+        logger.error("Validating batch put request failed with error {} for request {}", error, batchPutRequest);
+      }
+    }
+    if (error == ServerErrorCode.No_Error) {
+      try {
+        Store storeToPut = storeManager.getStore(partitionId);
+        List<StoreKey> keys = new ArrayList<StoreKey>(putRequests.size());
+        for (PutRequest putRequest : putRequests) {
+          keys.add(putRequest.getBlobId());
+        }
+        Set<StoreKey> missingKeys = storeToPut.findMissingKeys(keys);
+        Set<StoreKey> keysToWrite = new HashSet<StoreKey>();
+        List<PutRequest> putRequestsToWrite = new ArrayList<PutRequest>(putRequests.size());
+        for (int i = 0; i < putRequests.size(); i++) {
+          PutRequest putRequest = putRequests.get(i);
+          if (!missingKeys.contains(putRequest.getBlobId()) || !keysToWrite.add(putRequest.getBlobId())) {
+            logger.error("Blob {} of batch put request {} already exists", putRequest.getBlobId(), batchPutRequest);
+            metrics.idAlreadyExistError.inc();
+            alreadyExists[i] = true;
+          } else {
+            putRequestsToWrite.add(putRequest);
+          }
+        }
+        if (!putRequestsToWrite.isEmpty()) {
+          List<InputStream> streams = new ArrayList<InputStream>(putRequestsToWrite.size());
+          List<MessageInfo> infoList = new ArrayList<MessageInfo>(putRequestsToWrite.size());
+          for (PutRequest putRequest : putRequestsToWrite) {
+            MessageFormatInputStream stream =
+                new PutMessageFormatInputStream(putRequest.getBlobId(), putRequest.getBlobProperties(),
+                    putRequest.getUsermetadata(), putRequest.getBlobStream(), putRequest.getBlobSize(),
+                    putRequest.getBlobType());
+            streams.add(stream);
+            infoList.add(new MessageInfo(putRequest.getBlobId(), stream.getSize(), Utils
+                .addSecondsToEpochTime(putRequest.getBlobProperties().getCreationTimeInMs(),
+                    putRequest.getBlobProperties().getTimeToLiveInSeconds())));
+          }
+          MessageFormatWriteSet writeset =
+              new MessageFormatWriteSet(new SequenceInputStream(Collections.enumeration(streams)), infoList, false);
+          storeToPut.put(writeset);
+          replicationManager.onLocalWrite(partitionId);
+          for (PutRequest putRequest : putRequestsToWrite) {
+            metrics.markPutBlobRequestRateBySize(putRequest.getBlobSize());
+            metrics.blobSizeInBytes.update(putRequest.getBlobSize());
+            metrics.blobUserMetadataSizeInBytes.update(putRequest.getUsermetadata().limit());
+            if (notification != null) {
+              notification.onBlobReplicaCreated(currentNode.getHostname(), currentNode.getPort(),
+                  putRequest.getBlobId().getID(), BlobReplicaSourceType.PRIMARY);
+            }
+          }
+        }
+      } catch (StoreException e) {
+        logger.error("Store exception on a batch put with error code " + e.getErrorCode() + " for request "
+            + batchPutRequest, e);
+        if (e.getErrorCode() == StoreErrorCodes.Already_Exist) {
+          metrics.idAlreadyExistError.inc();
+        } else if (e.getErrorCode() == StoreErrorCodes.IOError) {
+          metrics.storeIOError.inc();
+        } else {
+          metrics.unExpectedStorePutError.inc();
+        }
+        writeError = ErrorMapping.getStoreErrorMapping(e.getErrorCode());
+      } catch (Exception e) {
+        logger.error("Unknown exception on a batch put for request " + batchPutRequest, e);
+        writeError = ServerErrorCode.Unknown_Error;
+      }
+    }
+    List<PutResponse> putResponses = new ArrayList<PutResponse>(putRequests.size());
+    for (int i = 0; i < putRequests.size(); i++) {
+      PutRequest putRequest = putRequests.get(i);
+      ServerErrorCode putError = error;
+      if (putError == ServerErrorCode.No_Error) {
+        putError = alreadyExists[i] ? ServerErrorCode.Blob_Already_Exists : writeError;
+      }
+      putResponses.add(new PutResponse(putRequest.getCorrelationId(), putRequest.getClientId(), putError));
+    }
+    BatchPutResponse response =
+        new BatchPutResponse(batchPutRequest.getCorrelationId(), batchPutRequest.getClientId(), error, putResponses);
+    long processingTime = SystemTime.getInstance().milliseconds() - startTime;
+    totalTimeSpent += processingTime;
+    publicAccessLogger.info("{} {} processingTime {}", batchPutRequest, response, processingTime);
+    metrics.batchPutProcessingTimeInMs.update(processingTime);
+    requestResponseChannel.sendResponse(response, request,
+        new ServerNetworkResponseMetrics(metrics.batchPutResponseQueueTimeInMs, metrics.batchPutSendTimeInMs,
+            metrics.batchPutTotalTimeInMs, null, null, totalTimeSpent));
+  }
+
   public void handleGetRequest(Request request)
       throws IOException, InterruptedException {
     GetRequest getRequest = GetRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
@@ -239,6 +406,10 @@ public class AmbryRequests implements RequestAPI {
       responseTotalTime = metrics.getBlobAllTotalTimeInMs;
     }
     long startTime = SystemTime.getInstance().milliseconds();
+    Trace trace = tracer.continueTrace(getRequest.getTraceId(), "ServerGet", request.getStartTimeInMs());
+    if (trace != null) {
+      trace.addSpan("RequestQueue", null, request.getStartTimeInMs(), startTime);
+    }
     GetResponse response = null;
     try {
       List<Send> messagesToSendList = new ArrayList<Send>(getRequest.getPartitionInfoList().size());
@@ -253,6 +424,7 @@ public class AmbryRequests implements RequestAPI {
               new PartitionResponseInfo(partitionRequestInfo.getPartition(), error);
           partitionResponseInfoList.add(partitionResponseInfo);
         } else {
+          long storeGetStartTime = SystemTime.getInstance().milliseconds();
           try {
             Store storeToGet = storeManager.getStore(partitionRequestInfo.getPartition());
             EnumSet<StoreGetOptions> storeGetOptions = EnumSet.noneOf(StoreGetOptions.class);
@@ -268,14 +440,25 @@ public class AmbryRequests implements RequestAPI {
                   EnumSet.of(StoreGetOptions.Store_Include_Deleted, StoreGetOptions.Store_Include_Expired);
             }
             StoreInfo info = storeToGet.get(partitionRequestInfo.getBlobIds(), storeGetOptions);
+            long messageReadStartTime = SystemTime.getInstance().milliseconds();
             MessageFormatSend blobsToSend =
                 new MessageFormatSend(info.getMessageReadSet(), getRequest.getMessageFormatFlag(), messageFormatMetrics,
                     storeKeyFactory);
+            if (trace != null) {
+              // the index lookup happens in the store, the headers of the messages are read from disk by the send
+              String partition = partitionRequestInfo.getPartition().toString();
+              trace.addSpan("StoreGet", partition, storeGetStartTime, messageReadStartTime);
+              trace.addSpan("MessageRead", partition, messageReadStartTime, SystemTime.getInstance().milliseconds());
+            }
             PartitionResponseInfo partitionResponseInfo =
                 new PartitionResponseInfo(partitionRequestInfo.getPartition(), info.getMessageReadSetInfo());
             messagesToSendList.add(blobsToSend);
             partitionResponseInfoList.add(partitionResponseInfo);
           } catch (StoreException e) {
+            if (trace != null) {
+              trace.addSpan("StoreGet", partitionRequestInfo.getPartition() + " " + e.getErrorCode(), storeGetStartTime,
+                  SystemTime.getInstance().milliseconds());
+            }
             if (e.getErrorCode() == StoreErrorCodes.ID_Not_Found) {
               logger.trace("Store exception on a get with error code " + e.getErrorCode() + " " +
                   "for partition " + partitionRequestInfo.getPartition(), e);
@@ -311,8 +494,22 @@ public class AmbryRequests implements RequestAPI {
         }
       }
       CompositeSend compositeSend = new CompositeSend(messagesToSendList);
-      response = new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(), partitionResponseInfoList,
-          compositeSend, ServerErrorCode.No_Error);
+      if (getRequest.shouldCompressResponse()) {
+        long compressionStartTime = SystemTime.getInstance().milliseconds();
+        CompressedSend compressedSend = new CompressedSend(compositeSend);
+        metrics.getResponseCompressionTimeInMs.update(SystemTime.getInstance().milliseconds() - compressionStartTime);
+        if (compressedSend.getUncompressedSizeInBytes() > 0) {
+          metrics.getResponseCompressionRatioInPercent.update(
+              compressedSend.sizeInBytes() * 100 / compressedSend.getUncompressedSizeInBytes());
+        }
+        metrics.getResponseCompressionSavedBytesRate.mark(
+            compressedSend.getUncompressedSizeInBytes() - compressedSend.sizeInBytes());
+        response = new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(), partitionResponseInfoList,
+            compressedSend, ServerErrorCode.No_Error);
+      } else {
+        response = new GetResponse(getRequest.getCorrelationId(), getRequest.getClientId(), partitionResponseInfoList,
+            compositeSend, ServerErrorCode.No_Error);
+      }
     } catch (Exception e) {
       logger.error("Unknown exception for request " + getRequest, e);
       response =
@@ -321,6 +518,12 @@ public class AmbryRequests implements RequestAPI {
       long processingTime = SystemTime.getInstance().milliseconds() - startTime;
       totalTimeSpent += processingTime;
       publicAccessLogger.info("{} {} processingTime {}", getRequest, response, processingTime);
+      // gets from replica threads are not foreground requests.
+      if (!getRequest.getClientId().startsWith(ReplicationManager.REPLICATION_FETCH_CLIENT_ID_PREFIX)) {
+        for (PartitionRequestInfo partitionRequestInfo : getRequest.getPartitionInfoList()) {
+          replicationManager.onForegroundRequest(partitionRequestInfo.getPartition(), processingTime);
+        }
+      }
       if (getRequest.getMessageFormatFlag() == MessageFormatFlags.Blob) {
         metrics.getBlobProcessingTimeInMs.update(processingTime);
       } else if (getRequest.getMessageFormatFlag() == MessageFormatFlags.BlobProperties) {
@@ -334,7 +537,7 @@ public class AmbryRequests implements RequestAPI {
       }
     }
     sendGetResponse(requestResponseChannel, response, request, responseQueueTime, responseSendTime, responseTotalTime,
-        totalTimeSpent, response.sizeInBytes(), getRequest.getMessageFormatFlag(), metrics);
+        totalTimeSpent, response.sizeInBytes(), getRequest.getMessageFormatFlag(), metrics, trace);
   }
 
   public void handleDeleteRequest(Request request)
@@ -359,6 +562,7 @@ public class AmbryRequests implements RequestAPI {
         MessageFormatWriteSet writeset = new MessageFormatWriteSet(stream, infoList, false);
         Store storeToDelete = storeManager.getStore(deleteRequest.getBlobId().getPartition());
         storeToDelete.delete(writeset);
+        replicationManager.onLocalWrite(deleteRequest.getBlobId().getPartition());
         response =
             new DeleteResponse(deleteRequest.getCorrelationId(), deleteRequest.getClientId(), ServerErrorCode.No_Error);
         if (notification != null) {
@@ -412,71 +616,31 @@ public class AmbryRequests implements RequestAPI {
     metrics.replicaMetadataRequestQueueTimeInMs.update(requestQueueTime);
     metrics.replicaMetadataRequestRate.mark();
 
-    List<ReplicaMetadataRequestInfo> replicaMetadataRequestInfoList =
-        replicaMetadataRequest.getReplicaMetadataRequestInfoList();
-    int partitionCnt = replicaMetadataRequestInfoList.size();
     long startTimeInMs = SystemTime.getInstance().milliseconds();
     ReplicaMetadataResponse response = null;
     try {
+      List<PartitionId> partitionIds = new ArrayList<PartitionId>();
+      for (ReplicaMetadataRequestInfo replicaMetadataRequestInfo : replicaMetadataRequest
+          .getReplicaMetadataRequestInfoList()) {
+        partitionIds.add(replicaMetadataRequestInfo.getPartitionId());
+      }
+      long localWriteSequence = replicationManager.getLocalWriteSequence(partitionIds);
       List<ReplicaMetadataResponseInfo> replicaMetadataResponseList =
-          new ArrayList<ReplicaMetadataResponseInfo>(partitionCnt);
-      for (ReplicaMetadataRequestInfo replicaMetadataRequestInfo : replicaMetadataRequestInfoList) {
-        long partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
-        PartitionId partitionId = replicaMetadataRequestInfo.getPartitionId();
-        ServerErrorCode error = validateRequest(partitionId, false);
-        logger.trace("{} Time used to validate metadata request: {}", partitionId,
-            (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
-
-        if (error != ServerErrorCode.No_Error) {
-          logger.error("Validating replica metadata request failed with error {} for partition {}", error, partitionId);
-          ReplicaMetadataResponseInfo replicaMetadataResponseInfo = new ReplicaMetadataResponseInfo(partitionId, error);
-          replicaMetadataResponseList.add(replicaMetadataResponseInfo);
-        } else {
-          try {
-            FindToken findToken = replicaMetadataRequestInfo.getToken();
-            String hostName = replicaMetadataRequestInfo.getHostName();
-            String replicaPath = replicaMetadataRequestInfo.getReplicaPath();
-            Store store = storeManager.getStore(partitionId);
-
-            partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
-            FindInfo findInfo =
-                store.findEntriesSince(findToken, replicaMetadataRequest.getMaxTotalSizeOfEntriesInBytes());
-            logger.trace("{} Time used to find entry since: {}", partitionId,
-                (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
-
-            partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
-            replicationManager.updateTotalBytesReadByRemoteReplica(partitionId, hostName, replicaPath,
-                findInfo.getFindToken().getBytesRead());
-            logger.trace("{} Time used to update total bytes read: {}", partitionId,
-                (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
-
-            partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
-            long remoteReplicaLagInBytes =
-                replicationManager.getRemoteReplicaLagInBytes(partitionId, hostName, replicaPath);
-            logger.trace("{} Time used to get remote replica lag in bytes: {}", partitionId,
-                (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
-
-            ReplicaMetadataResponseInfo replicaMetadataResponseInfo =
-                new ReplicaMetadataResponseInfo(partitionId, findInfo.getFindToken(), findInfo.getMessageEntries(),
-                    remoteReplicaLagInBytes);
-            replicaMetadataResponseList.add(replicaMetadataResponseInfo);
-          } catch (StoreException e) {
-            logger.error("Store exception on a replica metadata request with error code " + e.getErrorCode() +
-                " for partition " + partitionId, e);
-            if (e.getErrorCode() == StoreErrorCodes.IOError) {
-              metrics.storeIOError.inc();
-            } else {
-              metrics.unExpectedStoreFindEntriesError.inc();
-            }
-            ReplicaMetadataResponseInfo replicaMetadataResponseInfo =
-                new ReplicaMetadataResponseInfo(partitionId, ErrorMapping.getStoreErrorMapping(e.getErrorCode()));
-            replicaMetadataResponseList.add(replicaMetadataResponseInfo);
-          }
+          getReplicaMetadataResponseInfoList(replicaMetadataRequest);
+      // if the requesting replica is caught up on all the partitions, hold the request until there is a new write to
+      // one of them (or the max wait time elapses) so that the new write can be returned without another round trip.
+      // The response tells the requesting replica whether the request was held, so that it waits between rounds itself
+      // if it was not.
+      long waitTimeInMs = -1;
+      if (!hasNewEntries(replicaMetadataResponseList)) {
+        waitTimeInMs = replicationManager.awaitLocalWriteAfter(partitionIds, localWriteSequence);
+        if (replicationManager.getLocalWriteSequence(partitionIds) != localWriteSequence) {
+          replicaMetadataResponseList = getReplicaMetadataResponseInfoList(replicaMetadataRequest);
         }
       }
       response =
           new ReplicaMetadataResponse(replicaMetadataRequest.getCorrelationId(), replicaMetadataRequest.getClientId(),
-              ServerErrorCode.No_Error, replicaMetadataResponseList);
+              ServerErrorCode.No_Error, replicaMetadataResponseList, waitTimeInMs >= 0, Math.max(waitTimeInMs, 0));
     } catch (Exception e) {
       logger.error("Unknown exception for request " + replicaMetadataRequest, e);
       response =
@@ -495,6 +659,200 @@ public class AmbryRequests implements RequestAPI {
             metrics.replicaMetadataSendTimeInMs, metrics.replicaMetadataTotalTimeInMs, null, null, totalTimeSpent));
   }
 
+  /**
+   * Reads a {@link KeySummaryRequest} and hands it to the key summary thread, which sends the response. Key summaries
+   * read the index of a whole store, so they are computed one at a time off the request handler threads, so that they
+   * do not hold up the other requests.
+   * @param request the {@link Request} to handle.
+   * @throws IOException if the request could not be read.
+   * @throws RejectedExecutionException if the requests were shut down.
+   */
+  public void handleKeySummaryRequest(final Request request)
+      throws IOException {
+    final KeySummaryRequest keySummaryRequest =
+        KeySummaryRequest.readFrom(new DataInputStream(request.getInputStream()), clusterMap);
+    keySummaryExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          processKeySummaryRequest(request, keySummaryRequest);
+        } catch (Exception e) {
+          logger.error("Error while handling request " + keySummaryRequest + " closing connection", e);
+          try {
+            requestResponseChannel.closeConnection(request);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Computes the response to a {@link KeySummaryRequest} and sends it.
+   * @param request the {@link Request} that the {@link KeySummaryRequest} was read from.
+   * @param keySummaryRequest the {@link KeySummaryRequest} to respond to.
+   * @throws InterruptedException
+   */
+  private void processKeySummaryRequest(Request request, KeySummaryRequest keySummaryRequest)
+      throws InterruptedException {
+    long requestQueueTime = SystemTime.getInstance().milliseconds() - request.getStartTimeInMs();
+    long totalTimeSpent = requestQueueTime;
+    metrics.keySummaryRequestQueueTimeInMs.update(requestQueueTime);
+    metrics.keySummaryRequestRate.mark();
+    long startTimeInMs = SystemTime.getInstance().milliseconds();
+    KeySummaryResponse response = null;
+    try {
+      ServerErrorCode error = validateRequest(keySummaryRequest.getPartitionId(), false);
+      if (error != ServerErrorCode.No_Error) {
+        logger.error("Validating key summary request failed with error {} for request {}", error, keySummaryRequest);
+        response = new KeySummaryResponse(keySummaryRequest.getCorrelationId(), keySummaryRequest.getClientId(), error);
+      } else {
+        Store store = storeManager.getStore(keySummaryRequest.getPartitionId());
+        if (keySummaryRequest.isKeySummaryRequested()) {
+          response = new KeySummaryResponse(keySummaryRequest.getCorrelationId(), keySummaryRequest.getClientId(),
+              store.getKeySummary(keySummaryRequest.getBucketCount()));
+        } else {
+          response = new KeySummaryResponse(keySummaryRequest.getCorrelationId(), keySummaryRequest.getClientId(),
+              getKeysMissingFromFilter(store, keySummaryRequest));
+        }
+      }
+    } catch (StoreException e) {
+      logger.error("Store exception on a key summary request with error code " + e.getErrorCode() +
+          " for request " + keySummaryRequest, e);
+      if (e.getErrorCode() == StoreErrorCodes.IOError) {
+        metrics.storeIOError.inc();
+      } else {
+        metrics.unExpectedStoreFindEntriesError.inc();
+      }
+      response = new KeySummaryResponse(keySummaryRequest.getCorrelationId(), keySummaryRequest.getClientId(),
+          ErrorMapping.getStoreErrorMapping(e.getErrorCode()));
+    } catch (Exception e) {
+      logger.error("Unknown exception for request " + keySummaryRequest, e);
+      response = new KeySummaryResponse(keySummaryRequest.getCorrelationId(), keySummaryRequest.getClientId(),
+          ServerErrorCode.Unknown_Error);
+    } finally {
+      long processingTime = SystemTime.getInstance().milliseconds() - startTimeInMs;
+      totalTimeSpent += processingTime;
+      publicAccessLogger.info("{} {} processingTime {}", keySummaryRequest, response, processingTime);
+      metrics.keySummaryRequestProcessingTimeInMs.update(processingTime);
+    }
+    requestResponseChannel.sendResponse(response, request,
+        new ServerNetworkResponseMetrics(metrics.keySummaryResponseQueueTimeInMs, metrics.keySummarySendTimeInMs,
+            metrics.keySummaryTotalTimeInMs, null, null, totalTimeSpent));
+  }
+
+  /**
+   * Finds the keys of a store in the buckets of the given {@link KeySummaryRequest} that are not in its key filter.
+   * Deleted and expired keys are left out, since they cannot be fetched by the requester.
+   * @param store the store to find keys in.
+   * @param keySummaryRequest the {@link KeySummaryRequest} for keys.
+   * @return the keys in the requested buckets that are not in the key filter of the request.
+   * @throws StoreException
+   * @throws IOException if the key filter could not be deserialized.
+   */
+  private List<StoreKey> getKeysMissingFromFilter(Store store, KeySummaryRequest keySummaryRequest)
+      throws StoreException, IOException {
+    List<MessageInfo> messageInfoList = store.getEntriesInBuckets(keySummaryRequest.getBucketCount(),
+        new HashSet<Integer>(keySummaryRequest.getBuckets()));
+    List<StoreKey> keys = new ArrayList<StoreKey>();
+    IFilter keyFilter = keySummaryRequest.getKeyFilter();
+    try {
+      for (MessageInfo messageInfo : messageInfoList) {
+        if (!messageInfo.isDeleted() && !messageInfo.isExpired() && !keyFilter
+            .isPresent(ByteBuffer.wrap(messageInfo.getStoreKey().toBytes()))) {
+          keys.add(messageInfo.getStoreKey());
+        }
+      }
+    } finally {
+      keyFilter.close();
+    }
+    return keys;
+  }
+
+  /**
+   * Finds the entries since the tokens in the given {@link ReplicaMetadataRequest} for every partition in it.
+   * @param replicaMetadataRequest the {@link ReplicaMetadataRequest} to find entries for.
+   * @return the list of {@link ReplicaMetadataResponseInfo}, one for each partition in the request.
+   */
+  private List<ReplicaMetadataResponseInfo> getReplicaMetadataResponseInfoList(
+      ReplicaMetadataRequest replicaMetadataRequest) {
+    List<ReplicaMetadataRequestInfo> replicaMetadataRequestInfoList =
+        replicaMetadataRequest.getReplicaMetadataRequestInfoList();
+    List<ReplicaMetadataResponseInfo> replicaMetadataResponseList =
+        new ArrayList<ReplicaMetadataResponseInfo>(replicaMetadataRequestInfoList.size());
+    for (ReplicaMetadataRequestInfo replicaMetadataRequestInfo : replicaMetadataRequestInfoList) {
+      long partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
+      PartitionId partitionId = replicaMetadataRequestInfo.getPartitionId();
+      ServerErrorCode error = validateRequest(partitionId, false);
+      logger.trace("{} Time used to validate metadata request: {}", partitionId,
+          (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
+
+      if (error != ServerErrorCode.No_Error) {
+        logger.error("Validating replica metadata request failed with error {} for partition {}", error, partitionId);
+        ReplicaMetadataResponseInfo replicaMetadataResponseInfo = new ReplicaMetadataResponseInfo(partitionId, error);
+        replicaMetadataResponseList.add(replicaMetadataResponseInfo);
+      } else {
+        try {
+          FindToken findToken = replicaMetadataRequestInfo.getToken();
+          String hostName = replicaMetadataRequestInfo.getHostName();
+          String replicaPath = replicaMetadataRequestInfo.getReplicaPath();
+          Store store = storeManager.getStore(partitionId);
+
+          partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
+          FindInfo findInfo =
+              store.findEntriesSince(findToken, replicaMetadataRequest.getMaxTotalSizeOfEntriesInBytes());
+          logger.trace("{} Time used to find entry since: {}", partitionId,
+              (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
+
+          partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
+          replicationManager.updateTotalBytesReadByRemoteReplica(partitionId, hostName, replicaPath,
+              findInfo.getFindToken().getBytesRead());
+          logger.trace("{} Time used to update total bytes read: {}", partitionId,
+              (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
+
+          partitionStartTimeInMs = SystemTime.getInstance().milliseconds();
+          long remoteReplicaLagInBytes =
+              replicationManager.getRemoteReplicaLagInBytes(partitionId, hostName, replicaPath);
+          logger.trace("{} Time used to get remote replica lag in bytes: {}", partitionId,
+              (SystemTime.getInstance().milliseconds() - partitionStartTimeInMs));
+
+          ReplicaMetadataResponseInfo replicaMetadataResponseInfo =
+              new ReplicaMetadataResponseInfo(partitionId, findInfo.getFindToken(), findInfo.getMessageEntries(),
+                  remoteReplicaLagInBytes);
+          replicaMetadataResponseList.add(replicaMetadataResponseInfo);
+        } catch (StoreException e) {
+          logger.error("Store exception on a replica metadata request with error code " + e.getErrorCode() +
+              " for partition " + partitionId, e);
+          if (e.getErrorCode() == StoreErrorCodes.IOError) {
+            metrics.storeIOError.inc();
+          } else {
+            metrics.unExpectedStoreFindEntriesError.inc();
+          }
+          ReplicaMetadataResponseInfo replicaMetadataResponseInfo =
+              new ReplicaMetadataResponseInfo(partitionId, ErrorMapping.getStoreErrorMapping(e.getErrorCode()));
+          replicaMetadataResponseList.add(replicaMetadataResponseInfo);
+        }
+      }
+    }
+    return replicaMetadataResponseList;
+  }
+
+  /**
+   * @param replicaMetadataResponseList the list of {@link ReplicaMetadataResponseInfo} to check.
+   * @return {@code true} if any of the given {@link ReplicaMetadataResponseInfo} has an error or new entries to
+   *         return, {@code false} otherwise.
+   */
+  private boolean hasNewEntries(List<ReplicaMetadataResponseInfo> replicaMetadataResponseList) {
+    for (ReplicaMetadataResponseInfo replicaMetadataResponseInfo : replicaMetadataResponseList) {
+      if (replicaMetadataResponseInfo.getError() != ServerErrorCode.No_Error
+          || replicaMetadataResponseInfo.getMessageInfoList().size() > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void sendPutResponse(RequestResponseChannel requestResponseChannel, PutResponse response, Request request,
       Histogram responseQueueTime, Histogram responseSendTime, Histogram requestTotalTime, long totalTimeSpent,
       long blobSize, ServerMetrics metrics)
@@ -523,7 +881,7 @@ public class AmbryRequests implements RequestAPI {
 
   private void sendGetResponse(RequestResponseChannel requestResponseChannel, GetResponse response, Request request,
       Histogram responseQueueTime, Histogram responseSendTime, Histogram requestTotalTime, long totalTimeSpent,
-      long blobSize, MessageFormatFlags flags, ServerMetrics metrics)
+      long blobSize, MessageFormatFlags flags, ServerMetrics metrics, Trace trace)
       throws InterruptedException {
 
     if (blobSize <= ServerMetrics.smallBlob) {
@@ -532,16 +890,17 @@ public class AmbryRequests implements RequestAPI {
           metrics.markGetBlobRequestRateBySize(blobSize);
           requestResponseChannel.sendResponse(response, request,
               new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                  metrics.getSmallBlobProcessingTimeInMs, metrics.getSmallBlobTotalTimeInMs, totalTimeSpent));
+                  metrics.getSmallBlobProcessingTimeInMs, metrics.getSmallBlobTotalTimeInMs, totalTimeSpent, tracer,
+                  trace));
         } else {
           requestResponseChannel.sendResponse(response, request,
               new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                  totalTimeSpent));
+                  totalTimeSpent, tracer, trace));
         }
       } else {
         requestResponseChannel.sendResponse(response, request,
             new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                totalTimeSpent));
+                totalTimeSpent, tracer, trace));
       }
     } else if (blobSize <= ServerMetrics.mediumBlob) {
       if (flags == MessageFormatFlags.Blob) {
@@ -549,16 +908,17 @@ public class AmbryRequests implements RequestAPI {
           metrics.markGetBlobRequestRateBySize(blobSize);
           requestResponseChannel.sendResponse(response, request,
               new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                  metrics.getMediumBlobProcessingTimeInMs, metrics.getMediumBlobTotalTimeInMs, totalTimeSpent));
+                  metrics.getMediumBlobProcessingTimeInMs, metrics.getMediumBlobTotalTimeInMs, totalTimeSpent, tracer,
+                  trace));
         } else {
           requestResponseChannel.sendResponse(response, request,
               new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                  totalTimeSpent));
+                  totalTimeSpent, tracer, trace));
         }
       } else {
         requestResponseChannel.sendResponse(response, request,
             new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                totalTimeSpent));
+                totalTimeSpent, tracer, trace));
       }
     } else {
       if (flags == MessageFormatFlags.Blob) {
@@ -566,16 +926,17 @@ public class AmbryRequests implements RequestAPI {
           metrics.markGetBlobRequestRateBySize(blobSize);
           requestResponseChannel.sendResponse(response, request,
               new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime,
-                  metrics.getLargeBlobProcessingTimeInMs, metrics.getLargeBlobTotalTimeInMs, totalTimeSpent));
+                  metrics.getLargeBlobProcessingTimeInMs, metrics.getLargeBlobTotalTimeInMs, totalTimeSpent, tracer,
+                  trace));
         } else {
           requestResponseChannel.sendResponse(response, request,
               new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                  totalTimeSpent));
+                  totalTimeSpent, tracer, trace));
         }
       } else {
         requestResponseChannel.sendResponse(response, request,
             new ServerNetworkResponseMetrics(responseQueueTime, responseSendTime, requestTotalTime, null, null,
-                totalTimeSpent));
+                totalTimeSpent, tracer, trace));
       }
     }
   }
@@ -41,6 +41,7 @@ import com.github.ambry.store.StoreManager;
 import com.github.ambry.utils.Scheduler;
 import com.github.ambry.utils.SystemTime;
 import com.github.ambry.utils.Time;
+import com.github.ambry.utils.Tracer;
 import com.github.ambry.utils.Utils;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -105,6 +106,13 @@ public class AmbryServer {
       SSLConfig sslConfig = new SSLConfig(properties);
       // verify the configs
       properties.verify();
+      if (replicationConfig.replicationMetadataRequestMaxWaitTimeMs > 0
+          && replicationConfig.replicationMetadataRequestMaxConcurrentWaits
+          >= serverConfig.serverRequestHandlerNumOfThreads) {
+        throw new IllegalArgumentException(
+            "replication.metadata.request.max.concurrent.waits should be less than the number of request handler "
+                + "threads so that replica metadata requests that wait cannot hold all of them");
+      }
 
       scheduler = new Scheduler(serverConfig.serverSchedulerNumOfthreads, false);
       scheduler.startup();
@@ -137,9 +145,12 @@ public class AmbryServer {
       }
 
       networkServer = new SocketServer(networkConfig, sslConfig, registry, ports);
+      // the server only continues the traces of requests that were sampled by the hosts that sent them
+      Tracer tracer = new Tracer(0, serverConfig.serverTraceBufferSize, time);
+      metrics.registerSlowestTraces(registry, tracer, serverConfig.serverSlowestTracesCount);
       requests =
           new AmbryRequests(storeManager, networkServer.getRequestResponseChannel(), clusterMap, nodeId, registry,
-              findTokenFactory, notificationSystem, replicationManager, storeKeyFactory);
+              findTokenFactory, notificationSystem, replicationManager, storeKeyFactory, tracer);
       requestHandlerPool = new RequestHandlerPool(serverConfig.serverRequestHandlerNumOfThreads,
           networkServer.getRequestResponseChannel(), requests);
       networkServer.start();
@@ -169,6 +180,9 @@ public class AmbryServer {
       if (requestHandlerPool != null) {
         requestHandlerPool.shutdown();
       }
+      if (requests != null) {
+        requests.shutdown();
+      }
       if (replicationManager != null) {
         replicationManager.shutdown();
       }
@@ -14,9 +14,13 @@
 package com.github.ambry.server;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.metrics.LatencyMetrics;
+import com.github.ambry.utils.Tracer;
+import org.json.JSONException;
 
 
 /**
@@ -34,6 +38,13 @@ public class ServerMetrics {
   public final Histogram putBlobSendTimeInMs;
   public final Histogram putBlobTotalTimeInMs;
 
+  public final Histogram batchPutRequestQueueTimeInMs;
+  public final Histogram batchPutProcessingTimeInMs;
+  public final Histogram batchPutResponseQueueTimeInMs;
+  public final Histogram batchPutSendTimeInMs;
+  public final Histogram batchPutTotalTimeInMs;
+  public final Histogram batchPutBlobCount;
+
   public final Histogram putSmallBlobProcessingTimeInMs;
   public final Histogram putSmallBlobSendTimeInMs;
   public final Histogram putSmallBlobTotalTimeInMs;
@@ -82,6 +93,10 @@ public class ServerMetrics {
   public final Histogram getBlobAllSendTimeInMs;
   public final Histogram getBlobAllTotalTimeInMs;
 
+  public final Histogram getResponseCompressionTimeInMs;
+  public final Histogram getResponseCompressionRatioInPercent;
+  public final Meter getResponseCompressionSavedBytesRate;
+
   public final Histogram getBlobInfoRequestQueueTimeInMs;
   public final Histogram getBlobInfoProcessingTimeInMs;
   public final Histogram getBlobInfoResponseQueueTimeInMs;
@@ -106,6 +121,12 @@ public class ServerMetrics {
   public final Histogram replicaMetadataSendTimeInMs;
   public final Histogram replicaMetadataTotalTimeInMs;
 
+  public final Histogram keySummaryRequestQueueTimeInMs;
+  public final Histogram keySummaryRequestProcessingTimeInMs;
+  public final Histogram keySummaryResponseQueueTimeInMs;
+  public final Histogram keySummarySendTimeInMs;
+  public final Histogram keySummaryTotalTimeInMs;
+
   public final Histogram blobSizeInBytes;
   public final Histogram blobUserMetadataSizeInBytes;
 
@@ -113,6 +134,7 @@ public class ServerMetrics {
   public final Histogram serverShutdownTimeInMs;
 
   public final Meter putBlobRequestRate;
+  public final Meter batchPutRequestRate;
   public final Meter getBlobRequestRate;
   public final Meter getBlobPropertiesRequestRate;
   public final Meter getBlobUserMetadataRequestRate;
@@ -121,6 +143,7 @@ public class ServerMetrics {
   public final Meter deleteBlobRequestRate;
   public final Meter ttlBlobRequestRate;
   public final Meter replicaMetadataRequestRate;
+  public final Meter keySummaryRequestRate;
 
   public final Meter putSmallBlobRequestRate;
   public final Meter getSmallBlobRequestRate;
@@ -149,118 +172,174 @@ public class ServerMetrics {
 
   public ServerMetrics(MetricRegistry registry) {
     putBlobRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobRequestQueueTime"));
-    putBlobProcessingTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobProcessingTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutBlobRequestQueueTime"));
+    putBlobProcessingTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutBlobProcessingTime"));
     putBlobResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobResponseQueueTime"));
-    putBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobSendTime"));
-    putBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutBlobResponseQueueTime"));
+    putBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutBlobSendTime"));
+    putBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutBlobTotalTime"));
+
+    batchPutRequestQueueTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "BatchPutRequestQueueTime"));
+    batchPutProcessingTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "BatchPutProcessingTime"));
+    batchPutResponseQueueTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "BatchPutResponseQueueTime"));
+    batchPutSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "BatchPutSendTime"));
+    batchPutTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "BatchPutTotalTime"));
+    batchPutBlobCount = registry.histogram(MetricRegistry.name(AmbryRequests.class, "BatchPutBlobCount"));
 
     putSmallBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutSmallBlobProcessingTime"));
-    putSmallBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutSmallBlobSendTime"));
-    putSmallBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutSmallBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutSmallBlobProcessingTime"));
+    putSmallBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutSmallBlobSendTime"));
+    putSmallBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutSmallBlobTotalTime"));
 
     putMediumBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutMediumBlobProcessingTime"));
-    putMediumBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutMediumBlobSendTime"));
-    putMediumBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutMediumBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutMediumBlobProcessingTime"));
+    putMediumBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutMediumBlobSendTime"));
+    putMediumBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutMediumBlobTotalTime"));
 
     putLargeBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutLargeBlobProcessingTime"));
-    putLargeBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutLargeBlobSendTime"));
-    putLargeBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "PutLargeBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutLargeBlobProcessingTime"));
+    putLargeBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutLargeBlobSendTime"));
+    putLargeBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "PutLargeBlobTotalTime"));
 
     getBlobRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobRequestQueueTime"));
-    getBlobProcessingTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobProcessingTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobRequestQueueTime"));
+    getBlobProcessingTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobProcessingTime"));
     getBlobResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobResponseQueueTime"));
-    getBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobSendTime"));
-    getBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobResponseQueueTime"));
+    getBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobSendTime"));
+    getBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobTotalTime"));
 
     getSmallBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetSmallBlobProcessingTime"));
-    getSmallBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetSmallBlobSendTime"));
-    getSmallBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetSmallBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetSmallBlobProcessingTime"));
+    getSmallBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetSmallBlobSendTime"));
+    getSmallBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetSmallBlobTotalTime"));
 
     getMediumBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetMediumBlobProcessingTime"));
-    getMediumBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetMediumBlobSendTime"));
-    getMediumBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetMediumBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetMediumBlobProcessingTime"));
+    getMediumBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetMediumBlobSendTime"));
+    getMediumBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetMediumBlobTotalTime"));
 
     getLargeBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetLargeBlobProcessingTime"));
-    getLargeBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetLargeBlobSendTime"));
-    getLargeBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetLargeBlobTotalTime"));
-
-    getBlobPropertiesRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesRequestQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetLargeBlobProcessingTime"));
+    getLargeBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetLargeBlobSendTime"));
+    getLargeBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetLargeBlobTotalTime"));
+
+    getBlobPropertiesRequestQueueTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesRequestQueueTime"));
     getBlobPropertiesProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesProcessingTime"));
-    getBlobPropertiesResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesResponseQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesProcessingTime"));
+    getBlobPropertiesResponseQueueTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesResponseQueueTime"));
     getBlobPropertiesSendTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesSendTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesSendTime"));
     getBlobPropertiesTotalTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesTotalTime"));
-
-    getBlobUserMetadataRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataRequestQueueTime"));
-    getBlobUserMetadataProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataProcessingTime"));
-    getBlobUserMetadataResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataResponseQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesTotalTime"));
+
+    getBlobUserMetadataRequestQueueTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataRequestQueueTime"));
+    getBlobUserMetadataProcessingTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataProcessingTime"));
+    getBlobUserMetadataResponseQueueTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataResponseQueueTime"));
     getBlobUserMetadataSendTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataSendTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataSendTime"));
     getBlobUserMetadataTotalTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobUserMetadataTotalTime"));
 
     getBlobAllRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobAllRequestQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobAllRequestQueueTime"));
     getBlobAllProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobAllProcessingTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobAllProcessingTime"));
+    getResponseCompressionTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetResponseCompressionTime"));
+    getResponseCompressionRatioInPercent =
+        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetResponseCompressionRatioInPercent"));
+    getResponseCompressionSavedBytesRate =
+        registry.meter(MetricRegistry.name(AmbryRequests.class, "GetResponseCompressionSavedBytesRate"));
     getBlobAllResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobAllResponseQueueTime"));
-    getBlobAllSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobAllSendTime"));
-    getBlobAllTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobAllTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobAllResponseQueueTime"));
+    getBlobAllSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobAllSendTime"));
+    getBlobAllTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobAllTotalTime"));
 
     getBlobInfoRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobInfoRequestQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobInfoRequestQueueTime"));
     getBlobInfoProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobInfoProcessingTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobInfoProcessingTime"));
     getBlobInfoResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobInfoResponseQueueTime"));
-    getBlobInfoSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobInfoSendTime"));
-    getBlobInfoTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "GetBlobInfoTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobInfoResponseQueueTime"));
+    getBlobInfoSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobInfoSendTime"));
+    getBlobInfoTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "GetBlobInfoTotalTime"));
 
     deleteBlobRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobRequestQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "DeleteBlobRequestQueueTime"));
     deleteBlobProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobProcessingTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "DeleteBlobProcessingTime"));
     deleteBlobResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobResponseQueueTime"));
-    deleteBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobSendTime"));
-    deleteBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "DeleteBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "DeleteBlobResponseQueueTime"));
+    deleteBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "DeleteBlobSendTime"));
+    deleteBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "DeleteBlobTotalTime"));
 
     ttlBlobRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "TTLBlobRequestQueueTime"));
-    ttlBlobProcessingTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "TTLBlobProcessingTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "TTLBlobRequestQueueTime"));
+    ttlBlobProcessingTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "TTLBlobProcessingTime"));
     ttlBlobResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "TTLBlobResponseQueueTime"));
-    ttlBlobSendTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "TTLBlobSendTime"));
-    ttlBlobTotalTimeInMs = registry.histogram(MetricRegistry.name(AmbryRequests.class, "TTLBlobTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "TTLBlobResponseQueueTime"));
+    ttlBlobSendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "TTLBlobSendTime"));
+    ttlBlobTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "TTLBlobTotalTime"));
 
     replicaMetadataRequestQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataRequestQueueTime"));
-    replicaMetadataRequestProcessingTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataRequestProcessingTime"));
-    replicaMetadataResponseQueueTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataResponseQueueTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataRequestQueueTime"));
+    replicaMetadataRequestProcessingTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataRequestProcessingTime"));
+    replicaMetadataResponseQueueTimeInMs = LatencyMetrics.histogram(registry,
+        MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataResponseQueueTime"));
     replicaMetadataSendTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataSendTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataSendTime"));
     replicaMetadataTotalTimeInMs =
-        registry.histogram(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataTotalTime"));
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataTotalTime"));
+
+    keySummaryRequestQueueTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "KeySummaryRequestQueueTime"));
+    keySummaryRequestProcessingTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "KeySummaryRequestProcessingTime"));
+    keySummaryResponseQueueTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "KeySummaryResponseQueueTime"));
+    keySummarySendTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "KeySummarySendTime"));
+    keySummaryTotalTimeInMs =
+        LatencyMetrics.histogram(registry, MetricRegistry.name(AmbryRequests.class, "KeySummaryTotalTime"));
 
     blobSizeInBytes = registry.histogram(MetricRegistry.name(AmbryRequests.class, "BlobSize"));
     blobUserMetadataSizeInBytes = registry.histogram(MetricRegistry.name(AmbryRequests.class, "BlobUserMetadataSize"));
@@ -269,6 +348,7 @@ public class ServerMetrics {
     serverShutdownTimeInMs = registry.histogram(MetricRegistry.name(AmbryServer.class, "ServerShutdownTimeInMs"));
 
     putBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "PutBlobRequestRate"));
+    batchPutRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "BatchPutRequestRate"));
     getBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "GetBlobRequestRate"));
     getBlobPropertiesRequestRate =
         registry.meter(MetricRegistry.name(AmbryRequests.class, "GetBlobPropertiesRequestRate"));
@@ -279,6 +359,7 @@ public class ServerMetrics {
     deleteBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "DeleteBlobRequestRate"));
     ttlBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "TTLBlobRequestRate"));
     replicaMetadataRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "ReplicaMetadataRequestRate"));
+    keySummaryRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "KeySummaryRequestRate"));
 
     putSmallBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "PutSmallBlobRequestRate"));
     getSmallBlobRequestRate = registry.meter(MetricRegistry.name(AmbryRequests.class, "GetSmallBlobRequestRate"));
@@ -327,4 +408,25 @@ public class ServerMetrics {
       getLargeBlobRequestRate.mark();
     }
   }
+
+  /**
+   * Registers a gauge that reports the slowest traces recorded by the server as a JSON array, so that they can be
+   * looked up over JMX.
+   * @param registry the registry to register the gauge with.
+   * @param tracer the {@link Tracer} that records the traces of the server.
+   * @param count the number of traces to report.
+   */
+  public void registerSlowestTraces(MetricRegistry registry, final Tracer tracer, final int count) {
+    Gauge<String> slowestTraces = new Gauge<String>() {
+      @Override
+      public String getValue() {
+        try {
+          return tracer.getSlowestTracesAsJSON(count).toString();
+        } catch (JSONException e) {
+          return "Could not serialize the slowest traces: " + e.getMessage();
+        }
+      }
+    };
+    registry.register(MetricRegistry.name(AmbryRequests.class, "SlowestTraces"), slowestTraces);
+  }
 }
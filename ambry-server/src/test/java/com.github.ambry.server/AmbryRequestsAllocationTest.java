@@ -0,0 +1,273 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.BlobIdFactory;
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.config.SSLConfig;
+import com.github.ambry.config.StoreConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.messageformat.MessageFormatFlags;
+import com.github.ambry.network.Request;
+import com.github.ambry.protocol.DeleteRequest;
+import com.github.ambry.protocol.DeleteResponse;
+import com.github.ambry.protocol.GetOptions;
+import com.github.ambry.protocol.GetRequest;
+import com.github.ambry.protocol.GetResponse;
+import com.github.ambry.protocol.PartitionRequestInfo;
+import com.github.ambry.protocol.PutRequest;
+import com.github.ambry.protocol.PutResponse;
+import com.github.ambry.protocol.ReplicaMetadataRequest;
+import com.github.ambry.protocol.ReplicaMetadataRequestInfo;
+import com.github.ambry.protocol.ReplicaMetadataResponse;
+import com.github.ambry.replication.MockFindTokenFactory;
+import com.github.ambry.replication.MockStore;
+import com.github.ambry.replication.MockStoreManager;
+import com.github.ambry.replication.ReplicationManager;
+import com.github.ambry.store.FindTokenFactory;
+import com.github.ambry.store.Store;
+import com.github.ambry.store.StoreKeyFactory;
+import com.github.ambry.store.StoreManager;
+import com.github.ambry.utils.AllocationCounter;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.Scheduler;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Tracer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+
+/**
+ * Holds the bytes allocated by {@link AmbryRequests} for puts, gets, deletes and replica metadata requests to a
+ * budget. The requests are handled on the thread of the test, which is the only thread whose allocations are counted.
+ * They are served by {@link MockStore}s so that only the allocations of the request handling are counted, along with
+ * those of the store that are made for every put (a buffer the size of the message).
+ * <p/>
+ * The budgets are set 15 to 40 percent over the most bytes per request that were measured, on JDK 17 with logging
+ * disabled, and are below what another copy of the blob would take. See {@link AllocationCounter} to scale them.
+ */
+public class AmbryRequestsAllocationTest {
+  private static final int BLOB_SIZE = 16 * 1024;
+  private static final int USER_METADATA_SIZE = 100;
+  private static final long REPLICA_METADATA_MAX_SIZE = 100 * 1024;
+  private static final int WARM_UP_ITERATIONS = 1000;
+  private static final int ITERATIONS = 1000;
+
+  // the put budget includes the buffer of the in memory store that the message is written to. Measured: 27,992.
+  private static final long PUT_BUDGET_BYTES = BLOB_SIZE + 16 * 1024;
+  // measured: 2,971
+  private static final long GET_BUDGET_BYTES = 4 * 1024;
+  // measured: 2,208
+  private static final long DELETE_BUDGET_BYTES = 3 * 1024;
+  // measured: 3,323
+  private static final long REPLICA_METADATA_BUDGET_BYTES = 4 * 1024;
+
+  private final MockClusterMap clusterMap;
+  private final PartitionId partitionId;
+  private final ReplicaId replicaId;
+  private final FindTokenFactory findTokenFactory;
+  private final MockRequestResponseChannel requestResponseChannel = new MockRequestResponseChannel();
+  private final AmbryRequests requests;
+  private final Random random = new Random();
+
+  public AmbryRequestsAllocationTest()
+      throws Exception {
+    clusterMap = new MockClusterMap();
+    DataNodeId dataNodeId = clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(dataNodeId);
+    replicaId = replicaIds.get(0);
+    partitionId = replicaId.getPartitionId();
+    Map<PartitionId, Store> stores = new HashMap<PartitionId, Store>();
+    for (ReplicaId replica : replicaIds) {
+      stores.put(replica.getPartitionId(), new MockStore());
+    }
+    VerifiableProperties properties = new VerifiableProperties(new Properties());
+    StoreConfig storeConfig = new StoreConfig(properties);
+    MetricRegistry registry = new MetricRegistry();
+    Scheduler scheduler = new Scheduler(1, false);
+    StoreKeyFactory storeKeyFactory = new BlobIdFactory(clusterMap);
+    findTokenFactory = new MockFindTokenFactory();
+    StoreManager storeManager =
+        new MockStoreManager(storeConfig, scheduler, registry, replicaIds, storeKeyFactory, stores);
+    ReplicationManager replicationManager =
+        new ReplicationManager(new ReplicationConfig(properties), new SSLConfig(properties), storeConfig, storeManager,
+            storeKeyFactory, clusterMap, scheduler, dataNodeId, null, registry, null);
+    requests = new AmbryRequests(storeManager, requestResponseChannel, clusterMap, dataNodeId, registry,
+        findTokenFactory, null, replicationManager, storeKeyFactory, new Tracer(0, 10, SystemTime.getInstance()));
+  }
+
+  @After
+  public void cleanup()
+      throws IOException {
+    clusterMap.cleanup();
+  }
+
+  /**
+   * Tests that a put allocates within its budget.
+   * @throws Exception
+   */
+  @Test
+  public void putAllocationTest()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    final List<Request> putRequests = createPutRequests(new ArrayList<BlobId>());
+    double bytesPerPut = measureBytesPerRequest(putRequests);
+    PutResponse response = PutResponse.readFrom(requestResponseChannel.getLastResponse());
+    Assert.assertEquals("Put should have succeeded", ServerErrorCode.No_Error, response.getError());
+    AllocationCounter.assertWithinBudget("Put", bytesPerPut, PUT_BUDGET_BYTES);
+  }
+
+  /**
+   * Tests that a get of a whole blob allocates within its budget.
+   * @throws Exception
+   */
+  @Test
+  public void getAllocationTest()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    List<BlobId> blobIds = new ArrayList<BlobId>();
+    handleRequests(createPutRequests(blobIds));
+    List<Request> getRequests = new ArrayList<Request>(blobIds.size());
+    for (BlobId blobId : blobIds) {
+      List<PartitionRequestInfo> partitionRequestInfos = Collections.singletonList(
+          new PartitionRequestInfo(partitionId, Collections.singletonList(blobId)));
+      getRequests.add(new SerializedRequest(
+          new GetRequest(getRequests.size(), "client", MessageFormatFlags.All, partitionRequestInfos,
+              GetOptions.None)));
+    }
+    double bytesPerGet = measureBytesPerRequest(getRequests);
+    GetResponse response = GetResponse.readFrom(requestResponseChannel.getLastResponse(), clusterMap);
+    Assert.assertEquals("Get should have succeeded", ServerErrorCode.No_Error, response.getError());
+    Assert.assertEquals("Get should have found the blob", ServerErrorCode.No_Error,
+        response.getPartitionResponseInfoList().get(0).getErrorCode());
+    AllocationCounter.assertWithinBudget("Get", bytesPerGet, GET_BUDGET_BYTES);
+  }
+
+  /**
+   * Tests that a delete allocates within its budget.
+   * @throws Exception
+   */
+  @Test
+  public void deleteAllocationTest()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    List<BlobId> blobIds = new ArrayList<BlobId>();
+    handleRequests(createPutRequests(blobIds));
+    List<Request> deleteRequests = new ArrayList<Request>(blobIds.size());
+    for (BlobId blobId : blobIds) {
+      deleteRequests.add(new SerializedRequest(new DeleteRequest(deleteRequests.size(), "client", blobId)));
+    }
+    double bytesPerDelete = measureBytesPerRequest(deleteRequests);
+    DeleteResponse response = DeleteResponse.readFrom(requestResponseChannel.getLastResponse());
+    Assert.assertEquals("Delete should have succeeded", ServerErrorCode.No_Error, response.getError());
+    AllocationCounter.assertWithinBudget("Delete", bytesPerDelete, DELETE_BUDGET_BYTES);
+  }
+
+  /**
+   * Tests that a replica metadata request that returns a batch of entries allocates within its budget.
+   * @throws Exception
+   */
+  @Test
+  public void replicaMetadataAllocationTest()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    handleRequests(createPutRequests(new ArrayList<BlobId>()));
+    List<Request> replicaMetadataRequests = new ArrayList<Request>(WARM_UP_ITERATIONS + ITERATIONS);
+    for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+      List<ReplicaMetadataRequestInfo> replicaMetadataRequestInfos = Collections.singletonList(
+          new ReplicaMetadataRequestInfo(partitionId, findTokenFactory.getNewFindToken(), "localhost",
+              replicaId.getReplicaPath()));
+      replicaMetadataRequests.add(new SerializedRequest(
+          new ReplicaMetadataRequest(i, "client", replicaMetadataRequestInfos, REPLICA_METADATA_MAX_SIZE)));
+    }
+    double bytesPerReplicaMetadataRequest = measureBytesPerRequest(replicaMetadataRequests);
+    ReplicaMetadataResponse response =
+        ReplicaMetadataResponse.readFrom(requestResponseChannel.getLastResponse(), findTokenFactory, clusterMap);
+    Assert.assertEquals("Replica metadata request should have succeeded", ServerErrorCode.No_Error,
+        response.getError());
+    Assert.assertTrue("Replica metadata request should have returned entries",
+        response.getReplicaMetadataResponseInfoList().get(0).getMessageInfoList().size() > 0);
+    AllocationCounter.assertWithinBudget("ReplicaMetadata", bytesPerReplicaMetadataRequest,
+        REPLICA_METADATA_BUDGET_BYTES);
+  }
+
+  /**
+   * Creates enough put requests to warm up and measure puts.
+   * @param blobIds the list to add the ids of the blobs to.
+   * @return the put requests.
+   * @throws IOException
+   */
+  private List<Request> createPutRequests(List<BlobId> blobIds)
+      throws IOException {
+    List<Request> putRequests = new ArrayList<Request>(WARM_UP_ITERATIONS + ITERATIONS);
+    for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+      BlobId blobId = new BlobId(partitionId);
+      byte[] usermetadata = new byte[USER_METADATA_SIZE];
+      byte[] blob = new byte[BLOB_SIZE];
+      random.nextBytes(usermetadata);
+      random.nextBytes(blob);
+      putRequests.add(new SerializedRequest(
+          new PutRequest(i, "client", blobId, new BlobProperties(BLOB_SIZE, "serviceId"), ByteBuffer.wrap(usermetadata),
+              new ByteBufferInputStream(ByteBuffer.wrap(blob)), BLOB_SIZE, BlobType.DataBlob)));
+      blobIds.add(blobId);
+    }
+    return putRequests;
+  }
+
+  /**
+   * Warms up with the first {@link #WARM_UP_ITERATIONS} requests and measures the rest.
+   * @param requestsToHandle the requests, one per iteration.
+   * @return the bytes allocated per request.
+   * @throws Exception
+   */
+  private double measureBytesPerRequest(final List<Request> requestsToHandle)
+      throws Exception {
+    double bytesPerRequest = AllocationCounter.measureBytesPerOperation(new AllocationCounter.Operation() {
+      @Override
+      public void run(int iteration)
+          throws InterruptedException {
+        requests.handleRequests(requestsToHandle.get(iteration));
+      }
+    }, WARM_UP_ITERATIONS, ITERATIONS);
+    Assert.assertEquals("No request should have failed", 0, requestResponseChannel.getClosedConnectionCount());
+    return bytesPerRequest;
+  }
+
+  private void handleRequests(List<Request> requestsToHandle)
+      throws InterruptedException {
+    for (Request request : requestsToHandle) {
+      requests.handleRequests(request);
+    }
+  }
+}
@@ -0,0 +1,479 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.DataNodeId;
+import com.github.ambry.clustermap.MockClusterMap;
+import com.github.ambry.clustermap.PartitionId;
+import com.github.ambry.clustermap.ReplicaId;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.commons.BlobIdFactory;
+import com.github.ambry.commons.ServerErrorCode;
+import com.github.ambry.config.ReplicationConfig;
+import com.github.ambry.config.SSLConfig;
+import com.github.ambry.config.StoreConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.messageformat.BlobProperties;
+import com.github.ambry.messageformat.BlobType;
+import com.github.ambry.network.Request;
+import com.github.ambry.network.RequestResponseChannel;
+import com.github.ambry.protocol.BatchPutRequest;
+import com.github.ambry.protocol.BatchPutResponse;
+import com.github.ambry.protocol.KeySummaryRequest;
+import com.github.ambry.protocol.KeySummaryResponse;
+import com.github.ambry.protocol.PutRequest;
+import com.github.ambry.protocol.PutResponse;
+import com.github.ambry.protocol.ReplicaMetadataRequest;
+import com.github.ambry.protocol.ReplicaMetadataRequestInfo;
+import com.github.ambry.protocol.ReplicaMetadataResponse;
+import com.github.ambry.protocol.RequestOrResponseType;
+import com.github.ambry.replication.MockFindTokenFactory;
+import com.github.ambry.replication.MockStore;
+import com.github.ambry.replication.MockStoreManager;
+import com.github.ambry.replication.ReplicationManager;
+import com.github.ambry.store.KeySummary;
+import com.github.ambry.store.MessageInfo;
+import com.github.ambry.store.StoreException;
+import com.github.ambry.store.StoreKey;
+import com.github.ambry.store.StoreKeyFactory;
+import com.github.ambry.store.StoreManager;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.FilterFactory;
+import com.github.ambry.utils.IFilter;
+import com.github.ambry.utils.Scheduler;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Tracer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link AmbryRequests}. The requests are served by {@link MockStore}s.
+ */
+public class AmbryRequestsTest {
+  private static final int BLOB_SIZE = 1024;
+  private static final int MAX_WAIT_TIME_MS = 1000;
+
+  private final MockClusterMap clusterMap;
+  private final DataNodeId dataNodeId;
+  private final List<PartitionId> partitionIds = new ArrayList<PartitionId>();
+  private final Map<PartitionId, MockStore> stores = new HashMap<PartitionId, MockStore>();
+  private final MockRequestResponseChannel requestResponseChannel = new MockRequestResponseChannel();
+  private final MetricRegistry registry = new MetricRegistry();
+  private final StoreKeyFactory storeKeyFactory;
+  private final StoreManager storeManager;
+  private final ReplicationManager replicationManager;
+  private final AmbryRequests requests;
+  private final Random random = new Random();
+
+  public AmbryRequestsTest()
+      throws Exception {
+    clusterMap = new MockClusterMap();
+    dataNodeId = clusterMap.getDataNodeIds().get(0);
+    List<ReplicaId> replicaIds = clusterMap.getReplicaIds(dataNodeId);
+    for (ReplicaId replicaId : replicaIds) {
+      partitionIds.add(replicaId.getPartitionId());
+      stores.put(replicaId.getPartitionId(), new MockStore());
+    }
+    Properties props = new Properties();
+    props.setProperty("replication.metadata.request.max.wait.time.ms", Integer.toString(MAX_WAIT_TIME_MS));
+    props.setProperty("replication.metadata.request.max.concurrent.waits", "1");
+    VerifiableProperties properties = new VerifiableProperties(props);
+    StoreConfig storeConfig = new StoreConfig(properties);
+    Scheduler scheduler = new Scheduler(1, false);
+    storeKeyFactory = new BlobIdFactory(clusterMap);
+    storeManager = new MockStoreManager(storeConfig, scheduler, registry, replicaIds, storeKeyFactory, stores);
+    replicationManager =
+        new ReplicationManager(new ReplicationConfig(properties), new SSLConfig(properties), storeConfig, storeManager,
+            storeKeyFactory, clusterMap, scheduler, dataNodeId, null, registry, null);
+    requests = createAmbryRequests(requestResponseChannel, registry);
+  }
+
+  @After
+  public void cleanup()
+      throws IOException {
+    clusterMap.cleanup();
+  }
+
+  /**
+   * Tests that the blobs of a batch put are written and each of them gets a response of its own.
+   * @throws Exception
+   */
+  @Test
+  public void batchPutTest()
+      throws Exception {
+    PartitionId partitionId = partitionIds.get(0);
+    List<PutRequest> putRequests = Arrays.asList(createPutRequest(1, new BlobId(partitionId)),
+        createPutRequest(2, new BlobId(partitionId)), createPutRequest(3, new BlobId(partitionId)));
+    BatchPutResponse response = sendBatchPutRequest(putRequests);
+    Assert.assertEquals("Batch put should have succeeded", ServerErrorCode.No_Error, response.getError());
+    assertPutResponses(putRequests, response, ServerErrorCode.No_Error, ServerErrorCode.No_Error,
+        ServerErrorCode.No_Error);
+    for (PutRequest putRequest : putRequests) {
+      Assert.assertTrue("Blob should have been written",
+          stores.get(partitionId).findMissingKeys(Arrays.<StoreKey>asList(putRequest.getBlobId())).isEmpty());
+    }
+  }
+
+  /**
+   * Tests that the blobs of a batch put that already exist in the store, or that appear earlier in the same batch, fail
+   * with {@link ServerErrorCode#Blob_Already_Exists} while the rest of the batch is written.
+   * @throws Exception
+   */
+  @Test
+  public void batchPutWithDuplicateBlobTest()
+      throws Exception {
+    PartitionId partitionId = partitionIds.get(0);
+    BlobId existingBlobId = new BlobId(partitionId);
+    sendBatchPutRequest(Arrays.asList(createPutRequest(1, existingBlobId)));
+    BlobId duplicatedBlobId = new BlobId(partitionId);
+    BlobId newBlobId = new BlobId(partitionId);
+    List<PutRequest> putRequests = Arrays.asList(createPutRequest(2, existingBlobId),
+        createPutRequest(3, duplicatedBlobId), createPutRequest(4, newBlobId), createPutRequest(5, duplicatedBlobId));
+    BatchPutResponse response = sendBatchPutRequest(putRequests);
+    Assert.assertEquals("Batch put should not have failed as a whole", ServerErrorCode.No_Error, response.getError());
+    assertPutResponses(putRequests, response, ServerErrorCode.Blob_Already_Exists, ServerErrorCode.No_Error,
+        ServerErrorCode.No_Error, ServerErrorCode.Blob_Already_Exists);
+    Assert.assertTrue("Blobs should have been written", stores.get(partitionId)
+        .findMissingKeys(Arrays.<StoreKey>asList(duplicatedBlobId, newBlobId)).isEmpty());
+    Assert.assertEquals("Every blob should have been written once", 3, getMessageCount(partitionId));
+  }
+
+  /**
+   * Tests that a batch put with blobs of different partitions fails as a whole and that nothing is written.
+   * @throws Exception
+   */
+  @Test
+  public void batchPutWithMixedPartitionsTest()
+      throws Exception {
+    List<PutRequest> putRequests = Arrays.asList(createPutRequest(1, new BlobId(partitionIds.get(0))),
+        createPutRequest(2, new BlobId(partitionIds.get(1))));
+    BatchPutResponse response = sendBatchPutRequest(putRequests);
+    Assert.assertEquals("Batch put should have failed", ServerErrorCode.Unknown_Error, response.getError());
+    assertPutResponses(putRequests, response, ServerErrorCode.Unknown_Error, ServerErrorCode.Unknown_Error);
+    Assert.assertEquals("Nothing should have been written", 0, getMessageCount(partitionIds.get(0)));
+    Assert.assertEquals("Nothing should have been written", 0, getMessageCount(partitionIds.get(1)));
+  }
+
+  /**
+   * Tests that a batch put without blobs is not handled and that its connection is closed.
+   * @throws Exception
+   */
+  @Test
+  public void emptyBatchPutTest()
+      throws Exception {
+    // a BatchPutRequest cannot be created without blobs, so the request is serialized by hand
+    byte[] clientId = "client".getBytes();
+    final ByteBuffer buffer = ByteBuffer.allocate(2 + 2 + 4 + 4 + clientId.length + 4);
+    buffer.putShort((short) RequestOrResponseType.BatchPutRequest.ordinal());
+    buffer.putShort((short) 1);
+    buffer.putInt(1);
+    buffer.putInt(clientId.length);
+    buffer.put(clientId);
+    buffer.putInt(0);
+    buffer.flip();
+    requests.handleRequests(new Request() {
+      @Override
+      public InputStream getInputStream() {
+        return new ByteBufferInputStream(buffer);
+      }
+
+      @Override
+      public long getStartTimeInMs() {
+        return SystemTime.getInstance().milliseconds();
+      }
+    });
+    Assert.assertEquals("No response should have been sent", 0, requestResponseChannel.getResponseCount());
+    Assert.assertEquals("The connection should have been closed", 1, requestResponseChannel.getClosedConnectionCount());
+  }
+
+  /**
+   * Tests that a replica metadata request with nothing new to return is held until the max wait time elapses and that
+   * the response tells that it was held.
+   * @throws Exception
+   */
+  @Test
+  public void replicaMetadataRequestWaitTimeoutTest()
+      throws Exception {
+    long startTimeMs = SystemTime.getInstance().milliseconds();
+    ReplicaMetadataResponse response =
+        sendReplicaMetadataRequest(requests, requestResponseChannel, partitionIds.get(0));
+    Assert.assertTrue("The request should have been held", response.isHeldForWrites());
+    Assert.assertTrue("The request should have been held for the max wait time",
+        response.getWaitTimeInMs() >= MAX_WAIT_TIME_MS);
+    Assert.assertTrue("The request should have been held for the max wait time",
+        SystemTime.getInstance().milliseconds() - startTimeMs >= MAX_WAIT_TIME_MS);
+    Assert.assertEquals("There should be no entries", 0,
+        response.getReplicaMetadataResponseInfoList().get(0).getMessageInfoList().size());
+  }
+
+  /**
+   * Tests that a held replica metadata request is answered with the new entry as soon as a blob is put in its
+   * partition, that writes to other partitions do not answer it and that requests over the max number of held requests
+   * are answered right away, without being held.
+   * @throws Exception
+   */
+  @Test
+  public void replicaMetadataRequestWaitTest()
+      throws Exception {
+    final PartitionId partitionId = partitionIds.get(0);
+    final MockRequestResponseChannel waitingChannel = new MockRequestResponseChannel();
+    final AmbryRequests waitingRequests = createAmbryRequests(waitingChannel, new MetricRegistry());
+    final AtomicReference<ReplicaMetadataResponse> responseRef = new AtomicReference<ReplicaMetadataResponse>();
+    final AtomicReference<Exception> exceptionRef = new AtomicReference<Exception>();
+    Thread waitingThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          responseRef.set(sendReplicaMetadataRequest(waitingRequests, waitingChannel, partitionId));
+        } catch (Exception e) {
+          exceptionRef.set(e);
+        }
+      }
+    });
+    waitingThread.start();
+    awaitHeldRequests(1);
+
+    // the max number of requests are held, so this one is answered right away.
+    ReplicaMetadataResponse response = sendReplicaMetadataRequest(requests, requestResponseChannel, partitionId);
+    Assert.assertFalse("The request should not have been held", response.isHeldForWrites());
+    Assert.assertEquals("The request should not have been held", 0, response.getWaitTimeInMs());
+
+    // a write to another partition does not answer the held request.
+    sendBatchPutRequest(Arrays.asList(createPutRequest(1, new BlobId(partitionIds.get(1)))));
+    Assert.assertFalse("The request should still be held", waitingChannel.awaitResponseCount(1, 100));
+
+    long startTimeMs = SystemTime.getInstance().milliseconds();
+    BlobId blobId = new BlobId(partitionId);
+    sendBatchPutRequest(Arrays.asList(createPutRequest(2, blobId)));
+    Assert.assertTrue("The held request should have been answered",
+        waitingChannel.awaitResponseCount(1, MAX_WAIT_TIME_MS));
+    waitingThread.join();
+    Assert.assertNull("The held request should not have failed", exceptionRef.get());
+    Assert.assertTrue("The held request should have been answered before the max wait time",
+        SystemTime.getInstance().milliseconds() - startTimeMs < MAX_WAIT_TIME_MS);
+    Assert.assertTrue("The request should have been held", responseRef.get().isHeldForWrites());
+    List<MessageInfo> messageInfos = responseRef.get().getReplicaMetadataResponseInfoList().get(0).getMessageInfoList();
+    Assert.assertEquals("The new blob should have been returned", 1, messageInfos.size());
+    Assert.assertEquals("The new blob should have been returned", blobId, messageInfos.get(0).getStoreKey());
+  }
+
+  /**
+   * Tests that key summary requests are answered off the request handler threads, so that a slow summary does not hold
+   * up other requests, and that both the key summary and the keys missing from a filter are returned.
+   * @throws Exception
+   */
+  @Test
+  public void keySummaryRequestTest()
+      throws Exception {
+    PartitionId partitionId = partitionIds.get(0);
+    List<BlobId> blobIds = new ArrayList<BlobId>();
+    List<MessageInfo> messageInfos = new ArrayList<MessageInfo>();
+    List<ByteBuffer> messages = new ArrayList<ByteBuffer>();
+    for (int i = 0; i < 3; i++) {
+      BlobId blobId = new BlobId(partitionId);
+      blobIds.add(blobId);
+      messageInfos.add(new MessageInfo(blobId, BLOB_SIZE));
+      messages.add(ByteBuffer.allocate(BLOB_SIZE));
+    }
+    final CountDownLatch summaryGate = new CountDownLatch(1);
+    MockStore gatedStore = new MockStore(messageInfos, messages) {
+      @Override
+      public KeySummary getKeySummary(int bucketCount)
+          throws StoreException {
+        try {
+          summaryGate.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return super.getKeySummary(bucketCount);
+      }
+    };
+    stores.put(partitionId, gatedStore);
+
+    int bucketCount = 4;
+    int responseCount = requestResponseChannel.getResponseCount();
+    requests.handleRequests(new SerializedRequest(new KeySummaryRequest(300, "client", partitionId, bucketCount)));
+    // the summary is held up, but the request handler is free to handle other requests
+    sendBatchPutRequest(Arrays.asList(createPutRequest(301, new BlobId(partitionIds.get(1)))));
+    Assert.assertEquals("Only the put should have been answered", responseCount + 1,
+        requestResponseChannel.getResponseCount());
+    summaryGate.countDown();
+    Assert.assertTrue("The key summary request should have been answered",
+        requestResponseChannel.awaitResponseCount(responseCount + 2, MAX_WAIT_TIME_MS));
+    KeySummaryResponse response = KeySummaryResponse.readFrom(requestResponseChannel.getLastResponse(), clusterMap);
+    Assert.assertEquals("Request should have succeeded", ServerErrorCode.No_Error, response.getError());
+    KeySummary expectedKeySummary = new KeySummary(bucketCount);
+    for (BlobId blobId : blobIds) {
+      expectedKeySummary.add(blobId);
+    }
+    Assert.assertEquals("Summaries should match", 0,
+        expectedKeySummary.getMismatchedBuckets(response.getKeySummary()).size());
+
+    // the requester has the first blob, so the others are returned
+    List<Integer> buckets = new ArrayList<Integer>();
+    for (int i = 0; i < bucketCount; i++) {
+      buckets.add(i);
+    }
+    IFilter keyFilter = FilterFactory.getFilter(1, 0.0001);
+    keyFilter.add(ByteBuffer.wrap(blobIds.get(0).toBytes()));
+    requests.handleRequests(
+        new SerializedRequest(new KeySummaryRequest(302, "client", partitionId, bucketCount, buckets, keyFilter)));
+    keyFilter.close();
+    Assert.assertTrue("The key request should have been answered",
+        requestResponseChannel.awaitResponseCount(responseCount + 3, MAX_WAIT_TIME_MS));
+    response = KeySummaryResponse.readFrom(requestResponseChannel.getLastResponse(), clusterMap);
+    Assert.assertEquals("Request should have succeeded", ServerErrorCode.No_Error, response.getError());
+    Assert.assertEquals("The keys missing from the filter should have been returned",
+        new HashSet<StoreKey>(blobIds.subList(1, blobIds.size())), new HashSet<StoreKey>(response.getKeys()));
+    Assert.assertEquals("No connection should have been closed", 0,
+        requestResponseChannel.getClosedConnectionCount());
+  }
+
+  /**
+   * @param requestResponseChannel the {@link RequestResponseChannel} to send responses to.
+   * @param metricRegistry the {@link MetricRegistry} to use.
+   * @return an {@link AmbryRequests} that serves the requests from the stores of this test.
+   */
+  private AmbryRequests createAmbryRequests(RequestResponseChannel requestResponseChannel,
+      MetricRegistry metricRegistry) {
+    return new AmbryRequests(storeManager, requestResponseChannel, clusterMap, dataNodeId, metricRegistry,
+        new MockFindTokenFactory(), null, replicationManager, storeKeyFactory,
+        new Tracer(0, 10, SystemTime.getInstance()));
+  }
+
+  /**
+   * Has the given {@link AmbryRequests} handle a {@link ReplicaMetadataRequest} from the start of the given partition
+   * on behalf of a replica of the partition on another node.
+   * @param ambryRequests the {@link AmbryRequests} to handle the request.
+   * @param channel the {@link MockRequestResponseChannel} that the {@link AmbryRequests} sends responses to.
+   * @param partitionId the partition to request the entries of.
+   * @return the {@link ReplicaMetadataResponse} that was sent.
+   * @throws Exception
+   */
+  private ReplicaMetadataResponse sendReplicaMetadataRequest(AmbryRequests ambryRequests,
+      MockRequestResponseChannel channel, PartitionId partitionId)
+      throws Exception {
+    ReplicaId remoteReplicaId = null;
+    for (ReplicaId replicaId : partitionId.getReplicaIds()) {
+      if (!replicaId.getDataNodeId().equals(dataNodeId)) {
+        remoteReplicaId = replicaId;
+      }
+    }
+    ReplicaMetadataRequestInfo requestInfo =
+        new ReplicaMetadataRequestInfo(partitionId, new MockFindTokenFactory().getNewFindToken(),
+            remoteReplicaId.getDataNodeId().getHostname(), remoteReplicaId.getReplicaPath());
+    ambryRequests.handleRequests(new SerializedRequest(
+        new ReplicaMetadataRequest(200, "replica", Collections.singletonList(requestInfo), Long.MAX_VALUE)));
+    ReplicaMetadataResponse response =
+        ReplicaMetadataResponse.readFrom(channel.getLastResponse(), new MockFindTokenFactory(), clusterMap);
+    Assert.assertEquals("Request should have succeeded", ServerErrorCode.No_Error, response.getError());
+    Assert.assertEquals("Request should have succeeded", ServerErrorCode.No_Error,
+        response.getReplicaMetadataResponseInfoList().get(0).getError());
+    return response;
+  }
+
+  /**
+   * Waits until the given number of replica metadata requests are held waiting for writes.
+   * @param count the number of held requests to wait for.
+   * @throws InterruptedException
+   */
+  private void awaitHeldRequests(int count)
+      throws InterruptedException {
+    Gauge<?> waiters = null;
+    for (Map.Entry<String, Gauge> entry : registry.getGauges().entrySet()) {
+      if (entry.getKey().endsWith("ReplicaMetadataRequestWaiters")) {
+        waiters = entry.getValue();
+      }
+    }
+    long deadlineMs = SystemTime.getInstance().milliseconds() + 10000;
+    while (!waiters.getValue().equals(count)) {
+      Assert.assertTrue("Requests were not held in time", SystemTime.getInstance().milliseconds() < deadlineMs);
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * @param correlationId the correlation id of the request.
+   * @param blobId the id of the blob to put.
+   * @return a {@link PutRequest} for a blob of random content.
+   */
+  private PutRequest createPutRequest(int correlationId, BlobId blobId) {
+    byte[] usermetadata = new byte[10];
+    byte[] blob = new byte[BLOB_SIZE];
+    random.nextBytes(usermetadata);
+    random.nextBytes(blob);
+    return new PutRequest(correlationId, "client", blobId, new BlobProperties(BLOB_SIZE, "serviceId"),
+        ByteBuffer.wrap(usermetadata), new ByteBufferInputStream(ByteBuffer.wrap(blob)), BLOB_SIZE, BlobType.DataBlob);
+  }
+
+  /**
+   * Has {@link AmbryRequests} handle a {@link BatchPutRequest} of the given puts.
+   * @param putRequests the {@link PutRequest}s of the batch.
+   * @return the {@link BatchPutResponse} that was sent.
+   * @throws Exception
+   */
+  private BatchPutResponse sendBatchPutRequest(List<PutRequest> putRequests)
+      throws Exception {
+    requests.handleRequests(new SerializedRequest(new BatchPutRequest(100, "client", putRequests)));
+    Assert.assertEquals("The request should have been handled", 0, requestResponseChannel.getClosedConnectionCount());
+    BatchPutResponse response = BatchPutResponse.readFrom(requestResponseChannel.getLastResponse());
+    Assert.assertEquals("Correlation id of the batch should match", 100, response.getCorrelationId());
+    return response;
+  }
+
+  /**
+   * Checks that there is a {@link PutResponse} with the given error for every {@link PutRequest} of a batch.
+   * @param putRequests the {@link PutRequest}s of the batch.
+   * @param response the {@link BatchPutResponse} for the batch.
+   * @param errors the expected errors, in the order of the requests.
+   */
+  private void assertPutResponses(List<PutRequest> putRequests, BatchPutResponse response, ServerErrorCode... errors) {
+    List<PutResponse> putResponses = response.getPutResponses();
+    Assert.assertEquals("There should be a response for every put", putRequests.size(), putResponses.size());
+    for (int i = 0; i < putRequests.size(); i++) {
+      Assert.assertEquals("Correlation id of the put should match", putRequests.get(i).getCorrelationId(),
+          putResponses.get(i).getCorrelationId());
+      Assert.assertEquals("Unexpected error for put " + i, errors[i], putResponses.get(i).getError());
+    }
+  }
+
+  /**
+   * @param partitionId the partition of the store.
+   * @return the number of messages in the store of the given partition.
+   * @throws Exception
+   */
+  private int getMessageCount(PartitionId partitionId)
+      throws Exception {
+    return stores.get(partitionId).getEntriesInBuckets(1, Collections.singleton(0)).size();
+  }
+}
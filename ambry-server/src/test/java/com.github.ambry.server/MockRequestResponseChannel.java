@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.github.ambry.network.Request;
+import com.github.ambry.network.RequestResponseChannel;
+import com.github.ambry.network.Send;
+import com.github.ambry.network.ServerNetworkResponseMetrics;
+import com.github.ambry.utils.ByteBufferChannel;
+import com.github.ambry.utils.ByteBufferInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * A {@link RequestResponseChannel} that writes every response into the same buffer, so that the last response can be
+ * read back without allocating for every response. It counts the responses sent and the connections closed.
+ */
+class MockRequestResponseChannel implements RequestResponseChannel {
+  private final ByteBufferChannel channel = new ByteBufferChannel(ByteBuffer.allocate(1024 * 1024));
+  private int responseCount = 0;
+  private int closedConnectionCount = 0;
+
+  @Override
+  public synchronized void sendResponse(Send payloadToSend, Request originalRequest,
+      ServerNetworkResponseMetrics metrics) {
+    channel.getBuffer().clear();
+    try {
+      do {
+        payloadToSend.writeTo(channel);
+      } while (!payloadToSend.isSendComplete());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    responseCount++;
+    notifyAll();
+  }
+
+  /**
+   * @return the last response, after its size.
+   */
+  synchronized DataInputStream getLastResponse() {
+    ByteBuffer buffer = ByteBuffer.allocate(channel.getBuffer().position());
+    buffer.put((ByteBuffer) channel.getBuffer().duplicate().flip());
+    buffer.flip();
+    buffer.getLong();
+    return new DataInputStream(new ByteBufferInputStream(buffer));
+  }
+
+  /**
+   * @return the number of responses sent so far.
+   */
+  synchronized int getResponseCount() {
+    return responseCount;
+  }
+
+  /**
+   * Waits until the given number of responses have been sent.
+   * @param count the number of responses to wait for.
+   * @param timeoutMs the time to wait for.
+   * @return {@code true} if the responses were sent within the time.
+   * @throws InterruptedException
+   */
+  synchronized boolean awaitResponseCount(int count, long timeoutMs)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (responseCount < count) {
+      long remainingMs = deadline - System.currentTimeMillis();
+      if (remainingMs <= 0) {
+        return false;
+      }
+      wait(remainingMs);
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of connections closed so far, one for every request that could not be handled.
+   */
+  synchronized int getClosedConnectionCount() {
+    return closedConnectionCount;
+  }
+
+  @Override
+  public Request receiveRequest() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void sendRequest(Request request) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public synchronized void closeConnection(Request request) {
+    closedConnectionCount++;
+  }
+
+  @Override
+  public void shutdown() {
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.server;
+
+import com.github.ambry.network.Request;
+import com.github.ambry.network.Send;
+import com.github.ambry.utils.ByteBufferChannel;
+import com.github.ambry.utils.ByteBufferInputStream;
+import com.github.ambry.utils.SystemTime;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ * A {@link Request} that is serialized up front, the way the network layer hands requests over to
+ * {@link AmbryRequests}, so that serializing it is not part of handling it.
+ */
+class SerializedRequest implements Request {
+  private final InputStream stream;
+  private final long startTimeInMs = SystemTime.getInstance().milliseconds();
+
+  /**
+   * Serialize the given request.
+   * @param request the request to serialize.
+   * @throws IOException
+   */
+  SerializedRequest(Send request)
+      throws IOException {
+    ByteBufferChannel channel = new ByteBufferChannel(ByteBuffer.allocate((int) request.sizeInBytes()));
+    do {
+      request.writeTo(channel);
+    } while (!request.isSendComplete());
+    ByteBuffer buffer = channel.getBuffer();
+    buffer.flip();
+    // the size is read by the network layer
+    buffer.getLong();
+    stream = new ByteBufferInputStream(buffer);
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return stream;
+  }
+
+  @Override
+  public long getStartTimeInMs() {
+    return startTimeInMs;
+  }
+}
@@ -57,7 +57,19 @@ public class BlobStore implements Store {
   public BlobStore(String storeId, StoreConfig config, Scheduler scheduler, MetricRegistry registry, String dataDir,
       long capacityInBytes, StoreKeyFactory factory, MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete,
       Time time) {
-    this.metrics = new StoreMetrics(storeId, registry);
+    this(storeId, config, scheduler, registry,
+        new DiskMetrics(new File(dataDir).getAbsoluteFile().getParent(), registry), dataDir, capacityInBytes, factory,
+        recovery, hardDelete, time);
+  }
+
+  /**
+   * Creates a store whose I/O is recorded in the metrics of the disk that it lives on.
+   * @param diskMetrics the {@link DiskMetrics} of the disk that {@code dataDir} is on.
+   */
+  public BlobStore(String storeId, StoreConfig config, Scheduler scheduler, MetricRegistry registry,
+      DiskMetrics diskMetrics, String dataDir, long capacityInBytes, StoreKeyFactory factory,
+      MessageStoreRecovery recovery, MessageStoreHardDelete hardDelete, Time time) {
+    this.metrics = new StoreMetrics(storeId, diskMetrics, registry);
     this.dataDir = dataDir;
     this.scheduler = scheduler;
     this.config = config;
@@ -166,7 +178,9 @@ public class BlobStore implements Store {
         }
       }
 
+      Timer.Context lockWaitContext = metrics.diskMetrics.storeLockWaitTime.time();
       synchronized (lock) {
+        lockWaitContext.stop();
         // Validate that log end offset was not changed. If changed, check once again for existing
         // keys in store
         long currentIndexEndOffset = index.getCurrentEndOffset();
@@ -224,7 +238,9 @@ public class BlobStore implements Store {
               StoreErrorCodes.ID_Deleted);
         }
       }
+      Timer.Context lockWaitContext = metrics.diskMetrics.storeLockWaitTime.time();
       synchronized (lock) {
+        lockWaitContext.stop();
         long currentIndexEndOffset = index.getCurrentEndOffset();
         if (indexEndOffsetBeforeCheck != currentIndexEndOffset) {
           FileSpan fileSpan = new FileSpan(indexEndOffsetBeforeCheck, currentIndexEndOffset);
@@ -284,6 +300,30 @@ public class BlobStore implements Store {
     }
   }
 
+  @Override
+  public KeySummary getKeySummary(int bucketCount)
+      throws StoreException {
+    checkStarted();
+    final Timer.Context context = metrics.getKeySummaryResponse.time();
+    try {
+      return index.getKeySummary(bucketCount);
+    } finally {
+      context.stop();
+    }
+  }
+
+  @Override
+  public List<MessageInfo> getEntriesInBuckets(int bucketCount, Set<Integer> buckets)
+      throws StoreException {
+    checkStarted();
+    final Timer.Context context = metrics.getEntriesInBucketsResponse.time();
+    try {
+      return index.getEntriesInBuckets(bucketCount, buckets);
+    } finally {
+      context.stop();
+    }
+  }
+
   @Override
   public boolean isKeyDeleted(StoreKey key)
       throws StoreException {
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.ambry.metrics.LatencyMetrics;
+
+
+/**
+ * Metrics for the I/O done on a disk by all the stores that live on it. They are named after the mount path of the
+ * disk, and the metrics of stores on the same disk are the same metrics in the registry.
+ * <p/>
+ * The latency of every kind of I/O is measured by a {@link Timer}, whose rate is the number of operations per second.
+ * The bytes moved are measured by a {@link Meter}, whose rate is the number of bytes per second. The outstanding
+ * reads and writes are the I/O operations in progress on the disk, which is its queue depth as seen by the stores.
+ */
+public class DiskMetrics {
+
+  public final Timer logReadTime;
+  public final Meter logReadBytes;
+  public final Timer logWriteTime;
+  public final Meter logWriteBytes;
+  public final Timer logFlushTime;
+  public final Timer indexSegmentMapTime;
+  public final Meter indexSegmentMapBytes;
+  public final Timer indexSegmentPersistTime;
+  public final Meter indexSegmentPersistBytes;
+  public final Timer storeLockWaitTime;
+  public final Counter outstandingReads;
+  public final Counter outstandingWrites;
+  private final String mountPath;
+
+  /**
+   * Creates the metrics of a disk, or gets them from the registry if they were created for another store on it.
+   * @param mountPath the mount path of the disk.
+   * @param registry the {@link MetricRegistry} to register the metrics with.
+   */
+  public DiskMetrics(String mountPath, MetricRegistry registry) {
+    this.mountPath = mountPath;
+    String name = mountPath + ".";
+    logReadTime = LatencyMetrics.timer(registry, MetricRegistry.name(Log.class, name + "DiskReadTime"));
+    logReadBytes = registry.meter(MetricRegistry.name(Log.class, name + "DiskReadBytes"));
+    logWriteTime = LatencyMetrics.timer(registry, MetricRegistry.name(Log.class, name + "DiskWriteTime"));
+    logWriteBytes = registry.meter(MetricRegistry.name(Log.class, name + "DiskWriteBytes"));
+    logFlushTime = LatencyMetrics.timer(registry, MetricRegistry.name(Log.class, name + "DiskFlushTime"));
+    indexSegmentMapTime = LatencyMetrics.timer(registry, MetricRegistry.name(IndexSegment.class, name + "DiskMapTime"));
+    indexSegmentMapBytes = registry.meter(MetricRegistry.name(IndexSegment.class, name + "DiskMapBytes"));
+    indexSegmentPersistTime =
+        LatencyMetrics.timer(registry, MetricRegistry.name(IndexSegment.class, name + "DiskPersistTime"));
+    indexSegmentPersistBytes = registry.meter(MetricRegistry.name(IndexSegment.class, name + "DiskPersistBytes"));
+    storeLockWaitTime = LatencyMetrics.timer(registry, MetricRegistry.name(BlobStore.class, name + "DiskLockWaitTime"));
+    outstandingReads = registry.counter(MetricRegistry.name(Log.class, name + "DiskOutstandingReads"));
+    outstandingWrites = registry.counter(MetricRegistry.name(Log.class, name + "DiskOutstandingWrites"));
+  }
+
+  /**
+   * @return the mount path of the disk.
+   */
+  public String getMountPath() {
+    return mountPath;
+  }
+
+  /**
+   * @return the number of reads and writes in progress on the disk.
+   */
+  public long getOutstandingIOCount() {
+    return outstandingReads.getCount() + outstandingWrites.getCount();
+  }
+}
@@ -13,6 +13,7 @@
  */
 package com.github.ambry.store;
 
+import com.codahale.metrics.Timer;
 import com.github.ambry.config.StoreConfig;
 import com.github.ambry.utils.ByteBufferInputStream;
 import com.github.ambry.utils.CrcInputStream;
@@ -109,8 +110,7 @@ class IndexSegment {
     this.factory = factory;
     this.keySize = keySize;
     this.valueSize = valueSize;
-    bloomFilter = FilterFactory
-        .getFilter(config.storeIndexMaxNumberOfInmemElements, config.storeIndexBloomMaxFalsePositiveProbability);
+    bloomFilter = createBloomFilter(config);
     numberOfItems = new AtomicInteger(0);
     this.metrics = metrics;
     this.lastModifiedTimeSec = new AtomicLong(0);
@@ -129,6 +129,8 @@ class IndexSegment {
   public IndexSegment(File indexFile, boolean isMapped, StoreKeyFactory factory, StoreConfig config,
       StoreMetrics metrics, Journal journal)
       throws StoreException {
+    // the disk metrics are used by map()
+    this.metrics = metrics;
     try {
       int startIndex = indexFile.getName().indexOf("_", 0);
       String startOffsetValue = indexFile.getName().substring(0, startIndex);
@@ -161,8 +163,7 @@ class IndexSegment {
         stream.close();
       } else {
         index = new ConcurrentSkipListMap<StoreKey, IndexValue>();
-        bloomFilter = FilterFactory
-            .getFilter(config.storeIndexMaxNumberOfInmemElements, config.storeIndexBloomMaxFalsePositiveProbability);
+        bloomFilter = createBloomFilter(config);
         bloomFile = new File(indexFile.getParent(), startOffset + "_" + PersistentIndex.Bloom_File_Name_Suffix);
         try {
           readFromFile(indexFile, journal);
@@ -182,7 +183,20 @@ class IndexSegment {
       throw new StoreException("Index Segment : " + indexFile.getAbsolutePath() +
           " error while loading index from file Exception: " + e.getMessage(), StoreErrorCodes.Index_Creation_Failure);
     }
-    this.metrics = metrics;
+  }
+
+  /**
+   * Creates an empty bloom filter for the entries of a segment, of the kind chosen by the config.
+   * @param config the store config.
+   * @return the bloom filter.
+   */
+  private static IFilter createBloomFilter(StoreConfig config) {
+    if (config.storeIndexBloomBlockedFilterEnabled) {
+      return FilterFactory.getBlockedFilter(config.storeIndexMaxNumberOfInmemElements,
+          config.storeIndexBloomMaxFalsePositiveProbability);
+    }
+    return FilterFactory
+        .getFilter(config.storeIndexMaxNumberOfInmemElements, config.storeIndexBloomMaxFalsePositiveProbability);
   }
 
   /**
@@ -476,6 +490,9 @@ class IndexSegment {
       FileOutputStream fileStream = new FileOutputStream(temp);
       CrcOutputStream crc = new CrcOutputStream(fileStream);
       DataOutputStream writer = new DataOutputStream(crc);
+      DiskMetrics diskMetrics = metrics.diskMetrics;
+      diskMetrics.outstandingWrites.inc();
+      Timer.Context context = diskMetrics.indexSegmentPersistTime.time();
       try {
         rwLock.readLock().lock();
 
@@ -508,8 +525,14 @@ class IndexSegment {
         throw new StoreException("IndexSegment : " + indexFile.getAbsolutePath() +
             " IO error while persisting index to disk", e, StoreErrorCodes.IOError);
       } finally {
-        writer.close();
-        rwLock.readLock().unlock();
+        try {
+          writer.close();
+        } finally {
+          rwLock.readLock().unlock();
+          context.stop();
+          diskMetrics.outstandingWrites.dec();
+          diskMetrics.indexSegmentPersistBytes.mark(writer.size());
+        }
       }
       logger.trace("IndexSegment : {} completed writing index to file", indexFile.getAbsolutePath());
     }
@@ -524,9 +547,13 @@ class IndexSegment {
   public void map(boolean persistBloom)
       throws IOException, StoreException {
     RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+    DiskMetrics diskMetrics = metrics.diskMetrics;
     rwLock.writeLock().lock();
+    diskMetrics.outstandingReads.inc();
+    Timer.Context context = diskMetrics.indexSegmentMapTime.time();
     try {
       mmap = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexFile.length());
+      diskMetrics.indexSegmentMapBytes.mark(indexFile.length());
       mmap.position(0);
       short version = mmap.getShort();
       switch (version) {
@@ -542,6 +569,8 @@ class IndexSegment {
       mapped.set(true);
       index = null;
     } finally {
+      context.stop();
+      diskMetrics.outstandingReads.dec();
       raf.close();
       rwLock.writeLock().unlock();
     }
@@ -13,6 +13,7 @@
  */
 package com.github.ambry.store;
 
+import com.codahale.metrics.Timer;
 import com.github.ambry.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +42,7 @@ public class Log implements Read, Write {
   private static final String Log_File_Name = "log_current";
   private Logger logger = LoggerFactory.getLogger(getClass());
   private final StoreMetrics metrics;
+  private final DiskMetrics diskMetrics;
 
   public Log(String dataDir, long capacityInBytes, StoreMetrics metrics)
       throws IOException {
@@ -56,11 +58,12 @@ public class Log implements Read, Write {
     // External components is responsible for setting it the right value
     currentWriteOffset = new AtomicLong(0);
     this.metrics = metrics;
+    this.diskMetrics = metrics.diskMetrics;
   }
 
   StoreMessageReadSet getView(List<BlobReadOptions> readOptions)
       throws IOException {
-    return new StoreMessageReadSet(file, fileChannel, readOptions, currentWriteOffset.get());
+    return new StoreMessageReadSet(file, fileChannel, readOptions, currentWriteOffset.get(), diskMetrics);
   }
 
   public long sizeInBytes()
@@ -93,7 +96,16 @@ public class Log implements Read, Write {
           "Log : " + file.getAbsolutePath() + " error trying to append to log from buffer since new data size " +
               buffer.remaining() + " exceeds total log size " + capacityInBytes);
     }
-    int bytesWritten = fileChannel.write(buffer, currentWriteOffset.get());
+    int bytesWritten;
+    diskMetrics.outstandingWrites.inc();
+    Timer.Context context = diskMetrics.logWriteTime.time();
+    try {
+      bytesWritten = fileChannel.write(buffer, currentWriteOffset.get());
+    } finally {
+      context.stop();
+      diskMetrics.outstandingWrites.dec();
+    }
+    diskMetrics.logWriteBytes.mark(bytesWritten);
     currentWriteOffset.addAndGet(bytesWritten);
     logger.trace("Log: {} bytes appended to the log from bytebuffer byteswritten : {}", file.getAbsolutePath(),
         bytesWritten);
@@ -111,8 +123,17 @@ public class Log implements Read, Write {
           "from channel since new data size " + size + "exceeds total log size " + capacityInBytes);
     }
     long bytesWritten = 0;
-    while (bytesWritten < size) {
-      bytesWritten += fileChannel.transferFrom(channel, currentWriteOffset.get() + bytesWritten, size - bytesWritten);
+    diskMetrics.outstandingWrites.inc();
+    Timer.Context context = diskMetrics.logWriteTime.time();
+    try {
+      while (bytesWritten < size) {
+        bytesWritten +=
+            fileChannel.transferFrom(channel, currentWriteOffset.get() + bytesWritten, size - bytesWritten);
+      }
+    } finally {
+      context.stop();
+      diskMetrics.outstandingWrites.dec();
+      diskMetrics.logWriteBytes.mark(bytesWritten);
     }
     currentWriteOffset.addAndGet(bytesWritten);
     logger.trace("Log : {} bytes appended to the log from read channel bytesWritten: {}", file.getAbsolutePath(),
@@ -130,8 +151,16 @@ public class Log implements Read, Write {
           "from channel since new data size " + size + "exceeds log end offset " + currentWriteOffset.get());
     }
     long bytesWritten = 0;
-    while (bytesWritten < size) {
-      bytesWritten += fileChannel.transferFrom(channel, offset + bytesWritten, size - bytesWritten);
+    diskMetrics.outstandingWrites.inc();
+    Timer.Context context = diskMetrics.logWriteTime.time();
+    try {
+      while (bytesWritten < size) {
+        bytesWritten += fileChannel.transferFrom(channel, offset + bytesWritten, size - bytesWritten);
+      }
+    } finally {
+      context.stop();
+      diskMetrics.outstandingWrites.dec();
+      diskMetrics.logWriteBytes.mark(bytesWritten);
     }
     logger.trace("Log : {} bytes written to the log from read channel at {}, bytesWritten: {}", file.getAbsolutePath(),
         offset, bytesWritten);
@@ -147,7 +176,14 @@ public class Log implements Read, Write {
 
   public void flush()
       throws IOException {
-    fileChannel.force(true);
+    diskMetrics.outstandingWrites.inc();
+    Timer.Context context = diskMetrics.logFlushTime.time();
+    try {
+      fileChannel.force(true);
+    } finally {
+      context.stop();
+      diskMetrics.outstandingWrites.dec();
+    }
   }
 
   @Override
@@ -160,7 +196,16 @@ public class Log implements Read, Write {
       throw new IllegalArgumentException("Log : " + file.getAbsolutePath() + " error trying to read outside " +
           "the log range. log end position " + sizeInBytes() + " input buffer size " + buffer.remaining());
     }
-    fileChannel.read(buffer, position);
+    int bytesRead;
+    diskMetrics.outstandingReads.inc();
+    Timer.Context context = diskMetrics.logReadTime.time();
+    try {
+      bytesRead = fileChannel.read(buffer, position);
+    } finally {
+      context.stop();
+      diskMetrics.outstandingReads.dec();
+    }
+    diskMetrics.logReadBytes.mark(Math.max(bytesRead, 0));
   }
 }
 
@@ -33,8 +33,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -43,6 +45,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
@@ -88,6 +91,12 @@ public class PersistentIndex {
   private long logEndOffsetOnStartup;
   private final StoreMetrics metrics;
   private Time time;
+  // the key summaries of the mapped index segments by start offset, which never change once computed
+  private final Map<Long, KeySummary> sealedSegmentKeySummaries = new ConcurrentHashMap<Long, KeySummary>();
+  // the bucket count that key summaries were last requested for, 0 if none was requested yet
+  private volatile int keySummaryBucketCount = 0;
+  // the filter over the keys of the mapped index segments, null if it is disabled or could not be kept complete
+  private volatile SegmentKeyFilter segmentFilter = null;
 
   private class IndexFilter implements FilenameFilter {
     @Override
@@ -165,6 +174,19 @@ public class PersistentIndex {
         indexes.put(info.getStartOffset(), info);
       }
       this.dataDir = datadir;
+      if (config.storeIndexSegmentFilterEnabled) {
+        segmentFilter = new SegmentKeyFilter(config.storeIndexMaxNumberOfInmemElements,
+            config.storeIndexBloomMaxFalsePositiveProbability);
+        for (IndexSegment segment : indexes.values()) {
+          if (segment.isMapped()) {
+            addToSegmentFilter(segment);
+          }
+        }
+        if (segmentFilter != null) {
+          logger.info("Index : {} added {} mapped segments to the segment filter", datadir,
+              segmentFilter.getSegmentCount());
+        }
+      }
       logger.info("Index : " + datadir + " log end offset of index  before recovery " + log.getLogEndOffset());
       // perform recovery if required
       final Timer.Context context = metrics.recoveryTime.time();
@@ -409,6 +431,10 @@ public class PersistentIndex {
       throws StoreException {
     final Timer.Context context = metrics.findTime.time();
     try {
+      SegmentKeyFilter filter = segmentFilter;
+      if (fileSpan == null && filter != null) {
+        return findKeyWithSegmentFilter(key, filter);
+      }
       ConcurrentNavigableMap<Long, IndexSegment> segmentsMapToSearch = null;
       if (fileSpan == null) {
         logger.trace("Searching for " + key + " in the entire index");
@@ -422,11 +448,11 @@ public class PersistentIndex {
         metrics.segmentSizeForExists.update(segmentsMapToSearch.size());
       }
       for (Map.Entry<Long, IndexSegment> entry : segmentsMapToSearch.entrySet()) {
-        logger.trace("Index : {} searching index with start offset {}", dataDir, entry.getKey());
-        IndexValue value = entry.getValue().find(key);
+        if (filter != null && !filter.mightContain(key, entry.getKey())) {
+          continue;
+        }
+        IndexValue value = findKeyInSegment(key, entry.getValue());
         if (value != null) {
-          logger.trace("Index : {} found value offset {} size {} ttl {}", dataDir, value.getOffset(), value.getSize(),
-              value.getTimeToLiveInMs());
           return value;
         }
       }
@@ -436,6 +462,93 @@ public class PersistentIndex {
     return null;
   }
 
+  /**
+   * Finds a key in the entire index, searching only the mapped segments that the segment filter cannot rule out.
+   * @param key the key to find.
+   * @param filter the segment filter to use.
+   * @return the latest index value of the key, or null if the key is not in the index.
+   * @throws StoreException
+   */
+  private IndexValue findKeyWithSegmentFilter(StoreKey key, SegmentKeyFilter filter)
+      throws StoreException {
+    logger.trace("Searching for " + key + " in the entire index with the segment filter");
+    // the segments after the last segment of the filter, which are not mapped yet, have to be searched directly
+    long lastFilteredSegmentStartOffset = filter.getLastSegmentStartOffset();
+    for (IndexSegment segment : indexes.tailMap(lastFilteredSegmentStartOffset, false).descendingMap().values()) {
+      IndexValue value = findKeyInSegment(key, segment);
+      if (value != null) {
+        return value;
+      }
+    }
+    List<Long> candidateSegments = filter.getCandidateSegments(key);
+    metrics.segmentFilterCandidateSegmentCount.update(candidateSegments.size());
+    if (candidateSegments.isEmpty()) {
+      metrics.segmentFilterNegativeCount.inc();
+    }
+    for (Long startOffset : candidateSegments) {
+      // segments added to the filter since it was first read have been searched already
+      if (startOffset <= lastFilteredSegmentStartOffset) {
+        IndexValue value = findKeyInSegment(key, indexes.get(startOffset));
+        if (value != null) {
+          return value;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds a key in a single index segment.
+   * @param key the key to find.
+   * @param segment the segment to search.
+   * @return the index value of the key in the segment, or null if the segment does not have the key.
+   * @throws StoreException
+   */
+  private IndexValue findKeyInSegment(StoreKey key, IndexSegment segment)
+      throws StoreException {
+    logger.trace("Index : {} searching index with start offset {}", dataDir, segment.getStartOffset());
+    IndexValue value = segment.find(key);
+    if (value != null) {
+      logger.trace("Index : {} found value offset {} size {} ttl {}", dataDir, value.getOffset(), value.getSize(),
+          value.getTimeToLiveInMs());
+    }
+    return value;
+  }
+
+  /**
+   * Adds the keys of a mapped index segment to the segment filter. The filter is only consulted for the segments up to
+   * the last one added to it, so a segment that cannot be added would be skipped by lookups once a later segment is
+   * added. If the keys of the segment cannot be read, the filter is disabled instead and lookups search every segment.
+   * @param segment the mapped segment, which must start after all the segments in the filter.
+   */
+  private void addToSegmentFilter(IndexSegment segment) {
+    SegmentKeyFilter filter = segmentFilter;
+    if (filter != null) {
+      try {
+        filter.addSegment(segment.getStartOffset(), getSegmentKeys(segment));
+      } catch (StoreException e) {
+        logger.error("Index : " + dataDir + " disabling the segment filter as the keys of the segment with start " +
+            "offset " + segment.getStartOffset() + " could not be read", e);
+        segmentFilter = null;
+      }
+    }
+  }
+
+  /**
+   * @param segment the index segment whose keys are needed.
+   * @return the keys of all the entries in the segment.
+   * @throws StoreException if the entries of the segment could not be read.
+   */
+  List<StoreKey> getSegmentKeys(IndexSegment segment)
+      throws StoreException {
+    List<MessageInfo> entries = getAllEntries(segment);
+    List<StoreKey> keys = new ArrayList<StoreKey>(entries.size());
+    for (MessageInfo entry : entries) {
+      keys.add(entry.getStoreKey());
+    }
+    return keys;
+  }
+
   /**
    * Marks the index entry represented by the key for delete
    * @param id The id of the entry that needs to be deleted
@@ -516,6 +629,120 @@ public class PersistentIndex {
     return missingKeys;
   }
 
+  /**
+   * Summarizes the keys in the index. A key is counted in the index segment it first appears in, so that it is counted
+   * once however its entries are spread over segments. The summaries of mapped segments are cached, and the persistor
+   * summarizes segments as it maps them for the bucket count of the last call, so that only the latest segment is
+   * read on every call once the summaries of the others are known.
+   * @param bucketCount the number of buckets of the summary.
+   * @return the {@link KeySummary} of the keys in the index.
+   * @throws StoreException
+   */
+  public KeySummary getKeySummary(int bucketCount)
+      throws StoreException {
+    keySummaryBucketCount = bucketCount;
+    KeySummary keySummary = new KeySummary(bucketCount);
+    for (IndexSegment segment : indexes.values()) {
+      KeySummary segmentKeySummary = sealedSegmentKeySummaries.get(segment.getStartOffset());
+      if (segmentKeySummary == null || segmentKeySummary.getBucketCount() != bucketCount) {
+        // a segment that is mapped before its entries are read cannot change while they are
+        boolean sealed = segment.isMapped();
+        segmentKeySummary = summarizeSegment(segment, bucketCount);
+        if (sealed) {
+          sealedSegmentKeySummaries.put(segment.getStartOffset(), segmentKeySummary);
+        }
+      }
+      keySummary.add(segmentKeySummary);
+    }
+    return keySummary;
+  }
+
+  /**
+   * Summarizes the keys that first appear in the given index segment.
+   * @param segment the index segment to summarize.
+   * @param bucketCount the number of buckets of the summary.
+   * @return the {@link KeySummary} of the keys that first appear in the segment.
+   * @throws StoreException if the entries of the segment could not be read.
+   */
+  private KeySummary summarizeSegment(IndexSegment segment, int bucketCount)
+      throws StoreException {
+    KeySummary segmentKeySummary = new KeySummary(bucketCount);
+    Collection<IndexSegment> earlierSegments =
+        indexes.headMap(segment.getStartOffset(), false).descendingMap().values();
+    for (MessageInfo entry : getAllEntries(segment)) {
+      boolean firstAppearance = true;
+      // a key is put only once, so only the delete of a key can follow an entry of the key in an earlier segment
+      if (entry.isDeleted()) {
+        for (IndexSegment earlierSegment : earlierSegments) {
+          if (earlierSegment.find(entry.getStoreKey()) != null) {
+            firstAppearance = false;
+            break;
+          }
+        }
+      }
+      if (firstAppearance) {
+        segmentKeySummary.add(entry.getStoreKey());
+      }
+    }
+    return segmentKeySummary;
+  }
+
+  /**
+   * Caches the key summary of a mapped index segment for the bucket count that key summaries were last requested for,
+   * so that the next request does not have to read the segment. Nothing is cached if no summary was requested yet. A
+   * segment that cannot be summarized is left to be summarized by the next request.
+   * @param segment the mapped index segment.
+   */
+  private void cacheKeySummary(IndexSegment segment) {
+    int bucketCount = keySummaryBucketCount;
+    if (bucketCount > 0) {
+      try {
+        sealedSegmentKeySummaries.put(segment.getStartOffset(), summarizeSegment(segment, bucketCount));
+      } catch (StoreException e) {
+        logger.error("Index : " + dataDir + " could not summarize the keys of the segment with start offset " +
+            segment.getStartOffset(), e);
+      }
+    }
+  }
+
+  /**
+   * Returns the latest state of every key in the index that falls into one of the given buckets of a
+   * {@link KeySummary}.
+   * @param bucketCount the number of buckets of the summary.
+   * @param buckets the buckets whose keys are needed.
+   * @return a {@link MessageInfo} with the latest state of each key in the buckets.
+   * @throws StoreException
+   */
+  public List<MessageInfo> getEntriesInBuckets(int bucketCount, Set<Integer> buckets)
+      throws StoreException {
+    Map<StoreKey, MessageInfo> latestEntries = new HashMap<StoreKey, MessageInfo>();
+    for (IndexSegment segment : indexes.values()) {
+      for (MessageInfo entry : getAllEntries(segment)) {
+        if (buckets.contains(KeySummary.getBucket(entry.getStoreKey(), bucketCount))) {
+          // segments are visited in log order, so the entry of a later segment replaces that of an earlier one
+          latestEntries.put(entry.getStoreKey(), entry);
+        }
+      }
+    }
+    return new ArrayList<MessageInfo>(latestEntries.values());
+  }
+
+  /**
+   * @param segment an index segment.
+   * @return all the entries in the index segment.
+   * @throws StoreException if the entries could not be read.
+   */
+  private List<MessageInfo> getAllEntries(IndexSegment segment)
+      throws StoreException {
+    List<MessageInfo> entries = new ArrayList<MessageInfo>();
+    try {
+      segment.getEntriesSince(null, new FindEntriesCondition(Long.MAX_VALUE), entries, new AtomicLong(0));
+    } catch (IOException e) {
+      throw new StoreException("IOError when reading entries for index " + dataDir, e, StoreErrorCodes.IOError);
+    }
+    return entries;
+  }
+
   /**
    * Finds all the entries from the given start token(inclusive). The token defines the start position in the index from
    * where entries needs to be fetched
@@ -1022,18 +1249,27 @@ public class PersistentIndex {
           long lastOffset = lastEntry.getKey();
           IndexSegment prevInfo = indexes.size() > 1 ? indexes.lowerEntry(lastOffset).getValue() : null;
           long currentLogEndPointer = log.getLogEndOffset();
+          List<IndexSegment> segmentsToMap = new ArrayList<IndexSegment>();
           while (prevInfo != null && !prevInfo.isMapped()) {
             if (prevInfo.getEndOffset() > currentLogEndPointer) {
               String message = "The read only index cannot have a file end pointer " + prevInfo.getEndOffset() +
                   " greater than the log end offset " + currentLogEndPointer;
               throw new StoreException(message, StoreErrorCodes.IOError);
             }
-            logger.trace("Index : " + dataDir + " writing prev index with end offset " + prevInfo.getEndOffset());
-            prevInfo.writeIndexToFile(prevInfo.getEndOffset());
-            prevInfo.map(true);
+            segmentsToMap.add(prevInfo);
             Map.Entry<Long, IndexSegment> infoEntry = indexes.lowerEntry(prevInfo.getStartOffset());
             prevInfo = infoEntry != null ? infoEntry.getValue() : null;
           }
+          // segments are mapped and added to the segment filter in the order of their start offsets, so that if one of
+          // them fails, the ones before it are in the filter and the ones after it are mapped by the next write
+          for (int i = segmentsToMap.size() - 1; i >= 0; i--) {
+            IndexSegment segment = segmentsToMap.get(i);
+            logger.trace("Index : " + dataDir + " writing prev index with end offset " + segment.getEndOffset());
+            segment.writeIndexToFile(segment.getEndOffset());
+            segment.map(true);
+            addToSegmentFilter(segment);
+            cacheKeySummary(segment);
+          }
           currentInfo.writeIndexToFile(currentIndexEndOffsetBeforeFlush);
         }
       } catch (IOException e) {
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import com.github.ambry.utils.MurmurHash;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * A bit sliced bloom filter over the index segments of a store. Every segment has one bloom filter of the same size,
+ * and bit {@code i} of all the filters is kept together in a slice with one bit per segment. A lookup ANDs the slices
+ * of the bits of a key, which tells in a single pass which segments may contain the key, so a key that is in none of
+ * them costs a fixed number of hashes and about one word per 64 segments in each slice instead of one filter probe
+ * per segment.
+ * <p/>
+ * Segments are added in the order of their start offsets, so that the segments in the filter are always the oldest
+ * segments of the store and all the segments after {@link #getLastSegmentStartOffset()} have to be searched directly.
+ * The filter is thread safe.
+ */
+class SegmentKeyFilter {
+  private static final long Hash_Seed = 0;
+  private static final int Initial_Words_Per_Slice = 1;
+
+  private final int bitCount;
+  private final int hashCount;
+  private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+  // bit i of the filter of the segment in slot s is bit (s % 64) of slices[i * wordsPerSlice + s / 64]
+  private long[] slices;
+  private int wordsPerSlice;
+  private long[] segmentStartOffsets;
+  private int segmentCount = 0;
+
+  /**
+   * Creates an empty filter.
+   * @param maxKeysPerSegment the most keys a segment holds.
+   * @param maxFalsePosProbability the false positive rate the filter of a segment should not exceed.
+   */
+  SegmentKeyFilter(int maxKeysPerSegment, double maxFalsePosProbability) {
+    if (maxKeysPerSegment <= 0) {
+      throw new IllegalArgumentException("Invalid number of keys per segment: " + maxKeysPerSegment);
+    }
+    if (maxFalsePosProbability <= 0 || maxFalsePosProbability >= 1) {
+      throw new IllegalArgumentException("Invalid false positive probability: " + maxFalsePosProbability);
+    }
+    double bits = -maxKeysPerSegment * Math.log(maxFalsePosProbability) / (Math.log(2) * Math.log(2));
+    if (bits > Integer.MAX_VALUE / Initial_Words_Per_Slice) {
+      throw new UnsupportedOperationException(
+          "Cannot provide a segment filter for " + maxKeysPerSegment + " keys at " + maxFalsePosProbability);
+    }
+    bitCount = (int) Math.ceil(bits);
+    hashCount = Math.max(1, (int) Math.round((double) bitCount / maxKeysPerSegment * Math.log(2)));
+    wordsPerSlice = Initial_Words_Per_Slice;
+    slices = new long[bitCount * wordsPerSlice];
+    segmentStartOffsets = new long[wordsPerSlice * Long.SIZE];
+  }
+
+  /**
+   * Adds the keys of a segment to the filter. A segment can only be added after all the segments before it.
+   * @param startOffset the start offset of the segment.
+   * @param keys the keys of the segment.
+   * @throws IllegalArgumentException if a segment that does not start after the last segment in the filter is added.
+   */
+  void addSegment(long startOffset, List<StoreKey> keys) {
+    rwLock.writeLock().lock();
+    try {
+      if (segmentCount > 0 && startOffset <= segmentStartOffsets[segmentCount - 1]) {
+        throw new IllegalArgumentException(
+            "Segment with start offset " + startOffset + " added after segment with start offset "
+                + segmentStartOffsets[segmentCount - 1]);
+      }
+      if (segmentCount == wordsPerSlice * Long.SIZE) {
+        grow();
+      }
+      int slot = segmentCount;
+      int word = slot / Long.SIZE;
+      long mask = 1L << (slot % Long.SIZE);
+      for (StoreKey key : keys) {
+        long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+          slices[getBit(hash, i) * wordsPerSlice + word] |= mask;
+        }
+      }
+      segmentStartOffsets[slot] = startOffset;
+      segmentCount++;
+    } finally {
+      rwLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return the start offset of the last segment in the filter, or -1 if there is none.
+   */
+  long getLastSegmentStartOffset() {
+    rwLock.readLock().lock();
+    try {
+      return segmentCount > 0 ? segmentStartOffsets[segmentCount - 1] : -1;
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the segments of the filter that may contain a key. Segments that are not in the filter are not returned.
+   * @param key the key to look up.
+   * @return the start offsets of the segments that may contain the key, latest first.
+   */
+  List<Long> getCandidateSegments(StoreKey key) {
+    long hash = hash(key);
+    rwLock.readLock().lock();
+    try {
+      int words = (segmentCount + Long.SIZE - 1) / Long.SIZE;
+      if (words == 0) {
+        return Collections.emptyList();
+      }
+      long[] candidates = new long[words];
+      System.arraycopy(slices, getBit(hash, 0) * wordsPerSlice, candidates, 0, words);
+      for (int i = 1; i < hashCount; i++) {
+        int sliceStart = getBit(hash, i) * wordsPerSlice;
+        long any = 0;
+        for (int w = 0; w < words; w++) {
+          candidates[w] &= slices[sliceStart + w];
+          any |= candidates[w];
+        }
+        if (any == 0) {
+          return Collections.emptyList();
+        }
+      }
+      List<Long> startOffsets = new ArrayList<Long>();
+      for (int w = words - 1; w >= 0; w--) {
+        long word = candidates[w];
+        while (word != 0) {
+          int bit = Long.SIZE - 1 - Long.numberOfLeadingZeros(word);
+          startOffsets.add(segmentStartOffsets[w * Long.SIZE + bit]);
+          word &= ~(1L << bit);
+        }
+      }
+      return startOffsets;
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Checks whether a segment may contain a key. A segment that is not in the filter may always contain the key.
+   * @param key the key to look up.
+   * @param startOffset the start offset of the segment.
+   * @return false if the segment is in the filter and does not contain the key, true otherwise.
+   */
+  boolean mightContain(StoreKey key, long startOffset) {
+    long hash = hash(key);
+    rwLock.readLock().lock();
+    try {
+      int slot = findSlot(startOffset);
+      if (slot < 0) {
+        return true;
+      }
+      int word = slot / Long.SIZE;
+      long mask = 1L << (slot % Long.SIZE);
+      for (int i = 0; i < hashCount; i++) {
+        if ((slices[getBit(hash, i) * wordsPerSlice + word] & mask) == 0) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the number of segments in the filter.
+   */
+  int getSegmentCount() {
+    rwLock.readLock().lock();
+    try {
+      return segmentCount;
+    } finally {
+      rwLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Doubles the number of segments every slice can hold. Must be called with the write lock held.
+   */
+  private void grow() {
+    long newWordsPerSlice = 2L * wordsPerSlice;
+    if (newWordsPerSlice * bitCount > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Segment filter cannot hold more than " + segmentCount + " segments");
+    }
+    long[] newSlices = new long[(int) newWordsPerSlice * bitCount];
+    for (int i = 0; i < bitCount; i++) {
+      System.arraycopy(slices, i * wordsPerSlice, newSlices, i * (int) newWordsPerSlice, wordsPerSlice);
+    }
+    long[] newSegmentStartOffsets = new long[(int) newWordsPerSlice * Long.SIZE];
+    System.arraycopy(segmentStartOffsets, 0, newSegmentStartOffsets, 0, segmentCount);
+    slices = newSlices;
+    segmentStartOffsets = newSegmentStartOffsets;
+    wordsPerSlice = (int) newWordsPerSlice;
+  }
+
+  /**
+   * Finds the slot of a segment with a binary search, since slots are in the order of start offsets. Must be called
+   * with a lock held.
+   * @return the slot of the segment, or a negative number if the segment is not in the filter.
+   */
+  private int findSlot(long startOffset) {
+    int low = 0;
+    int high = segmentCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (segmentStartOffsets[mid] < startOffset) {
+        low = mid + 1;
+      } else if (segmentStartOffsets[mid] > startOffset) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private static long hash(StoreKey key) {
+    byte[] bytes = key.toBytes();
+    return MurmurHash.hash2_64(ByteBuffer.wrap(bytes), 0, bytes.length, Hash_Seed);
+  }
+
+  /**
+   * Derives the {@code i}th bit of a key from its hash by double hashing.
+   */
+  private int getBit(long hash, int i) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    return (int) (((h1 + i * h2) & 0xffffffffL) % bitCount);
+  }
+}
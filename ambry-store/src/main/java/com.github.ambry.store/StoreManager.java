@@ -39,6 +39,7 @@ public class StoreManager {
   private MetricRegistry registry;
   private List<ReplicaId> replicas;
   private ConcurrentMap<PartitionId, Store> stores;
+  private ConcurrentMap<String, DiskMetrics> diskMetrics;
   private Logger logger = LoggerFactory.getLogger(getClass());
   private StoreKeyFactory factory;
   private MessageStoreRecovery recovery;
@@ -53,6 +54,7 @@ public class StoreManager {
     this.registry = registry;
     this.replicas = replicas;
     this.stores = new ConcurrentHashMap<PartitionId, Store>();
+    this.diskMetrics = new ConcurrentHashMap<String, DiskMetrics>();
     this.factory = factory;
     this.recovery = recovery;
     this.hardDelete = hardDelete;
@@ -83,9 +85,13 @@ public class StoreManager {
       }
       // Partition id is used as the id of a store.
       String storeId = replica.getPartitionId().toString();
-      Store store =
-          new BlobStore(storeId, config, scheduler, registry, replica.getReplicaPath(), replica.getCapacityInBytes(),
-              factory, recovery, hardDelete, time);
+      DiskMetrics disk = diskMetrics.get(replica.getMountPath());
+      if (disk == null) {
+        disk = new DiskMetrics(replica.getMountPath(), registry);
+        diskMetrics.put(replica.getMountPath(), disk);
+      }
+      Store store = new BlobStore(storeId, config, scheduler, registry, disk, replica.getReplicaPath(),
+          replica.getCapacityInBytes(), factory, recovery, hardDelete, time);
       store.start();
       stores.put(replica.getPartitionId(), store);
     }
@@ -96,6 +102,15 @@ public class StoreManager {
     return stores.get(id);
   }
 
+  /**
+   * @param mountPath the mount path of a disk.
+   * @return the {@link DiskMetrics} of the disk, with the latency, throughput and outstanding I/O of all the stores on
+   *         it, or {@code null} if there are no stores on the disk.
+   */
+  public DiskMetrics getDiskMetrics(String mountPath) {
+    return diskMetrics.get(mountPath);
+  }
+
   public void shutdown()
       throws StoreException {
     logger.info("Shutting down store manager");
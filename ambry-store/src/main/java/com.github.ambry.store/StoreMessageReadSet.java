@@ -13,6 +13,7 @@
  */
 package com.github.ambry.store;
 
+import com.codahale.metrics.Timer;
 import java.io.DataInputStream;
 import java.nio.ByteBuffer;
 import org.slf4j.Logger;
@@ -114,10 +115,11 @@ class StoreMessageReadSet implements MessageReadSet {
   private final List<BlobReadOptions> readOptions;
   private final FileChannel fileChannel;
   private final File file;
+  private final DiskMetrics diskMetrics;
   private Logger logger = LoggerFactory.getLogger(getClass());
 
   public StoreMessageReadSet(File file, FileChannel fileChannel, List<BlobReadOptions> readOptions,
-      long fileEndPosition)
+      long fileEndPosition, DiskMetrics diskMetrics)
       throws IOException {
 
     Collections.sort(readOptions);
@@ -130,6 +132,7 @@ class StoreMessageReadSet implements MessageReadSet {
     this.readOptions = readOptions;
     this.fileChannel = fileChannel;
     this.file = file;
+    this.diskMetrics = diskMetrics;
   }
 
   @Override
@@ -141,7 +144,16 @@ class StoreMessageReadSet implements MessageReadSet {
     long startOffset = readOptions.get(index).getOffset() + relativeOffset;
     long sizeToRead = Math.min(maxSize, readOptions.get(index).getSize() - relativeOffset);
     logger.trace("Blob Message Read Set position {} count {}", startOffset, sizeToRead);
-    long written = fileChannel.transferTo(startOffset, sizeToRead, channel);
+    long written;
+    diskMetrics.outstandingReads.inc();
+    Timer.Context context = diskMetrics.logReadTime.time();
+    try {
+      written = fileChannel.transferTo(startOffset, sizeToRead, channel);
+    } finally {
+      context.stop();
+      diskMetrics.outstandingReads.dec();
+    }
+    diskMetrics.logReadBytes.mark(written);
     logger.trace("Written {} bytes to the write channel from the file channel : {}", written, file.getAbsolutePath());
     return written;
   }
@@ -18,6 +18,7 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.github.ambry.metrics.LatencyMetrics;
 
 
 /**
@@ -31,6 +32,8 @@ public class StoreMetrics {
   public final Timer findEntriesSinceResponse;
   public final Timer findMissingKeysResponse;
   public final Timer isKeyDeletedResponse;
+  public final Timer getKeySummaryResponse;
+  public final Timer getEntriesInBucketsResponse;
   public final Timer storeStartTime;
   public final Counter overflowWriteError;
   public final Counter overflowReadError;
@@ -42,6 +45,8 @@ public class StoreMetrics {
   public final Counter nonzeroMessageRecovery;
   public final Counter bloomPositiveCount;
   public final Counter bloomFalsePositiveCount;
+  public final Counter segmentFilterNegativeCount;
+  public final Histogram segmentFilterCandidateSegmentCount;
   public final Counter keySizeMismatchCount;
   public final Counter hardDeleteDoneCount;
   public final Counter hardDeleteFailedCount;
@@ -54,25 +59,46 @@ public class StoreMetrics {
   public final Histogram segmentSizeForExists;
   public Gauge<Double> percentageUsedCapacity;
   public Gauge<Double> percentageHardDeleteCompleted;
+  public final DiskMetrics diskMetrics;
   private final MetricRegistry registry;
   private final String name;
 
+  /**
+   * Creates the metrics of a store whose disk is not known. The I/O of the store is recorded as if the store had a
+   * disk of its own.
+   * @param storeId the id of the store.
+   * @param registry the {@link MetricRegistry} to register the metrics with.
+   */
   public StoreMetrics(String storeId, MetricRegistry registry) {
+    this(storeId, new DiskMetrics(storeId, registry), registry);
+  }
+
+  /**
+   * Creates the metrics of a store.
+   * @param storeId the id of the store.
+   * @param diskMetrics the {@link DiskMetrics} of the disk that the store lives on.
+   * @param registry the {@link MetricRegistry} to register the metrics with.
+   */
+  public StoreMetrics(String storeId, DiskMetrics diskMetrics, MetricRegistry registry) {
     this.registry = registry;
+    this.diskMetrics = diskMetrics;
     name = storeId + ".";
-    getResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreGetResponse"));
-    putResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "StorePutResponse"));
-    deleteResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreDeleteResponse"));
+    getResponse = LatencyMetrics.timer(registry, MetricRegistry.name(BlobStore.class, name + "StoreGetResponse"));
+    putResponse = LatencyMetrics.timer(registry, MetricRegistry.name(BlobStore.class, name + "StorePutResponse"));
+    deleteResponse = LatencyMetrics.timer(registry, MetricRegistry.name(BlobStore.class, name + "StoreDeleteResponse"));
     findEntriesSinceResponse =
         registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreFindEntriesSinceResponse"));
     findMissingKeysResponse =
         registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreFindMissingKeyResponse"));
     isKeyDeletedResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "IsKeyDeletedResponse"));
+    getKeySummaryResponse = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreGetKeySummaryResponse"));
+    getEntriesInBucketsResponse =
+        registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreGetEntriesInBucketsResponse"));
     storeStartTime = registry.timer(MetricRegistry.name(BlobStore.class, name + "StoreStartTime"));
     overflowWriteError = registry.counter(MetricRegistry.name(Log.class, name + "OverflowWriteError"));
     overflowReadError = registry.counter(MetricRegistry.name(Log.class, name + "OverflowReadError"));
     recoveryTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexRecoveryTime"));
-    findTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexFindTime"));
+    findTime = LatencyMetrics.timer(registry, MetricRegistry.name(PersistentIndex.class, name + "IndexFindTime"));
     indexFlushTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "IndexFlushTime"));
     cleanupTokenFlushTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "CleanupTokenFlushTime"));
     hardDeleteTime = registry.timer(MetricRegistry.name(PersistentIndex.class, name + "HardDeleteTime"));
@@ -81,6 +107,10 @@ public class StoreMetrics {
     bloomPositiveCount = registry.counter(MetricRegistry.name(IndexSegment.class, name + "BloomPositiveCount"));
     bloomFalsePositiveCount =
         registry.counter(MetricRegistry.name(IndexSegment.class, name + "BloomFalsePositiveCount"));
+    segmentFilterNegativeCount =
+        registry.counter(MetricRegistry.name(PersistentIndex.class, name + "SegmentFilterNegativeCount"));
+    segmentFilterCandidateSegmentCount =
+        registry.histogram(MetricRegistry.name(PersistentIndex.class, name + "SegmentFilterCandidateSegmentCount"));
     keySizeMismatchCount = registry.counter(MetricRegistry.name(IndexSegment.class, name + "KeySizeMismatchCount"));
     hardDeleteDoneCount = registry.counter(MetricRegistry.name(PersistentIndex.class, name + "HardDeleteDoneCount"));
     hardDeleteFailedCount =
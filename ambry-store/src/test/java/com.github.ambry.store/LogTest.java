@@ -224,4 +224,37 @@ public class LogTest {
       Assert.assertEquals(true, false);
     }
   }
+
+  /**
+   * Tests that the I/O of a log is recorded in the metrics of its disk.
+   * @throws IOException
+   */
+  @Test
+  public void diskMetricsTest()
+      throws IOException {
+    File tempFile = tempFile();
+    RandomAccessFile randomFile = new RandomAccessFile(tempFile.getParent() + File.separator + "log_current", "rw");
+    // preallocate file
+    randomFile.setLength(5000);
+    File logFile = new File(tempFile.getParent(), "log_current");
+    logFile.deleteOnExit();
+    MetricRegistry registry = new MetricRegistry();
+    DiskMetrics diskMetrics = new DiskMetrics("disk", registry);
+    Log logTest = new Log(tempFile.getParent(), 5000, new StoreMetrics("store", diskMetrics, registry));
+    byte[] testbuf = new byte[1000];
+    new Random().nextBytes(testbuf);
+    logTest.appendFrom(ByteBuffer.wrap(testbuf));
+    logTest.appendFrom(Channels.newChannel(new ByteBufferInputStream(ByteBuffer.wrap(testbuf))), 1000);
+    logTest.flush();
+    logTest.readInto(ByteBuffer.allocate(500), 0);
+    Assert.assertEquals(2, diskMetrics.logWriteTime.getCount());
+    Assert.assertEquals(2000, diskMetrics.logWriteBytes.getCount());
+    Assert.assertEquals(1, diskMetrics.logFlushTime.getCount());
+    Assert.assertEquals(1, diskMetrics.logReadTime.getCount());
+    Assert.assertEquals(500, diskMetrics.logReadBytes.getCount());
+    Assert.assertEquals(0, diskMetrics.getOutstandingIOCount());
+    // the metrics of another store on the same disk are the same metrics
+    Assert.assertSame(diskMetrics.logWriteBytes, new DiskMetrics("disk", registry).logWriteBytes);
+    logTest.close();
+  }
 }
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -64,6 +65,9 @@ public class PersistentIndexTest {
   }
 
   class MockIndex extends PersistentIndex {
+    // the start offset of the segment whose keys cannot be read, if any
+    Long unreadableSegmentStartOffset = null;
+
     public MockIndex(String datadir, Scheduler scheduler, Log log, StoreConfig config, StoreKeyFactory factory,
         MessageStoreHardDelete messageStoreHardDelete, Time time)
         throws StoreException {
@@ -131,6 +135,15 @@ public class PersistentIndexTest {
     public IndexSegment getLastSegment() {
       return super.indexes.lastEntry().getValue();
     }
+
+    @Override
+    List<StoreKey> getSegmentKeys(IndexSegment segment)
+        throws StoreException {
+      if (unreadableSegmentStartOffset != null && unreadableSegmentStartOffset == segment.getStartOffset()) {
+        throw new StoreException("Cannot read segment " + segment.getStartOffset(), StoreErrorCodes.IOError);
+      }
+      return super.getSegmentKeys(segment);
+    }
   }
 
   @Test
@@ -152,8 +165,9 @@ public class PersistentIndexTest {
       map = new MockClusterMap();
       StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
       StoreConfig config = new StoreConfig(new VerifiableProperties(new Properties()));
+      StoreMetrics segmentMetrics = new StoreMetrics(tempFile().getParent(), new MetricRegistry());
       IndexSegment info = new IndexSegment(tempFile().getParent(), 0, factory, blobId1.sizeInBytes(),
-          IndexValue.Index_Value_Size_In_Bytes, config, new StoreMetrics(tempFile().getParent(), new MetricRegistry()));
+          IndexValue.Index_Value_Size_In_Bytes, config, segmentMetrics);
       IndexValue value = new IndexValue(1000, 0, (byte) 0);
       info.addEntry(new IndexEntry(blobId1, value), 1000);
       value = new IndexValue(1000, 1000, (byte) 0);
@@ -206,6 +220,8 @@ public class PersistentIndexTest {
       Assert.assertEquals(entries.get(4).getStoreKey(), blobId5);
 
       info.writeIndexToFile(9000);
+      Assert.assertEquals(1, segmentMetrics.diskMetrics.indexSegmentPersistTime.getCount());
+      Assert.assertEquals(0, segmentMetrics.diskMetrics.getOutstandingIOCount());
       StoreMetrics metrics = new StoreMetrics(info.getFile().getAbsolutePath(), new MetricRegistry());
       InMemoryJournal journal = new InMemoryJournal("test", 5, 5);
       IndexSegment infonew = new IndexSegment(info.getFile(), false, factory, config, metrics, journal);
@@ -227,6 +243,8 @@ public class PersistentIndexTest {
       Assert.assertEquals(infonew.find(blobId8).getOffset(), 7000);
 
       info.map(false);
+      Assert.assertEquals(1, segmentMetrics.diskMetrics.indexSegmentMapTime.getCount());
+      Assert.assertEquals(0, segmentMetrics.diskMetrics.getOutstandingIOCount());
       Assert.assertEquals(info.find(blobId1).getSize(), 1000);
       Assert.assertEquals(info.find(blobId1).getOffset(), 0);
       Assert.assertEquals(info.find(blobId2).getSize(), 1000);
@@ -711,6 +729,61 @@ public class PersistentIndexTest {
     }
   }
 
+  @Test
+  public void testKeySummary()
+      throws IOException {
+    MockClusterMap map = null;
+    try {
+      String logFile = tempFile().getParent();
+      File indexFile = new File(logFile);
+      for (File c : indexFile.listFiles()) {
+        c.delete();
+      }
+      Scheduler scheduler = new Scheduler(1, false);
+      scheduler.startup();
+      Log log = new Log(logFile, 10000, new StoreMetrics(logFile, new MetricRegistry()));
+      StoreConfig config = new StoreConfig(new VerifiableProperties(new Properties()));
+      map = new MockClusterMap();
+      StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+      MockIndex index = new MockIndex(logFile, scheduler, log, config, factory);
+      MockId blobId1 = new MockId("id1");
+      MockId blobId2 = new MockId("id2");
+      MockId blobId3 = new MockId("id3");
+      ArrayList<IndexEntry> list = new ArrayList<IndexEntry>();
+      list.add(new IndexEntry(blobId1, new IndexValue(100, 0)));
+      list.add(new IndexEntry(blobId2, new IndexValue(200, 100)));
+      list.add(new IndexEntry(blobId3, new IndexValue(300, 300)));
+      index.addToIndex(list, new FileSpan(0, 600));
+
+      KeySummary expectedKeySummary = new KeySummary(4);
+      expectedKeySummary.add(blobId1);
+      expectedKeySummary.add(blobId2);
+      KeySummary keySummary = index.getKeySummary(4);
+      Assert.assertEquals("Only the bucket of the missing key should mismatch",
+          Arrays.asList(KeySummary.getBucket(blobId3, 4)), expectedKeySummary.getMismatchedBuckets(keySummary));
+      expectedKeySummary.add(blobId3);
+      Assert.assertEquals("Summaries should match", 0, expectedKeySummary.getMismatchedBuckets(keySummary).size());
+
+      Set<Integer> buckets = new HashSet<Integer>();
+      buckets.add(KeySummary.getBucket(blobId1, 4));
+      List<MessageInfo> entries = index.getEntriesInBuckets(4, buckets);
+      boolean blobId1Found = false;
+      for (MessageInfo entry : entries) {
+        Assert.assertTrue("Entry should be in the requested bucket",
+            buckets.contains(KeySummary.getBucket(entry.getStoreKey(), 4)));
+        blobId1Found |= entry.getStoreKey().equals(blobId1);
+      }
+      Assert.assertTrue("Key should be found in its bucket", blobId1Found);
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.assertTrue(false);
+    } finally {
+      if (map != null) {
+        map.cleanup();
+      }
+    }
+  }
+
   //@Test
   public void testRollingIndex()
       throws IOException {
@@ -846,6 +919,166 @@ public class PersistentIndexTest {
     }
   }
 
+  /**
+   * Tests that keys are found in every segment with the segment filter enabled, including after the keys of one of
+   * the segments that are mapped together could not be added to the filter.
+   * @throws Exception
+   */
+  @Test
+  public void testSegmentFilterWithUnreadableSegment()
+      throws Exception {
+    String logFile = tempFile().getParent();
+    File indexFile = new File(logFile);
+    for (File c : indexFile.listFiles()) {
+      c.delete();
+    }
+    Scheduler scheduler = new Scheduler(1, false);
+    scheduler.startup();
+    int entryCount = 30;
+    int entrySize = 100;
+    Log log = new Log(logFile, 2 * entryCount * entrySize, new StoreMetrics(logFile, new MetricRegistry()));
+    Properties props = new Properties();
+    props.setProperty("store.index.max.memory.size.bytes", "200");
+    props.setProperty("store.index.segment.filter.enabled", "true");
+    props.setProperty("store.data.flush.delay.seconds", "3600");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    MockIndex index = new MockIndex(logFile, scheduler, log, config, factory);
+    log.appendFrom(ByteBuffer.allocate(2 * entryCount * entrySize));
+    try {
+      List<MockId> ids = new ArrayList<MockId>();
+      for (int i = 0; i < entryCount; i++) {
+        addEntry(index, ids, entrySize);
+      }
+      Assert.assertTrue("There should be several segments to map", index.indexes.size() > 3);
+      // the second of the segments mapped by the persistor cannot be added to the filter
+      index.unreadableSegmentStartOffset = index.indexes.higherKey(index.indexes.firstKey());
+      index.close();
+      Assert.assertTrue("Segments should have been mapped", index.indexes.firstEntry().getValue().isMapped());
+      // segments mapped afterwards must not hide the segments that are not in the filter
+      for (int i = 0; i < entryCount; i++) {
+        addEntry(index, ids, entrySize);
+      }
+      index.close();
+      for (int i = 0; i < ids.size(); i++) {
+        IndexValue value = index.findKey(ids.get(i));
+        Assert.assertNotNull("Key " + ids.get(i) + " should have been found", value);
+        Assert.assertEquals("Unexpected offset of key " + ids.get(i), i * entrySize, value.getOffset());
+      }
+      Assert.assertNull("Key should not have been found", index.findKey(new MockId("missing")));
+    } finally {
+      scheduler.shutdown();
+      log.close();
+    }
+  }
+
+  /**
+   * Tests that keys whose entries are spread over several segments, some of them mapped and summarized by the
+   * persistor, are counted once in the key summary and that their latest state is returned for their bucket.
+   * @throws Exception
+   */
+  @Test
+  public void testKeySummaryAcrossSegments()
+      throws Exception {
+    String logFile = tempFile().getParent();
+    File indexFile = new File(logFile);
+    for (File c : indexFile.listFiles()) {
+      c.delete();
+    }
+    Scheduler scheduler = new Scheduler(1, false);
+    scheduler.startup();
+    int putCount = 20;
+    int deleteCount = 5;
+    int entrySize = 100;
+    int bucketCount = 8;
+    long logSize = (2 * putCount + deleteCount) * entrySize;
+    Log log = new Log(logFile, logSize, new StoreMetrics(logFile, new MetricRegistry()));
+    Properties props = new Properties();
+    props.setProperty("store.index.max.memory.size.bytes", "200");
+    props.setProperty("store.data.flush.delay.seconds", "3600");
+    StoreConfig config = new StoreConfig(new VerifiableProperties(props));
+    StoreKeyFactory factory = Utils.getObj("com.github.ambry.store.MockIdFactory");
+    MockIndex index = new MockIndex(logFile, scheduler, log, config, factory);
+    log.appendFrom(ByteBuffer.allocate((int) logSize));
+    try {
+      List<MockId> ids = new ArrayList<MockId>();
+      for (int i = 0; i < putCount; i++) {
+        addEntry(index, ids, entrySize);
+      }
+      Assert.assertTrue("There should be several segments", index.indexes.size() > 3);
+      assertKeySummary(index, ids, bucketCount);
+
+      // deletes of keys put in the earliest segments go to the latest segments
+      long offset = putCount * entrySize;
+      for (int i = 0; i < deleteCount; i++) {
+        index.markAsDeleted(ids.get(i), new FileSpan(offset, offset + entrySize));
+        offset += entrySize;
+      }
+      // the persistor maps the segments and summarizes them for the bucket count of the last summary
+      index.close();
+      Assert.assertTrue("Segments should have been mapped", index.indexes.firstEntry().getValue().isMapped());
+      for (int i = 0; i < putCount; i++) {
+        MockId id = new MockId(String.format("id%03d", ids.size()));
+        index.addToIndex(new IndexEntry(id, new IndexValue(entrySize, offset)),
+            new FileSpan(offset, offset + entrySize));
+        ids.add(id);
+        offset += entrySize;
+      }
+      assertKeySummary(index, ids, bucketCount);
+      index.close();
+      assertKeySummary(index, ids, bucketCount);
+      assertKeySummary(index, ids, bucketCount / 2);
+
+      Set<Integer> buckets = new HashSet<Integer>();
+      for (int i = 0; i < bucketCount; i++) {
+        buckets.add(i);
+      }
+      List<MessageInfo> entries = index.getEntriesInBuckets(bucketCount, buckets);
+      Assert.assertEquals("There should be one entry for every key", ids.size(), entries.size());
+      for (MessageInfo entry : entries) {
+        int idIndex = ids.indexOf(entry.getStoreKey());
+        Assert.assertTrue("Unexpected key " + entry.getStoreKey(), idIndex >= 0);
+        Assert.assertEquals("Unexpected state of key " + entry.getStoreKey(), idIndex < deleteCount,
+            entry.isDeleted());
+      }
+    } finally {
+      scheduler.shutdown();
+      log.close();
+    }
+  }
+
+  /**
+   * Checks that the key summary of the index counts every one of the given keys once.
+   * @param index the index to summarize.
+   * @param ids all the keys in the index.
+   * @param bucketCount the number of buckets of the summary.
+   * @throws StoreException
+   */
+  private void assertKeySummary(MockIndex index, List<MockId> ids, int bucketCount)
+      throws StoreException {
+    KeySummary expectedKeySummary = new KeySummary(bucketCount);
+    for (MockId id : ids) {
+      expectedKeySummary.add(id);
+    }
+    Assert.assertEquals("Summaries should match", 0,
+        expectedKeySummary.getMismatchedBuckets(index.getKeySummary(bucketCount)).size());
+  }
+
+  /**
+   * Adds an entry for a new key at the end of the index.
+   * @param index the index to add the entry to.
+   * @param ids the keys added so far, to which the new key is added.
+   * @param entrySize the size of the entry.
+   * @throws StoreException
+   */
+  private void addEntry(MockIndex index, List<MockId> ids, int entrySize)
+      throws StoreException {
+    long offset = ids.size() * entrySize;
+    MockId id = new MockId(String.format("id%03d", ids.size()));
+    index.addToIndex(new IndexEntry(id, new IndexValue(entrySize, offset)), new FileSpan(offset, offset + entrySize));
+    ids.add(id);
+  }
+
   @Test
   public void testExistsWithFileSpan()
       throws IOException {
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class SegmentKeyFilterTest {
+
+  @Test
+  public void testCandidateSegments() {
+    SegmentKeyFilter filter = new SegmentKeyFilter(100, 0.001);
+    Assert.assertEquals(-1, filter.getLastSegmentStartOffset());
+    Assert.assertTrue(filter.getCandidateSegments(new MockId("id0_0")).isEmpty());
+    // enough segments for the slices to grow a few times
+    int segmentCount = 200;
+    for (int segment = 0; segment < segmentCount; segment++) {
+      filter.addSegment(segment * 1000, getKeys(segment, 100));
+    }
+    Assert.assertEquals(segmentCount, filter.getSegmentCount());
+    Assert.assertEquals((segmentCount - 1) * 1000, filter.getLastSegmentStartOffset());
+    for (int segment = 0; segment < segmentCount; segment++) {
+      for (StoreKey key : getKeys(segment, 100)) {
+        List<Long> candidates = filter.getCandidateSegments(key);
+        Assert.assertTrue("Segment of key " + key + " missing", candidates.contains(segment * 1000L));
+        List<Long> sorted = new ArrayList<Long>(candidates);
+        Collections.sort(sorted, Collections.reverseOrder());
+        Assert.assertEquals("Candidates should be latest first", sorted, candidates);
+        Assert.assertTrue(filter.mightContain(key, segment * 1000));
+      }
+    }
+    int falsePositives = 0;
+    for (StoreKey key : getKeys(segmentCount, 1000)) {
+      falsePositives += filter.getCandidateSegments(key).size();
+    }
+    // each of the 1000 absent keys is a false positive in each of the 200 segments with a probability of about 0.001,
+    // with some slack since the bits of a key are derived from a single hash
+    Assert.assertTrue("Too many false positives: " + falsePositives, falsePositives < 1000);
+    // segments that are not in the filter may always have a key
+    Assert.assertTrue(filter.mightContain(new MockId("absent"), segmentCount * 1000));
+  }
+
+  @Test
+  public void testSegmentsOutOfOrder() {
+    SegmentKeyFilter filter = new SegmentKeyFilter(10, 0.01);
+    filter.addSegment(1000, getKeys(0, 10));
+    try {
+      filter.addSegment(1000, getKeys(1, 10));
+      Assert.fail("Adding a segment that does not start after the last one should fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      filter.addSegment(0, getKeys(1, 10));
+      Assert.fail("Adding a segment that does not start after the last one should fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Assert.assertEquals(1, filter.getSegmentCount());
+  }
+
+  private static List<StoreKey> getKeys(int segment, int count) {
+    List<StoreKey> keys = new ArrayList<StoreKey>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(new MockId("id" + segment + "_" + i));
+    }
+    return keys;
+  }
+}
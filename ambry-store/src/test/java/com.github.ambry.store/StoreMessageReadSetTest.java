@@ -65,7 +65,8 @@ public class StoreMessageReadSetTest {
       int written = logTest.appendFrom(ByteBuffer.wrap(testbuf));
       Assert.assertEquals(written, 3000);
       MessageReadSet readSet =
-          new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, logTest.getLogEndOffset());
+          new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, logTest.getLogEndOffset(),
+              new DiskMetrics(tempFile.getParent(), new MetricRegistry()));
       Assert.assertEquals(readSet.count(), 3);
       Assert.assertEquals(readSet.sizeInBytes(0), 15);
       Assert.assertEquals(readSet.sizeInBytes(1), 100);
@@ -105,12 +106,14 @@ public class StoreMessageReadSetTest {
       options.add(1, readOptions2);
       options.add(2, readOptions3);
       try {
-        readSet = new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, 10);
+        readSet = new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, 10,
+            new DiskMetrics(tempFile.getParent(), new MetricRegistry()));
         Assert.assertTrue(false);
       } catch (IllegalArgumentException e) {
         Assert.assertTrue(true);
       }
-      readSet = new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, 1000);
+      readSet = new StoreMessageReadSet(tempFile, randomFile.getChannel(), options, 1000,
+          new DiskMetrics(tempFile.getParent(), new MetricRegistry()));
       try {
         readSet.sizeInBytes(4);
         Assert.assertTrue(false);
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.tools.perf;
+
+import com.github.ambry.clustermap.Partition;
+import com.github.ambry.clustermap.PartitionState;
+import com.github.ambry.commons.BlobId;
+import com.github.ambry.store.StoreKey;
+import com.github.ambry.utils.MurmurHash;
+import com.github.ambry.utils.SystemTime;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+
+/**
+ * Measures the cost of the blob id operations that an index lookup performs, for every blob id version: hashing the
+ * serialized id for the bloom filter check, looking it up in the sorted map of an in memory index segment and looking
+ * it up in a hash map, as the journal and replication do.
+ */
+public class BlobIdPerformance {
+
+  public static void main(String args[]) {
+    try {
+      OptionParser parser = new OptionParser();
+      ArgumentAcceptingOptionSpec<Integer> numberOfIdsOpt =
+          parser.accepts("numberOfIds", "The number of ids in the index").withRequiredArg()
+              .describedAs("number_of_ids").ofType(Integer.class).defaultsTo(100000);
+
+      ArgumentAcceptingOptionSpec<Integer> numberOfLookupsOpt =
+          parser.accepts("numberOfLookups", "The number of lookups to measure per id version").withRequiredArg()
+              .describedAs("number_of_lookups").ofType(Integer.class).defaultsTo(10000000);
+
+      ArgumentAcceptingOptionSpec<Integer> warmUpIterationsOpt =
+          parser.accepts("warmUpIterations", "The number of times lookups are run before they are measured")
+              .withRequiredArg().describedAs("warm_up_iterations").ofType(Integer.class).defaultsTo(3);
+
+      OptionSet options = parser.parse(args);
+      int numberOfIds = options.valueOf(numberOfIdsOpt);
+      int numberOfLookups = options.valueOf(numberOfLookupsOpt);
+      int warmUpIterations = options.valueOf(warmUpIterationsOpt);
+
+      Partition partition = new Partition(1, PartitionState.READ_WRITE, 1024L * 1024 * 1024);
+      for (short version : new short[]{BlobId.Blob_Id_Version_V1, BlobId.Blob_Id_Version_V2}) {
+        List<BlobId> ids = new ArrayList<BlobId>(numberOfIds);
+        ConcurrentSkipListMap<StoreKey, Long> sortedIndex = new ConcurrentSkipListMap<StoreKey, Long>();
+        Map<StoreKey, Long> hashIndex = new HashMap<StoreKey, Long>();
+        for (int i = 0; i < numberOfIds; i++) {
+          BlobId id = new BlobId(partition, version);
+          ids.add(id);
+          sortedIndex.put(id, (long) i);
+          hashIndex.put(id, (long) i);
+        }
+        for (int i = 0; i < warmUpIterations; i++) {
+          runLookups(ids, sortedIndex, hashIndex, numberOfLookups);
+        }
+        long[] timesInNs = runLookups(ids, sortedIndex, hashIndex, numberOfLookups);
+        System.out.println("Blob id version: " + version + " Id size in bytes: " + ids.get(0).sizeInBytes());
+        System.out.println("Bloom hash ns/op: " + String.format("%.1f", (double) timesInNs[0] / numberOfLookups));
+        System.out.println("Sorted index lookup ns/op: " + String.format("%.1f",
+            (double) timesInNs[1] / numberOfLookups));
+        System.out.println("Hash index lookup ns/op: " + String.format("%.1f",
+            (double) timesInNs[2] / numberOfLookups));
+      }
+    } catch (Exception e) {
+      System.err.println("Error while measuring blob id performance: " + e);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Looks up random ids and times every kind of lookup.
+   * @param ids the ids in the indexes.
+   * @param sortedIndex the ids in a sorted map.
+   * @param hashIndex the ids in a hash map.
+   * @param numberOfLookups the number of lookups of each kind.
+   * @return the total time in ns spent hashing ids, looking them up in the sorted map and in the hash map.
+   */
+  private static long[] runLookups(List<BlobId> ids, ConcurrentSkipListMap<StoreKey, Long> sortedIndex,
+      Map<StoreKey, Long> hashIndex, int numberOfLookups) {
+    Random random = new Random();
+    long[] timesInNs = new long[3];
+    // accumulates the results so that the lookups are not optimized away
+    long sink = 0;
+    long startTime = SystemTime.getInstance().nanoseconds();
+    for (int i = 0; i < numberOfLookups; i++) {
+      byte[] bytes = ids.get(random.nextInt(ids.size())).toBytes();
+      sink += MurmurHash.hash2_64(ByteBuffer.wrap(bytes), 0, bytes.length, 0);
+    }
+    timesInNs[0] = SystemTime.getInstance().nanoseconds() - startTime;
+    startTime = SystemTime.getInstance().nanoseconds();
+    for (int i = 0; i < numberOfLookups; i++) {
+      sink += sortedIndex.get(ids.get(random.nextInt(ids.size())));
+    }
+    timesInNs[1] = SystemTime.getInstance().nanoseconds() - startTime;
+    startTime = SystemTime.getInstance().nanoseconds();
+    for (int i = 0; i < numberOfLookups; i++) {
+      sink += hashIndex.get(ids.get(random.nextInt(ids.size())));
+    }
+    timesInNs[2] = SystemTime.getInstance().nanoseconds() - startTime;
+    if (sink == 42) {
+      System.out.println();
+    }
+    return timesInNs;
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.tools.perf;
+
+import com.github.ambry.utils.FilterFactory;
+import com.github.ambry.utils.IFilter;
+import com.github.ambry.utils.SystemTime;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+
+/**
+ * Compares the classic bloom filter with the blocked bloom filter that index segments can use: the time taken by a
+ * lookup of a key that is in the filter and of a key that is not, and the false positive rate that is observed.
+ */
+public class BloomFilterPerformance {
+
+  public static void main(String args[]) {
+    try {
+      OptionParser parser = new OptionParser();
+      ArgumentAcceptingOptionSpec<Integer> numberOfKeysOpt =
+          parser.accepts("numberOfKeys", "The number of keys added to the filter").withRequiredArg()
+              .describedAs("number_of_keys").ofType(Integer.class).defaultsTo(100000);
+
+      ArgumentAcceptingOptionSpec<Integer> keySizeOpt =
+          parser.accepts("keySize", "The size of a key in bytes").withRequiredArg().describedAs("key_size")
+              .ofType(Integer.class).defaultsTo(40);
+
+      ArgumentAcceptingOptionSpec<Double> falsePositiveProbabilityOpt =
+          parser.accepts("falsePositiveProbability", "The false positive probability the filters are sized for")
+              .withRequiredArg().describedAs("false_positive_probability").ofType(Double.class).defaultsTo(0.01);
+
+      ArgumentAcceptingOptionSpec<Integer> numberOfLookupsOpt =
+          parser.accepts("numberOfLookups", "The number of lookups to measure per filter").withRequiredArg()
+              .describedAs("number_of_lookups").ofType(Integer.class).defaultsTo(10000000);
+
+      ArgumentAcceptingOptionSpec<Integer> warmUpIterationsOpt =
+          parser.accepts("warmUpIterations", "The number of times lookups are run before they are measured")
+              .withRequiredArg().describedAs("warm_up_iterations").ofType(Integer.class).defaultsTo(3);
+
+      OptionSet options = parser.parse(args);
+      int numberOfKeys = options.valueOf(numberOfKeysOpt);
+      int keySize = options.valueOf(keySizeOpt);
+      double falsePositiveProbability = options.valueOf(falsePositiveProbabilityOpt);
+      int numberOfLookups = options.valueOf(numberOfLookupsOpt);
+      int warmUpIterations = options.valueOf(warmUpIterationsOpt);
+
+      Random random = new Random();
+      List<ByteBuffer> presentKeys = generateKeys(random, numberOfKeys, keySize);
+      List<ByteBuffer> absentKeys = generateKeys(random, numberOfKeys, keySize);
+      IFilter[] filters = new IFilter[]{FilterFactory.getFilter(numberOfKeys, falsePositiveProbability),
+          FilterFactory.getBlockedFilter(numberOfKeys, falsePositiveProbability)};
+      for (IFilter filter : filters) {
+        for (ByteBuffer key : presentKeys) {
+          filter.add(key);
+        }
+        for (int i = 0; i < warmUpIterations; i++) {
+          runLookups(filter, presentKeys, numberOfLookups);
+          runLookups(filter, absentKeys, numberOfLookups);
+        }
+        long presentTimeInNs = runLookups(filter, presentKeys, numberOfLookups);
+        long absentTimeInNs = runLookups(filter, absentKeys, numberOfLookups);
+        int falsePositives = 0;
+        for (ByteBuffer key : absentKeys) {
+          if (filter.isPresent(key)) {
+            falsePositives++;
+          }
+        }
+        System.out.println("Filter: " + filter.getClass().getSimpleName());
+        System.out.println("Present key lookup ns/op: " + String.format("%.1f",
+            (double) presentTimeInNs / numberOfLookups));
+        System.out.println("Absent key lookup ns/op: " + String.format("%.1f",
+            (double) absentTimeInNs / numberOfLookups));
+        System.out.println("False positive rate: " + String.format("%.5f",
+            (double) falsePositives / absentKeys.size()) + " (target " + falsePositiveProbability + ")");
+        filter.close();
+      }
+    } catch (Exception e) {
+      System.err.println("Error while measuring bloom filter performance: " + e);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Generates random keys.
+   * @param random the source of randomness.
+   * @param numberOfKeys the number of keys to generate.
+   * @param keySize the size of every key in bytes.
+   * @return the generated keys.
+   */
+  private static List<ByteBuffer> generateKeys(Random random, int numberOfKeys, int keySize) {
+    List<ByteBuffer> keys = new ArrayList<ByteBuffer>(numberOfKeys);
+    for (int i = 0; i < numberOfKeys; i++) {
+      byte[] bytes = new byte[keySize];
+      random.nextBytes(bytes);
+      keys.add(ByteBuffer.wrap(bytes));
+    }
+    return keys;
+  }
+
+  /**
+   * Looks up random keys in the filter.
+   * @param filter the filter to look the keys up in.
+   * @param keys the keys to pick from.
+   * @param numberOfLookups the number of lookups.
+   * @return the total time in ns spent looking up keys.
+   */
+  private static long runLookups(IFilter filter, List<ByteBuffer> keys, int numberOfLookups) {
+    Random random = new Random();
+    // counts the results so that the lookups are not optimized away
+    long sink = 0;
+    long startTime = SystemTime.getInstance().nanoseconds();
+    for (int i = 0; i < numberOfLookups; i++) {
+      if (filter.isPresent(keys.get(random.nextInt(keys.size())))) {
+        sink++;
+      }
+    }
+    long timeInNs = SystemTime.getInstance().nanoseconds() - startTime;
+    if (sink == 42) {
+      System.out.println();
+    }
+    return timeInNs;
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.tools.perf;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.github.ambry.metrics.LatencyMetrics;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+
+/**
+ * Compares the overhead of updating a histogram that uses the default exponentially decaying reservoir with that of a
+ * histogram from {@link LatencyMetrics}: the time and the bytes allocated per update when several threads update the
+ * same histogram, which is what every request costs on a hot path, and the percentiles both report.
+ */
+public class LatencyMetricsPerformance {
+
+  public static void main(String args[]) {
+    try {
+      OptionParser parser = new OptionParser();
+      ArgumentAcceptingOptionSpec<Integer> numberOfThreadsOpt =
+          parser.accepts("numberOfThreads", "The number of threads that update a histogram").withRequiredArg()
+              .describedAs("number_of_threads").ofType(Integer.class).defaultsTo(4);
+
+      ArgumentAcceptingOptionSpec<Integer> numberOfUpdatesOpt =
+          parser.accepts("numberOfUpdates", "The number of updates every thread makes").withRequiredArg()
+              .describedAs("number_of_updates").ofType(Integer.class).defaultsTo(5000000);
+
+      ArgumentAcceptingOptionSpec<Integer> maxLatencyOpt =
+          parser.accepts("maxLatencyMs", "The highest latency that is recorded").withRequiredArg()
+              .describedAs("max_latency_ms").ofType(Integer.class).defaultsTo(1000);
+
+      ArgumentAcceptingOptionSpec<Integer> warmUpIterationsOpt =
+          parser.accepts("warmUpIterations", "The number of times updates are run before they are measured")
+              .withRequiredArg().describedAs("warm_up_iterations").ofType(Integer.class).defaultsTo(2);
+
+      OptionSet options = parser.parse(args);
+      int numberOfThreads = options.valueOf(numberOfThreadsOpt);
+      int numberOfUpdates = options.valueOf(numberOfUpdatesOpt);
+      int maxLatencyMs = options.valueOf(maxLatencyOpt);
+      int warmUpIterations = options.valueOf(warmUpIterationsOpt);
+
+      MetricRegistry registry = new MetricRegistry();
+      Histogram[] histograms = new Histogram[]{registry.histogram("ExponentiallyDecayingHistogram"),
+          LatencyMetrics.histogram(registry, "LogLinearHistogram")};
+      String[] names = new String[]{"Exponentially decaying reservoir", "Log linear reservoir"};
+      for (int i = 0; i < histograms.length; i++) {
+        for (int j = 0; j < warmUpIterations; j++) {
+          runUpdates(histograms[i], numberOfThreads, numberOfUpdates, maxLatencyMs, new AtomicLong(0));
+        }
+        AtomicLong allocatedBytes = new AtomicLong(0);
+        long timeInNs = runUpdates(histograms[i], numberOfThreads, numberOfUpdates, maxLatencyMs, allocatedBytes);
+        long totalUpdates = (long) numberOfThreads * numberOfUpdates;
+        Snapshot snapshot = histograms[i].getSnapshot();
+        System.out.println("Reservoir: " + names[i]);
+        System.out.println("Update ns/op (per thread): " + String.format("%.1f",
+            (double) timeInNs / numberOfUpdates));
+        System.out.println("Allocated bytes/op: " + (allocatedBytes.get() < 0 ? "unavailable"
+            : String.format("%.1f", (double) allocatedBytes.get() / totalUpdates)));
+        System.out.println("Median/95th/99th/999th percentile: " + String.format("%.1f/%.1f/%.1f/%.1f",
+            snapshot.getMedian(), snapshot.get95thPercentile(), snapshot.get99thPercentile(),
+            snapshot.get999thPercentile()) + " over " + snapshot.size() + " values");
+      }
+    } catch (Exception e) {
+      System.err.println("Error while measuring latency metrics performance: " + e);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Updates a histogram with random latencies from several threads at once.
+   * @param histogram the histogram to update.
+   * @param numberOfThreads the number of threads that update the histogram.
+   * @param numberOfUpdates the number of updates every thread makes.
+   * @param maxLatencyMs the highest latency that is recorded.
+   * @param allocatedBytes the bytes allocated by all threads while updating are added to this, or it is set to -1 if
+   *                       the JVM cannot measure them.
+   * @return the longest time in ns that a thread spent updating.
+   * @throws InterruptedException
+   */
+  private static long runUpdates(final Histogram histogram, int numberOfThreads, final int numberOfUpdates,
+      final int maxLatencyMs, final AtomicLong allocatedBytes)
+      throws InterruptedException {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch doneLatch = new CountDownLatch(numberOfThreads);
+    final AtomicLong maxTimeInNs = new AtomicLong(0);
+    for (int i = 0; i < numberOfThreads; i++) {
+      Utils.newThread("latency-metrics-updater-" + i, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Random random = new Random();
+            // the latencies are generated up front so that only the updates are measured
+            long[] latencies = new long[1024];
+            for (int j = 0; j < latencies.length; j++) {
+              // mostly fast requests with a long tail, like real request latencies
+              latencies[j] = (long) (maxLatencyMs * Math.pow(random.nextDouble(), 4));
+            }
+            startLatch.await();
+            long startBytes = getAllocatedBytes(threadMXBean);
+            long startTime = SystemTime.getInstance().nanoseconds();
+            for (int j = 0; j < numberOfUpdates; j++) {
+              histogram.update(latencies[j & (latencies.length - 1)]);
+            }
+            long timeInNs = SystemTime.getInstance().nanoseconds() - startTime;
+            long endBytes = getAllocatedBytes(threadMXBean);
+            if (startBytes < 0 || endBytes < 0) {
+              allocatedBytes.set(-1);
+            } else if (allocatedBytes.get() >= 0) {
+              allocatedBytes.addAndGet(endBytes - startBytes);
+            }
+            long max = maxTimeInNs.get();
+            while (timeInNs > max && !maxTimeInNs.compareAndSet(max, timeInNs)) {
+              max = maxTimeInNs.get();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            doneLatch.countDown();
+          }
+        }
+      }, false).start();
+    }
+    startLatch.countDown();
+    doneLatch.await();
+    return maxTimeInNs.get();
+  }
+
+  /**
+   * @return the bytes allocated so far by the current thread, or -1 if the JVM cannot tell.
+   */
+  private static long getAllocatedBytes(ThreadMXBean threadMXBean) {
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+}
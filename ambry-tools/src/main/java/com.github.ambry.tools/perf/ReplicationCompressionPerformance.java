@@ -0,0 +1,199 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.tools.perf;
+
+import com.github.ambry.network.Send;
+import com.github.ambry.protocol.CompressedSend;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+
+/**
+ * Measures how much cross datacenter bandwidth compressed replication saves on a replayed dataset, e.g. the log
+ * segments of a store copied off a production server. The files are split into chunks of the replication fetch size
+ * and every chunk is compressed and decompressed the way the messages of a get response are when replica threads ask
+ * for compression.
+ */
+public class ReplicationCompressionPerformance {
+
+  public static void main(String args[]) {
+    try {
+      OptionParser parser = new OptionParser();
+      ArgumentAcceptingOptionSpec<String> dataSetOpt =
+          parser.accepts("dataSet", "A file or a directory of files to replay as replicated messages").withRequiredArg()
+              .describedAs("data_set").ofType(String.class);
+
+      ArgumentAcceptingOptionSpec<Integer> fetchSizeInBytesOpt =
+          parser.accepts("fetchSizeInBytes", "The number of bytes fetched by a replica thread in one get request")
+              .withRequiredArg().describedAs("fetch_size_in_bytes").ofType(Integer.class).defaultsTo(1048576);
+
+      ArgumentAcceptingOptionSpec<Long> wanBytesPerSecOpt =
+          parser.accepts("wanBytesPerSec", "The cross datacenter bandwidth to estimate transfer times with")
+              .withRequiredArg().describedAs("wan_bytes_per_sec").ofType(Long.class).defaultsTo(12500000L);
+
+      OptionSet options = parser.parse(args);
+
+      ArrayList<OptionSpec<?>> listOpt = new ArrayList<OptionSpec<?>>();
+      listOpt.add(dataSetOpt);
+
+      for (OptionSpec opt : listOpt) {
+        if (!options.has(opt)) {
+          System.err.println("Missing required argument \"" + opt + "\"");
+          parser.printHelpOn(System.err);
+          System.exit(1);
+        }
+      }
+
+      File dataSet = new File(options.valueOf(dataSetOpt));
+      int fetchSizeInBytes = options.valueOf(fetchSizeInBytesOpt);
+      long wanBytesPerSec = options.valueOf(wanBytesPerSecOpt);
+      File[] files = dataSet.isDirectory() ? dataSet.listFiles() : new File[]{dataSet};
+      if (files == null || files.length == 0) {
+        System.err.println("No files to replay in " + dataSet);
+        System.exit(1);
+      }
+
+      long totalUncompressedBytes = 0;
+      long totalCompressedBytes = 0;
+      long totalCompressionTimeInNs = 0;
+      long totalDecompressionTimeInNs = 0;
+      long fetchCount = 0;
+      byte[] chunk = new byte[fetchSizeInBytes];
+      ByteArrayOutputStreamChannel compressedOutput = new ByteArrayOutputStreamChannel();
+      for (File file : files) {
+        if (!file.isFile()) {
+          continue;
+        }
+        InputStream fileStream = new FileInputStream(file);
+        try {
+          int chunkSize;
+          while ((chunkSize = readChunk(fileStream, chunk)) > 0) {
+            long startTime = SystemTime.getInstance().nanoseconds();
+            CompressedSend compressedSend = new CompressedSend(new ChunkSend(chunk, chunkSize));
+            totalCompressionTimeInNs += SystemTime.getInstance().nanoseconds() - startTime;
+
+            compressedOutput.reset();
+            while (!compressedSend.isSendComplete()) {
+              compressedSend.writeTo(compressedOutput.channel);
+            }
+            startTime = SystemTime.getInstance().nanoseconds();
+            InputStream decompressedStream =
+                CompressedSend.getDecompressedStream(new ByteArrayInputStream(compressedOutput.toByteArray()));
+            Utils.readBytesFromStream(decompressedStream, chunkSize);
+            totalDecompressionTimeInNs += SystemTime.getInstance().nanoseconds() - startTime;
+
+            totalUncompressedBytes += chunkSize;
+            totalCompressedBytes += compressedSend.sizeInBytes();
+            fetchCount++;
+          }
+        } finally {
+          fileStream.close();
+        }
+      }
+
+      if (totalUncompressedBytes == 0) {
+        System.out.println("The data set is empty");
+        return;
+      }
+      double compressionRatio = (double) totalCompressedBytes / totalUncompressedBytes;
+      double uncompressedTransferTimeInSecs = (double) totalUncompressedBytes / wanBytesPerSec;
+      double compressedTransferTimeInSecs = (double) totalCompressedBytes / wanBytesPerSec
+          + (totalCompressionTimeInNs + totalDecompressionTimeInNs) / 1e9;
+      System.out.println("Fetches replayed: " + fetchCount);
+      System.out.println("Uncompressed bytes: " + totalUncompressedBytes);
+      System.out.println("Compressed bytes: " + totalCompressedBytes);
+      System.out.println("Compression ratio: " + String.format("%.3f", compressionRatio));
+      System.out.println("WAN bytes saved: " + (totalUncompressedBytes - totalCompressedBytes));
+      System.out.println("Compression throughput in MB/s: " + String.format("%.1f",
+          totalUncompressedBytes / 1048576.0 / Math.max(totalCompressionTimeInNs, 1) * 1e9));
+      System.out.println("Decompression throughput in MB/s: " + String.format("%.1f",
+          totalUncompressedBytes / 1048576.0 / Math.max(totalDecompressionTimeInNs, 1) * 1e9));
+      System.out.println("Estimated transfer time in secs without compression: " + String.format("%.1f",
+          uncompressedTransferTimeInSecs));
+      System.out.println("Estimated transfer time in secs with compression, including CPU time: " + String.format(
+          "%.1f", compressedTransferTimeInSecs));
+    } catch (Exception e) {
+      System.err.println("Error while measuring compression: " + e);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Reads up to the size of the chunk from the stream.
+   * @param stream the stream to read from.
+   * @param chunk the array to read into.
+   * @return the number of bytes read, 0 at the end of the stream.
+   * @throws IOException
+   */
+  private static int readChunk(InputStream stream, byte[] chunk)
+      throws IOException {
+    int read = 0;
+    while (read < chunk.length) {
+      int sizeRead = stream.read(chunk, read, chunk.length - read);
+      if (sizeRead == -1) {
+        break;
+      }
+      read += sizeRead;
+    }
+    return read;
+  }
+
+  /**
+   * A {@link Send} of a chunk of the data set.
+   */
+  private static class ChunkSend implements Send {
+    private final ByteBuffer buffer;
+
+    ChunkSend(byte[] chunk, int size) {
+      buffer = ByteBuffer.wrap(chunk, 0, size);
+    }
+
+    @Override
+    public long writeTo(WritableByteChannel channel)
+        throws IOException {
+      return channel.write(buffer);
+    }
+
+    @Override
+    public boolean isSendComplete() {
+      return !buffer.hasRemaining();
+    }
+
+    @Override
+    public long sizeInBytes() {
+      return buffer.limit();
+    }
+  }
+
+  /**
+   * Collects what is written to its channel, as the remote end of a connection would.
+   */
+  private static class ByteArrayOutputStreamChannel extends ByteArrayOutputStream {
+    final WritableByteChannel channel = Channels.newChannel(this);
+  }
+}
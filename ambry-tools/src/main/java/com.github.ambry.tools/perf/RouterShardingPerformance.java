@@ -0,0 +1,259 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.tools.perf;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.ambry.clustermap.ClusterMap;
+import com.github.ambry.clustermap.ClusterMapManager;
+import com.github.ambry.commons.LoggingNotificationSystem;
+import com.github.ambry.config.ClusterMapConfig;
+import com.github.ambry.config.VerifiableProperties;
+import com.github.ambry.network.Selector;
+import com.github.ambry.router.AsyncWritableChannel;
+import com.github.ambry.router.Callback;
+import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.NonBlockingRouterFactory;
+import com.github.ambry.router.ReadableStreamChannel;
+import com.github.ambry.router.Router;
+import com.github.ambry.utils.SystemTime;
+import com.github.ambry.utils.Utils;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+
+/**
+ * Measures the get throughput of the non blocking router and the number of connections it opens per data node for
+ * different scaling unit (operation controller) counts, with or without sharding of operations by partition. Blobs
+ * to get are picked at random from a file containing one blob id per line.
+ */
+public class RouterShardingPerformance {
+  public static void main(String args[]) {
+    try {
+      OptionParser parser = new OptionParser();
+      ArgumentAcceptingOptionSpec<String> blobIdsFileOpt =
+          parser.accepts("blobIdsFile", "The file containing the ids of the blobs to get, one per line")
+              .withRequiredArg()
+              .describedAs("blob_ids_file")
+              .ofType(String.class);
+
+      ArgumentAcceptingOptionSpec<String> hardwareLayoutOpt =
+          parser.accepts("hardwareLayout", "The path of the hardware layout file")
+              .withRequiredArg()
+              .describedAs("hardware_layout")
+              .ofType(String.class);
+
+      ArgumentAcceptingOptionSpec<String> partitionLayoutOpt =
+          parser.accepts("partitionLayout", "The path of the partition layout file")
+              .withRequiredArg()
+              .describedAs("partition_layout")
+              .ofType(String.class);
+
+      ArgumentAcceptingOptionSpec<String> datacenterOpt =
+          parser.accepts("datacenter", "The datacenter the router is in")
+              .withRequiredArg()
+              .describedAs("datacenter")
+              .ofType(String.class);
+
+      ArgumentAcceptingOptionSpec<String> scalingUnitCountsOpt =
+          parser.accepts("scalingUnitCounts", "The scaling unit counts to measure with")
+              .withOptionalArg()
+              .describedAs("Comma separated list")
+              .ofType(String.class)
+              .defaultsTo("1,2,4,8");
+
+      ArgumentAcceptingOptionSpec<Boolean> shardingEnabledOpt =
+          parser.accepts("shardingEnabled", "Whether operations are sharded to scaling units by partition")
+              .withOptionalArg()
+              .describedAs("Enable sharding")
+              .ofType(Boolean.class)
+              .defaultsTo(true);
+
+      ArgumentAcceptingOptionSpec<Integer> concurrencyOpt =
+          parser.accepts("concurrency", "The number of gets that are outstanding at any time")
+              .withOptionalArg()
+              .describedAs("concurrency")
+              .ofType(Integer.class)
+              .defaultsTo(32);
+
+      ArgumentAcceptingOptionSpec<Long> durationOpt =
+          parser.accepts("durationInSecs", "The time in seconds to measure for, for each scaling unit count")
+              .withOptionalArg()
+              .describedAs("duration")
+              .ofType(Long.class)
+              .defaultsTo(30L);
+
+      OptionSet options = parser.parse(args);
+
+      ArrayList<OptionSpec<?>> listOpt = new ArrayList<OptionSpec<?>>();
+      listOpt.add(blobIdsFileOpt);
+      listOpt.add(hardwareLayoutOpt);
+      listOpt.add(partitionLayoutOpt);
+      listOpt.add(datacenterOpt);
+
+      for (OptionSpec opt : listOpt) {
+        if (!options.has(opt)) {
+          System.err.println("Missing required argument \"" + opt + "\"");
+          parser.printHelpOn(System.err);
+          System.exit(1);
+        }
+      }
+
+      List<String> blobIds = new ArrayList<String>();
+      BufferedReader br = new BufferedReader(new FileReader(options.valueOf(blobIdsFileOpt)));
+      try {
+        String line;
+        while ((line = br.readLine()) != null) {
+          if (!line.trim().isEmpty()) {
+            blobIds.add(line.trim());
+          }
+        }
+      } finally {
+        br.close();
+      }
+      if (blobIds.isEmpty()) {
+        System.err.println("No blob ids found in " + options.valueOf(blobIdsFileOpt));
+        System.exit(1);
+      }
+
+      System.out.println("ScalingUnits\tSharding\tOpsPerSec\tErrors\tConnectionsPerNode");
+      for (String scalingUnitCount : Utils.splitString(options.valueOf(scalingUnitCountsOpt), ",")) {
+        Properties properties = new Properties();
+        properties.setProperty("router.hostname", "localhost");
+        properties.setProperty("router.datacenter.name", options.valueOf(datacenterOpt));
+        properties.setProperty("router.scaling.unit.count", scalingUnitCount);
+        properties.setProperty("router.operation.controller.sharding.enabled",
+            Boolean.toString(options.valueOf(shardingEnabledOpt)));
+        VerifiableProperties verifiableProperties = new VerifiableProperties(properties);
+        // a new cluster map for every run so that the network metrics start afresh.
+        ClusterMap clusterMap =
+            new ClusterMapManager(options.valueOf(hardwareLayoutOpt), options.valueOf(partitionLayoutOpt),
+                new ClusterMapConfig(verifiableProperties));
+        Router router =
+            new NonBlockingRouterFactory(verifiableProperties, clusterMap, new LoggingNotificationSystem()).getRouter();
+        try {
+          measure(router, clusterMap, blobIds, Integer.parseInt(scalingUnitCount), options.valueOf(shardingEnabledOpt),
+              options.valueOf(concurrencyOpt), options.valueOf(durationOpt));
+        } finally {
+          router.close();
+        }
+      }
+    } catch (Exception e) {
+      System.err.println("Error: " + e);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Issue gets for random blobs from the given list at the given concurrency for the given duration and print the
+   * throughput and the number of connections per data node.
+   * @param router the {@link Router} to use.
+   * @param clusterMap the {@link ClusterMap} the router was created with.
+   * @param blobIds the ids of the blobs to get.
+   * @param scalingUnitCount the number of scaling units of the router.
+   * @param shardingEnabled whether operations are sharded to scaling units by partition.
+   * @param concurrency the number of gets that are outstanding at any time.
+   * @param durationInSecs the time to measure for.
+   * @throws InterruptedException if the wait for the gets to finish is interrupted.
+   */
+  private static void measure(final Router router, ClusterMap clusterMap, final List<String> blobIds,
+      int scalingUnitCount, boolean shardingEnabled, int concurrency, long durationInSecs)
+      throws InterruptedException {
+    final AtomicBoolean stop = new AtomicBoolean(false);
+    final AtomicLong completedGets = new AtomicLong(0);
+    final AtomicLong failedGets = new AtomicLong(0);
+    final CountDownLatch doneLatch = new CountDownLatch(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      Utils.newThread("RouterShardingPerformance-" + i, new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (!stop.get()) {
+              String blobId = blobIds.get(ThreadLocalRandom.current().nextInt(blobIds.size()));
+              try {
+                ReadableStreamChannel channel = router.getBlob(blobId).get();
+                channel.readInto(new DiscardingAsyncWritableChannel(), null).get();
+                channel.close();
+                completedGets.incrementAndGet();
+              } catch (Exception e) {
+                failedGets.incrementAndGet();
+              }
+            }
+          } finally {
+            doneLatch.countDown();
+          }
+        }
+      }, false).start();
+    }
+    long startTimeMs = SystemTime.getInstance().milliseconds();
+    Thread.sleep(durationInSecs * SystemTime.MsPerSec);
+    // sample the connections while the load is still on.
+    long activeConnections = 0;
+    Gauge activeConnectionsGauge = clusterMap.getMetricRegistry()
+        .getGauges()
+        .get(MetricRegistry.name(Selector.class, "SelectorActiveConnectionsCount"));
+    if (activeConnectionsGauge != null) {
+      activeConnections = (Long) activeConnectionsGauge.getValue();
+    }
+    stop.set(true);
+    doneLatch.await();
+    long elapsedMs = SystemTime.getInstance().milliseconds() - startTimeMs;
+    double opsPerSec = completedGets.get() * (double) SystemTime.MsPerSec / elapsedMs;
+    double connectionsPerNode = (double) activeConnections / clusterMap.getDataNodeIds().size();
+    System.out.println(String.format("%d\t%b\t%.2f\t%d\t%.2f", scalingUnitCount, shardingEnabled, opsPerSec,
+        failedGets.get(), connectionsPerNode));
+  }
+
+  /**
+   * An {@link AsyncWritableChannel} that discards everything written to it.
+   */
+  private static class DiscardingAsyncWritableChannel implements AsyncWritableChannel {
+    private volatile boolean isOpen = true;
+
+    @Override
+    public Future<Long> write(ByteBuffer src, Callback<Long> callback) {
+      long bytesWritten = src.remaining();
+      src.position(src.limit());
+      FutureResult<Long> futureResult = new FutureResult<Long>();
+      futureResult.done(bytesWritten, null);
+      if (callback != null) {
+        callback.onCompletion(bytesWritten, null);
+      }
+      return futureResult;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return isOpen;
+    }
+
+    @Override
+    public void close() {
+      isOpen = false;
+    }
+  }
+}
@@ -17,6 +17,7 @@ import com.github.ambry.messageformat.BlobInfo;
 import com.github.ambry.messageformat.BlobProperties;
 import com.github.ambry.router.Callback;
 import com.github.ambry.router.FutureResult;
+import com.github.ambry.router.GetBlobResult;
 import com.github.ambry.router.ReadableStreamChannel;
 import com.github.ambry.router.Router;
 import com.github.ambry.router.RouterErrorCode;
@@ -32,6 +33,7 @@ import org.slf4j.LoggerFactory;
  *
  * Get: Returns pre-populated repetitive data based on total size and chunk size configured.
  * GetBlobInfo: Returns pre-populated data.
+ * GetBlobWithInfo: Returns pre-populated data along with pre-populated repetitive data.
  * PutBlob: Discards all bytes received.
  * DeleteBlob: No op.
  */
@@ -125,6 +127,38 @@ class PerfRouter implements Router {
     return futureResult;
   }
 
+  /**
+   * Returns pre-populated {@link BlobProperties} and user metadata along with a stream of repeating data up to a pre-set
+   * size. {@code blobId} is ignored.
+   * @param blobId (ignored).
+   * @return a {@link Future} that will eventually contain the {@link GetBlobResult}.
+   */
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId) {
+    return getBlobWithInfo(blobId, null);
+  }
+
+  /**
+   * Returns pre-populated {@link BlobProperties} and user metadata along with a stream of repeating data up to a pre-set
+   * size. {@code blobId} is ignored.
+   * @param blobId (ignored).
+   * @param callback the {@link Callback} to invoke on operation completion.
+   * @return a {@link Future} that will eventually contain the {@link GetBlobResult}.
+   */
+  @Override
+  public Future<GetBlobResult> getBlobWithInfo(String blobId, Callback<GetBlobResult> callback) {
+    logger.trace("Received getBlobWithInfo call");
+    FutureResult<GetBlobResult> futureResult = new FutureResult<GetBlobResult>();
+    if (!routerOpen) {
+      completeOperation(futureResult, callback, null, ROUTER_CLOSED_EXCEPTION);
+    } else {
+      GetBlobResult getBlobResult = new GetBlobResult(new BlobInfo(blobProperties, usermetadata),
+          new PerfRSC(chunk, blobProperties.getBlobSize()));
+      completeOperation(futureResult, callback, getBlobResult, null);
+    }
+    return futureResult;
+  }
+
   /**
    * Consumes the data in {@code channel} and simply throws it away. {@code blobProperties} and {@code usermetadata} are
    * ignored.
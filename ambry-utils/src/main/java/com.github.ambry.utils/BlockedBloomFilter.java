@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * A split block bloom filter. The filter is made of blocks of 512 bits, the size of a cache line, and every key maps
+ * to a single block in which it sets one bit in each of the eight 64 bit words. Lookups touch a single cache line and
+ * allocate nothing, at the cost of a slightly higher false positive rate than a {@link Murmur3BloomFilter} of the
+ * same size. Like the other filters, adding keys is not thread safe.
+ */
+public class BlockedBloomFilter implements IFilter {
+  private static final int Words_Per_Block = 8;
+  private static final int Bits_Per_Block = Words_Per_Block * Long.SIZE;
+  private static final long Hash_Seed = 0;
+  // odd constants that pick a different bit of each word of a block for the same key
+  private static final int[] Salts =
+      {0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+  private final long[] words;
+  private final int blockCount;
+
+  /**
+   * Creates an empty filter.
+   * @param blockCount the number of 512 bit blocks in the filter.
+   */
+  public BlockedBloomFilter(int blockCount) {
+    if (blockCount <= 0 || blockCount > Integer.MAX_VALUE / Words_Per_Block) {
+      throw new IllegalArgumentException("Invalid number of blocks for bloom filter: " + blockCount);
+    }
+    this.blockCount = blockCount;
+    this.words = new long[blockCount * Words_Per_Block];
+  }
+
+  /**
+   * Gets the number of blocks a filter needs to hold a number of keys with at most the given false positive rate.
+   * The false positive rate of a split block filter with {@code m} bits holding {@code n} keys is about
+   * {@code (1 - e^(-8n/m))^8}.
+   * @param numElements the number of keys the filter is expected to hold.
+   * @param maxFalsePosProbability the false positive rate the filter should not exceed.
+   * @return the number of blocks the filter needs.
+   */
+  public static int getBlockCount(long numElements, double maxFalsePosProbability) {
+    if (maxFalsePosProbability <= 0 || maxFalsePosProbability >= 1) {
+      throw new IllegalArgumentException("Invalid false positive probability: " + maxFalsePosProbability);
+    }
+    double numBits = -Words_Per_Block * Math.max(1, numElements) / Math
+        .log(1 - Math.pow(maxFalsePosProbability, 1.0 / Words_Per_Block));
+    long numBlocks = Math.max(1, (long) Math.ceil(numBits / Bits_Per_Block));
+    if (numBlocks > Integer.MAX_VALUE / Words_Per_Block) {
+      throw new UnsupportedOperationException(
+          "Cannot provide a bloom filter for " + numElements + " elements at " + maxFalsePosProbability);
+    }
+    return (int) numBlocks;
+  }
+
+  /**
+   * @return the number of 512 bit blocks in the filter.
+   */
+  public int getBlockCount() {
+    return blockCount;
+  }
+
+  @Override
+  public void add(ByteBuffer key) {
+    long hash = MurmurHash.hash2_64(key, key.position(), key.remaining(), Hash_Seed);
+    int blockOffset = getBlockOffset(hash);
+    for (int i = 0; i < Words_Per_Block; i++) {
+      words[blockOffset + i] |= getMask(hash, i);
+    }
+  }
+
+  @Override
+  public boolean isPresent(ByteBuffer key) {
+    long hash = MurmurHash.hash2_64(key, key.position(), key.remaining(), Hash_Seed);
+    int blockOffset = getBlockOffset(hash);
+    for (int i = 0; i < Words_Per_Block; i++) {
+      long mask = getMask(hash, i);
+      if ((words[blockOffset + i] & mask) != mask) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(words, 0);
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    // the filter lives on the heap, so there is nothing to release
+  }
+
+  /**
+   * Writes the filter, which can be read back with {@link #deserialize(DataInput)}.
+   * @param output the output to write to.
+   * @throws IOException if the filter cannot be written.
+   */
+  void serialize(DataOutput output)
+      throws IOException {
+    output.writeInt(blockCount);
+    for (long word : words) {
+      output.writeLong(word);
+    }
+  }
+
+  /**
+   * Reads a filter written by {@link #serialize(DataOutput)}.
+   * @param input the input to read from.
+   * @return the filter that was read.
+   * @throws IOException if the filter cannot be read.
+   */
+  static BlockedBloomFilter deserialize(DataInput input)
+      throws IOException {
+    int blockCount = input.readInt();
+    if (blockCount <= 0 || blockCount > Integer.MAX_VALUE / Words_Per_Block) {
+      throw new IOException("Invalid number of blocks for bloom filter: " + blockCount);
+    }
+    BlockedBloomFilter filter = new BlockedBloomFilter(blockCount);
+    for (int i = 0; i < filter.words.length; i++) {
+      filter.words[i] = input.readLong();
+    }
+    return filter;
+  }
+
+  /**
+   * Maps the upper half of the hash to a block without a division.
+   */
+  private int getBlockOffset(long hash) {
+    return (int) (((hash >>> 32) * blockCount) >>> 32) * Words_Per_Block;
+  }
+
+  /**
+   * Picks the bit of word {@code wordIndex} of the block from the lower half of the hash.
+   */
+  private static long getMask(long hash, int wordIndex) {
+    return 1L << (((int) hash * Salts[wordIndex]) >>> 26);
+  }
+}
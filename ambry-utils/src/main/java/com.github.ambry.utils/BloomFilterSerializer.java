@@ -27,7 +27,18 @@ abstract class BloomFilterSerializer {
 
   public BloomFilter deserialize(DataInput in)
       throws IOException {
-    int hashes = in.readInt();
+    return deserialize(in, in.readInt());
+  }
+
+  /**
+   * Reads the rest of a filter whose hash count was already read.
+   * @param in the input to read the bit set from.
+   * @param hashes the hash count of the filter.
+   * @return the filter that was read.
+   * @throws IOException if the filter cannot be read.
+   */
+  public BloomFilter deserialize(DataInput in, int hashes)
+      throws IOException {
     IBitSet bs = OpenBitSet.deserialize(in);
     return createFilter(hashes, bs);
   }
@@ -25,15 +25,40 @@ public class FilterFactory {
 
   private static final Logger logger = LoggerFactory.getLogger(FilterFactory.class);
   private static final long BITSET_EXCESS = 20;
+  // A serialized Murmur3BloomFilter starts with its hash count, which is positive. Other filters start with a negative
+  // version, so that filters serialized before the format was versioned can still be read.
+  private static final int Blocked_Bloom_Filter_Version_V1 = -1;
 
   public static void serialize(IFilter bf, DataOutput output)
       throws IOException {
-    Murmur3BloomFilter.serializer.serialize((Murmur3BloomFilter) bf, output);
+    if (bf instanceof BlockedBloomFilter) {
+      output.writeInt(Blocked_Bloom_Filter_Version_V1);
+      ((BlockedBloomFilter) bf).serialize(output);
+    } else {
+      Murmur3BloomFilter.serializer.serialize((Murmur3BloomFilter) bf, output);
+    }
   }
 
   public static IFilter deserialize(DataInput input)
       throws IOException {
-    return Murmur3BloomFilter.serializer.deserialize(input);
+    int header = input.readInt();
+    if (header >= 0) {
+      return Murmur3BloomFilter.serializer.deserialize(input, header);
+    }
+    switch (header) {
+      case Blocked_Bloom_Filter_Version_V1:
+        return BlockedBloomFilter.deserialize(input);
+      default:
+        throw new IOException("Unknown bloom filter version: " + header);
+    }
+  }
+
+  /**
+   * @return A {@link BlockedBloomFilter} that can provide the given false positive probability rate for the given
+   *         number of elements.
+   */
+  public static IFilter getBlockedFilter(long numElements, double maxFalsePosProbability) {
+    return new BlockedBloomFilter(BlockedBloomFilter.getBlockCount(numElements, maxFalsePosProbability));
   }
 
   /**
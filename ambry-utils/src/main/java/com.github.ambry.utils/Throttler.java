@@ -25,7 +25,7 @@ import org.slf4j.LoggerFactory;
  */
 public class Throttler {
 
-  private double desiredRatePerSec;
+  private volatile double desiredRatePerSec;
   private long checkIntervalMs;
   private boolean throttleDown;
   private Object lock = new Object();
@@ -89,6 +89,21 @@ public class Throttler {
     }
   }
 
+  /**
+   * Changes the rate we want to hit. Takes effect from the next check.
+   * @param desiredRatePerSec the rate we want to hit in units/sec
+   */
+  public void setDesiredRatePerSec(double desiredRatePerSec) {
+    this.desiredRatePerSec = desiredRatePerSec;
+  }
+
+  /**
+   * @return the rate we want to hit in units/sec
+   */
+  public double getDesiredRatePerSec() {
+    return desiredRatePerSec;
+  }
+
   /**
    * Disable the throttler for good.
    */
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * The spans recorded for one sampled request. A trace is identified by an id that is shared by all the hosts that
+ * take part in the request, so that the traces they record can be put together. Spans can be added from any thread
+ * until the trace is finished by its {@link Tracer}.
+ */
+public class Trace {
+  private final long id;
+  private final String name;
+  private final long startTimeMs;
+  private final List<Span> spans = new ArrayList<Span>();
+  private volatile long durationMs = -1;
+
+  /**
+   * Creates a trace.
+   * @param id the id of the trace. Must not be 0, which stands for no trace.
+   * @param name the name of the trace, usually the operation that is traced.
+   * @param startTimeMs the time at which the traced operation started.
+   */
+  Trace(long id, String name, long startTimeMs) {
+    if (id == 0) {
+      throw new IllegalArgumentException("0 is not a valid trace id");
+    }
+    this.id = id;
+    this.name = name;
+    this.startTimeMs = startTimeMs;
+  }
+
+  /**
+   * @return the id of the trace.
+   */
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @return the name of the trace.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the time at which the traced operation started.
+   */
+  public long getStartTimeMs() {
+    return startTimeMs;
+  }
+
+  /**
+   * @return the duration of the traced operation, or -1 if the trace has not been finished.
+   */
+  public long getDurationMs() {
+    return durationMs;
+  }
+
+  /**
+   * Records a span of the traced operation.
+   * @param spanName the name of the span, such as the stage of the operation it covers.
+   * @param detail details of the span, such as the replica that was contacted. Can be {@code null}.
+   * @param spanStartTimeMs the time at which the span started.
+   * @param spanEndTimeMs the time at which the span ended.
+   */
+  public void addSpan(String spanName, String detail, long spanStartTimeMs, long spanEndTimeMs) {
+    Span span = new Span(spanName, detail, spanStartTimeMs - startTimeMs, spanEndTimeMs - spanStartTimeMs);
+    synchronized (spans) {
+      spans.add(span);
+    }
+  }
+
+  /**
+   * @return a copy of the spans recorded so far, in the order in which they were added.
+   */
+  public List<Span> getSpans() {
+    synchronized (spans) {
+      return new ArrayList<Span>(spans);
+    }
+  }
+
+  void finish(long endTimeMs) {
+    durationMs = endTimeMs - startTimeMs;
+  }
+
+  /**
+   * @return the trace and its spans as a {@link JSONObject}.
+   * @throws JSONException
+   */
+  public JSONObject toJSONObject()
+      throws JSONException {
+    JSONArray spansArray = new JSONArray();
+    for (Span span : getSpans()) {
+      JSONObject spanObject = new JSONObject().put("name", span.getName())
+          .put("startOffsetMs", span.getStartOffsetMs())
+          .put("durationMs", span.getDurationMs());
+      if (span.getDetail() != null) {
+        spanObject.put("detail", span.getDetail());
+      }
+      spansArray.put(spanObject);
+    }
+    return new JSONObject().put("traceId", Long.toHexString(id))
+        .put("name", name)
+        .put("startTimeMs", startTimeMs)
+        .put("durationMs", durationMs)
+        .put("spans", spansArray);
+  }
+
+  @Override
+  public String toString() {
+    return "Trace[" + Long.toHexString(id) + ", " + name + ", durationMs=" + durationMs + "]";
+  }
+
+  /**
+   * A timed stage of a traced operation.
+   */
+  public static class Span {
+    private final String name;
+    private final String detail;
+    private final long startOffsetMs;
+    private final long durationMs;
+
+    Span(String name, String detail, long startOffsetMs, long durationMs) {
+      this.name = name;
+      this.detail = detail;
+      this.startOffsetMs = startOffsetMs;
+      this.durationMs = durationMs;
+    }
+
+    /**
+     * @return the name of the span.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the details of the span, or {@code null} if there are none.
+     */
+    public String getDetail() {
+      return detail;
+    }
+
+    /**
+     * @return the time between the start of the trace and the start of the span.
+     */
+    public long getStartOffsetMs() {
+      return startOffsetMs;
+    }
+
+    /**
+     * @return the duration of the span.
+     */
+    public long getDurationMs() {
+      return durationMs;
+    }
+  }
+}
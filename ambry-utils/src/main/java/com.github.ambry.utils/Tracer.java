@@ -0,0 +1,176 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+
+/**
+ * Samples requests for tracing and keeps the most recently finished {@link Trace}s in a fixed size ring buffer, from
+ * which the slowest ones can be read. Tracing a request that is not sampled costs nothing but a random number, and
+ * recording a finished trace overwrites the oldest one without taking a lock.
+ * <p/>
+ * A host that starts a request decides whether it is sampled with {@link #startTrace(String)} and sends the id of
+ * the trace along with the request. Hosts that serve the request continue the trace with
+ * {@link #continueTrace(long, String, long)}, so that a request is traced on all the hosts or on none.
+ * <p/>
+ * The trace of the request being handled by a thread can be made available to code further down the stack with
+ * {@link #setCurrentTrace(Trace)}, without passing it through every call.
+ */
+public class Tracer {
+  private static final ThreadLocal<Trace> currentTrace = new ThreadLocal<Trace>();
+  private static final Comparator<Trace> SLOWEST_FIRST = new Comparator<Trace>() {
+    @Override
+    public int compare(Trace trace1, Trace trace2) {
+      long duration1 = trace1.getDurationMs();
+      long duration2 = trace2.getDurationMs();
+      return duration1 > duration2 ? -1 : (duration1 == duration2 ? 0 : 1);
+    }
+  };
+
+  private final double sampleRate;
+  private final Time time;
+  private final AtomicReferenceArray<Trace> finishedTraces;
+  private final AtomicLong finishedTraceCount = new AtomicLong(0);
+
+  /**
+   * Creates a tracer.
+   * @param sampleRate the fraction of the requests started by this host that are traced, between 0 and 1.
+   * @param bufferSize the number of finished traces that are kept.
+   * @param time the source of time for the traces.
+   */
+  public Tracer(double sampleRate, int bufferSize, Time time) {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("Sample rate should be between 0 and 1: " + sampleRate);
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Invalid trace buffer size: " + bufferSize);
+    }
+    this.sampleRate = sampleRate;
+    this.time = time;
+    finishedTraces = new AtomicReferenceArray<Trace>(bufferSize);
+  }
+
+  /**
+   * Starts tracing a request if it is sampled.
+   * @param name the name of the trace.
+   * @return the trace of the request, or {@code null} if the request is not sampled.
+   */
+  public Trace startTrace(String name) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (sampleRate == 0 || random.nextDouble() >= sampleRate) {
+      return null;
+    }
+    long id;
+    do {
+      id = random.nextLong();
+    } while (id == 0);
+    return new Trace(id, name, time.milliseconds());
+  }
+
+  /**
+   * Continues tracing a request that was sampled by the host that sent it.
+   * @param traceId the id of the trace that came with the request. 0 if the request is not traced.
+   * @param name the name of the trace on this host.
+   * @param startTimeMs the time at which the request was received by this host.
+   * @return the trace of the request on this host, or {@code null} if the request is not traced.
+   */
+  public Trace continueTrace(long traceId, String name, long startTimeMs) {
+    return traceId == 0 ? null : new Trace(traceId, name, startTimeMs);
+  }
+
+  /**
+   * Finishes a trace and records it, replacing the oldest trace that is kept if the buffer is full.
+   * @param trace the trace to finish. Nothing is done if it is {@code null}.
+   */
+  public void finishTrace(Trace trace) {
+    if (trace != null) {
+      trace.finish(time.milliseconds());
+      int index = (int) (finishedTraceCount.getAndIncrement() % finishedTraces.length());
+      finishedTraces.set(index, trace);
+    }
+  }
+
+  /**
+   * @param count the maximum number of traces to return.
+   * @return the slowest of the finished traces that are kept, slowest first.
+   */
+  public List<Trace> getSlowestTraces(int count) {
+    List<Trace> traces = new ArrayList<Trace>(finishedTraces.length());
+    for (int i = 0; i < finishedTraces.length(); i++) {
+      Trace trace = finishedTraces.get(i);
+      if (trace != null) {
+        traces.add(trace);
+      }
+    }
+    Collections.sort(traces, SLOWEST_FIRST);
+    return traces.subList(0, Math.min(Math.max(count, 0), traces.size()));
+  }
+
+  /**
+   * @param count the maximum number of traces to return.
+   * @return the slowest of the finished traces that are kept as a {@link JSONArray}, slowest first.
+   * @throws JSONException
+   */
+  public JSONArray getSlowestTracesAsJSON(int count)
+      throws JSONException {
+    JSONArray traces = new JSONArray();
+    for (Trace trace : getSlowestTraces(count)) {
+      traces.put(trace.toJSONObject());
+    }
+    return traces;
+  }
+
+  /**
+   * @return the number of traces that have been finished by this tracer.
+   */
+  public long getFinishedTraceCount() {
+    return finishedTraceCount.get();
+  }
+
+  /**
+   * Makes a trace the trace of the request being handled by the current thread. Should be cleared with
+   * {@link #clearCurrentTrace()} once the thread is done with the request.
+   * @param trace the trace of the request. Can be {@code null} if the request is not traced.
+   */
+  public static void setCurrentTrace(Trace trace) {
+    if (trace == null) {
+      currentTrace.remove();
+    } else {
+      currentTrace.set(trace);
+    }
+  }
+
+  /**
+   * @return the trace of the request being handled by the current thread, or {@code null} if there is none.
+   */
+  public static Trace getCurrentTrace() {
+    return currentTrace.get();
+  }
+
+  /**
+   * Clears the trace of the request being handled by the current thread.
+   */
+  public static void clearCurrentTrace() {
+    currentTrace.remove();
+  }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Assert;
+
+
+/**
+ * Counts the bytes allocated on the heap by threads of the JVM, so that tests can hold the allocations of an operation
+ * on a hot path to a budget. An operation is measured on the thread that carries it out, so that the allocations of
+ * threads that have nothing to do with it, such as those of the JIT compiler or of other tests, are not counted. Tests
+ * of operations that are carried out by other threads as well add the allocations of those threads with
+ * {@link #getThreadAllocatedBytes(long)}.
+ * <p/>
+ * The budget of an operation can be scaled with the {@value #BUDGET_SCALE_PROPERTY} system property, for JVMs that
+ * allocate more or less than the one the budgets were set on.
+ */
+public class AllocationCounter {
+  /**
+   * The system property with the factor that budgets are multiplied by.
+   */
+  public static final String BUDGET_SCALE_PROPERTY = "allocation.budget.scale";
+
+  /**
+   * An operation whose allocations are counted.
+   */
+  public interface Operation {
+    /**
+     * Carries out the operation once.
+     * @param iteration the number of times the operation was carried out before.
+     * @throws Exception
+     */
+    void run(int iteration)
+        throws Exception;
+  }
+
+  private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  /**
+   * @return {@code true} if the JVM can count the bytes allocated by its threads.
+   */
+  public static boolean isSupported() {
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      return sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled();
+    }
+    return false;
+  }
+
+  /**
+   * Carries out an operation a number of times to warm it up and then counts the bytes allocated by the current thread
+   * while carrying it out the given number of times.
+   * @param operation the operation to measure.
+   * @param warmUpIterations the number of times the operation is carried out before it is measured.
+   * @param iterations the number of times the operation is measured.
+   * @return the average bytes allocated by the current thread per operation.
+   * @throws Exception if the operation throws.
+   */
+  public static double measureBytesPerOperation(Operation operation, int warmUpIterations, int iterations)
+      throws Exception {
+    if (!isSupported()) {
+      throw new IllegalStateException("The JVM cannot count the bytes allocated by its threads");
+    }
+    for (int i = 0; i < warmUpIterations; i++) {
+      operation.run(i);
+    }
+    long startBytes = getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < iterations; i++) {
+      operation.run(warmUpIterations + i);
+    }
+    return (double) (getCurrentThreadAllocatedBytes() - startBytes) / iterations;
+  }
+
+  /**
+   * @return the bytes allocated so far by the current thread.
+   */
+  public static long getCurrentThreadAllocatedBytes() {
+    return getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * @param threadId the id of the thread.
+   * @return the bytes allocated so far by the thread with the given id, or -1 if the thread is not alive.
+   */
+  public static long getThreadAllocatedBytes(long threadId) {
+    return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadId);
+  }
+
+  /**
+   * Fails if the bytes allocated per operation exceed the budget of the operation.
+   * @param operationName the name of the operation.
+   * @param bytesPerOperation the bytes allocated per operation.
+   * @param budgetBytesPerOperation the bytes the operation is allowed to allocate, before scaling with
+   *                                {@value #BUDGET_SCALE_PROPERTY}.
+   */
+  public static void assertWithinBudget(String operationName, double bytesPerOperation, long budgetBytesPerOperation) {
+    double scale = Double.parseDouble(System.getProperty(BUDGET_SCALE_PROPERTY, "1"));
+    long budget = (long) (budgetBytesPerOperation * scale);
+    Assert.assertTrue(
+        String.format("%s allocated %.1f bytes/op, which is over its budget of %d bytes/op", operationName,
+            bytesPerOperation, budget), bytesPerOperation <= budget);
+  }
+}
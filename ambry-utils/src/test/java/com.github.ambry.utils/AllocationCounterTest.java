@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+
+public class AllocationCounterTest {
+  private static final int ARRAY_SIZE = 64 * 1024;
+
+  /**
+   * Tests that the allocations of the current thread are counted and that those of other threads are not, but can be
+   * counted separately.
+   * @throws Exception
+   */
+  @Test
+  public void testMeasureBytesPerOperation()
+      throws Exception {
+    Assume.assumeTrue(AllocationCounter.isSupported());
+    final byte[][] arrays = new byte[1][];
+    double bytesPerOperation = AllocationCounter.measureBytesPerOperation(new AllocationCounter.Operation() {
+      @Override
+      public void run(int iteration) {
+        arrays[0] = new byte[ARRAY_SIZE];
+      }
+    }, 10, 100);
+    Assert.assertTrue("Allocated " + bytesPerOperation + " bytes/op", bytesPerOperation >= ARRAY_SIZE);
+
+    // the other thread lives on until its allocations are counted
+    final AtomicReference<byte[]> arrayFromOtherThread = new AtomicReference<byte[]>();
+    final CountDownLatch allocationStart = new CountDownLatch(1);
+    final CountDownLatch countingDone = new CountDownLatch(1);
+    Thread thread = Utils.newThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          allocationStart.await();
+          arrayFromOtherThread.set(new byte[ARRAY_SIZE]);
+          countingDone.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, false);
+    thread.start();
+    long otherThreadStartBytes = AllocationCounter.getThreadAllocatedBytes(thread.getId());
+    bytesPerOperation = AllocationCounter.measureBytesPerOperation(new AllocationCounter.Operation() {
+      @Override
+      public void run(int iteration)
+          throws InterruptedException {
+        allocationStart.countDown();
+        while (arrayFromOtherThread.get() == null) {
+          Thread.sleep(1);
+        }
+      }
+    }, 0, 1);
+    long otherThreadBytes = AllocationCounter.getThreadAllocatedBytes(thread.getId()) - otherThreadStartBytes;
+    countingDone.countDown();
+    thread.join();
+    Assert.assertTrue("Allocated " + bytesPerOperation + " bytes/op", bytesPerOperation < ARRAY_SIZE);
+    Assert.assertTrue("Other thread allocated " + otherThreadBytes + " bytes", otherThreadBytes >= ARRAY_SIZE);
+  }
+
+  /**
+   * Tests that an operation over its budget fails the test.
+   */
+  @Test
+  public void testAssertWithinBudget() {
+    AllocationCounter.assertWithinBudget("Operation", 100, 100);
+    try {
+      AllocationCounter.assertWithinBudget("Operation", 101, 100);
+      Assert.fail("An operation over its budget should fail the assertion");
+    } catch (AssertionError e) {
+      // expected
+    }
+  }
+}
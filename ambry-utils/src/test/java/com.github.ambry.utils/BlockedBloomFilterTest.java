@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests {@link BlockedBloomFilter} and its serialization through {@link FilterFactory}.
+ */
+public class BlockedBloomFilterTest {
+  private static final double Max_False_Positive_Probability = 0.01;
+
+  @Test
+  public void testNoFalseNegativesAndFalsePositiveRate() {
+    IFilter filter = FilterFactory.getBlockedFilter(FilterTestHelper.ELEMENTS, Max_False_Positive_Probability);
+    ResetableIterator<ByteBuffer> keys = FilterTestHelper.randomKeys();
+    while (keys.hasNext()) {
+      filter.add(keys.next());
+    }
+    keys.reset();
+    while (keys.hasNext()) {
+      Assert.assertTrue("Added key should be present", filter.isPresent(keys.next()));
+    }
+    ResetableIterator<ByteBuffer> otherKeys = FilterTestHelper.randomKeys2();
+    int falsePositives = 0;
+    while (otherKeys.hasNext()) {
+      if (filter.isPresent(otherKeys.next())) {
+        falsePositives++;
+      }
+    }
+    // blocks fill up unevenly, so allow some slack over the target rate
+    double falsePositiveRate = (double) falsePositives / otherKeys.size();
+    Assert.assertTrue("False positive rate too high: " + falsePositiveRate,
+        falsePositiveRate < 2 * Max_False_Positive_Probability);
+
+    filter.clear();
+    keys.reset();
+    while (keys.hasNext()) {
+      Assert.assertFalse("Cleared filter should be empty", filter.isPresent(keys.next()));
+    }
+  }
+
+  @Test
+  public void testSerialization()
+      throws IOException {
+    BlockedBloomFilter filter =
+        (BlockedBloomFilter) FilterFactory.getBlockedFilter(FilterTestHelper.ELEMENTS, Max_False_Positive_Probability);
+    IFilter deserializedFilter = BloomFilterTest.testSerialize(filter);
+    Assert.assertTrue(deserializedFilter instanceof BlockedBloomFilter);
+    Assert.assertEquals(filter.getBlockCount(), ((BlockedBloomFilter) deserializedFilter).getBlockCount());
+    ResetableIterator<ByteBuffer> keys = FilterTestHelper.intKeys();
+    while (keys.hasNext()) {
+      ByteBuffer key = keys.next();
+      Assert.assertEquals(filter.isPresent(key), deserializedFilter.isPresent(key));
+    }
+
+    // filters serialized without a version are still read as classic bloom filters
+    IFilter classicFilter = FilterFactory.getFilter(FilterTestHelper.ELEMENTS, Max_False_Positive_Probability);
+    Assert.assertTrue(BloomFilterTest.testSerialize(classicFilter) instanceof Murmur3BloomFilter);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new DataOutputStream(output).writeInt(-100);
+    try {
+      FilterFactory.deserialize(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+      Assert.fail("Deserializing a filter of an unknown version should have failed");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBlockCount() {
+    Assert.assertEquals(1, BlockedBloomFilter.getBlockCount(1, Max_False_Positive_Probability));
+    Assert.assertTrue(BlockedBloomFilter.getBlockCount(100000, 0.001) > BlockedBloomFilter.getBlockCount(100000, 0.01));
+    try {
+      BlockedBloomFilter.getBlockCount(100, 0);
+      Assert.fail("A false positive probability of 0 should have been rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
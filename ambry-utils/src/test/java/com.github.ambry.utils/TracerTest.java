@@ -0,0 +1,125 @@
+/**
+ * Copyright 2016 LinkedIn Corp. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ */
+package com.github.ambry.utils;
+
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TracerTest {
+
+  @Test
+  public void testSampling() {
+    MockTime time = new MockTime();
+    Assert.assertNull(new Tracer(0, 10, time).startTrace("get"));
+    Tracer tracer = new Tracer(1, 10, time);
+    Trace trace = tracer.startTrace("get");
+    Assert.assertNotNull(trace);
+    Assert.assertTrue(trace.getId() != 0);
+    Assert.assertEquals(-1, trace.getDurationMs());
+    Assert.assertNull(tracer.continueTrace(0, "get", 0));
+    Trace continued = tracer.continueTrace(trace.getId(), "server-get", 5);
+    Assert.assertEquals(trace.getId(), continued.getId());
+    Assert.assertEquals(5, continued.getStartTimeMs());
+    for (double sampleRate : new double[]{-0.1, 1.1}) {
+      try {
+        new Tracer(sampleRate, 10, time);
+        Assert.fail("Sample rate " + sampleRate + " should be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSpans()
+      throws Exception {
+    MockTime time = new MockTime();
+    time.currentMilliseconds = 1000;
+    Tracer tracer = new Tracer(1, 10, time);
+    Trace trace = tracer.startTrace("get");
+    trace.addSpan("queue", null, 1000, 1005);
+    trace.addSpan("replica", "host1:1000 Success", 1005, 1030);
+    time.currentMilliseconds = 1040;
+    tracer.finishTrace(trace);
+    Assert.assertEquals(40, trace.getDurationMs());
+    List<Trace.Span> spans = trace.getSpans();
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals("replica", spans.get(1).getName());
+    Assert.assertEquals(5, spans.get(1).getStartOffsetMs());
+    Assert.assertEquals(25, spans.get(1).getDurationMs());
+    JSONObject json = trace.toJSONObject();
+    Assert.assertEquals(Long.toHexString(trace.getId()), json.getString("traceId"));
+    Assert.assertEquals(40, json.getLong("durationMs"));
+    JSONArray spansArray = json.getJSONArray("spans");
+    Assert.assertEquals(2, spansArray.length());
+    Assert.assertFalse(spansArray.getJSONObject(0).has("detail"));
+    Assert.assertEquals("host1:1000 Success", spansArray.getJSONObject(1).getString("detail"));
+  }
+
+  @Test
+  public void testSlowestTraces()
+      throws Exception {
+    MockTime time = new MockTime();
+    int bufferSize = 5;
+    Tracer tracer = new Tracer(1, bufferSize, time);
+    Assert.assertTrue(tracer.getSlowestTraces(3).isEmpty());
+    // traces 0 to 9 take as many ms as their number, only the last five are kept
+    for (int i = 0; i < 10; i++) {
+      Trace trace = tracer.startTrace("trace" + i);
+      time.currentMilliseconds += i;
+      tracer.finishTrace(trace);
+    }
+    tracer.finishTrace(null);
+    Assert.assertEquals(10, tracer.getFinishedTraceCount());
+    List<Trace> slowest = tracer.getSlowestTraces(3);
+    Assert.assertEquals(3, slowest.size());
+    for (int i = 0; i < slowest.size(); i++) {
+      Assert.assertEquals("trace" + (9 - i), slowest.get(i).getName());
+    }
+    Assert.assertEquals(bufferSize, tracer.getSlowestTraces(100).size());
+    Assert.assertEquals(0, tracer.getSlowestTraces(-1).size());
+    JSONArray json = tracer.getSlowestTracesAsJSON(2);
+    Assert.assertEquals(2, json.length());
+    Assert.assertEquals("trace9", json.getJSONObject(0).getString("name"));
+  }
+
+  @Test
+  public void testCurrentTrace()
+      throws InterruptedException {
+    Tracer tracer = new Tracer(1, 10, new MockTime());
+    final Trace trace = tracer.startTrace("get");
+    Assert.assertNull(Tracer.getCurrentTrace());
+    Tracer.setCurrentTrace(trace);
+    Assert.assertSame(trace, Tracer.getCurrentTrace());
+    final Trace[] traceInOtherThread = new Trace[]{trace};
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        traceInOtherThread[0] = Tracer.getCurrentTrace();
+      }
+    });
+    thread.start();
+    thread.join();
+    Assert.assertNull("The current trace should not be visible to other threads", traceInOtherThread[0]);
+    Tracer.setCurrentTrace(null);
+    Assert.assertNull(Tracer.getCurrentTrace());
+    Tracer.setCurrentTrace(trace);
+    Tracer.clearCurrentTrace();
+    Assert.assertNull(Tracer.getCurrentTrace());
+  }
+}